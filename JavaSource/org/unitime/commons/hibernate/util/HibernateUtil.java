@@ -64,8 +64,11 @@ import org.unitime.commons.hibernate.connection.LoggingDBCPConnectionProvider;
 import org.unitime.commons.hibernate.id.UniqueIdGenerator;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventResourceResolver;
 import org.unitime.timetable.model.base._BaseRootDAO;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.security.evaluation.PermissionCache;
+import org.unitime.timetable.util.DefaultRoomAvailabilityService;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
@@ -295,6 +298,27 @@ public class HibernateUtil {
     	}).setSF(sSessionFactory);
         sLog.debug("  -- session factory set to _BaseRootDAO");
         
+        try {
+        	EventResourceResolver.register(sSessionFactory);
+        	sLog.debug("  -- event resource cache invalidation registered");
+        } catch (Exception e) {
+        	sLog.warn("Failed to register event resource cache invalidation: " + e.getMessage(), e);
+        }
+        
+        try {
+        	PermissionCache.register(sSessionFactory);
+        	sLog.debug("  -- permission cache invalidation registered");
+        } catch (Exception e) {
+        	sLog.warn("Failed to register permission cache invalidation: " + e.getMessage(), e);
+        }
+        
+        try {
+        	DefaultRoomAvailabilityService.register(sSessionFactory);
+        	sLog.debug("  -- room availability updates registered");
+        } catch (Exception e) {
+        	sLog.warn("Failed to register room availability updates: " + e.getMessage(), e);
+        }
+        
         addBitwiseOperationsToDialect();
         sLog.debug("  -- bitwise operation added to the dialect if needed");
         
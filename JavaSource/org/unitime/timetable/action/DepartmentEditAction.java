@@ -30,6 +30,7 @@ import org.hibernate.HibernateException;
 import org.hibernate.Transaction;
 import org.unitime.commons.hibernate.util.HibernateUtil;
 import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.events.EventResourceResolver;
 import org.unitime.timetable.form.DepartmentEditForm;
 import org.unitime.timetable.gwt.resources.GwtMessages;
 import org.unitime.timetable.model.ChangeLog;
@@ -186,6 +187,15 @@ public class DepartmentEditAction extends UniTimeAction<DepartmentEditForm> {
                     hibSession.saveOrUpdate(clazz);
                 }
             } else {
+                // bulk delete does not go through the hibernate listeners, notify the event resource cache about the affected students
+                EventResourceResolver.changed(hibSession, EventResourceResolver.STUDENT, hibSession.createQuery(
+                        "select distinct e.student.uniqueId from StudentClassEnrollment e where e.clazz.uniqueId in " +
+                        "(select c.uniqueId from Class_ c, CourseOffering co where " +
+                        "co.isControl=true and " +
+                        "c.schedulingSubpart.instrOfferingConfig.instructionalOffering=co.instructionalOffering and "+
+                        "co.subjectArea.department.uniqueId=:deptId)").
+                        setLong("deptId", department.getUniqueId()).
+                        list());
                 hibSession.createQuery(
                         "delete StudentClassEnrollment e where e.clazz.uniqueId in " +
                         "(select c.uniqueId from Class_ c, CourseOffering co where " +
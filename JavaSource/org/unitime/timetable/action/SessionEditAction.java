@@ -51,6 +51,7 @@ import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.Formats;
 import org.unitime.timetable.util.LookupTables;
+import org.unitime.timetable.util.RoomAvailability;
 
 
 /** 
@@ -307,6 +308,10 @@ public class SessionEditAction extends UniTimeAction<SessionEditForm> {
             }
             
             tx.commit() ;
+            
+            // events deleted in bulk are not seen by the room availability service
+            if (sessn.getStatusType().isTestSession())
+            	RoomAvailability.clearCache();
         } catch (Exception e) {
             if (tx!=null) tx.rollback();
             throw e;
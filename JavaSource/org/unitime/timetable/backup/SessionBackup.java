@@ -26,17 +26,26 @@ import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 import org.apache.commons.logging.Log;
@@ -104,13 +113,18 @@ public class SessionBackup implements SessionBackupInterface {
 	private PrintWriter iDebug = null;
 	private Long iSessionId = null;
 	private BackupProgress iProgress = null;
+	private Map<String, long[]> iManifest = new LinkedHashMap<String, long[]>();
+	
+	/** Name of the table with the per-table record counts (written at the end of the backup) */
+	public static final String MANIFEST = "org.unitime.timetable.backup.Manifest";
+	/** Maximal number of records in one table chunk */
+	protected static int sChunkSize = 10000;
 	
 	public BackupProgress getProgress() {
 		return iProgress;
 	}
 	
 	private void add(TableData.Table table) throws IOException {
-		iProgress.info("Writing " + table.getName().substring(table.getName().lastIndexOf('.') + 1) + " [" + table.getRecordCount() + " records, " + table.getSerializedSize() + " bytes]");
 		iOut.writeInt32NoTag(table.getSerializedSize());
 		table.writeTo(iOut);
 		iOut.flush();
@@ -121,6 +135,43 @@ public class SessionBackup implements SessionBackupInterface {
 		}
 	}
 	
+	private void add(List<TableData.Table> tables, long time) throws IOException {
+		if (tables.isEmpty()) return;
+		String name = tables.get(0).getName();
+		int records = 0; long bytes = 0;
+		for (TableData.Table table: tables) {
+			add(table);
+			records += table.getRecordCount();
+			bytes += table.getSerializedSize();
+		}
+		iProgress.info("Writing " + name.substring(name.lastIndexOf('.') + 1) + " [" + records + " records, " + bytes + " bytes" +
+				(tables.size() > 1 ? ", " + tables.size() + " chunks" : "") + ", " + time + " ms" +
+				(time > 0 ? ", " + Math.round(1000.0 * records / time) + " records/s" : "") + "]");
+		long[] stats = iManifest.get(name);
+		if (stats == null) {
+			stats = new long[] {0, 0, 0};
+			iManifest.put(name, stats);
+		}
+		stats[0] += records; stats[1] += bytes; stats[2] += time;
+	}
+	
+	/**
+	 * Write a manifest table with the number of records, size, and export time of each exported table.
+	 * The table is ignored by older versions of {@link SessionRestore}, as there is no such entity.
+	 */
+	private void addManifest() throws IOException {
+		TableData.Table.Builder manifest = TableData.Table.newBuilder();
+		manifest.setName(MANIFEST);
+		for (Map.Entry<String, long[]> e: iManifest.entrySet()) {
+			manifest.addRecord(TableData.Record.newBuilder().setId(e.getKey())
+					.addElement(TableData.Element.newBuilder().setName("records").addValue(String.valueOf(e.getValue()[0])))
+					.addElement(TableData.Element.newBuilder().setName("bytes").addValue(String.valueOf(e.getValue()[1])))
+					.addElement(TableData.Element.newBuilder().setName("time").addValue(String.valueOf(e.getValue()[2])))
+					.build());
+		}
+		add(manifest.build());
+	}
+	
 	public void debug(PrintWriter pw) {
 		iDebug = pw;
 	}
@@ -273,162 +324,21 @@ public class SessionBackup implements SessionBackupInterface {
             }
             iProgress.incProgress();
             
-            Map<String, Set<Serializable>> allExportedIds = new HashMap<String, Set<Serializable>>();
-            for (String name: new TreeSet<String>(data.keySet())) {
-            	List<QueueItem> list = data.get(name);
-            	Map<String, TableData.Table.Builder> tables = new HashMap<String, TableData.Table.Builder>();
-            	for (QueueItem current: list) {
-            		if (current.size() == 0) continue;
-            		iProgress.info("Loading " + current);
-            		List<Object> objects = current.list();
-            		if (objects == null || objects.isEmpty()) continue;
-            		iProgress.setPhase(current.abbv() + " [" + objects.size() + "]", objects.size());
-            		objects: for (Object object: objects) {
-            			iProgress.incProgress();
-            			
-            			// Get meta data (check for sub-classes)
-            			ClassMetadata meta = iHibSessionFactory.getClassMetadata(object.getClass());
-            			if (meta == null) meta = current.meta();
-            			if (meta.hasSubclasses()) {
-            	            for (Iterator i=iHibSessionFactory.getAllClassMetadata().entrySet().iterator();i.hasNext();) {
-            	                Map.Entry entry = (Map.Entry)i.next();
-            	                ClassMetadata classMetadata = (ClassMetadata)entry.getValue();
-            	                if (classMetadata.getMappedClass().isInstance(object) && !classMetadata.hasSubclasses()) {
-            	                	meta = classMetadata; break;
-            	                }
-            	            }
-            			}
-            			
-            			// Get unique identifier
-            			Serializable id = meta.getIdentifier(object, (SessionImplementor)iHibSession);
-            			if (meta.getIdentifierType().isComponentType()) {
-            				ComponentType cid = (ComponentType)meta.getIdentifierType();
-            				Object[] ids = new Object[cid.getPropertyNames().length];
-            				for (int i = 0; i < cid.getPropertyNames().length; i++) {
-            					Type type = meta.getPropertyType(cid.getPropertyNames()[i]);
-                				Object value = cid.getPropertyValue(object, i);
-                				if (value == null) continue;
-                				if (type.isEntityType()) {
-                					ids[i] = iHibSessionFactory.getClassMetadata(type.getReturnedClass()).getIdentifier(value, (SessionImplementor)iHibSession); 
-                				} else {
-                					ids[i] = value;
-                				}
-            				}
-            				id = new CompositeId(ids);
-            			}
-            			
-            			// Check if already exported
-            			Set<Serializable> exportedIds = allExportedIds.get(meta.getEntityName());
-            			if (exportedIds == null) {
-            				exportedIds = new HashSet<Serializable>();
-            				allExportedIds.put(meta.getEntityName(), exportedIds);
-            			}
-            			if (!exportedIds.add(id)) continue;
-            			
-            			// Check relation to an academic session (if exists)
-            			for (String property: meta.getPropertyNames()) {
-            				Type type = meta.getPropertyType(property);
-                        	if (type instanceof EntityType && type.getReturnedClass().equals(Session.class)) {
-                        		Session s = (Session)meta.getPropertyValue(object, property);
-                        		if (s != null && !s.getUniqueId().equals(iSessionId)) {
-                        			iProgress.warn(meta.getEntityName().substring(meta.getEntityName().lastIndexOf('.') + 1) + "@" + id + " belongs to a different academic session (" + s + ")");
-                        			continue objects; // wrong session
-                        		}
-                        	}
-            			}
-
-            			// Get appropriate table
-            			TableData.Table.Builder table = tables.get(meta.getEntityName());
-            			if (table == null) {
-            				table = TableData.Table.newBuilder();
-            				tables.put(meta.getEntityName(), table);
-            				table.setName(meta.getEntityName());
-            			}
-
-            			// Export object
-            			TableData.Record.Builder record = TableData.Record.newBuilder();
-            			record.setId(id.toString());
-            			for (String property: meta.getPropertyNames()) {
-            				Type type = meta.getPropertyType(property);
-            				Object value = meta.getPropertyValue(object, property);
-            				if (value == null) continue;
-            				TableData.Element.Builder element = TableData.Element.newBuilder();
-            				element.setName(property);
-            				if (type instanceof PrimitiveType) {
-            					element.addValue(((PrimitiveType)type).toString(value));
-            				} else if (type instanceof StringType) {	
-            					element.addValue(((StringType)type).toString((String)value));
-            				} else if (type instanceof BinaryType) {	
-            					element.addValueBytes(ByteString.copyFrom((byte[])value));
-            				} else if (type instanceof TimestampType) {
-            					element.addValue(((TimestampType)type).toString((Date)value));
-            				} else if (type instanceof DateType) {
-            					element.addValue(((DateType)type).toString((Date)value));
-            				} else if (type instanceof EntityType) {
-    							List<Object> ids = current.relation(property, id, false);
-    							if (ids != null)
-    								for (Object i: ids)
-    									element.addValue(i.toString());
-    							iHibSession.evict(value);
-            				} else if (type instanceof CustomType && value instanceof Document) {
-            					if (object instanceof CurriculumClassification && property.equals("students")) continue;
-            					StringWriter w = new StringWriter();
-            					XMLWriter x = new XMLWriter(w, OutputFormat.createCompactFormat());
-            					x.write((Document)value);
-            					x.flush(); x.close();
-            					element.addValue(w.toString());
-            				} else if (type instanceof CollectionType) {
-    							List<Object> ids = current.relation(property, id, false);
-    							if (ids != null)
-    								for (Object i: ids)
-    									element.addValue(i.toString());
-            				} else if (type instanceof EmbeddedComponentType && property.equalsIgnoreCase("uniqueCourseNbr")) {
-            					continue;
-            				} else {
-            					iProgress.warn("Unknown data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
-            					continue;
-            				}
-            				record.addElement(element.build());
-            			}
-            			if (meta.getIdentifierType().isComponentType()) {
-            				ComponentType cid = (ComponentType)meta.getIdentifierType();
-            				for (int i = 0; i < cid.getPropertyNames().length; i++) {
-            					String property = cid.getPropertyNames()[i];
-            					Type type = cid.getSubtypes()[i];
-                				Object value = ((CompositeId)id).iId[i];
-                				if (value == null) continue;
-                				TableData.Element.Builder element = TableData.Element.newBuilder();
-                				element.setName(property);
-                				if (type instanceof PrimitiveType) {
-                					element.addValue(((PrimitiveType)type).toString(value));
-                				} else if (type instanceof StringType) {	
-                					element.addValue(((StringType)type).toString((String)value));
-                				} else if (type instanceof BinaryType) {	
-                					element.addValueBytes(ByteString.copyFrom((byte[])value));
-                				} else if (type instanceof TimestampType) {
-                					element.addValue(((TimestampType)type).toString((Date)value));
-                				} else if (type instanceof DateType) {
-                					element.addValue(((DateType)type).toString((Date)value));
-                				} else if (type instanceof EntityType) {
-                    				element.addValue(value.toString());
-                				} else {
-                					iProgress.warn("Not-supported composite key data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
-                					continue;
-                				}
-                				record.addElement(element.build());
-            				}
-            			}
-            			table.addRecord(record.build());
-            			iHibSession.evict(object);
-            		}
-            		current.clearCache();
-            	}
-            	
-            	for (TableData.Table.Builder table: tables.values()) {
-            		add(table.build());
+            ConcurrentMap<String, Set<Serializable>> allExportedIds = new ConcurrentHashMap<String, Set<Serializable>>();
+            List<String> names = new ArrayList<String>(new TreeSet<String>(data.keySet()));
+            int nrThreads = ApplicationProperty.SessionBackupThreads.intValue();
+            if (nrThreads <= 1) {
+            	for (String name: names) {
+            		long t0 = System.currentTimeMillis();
+            		List<TableData.Table> tables = export(data.get(name), iHibSession, allExportedIds, iProgress, true);
+            		add(tables, System.currentTimeMillis() - t0);
             	}
+            } else {
+            	exportParallel(names, data, allExportedIds, nrThreads);
             }
             
+            addManifest();
+            
             /*
             // Skip ConstraintInfo
             if (!iData.containsKey(ConstraintInfo.class.getName()))
@@ -458,6 +368,262 @@ public class SessionBackup implements SessionBackupInterface {
         }
 	}
 	
+	/**
+	 * Export objects of the given queue items (all of the same entity name) into one or more tables.
+	 * Tables with more than {@link #sChunkSize} records are split into multiple chunks.
+	 * @param hibSession hibernate session to use (each export thread has its own session)
+	 * @param allExportedIds already exported identifiers, shared between the export threads
+	 * @param updatePhase update progress phase (only when not exporting in parallel)
+	 */
+	protected List<TableData.Table> export(List<QueueItem> list, org.hibernate.Session hibSession, ConcurrentMap<String, Set<Serializable>> allExportedIds, BackupProgress progress, boolean updatePhase) throws IOException {
+		Map<String, TableData.Table.Builder> tables = new HashMap<String, TableData.Table.Builder>();
+		List<TableData.Table> ret = new ArrayList<TableData.Table>();
+		for (QueueItem current: list) {
+			if (current.size() == 0) continue;
+			progress.info("Loading " + current);
+			List<Object> objects = current.list(hibSession);
+			if (objects == null || objects.isEmpty()) continue;
+			if (updatePhase) progress.setPhase(current.abbv() + " [" + objects.size() + "]", objects.size());
+			objects: for (Object object: objects) {
+				if (updatePhase) progress.incProgress();
+
+				// Get meta data (check for sub-classes)
+				ClassMetadata meta = iHibSessionFactory.getClassMetadata(object.getClass());
+				if (meta == null) meta = current.meta();
+				if (meta.hasSubclasses()) {
+					for (Iterator i=iHibSessionFactory.getAllClassMetadata().entrySet().iterator();i.hasNext();) {
+						Map.Entry entry = (Map.Entry)i.next();
+						ClassMetadata classMetadata = (ClassMetadata)entry.getValue();
+						if (classMetadata.getMappedClass().isInstance(object) && !classMetadata.hasSubclasses()) {
+							meta = classMetadata; break;
+						}
+					}
+				}
+
+				// Get unique identifier
+				Serializable id = meta.getIdentifier(object, (SessionImplementor)hibSession);
+				if (meta.getIdentifierType().isComponentType()) {
+					ComponentType cid = (ComponentType)meta.getIdentifierType();
+					Object[] ids = new Object[cid.getPropertyNames().length];
+					for (int i = 0; i < cid.getPropertyNames().length; i++) {
+						Type type = meta.getPropertyType(cid.getPropertyNames()[i]);
+						Object value = cid.getPropertyValue(object, i);
+						if (value == null) continue;
+						if (type.isEntityType()) {
+							ids[i] = iHibSessionFactory.getClassMetadata(type.getReturnedClass()).getIdentifier(value, (SessionImplementor)hibSession);
+						} else {
+							ids[i] = value;
+						}
+					}
+					id = new CompositeId(ids);
+				}
+
+				// Check if already exported
+				Set<Serializable> exportedIds = allExportedIds.get(meta.getEntityName());
+				if (exportedIds == null) {
+					exportedIds = Collections.newSetFromMap(new ConcurrentHashMap<Serializable, Boolean>());
+					Set<Serializable> previous = allExportedIds.putIfAbsent(meta.getEntityName(), exportedIds);
+					if (previous != null) exportedIds = previous;
+				}
+				if (!exportedIds.add(id)) continue;
+
+				// Check relation to an academic session (if exists)
+				for (String property: meta.getPropertyNames()) {
+					Type type = meta.getPropertyType(property);
+					if (type instanceof EntityType && type.getReturnedClass().equals(Session.class)) {
+						Session s = (Session)meta.getPropertyValue(object, property);
+						if (s != null && !s.getUniqueId().equals(iSessionId)) {
+							progress.warn(meta.getEntityName().substring(meta.getEntityName().lastIndexOf('.') + 1) + "@" + id + " belongs to a different academic session (" + s + ")");
+							continue objects; // wrong session
+						}
+					}
+				}
+
+				// Get appropriate table
+				TableData.Table.Builder table = tables.get(meta.getEntityName());
+				if (table == null) {
+					table = TableData.Table.newBuilder();
+					tables.put(meta.getEntityName(), table);
+					table.setName(meta.getEntityName());
+				}
+
+				// Export object
+				TableData.Record.Builder record = TableData.Record.newBuilder();
+				record.setId(id.toString());
+				for (String property: meta.getPropertyNames()) {
+					Type type = meta.getPropertyType(property);
+					Object value = meta.getPropertyValue(object, property);
+					if (value == null) continue;
+					TableData.Element.Builder element = TableData.Element.newBuilder();
+					element.setName(property);
+					if (type instanceof PrimitiveType) {
+						element.addValue(((PrimitiveType)type).toString(value));
+					} else if (type instanceof StringType) {
+						element.addValue(((StringType)type).toString((String)value));
+					} else if (type instanceof BinaryType) {
+						element.addValueBytes(ByteString.copyFrom((byte[])value));
+					} else if (type instanceof TimestampType) {
+						element.addValue(((TimestampType)type).toString((Date)value));
+					} else if (type instanceof DateType) {
+						element.addValue(((DateType)type).toString((Date)value));
+					} else if (type instanceof EntityType) {
+						List<Object> ids = current.relation(property, id, false, hibSession);
+						if (ids != null)
+							for (Object i: ids)
+								element.addValue(i.toString());
+						hibSession.evict(value);
+					} else if (type instanceof CustomType && value instanceof Document) {
+						if (object instanceof CurriculumClassification && property.equals("students")) continue;
+						StringWriter w = new StringWriter();
+						XMLWriter x = new XMLWriter(w, OutputFormat.createCompactFormat());
+						x.write((Document)value);
+						x.flush(); x.close();
+						element.addValue(w.toString());
+					} else if (type instanceof CollectionType) {
+						List<Object> ids = current.relation(property, id, false, hibSession);
+						if (ids != null)
+							for (Object i: ids)
+								element.addValue(i.toString());
+					} else if (type instanceof EmbeddedComponentType && property.equalsIgnoreCase("uniqueCourseNbr")) {
+						continue;
+					} else {
+						progress.warn("Unknown data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
+						continue;
+					}
+					record.addElement(element.build());
+				}
+				if (meta.getIdentifierType().isComponentType()) {
+					ComponentType cid = (ComponentType)meta.getIdentifierType();
+					for (int i = 0; i < cid.getPropertyNames().length; i++) {
+						String property = cid.getPropertyNames()[i];
+						Type type = cid.getSubtypes()[i];
+						Object value = ((CompositeId)id).iId[i];
+						if (value == null) continue;
+						TableData.Element.Builder element = TableData.Element.newBuilder();
+						element.setName(property);
+						if (type instanceof PrimitiveType) {
+							element.addValue(((PrimitiveType)type).toString(value));
+						} else if (type instanceof StringType) {
+							element.addValue(((StringType)type).toString((String)value));
+						} else if (type instanceof BinaryType) {
+							element.addValueBytes(ByteString.copyFrom((byte[])value));
+						} else if (type instanceof TimestampType) {
+							element.addValue(((TimestampType)type).toString((Date)value));
+						} else if (type instanceof DateType) {
+							element.addValue(((DateType)type).toString((Date)value));
+						} else if (type instanceof EntityType) {
+							element.addValue(value.toString());
+						} else {
+							progress.warn("Not-supported composite key data type: " + type + " (property " + meta.getEntityName() + "." + property + ", class " + value.getClass() + ")");
+							continue;
+						}
+						record.addElement(element.build());
+					}
+				}
+				table.addRecord(record.build());
+				hibSession.evict(object);
+				
+				// Write large tables in chunks
+				if (table.getRecordCount() >= sChunkSize) {
+					ret.add(table.build());
+					tables.remove(meta.getEntityName());
+				}
+			}
+			current.clearCache();
+		}
+
+		for (TableData.Table.Builder table: tables.values())
+			ret.add(table.build());
+		return ret;
+	}
+	
+	/**
+	 * Export tables in parallel, each entity name using its own thread and hibernate session.
+	 * Tables are written in the same order as in the serial export, with at most 2 x nrThreads entities exported ahead of the writer.
+	 */
+	protected void exportParallel(List<String> names, Map<String, List<QueueItem>> data, final ConcurrentMap<String, Set<Serializable>> allExportedIds, int nrThreads) throws IOException {
+		// Compute sizes first, this is using the main hibernate session
+		for (String name: names)
+			for (QueueItem current: data.get(name)) current.size();
+		
+		iProgress.setPhase("Exporting [" + nrThreads + " threads]", names.size());
+		final BackupProgress progress = new SynchronizedProgress(iProgress);
+		ExecutorService executor = Executors.newFixedThreadPool(nrThreads);
+		try {
+			List<Future<ExportedTables>> futures = new ArrayList<Future<ExportedTables>>();
+			for (int written = 0; written < names.size(); written++) {
+				while (futures.size() < names.size() && futures.size() < written + 2 * nrThreads) {
+					final List<QueueItem> list = data.get(names.get(futures.size()));
+					futures.add(executor.submit(new Callable<ExportedTables>() {
+						@Override
+						public ExportedTables call() throws Exception {
+							long t0 = System.currentTimeMillis();
+							org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+							hibSession.setCacheMode(CacheMode.IGNORE);
+							try {
+								List<TableData.Table> tables = export(list, hibSession, allExportedIds, progress, false);
+								return new ExportedTables(tables, System.currentTimeMillis() - t0);
+							} finally {
+								hibSession.close();
+							}
+						}
+					}));
+				}
+				ExportedTables exported = futures.get(written).get();
+				futures.set(written, null);
+				add(exported.getTables(), exported.getTime());
+				iProgress.incProgress();
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Backup interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			throw new IOException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	static class ExportedTables {
+		private List<TableData.Table> iTables;
+		private long iTime;
+		
+		ExportedTables(List<TableData.Table> tables, long time) {
+			iTables = tables; iTime = time;
+		}
+		
+		List<TableData.Table> getTables() { return iTables; }
+		long getTime() { return iTime; }
+	}
+	
+	/**
+	 * Progress wrapper used by the export threads, phase changes are handled by the writer.
+	 */
+	static class SynchronizedProgress implements BackupProgress {
+		private BackupProgress iProgress;
+		
+		SynchronizedProgress(BackupProgress progress) { iProgress = progress; }
+
+		@Override
+		public synchronized void setStatus(String status) { iProgress.setStatus(status); }
+
+		@Override
+		public void setPhase(String phase, double max) {}
+
+		@Override
+		public void incProgress() {}
+
+		@Override
+		public synchronized void info(String message) { iProgress.info(message); }
+
+		@Override
+		public synchronized void warn(String message) { iProgress.warn(message); }
+
+		@Override
+		public synchronized void error(String message) { iProgress.error(message); }
+	}
+	
 	enum Relation {
 		None, Parent, One, Many, Empty
 	}
@@ -607,19 +773,19 @@ public class SessionBackup implements SessionBackupInterface {
 			}
 		}
 		
-		List<Object> list() {
+		List<Object> list(org.hibernate.Session hibSession) {
 			if (relation() == Relation.Empty) return null;
 			if (AssignmentInfo.class.getName().equals(name())) return null;
 			if (ConstraintInfo.class.getName().equals(name())) return null;
 			if (ChangeLog.class.getName().equals(name())) return null;
-			return iHibSession.createQuery(
+			return hibSession.createQuery(
 					"select " + (distinct() ? "" : "distinct ") + hqlName() + " from " + hqlFrom() + " where " + hqlWhere()
 					).setLong("sessionId", iSessionId).list();
 		}
 		
 		Map<String, Map<Serializable, List<Object>>> iRelationCache = new HashMap<String, Map<Serializable,List<Object>>>();
 		
-		List<Object> relation(String property, Serializable id, boolean data) {
+		List<Object> relation(String property, Serializable id, boolean data, org.hibernate.Session hibSession) {
 			Map<Serializable, List<Object>> relation = iRelationCache.get(property);
 			if (relation == null) {
 				Type type = meta().getPropertyType(property);
@@ -661,7 +827,7 @@ public class SessionBackup implements SessionBackupInterface {
 						else
 							select += (i > 0 ? ", " : "") + hqlName() + "." + idtype.getPropertyNames()[i] + "." + meta.getIdentifierPropertyName();
 					}
-					for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+					for (Object[] o: (List<Object[]>)hibSession.createQuery(
 							"select distinct " + select + (data ? ", p" : ", p." + idProperty) + " from " + hqlFrom() + " inner join " + hqlName() + "." + property + " p where " + hqlWhere()
 							).setLong("sessionId", iSessionId).list()) {
 						Object[] cid = new Object[idtype.getPropertyNames().length];
@@ -682,7 +848,7 @@ public class SessionBackup implements SessionBackupInterface {
 						}
 					}
 				} else {
-					for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+					for (Object[] o: (List<Object[]>)hibSession.createQuery(
 							"select distinct " + hqlName() + "." + meta().getIdentifierPropertyName() + (data ? ", p" : ", p." + idProperty) + 
 							" from " + hqlFrom() + " inner join " + hqlName() + "." + property + " p where " + hqlWhere()
 							).setLong("sessionId", iSessionId).list()) {
@@ -33,6 +33,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -144,7 +145,9 @@ public class SessionRestore implements SessionRestoreInterface {
 	private List<Entity> iAllEntitites = new ArrayList<Entity>();
 	private Map<String, Student> iStudents = new Hashtable<String, Student>();
 	private PrintWriter iDebug = null;
-	private Map<String, TableData.Table> iSkippedTables = new Hashtable<String, TableData.Table>();
+	private Map<String, Map<String, TableData.Record>> iSkippedRecords = new HashMap<String, Map<String, TableData.Record>>();
+	private Map<String, Integer> iRecordCounts = new HashMap<String, Integer>();
+	private TableData.Table iManifest = null;
 
 	private InputStream iIn;
 
@@ -253,21 +256,50 @@ public class SessionRestore implements SessionRestoreInterface {
 		}
 	}
 	
-	protected Entity lookupSkippedRecord(String tableName, String id) {
-		TableData.Table table = iSkippedTables.get(tableName);
-		if (table == null) return null;
-		for (TableData.Record record: table.getRecordList()) {
-			if (id.equals(record.getId()) && record.getElementCount() > 0) return new Entity(null, record, null, id);
+	/**
+	 * Compare the number of loaded records with the manifest table (when present in the backup)
+	 */
+	protected void checkManifest() {
+		if (iManifest == null) return;
+		for (TableData.Record record: iManifest.getRecordList()) {
+			if (iHibSessionFactory.getClassMetadata(record.getId()) == null) continue;
+			for (TableData.Element element: record.getElementList()) {
+				if (!"records".equals(element.getName()) || element.getValueCount() == 0) continue;
+				int expected = Integer.parseInt(element.getValue(0));
+				Integer loaded = iRecordCounts.get(record.getId());
+				if (loaded == null || loaded.intValue() != expected)
+					iProgress.warn("Table " + record.getId().substring(record.getId().lastIndexOf('.') + 1) + " has " + (loaded == null ? 0 : loaded.intValue()) + " records, " + expected + " expected.");
+			}
 		}
-		return null;
+	}
+	
+	protected Entity lookupSkippedRecord(String tableName, String id) {
+		Map<String, TableData.Record> records = iSkippedRecords.get(tableName);
+		if (records == null) return null;
+		TableData.Record record = records.get(id);
+		return (record == null ? null : new Entity(null, record, null, id));
 	}
 	
 	public void create(TableData.Table table) throws InstantiationException, IllegalAccessException, DocumentException, InvocationTargetException, NoSuchMethodException {
 		ClassMetadata metadata = iHibSessionFactory.getClassMetadata(table.getName());
 		if (metadata == null) {
-			iSkippedTables.put(table.getName(), table);
+			if (SessionBackup.MANIFEST.equals(table.getName())) {
+				iManifest = table;
+				return;
+			}
+			// Large tables are exported in multiple chunks
+			Map<String, TableData.Record> skipped = iSkippedRecords.get(table.getName());
+			if (skipped == null) {
+				skipped = new HashMap<String, TableData.Record>();
+				iSkippedRecords.put(table.getName(), skipped);
+			}
+			for (TableData.Record record: table.getRecordList())
+				if (record.getElementCount() > 0 && !skipped.containsKey(record.getId()))
+					skipped.put(record.getId(), record);
 			return;
 		}
+		Integer count = iRecordCounts.get(table.getName());
+		iRecordCounts.put(table.getName(), table.getRecordCount() + (count == null ? 0 : count.intValue()));
 		PersistentClass mapping = _RootDAO.getConfiguration().getClassMapping(table.getName());
 		Map<String, Integer> lengths = new HashMap<String, Integer>();
 		for (String property: metadata.getPropertyNames()) {
@@ -471,6 +503,98 @@ public class SessionRestore implements SessionRestoreInterface {
 	}
 	
 	
+	/**
+	 * Entity names in the order of their not-null relations (an entity comes after all the entities it requires).
+	 * Entities that are part of a cycle are placed at the end, in the order in which they were read.
+	 */
+	protected List<String> getSaveOrder(Map<String, List<Entity>> entities) {
+		Map<String, Set<String>> requires = new HashMap<String, Set<String>>();
+		for (String name: entities.keySet()) {
+			ClassMetadata metadata = iHibSessionFactory.getClassMetadata(name);
+			List<Type> types = new ArrayList<Type>();
+			for (int i = 0; i < metadata.getPropertyNames().length; i++)
+				if (!metadata.getPropertyNullability()[i]) types.add(metadata.getPropertyTypes()[i]);
+			if (metadata.getIdentifierType().isComponentType())
+				for (Type type: ((ComponentType)metadata.getIdentifierType()).getSubtypes()) types.add(type);
+			Set<String> req = new HashSet<String>();
+			for (Type type: types) {
+				if (!(type instanceof EntityType)) continue;
+				for (String other: entities.keySet())
+					if (!other.equals(name) && type.getReturnedClass().isAssignableFrom(iHibSessionFactory.getClassMetadata(other).getMappedClass()))
+						req.add(other);
+			}
+			requires.put(name, req);
+		}
+		List<String> order = new ArrayList<String>();
+		Set<String> done = new HashSet<String>();
+		boolean added = true;
+		while (added) {
+			added = false;
+			for (String name: entities.keySet()) {
+				if (done.contains(name) || !done.containsAll(requires.get(name))) continue;
+				order.add(name); done.add(name); added = true;
+			}
+		}
+		for (String name: entities.keySet())
+			if (done.add(name)) order.add(name);
+		return order;
+	}
+	
+	/**
+	 * Entities grouped by their name, in the order of their not-null relations
+	 */
+	protected List<Entity> order(List<Entity> entities) {
+		Map<String, List<Entity>> byName = new LinkedHashMap<String, List<Entity>>();
+		for (Entity e: entities) {
+			List<Entity> list = byName.get(e.getName());
+			if (list == null) {
+				list = new ArrayList<Entity>();
+				byName.put(e.getName(), list);
+			}
+			list.add(e);
+		}
+		List<Entity> ret = new ArrayList<Entity>(entities.size());
+		for (String name: getSaveOrder(byName))
+			ret.addAll(byName.get(name));
+		return ret;
+	}
+	
+	/**
+	 * Save the (ordered) entities table by table, flushing after each table so that the inserts of one table are executed together
+	 * (in JDBC batches of hibernate.jdbc.batch_size).
+	 * @return entities that could not be saved yet (a not-null relation is not saved yet, e.g., because of a cycle)
+	 */
+	protected List<Entity> saveOrdered(List<Object> otherObjectsToSave) {
+		iProgress.setPhase("Saving (ordered)", iAllEntitites.size());
+		List<Entity> postponed = new ArrayList<Entity>();
+		String name = null;
+		int count = 0;
+		long t0 = System.currentTimeMillis();
+		for (Entity e: iAllEntitites) {
+			if (!e.getName().equals(name)) {
+				if (name != null) flushTable(name, count, t0);
+				name = e.getName(); count = 0; t0 = System.currentTimeMillis();
+			}
+			iProgress.incProgress();
+			if (e.canSave() == null) {
+				e.fixRelationsNullOnly(otherObjectsToSave);
+				iHibSession.save(e.getObject());
+				count ++;
+			} else {
+				postponed.add(e);
+			}
+		}
+		if (name != null) flushTable(name, count, t0);
+		return postponed;
+	}
+	
+	private void flushTable(String name, int count, long t0) {
+		iHibSession.flush();
+		long time = System.currentTimeMillis() - t0;
+		if (time > 0 && count > 0)
+			iProgress.info("Saved " + name.substring(name.lastIndexOf('.') + 1) + " [" + count + " records, " + time + " ms, " + Math.round(1000.0 * count / time) + " records/s]");
+	}
+	
 	public void restore(InputStream input, BackupProgress progress) throws IOException, InstantiationException, IllegalAccessException, DocumentException, InvocationTargetException, NoSuchMethodException {
 		iIn = input;
         iProgress = progress;
@@ -489,9 +613,14 @@ public class SessionRestore implements SessionRestoreInterface {
         			iDebug.print(t.toString());
         			iDebug.flush();
         		}
+        		long t0 = System.currentTimeMillis();
             	create(t);
+            	long time = System.currentTimeMillis() - t0;
+            	if (time > 0 && t.getRecordCount() > 0)
+            		iProgress.info("Loaded " + t.getName().substring(t.getName().lastIndexOf('.') + 1) + " [" + t.getRecordCount() + " records, " + time + " ms, " + Math.round(1000.0 * t.getRecordCount() / time) + " records/s]");
             }
             iProgress.incProgress();
+            checkManifest();
             
     		iHibSession.setFlushMode(FlushMode.MANUAL);
     		iProgress.setPhase("Fixing", iAllEntitites.size());
@@ -500,9 +629,16 @@ public class SessionRestore implements SessionRestoreInterface {
     			if (!fix(i.next())) i.remove();
     		}
     		
-    		iProgress.setPhase("Saving (not-null)", iAllEntitites.size());
-    		List<Entity> save = new ArrayList<Entity>(iAllEntitites);
     		List<Object> otherObjectsToSave = new ArrayList<Object>();
+    		List<Entity> save = null;
+    		if (ApplicationProperty.SessionRestoreOrdered.isTrue()) {
+    			iAllEntitites = order(iAllEntitites);
+    			save = saveOrdered(otherObjectsToSave);
+    		} else {
+    			save = new ArrayList<Entity>(iAllEntitites);
+    		}
+    		
+    		iProgress.setPhase("Saving (not-null)", save.size());
     		boolean saved = true;
     		while (!save.isEmpty() && saved) {
     			saved = false;
@@ -23,12 +23,19 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.TimetableManager;
 
 /**
@@ -62,6 +69,22 @@ public abstract class BaseImport extends DataExchangeHelper {
     }
     
     public void loadXml(InputStream inputStream) throws Exception {
+    	if (isStreamingSupported() && ApplicationProperty.DataExchangeStreamingImport.isTrue()) {
+    		XMLStreamReader reader = null;
+    		try {
+    			reader = createXMLStreamReader(inputStream);
+    			if (!nextRootElement(reader))
+    				throw new Exception("Given XML file has no root element.");
+    			loadXml(reader);
+    		} catch (XMLStreamException e) {
+    			fatal("Unable to parse given XML, reason:"+e.getMessage(), e);
+    		} finally {
+    			if (reader != null) {
+    				try { reader.close(); } catch (XMLStreamException e) {}
+    			}
+    		}
+    		return;
+    	}
         try {
             Document document = (new SAXReader()).read(inputStream);
             loadXml(document.getRootElement());
@@ -72,6 +95,113 @@ public abstract class BaseImport extends DataExchangeHelper {
     
     public abstract void loadXml(Element rootElement) throws Exception;
     
+    /**
+     * Return true if the import can process the XML as a stream (see {@link #loadXml(XMLStreamReader)}),
+     * the whole XML document is loaded in memory before the import otherwise.
+     */
+    public boolean isStreamingSupported() {
+    	return false;
+    }
+    
+    /**
+     * Streaming import. The given reader is positioned at the start of the root element.
+     * Default implementation reads the whole root element and calls {@link #loadXml(Element)}.
+     */
+    public void loadXml(XMLStreamReader reader) throws Exception {
+    	loadXml(readElement(reader));
+    }
+    
+    public static XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+    	XMLInputFactory factory = XMLInputFactory.newInstance();
+    	factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    	factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    	factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    	return factory.createXMLStreamReader(inputStream);
+    }
+    
+    /**
+     * Move the reader to the start of the root element
+     * @return false if the document has no root element
+     */
+    public static boolean nextRootElement(XMLStreamReader reader) throws XMLStreamException {
+    	if (reader.getEventType() == XMLStreamConstants.START_ELEMENT) return true;
+    	while (reader.hasNext()) {
+    		if (reader.next() == XMLStreamConstants.START_ELEMENT) return true;
+    	}
+    	return false;
+    }
+    
+    /**
+     * Move the reader to the start of the next child element. The reader must be positioned at the start
+     * of the parent element or at the end of the previous child element (e.g., after {@link #readElement(XMLStreamReader)}).
+     * @return false if the end of the parent element has been reached
+     */
+    public static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+    	while (reader.hasNext()) {
+    		switch (reader.next()) {
+    		case XMLStreamConstants.START_ELEMENT:
+    			return true;
+    		case XMLStreamConstants.END_ELEMENT:
+    		case XMLStreamConstants.END_DOCUMENT:
+    			return false;
+    		}
+    	}
+    	return false;
+    }
+    
+    /**
+     * Create a detached element containing the name and the attributes of the current element, children are not read
+     */
+    public static Element readStartElement(XMLStreamReader reader) {
+    	Element element = DocumentHelper.createElement(reader.getLocalName());
+    	for (int i = 0; i < reader.getAttributeCount(); i++)
+    		element.addAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+    	return element;
+    }
+    
+    /**
+     * Read the current element (including all its children) into a detached element,
+     * the reader is left positioned at the end of the element.
+     */
+    public static Element readElement(XMLStreamReader reader) throws XMLStreamException {
+    	Element element = readStartElement(reader);
+    	Element current = element;
+    	while (reader.hasNext()) {
+    		switch (reader.next()) {
+    		case XMLStreamConstants.START_ELEMENT:
+    			Element child = readStartElement(reader);
+    			current.add(child);
+    			current = child;
+    			break;
+    		case XMLStreamConstants.CHARACTERS:
+    		case XMLStreamConstants.CDATA:
+    			if (!reader.isWhiteSpace())
+    				current.addText(reader.getText());
+    			break;
+    		case XMLStreamConstants.END_ELEMENT:
+    			if (current == element) return element;
+    			current = current.getParent();
+    			break;
+    		}
+    	}
+    	return element;
+    }
+    
+    /**
+     * Skip the current element (including all its children), the reader is left positioned at the end of the element.
+     */
+    public static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    	int depth = 1;
+    	while (depth > 0 && reader.hasNext()) {
+    		switch (reader.next()) {
+    		case XMLStreamConstants.START_ELEMENT:
+    			depth++; break;
+    		case XMLStreamConstants.END_ELEMENT:
+    			depth--; break;
+    		}
+    	}
+    }
+    
     protected String getRequiredStringAttribute(Element element, String attributeName, String elementName) throws Exception{		
 		String attributeValue = element.attributeValue(attributeName);
 		if (attributeValue == null || attributeValue.trim().length() == 0){
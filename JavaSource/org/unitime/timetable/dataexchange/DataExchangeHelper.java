@@ -19,9 +19,13 @@
 */
 package org.unitime.timetable.dataexchange;
 
+import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.util.Hashtable;
 import java.util.Properties;
 
+import javax.xml.stream.XMLStreamReader;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
@@ -40,6 +44,7 @@ public class DataExchangeHelper {
     protected org.hibernate.Transaction iTx = null;
     protected int iFlushIfNeededCounter = 0;
     protected static int sBatchSize = 100;
+    protected static int sRootElementReadLimit = 1024 * 1024;
     
     public static Hashtable<String,Class> sExportRegister;
     public static Hashtable<String,Class> sImportRegister;
@@ -270,6 +275,29 @@ public class DataExchangeHelper {
         imp.loadXml(document.getRootElement());
     }
     
+    /**
+     * Import the given XML input stream. Only the root element is read to determine the import type,
+     * the import itself can process the input as a stream of elements (see {@link BaseImport#isStreamingSupported()}).
+     */
+    public static void importDocument(InputStream input, String userId, Log log) throws Exception {
+    	BufferedInputStream bis = new BufferedInputStream(input);
+    	bis.mark(sRootElementReadLimit);
+    	String type = null;
+    	XMLStreamReader reader = BaseImport.createXMLStreamReader(bis);
+    	try {
+    		if (BaseImport.nextRootElement(reader))
+    			type = reader.getLocalName();
+    	} finally {
+    		reader.close();
+    	}
+    	bis.reset();
+        BaseImport imp = createImportBase(type);
+        imp.setLog(log);
+        if (userId != null)
+        	imp.setManager(TimetableManager.findByExternalId(userId));
+        imp.loadXml(bis);
+    }
+    
     public static Document exportDocument(String rootName, Session session, Properties parameters, Log log) throws Exception {
         BaseExport exp = createExportBase(rootName);
         exp.setLog(log);
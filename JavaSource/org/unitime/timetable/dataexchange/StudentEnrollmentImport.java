@@ -25,11 +25,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import javax.xml.stream.XMLStreamReader;
+
 import org.dom4j.Element;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.ChangeLog;
@@ -51,86 +54,35 @@ import org.unitime.timetable.test.UpdateExamConflicts;
  */
 public class StudentEnrollmentImport extends BaseImport {
 
+	private boolean iTrimLeadingZerosFromExternalId;
+	private boolean iIncremental;
+	private boolean iRemoveUnusedCourseDemands;
+	private Session iSession;
+	private Date iTimeStamp;
+	private Set<Long> iUpdatedStudents;
+	private Map<String, Set<Class_>> iExtId2class;
+	private Map<String, Class_> iName2class;
+	private Map<Long, Class_> iId2class;
+	private Map<String, Set<CourseOffering>> iExtId2course;
+	private Map<String, CourseOffering> iName2course;
+	private Map<String, CourseOffering> iCExtId2course;
+	private Map<String, CourseOffering> iCName2course;
+	private Map<Long, Set<CourseOffering>> iClass2courses;
+
 	public StudentEnrollmentImport() {
 		super();
 	}
 
 	@Override
 	public void loadXml(Element rootElement) throws Exception {
-		boolean trimLeadingZerosFromExternalId = ApplicationProperty.DataExchangeTrimLeadingZerosFromExternalIds.isTrue();
-
         if (!rootElement.getName().equalsIgnoreCase("studentEnrollments"))
         	throw new Exception("Given XML file is not a Student Enrollments load file.");
         
-        Session session = null;
-        
-        Set<Long> updatedStudents = new HashSet<Long>(); 
-        
 		try {
-	        String campus = rootElement.attributeValue("campus");
-	        String year   = rootElement.attributeValue("year");
-	        String term   = rootElement.attributeValue("term");
-	        String created = rootElement.attributeValue("created");
-	        boolean incremental = "true".equals(rootElement.attributeValue("incremental", "false"));
-			
 	        beginTransaction();
 	        
-	        session = Session.getSessionUsingInitiativeYearTerm(campus, year, term);
+	        setup(rootElement);
 	        
-	        if(session == null)
-	           	throw new Exception("No session found for the given campus, year, and term.");
-
-	    	HashMap<String, Set<Class_>> extId2class = new HashMap<String, Set<Class_>>();
-	    	HashMap<String, Class_> name2class = new HashMap<String, Class_>();
-	    	HashMap<Long, Class_> id2class = new HashMap<Long, Class_>();
-	    	HashMap<String, Set<CourseOffering>> extId2course = new HashMap<String, Set<CourseOffering>>();
-	    	HashMap<String, CourseOffering> name2course = new HashMap<String, CourseOffering>();
-	    	HashMap<String, CourseOffering> cextId2course = new HashMap<String, CourseOffering>();
-	    	HashMap<String, CourseOffering> cname2course = new HashMap<String, CourseOffering>();
-	    	HashMap<Long, Set<CourseOffering>> class2courses = new HashMap<Long, Set<CourseOffering>>();
-	    	
-	    	info("Loading classes...");
-	 		for (Object[] o: (List<Object[]>)getHibSession().createQuery(
-	 				"select c, co from Class_ c inner join c.schedulingSubpart.instrOfferingConfig.instructionalOffering.courseOfferings co where " +
-    				"c.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId")
-    				.setLong("sessionId", session.getUniqueId()).list()) {
-	 			Class_ clazz = (Class_)o[0];
-	 			CourseOffering course = (CourseOffering)o[1];
-				String extId = clazz.getExternalId(course);
-				if (extId != null && !extId.isEmpty()) {
-					Set<Class_> sameExtIdClasses = extId2class.get(extId);
-					if (sameExtIdClasses == null) {
-						sameExtIdClasses = new HashSet<Class_>();
-						extId2class.put(extId, sameExtIdClasses);
-					}
-					sameExtIdClasses.add(clazz);
-				}
-				String name = course.getCourseName() + " " + clazz.getItypeDesc().trim() + " " + getClassSuffix(clazz);
-				name2class.put(name, clazz);
-				name2course.put(name, course);
-				id2class.put(clazz.getUniqueId(), clazz);
-				if (extId != null && !extId.isEmpty()) {
-					Set<CourseOffering> sameExtIdCourses = extId2course.get(extId);
-					if (sameExtIdCourses == null) {
-						sameExtIdCourses = new HashSet<CourseOffering>();
-						extId2course.put(extId, sameExtIdCourses);
-					}
-					sameExtIdCourses.add(course);
-				}
-				Set<CourseOffering> courses = class2courses.get(clazz.getUniqueId());
-				if (course.getExternalUniqueId() != null && !course.getExternalUniqueId().isEmpty())
-					cextId2course.put(course.getExternalUniqueId(), course);
-				cname2course.put(course.getCourseName(), course);
-				if (courses == null) {
-					courses = new HashSet<CourseOffering>();
-					class2courses.put(clazz.getUniqueId(), courses);
-				}
-				courses.add(course);
-			}
-	        
-	        if (created != null)
-				ChangeLog.addChange(getHibSession(), getManager(), session, session, created, ChangeLog.Source.DATA_IMPORT_STUDENT_ENROLLMENTS, ChangeLog.Operation.UPDATE, null, null);
-         
 	        info("Loading students...");
 	        Hashtable<String, Student> students = new Hashtable<String, Student>();
 	        for (Student student: (List<Student>)getHibSession().createQuery(
@@ -139,292 +91,476 @@ public class StudentEnrollmentImport extends BaseImport {
                     "left join fetch cd.courseRequests as cr " +
                     "left join fetch s.classEnrollments as e " +
                     "where s.session.uniqueId=:sessionId and s.externalUniqueId is not null").
-                    setLong("sessionId",session.getUniqueId()).list()) { 
+                    setLong("sessionId",iSession.getUniqueId()).list()) { 
 	        	students.put(student.getExternalUniqueId(), student);
 	        }
 	        
 	        info("Importing enrollments...");
-	        Date ts = new Date();
 	        for (Iterator i = rootElement.elementIterator("student"); i.hasNext(); ) {
 	            Element studentElement = (Element) i.next();
 	            
-	            String externalId = studentElement.attributeValue("externalId");
+	            String externalId = getExternalId(studentElement);
 	            if (externalId == null) continue;
-	            while (trimLeadingZerosFromExternalId && externalId.startsWith("0")) externalId = externalId.substring(1);
 	            
-	            boolean fixCourseDemands = false;
-	 	        
-            	Student student = students.remove(externalId);
-            	if (student == null) {
-            		student = new Student();
-	                student.setSession(session);
-		            student.setFirstName(studentElement.attributeValue("firstName", "Name"));
-		            student.setMiddleName(studentElement.attributeValue("middleName"));
-		            student.setLastName(studentElement.attributeValue("lastName", "Unknown"));
-		            student.setEmail(studentElement.attributeValue("email"));
-		            student.setExternalUniqueId(externalId);
-		            student.setFreeTimeCategory(0);
-		            student.setSchedulePreference(0);
-		            student.setClassEnrollments(new HashSet<StudentClassEnrollment>());
-		            student.setCourseDemands(new HashSet<CourseDemand>());
-            	}
-            	
-            	Hashtable<Pair, StudentClassEnrollment> enrollments = new Hashtable<Pair, StudentClassEnrollment>();
-            	for (StudentClassEnrollment enrollment: student.getClassEnrollments()) {
-            		enrollments.put(new Pair(enrollment.getCourseOffering().getUniqueId(), enrollment.getClazz().getUniqueId()), enrollment);
-            	}
-            	int nextPriority = 0;
-            	for (CourseDemand cd: student.getCourseDemands())
-            		if (!cd.isAlternative() && cd.getPriority() >= nextPriority)
-            			nextPriority = cd.getPriority() + 1;
-            	Set<CourseDemand> remaining = new HashSet<CourseDemand>(student.getCourseDemands());
-            	Map<CourseDemand, CourseOffering> courseAssignments = new HashMap<CourseDemand, CourseOffering>();
-            	
-            	List<Enrollment> selected = new ArrayList<Enrollment>();
-            	for (Iterator j = studentElement.elementIterator("class"); j.hasNext(); ) {
-            		Element classElement = (Element) j.next();
-            		
-            		Class_ clazz = null;
-            		CourseOffering course = null;
-            		Set<Class_> classes = null;
-            		Set<CourseOffering> courses = null;
-
-            		if (clazz == null && classElement.attributeValue("id") != null)
-            			clazz = id2class.get(Long.valueOf(classElement.attributeValue("id")));
-            		
-            		String classExternalId  = classElement.attributeValue("externalId");
-            		if (clazz == null && classExternalId != null) {
-            			classes = extId2class.get(classExternalId);
-            			courses = extId2course.get(classExternalId);
-            			if (classes == null) {
-                			clazz = name2class.get(classExternalId);
-                			course = name2course.get(classExternalId);
-            			} else {
-            				if (classes.size() == 1)
-            					clazz = classes.iterator().next();
-            				if (courses.size() == 1)
-            					course = courses.iterator().next();
-            			}
-            		}
-            		
-            		if (clazz == null && classElement.attributeValue("name") != null) {
-            			String className = classElement.attributeValue("name");
-            			clazz = name2class.get(className);
-            			course = name2course.get(className);
-            		}
-            		
-            		if (course == null && classElement.attributeValue("courseId") != null)
-            			course = cextId2course.get(classElement.attributeValue("courseId"));
-            		
-            		if (course == null) {
-                		String courseName = classElement.attributeValue("course");
-            			if (courseName != null) {
-            				course = cname2course.get(courseName);
-            			} else {
-                    		String subject = classElement.attributeValue("subject");
-                    		String courseNbr = classElement.attributeValue("courseNbr");
-                    		if (subject != null && courseNbr != null)
-                    			course = cname2course.get(subject + " " + courseNbr);
-                		}
-            		}
-            		
-            		if (course != null  && clazz == null) {
-                		String type = classElement.attributeValue("type");
-                		String suffix = classElement.attributeValue("suffix");
-                		if (type != null && suffix != null)
-                			clazz = name2class.get(course.getCourseName() + " " + type.trim() + " " + suffix);
-            		}
-            		
-            		if (clazz == null && classes == null) {
-            			warn("Class " + (classExternalId != null ? classExternalId : classElement.attributeValue("name",
-            					classElement.attributeValue("course", classElement.attributeValue("subject") + " " + classElement.attributeValue("courseNbr")) + " " +
-            					classElement.attributeValue("type") + " " + classElement.attributeValue("suffix"))) + " not found.");
-            			continue;
-            		}
-            		
-            		if (clazz != null) {
-            			Set<CourseOffering> coursesThisClass = class2courses.get(clazz.getUniqueId());
-            			if (course == null && courses != null)
-            				for (CourseOffering co: courses)
-                				if (co.isIsControl() && coursesThisClass.contains(co))
-                					{ course = co; break; }
-            			if (course == null && courses != null)
-            				for (CourseOffering co: courses)
-                				if (coursesThisClass.contains(co))
-                					{ course = co; break; }
-            			if (course == null || !coursesThisClass.contains(course)) {
-            				for (CourseOffering co: coursesThisClass)
-                				if (co.isIsControl())
-                					{ course = co; break; }
-            			}
-            			selected.add(new Enrollment(course, clazz));
-            		} else {
-            			classes: for (Class_ c: classes) {
-            				Set<CourseOffering> coursesThisClass = class2courses.get(c.getUniqueId());
-            				if (course != null) {
-            					if (coursesThisClass.contains(course))
-            						selected.add(new Enrollment(course, c));
-            				} else {
-            					for (CourseOffering co: courses) {
-            						if (coursesThisClass.contains(co) && co.isIsControl()) {
-            							selected.add(new Enrollment(co, c));
-            							continue classes;
-            						}
-            					}
-            					for (CourseOffering co: courses) {
-            						if (coursesThisClass.contains(co)) {
-            							selected.add(new Enrollment(co, c));
-            								continue classes;
-            						}
-            					}
-            				}
-            			}
-            		}
-            	}
-            	
-            	Set<Enrollment> imported = new HashSet<Enrollment>();
-            	for (Enrollment e: selected) {
-            		if (!imported.add(e)) continue; // skip duplicates
-            		Class_ clazz = e.getClazz();
-            		CourseOffering course = e.getCourse();
-            		StudentClassEnrollment enrollment = enrollments.remove(new Pair(course.getUniqueId(), clazz.getUniqueId()));
-            		if (enrollment == null) {
-                		enrollment = new StudentClassEnrollment();
-                		enrollment.setStudent(student);
-                		enrollment.setClazz(clazz);
-                		enrollment.setCourseOffering(course);
-                		enrollment.setTimestamp(ts);
-                		enrollment.setChangedBy(StudentClassEnrollment.SystemChange.IMPORT.toString());
-                		student.getClassEnrollments().add(enrollment);
-                		
-                		demands: for (CourseDemand d: student.getCourseDemands()) {
-                			for (CourseRequest r: d.getCourseRequests()) {
-                				if (r.getCourseOffering().equals(course)) {
-                					enrollment.setCourseRequest(r);
-                					break demands;
-                				}
-                			}
-                		}
-                		
-                		if (student.getUniqueId() != null) updatedStudents.add(student.getUniqueId());
-            		}
-            		
-            		if (enrollment.getCourseRequest() != null) {
-            			remaining.remove(enrollment.getCourseRequest().getCourseDemand());
-            			CourseOffering assigned = courseAssignments.get(enrollment.getCourseRequest().getCourseDemand());
-            			if (assigned == null) {
-                			courseAssignments.put(enrollment.getCourseRequest().getCourseDemand(), course);
-            			} else if (!course.equals(assigned)) {
-            				// course demand has been already removed -> need to split the course demand
-            				enrollment.getCourseRequest().getCourseDemand().getCourseRequests().remove(enrollment.getCourseRequest());
-            				CourseDemand cd = new CourseDemand();
-                			cd.setTimestamp(ts);
-                			cd.setCourseRequests(new HashSet<CourseRequest>());
-                			cd.setEnrollmentMessages(new HashSet<StudentEnrollmentMessage>());
-                			cd.setStudent(student);
-                			student.getCourseDemands().add(cd);
-                			cd.setAlternative(false);
-                			cd.setPriority(nextPriority++);
-                			cd.setWaitlist(false);
-                			cd.setNoSub(false);
-                			enrollment.getCourseRequest().setCourseDemand(cd);
-                			cd.getCourseRequests().add(enrollment.getCourseRequest());
-                			fixCourseDemands = true;
-                			if (student.getUniqueId() != null) updatedStudents.add(student.getUniqueId());
-            			}
-            			for (Iterator<StudentEnrollmentMessage> j = enrollment.getCourseRequest().getCourseDemand().getEnrollmentMessages().iterator(); j.hasNext(); ) {
-            				StudentEnrollmentMessage message = j.next();
-            				getHibSession().delete(message);
-            				j.remove();
-            			}
-            		} else {
-            			CourseDemand cd = new CourseDemand();
-    					cd.setTimestamp(ts);
-    					cd.setCourseRequests(new HashSet<CourseRequest>());
-    					cd.setEnrollmentMessages(new HashSet<StudentEnrollmentMessage>());
-    					cd.setStudent(student);
-    					student.getCourseDemands().add(cd);
-    					cd.setAlternative(false);
-    					cd.setPriority(nextPriority++);
-    					cd.setWaitlist(false);
-    					cd.setNoSub(false);
-    					CourseRequest cr = new CourseRequest();
-						cd.getCourseRequests().add(cr);
-						cr.setCourseDemand(cd);
-						cr.setCourseRequestOptions(new HashSet<CourseRequestOption>());
-						cr.setAllowOverlap(false);
-						cr.setCredit(0);
-						cr.setOrder(0);
-						cr.setCourseOffering(enrollment.getCourseOffering());
-						enrollment.setCourseRequest(cr);
-						cr.getClassEnrollments().add(enrollment);
-						fixCourseDemands = true;
-						if (student.getUniqueId() != null) updatedStudents.add(student.getUniqueId());
-            		}
-            	}
-            	
-            	if (!enrollments.isEmpty()) {
-            		for (StudentClassEnrollment enrollment: enrollments.values()) {
-            			student.getClassEnrollments().remove(enrollment);
-            			getHibSession().delete(enrollment);
-                		updatedStudents.add(student.getUniqueId());
-            		}
-            	}
-
-            	if (student.getUniqueId() == null) {
-            		updatedStudents.add((Long)getHibSession().save(student));
-            	} else {
-            		getHibSession().update(student);
-            	}
-            	
-            	if (fixCourseDemands) {
-            		// removed unused course demands (only when not in the registration mode)
-            		if (student.getSession().getStatusType() == null || !student.getSession().getStatusType().canPreRegisterStudents())
-                		for (CourseDemand cd: remaining) {
-                			if (cd.getFreeTime() != null)
-                				getHibSession().delete(cd.getFreeTime());
-                			for (CourseRequest cr: cd.getCourseRequests())
-                				getHibSession().delete(cr);
-                			student.getCourseDemands().remove(cd);
-                			getHibSession().delete(cd);
-                		}
-            		int priority = 0;
-            		for (CourseDemand cd: new TreeSet<CourseDemand>(student.getCourseDemands())) {
-            			cd.setPriority(priority++);
-            			getHibSession().saveOrUpdate(cd);
-            		}
-            	}
-
+	            importStudent(studentElement, externalId, students.remove(externalId));
 	        }
  	        
-	        if (!incremental)
-	 	        for (Student student: students.values()) {
-	        		for (Iterator<StudentClassEnrollment> i = student.getClassEnrollments().iterator(); i.hasNext(); ) {
-	        			StudentClassEnrollment enrollment = i.next();
-	        			getHibSession().delete(enrollment);
-	        			i.remove();
-	     	        	updatedStudents.add(student.getUniqueId());
-	        		}
-	        		getHibSession().update(student);
-	 	        }
+	        if (!iIncremental)
+	 	        for (Student student: students.values())
+	 	        	removeEnrollments(student);
  	        
-            info(updatedStudents.size() + " students changed");
-
- 	        if (!updatedStudents.isEmpty())
- 	 	        StudentSectioningQueue.studentChanged(getHibSession(), null, session.getUniqueId(), updatedStudents);
-            
-            commitTransaction();
+	        finish();
+		} catch (Exception e) {
+			fatal("Exception: " + e.getMessage(), e);
+			rollbackTransaction();
+			throw e;
+		}
+		
+		updateExamConflicts();
+	}
+	
+	@Override
+	public boolean isStreamingSupported() {
+		return true;
+	}
+	
+	/**
+	 * Streaming import: student elements are read in chunks, the students of each chunk are loaded together
+	 * and the Hibernate session is flushed and cleared after each chunk so that the memory use does not
+	 * depend on the size of the imported file.
+	 */
+	@Override
+	public void loadXml(XMLStreamReader reader) throws Exception {
+		Element rootElement = readStartElement(reader);
+        if (!rootElement.getName().equalsIgnoreCase("studentEnrollments"))
+        	throw new Exception("Given XML file is not a Student Enrollments load file.");
+        
+		try {
+	        beginTransaction();
+	        
+	        setup(rootElement);
+	        
+	        info("Importing enrollments...");
+	        int chunkSize = Math.max(1, Math.min(1000, ApplicationProperty.DataExchangeStreamingChunkSize.intValue()));
+	        Set<String> importedIds = new HashSet<String>();
+	        Map<String, Element> chunk = new LinkedHashMap<String, Element>();
+	        while (nextChildElement(reader)) {
+	        	if (!"student".equals(reader.getLocalName())) {
+	        		skipElement(reader);
+	        		continue;
+	        	}
+	        	Element studentElement = readElement(reader);
+	        	
+	            String externalId = getExternalId(studentElement);
+	            if (externalId == null) continue;
+	            
+	            if (chunk.containsKey(externalId)) {
+	            	importStudents(chunk);
+	            	chunk.clear();
+	            }
+	            chunk.put(externalId, studentElement);
+	            importedIds.add(externalId);
+	            if (chunk.size() >= chunkSize) {
+	            	importStudents(chunk);
+	            	chunk.clear();
+	            }
+	        }
+	        if (!chunk.isEmpty())
+	        	importStudents(chunk);
+	        
+	        if (!iIncremental) {
+	        	List<Long> studentIds = new ArrayList<Long>();
+	        	for (Object[] o: (List<Object[]>)getHibSession().createQuery(
+	        			"select distinct s.uniqueId, s.externalUniqueId from Student s inner join s.classEnrollments e " +
+	        			"where s.session.uniqueId=:sessionId and s.externalUniqueId is not null").
+	        			setLong("sessionId",iSession.getUniqueId()).list()) {
+	        		if (!importedIds.contains((String)o[1]))
+	        			studentIds.add((Long)o[0]);
+	        	}
+	        	for (int i = 0; i < studentIds.size(); i += chunkSize) {
+	        		for (Student student: (List<Student>)getHibSession().createQuery(
+	        				"select distinct s from Student s left join fetch s.classEnrollments as e where s.uniqueId in (:studentIds)").
+	        				setParameterList("studentIds", studentIds.subList(i, Math.min(i + chunkSize, studentIds.size()))).list())
+	        			removeEnrollments(student);
+	        		flush(false);
+	        	}
+	        }
+	        
+	        finish();
 		} catch (Exception e) {
 			fatal("Exception: " + e.getMessage(), e);
 			rollbackTransaction();
 			throw e;
 		}
 		
-        if (session!=null && ApplicationProperty.DataExchangeUpdateStudentConflictsFinal.isTrue()) {
+		updateExamConflicts();
+	}
+	
+	protected void importStudents(Map<String, Element> chunk) {
+		Hashtable<String, Student> students = new Hashtable<String, Student>();
+		for (Student student: (List<Student>)getHibSession().createQuery(
+				"select distinct s from Student s " +
+				"left join fetch s.courseDemands as cd " +
+				"left join fetch cd.courseRequests as cr " +
+				"left join fetch s.classEnrollments as e " +
+				"where s.session.uniqueId=:sessionId and s.externalUniqueId in (:externalIds)").
+				setLong("sessionId",iSession.getUniqueId()).setParameterList("externalIds", chunk.keySet()).list()) { 
+			students.put(student.getExternalUniqueId(), student);
+		}
+		for (Map.Entry<String, Element> e: chunk.entrySet())
+			importStudent(e.getValue(), e.getKey(), students.remove(e.getKey()));
+		// write the changes of this chunk (in JDBC batches) and release the loaded entities
+		flush(false);
+	}
+	
+	protected void setup(Element rootElement) throws Exception {
+		iTrimLeadingZerosFromExternalId = ApplicationProperty.DataExchangeTrimLeadingZerosFromExternalIds.isTrue();
+		String campus = rootElement.attributeValue("campus");
+		String year   = rootElement.attributeValue("year");
+		String term   = rootElement.attributeValue("term");
+		String created = rootElement.attributeValue("created");
+		iIncremental = "true".equals(rootElement.attributeValue("incremental", "false"));
+		iUpdatedStudents = new HashSet<Long>();
+		iTimeStamp = new Date();
+		
+		iSession = Session.getSessionUsingInitiativeYearTerm(campus, year, term);
+		
+		if(iSession == null)
+		   	throw new Exception("No session found for the given campus, year, and term.");
+		
+		// removed unused course demands only when not in the registration mode
+		iRemoveUnusedCourseDemands = (iSession.getStatusType() == null || !iSession.getStatusType().canPreRegisterStudents());
+		
+		iExtId2class = new HashMap<String, Set<Class_>>();
+		iName2class = new HashMap<String, Class_>();
+		iId2class = new HashMap<Long, Class_>();
+		iExtId2course = new HashMap<String, Set<CourseOffering>>();
+		iName2course = new HashMap<String, CourseOffering>();
+		iCExtId2course = new HashMap<String, CourseOffering>();
+		iCName2course = new HashMap<String, CourseOffering>();
+		iClass2courses = new HashMap<Long, Set<CourseOffering>>();
+		
+		info("Loading classes...");
+		for (Object[] o: (List<Object[]>)getHibSession().createQuery(
+				"select c, co from Class_ c inner join c.schedulingSubpart.instrOfferingConfig.instructionalOffering.courseOfferings co where " +
+				"c.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId")
+				.setLong("sessionId", iSession.getUniqueId()).list()) {
+			Class_ clazz = (Class_)o[0];
+			CourseOffering course = (CourseOffering)o[1];
+			String extId = clazz.getExternalId(course);
+			if (extId != null && !extId.isEmpty()) {
+				Set<Class_> sameExtIdClasses = iExtId2class.get(extId);
+				if (sameExtIdClasses == null) {
+					sameExtIdClasses = new HashSet<Class_>();
+					iExtId2class.put(extId, sameExtIdClasses);
+				}
+				sameExtIdClasses.add(clazz);
+			}
+			String name = course.getCourseName() + " " + clazz.getItypeDesc().trim() + " " + getClassSuffix(clazz);
+			iName2class.put(name, clazz);
+			iName2course.put(name, course);
+			iId2class.put(clazz.getUniqueId(), clazz);
+			if (extId != null && !extId.isEmpty()) {
+				Set<CourseOffering> sameExtIdCourses = iExtId2course.get(extId);
+				if (sameExtIdCourses == null) {
+					sameExtIdCourses = new HashSet<CourseOffering>();
+					iExtId2course.put(extId, sameExtIdCourses);
+				}
+				sameExtIdCourses.add(course);
+			}
+			Set<CourseOffering> courses = iClass2courses.get(clazz.getUniqueId());
+			if (course.getExternalUniqueId() != null && !course.getExternalUniqueId().isEmpty())
+				iCExtId2course.put(course.getExternalUniqueId(), course);
+			iCName2course.put(course.getCourseName(), course);
+			if (courses == null) {
+				courses = new HashSet<CourseOffering>();
+				iClass2courses.put(clazz.getUniqueId(), courses);
+			}
+			courses.add(course);
+		}
+		
+		if (created != null)
+			ChangeLog.addChange(getHibSession(), getManager(), iSession, iSession, created, ChangeLog.Source.DATA_IMPORT_STUDENT_ENROLLMENTS, ChangeLog.Operation.UPDATE, null, null);
+	}
+	
+	protected String getExternalId(Element studentElement) {
+		String externalId = studentElement.attributeValue("externalId");
+		if (externalId == null) return null;
+		while (iTrimLeadingZerosFromExternalId && externalId.startsWith("0")) externalId = externalId.substring(1);
+		return externalId;
+	}
+	
+	protected Student importStudent(Element studentElement, String externalId, Student student) {
+		boolean fixCourseDemands = false;
+		
+		if (student == null) {
+			student = new Student();
+			student.setSession(iSession);
+			student.setFirstName(studentElement.attributeValue("firstName", "Name"));
+			student.setMiddleName(studentElement.attributeValue("middleName"));
+			student.setLastName(studentElement.attributeValue("lastName", "Unknown"));
+			student.setEmail(studentElement.attributeValue("email"));
+			student.setExternalUniqueId(externalId);
+			student.setFreeTimeCategory(0);
+			student.setSchedulePreference(0);
+			student.setClassEnrollments(new HashSet<StudentClassEnrollment>());
+			student.setCourseDemands(new HashSet<CourseDemand>());
+		}
+		
+		Hashtable<Pair, StudentClassEnrollment> enrollments = new Hashtable<Pair, StudentClassEnrollment>();
+		for (StudentClassEnrollment enrollment: student.getClassEnrollments()) {
+			enrollments.put(new Pair(enrollment.getCourseOffering().getUniqueId(), enrollment.getClazz().getUniqueId()), enrollment);
+		}
+		int nextPriority = 0;
+		for (CourseDemand cd: student.getCourseDemands())
+			if (!cd.isAlternative() && cd.getPriority() >= nextPriority)
+				nextPriority = cd.getPriority() + 1;
+		Set<CourseDemand> remaining = new HashSet<CourseDemand>(student.getCourseDemands());
+		Map<CourseDemand, CourseOffering> courseAssignments = new HashMap<CourseDemand, CourseOffering>();
+		
+		List<Enrollment> selected = new ArrayList<Enrollment>();
+		for (Iterator j = studentElement.elementIterator("class"); j.hasNext(); ) {
+			Element classElement = (Element) j.next();
+			
+			Class_ clazz = null;
+			CourseOffering course = null;
+			Set<Class_> classes = null;
+			Set<CourseOffering> courses = null;
+			
+			if (clazz == null && classElement.attributeValue("id") != null)
+				clazz = iId2class.get(Long.valueOf(classElement.attributeValue("id")));
+			
+			String classExternalId  = classElement.attributeValue("externalId");
+			if (clazz == null && classExternalId != null) {
+				classes = iExtId2class.get(classExternalId);
+				courses = iExtId2course.get(classExternalId);
+				if (classes == null) {
+					clazz = iName2class.get(classExternalId);
+					course = iName2course.get(classExternalId);
+				} else {
+					if (classes.size() == 1)
+						clazz = classes.iterator().next();
+					if (courses.size() == 1)
+						course = courses.iterator().next();
+				}
+			}
+			
+			if (clazz == null && classElement.attributeValue("name") != null) {
+				String className = classElement.attributeValue("name");
+				clazz = iName2class.get(className);
+				course = iName2course.get(className);
+			}
+			
+			if (course == null && classElement.attributeValue("courseId") != null)
+				course = iCExtId2course.get(classElement.attributeValue("courseId"));
+			
+			if (course == null) {
+				String courseName = classElement.attributeValue("course");
+				if (courseName != null) {
+					course = iCName2course.get(courseName);
+				} else {
+					String subject = classElement.attributeValue("subject");
+					String courseNbr = classElement.attributeValue("courseNbr");
+					if (subject != null && courseNbr != null)
+						course = iCName2course.get(subject + " " + courseNbr);
+				}
+			}
+			
+			if (course != null  && clazz == null) {
+				String type = classElement.attributeValue("type");
+				String suffix = classElement.attributeValue("suffix");
+				if (type != null && suffix != null)
+					clazz = iName2class.get(course.getCourseName() + " " + type.trim() + " " + suffix);
+			}
+			
+			if (clazz == null && classes == null) {
+				warn("Class " + (classExternalId != null ? classExternalId : classElement.attributeValue("name",
+						classElement.attributeValue("course", classElement.attributeValue("subject") + " " + classElement.attributeValue("courseNbr")) + " " +
+						classElement.attributeValue("type") + " " + classElement.attributeValue("suffix"))) + " not found.");
+				continue;
+			}
+			
+			if (clazz != null) {
+				Set<CourseOffering> coursesThisClass = iClass2courses.get(clazz.getUniqueId());
+				if (course == null && courses != null)
+					for (CourseOffering co: courses)
+						if (co.isIsControl() && coursesThisClass.contains(co))
+							{ course = co; break; }
+				if (course == null && courses != null)
+					for (CourseOffering co: courses)
+						if (coursesThisClass.contains(co))
+							{ course = co; break; }
+				if (course == null || !coursesThisClass.contains(course)) {
+					for (CourseOffering co: coursesThisClass)
+						if (co.isIsControl())
+							{ course = co; break; }
+				}
+				selected.add(new Enrollment(course, clazz));
+			} else {
+				classes: for (Class_ c: classes) {
+					Set<CourseOffering> coursesThisClass = iClass2courses.get(c.getUniqueId());
+					if (course != null) {
+						if (coursesThisClass.contains(course))
+							selected.add(new Enrollment(course, c));
+					} else {
+						for (CourseOffering co: courses) {
+							if (coursesThisClass.contains(co) && co.isIsControl()) {
+								selected.add(new Enrollment(co, c));
+								continue classes;
+							}
+						}
+						for (CourseOffering co: courses) {
+							if (coursesThisClass.contains(co)) {
+								selected.add(new Enrollment(co, c));
+									continue classes;
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		Set<Enrollment> imported = new HashSet<Enrollment>();
+		for (Enrollment e: selected) {
+			if (!imported.add(e)) continue; // skip duplicates
+			Class_ clazz = e.getClazz();
+			CourseOffering course = e.getCourse();
+			StudentClassEnrollment enrollment = enrollments.remove(new Pair(course.getUniqueId(), clazz.getUniqueId()));
+			if (enrollment == null) {
+				enrollment = new StudentClassEnrollment();
+				enrollment.setStudent(student);
+				enrollment.setClazz(clazz);
+				enrollment.setCourseOffering(course);
+				enrollment.setTimestamp(iTimeStamp);
+				enrollment.setChangedBy(StudentClassEnrollment.SystemChange.IMPORT.toString());
+				student.getClassEnrollments().add(enrollment);
+				
+				demands: for (CourseDemand d: student.getCourseDemands()) {
+					for (CourseRequest r: d.getCourseRequests()) {
+						if (r.getCourseOffering().equals(course)) {
+							enrollment.setCourseRequest(r);
+							break demands;
+						}
+					}
+				}
+				
+				if (student.getUniqueId() != null) iUpdatedStudents.add(student.getUniqueId());
+			}
+			
+			if (enrollment.getCourseRequest() != null) {
+				remaining.remove(enrollment.getCourseRequest().getCourseDemand());
+				CourseOffering assigned = courseAssignments.get(enrollment.getCourseRequest().getCourseDemand());
+				if (assigned == null) {
+					courseAssignments.put(enrollment.getCourseRequest().getCourseDemand(), course);
+				} else if (!course.equals(assigned)) {
+					// course demand has been already removed -> need to split the course demand
+					enrollment.getCourseRequest().getCourseDemand().getCourseRequests().remove(enrollment.getCourseRequest());
+					CourseDemand cd = new CourseDemand();
+					cd.setTimestamp(iTimeStamp);
+					cd.setCourseRequests(new HashSet<CourseRequest>());
+					cd.setEnrollmentMessages(new HashSet<StudentEnrollmentMessage>());
+					cd.setStudent(student);
+					student.getCourseDemands().add(cd);
+					cd.setAlternative(false);
+					cd.setPriority(nextPriority++);
+					cd.setWaitlist(false);
+					cd.setNoSub(false);
+					enrollment.getCourseRequest().setCourseDemand(cd);
+					cd.getCourseRequests().add(enrollment.getCourseRequest());
+					fixCourseDemands = true;
+					if (student.getUniqueId() != null) iUpdatedStudents.add(student.getUniqueId());
+				}
+				for (Iterator<StudentEnrollmentMessage> j = enrollment.getCourseRequest().getCourseDemand().getEnrollmentMessages().iterator(); j.hasNext(); ) {
+					StudentEnrollmentMessage message = j.next();
+					getHibSession().delete(message);
+					j.remove();
+				}
+			} else {
+				CourseDemand cd = new CourseDemand();
+				cd.setTimestamp(iTimeStamp);
+				cd.setCourseRequests(new HashSet<CourseRequest>());
+				cd.setEnrollmentMessages(new HashSet<StudentEnrollmentMessage>());
+				cd.setStudent(student);
+				student.getCourseDemands().add(cd);
+				cd.setAlternative(false);
+				cd.setPriority(nextPriority++);
+				cd.setWaitlist(false);
+				cd.setNoSub(false);
+				CourseRequest cr = new CourseRequest();
+				cd.getCourseRequests().add(cr);
+				cr.setCourseDemand(cd);
+				cr.setCourseRequestOptions(new HashSet<CourseRequestOption>());
+				cr.setAllowOverlap(false);
+				cr.setCredit(0);
+				cr.setOrder(0);
+				cr.setCourseOffering(enrollment.getCourseOffering());
+				enrollment.setCourseRequest(cr);
+				cr.getClassEnrollments().add(enrollment);
+				fixCourseDemands = true;
+				if (student.getUniqueId() != null) iUpdatedStudents.add(student.getUniqueId());
+			}
+		}
+		
+		if (!enrollments.isEmpty()) {
+			for (StudentClassEnrollment enrollment: enrollments.values()) {
+				student.getClassEnrollments().remove(enrollment);
+				getHibSession().delete(enrollment);
+				iUpdatedStudents.add(student.getUniqueId());
+			}
+		}
+		
+		if (student.getUniqueId() == null) {
+			iUpdatedStudents.add((Long)getHibSession().save(student));
+		} else {
+			getHibSession().update(student);
+		}
+		
+		if (fixCourseDemands) {
+			// removed unused course demands (only when not in the registration mode)
+			if (iRemoveUnusedCourseDemands)
+				for (CourseDemand cd: remaining) {
+					if (cd.getFreeTime() != null)
+						getHibSession().delete(cd.getFreeTime());
+					for (CourseRequest cr: cd.getCourseRequests())
+						getHibSession().delete(cr);
+					student.getCourseDemands().remove(cd);
+					getHibSession().delete(cd);
+				}
+			int priority = 0;
+			for (CourseDemand cd: new TreeSet<CourseDemand>(student.getCourseDemands())) {
+				cd.setPriority(priority++);
+				getHibSession().saveOrUpdate(cd);
+			}
+		}
+		
+		return student;
+	}
+	
+	protected void removeEnrollments(Student student) {
+		for (Iterator<StudentClassEnrollment> i = student.getClassEnrollments().iterator(); i.hasNext(); ) {
+			StudentClassEnrollment enrollment = i.next();
+			getHibSession().delete(enrollment);
+			i.remove();
+			iUpdatedStudents.add(student.getUniqueId());
+		}
+		getHibSession().update(student);
+	}
+	
+	protected void finish() {
+		info(iUpdatedStudents.size() + " students changed");
+
+		if (!iUpdatedStudents.isEmpty())
+			StudentSectioningQueue.studentChanged(getHibSession(), null, iSession.getUniqueId(), iUpdatedStudents);
+		
+		commitTransaction();
+	}
+	
+	protected void updateExamConflicts() {
+        if (iSession != null && ApplicationProperty.DataExchangeUpdateStudentConflictsFinal.isTrue()) {
             try {
                 beginTransaction();
                 for (ExamType type: ExamType.findAllOfType(ExamType.sExamTypeFinal))
-                	new UpdateExamConflicts(this).update(session.getUniqueId(), type.getUniqueId(), getHibSession());
+                	new UpdateExamConflicts(this).update(iSession.getUniqueId(), type.getUniqueId(), getHibSession());
                 commitTransaction();
             } catch (Exception e) {
                 fatal("Exception: " + e.getMessage(), e);
@@ -432,11 +568,11 @@ public class StudentEnrollmentImport extends BaseImport {
             }
         }
 
-        if (session!=null && ApplicationProperty.DataExchangeUpdateStudentConflictsMidterm.isTrue()) {
+        if (iSession != null && ApplicationProperty.DataExchangeUpdateStudentConflictsMidterm.isTrue()) {
             try {
                 beginTransaction();
                 for (ExamType type: ExamType.findAllOfType(ExamType.sExamTypeMidterm))
-                	new UpdateExamConflicts(this).update(session.getUniqueId(), type.getUniqueId(), getHibSession());
+                	new UpdateExamConflicts(this).update(iSession.getUniqueId(), type.getUniqueId(), getHibSession());
                 commitTransaction();
             } catch (Exception e) {
                 fatal("Exception: " + e.getMessage(), e);
@@ -19,15 +19,19 @@
 */
 package org.unitime.timetable.dataexchange;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import javax.xml.stream.XMLStreamReader;
+
 import org.cpsolver.ifs.util.ToolBox;
 import org.dom4j.Element;
 import org.unitime.timetable.defaults.ApplicationProperty;
@@ -54,6 +58,17 @@ import org.unitime.timetable.model.StudentSectioningQueue;
  */
 public class StudentImport extends BaseImport {
 
+	private Map<String, AcademicArea> iAbbv2area;
+	private Map<String, AcademicClassification> iCode2clasf;
+	private Map<String, PosMajor> iCode2major;
+	private Map<String, PosMajorConcentration> iCode2concentration;
+	private Map<String, Degree> iCode2degree;
+	private Map<String, Program> iCode2program;
+	private Map<String, Campus> iCode2campus;
+	private Map<String, PosMinor> iCode2minor;
+	private Map<String, StudentGroup> iCode2group;
+	private Map<String, StudentAccomodation> iCode2accomodation;
+
 	public StudentImport() {
 		super();
 	}
@@ -87,68 +102,7 @@ public class StudentImport extends BaseImport {
 	        	students.put(student.getExternalUniqueId(), student);
 	        }
 	        
-            Map<String, AcademicArea> abbv2area = new Hashtable<String, AcademicArea>();
-            for (AcademicArea area: (List<AcademicArea>)getHibSession().createQuery(
-            		"from AcademicArea where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	abbv2area.put(area.getAcademicAreaAbbreviation(), area);
-            }
-
-            Map<String, AcademicClassification> code2clasf = new Hashtable<String, AcademicClassification>();
-            for (AcademicClassification clasf: (List<AcademicClassification>)getHibSession().createQuery(
-            		"from AcademicClassification where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	code2clasf.put(clasf.getCode(), clasf);
-            }
-            
-            Map<String, PosMajor> code2major = new Hashtable<String, PosMajor>();
-            for (PosMajor major: (List<PosMajor>)getHibSession().createQuery(
-            		"from PosMajor where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	for (AcademicArea area: major.getAcademicAreas())
-            		code2major.put(area.getAcademicAreaAbbreviation() + ":" + major.getCode(), major);
-            }
-            
-            Map<String, PosMajorConcentration> code2concentration = new Hashtable<String, PosMajorConcentration>();
-            for (PosMajorConcentration conc: (List<PosMajorConcentration>)getHibSession().createQuery(
-            		"from PosMajorConcentration where major.session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	for (AcademicArea area: conc.getMajor().getAcademicAreas())
-            		code2concentration.put(area.getAcademicAreaAbbreviation() + ":" + conc.getMajor().getCode() + ":" + conc.getCode(), conc);
-            }
-            
-            Map<String, Degree> code2degree = new Hashtable<String, Degree>();
-            for (Degree deg: (List<Degree>)getHibSession().createQuery(
-            		"from Degree where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	code2degree.put(deg.getReference(), deg);
-            }
-            
-            Map<String, Program> code2program = new Hashtable<String, Program>();
-            for (Program prog: (List<Program>)getHibSession().createQuery(
-            		"from Program where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	code2program.put(prog.getReference(), prog);
-            }
-            
-            Map<String, Campus> code2campus = new Hashtable<String, Campus>();
-            for (Campus camp: (List<Campus>)getHibSession().createQuery(
-            		"from Campus where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	code2campus.put(camp.getReference(), camp);
-            }
-            
-            Map<String, PosMinor> code2minor = new Hashtable<String, PosMinor>();
-            for (PosMinor minor: (List<PosMinor>)getHibSession().createQuery(
-            		"from PosMinor where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	for (AcademicArea area: minor.getAcademicAreas())
-            		code2minor.put(area.getAcademicAreaAbbreviation() + ":" + minor.getCode(), minor);
-            }
-
-            Map<String, StudentGroup> code2group = new Hashtable<String, StudentGroup>();
-            for (StudentGroup group: (List<StudentGroup>)getHibSession().createQuery(
-            		"from StudentGroup where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	code2group.put(group.getGroupAbbreviation(), group);
-            }
-            
-            Map<String, StudentAccomodation> code2accomodation = new Hashtable<String, StudentAccomodation>();
-            for (StudentAccomodation accomodation: (List<StudentAccomodation>)getHibSession().createQuery(
-            		"from StudentAccomodation where session.uniqueId=:sessionId").setLong("sessionId", session.getUniqueId()).list()) {
-            	code2accomodation.put(accomodation.getAbbreviation(), accomodation);
-            }
+	        loadReferences(session.getUniqueId());
 	        
 	        Set<Long> updatedStudents = new HashSet<Long>(); 
 	        
@@ -160,7 +114,7 @@ public class StudentImport extends BaseImport {
 	            while (trimLeadingZerosFromExternalId && externalId.startsWith("0")) externalId = externalId.substring(1);
 
 	            importStudent(element, externalId, students, session, updatedStudents,
-	            		abbv2area, code2clasf, code2major, code2minor, code2group, code2accomodation, code2concentration, code2degree, code2program, code2campus);
+	            		iAbbv2area, iCode2clasf, iCode2major, iCode2minor, iCode2group, iCode2accomodation, iCode2concentration, iCode2degree, iCode2program, iCode2campus);
 	        }
 
 	        if (!incremental)
@@ -182,6 +136,179 @@ public class StudentImport extends BaseImport {
 		}
 	}
 	
+	@Override
+	public boolean isStreamingSupported() {
+		return true;
+	}
+	
+	/**
+	 * Streaming import: student elements are read and imported in chunks, the Hibernate session is flushed and cleared
+	 * after each chunk so that the memory use does not depend on the size of the imported file.
+	 */
+	@Override
+	public void loadXml(XMLStreamReader reader) throws Exception {
+		Element rootElement = readStartElement(reader);
+		try {
+			boolean trimLeadingZerosFromExternalId = ApplicationProperty.DataExchangeTrimLeadingZerosFromExternalIds.isTrue();
+			
+	        String campus = rootElement.attributeValue("campus");
+	        String year   = rootElement.attributeValue("year");
+	        String term   = rootElement.attributeValue("term");
+	        boolean incremental = "true".equals(rootElement.attributeValue("incremental", "false"));
+
+	        Session session = Session.getSessionUsingInitiativeYearTerm(campus, year, term);
+	        if(session == null)
+	           	throw new Exception("No session found for the given campus, year, and term.");
+	        
+	        if (incremental) {
+	        	info("Incremental mode enabled: only included students will be updated.");
+	        } else {
+	        	info("Incremental mode disabled: students not included in this file will be deleted.");
+	        }
+
+			beginTransaction();
+			
+	        loadReferences(session.getUniqueId());
+	        
+	        Set<Long> updatedStudents = new HashSet<Long>();
+	        Set<String> importedIds = new HashSet<String>();
+	        int chunkSize = Math.max(1, Math.min(1000, ApplicationProperty.DataExchangeStreamingChunkSize.intValue()));
+	        Map<String, Element> chunk = new LinkedHashMap<String, Element>();
+	        while (nextChildElement(reader)) {
+	            Element element = readElement(reader);
+
+	            String externalId = element.attributeValue("externalId");
+	            if (externalId == null) continue;
+	            while (trimLeadingZerosFromExternalId && externalId.startsWith("0")) externalId = externalId.substring(1);
+	            
+	            if (chunk.containsKey(externalId)) {
+	            	importStudents(chunk, session, updatedStudents);
+	            	chunk.clear();
+	            }
+	            chunk.put(externalId, element);
+	            importedIds.add(externalId);
+	            if (chunk.size() >= chunkSize) {
+	            	importStudents(chunk, session, updatedStudents);
+	            	chunk.clear();
+	            }
+	        }
+	        if (!chunk.isEmpty())
+	        	importStudents(chunk, session, updatedStudents);
+
+	        if (!incremental) {
+	        	List<Long> studentIds = new ArrayList<Long>();
+	        	for (Object[] o: (List<Object[]>)getHibSession().createQuery(
+	        			"select s.uniqueId, s.externalUniqueId from Student s where s.session.uniqueId=:sessionId and s.externalUniqueId is not null").
+	        			setLong("sessionId",session.getUniqueId()).list()) {
+	        		if (!importedIds.contains((String)o[1]))
+	        			studentIds.add((Long)o[0]);
+	        	}
+	        	for (int i = 0; i < studentIds.size(); i += chunkSize) {
+	        		for (Student student: (List<Student>)getHibSession().createQuery(
+	        				"from Student s where s.uniqueId in (:studentIds)").
+	        				setParameterList("studentIds", studentIds.subList(i, Math.min(i + chunkSize, studentIds.size()))).list()) {
+	        			updatedStudents.add(student.getUniqueId());
+	        			getHibSession().delete(student);
+	        		}
+	        		flush(false);
+	        	}
+	        }
+	        
+            info(updatedStudents.size() + " students changed");
+
+ 	        if (!updatedStudents.isEmpty())
+ 	 	        StudentSectioningQueue.studentChanged(getHibSession(), null, session.getUniqueId(), updatedStudents);
+            
+            commitTransaction();
+		} catch (Exception e) {
+			fatal("Exception: " + e.getMessage(), e);
+			rollbackTransaction();
+			throw e;
+		}
+	}
+	
+	protected void importStudents(Map<String, Element> chunk, Session session, Set<Long> updatedStudents) {
+        Hashtable<String, Student> students = new Hashtable<String, Student>();
+        for (Student student: (List<Student>)getHibSession().createQuery(
+        		"from Student s where s.session.uniqueId=:sessionId and s.externalUniqueId in (:externalIds)").
+                setLong("sessionId",session.getUniqueId()).setParameterList("externalIds", chunk.keySet()).list()) { 
+        	students.put(student.getExternalUniqueId(), student);
+        }
+        
+        for (Map.Entry<String, Element> e: chunk.entrySet())
+        	importStudent(e.getValue(), e.getKey(), students, session, updatedStudents,
+        			iAbbv2area, iCode2clasf, iCode2major, iCode2minor, iCode2group, iCode2accomodation, iCode2concentration, iCode2degree, iCode2program, iCode2campus);
+        
+        // write the changes of this chunk (in JDBC batches), release the loaded entities and reload the (now detached) reference data
+        flush(false);
+        loadReferences(session.getUniqueId());
+	}
+	
+	protected void loadReferences(Long sessionId) {
+		iAbbv2area = new Hashtable<String, AcademicArea>();
+		for (AcademicArea area: (List<AcademicArea>)getHibSession().createQuery(
+				"from AcademicArea where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			iAbbv2area.put(area.getAcademicAreaAbbreviation(), area);
+		}
+
+		iCode2clasf = new Hashtable<String, AcademicClassification>();
+		for (AcademicClassification clasf: (List<AcademicClassification>)getHibSession().createQuery(
+				"from AcademicClassification where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			iCode2clasf.put(clasf.getCode(), clasf);
+		}
+		
+		iCode2major = new Hashtable<String, PosMajor>();
+		for (PosMajor major: (List<PosMajor>)getHibSession().createQuery(
+				"from PosMajor where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			for (AcademicArea area: major.getAcademicAreas())
+				iCode2major.put(area.getAcademicAreaAbbreviation() + ":" + major.getCode(), major);
+		}
+		
+		iCode2concentration = new Hashtable<String, PosMajorConcentration>();
+		for (PosMajorConcentration conc: (List<PosMajorConcentration>)getHibSession().createQuery(
+				"from PosMajorConcentration where major.session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			for (AcademicArea area: conc.getMajor().getAcademicAreas())
+				iCode2concentration.put(area.getAcademicAreaAbbreviation() + ":" + conc.getMajor().getCode() + ":" + conc.getCode(), conc);
+		}
+		
+		iCode2degree = new Hashtable<String, Degree>();
+		for (Degree deg: (List<Degree>)getHibSession().createQuery(
+				"from Degree where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			iCode2degree.put(deg.getReference(), deg);
+		}
+		
+		iCode2program = new Hashtable<String, Program>();
+		for (Program prog: (List<Program>)getHibSession().createQuery(
+				"from Program where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			iCode2program.put(prog.getReference(), prog);
+		}
+		
+		iCode2campus = new Hashtable<String, Campus>();
+		for (Campus camp: (List<Campus>)getHibSession().createQuery(
+				"from Campus where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			iCode2campus.put(camp.getReference(), camp);
+		}
+		
+		iCode2minor = new Hashtable<String, PosMinor>();
+		for (PosMinor minor: (List<PosMinor>)getHibSession().createQuery(
+				"from PosMinor where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			for (AcademicArea area: minor.getAcademicAreas())
+				iCode2minor.put(area.getAcademicAreaAbbreviation() + ":" + minor.getCode(), minor);
+		}
+
+		iCode2group = new Hashtable<String, StudentGroup>();
+		for (StudentGroup group: (List<StudentGroup>)getHibSession().createQuery(
+				"from StudentGroup where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			iCode2group.put(group.getGroupAbbreviation(), group);
+		}
+		
+		iCode2accomodation = new Hashtable<String, StudentAccomodation>();
+		for (StudentAccomodation accomodation: (List<StudentAccomodation>)getHibSession().createQuery(
+				"from StudentAccomodation where session.uniqueId=:sessionId").setLong("sessionId", sessionId).list()) {
+			iCode2accomodation.put(accomodation.getAbbreviation(), accomodation);
+		}
+	}
+	
 	protected Student importStudent(Element element, String externalId, Hashtable<String, Student> students, Session session, Set<Long> updatedStudents,
 			Map<String, AcademicArea> abbv2area, Map<String, AcademicClassification> code2clasf, Map<String, PosMajor> code2major, Map<String, PosMinor> code2minor,
 			Map<String, StudentGroup> code2group, Map<String, StudentAccomodation> code2accomodation, Map<String, PosMajorConcentration> code2conc,
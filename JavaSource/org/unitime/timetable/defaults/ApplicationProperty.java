@@ -428,6 +428,13 @@ public enum ApplicationProperty {
 	@Parameter("operation")
 	SolverLogLevel("unitime.solver.log.level.%"),
 
+	@Values({"xml", "compact"})
+	@DefaultValue("xml")
+	@Description("Solver: format of the backup files of the % solver (% is course, exam, student, or instructor) that are used when a solver is passivated or when a solver server is restarted; xml for pretty-printed XML, compact for a compressed binary encoding of the same document (smaller files, but the whole document is still built in memory, so the memory needed for a backup or a restore is the same)")
+	@Parameter("solver type")
+	@Since(4.8)
+	SolverBackupFormat("unitime.solver.backup.format.%"),
+
 	@DefaultValue("#,##0.00")
 	@Description("Rooms: room area decimal format")
 	RoomAreaUnitsFormat("unitime.room.area.units.format"),
@@ -467,6 +474,12 @@ public enum ApplicationProperty {
 	@Description("Class Assignment: for student conflicts, use the actual student class enrollments or those that have been used by the solver (possible values none,auto,actual,solution)")
 	ClassAssignmentStudentConflictsType("tmtbl.classAssign.studentConflicts"),
 
+	@Type(Integer.class)
+	@DefaultValue("20000")
+	@Description("Class Assignment: maximal number of classes for which the assignments of a course timetabling solver are cached (the cache is shared by all requests for the same solution)")
+	@Since(4.8)
+	ClassAssignmentCacheSize("tmtbl.classAssign.cache.size"),
+
 	@Type(Boolean.class)
 	@DefaultValue("true")
 	@Description("Class Setup: display external ids")
@@ -569,6 +582,18 @@ public enum ApplicationProperty {
 	@Description("Student Enrollment Import: update examination student conflicts for midterm exams")
 	DataExchangeUpdateStudentConflictsMidterm("tmtbl.data.import.studentEnrl.midtermExam.updateConflicts"),
 
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Data Exchange: import large files (e.g., students and student enrollments) as a stream of elements instead of reading the whole XML document in memory first")
+	@Since(4.8)
+	DataExchangeStreamingImport("unitime.data.exchange.import.streaming"),
+
+	@Type(Integer.class)
+	@DefaultValue("500")
+	@Description("Data Exchange: number of elements (e.g., students) that are imported together when streaming import is used, the Hibernate session is flushed and cleared after each chunk (at most 1000)")
+	@Since(4.8)
+	DataExchangeStreamingChunkSize("unitime.data.exchange.import.chunkSize"),
+
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Time Patterns: set to true if used time patterns are to be editable during the initial data load (a session status that allows for roll forward)")
@@ -664,9 +689,27 @@ public enum ApplicationProperty {
 
 	@Type(Integer.class)
 	@DefaultValue("5000")
-	@Description("Online Student Scheduling Log: limit on the number of records held in memory (before persisted)")
+	@Description("Online Student Scheduling Log: limit on the number of records held in memory (before persisted), records over the limit are spilled into a local file")
 	OnlineSchedulingLogLimit("unitime.sectioning.log.limit"),
 
+	@Type(Integer.class)
+	@DefaultValue("500")
+	@Description("Online Student Scheduling Log: number of records persisted at once (records are persisted as soon as this many records are held in memory)")
+	@Since(4.8)
+	OnlineSchedulingLogBatchSize("unitime.sectioning.log.batchSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("60")
+	@Description("Online Student Scheduling Log: maximal time in seconds between two flushes of the records held in memory")
+	@Since(4.8)
+	OnlineSchedulingLogFlushInterval("unitime.sectioning.log.flushInterval"),
+	
+	@Type(Integer.class)
+	@DefaultValue("600")
+	@Description("Online Student Scheduling Log: maximal time in seconds to wait before the next attempt to persist the records after a failure (the delay starts at the flush interval and it is doubled with each failed attempt, the records are spilled into a local file in the meantime)")
+	@Since(4.8)
+	OnlineSchedulingLogRetryDelay("unitime.sectioning.log.retryDelay"),
+
 	@Description("Online Student Scheduling Log: besides of the database, also log the actions in the given file (if set)")
 	OnlineSchedulingLogFile("unitime.sectioning.log.file"),
 	
@@ -745,6 +788,12 @@ public enum ApplicationProperty {
 	@Description("Solver: wait for the room availabity to synchronize")
 	RoomAvailabilitySolverWaitForSync("tmtbl.room.availability.solver.waitForSync"),
 
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Room Availability: when greater than zero, the default room availability service does not reload its cache on activation (e.g., when a solver is being loaded) if it has been reloaded within the given number of seconds; committed changes of events and meetings are applied to the cache incrementally")
+	@Since(4.8)
+	RoomAvailabilityRefreshInterval("tmtbl.room.availability.refreshInterval"),
+
 	/**
 	 * If you are using UniTime in conjunction with an external system that identifies classes differently than UniTime
 	 * you can create a java class that implements the ExternalClassNameHelperInterface interface to create custom
@@ -1344,6 +1393,30 @@ public enum ApplicationProperty {
 	@DefaultValue("true")
 	@Description("Event Filter: do not count conflicting events (faster load, especially on MySQL)")
 	EventFilterSkipConflictCounts("unitime.events.eventFilter.skipConflictCounts"),
+	
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Event Lookup: maximal number of cached person, student group, and curriculum resolutions (course and class ids of the resource), 0 to disable the cache")
+	@Since(4.8)
+	EventResourceCacheSize("unitime.events.resourceCache.size"),
+	
+	@Type(Integer.class)
+	@DefaultValue("600")
+	@Description("Event Lookup: time to live of a cached resource resolution in seconds (changes made through this server invalidate the cache immediately), 0 for no limit")
+	@Since(4.8)
+	EventResourceCacheTTL("unitime.events.resourceCache.ttl"),
+	
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Calendar: maximal number of cached iCalendar feeds (rendered by the calendar servlet), 0 to disable the cache")
+	@Since(4.8)
+	CalendarFeedCacheSize("unitime.calendar.cache.size"),
+	
+	@Type(Integer.class)
+	@DefaultValue("900")
+	@Description("Calendar: time to live of a cached iCalendar feed in seconds (changes made through this server invalidate the cache immediately), 0 for no limit")
+	@Since(4.8)
+	CalendarFeedCacheTTL("unitime.calendar.cache.ttl"),
 
 	@Type(Boolean.class)
 	@DefaultValue("true")
@@ -1614,6 +1687,18 @@ public enum ApplicationProperty {
 	@Description("Clustering: solver request timeout in milliseconds (0 means wait until all responses have been received)")
 	SolverClusterTimeout("unitime.solver.timeout"),
 
+	@Type(Integer.class)
+	@DefaultValue("15")
+	@Description("Clustering: interval (in seconds) in which the load (heap, CPU, and solver instances) of the solver servers is collected and used to place new solvers (0 to ask all the servers each time a solver is created)")
+	@Since(4.8)
+	SolverClusterHeartbeat("unitime.solver.heartbeat"),
+
+	@Type(Boolean.class)
+	@DefaultValue("true")
+	@Description("Clustering: when a solver server joins the cluster, move passivated solvers to it from the servers with more passivated solvers than the cluster average")
+	@Since(4.8)
+	SolverClusterRebalance("unitime.solver.rebalance"),
+
 	@Type(Integer.class)
 	@DefaultValue("100")
 	@Description("Test HQL: maximum number of returned lines")
@@ -1629,6 +1714,24 @@ public enum ApplicationProperty {
 	@Description("Query Log: record request object/parameters as JSON message")
 	QueryLogJSON("unitime.query.log.json"),
 
+	@Type(Integer.class)
+	@DefaultValue("10")
+	@Description("GWT RPC: number of threads executing the asynchronous requests (e.g., exports or long running solver page requests)")
+	@Since(4.8)
+	GwtRpcAsyncPoolSize("unitime.rpc.async.poolSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("GWT RPC: maximal number of asynchronous requests waiting in the queue, further requests are rejected (0 for no limit)")
+	@Since(4.8)
+	GwtRpcAsyncQueueLimit("unitime.rpc.async.queueLimit"),
+
+	@Type(Integer.class)
+	@DefaultValue("5")
+	@Description("GWT RPC: maximal number of asynchronous requests of a single user that are queued or running, further requests of the user are rejected (0 for no limit)")
+	@Since(4.8)
+	GwtRpcAsyncUserLimit("unitime.rpc.async.userLimit"),
+
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Classes: if there are two or more scheduling subparts in a parent-child relation with the same instructional type (e.g., Lec - Lec a - Lec b stacked underneath), inherit preferences and the date pattern from the parent subpart whenever possible")
@@ -1891,6 +1994,18 @@ public enum ApplicationProperty {
 	@Description("Solver: passivate solution after given number of minutes of inactivity (disable passivation by setting to zero)")
 	SolverPasivationTime("unitime.solver.passivation.time"),
 
+	@Type(Integer.class)
+	@DefaultValue("80")
+	@Description("Solver: when the heap usage after a garbage collection exceeds the given percentage, idle solvers are passivated regardless of the passivation time (zero to disable)")
+	@Since(4.8)
+	SolverPassivationHeapThreshold("unitime.solver.passivation.heapThreshold"),
+
+	@Type(Integer.class)
+	@DefaultValue("5")
+	@Description("Solver: minimal number of minutes of inactivity for a solver to be passivated when the heap usage threshold is exceeded")
+	@Since(4.8)
+	SolverPassivationMinIdleTime("unitime.solver.passivation.minIdleTime"),
+
 	@Type(Integer.class)
 	@DefaultValue("300")
 	@Description("Online Student Scheduling: sectioning queue load interval in seconds")
@@ -1925,6 +2040,54 @@ public enum ApplicationProperty {
 	@Description("Online Student Scheduling: asynchronous execution thread pool size")
 	OnlineSchedulingServerAsyncPoolSize("unitime.enrollment.server.asyncPoolSize"),
 
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Online Student Scheduling: asynchronous execution queue limit (when reached, a new action waits for a free space up to the queue timeout and it is rejected afterwards; zero or negative for no limit)")
+	@Since(4.8)
+	OnlineSchedulingServerAsyncQueueLimit("unitime.enrollment.server.asyncQueueLimit"),
+
+	@Type(Integer.class)
+	@DefaultValue("10000")
+	@Description("Online Student Scheduling: how long to wait for a free space in a full asynchronous execution queue before the action is rejected (in milliseconds)")
+	@Since(4.8)
+	OnlineSchedulingServerAsyncQueueTimeout("unitime.enrollment.server.asyncQueueTimeout"),
+
+	@Type(Integer.class)
+	@DefaultValue("60000")
+	@Description("Online Student Scheduling: how long to wait for the queued asynchronous actions to finish when the server is unloaded (in milliseconds)")
+	@Since(4.8)
+	OnlineSchedulingServerAsyncShutdownTimeout("unitime.enrollment.server.asyncShutdownTimeout"),
+
+	@Type(Integer.class)
+	@DefaultValue("1")
+	@Description("Online Student Scheduling: number of threads used to load offerings and students when the server is (re)loaded (one for loading everything in a single hibernate session)")
+	@Since(4.8)
+	OnlineSchedulingReloadThreads("unitime.enrollment.reload.nrThreads"),
+
+	@Type(Integer.class)
+	@DefaultValue("500")
+	@Description("Online Student Scheduling: number of offerings or students loaded at once by a thread when the server is (re)loaded using multiple threads")
+	@Since(4.8)
+	OnlineSchedulingReloadChunkSize("unitime.enrollment.reload.chunkSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Online Student Scheduling: how often (in minutes) a binary snapshot of an in-memory server is written into the data folder; the snapshot is used to speed up the next start of the server (zero to disable snapshots)")
+	@Since(4.8)
+	OnlineSchedulingSnapshotInterval("unitime.enrollment.snapshot.interval"),
+
+	@Type(Integer.class)
+	@DefaultValue("1440")
+	@Description("Online Student Scheduling: maximal age (in minutes) of a snapshot that can be used when the server is started, older snapshots are ignored and the server is loaded from the database")
+	@Since(4.8)
+	OnlineSchedulingSnapshotMaxAge("unitime.enrollment.snapshot.maxAge"),
+
+	@Type(Integer.class)
+	@DefaultValue("600")
+	@Description("Online Student Scheduling: maximal time in seconds to wait for a student / offering lock (zero or negative for no limit)")
+	@Since(4.8)
+	OnlineSchedulingLockTimeout("unitime.enrollment.lock.timeout"),
+
 	@Type(Integer.class)
 	@DefaultValue("366")
 	@Description("Change Log: automatically remove records after the given number of days")
@@ -2218,6 +2381,18 @@ public enum ApplicationProperty {
 	@Type(String.class)
 	@Description("Academic session backup: semicolon separated list of disallowed not-null relations")
 	SessionBackupDisallowed("unitime.session_backup.disallowed"),
+	
+	@Type(Integer.class)
+	@DefaultValue("1")
+	@Description("Academic session backup: number of threads used to export the tables (1 means the tables are exported one by one using a single database session)")
+	@Since(4.8)
+	SessionBackupThreads("unitime.session_backup.threads"),
+	
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Academic session backup: compress the backup (the resulting file will have the .zdat extension)")
+	@Since(4.8)
+	SessionBackupCompress("unitime.session_backup.compress"),
 
 	@Type(Class.class)
 	@Implements(org.unitime.timetable.backup.SessionRestoreInterface.class)
@@ -2225,6 +2400,12 @@ public enum ApplicationProperty {
 	@Description("Implementation of the session restore interface.")
 	SessionRestoreInterface("unitime.session_restore.class"),
 	
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Academic session restore: save the records table by table in the order of their not-null relations (the inserts of a table can be sent to the database in JDBC batches, see hibernate.jdbc.batch_size); when false (default), all the records are saved in repeated passes over all the records. Experimental, compare the two modes on a copy of the database first (see org.unitime.timetable.test.SessionRestoreBenchmark)")
+	@Since(4.8)
+	SessionRestoreOrdered("unitime.session_restore.ordered"),
+	
 	
 	@Type(String.class)
 	@DefaultValue("https://selfservice.mypurdue.purdue.edu/prod/bzwsrch.p_catalog_detail?term=:xterm&subject=:subject&cnbr=:courseNbr&enhanced=Y")
@@ -2735,6 +2916,18 @@ public enum ApplicationProperty {
 	@Description("Authorization: a user with an advisor record must be associated with at least one student to get the advisor role.")
 	AuthorizationAdvisorMustHaveStudents("unitime.authorization.advisor.mustHaveStudents"),
 	
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Authorization: cache permission checks (e.g., which rows of a table can be edited) for the duration of a request. Checks on events, meetings, and students are not cached, the cache is cleared on every change made through hibernate and on every flush.")
+	@Since(4.8)
+	PermissionCacheRequest("unitime.authorization.cache.request"),
+	
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Authorization: when greater than zero, permission checks on objects that are given by their ids are also cached between the requests of a user for the given number of seconds (changes in the permissions or in the department statuses may take up to this time to apply).")
+	@Since(4.8)
+	PermissionCacheTTL("unitime.authorization.cache.ttl"),
+	
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Instructional Offering Cross Lists: keep course requests of a course that is added to or dropped from a cross-list.")
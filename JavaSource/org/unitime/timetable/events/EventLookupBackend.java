@@ -39,6 +39,7 @@ import org.unitime.timetable.defaults.UserProperty;
 import org.unitime.timetable.events.EventFilterBackend.EventQuery.EventInstance;
 import org.unitime.timetable.gwt.command.client.GwtRpcException;
 import org.unitime.timetable.gwt.command.client.GwtRpcResponseList;
+import org.unitime.timetable.gwt.command.server.GwtRpcExecutor;
 import org.unitime.timetable.gwt.command.server.GwtRpcImplements;
 import org.unitime.timetable.gwt.shared.EventInterface;
 import org.unitime.timetable.gwt.shared.EventInterface.ContactInterface;
@@ -229,6 +230,7 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
 					group = StudentGroupDAO.getInstance().get(request.getResourceId(), hibSession);
 				boolean groupEnrollments = (request.getResourceType() == ResourceType.GROUP && group != null && ApplicationProperty.StudentGroupsTimetableGroupEnrollments.isTrue());
 				
+				GwtRpcExecutor.setProgress("Looking up meetings");
 				switch (request.getResourceType()) {
 				case ROOM:
 					if (request.getResourceId() != null)
@@ -342,9 +344,7 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
 							"select distinct c from CurriculumClassification f inner join f.curriculum c where c.uniqueId = :resourceId or f.uniqueId = :resourceId")
 							.setLong("resourceId", request.getResourceId()).setCacheable(true).uniqueResult();
 					if (!curriculum.isMultipleMajors() || curriculum.getMajors().isEmpty()) {
-						curriculumCourses = (List<Long>)hibSession.createQuery(
-								"select cc.course.uniqueId from CurriculumCourse cc where cc.classification.curriculum.uniqueId = :resourceId or cc.classification.uniqueId = :resourceId")
-								.setLong("resourceId", request.getResourceId()).list();
+						curriculumCourses = EventResourceResolver.resolveCurriculum(hibSession, request.getResourceId()).getCourses();
 						
 						meetings = new ArrayList<Meeting>();
 
@@ -710,48 +710,9 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
 						if (status != null && status.hasOption(StudentSectioningStatus.Option.noschedule))
 							student = false;
 					}
-					curriculumCourses = new HashSet<Long>();
-					curriculumClasses = new HashSet<Long>();
-					if (allSessions) {
-						if (student) {
-							curriculumCourses.addAll(hibSession.createQuery("select e.courseOffering.uniqueId from StudentClassEnrollment e where e.student.externalUniqueId = :externalId")
-								.setString("externalId", request.getResourceExternalId()).list());
-							curriculumClasses.addAll(hibSession.createQuery("select e.clazz.uniqueId from StudentClassEnrollment e where e.student.externalUniqueId = :externalId")
-								.setString("externalId", request.getResourceExternalId()).list());
-						}
-						if (instructor) {
-							curriculumCourses.addAll(hibSession.createQuery("select co.uniqueId from ClassInstructor i inner join i.classInstructing.schedulingSubpart.instrOfferingConfig.instructionalOffering.courseOfferings co where i.instructor.externalUniqueId = :externalId and co.isControl = true")
-									.setString("externalId", request.getResourceExternalId()).list());
-							curriculumClasses.addAll(hibSession.createQuery("select i.classInstructing.uniqueId from ClassInstructor i where i.instructor.externalUniqueId = :externalId")
-									.setString("externalId", request.getResourceExternalId()).list());
-						}
-						if (coordinator) {
-							curriculumCourses.addAll(hibSession.createQuery("select co.uniqueId from OfferingCoordinator c inner join c.offering.courseOfferings co where c.instructor.externalUniqueId = :externalId")
-									.setString("externalId", request.getResourceExternalId()).list());
-							curriculumClasses.addAll(hibSession.createQuery("select z.uniqueId from Class_ z inner join z.schedulingSubpart.instrOfferingConfig.instructionalOffering.offeringCoordinators c where c.instructor.externalUniqueId = :externalId")
-									.setString("externalId", request.getResourceExternalId()).list());
-						}
-					} else {
-						if (student) {
-							curriculumCourses.addAll(hibSession.createQuery("select e.courseOffering.uniqueId from StudentClassEnrollment e where e.student.session.uniqueId = :sessionId and e.student.externalUniqueId = :externalId")
-									.setLong("sessionId", request.getSessionId()).setString("externalId", request.getResourceExternalId()).list());
-							curriculumClasses.addAll(hibSession.createQuery("select e.clazz.uniqueId from StudentClassEnrollment e where e.student.session.uniqueId = :sessionId and e.student.externalUniqueId = :externalId")
-									.setLong("sessionId", request.getSessionId()).setString("externalId", request.getResourceExternalId()).list());
-						}
-						if (instructor) {
-							curriculumCourses.addAll(hibSession.createQuery("select co.uniqueId from ClassInstructor i inner join i.classInstructing.schedulingSubpart.instrOfferingConfig.instructionalOffering.courseOfferings co " +
-									"where i.instructor.externalUniqueId = :externalId and co.isControl = true and i.instructor.department.session.uniqueId = :sessionId")
-									.setLong("sessionId", request.getSessionId()).setString("externalId", request.getResourceExternalId()).list());
-							curriculumClasses.addAll(hibSession.createQuery("select i.classInstructing.uniqueId from ClassInstructor i where i.instructor.externalUniqueId = :externalId and i.instructor.department.session.uniqueId = :sessionId")
-									.setLong("sessionId", request.getSessionId()).setString("externalId", request.getResourceExternalId()).list());
-						}
-						if (coordinator) {
-							curriculumCourses.addAll(hibSession.createQuery("select co.uniqueId from OfferingCoordinator c inner join c.offering.courseOfferings co where c.instructor.externalUniqueId = :externalId and c.instructor.department.session.uniqueId = :sessionId")
-									.setLong("sessionId", request.getSessionId()).setString("externalId", request.getResourceExternalId()).list());
-							curriculumClasses.addAll(hibSession.createQuery("select z.uniqueId from Class_ z inner join z.schedulingSubpart.instrOfferingConfig.instructionalOffering.offeringCoordinators c where c.instructor.externalUniqueId = :externalId and c.instructor.department.session.uniqueId = :sessionId")
-									.setLong("sessionId", request.getSessionId()).setString("externalId", request.getResourceExternalId()).list());
-						}						
-					}
+					EventResourceResolver.ResolvedResource resolved = EventResourceResolver.resolvePerson(hibSession, allSessions ? null : request.getSessionId(), request.getResourceExternalId(), student, instructor, coordinator);
+					curriculumCourses = resolved.getCourses();
+					curriculumClasses = resolved.getClasses();
 					meetings = new ArrayList<Meeting>();
 
 					if (allSessions) {
@@ -1325,8 +1286,6 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
                     break;
 				case GROUP:
 					allSessions = request.getEventFilter().hasOption("flag") && request.getEventFilter().getOptions("flag").contains("All Sessions");
-					curriculumCourses = new HashSet<Long>();
-					curriculumClasses = new HashSet<Long>();
 					Integer minEnrollment = null;
 					String pMinEnrl = ApplicationProperty.StudentGroupsTimetableMinimalEnrollment.value();
 					if (pMinEnrl != null) {
@@ -1336,24 +1295,9 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
 							minEnrollment = Integer.parseInt(pMinEnrl);
 					}
 					
-					if (allSessions) {
-						if (group.getExternalUniqueId() != null) {
-							curriculumCourses.addAll(hibSession.createQuery("select distinct e.courseOffering.uniqueId from StudentGroup g inner join g.students s inner join s.classEnrollments e where g.externalId = :externalId")
-									.setString("externalId", group.getExternalUniqueId()).list());
-							curriculumClasses.addAll(hibSession.createQuery("select distinct e.clazz.uniqueId from StudentGroup g inner join g.students s inner join s.classEnrollments e where g.externalId = :externalId")
-									.setString("externalId", group.getExternalUniqueId()).list());
-						} else {
-							curriculumCourses.addAll(hibSession.createQuery("select distinct e.courseOffering.uniqueId from StudentGroup g inner join g.students s inner join s.classEnrollments e where g.groupAbbreviation = :abbreviation")
-									.setString("abbreviation", group.getGroupAbbreviation()).list());
-							curriculumClasses.addAll(hibSession.createQuery("select distinct e.clazz.uniqueId from StudentGroup g inner join g.students s inner join s.classEnrollments e where g.groupAbbreviation = :abbreviation")
-									.setString("abbreviation", group.getGroupAbbreviation()).list());
-						}
-					} else {
-						curriculumCourses.addAll(hibSession.createQuery("select distinct e.courseOffering.uniqueId from StudentGroup g inner join g.students s inner join s.classEnrollments e where g.uniqueId = :resourceId")
-								.setLong("resourceId", group.getUniqueId()).list());
-						curriculumClasses.addAll(hibSession.createQuery("select distinct e.clazz.uniqueId from StudentGroup g inner join g.students s inner join s.classEnrollments e where g.uniqueId = :resourceId")
-								.setLong("resourceId", group.getUniqueId()).list());
-					}
+					resolved = EventResourceResolver.resolveGroup(hibSession, group, allSessions);
+					curriculumCourses = resolved.getCourses();
+					curriculumClasses = resolved.getClasses();
 					meetings = new ArrayList<Meeting>();
 
 					if (limit <= 0 || meetings.size() < limit) {
@@ -1516,7 +1460,10 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
 				GwtRpcResponseList<EventInterface> ret = new GwtRpcResponseList<EventInterface>();
 				Hashtable<Long, EventInterface> events = new Hashtable<Long, EventInterface>();
 				Map<Long, Set<Location>> unavailableLocations = new Hashtable<Long, Set<Location>>();
+				int meetingIndex = 0;
 				for (Meeting m: meetings) {
+					if (meetingIndex++ % 500 == 0)
+						GwtRpcExecutor.setProgress("Processing meeting " + meetingIndex + " of " + meetings.size());
 					if (locationMap != null && m.getLocationPermanentId() != null) {
 						Location location = locationMap.get(m.getLocationPermanentId());
 						if (location != null) m.setLocation(location);
@@ -1964,6 +1911,7 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
 				}
 				
 				if (request.getEventFilter().hasOptions("flag") && request.getEventFilter().getOptions("flag").contains("Conflicts")) {
+					GwtRpcExecutor.setProgress("Checking conflicts of " + events.size() + " events");
 					request.getEventFilter().setOption("mode", "Conflicting");
 					query = EventFilterBackend.getQuery(request.getEventFilter(), context);
 					
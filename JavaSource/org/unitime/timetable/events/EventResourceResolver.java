@@ -0,0 +1,615 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.events;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Assignment;
+import org.unitime.timetable.model.ClassInstructor;
+import org.unitime.timetable.model.Class_;
+import org.unitime.timetable.model.CourseOffering;
+import org.unitime.timetable.model.Curriculum;
+import org.unitime.timetable.model.CurriculumClassification;
+import org.unitime.timetable.model.CurriculumCourse;
+import org.unitime.timetable.model.DepartmentStatusType;
+import org.unitime.timetable.model.DepartmentalInstructor;
+import org.unitime.timetable.model.Event;
+import org.unitime.timetable.model.Exam;
+import org.unitime.timetable.model.ExamStatus;
+import org.unitime.timetable.model.Location;
+import org.unitime.timetable.model.Meeting;
+import org.unitime.timetable.model.OfferingCoordinator;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.Student;
+import org.unitime.timetable.model.StudentClassEnrollment;
+import org.unitime.timetable.model.StudentGroup;
+
+/**
+ * Resolution of the person, student group, and curriculum resources of the event lookup into course and class ids.<br>
+ * Resolved id sets are cached (bounded, least recently used). Each resolution records what it was computed from (see {@link Dependencies}),
+ * e.g., the students and instructors of a person, or the groups and their students, and it is dropped when one of these is
+ * changed through hibernate (see {@link #register(SessionFactory)}), or when it gets older than {@link ApplicationProperty#EventResourceCacheTTL}
+ * (changes made outside of this server). Changes are counted when flushed and once more when the transaction is completed,
+ * so that a resolution computed from the old data in the meantime does not survive the change.
+ * Hit rates and resolution times per resource type are published through JMX (see {@link StatisticsMBean}).
+ *
+ * @author Tomas Muller
+ */
+public class EventResourceResolver {
+	private static Log sLog = LogFactory.getLog(EventResourceResolver.class);
+	/** Dependency types */
+	public static final String STUDENT = "ST", INSTRUCTOR = "DI", PERSON = "P", GROUP = "G", CURRICULUM = "C",
+			CLASS = "CL", COURSE = "CO", EXAM = "EX", EVENT = "EV", SESSION = "S", ALL = "*";
+	// change counters, a dependency is hashed into one of the slots (a collision only causes an extra invalidation)
+	private static final int sSlotMask = 0xffff;
+	private static final AtomicLongArray sGenerations = new AtomicLongArray(sSlotMask + 1);
+	private static final AtomicLong sChanges = new AtomicLong(0);
+	private static Map<String, ResolvedResource> sCache = new LinkedHashMap<String, ResolvedResource>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ResolvedResource> eldest) {
+			return size() > ApplicationProperty.EventResourceCacheSize.intValue();
+		}
+	};
+	private static Statistics sStatistics = null;
+
+	/**
+	 * Courses and classes of a person (enrollments, instructor assignments, and coordinated offerings)
+	 * @param sessionId academic session, null for all sessions
+	 */
+	public static ResolvedResource resolvePerson(org.hibernate.Session hibSession, Long sessionId, String externalId, boolean student, boolean instructor, boolean coordinator) {
+		String key = "P:" + (sessionId == null ? "all" : sessionId.toString()) + ":" + externalId + ":" + (student ? "S" : "") + (instructor ? "I" : "") + (coordinator ? "C" : "");
+		ResolvedResource cached = get(key);
+		if (cached != null) {
+			getStatistics().hit("Person");
+			return cached;
+		}
+		long t0 = System.currentTimeMillis();
+		ResolvedResource resource = new ResolvedResource();
+		resource.getDependencies().add(PERSON, externalId);
+		String sessionCheck = (sessionId == null ? "" : " and s.session.uniqueId = :sessionId");
+		if (student) {
+			org.hibernate.Query q = hibSession.createQuery(
+					"select s.uniqueId from Student s where s.externalUniqueId = :externalId" + sessionCheck)
+					.setString("externalId", externalId);
+			if (sessionId != null) q.setLong("sessionId", sessionId);
+			resource.getDependencies().addAll(STUDENT, (List<Long>)q.list());
+		}
+		sessionCheck = (sessionId == null ? "" : " and e.student.session.uniqueId = :sessionId");
+		if (student) {
+			org.hibernate.Query q = hibSession.createQuery(
+					"select e.courseOffering.uniqueId, e.clazz.uniqueId from StudentClassEnrollment e where e.student.externalUniqueId = :externalId" + sessionCheck)
+					.setString("externalId", externalId);
+			if (sessionId != null) q.setLong("sessionId", sessionId);
+			resource.addAll((List<Object[]>)q.list());
+		}
+		if (instructor || coordinator) {
+			org.hibernate.Query q = hibSession.createQuery(
+					"select i.uniqueId from DepartmentalInstructor i where i.externalUniqueId = :externalId" + (sessionId == null ? "" : " and i.department.session.uniqueId = :sessionId"))
+					.setString("externalId", externalId);
+			if (sessionId != null) q.setLong("sessionId", sessionId);
+			resource.getDependencies().addAll(INSTRUCTOR, (List<Long>)q.list());
+		}
+		sessionCheck = (sessionId == null ? "" : " and i.instructor.department.session.uniqueId = :sessionId");
+		if (instructor) {
+			org.hibernate.Query q = hibSession.createQuery(
+					"select co.uniqueId, i.classInstructing.uniqueId from ClassInstructor i inner join i.classInstructing.schedulingSubpart.instrOfferingConfig.instructionalOffering.courseOfferings co " +
+					"where i.instructor.externalUniqueId = :externalId and co.isControl = true" + sessionCheck)
+					.setString("externalId", externalId);
+			if (sessionId != null) q.setLong("sessionId", sessionId);
+			resource.addAll((List<Object[]>)q.list());
+		}
+		sessionCheck = (sessionId == null ? "" : " and c.instructor.department.session.uniqueId = :sessionId");
+		if (coordinator) {
+			org.hibernate.Query q = hibSession.createQuery(
+					"select co.uniqueId from OfferingCoordinator c inner join c.offering.courseOfferings co where c.instructor.externalUniqueId = :externalId" + sessionCheck)
+					.setString("externalId", externalId);
+			if (sessionId != null) q.setLong("sessionId", sessionId);
+			resource.getCourseIds().addAll((List<Long>)q.list());
+			q = hibSession.createQuery(
+					"select z.uniqueId from Class_ z inner join z.schedulingSubpart.instrOfferingConfig.instructionalOffering.offeringCoordinators c where c.instructor.externalUniqueId = :externalId" + sessionCheck)
+					.setString("externalId", externalId);
+			if (sessionId != null) q.setLong("sessionId", sessionId);
+			resource.getClassIds().addAll((List<Long>)q.list());
+		}
+		put(key, resource);
+		getStatistics().miss("Person", System.currentTimeMillis() - t0);
+		return resource;
+	}
+
+	/**
+	 * Courses and classes in which the students of a student group are enrolled
+	 * @param allSessions when true, all groups of the same external id (or abbreviation, when there is no external id) are considered
+	 */
+	public static ResolvedResource resolveGroup(org.hibernate.Session hibSession, StudentGroup group, boolean allSessions) {
+		String key = "G:" + (allSessions ? (group.getExternalUniqueId() != null ? "X:" + group.getExternalUniqueId() : "A:" + group.getGroupAbbreviation()) : group.getUniqueId().toString());
+		ResolvedResource cached = get(key);
+		if (cached != null) {
+			getStatistics().hit("Group");
+			return cached;
+		}
+		long t0 = System.currentTimeMillis();
+		ResolvedResource resource = new ResolvedResource();
+		String groupCheck = null;
+		if (!allSessions) {
+			groupCheck = "g.uniqueId = :resourceId";
+		} else if (group.getExternalUniqueId() != null) {
+			groupCheck = "g.externalUniqueId = :resourceId";
+			resource.getDependencies().add(GROUP, "X:" + group.getExternalUniqueId());
+		} else {
+			groupCheck = "g.groupAbbreviation = :resourceId";
+			resource.getDependencies().add(GROUP, "A:" + group.getGroupAbbreviation());
+		}
+		resource.getDependencies().addAll(GROUP, (List<Long>)setResourceId(hibSession.createQuery(
+				"select g.uniqueId from StudentGroup g where " + groupCheck), group, allSessions).list());
+		resource.getDependencies().addAll(STUDENT, (List<Long>)setResourceId(hibSession.createQuery(
+				"select distinct s.uniqueId from StudentGroup g inner join g.students s where " + groupCheck), group, allSessions).list());
+		resource.addAll((List<Object[]>)setResourceId(hibSession.createQuery(
+				"select distinct e.courseOffering.uniqueId, e.clazz.uniqueId from StudentGroup g inner join g.students s inner join s.classEnrollments e where " + groupCheck), group, allSessions).list());
+		put(key, resource);
+		getStatistics().miss("Group", System.currentTimeMillis() - t0);
+		return resource;
+	}
+	
+	private static org.hibernate.Query setResourceId(org.hibernate.Query query, StudentGroup group, boolean allSessions) {
+		if (!allSessions)
+			return query.setLong("resourceId", group.getUniqueId());
+		else if (group.getExternalUniqueId() != null)
+			return query.setString("resourceId", group.getExternalUniqueId());
+		else
+			return query.setString("resourceId", group.getGroupAbbreviation());
+	}
+
+	/**
+	 * Courses of a curriculum or of a curriculum classification (no classes are resolved)
+	 * @param resourceId curriculum or curriculum classification id
+	 */
+	public static ResolvedResource resolveCurriculum(org.hibernate.Session hibSession, Long resourceId) {
+		String key = "C:" + resourceId;
+		ResolvedResource cached = get(key);
+		if (cached != null) {
+			getStatistics().hit("Curriculum");
+			return cached;
+		}
+		long t0 = System.currentTimeMillis();
+		ResolvedResource resource = new ResolvedResource();
+		resource.getDependencies().add(CURRICULUM, resourceId);
+		resource.getCourseIds().addAll((List<Long>)hibSession.createQuery(
+				"select cc.course.uniqueId from CurriculumCourse cc where cc.classification.curriculum.uniqueId = :resourceId or cc.classification.uniqueId = :resourceId")
+				.setLong("resourceId", resourceId).list());
+		put(key, resource);
+		getStatistics().miss("Curriculum", System.currentTimeMillis() - t0);
+		return resource;
+	}
+
+	private static ResolvedResource get(String key) {
+		if (ApplicationProperty.EventResourceCacheSize.intValue() <= 0) return null;
+		synchronized (sCache) {
+			ResolvedResource resource = sCache.get(key);
+			if (resource == null) return null;
+			if (!resource.isValid()) {
+				sCache.remove(key);
+				getStatistics().iInvalidations.incrementAndGet();
+				return null;
+			}
+			return resource;
+		}
+	}
+
+	private static void put(String key, ResolvedResource resource) {
+		if (ApplicationProperty.EventResourceCacheSize.intValue() <= 0) return;
+		// do not cache a resolution that was computed while a related change was made
+		if (!resource.isValid()) return;
+		synchronized (sCache) {
+			sCache.put(key, resource);
+		}
+	}
+
+	/**
+	 * Drop all cached resolutions
+	 */
+	public static void clear() {
+		synchronized (sCache) {
+			sCache.clear();
+		}
+	}
+
+	/**
+	 * Register hibernate listeners that invalidate the cached resolutions when a related entity is changed
+	 */
+	public static void register(SessionFactory sessionFactory) {
+		EventListenerRegistry registry = ((SessionFactoryImplementor)sessionFactory).getServiceRegistry().getService(EventListenerRegistry.class);
+		InvalidationListener listener = new InvalidationListener();
+		registry.appendListeners(EventType.POST_INSERT, listener);
+		registry.appendListeners(EventType.POST_UPDATE, listener);
+		registry.appendListeners(EventType.POST_DELETE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+	}
+	
+	private static int slot(String type, Object id) {
+		return (type + ":" + id).hashCode() & sSlotMask;
+	}
+	
+	/**
+	 * Dependencies affected by a change of the given entity
+	 */
+	protected static List<String[]> getChanges(Object entity) {
+		List<String[]> changes = new ArrayList<String[]>();
+		if (entity instanceof StudentClassEnrollment) {
+			StudentClassEnrollment enrollment = (StudentClassEnrollment)entity;
+			if (enrollment.getStudent() != null) changes.add(new String[] {STUDENT, String.valueOf(enrollment.getStudent().getUniqueId())});
+		} else if (entity instanceof Student) {
+			Student student = (Student)entity;
+			changes.add(new String[] {STUDENT, String.valueOf(student.getUniqueId())});
+			changes.add(new String[] {PERSON, student.getExternalUniqueId()});
+		} else if (entity instanceof ClassInstructor) {
+			ClassInstructor ci = (ClassInstructor)entity;
+			if (ci.getInstructor() != null) changes.add(new String[] {INSTRUCTOR, String.valueOf(ci.getInstructor().getUniqueId())});
+			if (ci.getClassInstructing() != null) changes.add(new String[] {CLASS, String.valueOf(ci.getClassInstructing().getUniqueId())});
+		} else if (entity instanceof OfferingCoordinator) {
+			OfferingCoordinator oc = (OfferingCoordinator)entity;
+			if (oc.getInstructor() != null) changes.add(new String[] {INSTRUCTOR, String.valueOf(oc.getInstructor().getUniqueId())});
+		} else if (entity instanceof DepartmentalInstructor) {
+			DepartmentalInstructor instructor = (DepartmentalInstructor)entity;
+			changes.add(new String[] {INSTRUCTOR, String.valueOf(instructor.getUniqueId())});
+			changes.add(new String[] {PERSON, instructor.getExternalUniqueId()});
+		} else if (entity instanceof StudentGroup) {
+			StudentGroup group = (StudentGroup)entity;
+			changes.add(new String[] {GROUP, String.valueOf(group.getUniqueId())});
+			changes.add(new String[] {GROUP, "X:" + group.getExternalUniqueId()});
+			changes.add(new String[] {GROUP, "A:" + group.getGroupAbbreviation()});
+		} else if (entity instanceof CurriculumCourse) {
+			CurriculumClassification clasf = ((CurriculumCourse)entity).getClassification();
+			if (clasf != null) {
+				changes.add(new String[] {CURRICULUM, String.valueOf(clasf.getUniqueId())});
+				if (clasf.getCurriculum() != null) changes.add(new String[] {CURRICULUM, String.valueOf(clasf.getCurriculum().getUniqueId())});
+			}
+		} else if (entity instanceof CurriculumClassification) {
+			CurriculumClassification clasf = (CurriculumClassification)entity;
+			changes.add(new String[] {CURRICULUM, String.valueOf(clasf.getUniqueId())});
+			if (clasf.getCurriculum() != null) changes.add(new String[] {CURRICULUM, String.valueOf(clasf.getCurriculum().getUniqueId())});
+		} else if (entity instanceof Curriculum) {
+			changes.add(new String[] {CURRICULUM, String.valueOf(((Curriculum)entity).getUniqueId())});
+		} else if (entity instanceof Class_) {
+			changes.add(new String[] {CLASS, String.valueOf(((Class_)entity).getUniqueId())});
+		} else if (entity instanceof Assignment) {
+			Assignment assignment = (Assignment)entity;
+			if (assignment.getClazz() != null) changes.add(new String[] {CLASS, String.valueOf(assignment.getClazz().getUniqueId())});
+		} else if (entity instanceof CourseOffering) {
+			changes.add(new String[] {COURSE, String.valueOf(((CourseOffering)entity).getUniqueId())});
+		} else if (entity instanceof Exam) {
+			changes.add(new String[] {EXAM, String.valueOf(((Exam)entity).getUniqueId())});
+		} else if (entity instanceof Event) {
+			changes.add(new String[] {EVENT, String.valueOf(((Event)entity).getUniqueId())});
+		} else if (entity instanceof Meeting) {
+			Meeting meeting = (Meeting)entity;
+			if (meeting.getEvent() != null) changes.add(new String[] {EVENT, String.valueOf(meeting.getEvent().getUniqueId())});
+		} else if (entity instanceof Location) {
+			Location location = (Location)entity;
+			if (location.getSession() != null) changes.add(new String[] {SESSION, String.valueOf(location.getSession().getUniqueId())});
+		} else if (entity instanceof Session) {
+			changes.add(new String[] {SESSION, String.valueOf(((Session)entity).getUniqueId())});
+		} else if (entity instanceof ExamStatus) {
+			ExamStatus status = (ExamStatus)entity;
+			if (status.getSession() != null) changes.add(new String[] {SESSION, String.valueOf(status.getSession().getUniqueId())});
+		} else if (entity instanceof DepartmentStatusType) {
+			changes.add(new String[] {ALL, ""});
+		}
+		return changes;
+	}
+	
+	private static void increment(List<String[]> changes) {
+		for (String[] change: changes)
+			sGenerations.incrementAndGet(slot(change[0], change[1]));
+		sChanges.incrementAndGet();
+	}
+	
+	/**
+	 * Count the given changes now (so that the current transaction does not use the old resolutions) and once more when the transaction
+	 * is completed (so that the resolutions computed by other threads from the data before the commit are dropped as well)
+	 */
+	protected static void changed(SessionImplementor session, final List<String[]> changes) {
+		if (changes.isEmpty()) return;
+		increment(changes);
+		if (session instanceof EventSource) {
+			((EventSource)session).getActionQueue().registerProcess(new AfterTransactionCompletionProcess() {
+				@Override
+				public void doAfterTransactionCompletion(boolean success, SessionImplementor session) {
+					increment(changes);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Changes that are not made through the entities, e.g., a bulk delete of student class enrollments
+	 * @param type dependency type (e.g., {@link #STUDENT})
+	 * @param ids ids of the changed objects of the given type
+	 */
+	public static void changed(org.hibernate.Session hibSession, String type, Collection<?> ids) {
+		List<String[]> changes = new ArrayList<String[]>();
+		for (Object id: ids)
+			changes.add(new String[] {type, String.valueOf(id)});
+		changed((SessionImplementor)hibSession, changes);
+	}
+	
+	/**
+	 * Snapshot of the change counter (any event related entity).
+	 * Used to invalidate other event related caches, see {@link #hasChanged(long[])}.
+	 */
+	public static long[] getGenerations() {
+		return new long[] { sChanges.get() };
+	}
+	
+	/**
+	 * True if any of the event related entities has been changed since the given snapshot was taken
+	 */
+	public static boolean hasChanged(long[] generations) {
+		return generations[0] != sChanges.get();
+	}
+
+	protected static class InvalidationListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+		PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) { changed(event.getSession(), getChanges(event.getEntity())); }
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) { changed(event.getSession(), getChanges(event.getEntity())); }
+
+		@Override
+		public void onPostDelete(PostDeleteEvent event) { changed(event.getSession(), getChanges(event.getEntity())); }
+
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) { return false; }
+
+		@Override
+		public void onPostRecreateCollection(PostCollectionRecreateEvent event) { changed(event.getSession(), getChanges(event.getAffectedOwnerOrNull())); }
+
+		@Override
+		public void onPostUpdateCollection(PostCollectionUpdateEvent event) { changed(event.getSession(), getChanges(event.getAffectedOwnerOrNull())); }
+
+		@Override
+		public void onPostRemoveCollection(PostCollectionRemoveEvent event) { changed(event.getSession(), getChanges(event.getAffectedOwnerOrNull())); }
+	}
+	
+	/**
+	 * Objects a cached value has been computed from, together with their change counters at the time they were added.
+	 * Dependencies need to be added before the data are read. A change of any object of the {@link #ALL} type
+	 * (e.g., a department status type) invalidates all dependencies.
+	 */
+	public static class Dependencies {
+		private int[] iSlots = new int[4];
+		private long[] iGenerations = new long[4];
+		private int iSize = 0;
+		
+		public Dependencies() {
+			add(ALL, "");
+		}
+		
+		public Dependencies add(String type, Object id) {
+			if (id == null) return this;
+			int slot = slot(type, id);
+			if (iSize == iSlots.length) {
+				iSlots = Arrays.copyOf(iSlots, 2 * iSize);
+				iGenerations = Arrays.copyOf(iGenerations, 2 * iSize);
+			}
+			iSlots[iSize] = slot;
+			iGenerations[iSize] = sGenerations.get(slot);
+			iSize ++;
+			return this;
+		}
+		
+		public Dependencies addAll(String type, Collection<?> ids) {
+			for (Object id: ids) add(type, id);
+			return this;
+		}
+		
+		public int size() { return iSize; }
+		
+		/** True if none of the dependencies has been changed since it was added */
+		public boolean isValid() {
+			for (int i = 0; i < iSize; i++)
+				if (iGenerations[i] != sGenerations.get(iSlots[i])) return false;
+			return true;
+		}
+	}
+
+	/**
+	 * Resolved course and class ids of a resource
+	 */
+	public static class ResolvedResource {
+		private Set<Long> iCourseIds = new HashSet<Long>();
+		private Set<Long> iClassIds = new HashSet<Long>();
+		private Dependencies iDependencies = new Dependencies();
+		private long iCreated = System.currentTimeMillis();
+
+		protected void addAll(List<Object[]> courseAndClassIds) {
+			for (Object[] o: courseAndClassIds) {
+				if (o[0] != null) iCourseIds.add((Long)o[0]);
+				if (o[1] != null) iClassIds.add((Long)o[1]);
+			}
+		}
+
+		protected Set<Long> getCourseIds() { return iCourseIds; }
+		protected Set<Long> getClassIds() { return iClassIds; }
+		protected Dependencies getDependencies() { return iDependencies; }
+
+		/** Course offering ids (unmodifiable) */
+		public Set<Long> getCourses() { return Collections.unmodifiableSet(iCourseIds); }
+		/** Class ids (unmodifiable) */
+		public Set<Long> getClasses() { return Collections.unmodifiableSet(iClassIds); }
+
+		protected boolean isValid() {
+			int ttl = ApplicationProperty.EventResourceCacheTTL.intValue();
+			if (ttl > 0 && System.currentTimeMillis() - iCreated > 1000l * ttl) return false;
+			return iDependencies.isValid();
+		}
+	}
+
+	protected static synchronized Statistics getStatistics() {
+		if (sStatistics == null) {
+			sStatistics = new Statistics();
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName objectName = new ObjectName("org.unitime:type=EventResourceCache");
+				if (server.isRegistered(objectName))
+					server.unregisterMBean(objectName);
+				server.registerMBean(sStatistics, objectName);
+			} catch (Exception e) {
+				sLog.warn("Failed to register event resource cache MBean: " + e.getMessage(), e);
+			}
+		}
+		return sStatistics;
+	}
+
+	public static interface StatisticsMBean {
+		public long getHits();
+		public long getMisses();
+		public double getHitRatio();
+		public long getInvalidations();
+		public int getSize();
+		public String[] getResourceTypes();
+		public void clear();
+	}
+
+	protected static class ResourceTypeStats {
+		private String iName;
+		private long iHits = 0, iMisses = 0, iTime = 0, iMaxTime = 0;
+
+		protected ResourceTypeStats(String name) { iName = name; }
+
+		protected synchronized void hit() { iHits ++; }
+
+		protected synchronized void miss(long time) {
+			iMisses ++;
+			iTime += time;
+			if (time > iMaxTime) iMaxTime = time;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return iName + ": " + iHits + " hits, " + iMisses + " misses" +
+					", hit ratio " + (iHits + iMisses == 0 ? 0 : Math.round(100.0 * iHits / (iHits + iMisses))) + "%" +
+					", resolution " + (iMisses == 0 ? 0 : iTime / iMisses) + " ms avg / " + iMaxTime + " ms max";
+		}
+	}
+
+	public static class Statistics implements StatisticsMBean {
+		private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0), iInvalidations = new AtomicLong(0);
+		private Map<String, ResourceTypeStats> iTypes = new LinkedHashMap<String, ResourceTypeStats>();
+
+		protected synchronized ResourceTypeStats getResourceTypeStats(String type) {
+			ResourceTypeStats stats = iTypes.get(type);
+			if (stats == null) {
+				stats = new ResourceTypeStats(type);
+				iTypes.put(type, stats);
+			}
+			return stats;
+		}
+
+		protected void hit(String type) {
+			iHits.incrementAndGet();
+			getResourceTypeStats(type).hit();
+		}
+
+		protected void miss(String type, long time) {
+			iMisses.incrementAndGet();
+			ResourceTypeStats stats = getResourceTypeStats(type);
+			stats.miss(time);
+			if (sLog.isDebugEnabled()) sLog.debug(stats);
+		}
+
+		@Override
+		public long getHits() { return iHits.get(); }
+
+		@Override
+		public long getMisses() { return iMisses.get(); }
+
+		@Override
+		public double getHitRatio() {
+			long hits = iHits.get(), total = hits + iMisses.get();
+			return (total == 0 ? 0.0 : ((double)hits) / total);
+		}
+
+		@Override
+		public long getInvalidations() { return iInvalidations.get(); }
+
+		@Override
+		public int getSize() {
+			synchronized (sCache) {
+				return sCache.size();
+			}
+		}
+
+		@Override
+		public synchronized String[] getResourceTypes() {
+			List<String> ret = new ArrayList<String>();
+			for (ResourceTypeStats stats: iTypes.values())
+				ret.add(stats.toString());
+			return ret.toArray(new String[ret.size()]);
+		}
+
+		@Override
+		public void clear() {
+			EventResourceResolver.clear();
+		}
+	}
+}
@@ -40,4 +40,10 @@ public interface ExportHelper extends Exporter.Params {
 	public SessionContext getSessionContext();
 	
 	public boolean isRequestEncoded();
+	
+	/**
+	 * Conditional response support: set the ETag (and Last-Modified, if provided) of the output and check it against the request.
+	 * @return true if the client already has the current version (and the response is marked as not modified)
+	 */
+	public boolean isNotModified(String etag, Long lastModified);
 }
\ No newline at end of file
@@ -47,6 +47,7 @@ import org.unitime.timetable.security.context.AnonymousUserContext;
 import org.unitime.timetable.security.context.HttpSessionContext;
 import org.unitime.timetable.security.context.UniTimeUserContext;
 import org.unitime.timetable.spring.SpringApplicationContextHolder;
+import org.unitime.timetable.util.CalendarFeedCache;
 
 /**
  * @author Tomas Muller
@@ -54,11 +55,13 @@ import org.unitime.timetable.spring.SpringApplicationContextHolder;
 public class ExportServletHelper implements ExportHelper {
 	private SessionContext iContext;
 	private Exporter.Params iParams;
+	private HttpServletRequest iRequest;
 	private HttpServletResponse iResponse;
 	private PrintWriter iWriter = null;
 	private OutputStream iOutputStream = null;
 	
 	public ExportServletHelper(HttpServletRequest request, HttpServletResponse response, SessionContext context) throws UnsupportedEncodingException {
+		iRequest = request;
 		iResponse = response;
 		iContext = context;
 		String q = request.getParameter("q");
@@ -111,6 +114,14 @@ public class ExportServletHelper implements ExportHelper {
 		iResponse.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"" );
 	}
 	
+	@Override
+	public boolean isNotModified(String etag, Long lastModified) {
+		// allow the client to keep the output, but it must revalidate it every time
+		iResponse.setHeader("Pragma", "no-cache");
+		iResponse.setHeader("Cache-Control", "no-cache");
+		return CalendarFeedCache.isNotModified(iRequest, iResponse, etag, lastModified);
+	}
+	
 	@Override
 	public String getParameter(String name) {
 		return iParams.getParameter(name);
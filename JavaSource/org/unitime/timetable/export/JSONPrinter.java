@@ -40,11 +40,22 @@ public class JSONPrinter implements Printer {
 	private Set<Integer> iHiddenColumns = new HashSet<Integer>();
 	private String[] iHeader = null;
 	private List<Map<String,Object>> iList = new ArrayList<Map<String,Object>>();
+	private boolean iStreaming = false;
+	private int iCount = 0;
+	private Gson iGson = null;
 	
 	public JSONPrinter(PrintWriter writer) {
 		iOut = writer;
 	}
 	
+	/**
+	 * @param streaming when true, each line is written to the output as soon as it is printed (instead of collecting all the lines and writing them on flush)
+	 */
+	public JSONPrinter(PrintWriter writer, boolean streaming) {
+		iOut = writer;
+		iStreaming = streaming;
+	}
+	
 	@Override
 	public String getContentType() {
 		return "application/json";
@@ -80,7 +91,14 @@ public class JSONPrinter implements Printer {
 			else if ("false".equals(f)) entry.put(h, Boolean.FALSE);
 			else entry.put(h, f);
 		}
-		iList.add(entry);
+		if (iStreaming) {
+			if (iGson == null) iGson = createGson();
+			iOut.print(iCount == 0 ? "[\n" : ",\n");
+			iOut.print(iGson.toJson(entry));
+			iCount ++;
+		} else {
+			iList.add(entry);
+		}
 	}
 	
 	protected Gson createGson() {
@@ -89,11 +107,16 @@ public class JSONPrinter implements Printer {
 	
 	@Override
 	public void flush() {
+		if (iStreaming) return;
 		iOut.print(createGson().toJson(iList));
 		iOut.flush();
 	}
 	
 	@Override
 	public void close() {
+		if (iStreaming) {
+			iOut.print(iCount == 0 ? "[]" : "\n]");
+			iOut.flush();
+		}
 	}
 }
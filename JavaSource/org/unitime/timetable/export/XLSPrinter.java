@@ -42,6 +42,7 @@ import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.hssf.util.HSSFColor;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
@@ -75,6 +76,7 @@ public class XLSPrinter implements Printer {
 	private Map<String, CellStyle> iStyles;
 	private Map<String, Font> iFonts = new HashMap<String, Font>();
 	private Map<String, Short> iColors = new HashMap<String, Short>();
+	private String[] iHeader = null;
 	
 	
 	public XLSPrinter(OutputStream output, boolean checkLast) {
@@ -155,6 +157,7 @@ public class XLSPrinter implements Printer {
 	
 	@Override
 	public void printHeader(String... fields) {
+		iHeader = fields;
 		Row headerRow = iSheet.createRow(iRowNum++);
 		
 		int cellIdx = 0;
@@ -173,6 +176,7 @@ public class XLSPrinter implements Printer {
 	
 	@Override
 	public void printLine(String... fields) {
+		checkSheetSize();
 		int cellIdx = 0;
 		Row row = iSheet.createRow(iRowNum++);
 		int nrLines = 1;
@@ -204,7 +208,18 @@ public class XLSPrinter implements Printer {
 		iLastLine = fields;
 	}
 	
+	/**
+	 * An XLS sheet can only contain a limited number of rows, continue on a new sheet (with the same header) when the current one is full.
+	 */
+	protected void checkSheetSize() {
+		if (iRowNum < SpreadsheetVersion.EXCEL97.getMaxRows()) return;
+		newSheet();
+		if (iHeader != null) printHeader(iHeader);
+		iLastLine = null;
+	}
+	
 	public void printLine(A... fields) {
+		checkSheetSize();
 		int cellIdx = 0;
 		Row row = iSheet.createRow(iRowNum++);
 		int nrLines = 1;
@@ -20,6 +20,7 @@
 package org.unitime.timetable.export.events;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -60,6 +61,7 @@ import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.StudentGroupDAO;
 import org.unitime.timetable.model.dao.SubjectAreaDAO;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.util.CalendarFeedCache;
 import org.unitime.timetable.util.Constants;
 
 import biweekly.ICalVersion;
@@ -109,7 +111,8 @@ public class EventsExportEventsToICal extends EventsExporter {
         for (EventInterface event: events)
 			print(ical, event);
 		
-        ICalWriter writer = new ICalWriter(helper.getWriter(), ICalVersion.V2_0);
+        StringWriter out = new StringWriter();
+        ICalWriter writer = new ICalWriter(out, ICalVersion.V2_0);
         try {
         	writer.setGlobalTimezone(CalendarVTimeZoneGenerator.download(TimeZone.getDefault()));
         } catch (IllegalArgumentException e) {
@@ -121,6 +124,11 @@ public class EventsExportEventsToICal extends EventsExporter {
         } finally {
         	writer.close();
         }
+        
+        // subscribed calendars are polled often, only send the feed when it has changed
+        String content = out.toString();
+        if (helper.isNotModified(CalendarFeedCache.getETag(content), null)) return;
+        helper.getWriter().write(content);
 	}
 	
 	public boolean print(ICalendar ical, EventInterface event) throws IOException {
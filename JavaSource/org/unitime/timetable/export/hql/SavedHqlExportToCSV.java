@@ -33,6 +33,8 @@ import org.apache.commons.logging.LogFactory;
 
 import org.dom4j.Document;
 import org.hibernate.MappingException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SessionImplementor;
@@ -70,6 +72,7 @@ import org.unitime.timetable.util.Formats;
 public class SavedHqlExportToCSV implements Exporter {
 	protected static GwtMessages MESSAGES = Localization.create(GwtMessages.class);
 	private static Log sLog = LogFactory.getLog(SavedHqlExportToCSV.class);
+	private static int sFetchSize = 1000;
 	
 	@Override
 	public String reference() {
@@ -172,35 +175,42 @@ public class SavedHqlExportToCSV implements Exporter {
 		}
 		if (!hasAppearancePermission) throw new AccessDeniedException();
 		
+		String sort = helper.getParameter("sort");
+		if (sort == null || "0".equals(sort)) {
+			// not sorted: stream the lines to the output as they are read
+			Printer out = new CSVPrinter(helper, false);
+			helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".csv", false);
+			execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
+			out.close();
+			return;
+		}
+		
 		BufferedPrinter out = new BufferedPrinter(new CSVPrinter(helper, false));
 		helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".csv", false);
 		
 		execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
 		
-		String sort = helper.getParameter("sort");
-		if (sort != null && !"0".equals(sort)) {
-			final boolean asc = Integer.parseInt(sort) > 0;
-			final int col = Math.abs(Integer.parseInt(sort)) - 1;
-			Collections.sort(out.getBuffer(), new Comparator<String[]>() {
-				int compare(String[] a, String[] b, int col) {
-					for (int i = 0; i < a.length; i++) {
-						int c = (col + i) % a.length;
-						try {
-							int cmp = Double.valueOf(a[c] == null ? "0" : a[c]).compareTo(Double.valueOf(b[c] == null ? "0" : b[c]));
-							if (cmp != 0) return cmp;
-						} catch (NumberFormatException e) {
-							int cmp = (a[c] == null ? "" : a[c]).compareTo(b[c] == null ? "" : b[c]);
-							if (cmp != 0) return cmp;
-						}
+		final boolean asc = Integer.parseInt(sort) > 0;
+		final int col = Math.abs(Integer.parseInt(sort)) - 1;
+		Collections.sort(out.getBuffer(), new Comparator<String[]>() {
+			int compare(String[] a, String[] b, int col) {
+				for (int i = 0; i < a.length; i++) {
+					int c = (col + i) % a.length;
+					try {
+						int cmp = Double.valueOf(a[c] == null ? "0" : a[c]).compareTo(Double.valueOf(b[c] == null ? "0" : b[c]));
+						if (cmp != 0) return cmp;
+					} catch (NumberFormatException e) {
+						int cmp = (a[c] == null ? "" : a[c]).compareTo(b[c] == null ? "" : b[c]);
+						if (cmp != 0) return cmp;
 					}
-					return 0;
-				}	
-				@Override
-				public int compare(String[] a, String[] b) {
-					return asc ? compare(a, b, col) : compare(b, a, col);
 				}
-			});
-		}
+				return 0;
+			}	
+			@Override
+			public int compare(String[] a, String[] b) {
+				return asc ? compare(a, b, col) : compare(b, a, col);
+			}
+		});
 		
 		out.close();
 	}
@@ -296,6 +306,32 @@ public class SavedHqlExportToCSV implements Exporter {
 				}
 			}
 			int len = -1;
+			if (maxRows <= 0) {
+				// no limit: read the rows one by one from a forward-only cursor, releasing the returned objects once printed
+				q.setFetchSize(sFetchSize);
+				boolean single = (q.getReturnTypes().length == 1);
+				ScrollableResults results = q.scroll(ScrollMode.FORWARD_ONLY);
+				try {
+					while (results.next()) {
+						Object o = (single ? results.get(0) : results.get());
+						if (len < 0) {
+							len = length(o);
+							String[] line = new String[len];
+							header(line, o, q.getReturnAliases());
+							if (line.length > 0 && line[0].startsWith("__")) out.hideColumn(0);
+							out.printHeader(line);
+						}
+						String[] line = new String[len];
+						line(line, o, (SessionImplementor)hibSession);
+						out.printLine(line);
+						out.flush();
+						evict(o, hibSession);
+					}
+				} finally {
+					results.close();
+				}
+				return;
+			}
 			for (Object o: q.list()) {
 				if (len < 0) {
 					len = length(o);
@@ -319,6 +355,16 @@ public class SavedHqlExportToCSV implements Exporter {
 		}
 	}
 	
+	private static void evict(Object o, org.hibernate.Session hibSession) {
+		if (o == null) return;
+		if (o instanceof Object[]) {
+			for (Object x: (Object[])o)
+				evict(x, hibSession);
+		} else if (hibSession.getSessionFactory().getClassMetadata(o.getClass()) != null) {
+			hibSession.evict(o);
+		}
+	}
+	
 	private static boolean skip(Type t, boolean lazy) {
         try {
             if (t.isCollectionType()) {
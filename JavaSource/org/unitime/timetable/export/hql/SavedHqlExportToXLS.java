@@ -147,35 +147,42 @@ public class SavedHqlExportToXLS extends SavedHqlExportToCSV {
 		}
 		if (!hasAppearancePermission) throw new AccessDeniedException();
 		
+		String sort = helper.getParameter("sort");
+		if (sort == null || "0".equals(sort)) {
+			// not sorted: stream the lines to the output as they are read
+			Printer out = new XLSPrinter(helper.getOutputStream(), false);
+			helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".xls", true);
+			execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
+			out.close();
+			return;
+		}
+		
 		BufferedPrinter out = new BufferedPrinter(new XLSPrinter(helper.getOutputStream(), false));
 		helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".xls", true);
 		
 		execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
 		
-		String sort = helper.getParameter("sort");
-		if (sort != null && !"0".equals(sort)) {
-			final boolean asc = Integer.parseInt(sort) > 0;
-			final int col = Math.abs(Integer.parseInt(sort)) - 1;
-			Collections.sort(out.getBuffer(), new Comparator<String[]>() {
-				int compare(String[] a, String[] b, int col) {
-					for (int i = 0; i < a.length; i++) {
-						int c = (col + i) % a.length;
-						try {
-							int cmp = Double.valueOf(a[c] == null ? "0" : a[c]).compareTo(Double.valueOf(b[c] == null ? "0" : b[c]));
-							if (cmp != 0) return cmp;
-						} catch (NumberFormatException e) {
-							int cmp = (a[c] == null ? "" : a[c]).compareTo(b[c] == null ? "" : b[c]);
-							if (cmp != 0) return cmp;
-						}
+		final boolean asc = Integer.parseInt(sort) > 0;
+		final int col = Math.abs(Integer.parseInt(sort)) - 1;
+		Collections.sort(out.getBuffer(), new Comparator<String[]>() {
+			int compare(String[] a, String[] b, int col) {
+				for (int i = 0; i < a.length; i++) {
+					int c = (col + i) % a.length;
+					try {
+						int cmp = Double.valueOf(a[c] == null ? "0" : a[c]).compareTo(Double.valueOf(b[c] == null ? "0" : b[c]));
+						if (cmp != 0) return cmp;
+					} catch (NumberFormatException e) {
+						int cmp = (a[c] == null ? "" : a[c]).compareTo(b[c] == null ? "" : b[c]);
+						if (cmp != 0) return cmp;
 					}
-					return 0;
-				}	
-				@Override
-				public int compare(String[] a, String[] b) {
-					return asc ? compare(a, b, col) : compare(b, a, col);
 				}
-			});
-		}
+				return 0;
+			}	
+			@Override
+			public int compare(String[] a, String[] b) {
+				return asc ? compare(a, b, col) : compare(b, a, col);
+			}
+		});
 		
 		out.close();
 	}
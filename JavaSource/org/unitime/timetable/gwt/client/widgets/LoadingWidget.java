@@ -55,7 +55,9 @@ public class LoadingWidget extends Composite {
 	private HTML iMessage = null;
 	private HTML iCancel;
 	private Timer iCancelTimer = null;
+	private Timer iProgressTimer = null;
 	private Long iExecutionId = null;
+	private String iProgressMessage = null;
 	
 	public LoadingWidget() {
 		iPanel = new AbsolutePanel();
@@ -107,6 +109,21 @@ public class LoadingWidget extends Composite {
 				RootPanel.get().add(iCancel, Window.getScrollLeft() + Window.getClientWidth() / 2 - 225, Window.getScrollTop() + 5 * Window.getClientHeight() / 12);
 			}
 		};
+		iProgressTimer = new Timer() {
+			@Override
+			public void run() {
+				final Long executionId = iExecutionId;
+				if (executionId == null || iCount == 0) return;
+				GwtRpc.progress(executionId, new AsyncCallback<String>() {
+					@Override
+					public void onFailure(Throwable caught) {}
+					@Override
+					public void onSuccess(String progress) {
+						if (executionId.equals(iExecutionId)) showProgress(progress);
+					}
+				});
+			}
+		};
 	}
 	
 	public void show() {
@@ -121,12 +138,27 @@ public class LoadingWidget extends Composite {
 		iExecutionId = executionId;
 		iWarningTimer.cancel();
 		iCancelTimer.schedule(2500);
+		iProgressTimer.scheduleRepeating(2000);
 	}
 	
 	protected void hideCancel() {
 		iCancelTimer.cancel();
+		iProgressTimer.cancel();
 		RootPanel.get().remove(iCancel);
 	}
+	
+	/**
+	 * Show progress of the running execution (see {@link GwtRpc#progress(Long, AsyncCallback)}) under the loading message
+	 */
+	protected void showProgress(String progress) {
+		if (iCount == 0 || progress == null || progress.isEmpty()) return;
+		if (iProgressMessage == null) {
+			iProgressMessage = iMessage.getHTML();
+			if (iMessage.getText().isEmpty())
+				RootPanel.get().add(iMessage, Window.getScrollLeft() + Window.getClientWidth() / 2 - 225, Window.getScrollTop() + Window.getClientHeight() / 3);
+		}
+		iMessage.setHTML(iProgressMessage.isEmpty() ? progress : iProgressMessage + "<br>" + progress);
+	}
 
 	public void show(String message, int warningDelayInMillis) {
 		if (iCount == 0) {
@@ -158,6 +190,9 @@ public class LoadingWidget extends Composite {
 			RootPanel.get().remove(this);
 			iWarningTimer.cancel();
 			iCancelTimer.cancel();
+			iProgressTimer.cancel();
+			iExecutionId = null;
+			iProgressMessage = null;
 			RootPanel.get().remove(iWarning);
 			RootPanel.get().remove(iMessage);
 			RootPanel.get().remove(iCancel);
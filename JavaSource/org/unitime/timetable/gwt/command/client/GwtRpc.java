@@ -68,6 +68,10 @@ public class GwtRpc {
 		});
 	}
 	
+	public static void progress(Long executionId, AsyncCallback<String> callback) {
+		RPC.getExecutionProgress(executionId, callback);
+	}
+	
 	public static interface CancellableCallback<T> extends AsyncCallback<T> {
 		public void onExecution(Long executionId);
 	}
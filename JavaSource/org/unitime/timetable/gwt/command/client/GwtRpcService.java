@@ -32,4 +32,5 @@ public interface GwtRpcService extends RemoteService {
 	public <T extends GwtRpcResponse> Long executeAsync(GwtRpcRequest<T> request) throws GwtRpcException;
 	public <T extends GwtRpcResponse> T waitForResults(Long executionId) throws GwtRpcException;
 	public Boolean cancelExecution(Long executionId) throws GwtRpcException;
+	public String getExecutionProgress(Long executionId) throws GwtRpcException;
 }
\ No newline at end of file
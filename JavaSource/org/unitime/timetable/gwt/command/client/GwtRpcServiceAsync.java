@@ -30,4 +30,5 @@ public interface GwtRpcServiceAsync {
 	public <T extends GwtRpcResponse> void executeAsync(GwtRpcRequest<T> request, AsyncCallback<Long> callback) throws GwtRpcException;
 	public <T extends GwtRpcResponse> void waitForResults(Long executionId, AsyncCallback<T> callback) throws GwtRpcException;
 	public void cancelExecution(Long executionId, AsyncCallback<Boolean> callback) throws GwtRpcException;
+	public void getExecutionProgress(Long executionId, AsyncCallback<String> callback) throws GwtRpcException;
 }
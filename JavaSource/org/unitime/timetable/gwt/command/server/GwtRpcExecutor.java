@@ -0,0 +1,408 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.gwt.command.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.command.client.GwtRpcException;
+
+/**
+ * Executor of the asynchronous GWT RPC requests (see {@link GwtRpcServlet#executeAsync(org.unitime.timetable.gwt.command.client.GwtRpcRequest)}).
+ * A fixed number of threads drains a bounded queue. The queue is fair between users: an execution is ordered by the number of
+ * executions its user had pending when it was submitted (and then by the submission order), so that a user submitting many
+ * requests at once does not hold back the others. When the queue is full or the user has too many executions pending,
+ * the execution is rejected.
+ * Active, queued and rejected executions of each request class are published through JMX (see {@link GwtRpcExecutorMBean}).
+ * A running execution can report its progress using {@link GwtRpcExecutor#setProgress(String)}.
+ * 
+ * @author Tomas Muller
+ */
+public class GwtRpcExecutor implements GwtRpcExecutorMBean {
+	private static Log sLog = LogFactory.getLog(GwtRpcExecutor.class);
+	private static GwtRpcExecutor sInstance = null;
+	private static ThreadLocal<Task> sCurrentTask = new ThreadLocal<Task>();
+	private ThreadPoolExecutor iExecutor;
+	private int iQueueLimit, iUserLimit;
+	private AtomicLong iSequence = new AtomicLong(0);
+	private AtomicLong iRejected = new AtomicLong(0);
+	private Map<String, Integer> iUserExecutions = new HashMap<String, Integer>();
+	private Map<String, RequestStats> iStats = new TreeMap<String, RequestStats>();
+	private ObjectName iObjectName = null;
+	
+	public GwtRpcExecutor(int poolSize, int queueLimit, int userLimit) {
+		iQueueLimit = queueLimit;
+		iUserLimit = userLimit;
+		iExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0l, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+			private AtomicInteger iId = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setName("RPC-Async-" + iId.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("org.unitime:type=GwtRpcExecutor");
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(this, objectName);
+			iObjectName = objectName;
+		} catch (Exception e) {
+			sLog.warn("Failed to register executor statistics: " + e.getMessage());
+		}
+	}
+	
+	public static synchronized GwtRpcExecutor getInstance() {
+		if (sInstance == null)
+			sInstance = new GwtRpcExecutor(
+					ApplicationProperty.GwtRpcAsyncPoolSize.intValue(),
+					ApplicationProperty.GwtRpcAsyncQueueLimit.intValue(),
+					ApplicationProperty.GwtRpcAsyncUserLimit.intValue());
+		return sInstance;
+	}
+	
+	public static synchronized void shutdownInstance() {
+		if (sInstance != null) {
+			sInstance.shutdown();
+			sInstance = null;
+		}
+	}
+	
+	/**
+	 * Report progress of the execution that is running in the current thread (ignored when called outside of an asynchronous execution)
+	 */
+	public static void setProgress(String progress) {
+		Task task = sCurrentTask.get();
+		if (task != null) task.iProgress = progress;
+	}
+	
+	/**
+	 * Queue the given task
+	 * @throws GwtRpcException when the queue is full or the user has too many executions pending
+	 */
+	public void execute(Task task) throws GwtRpcException {
+		task.iExecutor = this;
+		task.iStats = getStats(task.getName());
+		synchronized (iUserExecutions) {
+			if (iExecutor.isShutdown()) {
+				task.iStats.rejected(); iRejected.incrementAndGet();
+				throw new GwtRpcException("Server is shutting down.");
+			}
+			if (iQueueLimit > 0 && iExecutor.getQueue().size() >= iQueueLimit) {
+				task.iStats.rejected(); iRejected.incrementAndGet();
+				sLog.info("Queue is full, rejecting " + task.getName() + " of " + task.getUser() + ".");
+				throw new GwtRpcException("Server is busy, please try again later.");
+			}
+			Integer pending = iUserExecutions.get(task.getUser());
+			if (iUserLimit > 0 && pending != null && pending >= iUserLimit) {
+				task.iStats.rejected(); iRejected.incrementAndGet();
+				sLog.info("Too many pending executions, rejecting " + task.getName() + " of " + task.getUser() + ".");
+				throw new GwtRpcException("Too many requests are being processed, please wait for them to finish first.");
+			}
+			task.iUserOrder = (pending == null ? 0 : pending.intValue());
+			task.iId = iSequence.incrementAndGet();
+			iUserExecutions.put(task.getUser(), task.iUserOrder + 1);
+		}
+		task.iStats.queued();
+		iExecutor.execute(task);
+	}
+	
+	protected void finished(Task task) {
+		synchronized (iUserExecutions) {
+			Integer pending = iUserExecutions.get(task.getUser());
+			if (pending == null || pending <= 1)
+				iUserExecutions.remove(task.getUser());
+			else
+				iUserExecutions.put(task.getUser(), pending - 1);
+		}
+	}
+	
+	/**
+	 * Number of executions that are queued ahead of the given task
+	 */
+	protected int getQueuePosition(Task task) {
+		int ahead = 0;
+		for (Runnable r: iExecutor.getQueue())
+			if (r instanceof Task && ((Task)r).compareTo(task) < 0) ahead ++;
+		return ahead;
+	}
+	
+	public void shutdown() {
+		iExecutor.shutdown();
+		if (iObjectName != null) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				if (server.isRegistered(iObjectName))
+					server.unregisterMBean(iObjectName);
+			} catch (Exception e) {
+				sLog.warn("Failed to unregister executor statistics: " + e.getMessage());
+			}
+			iObjectName = null;
+		}
+	}
+	
+	protected RequestStats getStats(String name) {
+		synchronized (iStats) {
+			RequestStats stats = iStats.get(name);
+			if (stats == null) {
+				stats = new RequestStats(name);
+				iStats.put(name, stats);
+			}
+			return stats;
+		}
+	}
+	
+	@Override
+	public int getPoolSize() { return iExecutor.getCorePoolSize(); }
+	
+	@Override
+	public int getActiveCount() { return iExecutor.getActiveCount(); }
+	
+	@Override
+	public int getQueueSize() { return iExecutor.getQueue().size(); }
+	
+	@Override
+	public int getQueueLimit() { return iQueueLimit; }
+	
+	@Override
+	public void setQueueLimit(int limit) { iQueueLimit = limit; }
+	
+	@Override
+	public int getUserLimit() { return iUserLimit; }
+	
+	@Override
+	public void setUserLimit(int limit) { iUserLimit = limit; }
+	
+	@Override
+	public long getNrExecuted() { return iExecutor.getCompletedTaskCount(); }
+	
+	@Override
+	public long getNrRejected() { return iRejected.get(); }
+	
+	@Override
+	public String[] getRequestStatistics() {
+		List<String> ret = new ArrayList<String>();
+		synchronized (iStats) {
+			for (RequestStats stats: iStats.values())
+				ret.add(stats.toString());
+		}
+		Collections.sort(ret);
+		return ret.toArray(new String[ret.size()]);
+	}
+	
+	@Override
+	public void resetStatistics() {
+		synchronized (iStats) {
+			for (RequestStats stats: iStats.values())
+				stats.reset();
+		}
+		iRejected.set(0);
+	}
+	
+	/**
+	 * Asynchronous execution. The execution can be cancelled before it starts (it is removed from the queue) or while
+	 * it is running (the executing thread gets interrupted).
+	 */
+	public static abstract class Task implements Runnable, Comparable<Task> {
+		private String iName, iUser;
+		private GwtRpcExecutor iExecutor;
+		private RequestStats iStats;
+		private long iId, iCreated, iStarted = 0;
+		private int iUserOrder = 0;
+		private Thread iThread = null;
+		private boolean iCancelled = false, iFinished = false;
+		private volatile String iProgress = null;
+		
+		/**
+		 * @param name request name (used for statistics)
+		 * @param user user that submitted the request (used for fairness between users)
+		 */
+		protected Task(String name, String user) {
+			iName = name;
+			iUser = (user == null ? "" : user);
+			iCreated = System.currentTimeMillis();
+		}
+		
+		public String getName() { return iName; }
+		public String getUser() { return iUser; }
+		
+		/**
+		 * Execute the task, called in one of the executor's threads
+		 */
+		protected abstract void execute();
+		
+		@Override
+		public final void run() {
+			synchronized (this) {
+				if (iCancelled) {
+					iFinished = true;
+					notifyAll();
+				} else {
+					iThread = Thread.currentThread();
+					iStarted = System.currentTimeMillis();
+				}
+			}
+			if (iFinished) {
+				iStats.cancelled();
+				iExecutor.finished(this);
+				return;
+			}
+			iStats.started(iStarted - iCreated);
+			sCurrentTask.set(this);
+			try {
+				execute();
+			} finally {
+				sCurrentTask.remove();
+				iStats.executed(System.currentTimeMillis() - iStarted);
+				iExecutor.finished(this);
+				synchronized (this) {
+					iThread = null;
+					iFinished = true;
+					notifyAll();
+				}
+			}
+		}
+		
+		/**
+		 * Wait for the execution to finish (or to be cancelled)
+		 */
+		public void waitToFinish() throws InterruptedException {
+			synchronized (this) {
+				while (!iFinished)
+					wait();
+			}
+		}
+		
+		/**
+		 * Cancel the execution: remove it from the queue, or interrupt the executing thread
+		 */
+		public void cancel() {
+			synchronized (this) {
+				if (iFinished || iCancelled) return;
+				iCancelled = true;
+				if (iThread != null) {
+					iThread.interrupt();
+					return;
+				}
+			}
+			if (iExecutor != null && iExecutor.iExecutor.remove(this)) {
+				iStats.cancelled();
+				iExecutor.finished(this);
+				synchronized (this) {
+					iFinished = true;
+					notifyAll();
+				}
+			}
+		}
+		
+		public synchronized boolean isCancelled() { return iCancelled; }
+		
+		/**
+		 * Current state of the execution: position in the queue, or the last reported progress and the running time
+		 */
+		public String getProgress() {
+			synchronized (this) {
+				if (iFinished) return (iCancelled ? "Cancelled." : "Finished.");
+				if (iCancelled) return "Cancelling...";
+				if (iThread == null) {
+					int ahead = (iExecutor == null ? 0 : iExecutor.getQueuePosition(this));
+					return "Waiting in the queue" + (ahead > 0 ? " (" + ahead + " ahead)" : "") + "...";
+				}
+			}
+			long time = (System.currentTimeMillis() - iStarted) / 1000;
+			String progress = iProgress;
+			return (progress == null ? "Running" : progress) + " (" + time + " s)";
+		}
+		
+		@Override
+		public int compareTo(Task task) {
+			int cmp = Integer.compare(iUserOrder, task.iUserOrder);
+			if (cmp != 0) return cmp;
+			return Long.compare(iId, task.iId);
+		}
+		
+		@Override
+		public String toString() {
+			return iName;
+		}
+	}
+	
+	protected static class RequestStats {
+		private String iName;
+		private int iQueued = 0, iActive = 0;
+		private long iExecuted = 0, iRejected = 0, iCancelled = 0, iWait = 0, iMaxWait = 0, iTime = 0, iMaxTime = 0;
+		
+		protected RequestStats(String name) { iName = name; }
+		
+		protected synchronized void queued() { iQueued ++; }
+		
+		protected synchronized void rejected() { iRejected ++; }
+		
+		protected synchronized void cancelled() {
+			if (iQueued > 0) iQueued --;
+			iCancelled ++;
+		}
+		
+		protected synchronized void started(long wait) {
+			if (iQueued > 0) iQueued --;
+			iActive ++;
+			iWait += wait;
+			if (wait > iMaxWait) iMaxWait = wait;
+		}
+		
+		protected synchronized void executed(long time) {
+			if (iActive > 0) iActive --;
+			iExecuted ++;
+			iTime += time;
+			if (time > iMaxTime) iMaxTime = time;
+		}
+		
+		protected synchronized void reset() {
+			iExecuted = 0; iRejected = 0; iCancelled = 0; iWait = 0; iMaxWait = 0; iTime = 0; iMaxTime = 0;
+		}
+		
+		@Override
+		public synchronized String toString() {
+			return iName + ": " + iActive + " active, " + iQueued + " queued, " + iExecuted + " executed, " + iRejected + " rejected, " + iCancelled + " cancelled" +
+					", wait " + (iExecuted == 0 ? 0 : iWait / iExecuted) + " ms avg / " + iMaxWait + " ms max" +
+					", execution " + (iExecuted == 0 ? 0 : iTime / iExecuted) + " ms avg / " + iMaxTime + " ms max";
+		}
+	}
+}
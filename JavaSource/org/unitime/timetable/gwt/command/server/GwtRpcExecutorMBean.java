@@ -0,0 +1,57 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.gwt.command.server;
+
+/**
+ * JMX interface of the {@link GwtRpcExecutor}: active, queued and rejected asynchronous executions of each GWT RPC request.
+ * 
+ * @author Tomas Muller
+ */
+public interface GwtRpcExecutorMBean {
+	
+	public int getPoolSize();
+	
+	public int getActiveCount();
+	
+	public int getQueueSize();
+	
+	public int getQueueLimit();
+	
+	public void setQueueLimit(int limit);
+	
+	public int getUserLimit();
+	
+	public void setUserLimit(int limit);
+	
+	public long getNrExecuted();
+	
+	/**
+	 * Number of executions that were rejected because the queue was full or the user had too many executions pending
+	 */
+	public long getNrRejected();
+	
+	/**
+	 * For each request class: number of active, queued, executed and rejected executions, average and maximal wait and execution times
+	 */
+	public String[] getRequestStatistics();
+	
+	public void resetStatistics();
+
+}
@@ -52,6 +52,7 @@ import org.unitime.timetable.model.QueryLog;
 import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.context.HttpSessionContext;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 import org.unitime.timetable.security.evaluation.PermissionCheck;
 import org.unitime.timetable.util.Formats;
 
@@ -127,6 +128,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public void destroy() {
 		if (iSaver != null) iSaver.interrupt();
+		GwtRpcExecutor.shutdownInstance();
 	}
 	
 	public static <T extends GwtRpcResponse> GwtRpcImplementation<GwtRpcRequest<T>, T> getImplementation(Class<? extends GwtRpcRequest<T>> requestClass, ApplicationContext applicationContext) throws BeansException {
@@ -266,11 +268,13 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	public <T extends GwtRpcResponse> Long executeAsync(GwtRpcRequest<T> request) throws GwtRpcException {
 		try {
 			Execution<GwtRpcRequest<T>, T> execution = new Execution<GwtRpcRequest<T>, T>(request);
+			GwtRpcExecutor.getInstance().execute(execution);
 			synchronized (sExecutions) {
 				sExecutions.put(execution.getExecutionId(), execution);
 			}
-			execution.start();
 			return execution.getExecutionId();
+		} catch (GwtRpcException e) {
+			throw e;
 		} catch (Exception e) {
 			sLog.warn("Execute async failed: " + e.getMessage());
 			throw new GwtRpcException(e.getMessage(), e);
@@ -284,7 +288,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			synchronized (sExecutions) {
 				execution = sExecutions.get(executionId);
 			}
-			if (execution == null) throw new GwtRpcException("No execution with given id found.");
+			if (execution == null || !isOwner(execution)) throw new GwtRpcException("No execution with given id found.");
 			try {
 				execution.waitToFinish();
 			} catch (InterruptedException e) {
@@ -311,7 +315,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			synchronized (sExecutions) {
 				execution = sExecutions.get(executionId);
 			}
-			if (execution == null) return false;
+			if (execution == null || !isOwner(execution)) return false;
 			execution.cancelExecution();
 			return true;
 		} catch (Exception e) {
@@ -319,6 +323,31 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			throw new GwtRpcException(e.getMessage(), e);
 		}
 	}
+	
+	@Override
+	public String getExecutionProgress(Long executionId) throws GwtRpcException {
+		Execution execution = null;
+		synchronized (sExecutions) {
+			execution = sExecutions.get(executionId);
+		}
+		if (execution == null || !isOwner(execution)) return null;
+		return execution.getProgress();
+	}
+	
+	/**
+	 * Owner of the asynchronous executions submitted in the current request: the authenticated user, or the HTTP session when not authenticated
+	 */
+	protected String getExecutionOwner() {
+		return getSessionContext().isAuthenticated() ? getSessionContext().getUser().getExternalUserId() : getSessionContext().getHttpSessionId();
+	}
+	
+	/**
+	 * Executions can be only waited for, cancelled, or checked by the user that submitted them (the execution ids are sequential)
+	 */
+	protected boolean isOwner(Execution execution) {
+		String owner = getExecutionOwner();
+		return owner != null && owner.equals(execution.getUser());
+	}
 		
 	private static class IdGenerator {
 		long iNextId = 0;
@@ -327,19 +356,17 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 		}
 	}
 	
-	private class Execution<R extends GwtRpcRequest<T>, T extends GwtRpcResponse> extends Thread {
+	private class Execution<R extends GwtRpcRequest<T>, T extends GwtRpcResponse> extends GwtRpcExecutor.Task {
 		R iRequest;
 		T iResponse = null;
 		SessionContext iContext = null;
 		GwtRpcException iException = null;
 		Thread iWaitingThread = null;
 		long iExecutionId;
-		boolean iRunning = false;
 		String iLocale = null;
 		
 		Execution(R request) {
-			setName("RPC:" + request);
-			setDaemon(true);
+			super(request.getClass().getSimpleName(), getExecutionOwner());
 			iRequest = request;
 			iExecutionId = sIdGenerator.generatedId();
 			iContext = new GwtRpcHelper(getSessionContext(), getPermissionCheck());
@@ -347,8 +374,8 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 		}
 
 		@Override
-		public void run() {
-			iRunning = true;
+		protected void execute() {
+			boolean permissionCache = PermissionCache.begin();
 			Localization.setLocale(iLocale);
 			ApplicationProperties.setSessionId(iContext.getUser() == null ? null : iContext.getUser().getCurrentAcademicSessionId());
 			// start time
@@ -392,19 +419,24 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 				Formats.removeFormats();
 				ApplicationProperties.setSessionId(null);
 				_RootDAO.closeCurrentThreadSessions();
+				if (permissionCache) PermissionCache.end();
 			}
 			synchronized (this) {
 				iWaitingThread = null;
-				iRunning = false;
 				iContext = null;
 			}
 		}
 		
-		void waitToFinish() throws InterruptedException {
+		@Override
+		public void waitToFinish() throws InterruptedException {
 			synchronized (this) {
-				if (iRunning) {
-					iWaitingThread = Thread.currentThread();
-					join();
+				iWaitingThread = Thread.currentThread();
+			}
+			try {
+				super.waitToFinish();
+			} finally {
+				synchronized (this) {
+					iWaitingThread = null;
 				}
 			}
 		}
@@ -414,7 +446,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 				iException = new GwtRpcCancelledException("Operation cancelled by the user.");
 				if (iWaitingThread != null) iWaitingThread.interrupt();
 			}
-			interrupt();
+			cancel();
 		}
 		
 		T getResponse() { return iResponse; }
@@ -21,6 +21,7 @@ package org.unitime.timetable.gwt.server;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
@@ -55,6 +56,7 @@ import org.unitime.commons.Debug;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.action.PersonalizedExamReportAction;
 import org.unitime.timetable.events.EventDetailBackend;
+import org.unitime.timetable.events.EventResourceResolver;
 import org.unitime.timetable.events.QueryEncoderBackend;
 import org.unitime.timetable.export.events.EventsExportEventsToICal;
 import org.unitime.timetable.gwt.resources.GwtConstants;
@@ -84,6 +86,7 @@ import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.UserContext;
 import org.unitime.timetable.server.CourseDetailsBackend;
 import org.unitime.timetable.solver.service.SolverServerService;
+import org.unitime.timetable.util.CalendarFeedCache;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.DateUtils;
 
@@ -143,6 +146,51 @@ public class CalendarServlet extends HttpServlet {
 			else
 				sessionId = (Long)request.getSession().getAttribute("sessionId");
 		}
+		
+		String key = getCacheKey(params, q, sessionId);
+		CalendarFeedCache.Feed feed = CalendarFeedCache.get(key);
+		if (feed == null) {
+			long[] generations = CalendarFeedCache.getGenerations();
+			EventResourceResolver.Dependencies dependencies = new EventResourceResolver.Dependencies();
+			String content = render(params, q, sessionId, response, dependencies);
+			if (content == null) return;
+			feed = CalendarFeedCache.put(key, content, dependencies, generations);
+		}
+		
+		response.setContentType("text/calendar; charset=UTF-8");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader( "Content-Disposition", "attachment; filename=\"schedule.ics\"" );
+		if (CalendarFeedCache.isNotModified(request, response, feed.getETag(), feed.getLastModified())) return;
+		
+		PrintWriter out = response.getWriter();
+		try {
+			out.write(feed.getContent());
+			out.flush();
+		} finally {
+			out.close();
+		}
+	}
+	
+	protected String getCacheKey(Params params, String q, Long sessionId) {
+		if (q != null) return "q=" + q + "|" + sessionId;
+		TreeSet<String> names = new TreeSet<String>();
+		for (Enumeration<String> e = params.getParameterNames(); e.hasMoreElements(); )
+			names.add(e.nextElement());
+		StringBuffer key = new StringBuffer();
+		for (String name: names) {
+			String[] values = params.getParameterValues(name);
+			if (values != null)
+				for (String value: values)
+					key.append(name + "=" + value + "&");
+		}
+		return key.toString() + "|" + sessionId;
+	}
+	
+	/**
+	 * Render the calendar, returns null when an error has been sent
+	 * @param dependencies objects the calendar is rendered from are recorded here
+	 */
+	protected String render(Params params, String q, Long sessionId, HttpServletResponse response, EventResourceResolver.Dependencies dependencies) throws IOException {
 		if (params.getParameter("term") != null) {
 			org.hibernate.Session hibSession = CurriculumDAO.getInstance().getSession();
 			try {
@@ -158,12 +206,13 @@ public class CalendarServlet extends HttpServlet {
 		}
 		if (sessionId == null) {
 			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No academic session provided.");
-			return;
+			return null;
 		}
+		dependencies.add(EventResourceResolver.SESSION, sessionId);
 		Session session = SessionDAO.getInstance().get(sessionId);
 		if (session == null) {
 			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Academic session does not exist.");
-			return;
+			return null;
 		}
 		String classIds = params.getParameter("cid");
     	String fts = params.getParameter("ft");
@@ -171,10 +220,6 @@ public class CalendarServlet extends HttpServlet {
     	String eventIds = params.getParameter("eid");
     	String userId = params.getParameter("uid");
     	if (q == null) userId = QueryEncoderBackend.decode(userId);
-   
-		response.setContentType("text/calendar; charset=UTF-8");
-		response.setCharacterEncoding("UTF-8");
-		response.setHeader( "Content-Disposition", "attachment; filename=\"schedule.ics\"" );
         
 		ICalendar ical = new ICalendar();
 		ical.setVersion(ICalVersion.V2_0);
@@ -195,7 +240,7 @@ public class CalendarServlet extends HttpServlet {
     				CourseOffering course = CourseOfferingDAO.getInstance().get(Long.valueOf(courseAndClassId[0]), hibSession);
     				Class_ clazz = Class_DAO.getInstance().get(Long.valueOf(courseAndClassId[1]), hibSession);
     				if (course == null || clazz == null) continue;
-            		printClass(course, clazz, ical);
+            		printClass(course, clazz, ical, dependencies);
         		}
         	}
         	if (fts != null && !fts.isEmpty()) {
@@ -214,7 +259,7 @@ public class CalendarServlet extends HttpServlet {
             		try {
                 		Exam exam = ExamDAO.getInstance().get(Long.valueOf(examId), hibSession);
                 		if (exam != null)
-                			printExam(exam, ical);
+                			printExam(exam, ical, dependencies);
             		} catch (NumberFormatException e) {}
             	}
             }
@@ -222,6 +267,7 @@ public class CalendarServlet extends HttpServlet {
             	for (String eventId: eventIds.split(",")) {
             		if (eventId.isEmpty()) continue;
             		try {
+            			dependencies.add(EventResourceResolver.EVENT, Long.valueOf(eventId));
             			Event event = EventDAO.getInstance().get(Long.valueOf(eventId), hibSession);
             			if (event != null)
             				exporter.print(ical, EventDetailBackend.getEventDetail(session, event, null));
@@ -229,46 +275,49 @@ public class CalendarServlet extends HttpServlet {
             	}
             }
             if (userId != null && !userId.isEmpty()) {
+            	dependencies.add(EventResourceResolver.PERSON, userId);
                 for (DepartmentalInstructor instructor: (List<DepartmentalInstructor>)hibSession.createQuery("select i from DepartmentalInstructor i " +
                 		"where i.externalUniqueId = :externalId and i.department.session.uniqueId = :sessionId").
                 		setLong("sessionId", sessionId).setString("externalId", userId).list()) {
+                	dependencies.add(EventResourceResolver.INSTRUCTOR, instructor.getUniqueId());
                 	if (!PersonalizedExamReportAction.canDisplay(instructor.getDepartment().getSession())) continue;
                 	for (ExamType t: ExamType.findAll(hibSession)) {
                 		ExamStatus status = ExamStatus.findStatus(hibSession, instructor.getSession().getUniqueId(), t.getUniqueId());
                 		DepartmentStatusType type = (status == null || status.getStatus() == null ? instructor.getSession().getStatusType() : status.getStatus());
                 		if (t.getType() == ExamType.sExamTypeFinal && type.canNoRoleReportExamFinal()) {
                 			for (Exam exam: instructor.getExams(t))
-                				printExam(exam, ical);
+                				printExam(exam, ical, dependencies);
                 		} else if (t.getType() == ExamType.sExamTypeMidterm && type.canNoRoleReportExamMidterm()) {
                 			for (Exam exam: instructor.getExams(t))
-                				printExam(exam, ical);
+                				printExam(exam, ical, dependencies);
                 		}
                 	}
                     if (instructor.getDepartment().getSession().getStatusType().canNoRoleReportClass()) {
                         for (ClassInstructor ci: instructor.getClasses()) {
-                            printClass(ci.getClassInstructing().getSchedulingSubpart().getInstrOfferingConfig().getControllingCourseOffering(), ci.getClassInstructing(), ical);
+                            printClass(ci.getClassInstructing().getSchedulingSubpart().getInstrOfferingConfig().getControllingCourseOffering(), ci.getClassInstructing(), ical, dependencies);
                         }
                     }
                 }
                 for (Student student: (List<Student>)hibSession.createQuery("select s from Student s where " +
                 		"s.externalUniqueId=:externalId and s.session.uniqueId = :sessionId").
                 		setLong("sessionId", sessionId).setString("externalId", userId).list()) {
+                	dependencies.add(EventResourceResolver.STUDENT, student.getUniqueId());
                 	if (!PersonalizedExamReportAction.canDisplay(student.getSession())) continue;
                 	for (ExamType t: ExamType.findAll(hibSession)) {
                 		ExamStatus status = ExamStatus.findStatus(hibSession, student.getSession().getUniqueId(), t.getUniqueId());
                 		DepartmentStatusType type = (status == null || status.getStatus() == null ? student.getSession().getStatusType() : status.getStatus());
                 		if (t.getType() == ExamType.sExamTypeFinal && type.canNoRoleReportExamFinal()) {
                 			for (Exam exam: student.getExams(t))
-                				printExam(exam, ical);
+                				printExam(exam, ical, dependencies);
                 		} else if (t.getType() == ExamType.sExamTypeMidterm && type.canNoRoleReportExamMidterm()) {
                 			for (Exam exam: student.getExams(t))
-                				printExam(exam, ical);
+                				printExam(exam, ical, dependencies);
                 		}
                 	}
                     if (student.getSession().getStatusType().canNoRoleReportClass()) {
                         for (Iterator i=student.getClassEnrollments().iterator();i.hasNext();) {
                             StudentClassEnrollment sce = (StudentClassEnrollment)i.next();
-                            printClass(sce.getCourseOffering(), sce.getClazz(), ical);
+                            printClass(sce.getCourseOffering(), sce.getClazz(), ical, dependencies);
                         }
                     }
                 }
@@ -276,9 +325,10 @@ public class CalendarServlet extends HttpServlet {
         } catch (Exception e) {
         	Debug.error(e.getMessage(), e);
         	response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        	return null;
         }
 		
-		PrintWriter out = response.getWriter();
+		StringWriter out = new StringWriter();
         ICalWriter writer = new ICalWriter(out, ICalVersion.V2_0);
 		try {
 			try {
@@ -288,14 +338,14 @@ public class CalendarServlet extends HttpServlet {
 	        }
         	writer.write(ical);
         	writer.flush();
-        	out.flush();
 		} finally {
-			out.close();
 			writer.close();
 		}
+		return out.toString();
 	}
 
-	private void printExam(Exam exam, ICalendar ical) throws IOException {
+	private void printExam(Exam exam, ICalendar ical, EventResourceResolver.Dependencies dependencies) throws IOException {
+		dependencies.add(EventResourceResolver.EXAM, exam.getUniqueId());
 		if (exam.getAssignedPeriod() == null) return;
 
         VEvent vevent = new VEvent();
@@ -321,7 +371,8 @@ public class CalendarServlet extends HttpServlet {
         ical.addEvent(vevent);
 	}
 
-	private void printClass(CourseOffering course, Class_ clazz, ICalendar ical) throws IOException {
+	private void printClass(CourseOffering course, Class_ clazz, ICalendar ical, EventResourceResolver.Dependencies dependencies) throws IOException {
+		dependencies.add(EventResourceResolver.CLASS, clazz.getUniqueId()).add(EventResourceResolver.COURSE, course == null ? null : course.getUniqueId());
 		Assignment assignment = clazz.getCommittedAssignment();
 		if (assignment == null) return;
 		TimeLocation time = assignment.getTimeLocation();
@@ -22,18 +22,34 @@ package org.unitime.timetable.gwt.server;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Tomas Muller
  */
 public class Query implements Serializable {
 	private static final long serialVersionUID = 1L;
+	private static final int sParsedCacheSize = 1000;
+	private static final Map<String, Term> sParsedCache = new LinkedHashMap<String, Term>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Term> eldest) {
+			return size() > sParsedCacheSize;
+		}
+	};
 	
 	private Term iQuery = null;
 	
+	/**
+	 * Parse the given filter string. Parsed queries are cached (up to 1000 most recently used filter strings are kept),
+	 * so the returned term tree may be shared with other instances and must not be modified.
+	 */
 	public Query(String query) {
-		iQuery = parse(query == null ? "" : query.trim());
+		iQuery = parseCached(query == null ? "" : query.trim());
 	}
 	
 	public Query(Term query) {
@@ -60,6 +76,30 @@ public class Query implements Serializable {
 		return iQuery.toString(f);
 	}
 	
+	/**
+	 * Partially evaluate the query. Atoms on the given attributes (null stands for atoms with no attribute) are evaluated
+	 * using the provided matcher and the query is simplified accordingly. The resulting query can be then evaluated
+	 * with a more specific matcher (e.g., a course request matcher when the given matcher is a course matcher), as long as
+	 * the more specific matcher gives the same results on the given attributes and it never returns null.
+	 * If {@link Query#isFalse()} is true for the returned query, nothing can match (e.g., no course request of the course).
+	 */
+	public Query specialize(AmbigousTermMatcher m, String... attributes) {
+		Set<String> attrs = new HashSet<String>();
+		for (String a: attributes) attrs.add(a);
+		Term t = iQuery.specialize(m, attrs);
+		return (t == iQuery ? this : new Query(t));
+	}
+	
+	/**
+	 * True if the query matches everything (e.g., after {@link Query#specialize(AmbigousTermMatcher, String...)})
+	 */
+	public boolean isTrue() { return iQuery == ConstantTerm.TRUE; }
+	
+	/**
+	 * True if the query matches nothing (e.g., after {@link Query#specialize(AmbigousTermMatcher, String...)})
+	 */
+	public boolean isFalse() { return iQuery == ConstantTerm.FALSE; }
+	
 	public boolean hasAttribute(String... attr) {
 		for (String a: attr)
 			if (iQuery.hasAttribute(a)) return true;
@@ -109,6 +149,18 @@ public class Query implements Serializable {
 		return ret;
 	}
 
+	private static Term parseCached(String query) {
+		synchronized (sParsedCache) {
+			Term term = sParsedCache.get(query);
+			if (term != null) return term;
+		}
+		Term term = parse(query);
+		synchronized (sParsedCache) {
+			sParsedCache.put(query, term);
+		}
+		return term;
+	}
+
 	private static Term parse(String query) {
 		List<String> splits;
 		splits = split(query, "and", "&&", "&");
@@ -176,6 +228,34 @@ public class Query implements Serializable {
 		public String toString(QueryFormatter f);
 		public boolean hasAttribute(String attribute);
 		public Boolean match(AmbigousTermMatcher m);
+		public Term specialize(AmbigousTermMatcher m, Set<String> attributes);
+	}
+	
+	public static class ConstantTerm implements Term {
+		private static final long serialVersionUID = 1L;
+		public static final ConstantTerm TRUE = new ConstantTerm(true);
+		public static final ConstantTerm FALSE = new ConstantTerm(false);
+		private boolean iValue;
+		
+		private ConstantTerm(boolean value) { iValue = value; }
+		
+		public static ConstantTerm valueOf(boolean value) { return value ? TRUE : FALSE; }
+		
+		public boolean getValue() { return iValue; }
+		
+		public boolean match(TermMatcher m) { return iValue; }
+		
+		public Boolean match(AmbigousTermMatcher m) { return iValue; }
+		
+		public boolean hasAttribute(String attribute) { return false; }
+		
+		public Term specialize(AmbigousTermMatcher m, Set<String> attributes) { return this; }
+		
+		public String toString() { return iValue ? "TRUE" : "FALSE"; }
+		
+		public String toString(QueryFormatter f) { return toString(); }
+		
+		private Object readResolve() { return valueOf(iValue); }
 	}
 
 	public static abstract class CompositeTerm implements Term {
@@ -249,6 +329,22 @@ public class Query implements Serializable {
 			}
 			return false;
 		}
+		
+		public Term specialize(AmbigousTermMatcher m, Set<String> attributes) {
+			if (terms().isEmpty()) return this;
+			List<Term> terms = new ArrayList<Term>();
+			boolean changed = false;
+			for (Term t: terms()) {
+				Term s = t.specialize(m, attributes);
+				if (s == ConstantTerm.TRUE) return s;
+				if (s != t) changed = true;
+				if (s != ConstantTerm.FALSE) terms.add(s);
+			}
+			if (!changed) return this;
+			if (terms.isEmpty()) return ConstantTerm.FALSE;
+			if (terms.size() == 1) return terms.get(0);
+			return new OrTerm(terms);
+		}
 	}
 	
 	public static class AndTerm extends CompositeTerm {
@@ -273,6 +369,21 @@ public class Query implements Serializable {
 			}
 			return true;
 		}
+		
+		public Term specialize(AmbigousTermMatcher m, Set<String> attributes) {
+			List<Term> terms = new ArrayList<Term>();
+			boolean changed = false;
+			for (Term t: terms()) {
+				Term s = t.specialize(m, attributes);
+				if (s == ConstantTerm.FALSE) return s;
+				if (s != t) changed = true;
+				if (s != ConstantTerm.TRUE) terms.add(s);
+			}
+			if (!changed) return this;
+			if (terms.isEmpty()) return ConstantTerm.TRUE;
+			if (terms.size() == 1) return terms.get(0);
+			return new AndTerm(terms);
+		}
 	}
 	
 	public static class NotTerm implements Term {
@@ -297,6 +408,13 @@ public class Query implements Serializable {
 			return !r;
 		}
 		
+		public Term specialize(AmbigousTermMatcher m, Set<String> attributes) {
+			Term s = iTerm.specialize(m, attributes);
+			if (s == iTerm) return this;
+			if (s instanceof ConstantTerm) return ConstantTerm.valueOf(!((ConstantTerm)s).getValue());
+			return new NotTerm(s);
+		}
+		
 		public String toString() { return "NOT " + iTerm.toString(); }
 		
 		public String toString(QueryFormatter f) { return "NOT " + iTerm.toString(f); }
@@ -331,6 +449,13 @@ public class Query implements Serializable {
 		public Boolean match(AmbigousTermMatcher m) {
 			return m.match(iAttr, iBody);
 		}
+		
+		public Term specialize(AmbigousTermMatcher m, Set<String> attributes) {
+			if (!attributes.contains(iAttr)) return this;
+			Boolean r = m.match(iAttr, iBody);
+			if (r == null) return this;
+			return ConstantTerm.valueOf(r);
+		}
 	}
 	
 	public static interface TermMatcher {
@@ -353,6 +478,88 @@ public class Query implements Serializable {
 		System.out.println(split("(a \"b c\")  ddd f", ""));
 		System.out.println(split("a \"b c\" OR not ddd f", "or"));
 		System.out.println(split("a or((\"b c\" or dddor) f) q", "or"));
+		System.out.println(new Query("(subject:MA or subject:CS) and status:Enrolled").specialize(new AmbigousTermMatcher() {
+			@Override
+			public Boolean match(String attr, String term) {
+				if ("subject".equals(attr)) return "MA".equals(term);
+				return null;
+			}
+		}, "subject"));
+		benchmark(args.length > 0 ? Integer.valueOf(args[0]) : 100000);
+	}
+	
+	/**
+	 * Simple benchmark on typical scheduling dashboard filters: parsing with and without the parse cache, and
+	 * evaluation of the full query on each course request vs. a query specialized on the course attributes first.
+	 */
+	private static void benchmark(int requests) {
+		String[] queries = new String[] {
+				"",
+				"subject:MA",
+				"subject:MA status:Enrolled",
+				"(subject:MA or subject:CS) and assignment:Wait-Listed",
+				"course:\"MA 161\" and not mode:\"My Students\"",
+				"department:1124 consent:todo student:smith",
+		};
+		final String[] subjects = new String[] { "MA", "CS", "BIOL", "CHM", "ENGL", "PHYS", "ECON", "HIST" };
+		final int coursesPerSubject = 50;
+		for (String q: queries) {
+			long t0 = System.nanoTime();
+			for (int i = 0; i < 1000; i++) parse(q);
+			long t1 = System.nanoTime();
+			for (int i = 0; i < 1000; i++) new Query(q);
+			long t2 = System.nanoTime();
+			Query query = new Query(q);
+			int full = 0, spec = 0, skipped = 0;
+			long t3 = System.nanoTime();
+			for (int r = 0; r < requests; r++) {
+				final String subject = subjects[r % subjects.length];
+				final int request = r;
+				if (query.match(new AmbigousTermMatcher() {
+					@Override
+					public Boolean match(String attr, String term) {
+						return benchmarkMatch(subject, request, attr, term);
+					}
+				})) full++;
+			}
+			long t4 = System.nanoTime();
+			int perCourse = Math.max(1, requests / (subjects.length * coursesPerSubject));
+			for (int c = 0; c < subjects.length * coursesPerSubject; c++) {
+				final String subject = subjects[c % subjects.length];
+				Query specialized = query.specialize(new AmbigousTermMatcher() {
+					@Override
+					public Boolean match(String attr, String term) {
+						if (term.isEmpty()) return true;
+						if ("subject".equals(attr) || "course".equals(attr) || attr == null) return subject.equalsIgnoreCase(term);
+						return null;
+					}
+				}, null, "subject", "course");
+				if (specialized.isFalse()) { skipped += perCourse; continue; }
+				for (int r = 0; r < perCourse; r++) {
+					final int request = c * perCourse + r;
+					if (specialized.match(new AmbigousTermMatcher() {
+						@Override
+						public Boolean match(String attr, String term) {
+							return benchmarkMatch(subject, request, attr, term);
+						}
+					})) spec++;
+				}
+			}
+			long t5 = System.nanoTime();
+			System.out.println("Query [" + q + "]: parse " + ((t1 - t0) / 1000) + " ns, cached " + ((t2 - t1) / 1000) + " ns, " +
+					"full evaluation " + ((t4 - t3) / 1000000) + " ms (" + full + " matched), " +
+					"specialized " + ((t5 - t4) / 1000000) + " ms (" + spec + " matched, " + skipped + " skipped)");
+		}
+	}
+	
+	private static Boolean benchmarkMatch(String subject, int request, String attr, String term) {
+		if (term.isEmpty()) return true;
+		if ("subject".equals(attr) || "course".equals(attr) || attr == null) return subject.equalsIgnoreCase(term);
+		if ("status".equals(attr)) return (request % 3 == 0) == "Enrolled".equalsIgnoreCase(term);
+		if ("assignment".equals(attr)) return (request % 7 == 0) == "Wait-Listed".equalsIgnoreCase(term);
+		if ("mode".equals(attr)) return request % 5 == 0;
+		if ("student".equals(attr)) return request % 11 == 0;
+		return request % 2 == 0;
 	}
 	
 	
@@ -19,31 +19,57 @@
 */
 package org.unitime.timetable.onlinesectioning;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.cpsolver.ifs.util.ToolBox;
+import org.unitime.timetable.gwt.shared.SectioningException;
 
 
 /**
+ * Lock manager locking a set of ids (offering ids, negative student ids) at once.
+ * Lock requests are granted in the order in which they were made: a waiting request reserves its ids, so that
+ * a request for many offerings cannot be starved by later requests that only need some of them.
+ * A thread that already holds a lock is not subject to these reservations (it only waits for the locks that are held),
+ * otherwise a nested lock would wait for a request that is itself waiting for this thread.
+ * Waiting is bounded by {@link #getTimeout()} (when positive) and a request that would wait on a lock held
+ * (directly or through other waiting threads) by the current thread fails right away instead of hanging.
+ * Lock counts, wait and hold times are kept for each offering id and published through JMX (see {@link MultiLockMBean}).
+ * 
  * @author Tomas Muller
  */
-public class MultiLock {
+public class MultiLock implements MultiLockMBean {
     private Log iLog = LogFactory.getLog(MultiLock.class);
-    private Lock iLock = new ReentrantLock();
-    private Condition iAllLocked = null;
-    private Map<Long, Condition> iIndividualLocks = new HashMap<Long, Condition>();
+    private ReentrantLock iLock = new ReentrantLock();
+    private LinkedList<Request> iQueue = new LinkedList<Request>();
+    private Map<Long, Request> iHolders = new HashMap<Long, Request>();
+    private Request iAllLocked = null;
+    private long iTimeout = 0;
+    private ObjectName iObjectName = null;
+    
+    private Map<Long, LockStats> iStats = new HashMap<Long, LockStats>();
+    private LockStats iTotal = new LockStats(null);
+    private long iNrTimeouts = 0, iNrDeadlocks = 0;
 
     public MultiLock() {
     	iLog = LogFactory.getLog(MultiLock.class.getName() + ".lock");
@@ -51,16 +77,47 @@ public class MultiLock {
     
     public MultiLock(AcademicSessionInfo session) {
     	iLog = LogFactory.getLog(MultiLock.class.getName() + ".lock[" + session.toCompactString() + "]");
+    	register("org.unitime:type=MultiLock,session=" + ObjectName.quote(session.toCompactString()));
     }
     
-	private Condition hasLock(Collection<Long> ids) {
-		if (iAllLocked != null) return iAllLocked;
-		for (Long id: ids) {
-			Condition c = iIndividualLocks.get(id);
-			if (c != null) return c;
-		}
-		return null;
-	}
+    /**
+     * Register the lock statistics with the platform MBean server, replacing the previous registration of the same name
+     */
+    protected void register(String name) {
+    	try {
+    		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    		ObjectName objectName = new ObjectName(name);
+    		if (server.isRegistered(objectName))
+    			server.unregisterMBean(objectName);
+    		server.registerMBean(this, objectName);
+    		iObjectName = objectName;
+    	} catch (Exception e) {
+    		iLog.warn("Failed to register lock statistics: " + e.getMessage());
+    	}
+    }
+    
+    /**
+     * Remove the lock statistics from the platform MBean server
+     */
+    public void unregister() {
+    	if (iObjectName == null) return;
+    	try {
+    		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    		if (server.isRegistered(iObjectName))
+    			server.unregisterMBean(iObjectName);
+    	} catch (Exception e) {
+    		iLog.warn("Failed to unregister lock statistics: " + e.getMessage());
+    	}
+    	iObjectName = null;
+    }
+    
+	/**
+	 * Maximal time in milliseconds to wait for a lock, zero or negative for no limit
+	 */
+    @Override
+	public long getTimeout() { return iTimeout; }
+    @Override
+	public void setTimeout(long timeout) { iTimeout = timeout; }
 	
 	public Unlock lock(Long... ids) {
 		List<Long> list = new ArrayList<Long>(ids.length);
@@ -69,17 +126,26 @@ public class MultiLock {
 		return lock(list);
 	}
 	
+	/**
+	 * Lock the given ids, the lock is not bound to the current thread (it is expected to be released by some other thread)
+	 * and it is not considered in the deadlock detection.
+	 */
+	public Unlock lockDetached(Long... ids) {
+		List<Long> list = new ArrayList<Long>(ids.length);
+		for (Long id: ids)
+			list.add(id);
+		return lock(list, false);
+	}
+	
 	public UnlockAll lockAll() {
 		iLock.lock();
 		try {
 			iLog.debug("Locking all ...");
-			while (iAllLocked != null)
-				iAllLocked.awaitUninterruptibly();
-			iAllLocked = iLock.newCondition();
-			while (!iIndividualLocks.isEmpty()) {
-				Condition otherCondition = iIndividualLocks.values().iterator().next();
-				otherCondition.awaitUninterruptibly();
-			}
+			Request request = new Request(null, Thread.currentThread());
+			iQueue.add(request);
+			dispatch();
+			if (!request.isGranted())
+				await(request, 0);
 			iLog.debug("Locked: all");
 			return new UnlockAll();
 		} finally {
@@ -90,10 +156,9 @@ public class MultiLock {
 	public void unlockAll() {
 		iLock.lock();
 		try {
+			if (iAllLocked == null) return;
 			iLog.debug("Unlocking all ...");
-			Condition allLocked = iAllLocked;
-			iAllLocked = null;
-			allLocked.signalAll();
+			release(iAllLocked);
 			iLog.debug("Unlocked: all");
 		} finally {
 			iLock.unlock();
@@ -101,43 +166,238 @@ public class MultiLock {
 	}
 	
 	public Unlock lock(Collection<Long> ids) {
+		return lock(ids, true);
+	}
+	
+	protected Unlock lock(Collection<Long> ids, boolean owned) {
+		if (ids == null || ids.isEmpty()) return new Unlock(null);
 		iLock.lock();
 		try {
-			if (ids == null || ids.isEmpty()) return new Unlock(ids);
 			iLog.debug("Locking " + ids + " ...");
-			Condition otherCondition = null;
-			while ((otherCondition = hasLock(ids)) != null)
-				otherCondition.awaitUninterruptibly();
-			Condition myCondition = iLock.newCondition();
-			for (Long id: ids)
-				iIndividualLocks.put(id, myCondition);
+			Request request = new Request(new LinkedHashSet<Long>(ids), owned ? Thread.currentThread() : null);
+			iQueue.add(request);
+			dispatch();
+			boolean contended = !request.isGranted();
+			if (contended)
+				await(request, iTimeout);
+			long wait = request.iGranted - request.iCreated;
+			iTotal.locked(contended, wait);
+			for (Long id: request.iIds)
+				if (id >= 0) getStats(id).locked(contended, wait);
 			iLog.debug("Locked: " + ids);
-			return new Unlock(ids);
+			return new Unlock(request);
 		} finally {
 			iLock.unlock();
 		}
 	}
 	
-	private void unlock(Collection<Long> ids) {
+	private void unlock(Request request) {
+		if (request == null) return;
 		iLock.lock();
 		try {
-			if (ids == null || ids.isEmpty()) return;
-			iLog.debug("Unlocking " + ids + " ...");
-			Condition myCondition = null;
-			for (Long id: ids)
-				myCondition = iIndividualLocks.remove(id);
-			if (myCondition != null)
-				myCondition.signalAll();
-			iLog.debug("Unlocked: " + ids);
+			iLog.debug("Unlocking " + request.iIds + " ...");
+			long hold = release(request);
+			if (hold >= 0) {
+				iTotal.released(hold);
+				for (Long id: request.iIds)
+					if (id >= 0) getStats(id).released(hold);
+			}
+			iLog.debug("Unlocked: " + request.iIds);
 		} finally {
 			iLock.unlock();
 		}
 	}
 	
+	/**
+	 * Release a granted request and grant the waiting ones that can go next. Returns the hold time (or -1 when the request was not held).
+	 */
+	private long release(Request request) {
+		if (!request.isGranted() || request.iReleased) return -1;
+		request.iReleased = true;
+		if (request.isAll()) {
+			if (iAllLocked == request) iAllLocked = null;
+		} else {
+			for (Long id: request.iIds)
+				if (iHolders.get(id) == request) iHolders.remove(id);
+		}
+		dispatch();
+		return System.currentTimeMillis() - request.iGranted;
+	}
+	
+	/**
+	 * Grant waiting requests in the order in which they were made. A request that cannot be granted reserves its ids,
+	 * so that no later request with any of these ids can overtake it.
+	 */
+	private void dispatch() {
+		if (iAllLocked != null) return;
+		Set<Long> reserved = new HashSet<Long>();
+		boolean allReserved = false;
+		Set<Thread> holding = getHoldingThreads();
+		for (Iterator<Request> i = iQueue.iterator(); i.hasNext(); ) {
+			Request request = i.next();
+			if (request.isAll()) {
+				if (!allReserved && iHolders.isEmpty() && reserved.isEmpty()) {
+					i.remove();
+					request.iGranted = System.currentTimeMillis();
+					iAllLocked = request;
+					request.iCondition.signal();
+					return;
+				}
+				allReserved = true;
+				continue;
+			}
+			if (isHolding(request, holding) ? isConflicting(request, Collections.<Long>emptySet()) : allReserved || isConflicting(request, reserved)) {
+				reserved.addAll(request.iIds);
+				continue;
+			}
+			i.remove();
+			request.iGranted = System.currentTimeMillis();
+			for (Long id: request.iIds)
+				iHolders.put(id, request);
+			request.iCondition.signal();
+		}
+	}
+	
+	/**
+	 * Threads that hold a lock (excluding the detached locks)
+	 */
+	private Set<Thread> getHoldingThreads() {
+		Set<Thread> threads = new HashSet<Thread>();
+		for (Request holder: iHolders.values())
+			if (holder.iThread != null) threads.add(holder.iThread);
+		return threads;
+	}
+	
+	/**
+	 * True if the request is made by a thread that already holds a lock, such a request bypasses the reservations of the waiting requests
+	 */
+	private boolean isHolding(Request request, Set<Thread> holding) {
+		return !request.isAll() && request.iThread != null && holding.contains(request.iThread);
+	}
+	
+	private boolean isConflicting(Request request, Set<Long> reserved) {
+		for (Long id: request.iIds)
+			if (iHolders.containsKey(id) || reserved.contains(id)) return true;
+		return false;
+	}
+	
+	private void await(Request request, long timeout) {
+		if (isDeadlock(request)) {
+			iQueue.remove(request);
+			dispatch();
+			iNrDeadlocks ++;
+			iLog.error("Deadlock detected while locking " + (request.isAll() ? "all" : request.iIds) + " (already holding " + getHeldIds(request.iThread) + ").");
+			throw new SectioningException("Failed to lock " + (request.isAll() ? "all" : request.iIds) + ": deadlock detected.");
+		}
+		boolean interrupted = false;
+		try {
+			long deadline = (timeout > 0 ? request.iCreated + timeout : 0);
+			while (!request.isGranted()) {
+				if (deadline > 0) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						iQueue.remove(request);
+						dispatch();
+						iNrTimeouts ++;
+						iLog.warn("Failed to lock " + request.iIds + " in " + timeout + " ms, held " + getBlockingIds(request) + ".");
+						throw new SectioningException("Failed to lock " + request.iIds + ": timeout reached.");
+					}
+					try {
+						request.iCondition.awaitNanos(TimeUnit.MILLISECONDS.toNanos(remaining));
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				} else {
+					request.iCondition.awaitUninterruptibly();
+				}
+			}
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Requests that the given request is waiting for: holders of the ids and the earlier waiting requests with any of the ids
+	 * (unless the request bypasses the reservations, see {@link #isHolding(Request, Set)})
+	 */
+	private Set<Request> getBlockers(Request request, Set<Thread> holding) {
+		Set<Request> blockers = new HashSet<Request>();
+		if (iAllLocked != null) blockers.add(iAllLocked);
+		if (request.isAll()) {
+			blockers.addAll(iHolders.values());
+		} else {
+			for (Long id: request.iIds) {
+				Request holder = iHolders.get(id);
+				if (holder != null) blockers.add(holder);
+			}
+		}
+		if (isHolding(request, holding)) return blockers;
+		for (Request other: iQueue) {
+			if (other == request) break;
+			if (other.isAll() || request.isAll() || !Collections.disjoint(other.iIds, request.iIds)) blockers.add(other);
+		}
+		return blockers;
+	}
+	
+	private Set<Long> getBlockingIds(Request request) {
+		Set<Long> ids = new TreeSet<Long>();
+		for (Long id: request.iIds)
+			if (iHolders.containsKey(id)) ids.add(id);
+		return ids;
+	}
+	
+	private Set<Long> getHeldIds(Thread thread) {
+		Set<Long> ids = new TreeSet<Long>();
+		for (Map.Entry<Long, Request> e: iHolders.entrySet())
+			if (thread.equals(e.getValue().iThread)) ids.add(e.getKey());
+		return ids;
+	}
+	
+	private Request getWaitingRequest(Thread thread) {
+		for (Request request: iQueue)
+			if (thread.equals(request.iThread)) return request;
+		return null;
+	}
+	
+	/**
+	 * Walk the wait-for graph from the given request, checking whether it leads back to a lock held by the same thread
+	 */
+	private boolean isDeadlock(Request request) {
+		if (request.iThread == null) return false;
+		Set<Request> visited = new HashSet<Request>();
+		Set<Thread> holding = getHoldingThreads();
+		LinkedList<Request> queue = new LinkedList<Request>();
+		queue.add(request);
+		while (!queue.isEmpty()) {
+			Request r = queue.removeFirst();
+			if (!visited.add(r)) continue;
+			for (Request blocker: getBlockers(r, holding)) {
+				if (blocker.isGranted()) {
+					if (blocker.iThread == null) continue;
+					if (blocker.iThread.equals(request.iThread)) return true;
+					Request waiting = getWaitingRequest(blocker.iThread);
+					if (waiting != null) queue.add(waiting);
+				} else {
+					queue.add(blocker);
+				}
+			}
+		}
+		return false;
+	}
+	
+	private LockStats getStats(Long id) {
+		LockStats stats = iStats.get(id);
+		if (stats == null) {
+			stats = new LockStats(id);
+			iStats.put(id, stats);
+		}
+		return stats;
+	}
+	
 	public Set<Long> locked() {
 		iLock.lock();
 		try {
-			return new TreeSet<Long>(iIndividualLocks.keySet());
+			return new TreeSet<Long>(iHolders.keySet());
 		} finally {
 			iLock.unlock();
 		}
@@ -146,21 +406,162 @@ public class MultiLock {
 	public boolean isLocked(Long id) {
 		iLock.lock();
 		try {
-			return iIndividualLocks.containsKey(id);
+			return iHolders.containsKey(id);
 		} finally {
 			iLock.unlock();
 		}
 	}
 	
-	public class Unlock implements OnlineSectioningServer.Lock {
-		private Collection<Long> iIds;
+	@Override
+	public int getNrHeldLocks() {
+		iLock.lock();
+		try {
+			return iHolders.size();
+		} finally {
+			iLock.unlock();
+		}
+	}
+
+	@Override
+	public int getNrWaitingRequests() {
+		iLock.lock();
+		try {
+			return iQueue.size();
+		} finally {
+			iLock.unlock();
+		}
+	}
+
+	@Override
+	public long getNrLocks() {
+		return iTotal.iCount;
+	}
+
+	@Override
+	public long getNrContendedLocks() {
+		return iTotal.iContended;
+	}
+
+	@Override
+	public double getAverageWaitTime() {
+		return iTotal.getAverageWait();
+	}
+
+	@Override
+	public double getAverageHoldTime() {
+		return iTotal.getAverageHold();
+	}
+	
+	@Override
+	public long getMaxWaitTime() {
+		return iTotal.iMaxWait;
+	}
+
+	@Override
+	public long getNrTimeouts() {
+		return iNrTimeouts;
+	}
+
+	@Override
+	public long getNrDeadlocks() {
+		return iNrDeadlocks;
+	}
+
+	@Override
+	public String[] getHotOfferings() {
+		iLock.lock();
+		try {
+			List<LockStats> stats = new ArrayList<LockStats>(iStats.values());
+			Collections.sort(stats, new Comparator<LockStats>() {
+				@Override
+				public int compare(LockStats s1, LockStats s2) {
+					int cmp = Long.compare(s2.iWait, s1.iWait);
+					if (cmp != 0) return cmp;
+					cmp = Long.compare(s2.iHold, s1.iHold);
+					if (cmp != 0) return cmp;
+					return s1.iId.compareTo(s2.iId);
+				}
+			});
+			String[] ret = new String[Math.min(20, stats.size())];
+			for (int i = 0; i < ret.length; i++)
+				ret[i] = stats.get(i).toString();
+			return ret;
+		} finally {
+			iLock.unlock();
+		}
+	}
+
+	@Override
+	public void resetStatistics() {
+		iLock.lock();
+		try {
+			iStats.clear();
+			iTotal = new LockStats(null);
+			iNrTimeouts = 0; iNrDeadlocks = 0;
+		} finally {
+			iLock.unlock();
+		}
+	}
+	
+	private class Request {
+		private Set<Long> iIds;
+		private Thread iThread;
+		private Condition iCondition;
+		private long iCreated, iGranted = -1;
+		private boolean iReleased = false;
 		
-		private Unlock(Collection<Long> ids) {
+		private Request(Set<Long> ids, Thread thread) {
 			iIds = ids;
+			iThread = thread;
+			iCondition = iLock.newCondition();
+			iCreated = System.currentTimeMillis();
+		}
+		
+		private boolean isAll() { return iIds == null; }
+		private boolean isGranted() { return iGranted >= 0; }
+	}
+	
+	private static class LockStats {
+		private Long iId;
+		private long iCount = 0, iContended = 0, iReleased = 0;
+		private long iWait = 0, iMaxWait = 0, iHold = 0, iMaxHold = 0;
+		
+		private LockStats(Long id) { iId = id; }
+		
+		private void locked(boolean contended, long wait) {
+			iCount ++;
+			if (contended) {
+				iContended ++;
+				iWait += wait;
+				if (wait > iMaxWait) iMaxWait = wait;
+			}
+		}
+		
+		private void released(long hold) {
+			iReleased ++;
+			iHold += hold;
+			if (hold > iMaxHold) iMaxHold = hold;
+		}
+		
+		private double getAverageWait() { return iCount == 0 ? 0.0 : ((double)iWait) / iCount; }
+		private double getAverageHold() { return iReleased == 0 ? 0.0 : ((double)iHold) / iReleased; }
+		
+		@Override
+		public String toString() {
+			return iId + ": " + iCount + " locks, " + iContended + " contended, wait " + Math.round(getAverageWait()) + " ms avg / " + iMaxWait + " ms max" +
+					", hold " + Math.round(getAverageHold()) + " ms avg / " + iMaxHold + " ms max";
+		}
+	}
+	
+	public class Unlock implements OnlineSectioningServer.Lock {
+		private Request iRequest;
+		
+		private Unlock(Request request) {
+			iRequest = request;
 		}
 		
 		public void release() {
-			unlock(iIds);
+			unlock(iRequest);
 		}
 	}
 
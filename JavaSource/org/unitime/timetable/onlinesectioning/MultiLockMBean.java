@@ -0,0 +1,58 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning;
+
+/**
+ * JMX interface of the {@link MultiLock}: lock contention, wait and hold times, and the most contended offerings.
+ * 
+ * @author Tomas Muller
+ */
+public interface MultiLockMBean {
+	
+	public long getTimeout();
+	
+	public void setTimeout(long timeout);
+	
+	public int getNrHeldLocks();
+	
+	public int getNrWaitingRequests();
+	
+	public long getNrLocks();
+	
+	public long getNrContendedLocks();
+	
+	public double getAverageWaitTime();
+	
+	public long getMaxWaitTime();
+	
+	public double getAverageHoldTime();
+	
+	public long getNrTimeouts();
+	
+	public long getNrDeadlocks();
+	
+	/**
+	 * Offerings with the highest total wait time (up to 20), with their lock counts, wait and hold times
+	 */
+	public String[] getHotOfferings();
+	
+	public void resetStatistics();
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.model.XCourse;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollments;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.solver.jgroups.BatchedRemoteSolver;
+import org.unitime.timetable.solver.jgroups.RemoteCall;
+
+/**
+ * A batch of read calls on an online sectioning server. When the server is a remote proxy (see {@link BatchedRemoteSolver}),
+ * all the calls of the batch are executed using a single cluster round-trip, optionally asynchronously. A local server is called directly.<br>
+ * Usage: create the batch, add the calls (each returning a {@link Result}), call {@link #execute()} or {@link #executeAsync()}, and read the results.
+ * A result that is read before the batch has been executed executes the batch.
+ * 
+ * @author Tomas Muller
+ */
+public class OnlineSectioningBatch {
+	private OnlineSectioningServer iServer;
+	private List<RemoteCall> iCalls = new ArrayList<RemoteCall>();
+	private List<Result<?>> iResults = new ArrayList<Result<?>>();
+	private Future<Object[]> iFuture = null;
+	
+	public OnlineSectioningBatch(OnlineSectioningServer server) {
+		iServer = server;
+	}
+	
+	public Result<XOffering> getOffering(Long offeringId) {
+		return add("getOffering", new Class[] { Long.class }, offeringId);
+	}
+	
+	public Result<XStudent> getStudent(Long studentId) {
+		return add("getStudent", new Class[] { Long.class }, studentId);
+	}
+	
+	public Result<XCourse> getCourse(Long courseId) {
+		return add("getCourse", new Class[] { Long.class }, courseId);
+	}
+	
+	public Result<Collection<XCourseRequest>> getRequests(Long offeringId) {
+		return add("getRequests", new Class[] { Long.class }, offeringId);
+	}
+	
+	public Result<XEnrollments> getEnrollments(Long offeringId) {
+		return add("getEnrollments", new Class[] { Long.class }, offeringId);
+	}
+	
+	public Result<XExpectations> getExpectations(Long offeringId) {
+		return add("getExpectations", new Class[] { Long.class }, offeringId);
+	}
+	
+	/**
+	 * Add a call of the given {@link OnlineSectioningServer} method to the batch
+	 */
+	public synchronized <T> Result<T> add(String method, Class[] types, Object... args) {
+		if (iFuture != null) throw new IllegalStateException("Batch has been already executed.");
+		Result<T> result = new Result<T>();
+		iCalls.add(new RemoteCall(method, types, args));
+		iResults.add(result);
+		return result;
+	}
+	
+	public int size() { return iCalls.size(); }
+	
+	/**
+	 * Execute the batch and wait for the results
+	 */
+	public synchronized void execute() throws SectioningException {
+		if (iFuture == null) executeAsync();
+		try {
+			set(iFuture.get());
+		} catch (ExecutionException e) {
+			throw exception(e.getCause() == null ? e : e.getCause());
+		} catch (InterruptedException e) {
+			throw new SectioningException(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Send the batch to the server, but do not wait for the results (they are waited for when a result is read).
+	 * A local server is called directly.
+	 */
+	public synchronized void executeAsync() throws SectioningException {
+		if (iFuture != null) return;
+		RemoteCall[] calls = iCalls.toArray(new RemoteCall[iCalls.size()]);
+		if (iServer instanceof BatchedRemoteSolver && calls.length > 1) {
+			try {
+				iFuture = ((BatchedRemoteSolver)iServer).invokeAllAsync(calls);
+			} catch (Exception e) {
+				throw exception(e);
+			}
+		} else {
+			Object[] results = new Object[calls.length];
+			for (int i = 0; i < calls.length; i++) {
+				try {
+					results[i] = OnlineSectioningServer.class.getMethod(calls[i].getMethod(), calls[i].getTypes()).invoke(iServer, calls[i].getArgs());
+				} catch (InvocationTargetException e) {
+					results[i] = (e.getTargetException() == null ? e : e.getTargetException());
+				} catch (Exception e) {
+					results[i] = e;
+				}
+			}
+			iFuture = new Done(results);
+		}
+	}
+	
+	protected void set(Object[] results) {
+		for (int i = 0; i < iResults.size(); i++)
+			iResults.get(i).set(results[i]);
+	}
+	
+	protected static SectioningException exception(Throwable t) {
+		if (t instanceof InvocationTargetException && ((InvocationTargetException)t).getTargetException() != null)
+			t = ((InvocationTargetException)t).getTargetException();
+		if (t instanceof SectioningException) return (SectioningException)t;
+		return new SectioningException(t.getMessage(), t);
+	}
+	
+	/**
+	 * Offerings of the given ids (using a single remote call when the server is remote, a local server is called directly), offerings that do not exist are not included
+	 */
+	public static Map<Long, XOffering> getOfferings(OnlineSectioningServer server, Collection<Long> offeringIds) throws SectioningException {
+		if (!(server instanceof BatchedRemoteSolver)) {
+			Map<Long, XOffering> ret = new HashMap<Long, XOffering>();
+			for (Long offeringId: offeringIds) {
+				XOffering offering = server.getOffering(offeringId);
+				if (offering != null) ret.put(offeringId, offering);
+			}
+			return ret;
+		}
+		OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+		Map<Long, Result<XOffering>> results = new HashMap<Long, Result<XOffering>>();
+		for (Long offeringId: offeringIds)
+			results.put(offeringId, batch.getOffering(offeringId));
+		return batch.get(results);
+	}
+	
+	/**
+	 * Students of the given ids (using a single remote call when the server is remote), students that do not exist are not included
+	 */
+	public static Map<Long, XStudent> getStudents(OnlineSectioningServer server, Collection<Long> studentIds) throws SectioningException {
+		if (!(server instanceof BatchedRemoteSolver)) {
+			Map<Long, XStudent> ret = new HashMap<Long, XStudent>();
+			for (Long studentId: studentIds) {
+				XStudent student = server.getStudent(studentId);
+				if (student != null) ret.put(studentId, student);
+			}
+			return ret;
+		}
+		OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+		Map<Long, Result<XStudent>> results = new HashMap<Long, Result<XStudent>>();
+		for (Long studentId: studentIds)
+			results.put(studentId, batch.getStudent(studentId));
+		return batch.get(results);
+	}
+	
+	/**
+	 * Course requests of the given offerings (using a single remote call when the server is remote)
+	 */
+	public static Map<Long, Collection<XCourseRequest>> getRequests(OnlineSectioningServer server, Collection<Long> offeringIds) throws SectioningException {
+		if (!(server instanceof BatchedRemoteSolver)) {
+			Map<Long, Collection<XCourseRequest>> ret = new HashMap<Long, Collection<XCourseRequest>>();
+			for (Long offeringId: offeringIds) {
+				Collection<XCourseRequest> requests = server.getRequests(offeringId);
+				if (requests != null) ret.put(offeringId, requests);
+			}
+			return ret;
+		}
+		OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+		Map<Long, Result<Collection<XCourseRequest>>> results = new HashMap<Long, Result<Collection<XCourseRequest>>>();
+		for (Long offeringId: offeringIds)
+			results.put(offeringId, batch.getRequests(offeringId));
+		return batch.get(results);
+	}
+	
+	protected <T> Map<Long, T> get(Map<Long, Result<T>> results) throws SectioningException {
+		execute();
+		Map<Long, T> ret = new HashMap<Long, T>();
+		for (Map.Entry<Long, Result<T>> entry: results.entrySet()) {
+			T value = entry.getValue().get();
+			if (value != null) ret.put(entry.getKey(), value);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Result of a call of the batch
+	 */
+	public class Result<T> {
+		private volatile boolean iDone = false;
+		private volatile Object iValue = null;
+		
+		protected Result() {}
+		
+		protected void set(Object value) {
+			iValue = value; iDone = true;
+		}
+		
+		/**
+		 * Result of the call, executes (or waits for) the batch when needed. The exception thrown by the call is re-thrown.
+		 */
+		@SuppressWarnings("unchecked")
+		public T get() throws SectioningException {
+			if (!iDone) execute();
+			if (iValue instanceof Throwable) throw exception((Throwable)iValue);
+			return (T)iValue;
+		}
+	}
+	
+	private static class Done implements Future<Object[]> {
+		private Object[] iResults;
+		
+		private Done(Object[] results) { iResults = results; }
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) { return false; }
+
+		@Override
+		public boolean isCancelled() { return false; }
+
+		@Override
+		public boolean isDone() { return true; }
+
+		@Override
+		public Object[] get() { return iResults; }
+
+		@Override
+		public Object[] get(long timeout, TimeUnit unit) { return iResults; }
+	}
+}
@@ -20,39 +20,79 @@
 package org.unitime.timetable.onlinesectioning;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.CacheMode;
 import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.StudentSectioningConstants;
 import org.unitime.timetable.gwt.server.DayCode;
 import org.unitime.timetable.model.Session;
-import org.unitime.timetable.model.Student;
 import org.unitime.timetable.model.dao.OnlineSectioningLogDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
-import org.unitime.timetable.model.dao.StudentDAO;
+
+import com.google.protobuf.InvalidProtocolBufferException;
 
 /**
+ * Persists online sectioning actions into the OnlineSectioningLog table. Recorded actions are kept in a bounded buffer
+ * which is flushed when it reaches the batch size or when the flush interval is reached, whichever comes first.
+ * Actions that do not fit in the buffer (or that failed to persist) are spilled into a local file, from which they are
+ * persisted with the next flush. Spilling is done by the logger thread: a recording thread only hands the actions that do not fit
+ * in the buffer over to a bounded overflow queue. When persisting fails (e.g., the database is not available), the logger does not
+ * try again before a retry delay, which starts at the flush interval and is doubled with each failure up to a limit (see
+ * {@link ApplicationProperty#OnlineSchedulingLogRetryDelay}); in the meantime the buffered actions are spilled directly.
+ * 
  * @author Tomas Muller
  */
-public class OnlineSectioningLogger extends Thread {
+public class OnlineSectioningLogger extends Thread implements OnlineSectioningLoggerMBean {
 	private static Log sLog = LogFactory.getLog(OnlineSectioningLogger.class);
 	protected static StudentSectioningConstants CONST = Localization.create(StudentSectioningConstants.class);
-	private List<OnlineSectioningLog.Action> iActions = new Vector<OnlineSectioningLog.Action>();
+	private BlockingQueue<OnlineSectioningLog.Action> iActions;
+	private BlockingQueue<OnlineSectioningLog.Action> iOverflow;
 	private boolean iActive = false;
 	private boolean iEnabled = false;
 	private int iLogLimit = -1;
+	private int iBatchSize = 500;
+	private long iFlushInterval = 60000;
+	private long iMaxRetryDelay = 600000;
+	private volatile long iRetryDelay = 0, iNextRetry = 0;
 	private PrintWriter iOut = null;
+	private Object iFlushLock = new Object();
+	private File iSpillFile = null;
+	private Map<Long, String> iStudentExternalIds = new LinkedHashMap<Long, String>(1000, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+			return size() > 10000;
+		}
+	};
+	private AtomicLong iRecorded = new AtomicLong(0), iFlushed = new AtomicLong(0), iSpilled = new AtomicLong(0), iRestored = new AtomicLong(0),
+			iFailed = new AtomicLong(0), iDropped = new AtomicLong(0);
 	
 	private static OnlineSectioningLogger sInstance = null;
 	
@@ -84,26 +124,75 @@ public class OnlineSectioningLogger extends Thread {
 		setDaemon(true);
 		iEnabled = ApplicationProperty.OnlineSchedulingLoggingEnabled.isTrue(); 
 		iLogLimit = ApplicationProperty.OnlineSchedulingLogLimit.intValue();
+		iBatchSize = Math.max(1, ApplicationProperty.OnlineSchedulingLogBatchSize.intValue());
+		iFlushInterval = 1000l * Math.max(1, ApplicationProperty.OnlineSchedulingLogFlushInterval.intValue());
+		iMaxRetryDelay = Math.max(iFlushInterval, 1000l * ApplicationProperty.OnlineSchedulingLogRetryDelay.intValue());
+		iActions = (iLogLimit > 0 ? new ArrayBlockingQueue<OnlineSectioningLog.Action>(iLogLimit) : new LinkedBlockingQueue<OnlineSectioningLog.Action>());
+		iOverflow = new ArrayBlockingQueue<OnlineSectioningLog.Action>(Math.max(iBatchSize, iLogLimit));
 		try {
 			if (ApplicationProperty.OnlineSchedulingLogFile.value() != null)
 				iOut = new PrintWriter(new FileWriter(new File(ApplicationProperty.OnlineSchedulingLogFile.value()), true));
 		} catch (IOException e) {
 			sLog.warn("Unable to create sectioning log: " + e.getMessage(), e);
 		}
+		try {
+			iSpillFile = new File(ApplicationProperties.getDataFolder(), "sectioning-log.spill");
+		} catch (Exception e) {
+			sLog.warn("Unable to locate sectioning log spill file: " + e.getMessage(), e);
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("org.unitime:type=OnlineSectioningLogger");
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(this, objectName);
+		} catch (Exception e) {
+			sLog.warn("Failed to register sectioning log statistics: " + e.getMessage());
+		}
 	}
 	
 	public boolean isEnabled() { return iEnabled; }
 	public void setEnabled(boolean enabled) { iEnabled = enabled; }
 	public boolean isActive() { return iActive; }
+	
+	@Override
+	public int getNrBuffered() { return iActions.size(); }
+	@Override
+	public long getNrRecorded() { return iRecorded.get(); }
+	@Override
+	public long getNrFlushed() { return iFlushed.get(); }
+	@Override
+	public long getNrSpilled() { return iSpilled.get(); }
+	@Override
+	public long getNrRestored() { return iRestored.get(); }
+	@Override
+	public long getNrFailed() { return iFailed.get(); }
+	@Override
+	public long getNrDropped() { return iDropped.get(); }
+	@Override
+	public long getRetryDelay() { return iRetryDelay; }
+	
+	public String getSummary() {
+		return "Sectioning log: " + getNrRecorded() + " recorded, " + getNrBuffered() + " buffered, " + getNrFlushed() + " flushed, " +
+				getNrSpilled() + " spilled, " + getNrRestored() + " restored, " + getNrFailed() + " failed, " + getNrDropped() + " dropped";
+	}
 
 	public void record(OnlineSectioningLog.Log log) {
 		if (log == null || !isEnabled() || !isActive()) return;
 		for (OnlineSectioningLog.Action action: log.getActionList()) {
 			if (action.hasStartTime() && action.hasStudent() && action.hasOperation() && action.hasSession() && ApplicationProperty.OnlineSchedulingLogOperation.isTrue(action.getOperation())
 				&& ApplicationProperty.OnlineSchedulingLogOperation.isTrue(action.getOperation() + "." + (action.hasResult() ? action.getResult().name() : "NULL"))) {
-				synchronized (iActions) {
-					if (iLogLimit <= 0 || iActions.size() < iLogLimit)
-						iActions.add(action);
+				iRecorded.incrementAndGet();
+				boolean overflow = false;
+				if (!iActions.offer(action)) {
+					// spilled by the logger thread
+					overflow = true;
+					if (!iOverflow.offer(action)) iDropped.incrementAndGet();
+				}
+				if (overflow || iActions.size() >= iBatchSize) {
+					synchronized (iFlushLock) {
+						iFlushLock.notify();
+					}
 				}
 				if (iOut != null) {
 					synchronized (iOut) {
@@ -244,89 +333,283 @@ public class OnlineSectioningLogger extends Thread {
 			return h + ":" + (m < 10 ? "0" : "") + m;
 	}
 	
+	/**
+	 * Append the given actions to the spill file, they will be persisted with the next flush.
+	 * Only called by the logger thread.
+	 */
+	protected void spill(List<OnlineSectioningLog.Action> actions) {
+		if (iSpillFile == null) {
+			iDropped.addAndGet(actions.size());
+			return;
+		}
+		synchronized (iFlushLock) {
+			OutputStream out = null;
+			try {
+				boolean first = !iSpillFile.exists();
+				out = new FileOutputStream(iSpillFile, true);
+				for (OnlineSectioningLog.Action action: actions)
+					action.writeDelimitedTo(out);
+				out.flush();
+				iSpilled.addAndGet(actions.size());
+				if (first)
+					sLog.warn("Sectioning log buffer is full or the database is not available, spilling log actions to " + iSpillFile + ".");
+			} catch (IOException e) {
+				iDropped.addAndGet(actions.size());
+				sLog.error("Failed to spill " + actions.size() + " log actions: " + e.getMessage(), e);
+			} finally {
+				if (out != null) try { out.close(); } catch (IOException e) {}
+			}
+		}
+	}
+	
+	/**
+	 * Persist the actions stored in the spill file (if any). The spill file is first renamed to *.restore, which is only
+	 * deleted after it has been read to the end. When reading fails, the actions read so far are persisted and the
+	 * unprocessed remainder is kept: in the *.restore file to be retried with the next flush, or, when it cannot
+	 * be parsed, in a *.corrupted-[time stamp] file for a manual recovery. When persisting fails, the restore stops and
+	 * the actions that have not been persisted yet are kept in the *.restore file (they are not spilled again).
+	 */
+	protected void restoreSpilled() {
+		File file = null;
+		synchronized (iFlushLock) {
+			if (iSpillFile == null) return;
+			file = new File(iSpillFile.getParentFile(), iSpillFile.getName() + ".restore");
+			// a left-over restore file (from a failed or interrupted restore) is processed first
+			if (!file.exists() && (!iSpillFile.exists() || !iSpillFile.renameTo(file))) return;
+		}
+		FileInputStream in = null;
+		// position: where the next action starts, persisted: where the first action that has not been persisted yet starts
+		long position = 0, persisted = 0;
+		List<OnlineSectioningLog.Action> batch = new ArrayList<OnlineSectioningLog.Action>(iBatchSize);
+		try {
+			in = new FileInputStream(file);
+			OnlineSectioningLog.Action action = null;
+			while ((action = OnlineSectioningLog.Action.parseDelimitedFrom(in)) != null) {
+				// parseDelimitedFrom does not read beyond the message
+				position = in.getChannel().position();
+				batch.add(action);
+				if (batch.size() >= iBatchSize) {
+					if (!persist(batch)) break;
+					iRestored.addAndGet(batch.size());
+					batch.clear();
+					persisted = position;
+				}
+			}
+			if (action == null && !batch.isEmpty() && persist(batch)) {
+				iRestored.addAndGet(batch.size());
+				batch.clear();
+				persisted = position;
+			}
+			in.close(); in = null;
+			if (!batch.isEmpty()) {
+				keepUnprocessed(file, persisted, false);
+			} else if (!file.delete()) {
+				sLog.warn("Failed to delete " + file + ".");
+			}
+		} catch (IOException e) {
+			sLog.error("Failed to read spilled log actions from " + file + ": " + e.getMessage(), e);
+			if (in != null) try { in.close(); } catch (IOException x) {}
+			if (batch.isEmpty() || persist(batch)) {
+				iRestored.addAndGet(batch.size());
+				keepUnprocessed(file, position, e instanceof InvalidProtocolBufferException);
+			} else {
+				keepUnprocessed(file, persisted, false);
+			}
+		}
+	}
+	
+	/**
+	 * Keep the unprocessed remainder of the given restore file (starting at the given position)
+	 * @param corrupted true if the remainder cannot be parsed: it is moved aside instead of being retried
+	 */
+	protected void keepUnprocessed(File file, long position, boolean corrupted) {
+		File target = (corrupted ? new File(file.getParentFile(), iSpillFile.getName() + ".corrupted-" + System.currentTimeMillis()) : new File(file.getParentFile(), file.getName() + ".tmp"));
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			in = new FileInputStream(file);
+			long skipped = 0;
+			while (skipped < position) {
+				long s = in.skip(position - skipped);
+				if (s <= 0) throw new IOException("Unable to skip to position " + position + ".");
+				skipped += s;
+			}
+			out = new FileOutputStream(target);
+			byte[] buffer = new byte[16 * 1024];
+			int read;
+			while ((read = in.read(buffer)) > 0)
+				out.write(buffer, 0, read);
+			out.flush(); out.close(); out = null;
+			in.close(); in = null;
+			if (corrupted) {
+				file.delete();
+				sLog.error("Unreadable spilled log actions were moved to " + target + ".");
+			} else if (!file.delete() || !target.renameTo(file)) {
+				sLog.error("Failed to replace " + file + " with the unprocessed log actions, these are kept in " + target + ".");
+			} else {
+				sLog.warn("Unprocessed log actions were kept in " + file + ", they will be restored with the next flush" +
+						(iRetryDelay > 0 ? " in " + (iRetryDelay / 1000) + " seconds." : "."));
+			}
+		} catch (IOException e) {
+			// the restore file is kept as it is, it will be retried (some of the actions may get persisted twice)
+			sLog.error("Failed to keep unprocessed log actions, " + file + " is kept instead: " + e.getMessage(), e);
+			target.delete();
+		} finally {
+			if (in != null) try { in.close(); } catch (IOException e) {}
+			if (out != null) try { out.close(); } catch (IOException e) {}
+		}
+	}
+	
+	/**
+	 * Spill the actions that did not fit in the buffer
+	 */
+	protected void spillOverflow() {
+		List<OnlineSectioningLog.Action> overflow = new ArrayList<OnlineSectioningLog.Action>();
+		if (iOverflow.drainTo(overflow) > 0) spill(overflow);
+	}
+	
+	/**
+	 * True if the last attempt to persist failed and the retry delay has not passed yet
+	 */
+	protected boolean isRetryDelayed() {
+		return iRetryDelay > 0 && System.currentTimeMillis() < iNextRetry;
+	}
+	
+	/**
+	 * Persist all the buffered actions (in batches), followed by the spilled ones. While the retry delay is running,
+	 * the buffered actions are spilled without trying to persist them.
+	 */
+	protected void flush() {
+		spillOverflow();
+		List<OnlineSectioningLog.Action> batch = new ArrayList<OnlineSectioningLog.Action>(iBatchSize);
+		while (iActions.drainTo(batch, iBatchSize) > 0) {
+			if (isRetryDelayed() || !persist(batch)) spill(batch);
+			batch.clear();
+		}
+		if (!isRetryDelayed()) restoreSpilled();
+		if (sLog.isDebugEnabled()) sLog.debug(getSummary());
+	}
+	
+	/**
+	 * Lookup student external ids of the given actions that are not known, using the external id cache first
+	 */
+	protected void resolveStudentExternalIds(List<OnlineSectioningLog.Action> actions, org.hibernate.Session hibSession) {
+		Set<Long> studentIds = new HashSet<Long>();
+		for (OnlineSectioningLog.Action q: actions)
+			if ((!q.getStudent().hasExternalId() || q.getStudent().getExternalId().isEmpty()) && q.getStudent().hasUniqueId() && !iStudentExternalIds.containsKey(q.getStudent().getUniqueId()))
+				studentIds.add(q.getStudent().getUniqueId());
+		if (studentIds.isEmpty()) return;
+		List<Long> ids = new ArrayList<Long>(studentIds);
+		for (int i = 0; i < ids.size(); i += 1000) {
+			for (Object[] o: (List<Object[]>)hibSession.createQuery(
+					"select s.uniqueId, s.externalUniqueId from Student s where s.uniqueId in :studentIds"
+					).setParameterList("studentIds", ids.subList(i, Math.min(i + 1000, ids.size()))).list()) {
+				iStudentExternalIds.put((Long)o[0], (String)o[1]);
+			}
+		}
+	}
+	
+	/**
+	 * Persist the given actions in a new hibernate session. When failed, the retry delay is started (or doubled) and it is up to the caller
+	 * to keep the actions.
+	 */
+	protected boolean persist(List<OnlineSectioningLog.Action> actionsToSave) {
+		try {
+			sLog.debug("Persisting " + actionsToSave.size() + " actions...");
+			org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
+			hibSession.setCacheMode(CacheMode.IGNORE);
+			try {
+				resolveStudentExternalIds(actionsToSave, hibSession);
+				Hashtable<Long, Session> sessions = new Hashtable<Long, Session>();
+				for (OnlineSectioningLog.Action q: actionsToSave) {
+					org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
+					log.setAction(q.toByteArray());
+					log.setOperation(q.getOperation());
+					String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
+					if (studentExternalId == null || studentExternalId.isEmpty()) {
+						if (!iStudentExternalIds.containsKey(q.getStudent().getUniqueId())) continue;
+						studentExternalId = iStudentExternalIds.get(q.getStudent().getUniqueId());
+					}
+					log.setStudent(studentExternalId);
+					log.setTimeStamp(new Date(q.getStartTime()));
+					if (q.hasResult())
+						log.setResult(q.getResult().getNumber());
+					if (q.hasUser() && q.getUser().hasExternalId())
+						log.setUser(q.getUser().getExternalId());
+					if (q.hasCpuTime())
+						log.setCpuTime(q.getCpuTime());
+					if (q.hasStartTime() && q.hasEndTime())
+						log.setWallTime(q.getEndTime() - q.getStartTime());
+					if (q.hasApiGetTime())
+						log.setApiGetTime(q.getApiGetTime());
+					if (q.hasApiPostTime())
+						log.setApiPostTime(q.getApiPostTime());
+					if (q.hasApiException())
+						log.setApiException(q.getApiException() != null && q.getApiException().length() > 255 ? q.getApiException().substring(0, 255) : q.getApiException());
+					try {
+						String message = getMessage(q);
+						if (message != null && !message.isEmpty())
+							log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
+					} catch (Exception e) {
+						if (!q.getMessageList().isEmpty()) {
+							String message = null; int level = 0;
+							for (OnlineSectioningLog.Message m: q.getMessageList()) {
+								if (message != null && !message.isEmpty() && (!m.hasLevel() || level > m.getLevel().getNumber())) continue;
+								if (m.hasText()) { message = m.getText(); level = m.getLevel().getNumber(); }
+								else if (m.hasException()) { message = m.getException(); level = m.getLevel().getNumber(); }
+							}
+							if (message != null && !message.isEmpty())
+								log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
+						}
+					}
+					Long sessionId = q.getSession().getUniqueId();
+					Session session = sessions.get(sessionId);
+					if (session == null) {
+						session = SessionDAO.getInstance().get(sessionId, hibSession);
+						sessions.put(sessionId, session);
+					}
+					log.setSession(session);
+					hibSession.save(log);
+				}
+				hibSession.flush();
+			} finally {
+				hibSession.close();
+			}
+			iFlushed.addAndGet(actionsToSave.size());
+			iRetryDelay = 0;
+			return true;
+		} catch (Throwable t) {
+			iFailed.addAndGet(actionsToSave.size());
+			iRetryDelay = (iRetryDelay == 0 ? iFlushInterval : Math.min(2 * iRetryDelay, iMaxRetryDelay));
+			iNextRetry = System.currentTimeMillis() + iRetryDelay;
+			sLog.warn("Failed to save " + actionsToSave.size() + " log actions (next attempt in " + (iRetryDelay / 1000) + " seconds): " + t.getMessage(), t);
+			return false;
+		}
+	}
+	
 	public void run() {
 		sLog.info("Online Sectioning Logger is up.");
 		try {
 			iActive = true;
+			long lastFlush = System.currentTimeMillis();
 			while (true) {
-				try {
-					sleep(60000);
-				} catch (InterruptedException e) {
-				}
-				List<OnlineSectioningLog.Action> actionsToSave = null;
-				synchronized (iActions) {
-					if (!iActions.isEmpty()) {
-						actionsToSave = new ArrayList<OnlineSectioningLog.Action>(iActions);
-						iActions.clear();
-					}
-				}
-				try {
-					if (actionsToSave != null) {
-						sLog.debug("Persisting " + actionsToSave.size() + " actions...");
-						if (iLogLimit > 0 && actionsToSave.size() >= iLogLimit)
-							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages have been dropped.");
-						org.hibernate.Session hibSession = OnlineSectioningLogDAO.getInstance().createNewSession();
-						hibSession.setCacheMode(CacheMode.IGNORE);
+				synchronized (iFlushLock) {
+					long wait = iFlushInterval - (System.currentTimeMillis() - lastFlush);
+					if (iActive && wait > 0 && iActions.size() < iBatchSize && iOverflow.isEmpty()) {
 						try {
-							Hashtable<Long, Session> sessions = new Hashtable<Long, Session>();
-							for (OnlineSectioningLog.Action q: actionsToSave) {
-								org.unitime.timetable.model.OnlineSectioningLog log = new org.unitime.timetable.model.OnlineSectioningLog();
-								log.setAction(q.toByteArray());
-								log.setOperation(q.getOperation());
-								String studentExternalId = (q.getStudent().hasExternalId() ? q.getStudent().getExternalId() : null);
-								if (studentExternalId == null || studentExternalId.isEmpty()) {
-									Student student = StudentDAO.getInstance().get(q.getStudent().getUniqueId(), hibSession);
-									if (student == null) continue;
-									studentExternalId = student.getExternalUniqueId();
-								}
-								log.setStudent(studentExternalId);
-								log.setTimeStamp(new Date(q.getStartTime()));
-								if (q.hasResult())
-									log.setResult(q.getResult().getNumber());
-								if (q.hasUser() && q.getUser().hasExternalId())
-									log.setUser(q.getUser().getExternalId());
-								if (q.hasCpuTime())
-									log.setCpuTime(q.getCpuTime());
-								if (q.hasStartTime() && q.hasEndTime())
-									log.setWallTime(q.getEndTime() - q.getStartTime());
-								if (q.hasApiGetTime())
-									log.setApiGetTime(q.getApiGetTime());
-								if (q.hasApiPostTime())
-									log.setApiPostTime(q.getApiPostTime());
-								if (q.hasApiException())
-									log.setApiException(q.getApiException() != null && q.getApiException().length() > 255 ? q.getApiException().substring(0, 255) : q.getApiException());
-								try {
-									String message = getMessage(q);
-									if (message != null && !message.isEmpty())
-										log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
-								} catch (Exception e) {
-									if (!q.getMessageList().isEmpty()) {
-										String message = null; int level = 0;
-										for (OnlineSectioningLog.Message m: q.getMessageList()) {
-											if (message != null && !message.isEmpty() && (!m.hasLevel() || level > m.getLevel().getNumber())) continue;
-											if (m.hasText()) { message = m.getText(); level = m.getLevel().getNumber(); }
-											else if (m.hasException()) { message = m.getException(); level = m.getLevel().getNumber(); }
-										}
-										if (message != null && !message.isEmpty())
-											log.setMessage(message.length() > 255 ? message.substring(0, 252) + "..." : message);
-									}
-								}
-								Long sessionId = q.getSession().getUniqueId();
-								Session session = sessions.get(sessionId);
-								if (session == null) {
-									session = SessionDAO.getInstance().get(sessionId, hibSession);
-									sessions.put(sessionId, session);
-								}
-								log.setSession(session);
-								hibSession.save(log);
-							}
-							hibSession.flush();
-						} finally {
-							hibSession.close();
+							iFlushLock.wait(wait);
+						} catch (InterruptedException e) {
 						}
 					}
-				} catch (Throwable t) {
-					sLog.warn("Failed to save " + actionsToSave.size() + " log actions: " + t.getMessage(), t);
+				}
+				if (!iOverflow.isEmpty()) spillOverflow();
+				if (!iActive || iActions.size() >= iBatchSize || System.currentTimeMillis() - lastFlush >= iFlushInterval) {
+					try {
+						flush();
+					} catch (Throwable t) {
+						sLog.warn("Failed to save log actions: " + t.getMessage(), t);
+					}
+					lastFlush = System.currentTimeMillis();
 				}
 				if (!iActive) break;
 			}
@@ -112,7 +112,7 @@ public abstract class OnlineSectioningTestFwk {
             	System.exit(0);
             }
         } else {
-            iServer = new InMemoryServer(new OnlineSectioningServerContext() {
+            OnlineSectioningServerContext context = new OnlineSectioningServerContext() {
     			@Override
     			public boolean isWaitTillStarted() {
     				return false;
@@ -132,7 +132,15 @@ public abstract class OnlineSectioningTestFwk {
     			public LockService getLockService() {
     				return null;
     			}
-    		});
+    		};
+    		String serverClassName = ApplicationProperties.getProperty(ApplicationProperty.OnlineSchedulingServerClass.key(), InMemoryServer.class.getName());
+    		try {
+    			iServer = (OnlineSectioningServer)Class.forName(serverClassName).getConstructor(OnlineSectioningServerContext.class).newInstance(context);
+    		} catch (Exception e) {
+    			sLog.error("Failed to create " + serverClassName + ": " + e.getMessage(), e);
+    			System.exit(0);
+    		}
+    		sLog.info("Server: " + iServer.getClass().getSimpleName());
         }
 	}
 	
@@ -307,8 +315,15 @@ public abstract class OnlineSectioningTestFwk {
 			
 			Collections.shuffle(operations);
 			
+			List<String> scaling = new ArrayList<String>();
 			for (int c: nrConcurrent) {
 				run(nrTasks <= 0 || operations.size() <= nrTasks ? operations : operations.subList(0, nrTasks), c);
+				scaling.add(c + " threads: " + sDF.format(nrFinished() / testRunTimeInSeconds()) + " tasks / s, " + sDF.format(totalExecutionTimeInSeconds() / nrFinished()) + " s / task");
+			}
+			if (nrConcurrent.length > 1) {
+				sLog.info("Throughput (" + Runtime.getRuntime().availableProcessors() + " cores, " + getServer().getClass().getSimpleName() + "):");
+				for (String line: scaling)
+					sLog.info("  " + line);
 			}
 			
 			logCounters();
@@ -323,6 +338,17 @@ public abstract class OnlineSectioningTestFwk {
 		}
 	}
 	
+	/**
+	 * Parse comma separated list of the number of concurrent threads (e.g., 1,2,4,8).
+	 */
+	public static int[] nrConcurrent(String value) {
+		String[] values = value.split(",");
+		int[] ret = new int[values.length];
+		for (int i = 0; i < values.length; i++)
+			ret[i] = Integer.parseInt(values[i].trim());
+		return ret;
+	}
+	
 	public double inc(String counter, double value) {
 		synchronized (iCounters) {
 			Counter cnt = iCounters.get(counter);
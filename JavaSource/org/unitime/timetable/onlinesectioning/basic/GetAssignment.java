@@ -60,6 +60,7 @@ import org.unitime.timetable.gwt.shared.CourseRequestInterface.RequestedCourseSt
 import org.unitime.timetable.gwt.shared.OnlineSectioningInterface.WaitListMode;
 import org.unitime.timetable.model.FixedCreditUnitConfig;
 import org.unitime.timetable.model.dao.StudentDAO;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningBatch;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
@@ -240,11 +241,7 @@ public class GetAssignment extends WaitlistedOnlineSectioningAction<ClassAssignm
 					return o1.getOfferingId().compareTo(o2.getOfferingId());
 				}
 			});
-			for (Long offeringId: offeringIds) {
-				XOffering offering = server.getOffering(offeringId);
-				if (offering != null)
-					offerings.add(offering);
-			}
+			offerings.addAll(OnlineSectioningBatch.getOfferings(server, offeringIds).values());
 			for (XOffering offering: offerings) {
 				ClassAssignmentInterface.CourseAssignment ca = new ClassAssignmentInterface.CourseAssignment();
 		    	XCourse course = offering.getControllingCourse();
@@ -340,6 +337,15 @@ public class GetAssignment extends WaitlistedOnlineSectioningAction<ClassAssignm
 		StudentClassAttendance attendance = (provider == null ? null : provider.getCustomClassAttendanceForStudent(StudentDAO.getInstance().get(student.getStudentId(), helper.getHibSession()), helper, null));
 		Map<Long, Set<String>> wlOverlaps = null;
 		
+		Set<Long> offeringIds = new HashSet<Long>();
+		for (XRequest request: studentRequests) {
+			if (request instanceof XCourseRequest) {
+				XCourseRequest r = (XCourseRequest)request;
+				offeringIds.add(r.getEnrollment() == null ? r.getCourseIds().get(0).getOfferingId() : r.getEnrollment().getOfferingId());
+			}
+		}
+		Map<Long, XOffering> offerings = OnlineSectioningBatch.getOfferings(server, offeringIds);
+		
 		float credit = 0f;
 		if (student.getMaxCredit() != null)
 			for (XRequest request: studentRequests) {
@@ -347,7 +353,7 @@ public class GetAssignment extends WaitlistedOnlineSectioningAction<ClassAssignm
 					XCourseRequest r = (XCourseRequest)request;
 					XEnrollment enrollment = r.getEnrollment();
 					if (enrollment != null) {
-						XOffering offering = server.getOffering(enrollment.getOfferingId());
+						XOffering offering = offerings.get(enrollment.getOfferingId());
 						XCourse course = offering.getCourse(enrollment);
 						if (course != null) {
 							Float c = course.getMinCredit();
@@ -366,7 +372,7 @@ public class GetAssignment extends WaitlistedOnlineSectioningAction<ClassAssignm
 				
 				XEnrollment enrollment = r.getEnrollment();
 				XCourseId courseId = (enrollment == null ? r.getCourseIds().get(0) : enrollment);
-				XOffering offering = server.getOffering(courseId.getOfferingId());
+				XOffering offering = offerings.get(courseId.getOfferingId());
 				XExpectations expectations = server.getExpectations(courseId.getOfferingId());
 				XCourse course = offering.getCourse(courseId);
 				
@@ -27,6 +27,7 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -54,6 +55,7 @@ import org.unitime.timetable.model.CourseRequest.CourseRequestOverrideStatus;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.StudentSectioningStatusDAO;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningBatch;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
@@ -122,11 +124,15 @@ public class ListEnrollments extends WaitlistedOnlineSectioningAction<List<Class
 		Lock lock = server.readLock();
 		try {
 			List<ClassAssignmentInterface.Enrollment> enrollments = new ArrayList<ClassAssignmentInterface.Enrollment>();
-			XOffering offering = server.getOffering(iOfferingId);
+			OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+			OnlineSectioningBatch.Result<XOffering> offeringResult = batch.getOffering(iOfferingId);
+			OnlineSectioningBatch.Result<XExpectations> expectationsResult = batch.getExpectations(iOfferingId);
+			OnlineSectioningBatch.Result<XEnrollments> requestsResult = batch.getEnrollments(iOfferingId);
+			XOffering offering = offeringResult.get();
 			DistanceMetric m = server.getDistanceMetric();
 			OverExpectedCriterion overExp = server.getOverExpectedCriterion();
 			Formats.Format<Date> df = Formats.getDateFormat(Formats.Pattern.DATE_REQUEST);
-			XExpectations expectations = server.getExpectations(iOfferingId);
+			XExpectations expectations = expectationsResult.get();
 			
 			Set<String> regStates = new HashSet<String>();
 			Set<String> assStates = new HashSet<String>();
@@ -149,7 +155,11 @@ public class ListEnrollments extends WaitlistedOnlineSectioningAction<List<Class
 					noSubStates.add(status.getReference());
 			}
 
-			XEnrollments requests = server.getEnrollments(iOfferingId);
+			XEnrollments requests = requestsResult.get();
+			Set<Long> studentIds = new HashSet<Long>();
+			for (XCourseRequest request: requests.getRequests())
+				studentIds.add(request.getStudentId());
+			Map<Long, XStudent> students = OnlineSectioningBatch.getStudents(server, studentIds);
 			for (XCourseRequest request: requests.getRequests()) {
 				XEnrollment enrollment = request.getEnrollment();
 				if (iSectionId != null && (enrollment == null || !enrollment.getSectionIds().contains(iSectionId))) continue;
@@ -158,7 +168,7 @@ public class ListEnrollments extends WaitlistedOnlineSectioningAction<List<Class
 					if (!request.getCourseIds().contains(course)) continue;
 					if (enrollment != null && !course.getCourseId().equals(enrollment.getCourseId())) continue;
 					
-					XStudent student = server.getStudent(request.getStudentId());
+					XStudent student = students.get(request.getStudentId());
 					String status = student.getStatus();
 					if (status == null) status = session.getDefaultSectioningStatus();
 					WaitListMode wl = WaitListMode.None;
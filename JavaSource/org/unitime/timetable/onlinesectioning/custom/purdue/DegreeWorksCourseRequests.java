@@ -40,11 +40,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.cpsolver.ifs.heuristics.RouletteWheelSelection;
-import org.restlet.Client;
-import org.restlet.Context;
 import org.restlet.data.ChallengeScheme;
 import org.restlet.data.MediaType;
-import org.restlet.data.Protocol;
+import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.ClientResource;
 import org.restlet.resource.ResourceException;
 import org.unitime.localization.impl.Localization;
@@ -92,17 +90,12 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 	private static Log sLog = LogFactory.getLog(DegreeWorksCourseRequests.class);
 	private static StudentSectioningConstants CONST = Localization.create(StudentSectioningConstants.class);
 
-	private Client iClient;
+	private RestEndpoints.Connection iEndpoints;
+	private Gson iGson = null, iPrettyGson = null;
 	private ExternalTermProvider iExternalTermProvider;
 	
 	public DegreeWorksCourseRequests() {
-		List<Protocol> protocols = new ArrayList<Protocol>();
-		protocols.add(Protocol.HTTP);
-		protocols.add(Protocol.HTTPS);
-		iClient = new Client(protocols);
-		Context cx = new Context();
-		cx.getParameters().add("readTimeout", getDegreeWorksApiReadTimeout());
-		iClient.setContext(cx);
+		iEndpoints = RestEndpoints.connect(getDegreeWorksApiReadTimeout());
 		try {
 			String clazz = ApplicationProperty.CustomizationExternalTerm.value();
 			if (clazz == null || clazz.isEmpty())
@@ -119,6 +112,13 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 		return ApplicationProperties.getProperty("banner.dgw.readTimeout", "60000");
 	}
 	
+	/**
+	 * Degree plans are cached for a short time, as the course requests, degree plans, and critical courses are often all looked up at once
+	 */
+	protected long getDegreeWorksCacheTimeToLive() {
+		return Long.parseLong(ApplicationProperties.getProperty("banner.dgw.cacheTTL", "60000"));
+	}
+	
 	protected String getDegreeWorksApiSite() {
 		return ApplicationProperties.getProperty("banner.dgw.site");
 	}
@@ -175,8 +175,19 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 	}
 	
 	protected Gson getGson(OnlineSectioningHelper helper) {
+		// Gson is thread-safe, create the two variants only once
+		if (helper.isDebugEnabled()) {
+			if (iPrettyGson == null) iPrettyGson = createGson(true);
+			return iPrettyGson;
+		} else {
+			if (iGson == null) iGson = createGson(false);
+			return iGson;
+		}
+	}
+	
+	protected Gson createGson(boolean prettyPrinting) {
 		GsonBuilder builder = new GsonBuilder();
-		if (helper.isDebugEnabled()) builder.setPrettyPrinting();
+		if (prettyPrinting) builder.setPrettyPrinting();
 		return builder.create();
 	}
 	
@@ -518,11 +529,7 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 
 	@Override
 	public void dispose() {
-		try {
-			iClient.stop();
-		} catch (Exception e) {
-			sLog.error(e.getMessage(), e);
-		}
+		iEndpoints.release();
 	}
 	
 	protected boolean matchCourse(AcademicSessionInfo session, XCourseId course, String bannerCourse) {
@@ -698,8 +705,14 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 	protected List<XEInterface.DegreePlan> getDegreePlans(String term, String studentId, String effectiveOnly) throws SectioningException {
 		ClientResource resource = null;
 		try {
+			RestEndpoints.ResponseCache cache = iEndpoints.getCache("dgw.plans", getDegreeWorksCacheTimeToLive());
+			String cacheKey = term + "|" + studentId + "|" + effectiveOnly;
+			String cached = cache.get(cacheKey);
+			if (cached != null)
+				return new GsonRepresentation<List<XEInterface.DegreePlan>>(new StringRepresentation(cached, MediaType.APPLICATION_JSON), XEInterface.DegreePlan.TYPE_LIST).getObject();
+			
 			resource = new ClientResource(getDegreeWorksApiSite());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("dgw.plans"));
 			if (term != null)
 				resource.addQueryParameter("terms", term);
 			resource.addQueryParameter("studentId", studentId);
@@ -724,6 +737,11 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 				throw exception;
 			}
 			
+			if (cache.isEnabled()) {
+				String response = resource.getResponseEntity().getText();
+				cache.put(cacheKey, response);
+				return new GsonRepresentation<List<XEInterface.DegreePlan>>(new StringRepresentation(response, MediaType.APPLICATION_JSON), XEInterface.DegreePlan.TYPE_LIST).getObject();
+			}
 			return new GsonRepresentation<List<XEInterface.DegreePlan>>(resource.getResponseEntity(), XEInterface.DegreePlan.TYPE_LIST).getObject();
 		} catch (SectioningException e) {
 			throw e;
@@ -32,6 +32,7 @@ import org.restlet.data.MediaType;
 import org.restlet.representation.Representation;
 import org.restlet.representation.WriterRepresentation;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
@@ -44,6 +45,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
 public class GsonRepresentation<T> extends WriterRepresentation {
+    private static Gson sGson = null;
     private GsonBuilder iBuilder = null;
     private Representation iRepresentation = null;
     private T iObject = null;
@@ -71,8 +73,22 @@ public class GsonRepresentation<T> extends WriterRepresentation {
     }
     
     public GsonBuilder getBuilder() {
-        if (iBuilder == null) {
-        	iBuilder = new GsonBuilder()
+        if (iBuilder == null)
+        	iBuilder = createBuilder();
+        return iBuilder;
+    }
+    
+    /**
+     * Gson instances are thread-safe: unless the builder was customized through {@link #getBuilder()}, one shared instance is used
+     */
+    protected Gson getGson() {
+    	if (iBuilder != null) return iBuilder.create();
+    	if (sGson == null) sGson = createBuilder().create();
+    	return sGson;
+    }
+    
+    protected static GsonBuilder createBuilder() {
+        return new GsonBuilder()
         	.registerTypeAdapter(DateTime.class, new JsonSerializer<DateTime>() {
     			@Override
     			public JsonElement serialize(DateTime src, Type typeOfSrc, JsonSerializationContext context) {
@@ -105,8 +121,6 @@ public class GsonRepresentation<T> extends WriterRepresentation {
     				}
     			}
     		});
-        }
-        return iBuilder;
     }
 
     public T getObject() throws IOException {
@@ -114,9 +128,9 @@ public class GsonRepresentation<T> extends WriterRepresentation {
         	JsonReader reader = new JsonReader(iRepresentation.getReader());
         	try {
         		if (iObjectType != null)
-        			return getBuilder().create().fromJson(reader, iObjectType);
+        			return getGson().fromJson(reader, iObjectType);
         		else
-        			return getBuilder().create().fromJson(reader, iObjectClass);
+        			return getGson().fromJson(reader, iObjectClass);
         	} finally {
     			reader.close();
     			iRepresentation.release();
@@ -151,9 +165,9 @@ public class GsonRepresentation<T> extends WriterRepresentation {
         	iRepresentation.write(writer);
         } else {
         	if (iObjectType != null)
-        		getBuilder().create().toJson(iObject, iObjectType, new JsonWriter(writer));
+        		getGson().toJson(iObject, iObjectType, new JsonWriter(writer));
         	else
-        		getBuilder().create().toJson(iObject, iObjectClass, new JsonWriter(writer));
+        		getGson().toJson(iObject, iObjectClass, new JsonWriter(writer));
         }
     }
 }
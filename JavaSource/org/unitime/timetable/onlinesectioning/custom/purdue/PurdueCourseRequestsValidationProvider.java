@@ -65,10 +65,7 @@ import org.cpsolver.studentsct.reservation.Reservation;
 import org.cpsolver.studentsct.reservation.Restriction;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.restlet.Client;
-import org.restlet.Context;
 import org.restlet.data.MediaType;
-import org.restlet.data.Protocol;
 import org.restlet.resource.ClientResource;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.ApplicationProperties;
@@ -173,17 +170,12 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 	protected static final StudentSectioningConstants CONSTANTS = Localization.create(StudentSectioningConstants.class);
 	protected static Format<Number> sCreditFormat = Formats.getNumberFormat("0.##");
 	
-	private Client iClient;
+	private RestEndpoints.Connection iEndpoints;
+	private Gson iGson = null, iPrettyGson = null;
 	private ExternalTermProvider iExternalTermProvider;
 	
 	public PurdueCourseRequestsValidationProvider() {
-		List<Protocol> protocols = new ArrayList<Protocol>();
-		protocols.add(Protocol.HTTP);
-		protocols.add(Protocol.HTTPS);
-		iClient = new Client(protocols);
-		Context cx = new Context();
-		cx.getParameters().add("readTimeout", getSpecialRegistrationApiReadTimeout());
-		iClient.setContext(cx);
+		iEndpoints = RestEndpoints.connect(getSpecialRegistrationApiReadTimeout());
 		try {
 			String clazz = ApplicationProperty.CustomizationExternalTerm.value();
 			if (clazz == null || clazz.isEmpty())
@@ -330,6 +322,17 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
     }
 	
 	protected Gson getGson(OnlineSectioningHelper helper) {
+		// Gson is thread-safe, create the two variants only once
+		if (helper.isDebugEnabled()) {
+			if (iPrettyGson == null) iPrettyGson = createGson(true);
+			return iPrettyGson;
+		} else {
+			if (iGson == null) iGson = createGson(false);
+			return iGson;
+		}
+	}
+	
+	protected Gson createGson(boolean prettyPrinting) {
 		GsonBuilder builder = new GsonBuilder()
 		.registerTypeAdapter(DateTime.class, new JsonSerializer<DateTime>() {
 			@Override
@@ -359,7 +362,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 				}
 			}
 		});
-		if (helper.isDebugEnabled()) builder.setPrettyPrinting();
+		if (prettyPrinting) builder.setPrettyPrinting();
 		return builder.create();
 	}
 	
@@ -672,7 +675,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 			ClientResource resource = null;
 			try {
 				resource = new ClientResource(getSpecialRegistrationApiValidationSite());
-				resource.setNext(iClient);
+				resource.setNext(iEndpoints.getEndpoint("specreg.checkRestrictions"));
 				resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 				
 				Gson gson = getGson(helper);
@@ -1178,11 +1181,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 
 	@Override
 	public void dispose() {
-		try {
-			iClient.stop();
-		} catch (Exception e) {
-			sLog.error(e.getMessage(), e);
-		}	
+		iEndpoints.release();
 	}
 
 	@Override
@@ -1216,7 +1215,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 		Float maxCredit = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkStatus"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -1455,7 +1454,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 			resource = null;
 			try {
 				resource = new ClientResource(getSpecialRegistrationApiSiteSubmitRegistration());
-				resource.setNext(iClient);
+				resource.setNext(iEndpoints.getEndpoint("specreg.submitRegistration"));
 				resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 				
 				Gson gson = getGson(helper);
@@ -2062,7 +2061,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkStatus"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -2211,7 +2210,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkStatus"));
 			
 			AcademicSessionInfo session = (server == null ? new AcademicSessionInfo(student.getSession()) : server.getAcademicSession());
 			String term = getBannerTerm(session);
@@ -2559,7 +2558,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiValidationSite());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkRestrictions"));
 			resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 			
 			Gson gson = getGson(helper);
@@ -2739,7 +2738,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 		resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteSubmitRegistration());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.submitRegistration"));
 			resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 			
 			Gson gson = getGson(helper);
@@ -2884,7 +2883,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckEligibility());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkEligibility"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -2971,7 +2970,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckAllSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkAllStatus"));
 			
 			AcademicSessionInfo session = (server == null ? null : server.getAcademicSession());
 			String studentIds = null;
@@ -3446,7 +3445,7 @@ public class PurdueCourseRequestsValidationProvider implements CourseRequestsVal
 			ClientResource resource = null;
 			try {
 				resource = new ClientResource(getSpecialRegistrationApiValidationSite());
-				resource.setNext(iClient);
+				resource.setNext(iEndpoints.getEndpoint("specreg.checkRestrictions"));
 				resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 				
 				Gson gson = getGson(helper);
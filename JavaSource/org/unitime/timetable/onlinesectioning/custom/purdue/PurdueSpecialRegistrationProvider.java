@@ -41,11 +41,8 @@ import org.apache.commons.logging.LogFactory;
 import org.cpsolver.coursett.model.Placement;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.restlet.Client;
-import org.restlet.Context;
 import org.restlet.data.ChallengeScheme;
 import org.restlet.data.MediaType;
-import org.restlet.data.Protocol;
 import org.restlet.resource.ClientResource;
 import org.restlet.resource.ResourceException;
 import org.unitime.localization.impl.Localization;
@@ -181,18 +178,13 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 	private static Log sLog = LogFactory.getLog(PurdueSpecialRegistrationProvider.class);
 	private static StudentSectioningMessages MSG = Localization.create(StudentSectioningMessages.class);
 
-	private Client iClient;
+	private RestEndpoints.Connection iEndpoints;
+	private Gson iGson = null, iPrettyGson = null;
 	private ExternalTermProvider iExternalTermProvider;
 	private ExternalClassLookupInterface iExternalClassLookup;
 	
 	public PurdueSpecialRegistrationProvider() {
-		List<Protocol> protocols = new ArrayList<Protocol>();
-		protocols.add(Protocol.HTTP);
-		protocols.add(Protocol.HTTPS);
-		iClient = new Client(protocols);
-		Context cx = new Context();
-		cx.getParameters().add("readTimeout", getSpecialRegistrationApiReadTimeout());
-		iClient.setContext(cx);
+		iEndpoints = RestEndpoints.connect(getSpecialRegistrationApiReadTimeout());
 		try {
 			String clazz = ApplicationProperty.CustomizationExternalTerm.value();
 			if (clazz == null || clazz.isEmpty())
@@ -724,7 +716,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiCheckRestrictions());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkRestrictions"));
 			resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 			
 			Gson gson = getGson(helper);
@@ -953,7 +945,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 				throw new SectioningException("There are no changes.");
 
 			resource = new ClientResource(getSpecialRegistrationApiSiteSubmitRegistration());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.submitRegistration"));
 			resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 			
 			Gson gson = getGson(helper);
@@ -1133,11 +1125,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 
 	@Override
 	public void dispose() {
-		try {
-			iClient.stop();
-		} catch (Exception e) {
-			sLog.error(e.getMessage(), e);
-		}	
+		iEndpoints.release();
 	}
 	
 	protected CourseOffering findCourseByExternalId(Long sessionId, String externalId) {
@@ -1988,6 +1976,17 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 	}
 	
 	protected Gson getGson(OnlineSectioningHelper helper) {
+		// Gson is thread-safe, create the two variants only once
+		if (helper.isDebugEnabled()) {
+			if (iPrettyGson == null) iPrettyGson = createGson(true);
+			return iPrettyGson;
+		} else {
+			if (iGson == null) iGson = createGson(false);
+			return iGson;
+		}
+	}
+	
+	protected Gson createGson(boolean prettyPrinting) {
 		GsonBuilder builder = new GsonBuilder()
 		.registerTypeAdapter(DateTime.class, new JsonSerializer<DateTime>() {
 			@Override
@@ -2017,7 +2016,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 				}
 			}
 		});
-		if (helper.isDebugEnabled()) builder.setPrettyPrinting();
+		if (prettyPrinting) builder.setPrettyPrinting();
 		return builder.create();
 	}
 
@@ -2028,7 +2027,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkStatus"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -2215,7 +2214,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 			Gson gson = getGson(helper);
 
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckEligibility());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkEligibility"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -2323,7 +2322,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 			Gson gson = getGson(helper);
 
 			resource = new ClientResource(getSpecialRegistrationApiSiteCancelSpecialRegistration());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.cancel"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -2440,7 +2439,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckStudentGradeModes());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkGradeModes"));
 
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -2574,7 +2573,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 			ClientResource resource = null;
 			try {
 				resource = new ClientResource(getBannerSite());
-				resource.setNext(iClient);
+				resource.setNext(iEndpoints.getEndpoint("banner.xe"));
 				resource.setChallengeResponse(ChallengeScheme.HTTP_BASIC, getBannerUser(true), getBannerPassword(true));
 				Gson gson = getGson(helper);
 				XEInterface.RegisterResponse original = null;
@@ -2851,7 +2850,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 				
 				if (req.changes != null && !req.changes.isEmpty()) {
 					resource = new ClientResource(getSpecialRegistrationApiSiteSubmitRegistration());
-					resource.setNext(iClient);
+					resource.setNext(iEndpoints.getEndpoint("specreg.submitRegistration"));
 					resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 					
 					Gson gson = getGson(helper);
@@ -2934,7 +2933,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 			}
 			
 			resource = new ClientResource(getSpecialRegistrationApiSiteUpdateRegistration());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.updateRegistration"));
 			resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 			
 			Gson gson = getGson(helper);
@@ -3073,7 +3072,7 @@ public class PurdueSpecialRegistrationProvider implements SpecialRegistrationPro
 			change.requestorNotes = request.getNote();
 			
 			resource = new ClientResource(getSpecialRegistrationApiSiteSubmitRegistration());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.submitRegistration"));
 			resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 			
 			Gson gson = getGson(helper);
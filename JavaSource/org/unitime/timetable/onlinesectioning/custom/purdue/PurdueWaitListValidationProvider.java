@@ -48,10 +48,7 @@ import org.cpsolver.studentsct.model.Section;
 import org.cpsolver.studentsct.model.Subpart;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.restlet.Client;
-import org.restlet.Context;
 import org.restlet.data.MediaType;
-import org.restlet.data.Protocol;
 import org.restlet.resource.ClientResource;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.ApplicationProperties;
@@ -139,17 +136,12 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 	protected static final StudentSectioningConstants CONSTANTS = Localization.create(StudentSectioningConstants.class);
 	protected static Format<Number> sCreditFormat = Formats.getNumberFormat("0.##");
 
-	private Client iClient;
+	private RestEndpoints.Connection iEndpoints;
+	private Gson iGson = null, iPrettyGson = null;
 	private ExternalTermProvider iExternalTermProvider;
 
 	public PurdueWaitListValidationProvider() {
-		List<Protocol> protocols = new ArrayList<Protocol>();
-		protocols.add(Protocol.HTTP);
-		protocols.add(Protocol.HTTPS);
-		iClient = new Client(protocols);
-		Context cx = new Context();
-		cx.getParameters().add("readTimeout", getSpecialRegistrationApiReadTimeout());
-		iClient.setContext(cx);
+		iEndpoints = RestEndpoints.connect(getSpecialRegistrationApiReadTimeout());
 		try {
 			String clazz = ApplicationProperty.CustomizationExternalTerm.value();
 			if (clazz == null || clazz.isEmpty())
@@ -239,6 +231,17 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 	}
 	
 	protected Gson getGson(OnlineSectioningHelper helper) {
+		// Gson is thread-safe, create the two variants only once
+		if (helper.isDebugEnabled()) {
+			if (iPrettyGson == null) iPrettyGson = createGson(true);
+			return iPrettyGson;
+		} else {
+			if (iGson == null) iGson = createGson(false);
+			return iGson;
+		}
+	}
+	
+	protected Gson createGson(boolean prettyPrinting) {
 		GsonBuilder builder = new GsonBuilder()
 		.registerTypeAdapter(DateTime.class, new JsonSerializer<DateTime>() {
 			@Override
@@ -268,7 +271,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 				}
 			}
 		});
-		if (helper.isDebugEnabled()) builder.setPrettyPrinting();
+		if (prettyPrinting) builder.setPrettyPrinting();
 		return builder.create();
 	}
 	
@@ -494,7 +497,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 						ClientResource resource = null;
 						try {
 							resource = new ClientResource(getSpecialRegistrationApiValidationSite());
-							resource.setNext(iClient);
+							resource.setNext(iEndpoints.getEndpoint("specreg.checkRestrictions"));
 							resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 							
 							Gson gson = getGson(helper);
@@ -733,7 +736,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 		Float oldCredit = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkStatus"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -901,7 +904,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 			resource = null;
 			try {
 				resource = new ClientResource(getSpecialRegistrationApiSiteSubmitRegistration());
-				resource.setNext(iClient);
+				resource.setNext(iEndpoints.getEndpoint("specreg.submitRegistration"));
 				resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 				
 				Gson gson = getGson(helper);
@@ -1084,7 +1087,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkStatus"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -1226,7 +1229,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckEligibility());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkEligibility"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
@@ -1308,7 +1311,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkStatus"));
 			
 			AcademicSessionInfo session = (server == null ? new AcademicSessionInfo(student.getSession()) : server.getAcademicSession());
 			String term = getBannerTerm(session);
@@ -1589,7 +1592,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 					ClientResource resource = null;
 					try {
 						resource = new ClientResource(getSpecialRegistrationApiValidationSite());
-						resource.setNext(iClient);
+						resource.setNext(iEndpoints.getEndpoint("specreg.checkRestrictions"));
 						resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 						
 						Gson gson = getGson(helper);
@@ -1705,7 +1708,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteSubmitRegistration());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.submitRegistration"));
 			resource.addQueryParameter("apiKey", getSpecialRegistrationApiKey());
 			
 			Gson gson = getGson(helper);
@@ -1839,11 +1842,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 
 	@Override
 	public void dispose() {
-		try {
-			iClient.stop();
-		} catch (Exception e) {
-			sLog.error(e.getMessage(), e);
-		}	
+		iEndpoints.release();
 	}
 
 	@Override
@@ -1875,7 +1874,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckAllSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkAllStatus"));
 			
 			AcademicSessionInfo session = (server == null ? null : server.getAcademicSession());
 			String studentIds = null;
@@ -2031,7 +2030,7 @@ public class PurdueWaitListValidationProvider implements WaitListValidationProvi
 		ClientResource resource = null;
 		try {
 			resource = new ClientResource(getSpecialRegistrationApiSiteCheckSpecialRegistrationStatus());
-			resource.setNext(iClient);
+			resource.setNext(iEndpoints.getEndpoint("specreg.checkStatus"));
 			
 			AcademicSessionInfo session = server.getAcademicSession();
 			String term = getBannerTerm(session);
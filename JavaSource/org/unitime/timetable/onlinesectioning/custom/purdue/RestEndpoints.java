@@ -0,0 +1,444 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.custom.purdue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.restlet.Client;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.routing.Filter;
+import org.unitime.timetable.ApplicationProperties;
+
+/**
+ * Shared HTTP client layer of the custom student scheduling providers.<br>
+ * The Restlet clients are shared between the providers (one client for each read timeout), so that the connections
+ * to the external systems can be kept alive and reused. Each call goes through a named endpoint that keeps
+ * the latency statistics and a circuit breaker: after too many consecutive failures the endpoint is not called
+ * for a while and the calls fail right away. Read-only lookups can also use a time-to-live cache of the endpoint.
+ * The statistics are published through JMX (see {@link RestEndpointsMBean}).<br>
+ * <br>
+ * Configuration (application properties):
+ * <ul>
+ * <li>purdue.rest.[endpoint].readTimeout ... read timeout of the endpoint (defaults to the read timeout of the provider)
+ * <li>purdue.rest.[endpoint].failures ... number of consecutive failures that open the circuit (defaults to purdue.rest.failures, 5, 0 to disable)
+ * <li>purdue.rest.[endpoint].openTime ... time in milliseconds for which an open circuit rejects calls (defaults to purdue.rest.openTime, 30 seconds)
+ * <li>purdue.rest.[endpoint].cacheTTL ... time to live of the cached responses in milliseconds (defaults to purdue.rest.cacheTTL or the default of the provider, 0 to disable)
+ * <li>purdue.rest.maxConnectionsPerHost, purdue.rest.maxTotalConnections, purdue.rest.idleTimeout ... connection pool
+ * (used by the Apache HTTP client connector, the default connector relies on the JVM keep-alive instead)
+ * </ul>
+ * 
+ * @author Tomas Muller
+ */
+public class RestEndpoints implements RestEndpointsMBean {
+	private static Log sLog = LogFactory.getLog(RestEndpoints.class);
+	/** Upper bounds (in milliseconds) of the latency histogram buckets, the last bucket is for the slower calls */
+	private static final long[] sBuckets = new long[] { 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000 };
+	private static RestEndpoints sInstance = null;
+	
+	private Map<String, SharedClient> iClients = new HashMap<String, SharedClient>();
+	private Map<String, Endpoint> iEndpoints = new HashMap<String, Endpoint>();
+	
+	private RestEndpoints() {}
+	
+	public static synchronized RestEndpoints getInstance() {
+		if (sInstance == null) {
+			sInstance = new RestEndpoints();
+			sInstance.register();
+		}
+		return sInstance;
+	}
+	
+	/**
+	 * Connect a provider to the shared clients, {@link Connection#release()} must be called when the provider is disposed
+	 * @param readTimeout default read timeout of the provider
+	 */
+	public static Connection connect(String readTimeout) {
+		return new Connection(getInstance(), readTimeout);
+	}
+	
+	protected void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("org.unitime:type=RestEndpoints");
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(this, objectName);
+		} catch (Exception e) {
+			sLog.warn("Failed to register REST endpoints MBean: " + e.getMessage(), e);
+		}
+	}
+	
+	protected Client acquireClient(String readTimeout) {
+		synchronized (iClients) {
+			SharedClient client = iClients.get(readTimeout);
+			if (client == null) {
+				client = new SharedClient(readTimeout);
+				iClients.put(readTimeout, client);
+			}
+			client.iReferences ++;
+			return client.iClient;
+		}
+	}
+	
+	protected void releaseClient(String readTimeout) {
+		synchronized (iClients) {
+			SharedClient client = iClients.get(readTimeout);
+			if (client != null && --client.iReferences <= 0) {
+				iClients.remove(readTimeout);
+				try {
+					client.iClient.stop();
+				} catch (Exception e) {
+					sLog.error("Failed to stop client: " + e.getMessage(), e);
+				}
+			}
+		}
+	}
+	
+	public Endpoint getEndpoint(String name) {
+		synchronized (iEndpoints) {
+			Endpoint endpoint = iEndpoints.get(name);
+			if (endpoint == null) {
+				endpoint = new Endpoint(name);
+				iEndpoints.put(name, endpoint);
+			}
+			return endpoint;
+		}
+	}
+	
+	protected static String getProperty(String endpoint, String property, String defaultValue) {
+		return ApplicationProperties.getProperty("purdue.rest." + endpoint + "." + property, ApplicationProperties.getProperty("purdue.rest." + property, defaultValue));
+	}
+	
+	@Override
+	public String[] getEndpointStatistics() {
+		List<String> ret = new ArrayList<String>();
+		synchronized (iEndpoints) {
+			for (Endpoint endpoint: iEndpoints.values())
+				ret.add(endpoint.toString());
+		}
+		Collections.sort(ret);
+		return ret.toArray(new String[ret.size()]);
+	}
+	
+	@Override
+	public String[] getOpenCircuits() {
+		List<String> ret = new ArrayList<String>();
+		synchronized (iEndpoints) {
+			for (Endpoint endpoint: iEndpoints.values())
+				if (endpoint.isOpen()) ret.add(endpoint.getName());
+		}
+		Collections.sort(ret);
+		return ret.toArray(new String[ret.size()]);
+	}
+	
+	@Override
+	public void resetStatistics() {
+		synchronized (iEndpoints) {
+			for (Endpoint endpoint: iEndpoints.values())
+				endpoint.reset();
+		}
+	}
+	
+	@Override
+	public void clearCaches() {
+		synchronized (iEndpoints) {
+			for (Endpoint endpoint: iEndpoints.values())
+				endpoint.getCache().clear();
+		}
+	}
+	
+	/**
+	 * Restlet client shared by all the providers with the same read timeout
+	 */
+	protected static class SharedClient {
+		private Client iClient;
+		private int iReferences = 0;
+		
+		protected SharedClient(String readTimeout) {
+			List<Protocol> protocols = new ArrayList<Protocol>();
+			protocols.add(Protocol.HTTP);
+			protocols.add(Protocol.HTTPS);
+			iClient = new Client(protocols);
+			Context cx = new Context();
+			cx.getParameters().add("readTimeout", readTimeout);
+			cx.getParameters().add("socketTimeout", readTimeout);
+			cx.getParameters().add("maxConnectionsPerHost", ApplicationProperties.getProperty("purdue.rest.maxConnectionsPerHost", "20"));
+			cx.getParameters().add("maxTotalConnections", ApplicationProperties.getProperty("purdue.rest.maxTotalConnections", "100"));
+			cx.getParameters().add("idleTimeout", ApplicationProperties.getProperty("purdue.rest.idleTimeout", "60000"));
+			iClient.setContext(cx);
+		}
+	}
+	
+	/**
+	 * Connection of a provider to the shared clients
+	 */
+	public static class Connection {
+		private RestEndpoints iEndpoints;
+		private String iReadTimeout;
+		private Map<String, EndpointFilter> iFilters = new HashMap<String, EndpointFilter>();
+		
+		protected Connection(RestEndpoints endpoints, String readTimeout) {
+			iEndpoints = endpoints;
+			iReadTimeout = readTimeout;
+		}
+		
+		/**
+		 * Restlet to be used as the next restlet of a client resource (see {@link org.restlet.resource.ClientResource#setNext(org.restlet.Uniform)})
+		 * @param name endpoint name, used in the statistics and the configuration
+		 */
+		public synchronized Restlet getEndpoint(String name) {
+			EndpointFilter filter = iFilters.get(name);
+			if (filter == null) {
+				String readTimeout = ApplicationProperties.getProperty("purdue.rest." + name + ".readTimeout", iReadTimeout);
+				filter = new EndpointFilter(iEndpoints.getEndpoint(name), readTimeout, iEndpoints.acquireClient(readTimeout));
+				iFilters.put(name, filter);
+			}
+			return filter;
+		}
+		
+		/**
+		 * Response cache of the given endpoint, only to be used for read-only lookups
+		 * @param defaultTimeToLive time to live in milliseconds when purdue.rest.[endpoint].cacheTTL is not set
+		 */
+		public ResponseCache getCache(String name, long defaultTimeToLive) {
+			ResponseCache cache = iEndpoints.getEndpoint(name).getCache();
+			cache.setDefaultTimeToLive(defaultTimeToLive);
+			return cache;
+		}
+		
+		public synchronized void release() {
+			for (EndpointFilter filter: iFilters.values())
+				iEndpoints.releaseClient(filter.iReadTimeout);
+			iFilters.clear();
+		}
+	}
+	
+	/**
+	 * Passes the calls to the shared client, measures the latency, and rejects the calls when the circuit of the endpoint is open
+	 */
+	protected static class EndpointFilter extends Filter {
+		private Endpoint iEndpoint;
+		private String iReadTimeout;
+		
+		protected EndpointFilter(Endpoint endpoint, String readTimeout, Client client) {
+			super(client.getContext(), client);
+			iEndpoint = endpoint;
+			iReadTimeout = readTimeout;
+		}
+		
+		@Override
+		protected int beforeHandle(Request request, Response response) {
+			if (!iEndpoint.allow()) {
+				response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, iEndpoint.getName() + " is not available, please try again later.");
+				return STOP;
+			}
+			return CONTINUE;
+		}
+		
+		@Override
+		protected int doHandle(Request request, Response response) {
+			long t0 = System.currentTimeMillis();
+			boolean failed = true;
+			try {
+				int ret = super.doHandle(request, response);
+				Status status = response.getStatus();
+				failed = (status == null || status.isConnectorError() || status.isServerError());
+				return ret;
+			} finally {
+				iEndpoint.record(System.currentTimeMillis() - t0, failed);
+			}
+		}
+	}
+	
+	/**
+	 * Statistics and circuit breaker of an endpoint
+	 */
+	public static class Endpoint {
+		private String iName;
+		private long iCalls = 0, iFailures = 0, iRejected = 0, iTime = 0, iMaxTime = 0;
+		private long[] iHistogram = new long[sBuckets.length + 1];
+		private int iConsecutiveFailures = 0;
+		private long iOpenUntil = 0;
+		private boolean iTrial = false;
+		private ResponseCache iCache;
+		
+		protected Endpoint(String name) {
+			iName = name;
+			iCache = new ResponseCache(name);
+		}
+		
+		public String getName() { return iName; }
+		
+		public ResponseCache getCache() { return iCache; }
+		
+		public synchronized boolean isOpen() { return iOpenUntil > 0; }
+		
+		/**
+		 * Returns false when the circuit is open. Once the open time has passed, one trial call is allowed
+		 * (half-open circuit): the circuit is closed when it succeeds, or opened again when it fails.
+		 */
+		protected synchronized boolean allow() {
+			if (iOpenUntil == 0) return true;
+			if (!iTrial && System.currentTimeMillis() >= iOpenUntil) {
+				iTrial = true;
+				return true;
+			}
+			iRejected ++;
+			return false;
+		}
+		
+		protected synchronized void record(long time, boolean failed) {
+			iCalls ++;
+			iTime += time;
+			if (time > iMaxTime) iMaxTime = time;
+			int bucket = 0;
+			while (bucket < sBuckets.length && time > sBuckets[bucket]) bucket ++;
+			iHistogram[bucket] ++;
+			if (failed) {
+				iFailures ++;
+				iConsecutiveFailures ++;
+				int threshold = Integer.parseInt(getProperty(iName, "failures", "5"));
+				if (iTrial || (threshold > 0 && iConsecutiveFailures >= threshold)) {
+					if (iOpenUntil == 0)
+						sLog.warn(iName + ": " + iConsecutiveFailures + " consecutive failures, calls are suspended.");
+					iOpenUntil = System.currentTimeMillis() + Long.parseLong(getProperty(iName, "openTime", "30000"));
+					iTrial = false;
+				}
+			} else {
+				if (iOpenUntil > 0)
+					sLog.info(iName + ": calls are resumed.");
+				iConsecutiveFailures = 0;
+				iOpenUntil = 0;
+				iTrial = false;
+			}
+		}
+		
+		protected synchronized void reset() {
+			iCalls = 0; iFailures = 0; iRejected = 0; iTime = 0; iMaxTime = 0;
+			iHistogram = new long[sBuckets.length + 1];
+			iCache.reset();
+		}
+		
+		@Override
+		public synchronized String toString() {
+			StringBuffer histogram = new StringBuffer();
+			for (int i = 0; i < iHistogram.length; i++) {
+				if (iHistogram[i] == 0) continue;
+				if (histogram.length() > 0) histogram.append(", ");
+				histogram.append(i < sBuckets.length ? "<=" + sBuckets[i] : ">" + sBuckets[sBuckets.length - 1]).append(" ms: ").append(iHistogram[i]);
+			}
+			return iName + ": " + iCalls + " calls, " + iFailures + " failed, " + iRejected + " rejected" +
+					(iCache.getHits() == 0 ? "" : ", " + iCache.getHits() + " cached") +
+					", latency " + (iCalls == 0 ? 0 : iTime / iCalls) + " ms avg / " + iMaxTime + " ms max" +
+					(histogram.length() == 0 ? "" : " [" + histogram + "]") +
+					(iOpenUntil > 0 ? " (suspended)" : "");
+		}
+	}
+	
+	/**
+	 * Time-to-live cache of the (JSON) responses of an endpoint, keyed by the request parameters.
+	 * The responses are cached as strings, so that each caller gets its own copy of the parsed object.
+	 */
+	public static class ResponseCache {
+		private String iName;
+		private long iHits = 0;
+		private long iDefaultTimeToLive = 0;
+		private Map<String, CachedResponse> iCache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+				return size() > Integer.parseInt(getProperty(iName, "cacheSize", "10000"));
+			}
+		};
+		
+		protected ResponseCache(String name) {
+			iName = name;
+		}
+		
+		protected void setDefaultTimeToLive(long defaultTimeToLive) {
+			iDefaultTimeToLive = defaultTimeToLive;
+		}
+		
+		protected long getTimeToLive() {
+			return Long.parseLong(getProperty(iName, "cacheTTL", String.valueOf(iDefaultTimeToLive)));
+		}
+		
+		public boolean isEnabled() {
+			return getTimeToLive() > 0;
+		}
+		
+		/**
+		 * Cached response, null if not cached or expired
+		 */
+		public synchronized String get(String key) {
+			CachedResponse response = iCache.get(key);
+			if (response == null) return null;
+			if (response.iExpires < System.currentTimeMillis()) {
+				iCache.remove(key);
+				return null;
+			}
+			iHits ++;
+			return response.iResponse;
+		}
+		
+		public synchronized void put(String key, String response) {
+			long ttl = getTimeToLive();
+			if (ttl > 0 && response != null)
+				iCache.put(key, new CachedResponse(response, System.currentTimeMillis() + ttl));
+		}
+		
+		public synchronized void remove(String key) {
+			iCache.remove(key);
+		}
+		
+		public synchronized void clear() {
+			iCache.clear();
+		}
+		
+		protected synchronized long getHits() { return iHits; }
+		
+		protected synchronized void reset() { iHits = 0; }
+	}
+	
+	private static class CachedResponse {
+		private String iResponse;
+		private long iExpires;
+		
+		private CachedResponse(String response, long expires) {
+			iResponse = response; iExpires = expires;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.custom.purdue;
+
+/**
+ * JMX interface of the {@link RestEndpoints}: latency, failures, and circuit breaker state of the external
+ * systems called by the custom student scheduling providers.
+ * 
+ * @author Tomas Muller
+ */
+public interface RestEndpointsMBean {
+	
+	/**
+	 * For each endpoint: number of calls, failures, rejected calls, cache hits, average and maximal latency, and the latency histogram
+	 */
+	public String[] getEndpointStatistics();
+	
+	/**
+	 * Endpoints that are currently not called because of too many failures
+	 */
+	public String[] getOpenCircuits();
+	
+	public void resetStatistics();
+	
+	public void clearCaches();
+
+}
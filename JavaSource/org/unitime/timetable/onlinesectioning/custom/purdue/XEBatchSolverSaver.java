@@ -21,6 +21,7 @@ package org.unitime.timetable.onlinesectioning.custom.purdue;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -34,6 +35,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -66,6 +73,7 @@ import org.restlet.Context;
 import org.restlet.data.ChallengeScheme;
 import org.restlet.data.MediaType;
 import org.restlet.data.Protocol;
+import org.restlet.data.Status;
 import org.restlet.resource.ClientResource;
 import org.restlet.resource.ResourceException;
 import org.unitime.timetable.ApplicationProperties;
@@ -95,6 +103,7 @@ import org.unitime.timetable.solver.studentsct.StudentSolver;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.DefaultExternalClassLookup;
 import org.unitime.timetable.util.Formats;
+import org.unitime.timetable.util.TokenBucket;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -107,6 +116,12 @@ import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
 /**
+ * Saves the student scheduling solution into Banner using the XE registration API.<br>
+ * Students that fail on a problem worth retrying (see {@link #isRetriable(Throwable)}) are retried up to Save.XE.Retries times.
+ * Students that still fail are listed in the Save.XE.FailedStudents solver property, and only these are saved next time when
+ * Save.XE.RetryFailedOnly is set. The list is kept in the solver configuration only: it is lost when the solver is reloaded or unloaded
+ * and it only survives a restart of the solver server when the solver is backed up.
+ * 
  * @author Tomas Muller
  */
 public class XEBatchSolverSaver extends StudentSectioningSaver {
@@ -129,6 +144,13 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	private boolean iAutoOverrides = false;
 	private Set<String> iAllowedOverrides = new HashSet<String>();
 	private int iNrThreads = 1;
+	private int iMaxInFlight = 20;
+	private int iRetries = 2;
+	private long iRetryDelay = 5000;
+	private int iReportInterval = 1000;
+	private boolean iRetryFailedOnly = false;
+	private TokenBucket iRateLimit = null;
+	private SaveStatistics iStatistics = new SaveStatistics();
 	private boolean iCanContinue = true;
 	private boolean iTimeConflictsIgnoreBreakTimes = false;
 	private boolean iAutoTimeOverrides = false;
@@ -180,6 +202,14 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 		iAutoLCOverrides = solver.getProperties().getPropertyBoolean("Save.XE.AutoLCOverrides", false);
 		iTimeConflictsIgnoreBreakTimes = solver.getProperties().getPropertyBoolean("Save.XE.TimeConflictsIgnoreBreakTimes", false);
 		iNrThreads = solver.getProperties().getPropertyInt("Save.XE.NrSaveThreads", 10);
+		iMaxInFlight = Math.max(iNrThreads, solver.getProperties().getPropertyInt("Save.XE.MaxInFlight", 2 * iNrThreads));
+		iRetries = solver.getProperties().getPropertyInt("Save.XE.Retries", 2);
+		iRetryDelay = solver.getProperties().getPropertyLong("Save.XE.RetryDelay", 5000l);
+		iReportInterval = solver.getProperties().getPropertyInt("Save.XE.ReportInterval", 1000);
+		iRetryFailedOnly = solver.getProperties().getPropertyBoolean("Save.XE.RetryFailedOnly", false);
+		double rate = solver.getProperties().getPropertyDouble("Save.XE.RequestsPerSecond", 0.0);
+		if (rate > 0.0)
+			iRateLimit = new TokenBucket(rate, solver.getProperties().getPropertyDouble("Save.XE.RequestsBurst", Math.max(1.0, rate)));
 		iCSV = new InMemoryReport("XE", "Last XE Enrollment Results (" + Formats.getDateFormat(Formats.Pattern.DATE_TIME_STAMP_SHORT).format(new Date()) + ")");
 		((StudentSolver)solver).setReport(iCSV);
 		
@@ -280,10 +310,20 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
         }
         incProgress();
             
+		Set<String> failedStudents = null;
+		if (iRetryFailedOnly) {
+			failedStudents = new HashSet<String>();
+			String failed = getSolver().getProperties().getProperty("Save.XE.FailedStudents");
+			if (failed != null)
+				for (String id: failed.split(","))
+					if (!id.trim().isEmpty()) failedStudents.add(id.trim());
+			iProgress.info("Saving only students that have failed during the last save: " + failedStudents.size() + " students.");
+		}
 		List<Student> students = new ArrayList<Student>(getModel().getStudents().size());
 		for (Student student: getModel().getStudents()) {
             if (student.isDummy()) continue;
             if (iStudentQuery != null && !iStudentQuery.match(new StudentMatcher(student, iSession, getAssignment()))) continue;
+            if (failedStudents != null && !failedStudents.contains(student.getExternalId())) continue;
             students.add(student);
 		}
 		setPhase("Enrolling students...", students.size());
@@ -303,31 +343,160 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 			}
 		});
 		
-		if (iNrThreads <= 1) {
-			for (Student student: students) {
-	            incProgress();
-	            saveStudent(student);
-	        }
-		} else {
-			List<Worker> workers = new ArrayList<Worker>();
-			Iterator<Student> studentsIterator = students.iterator();
-			for (int i = 0; i < iNrThreads; i++)
-				workers.add(new Worker(i, studentsIterator));
-			for (Worker worker: workers) worker.start();
-			for (Worker worker: workers) {
+		iStatistics.start(students.size());
+		List<Student> queue = students;
+		for (int attempt = 0; !queue.isEmpty(); attempt++) {
+			boolean canRetry = (attempt < iRetries);
+			if (attempt > 0) {
+				long delay = iRetryDelay * (1l << (attempt - 1));
+				iProgress.info("Retrying " + queue.size() + " students that have failed (attempt " + (1 + attempt) + " of " + (1 + iRetries) + ", waiting " + (delay / 1000) + " seconds first).");
 				try {
-					worker.join();
+					Thread.sleep(delay);
 				} catch (InterruptedException e) {
-					iCanContinue = false;
-					try { worker.join(); } catch (InterruptedException x) {}
+					throw new RuntimeException("The save was interrupted.");
 				}
+				setPhase("Retrying failed students...", queue.size());
 			}
-			if (!iCanContinue)
-				throw new RuntimeException("The save was interrupted.");
+			if (iNrThreads <= 1)
+				queue = saveSequential(queue, canRetry);
+			else
+				queue = saveParallel(queue, canRetry);
 		}
+		iProgress.info(iStatistics.toString());
+		
+		List<String> failed = iStatistics.getFailedStudents();
+		if (!failed.isEmpty()) {
+			StringBuffer ids = new StringBuffer();
+			for (String id: failed) {
+				if (ids.length() > 0) ids.append(",");
+				ids.append(id);
+			}
+			// kept in the solver configuration only: it is lost when the solver is reloaded or unloaded, and it survives a restart of the server only when the solver is backed up (e.g., passivated)
+			getSolver().getProperties().setProperty("Save.XE.FailedStudents", ids.toString());
+			iProgress.warn(failed.size() + " students have failed to save, set Save.XE.RetryFailedOnly to true to only save these students next time" +
+					" (the list is kept with the solver, it only survives a restart of the server when the solver is backed up).");
+		} else {
+			getSolver().getProperties().remove("Save.XE.FailedStudents");
+		}
+	}
+	
+	/**
+	 * Save students one by one
+	 * @return students that have failed and should be retried
+	 */
+	protected List<Student> saveSequential(List<Student> students, boolean canRetry) {
+		List<Student> retry = new ArrayList<Student>();
+		for (Student student: students) {
+			incProgress();
+			if (!saveStudent(student, canRetry)) retry.add(student);
+		}
+		return retry;
+	}
+	
+	/**
+	 * Save students using a pool of {@link #iNrThreads} threads, with at most {@link #iMaxInFlight} students being queued or saved at a time.
+	 * When the save is terminated, no more students are queued, but the students that are being saved are finished first.
+	 * @return students that have failed and should be retried
+	 */
+	protected List<Student> saveParallel(List<Student> students, final boolean canRetry) {
+		final List<Student> retry = Collections.synchronizedList(new ArrayList<Student>());
+		final Semaphore inFlight = new Semaphore(iMaxInFlight);
+		final Long sessionId = iSession.getUniqueId();
+		ExecutorService executor = Executors.newFixedThreadPool(iNrThreads, new ThreadFactory() {
+			private AtomicInteger iIndex = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "XESaver-" + iIndex.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		RuntimeException exception = null;
+		try {
+			for (final Student student: students) {
+				inFlight.acquire();
+				try {
+					incProgress();
+				} catch (RuntimeException e) {
+					inFlight.release();
+					exception = e;
+					break;
+				}
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							ApplicationProperties.setSessionId(sessionId);
+							if (!saveStudent(student, canRetry)) retry.add(student);
+						} catch (Exception e) {
+							iProgress.error("Failed to save student " + student.getExternalId() + ": " + e.getMessage(), e);
+						} finally {
+							ApplicationProperties.setSessionId(null);
+							_RootDAO.closeCurrentThreadSessions();
+							inFlight.release();
+						}
+					}
+				});
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			iCanContinue = false;
+			executor.shutdownNow();
+			exception = new RuntimeException("The save was interrupted.");
+		} finally {
+			if (!executor.isShutdown()) executor.shutdown();
+		}
+		if (exception != null) {
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {}
+			throw exception;
+		}
+		return retry;
+	}
+	
+	/**
+	 * Check whether the failure is worth retrying (connection problems, time outs, server errors, or too many requests).
+	 * A failed request is only retried when its response status is kept as the cause (see {@link #toSectioningException(ClientResource, Exception)}).
+	 */
+	public static boolean isRetriable(Throwable t) {
+		while (t != null) {
+			if (t instanceof ResourceException)
+				return isRetriable(((ResourceException)t).getStatus());
+			if (t instanceof IOException) return true;
+			if (t.getCause() == t) break;
+			t = t.getCause();
+		}
+		return false;
+	}
+	
+	/**
+	 * Check whether the response status is worth retrying (connector error, server error, or too many requests)
+	 */
+	public static boolean isRetriable(Status status) {
+		return status != null && (status.isConnectorError() || status.isServerError() || status.getCode() == 429);
 	}
 	
-	protected void saveStudent(Student student) {
+	/**
+	 * Wait for the rate limit (if set), to be called before each request
+	 */
+	protected void beforeRequest() {
+		if (iRateLimit != null) {
+			try {
+				iStatistics.throttled(iRateLimit.acquire());
+			} catch (InterruptedException e) {
+				throw new SectioningException("The save was interrupted.", e);
+			}
+		}
+	}
+	
+	/**
+	 * Save a student
+	 * @param canRetry when the save fails on a problem worth retrying (see {@link #isRetriable(Throwable)}), nothing is recorded and false is returned
+	 * @return false if the student should be retried
+	 */
+	protected boolean saveStudent(Student student, boolean canRetry) {
 		long c0 = OnlineSectioningHelper.getCpuTime();
 		OnlineSectioningLog.Action.Builder action = OnlineSectioningLog.Action.newBuilder();
 		action.setOperation("batch-enroll");
@@ -357,9 +526,16 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
     	}
     	action.addEnrollment(requested);
     	List<CSVField[]> csv = new ArrayList<CSVField[]>();
+        boolean failed = true;
         try {
         	enroll(student, getCrns(student), getLCCrns(student), action, csv);
+        	failed = false;
         } catch (Exception e) {
+        	if (canRetry && iCanContinue && isRetriable(e)) {
+        		iProgress.info("[" + student.getExternalId() + "] Enrollment failed, will retry: " + e.getMessage());
+        		iStatistics.retried();
+        		return false;
+        	}
         	if (e instanceof SectioningException) {
 				if (e.getCause() == null) {
 					iProgress.info("Enrollment failed: " + e.getMessage());
@@ -405,6 +581,9 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
         } finally {
         	action.setEndTime(System.currentTimeMillis()).setCpuTime(OnlineSectioningHelper.getCpuTime() - c0);
 		}
+        iStatistics.saved(student, failed, action.getEndTime() - action.getStartTime());
+        if (iReportInterval > 0 && iStatistics.getNrProcessed() % iReportInterval == 0)
+        	iProgress.info(iStatistics.toString());
         StringBuffer table = new StringBuffer();
         synchronized (iCSV) {
         	for (CSVField[] line: csv) {
@@ -415,6 +594,7 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
             iUpdatedStudents.add(new XStudent(student, getAssignment()));
 		}
         OnlineSectioningLogger.getInstance().record(OnlineSectioningLog.Log.newBuilder().addAction(action).build());
+        return true;
 	}
 	
 	protected Set<String> getCrns(Student student) {
@@ -874,10 +1054,14 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	}
 	
 	protected XEInterface.RegisterResponse getSchedule(Student student, ClientResource resource) throws IOException {
+		beforeRequest();
+		long t0 = System.currentTimeMillis();
 		try {
 			resource.get(MediaType.APPLICATION_JSON);
 		} catch (ResourceException e) {
 			handleError(resource, e);
+		} finally {
+			iStatistics.get(System.currentTimeMillis() - t0);
 		}
 		
 		List<XEInterface.RegisterResponse> current = new GsonRepresentation<List<XEInterface.RegisterResponse>>(resource.getResponseEntity(), XEInterface.RegisterResponse.TYPE_LIST).getObject();
@@ -915,10 +1099,14 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	        req.holdPassword = iHoldPassword;
 		if (iRegistrationDate != null && !iRegistrationDate.isEmpty())
 	        req.registrationDate = iRegistrationDate;
+		beforeRequest();
+		long t0 = System.currentTimeMillis();
 		try {
 			resource.post(new GsonRepresentation<XEInterface.RegisterRequest>(req));
 		} catch (ResourceException e) {
 			handleError(resource, e);
+		} finally {
+			iStatistics.post(System.currentTimeMillis() - t0);
 		}
 
 		XEInterface.RegisterResponse response = new GsonRepresentation<XEInterface.RegisterResponse>(resource.getResponseEntity(), XEInterface.RegisterResponse.class).getObject();
@@ -939,10 +1127,14 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	
 	protected XEInterface.RegisterResponse postChanges(ClientResource resource, XEInterface.RegisterRequest req) throws IOException {
 		if (req.isEmpty()) req.empty();
+		beforeRequest();
+		long t0 = System.currentTimeMillis();
 		try {
 	        resource.post(new GsonRepresentation<XEInterface.RegisterRequest>(req));
 		} catch (ResourceException e) {
 			handleError(resource, e);
+		} finally {
+			iStatistics.post(System.currentTimeMillis() - t0);
 		}
 
 		XEInterface.RegisterResponse response = new GsonRepresentation<XEInterface.RegisterResponse>(resource.getResponseEntity(), XEInterface.RegisterResponse.class).getObject();
@@ -964,23 +1156,29 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	}
 	
 	protected void handleError(ClientResource resource, Exception exception) {
+		throw toSectioningException(resource, exception);
+	}
+	
+	/**
+	 * Exception for a failed request, using the error message of the response when there is one.
+	 * The response status is captured before the response is parsed: when it is worth retrying (see {@link #isRetriable(Status)}),
+	 * the original exception is kept as the cause, so that a server error with a JSON error message is still retried.
+	 */
+	public static SectioningException toSectioningException(ClientResource resource, Exception exception) {
+		Status status = (exception instanceof ResourceException ? ((ResourceException)exception).getStatus() : resource.getStatus());
+		Throwable cause = (isRetriable(status) ? exception : null);
 		try {
 			XEInterface.ErrorResponse response = new GsonRepresentation<XEInterface.ErrorResponse>(resource.getResponseEntity(), XEInterface.ErrorResponse.class).getObject();
 			XEInterface.Error error = response.getError();
 			if (error != null && error.message != null) {
-				throw new SectioningException(error.message);
+				return new SectioningException(error.message, cause);
 			} else if (error != null && error.description != null) {
-				throw new SectioningException(error.description);
+				return new SectioningException(error.description, cause);
 			} else if (error != null && error.errorMessage != null) {
-				throw new SectioningException(error.errorMessage);
-			} else {
-				throw exception;
+				return new SectioningException(error.errorMessage, cause);
 			}
-		} catch (SectioningException e) {
-			throw e;
-		} catch (Throwable t) {
-			throw new SectioningException(exception.getMessage(), exception);
-		}
+		} catch (Throwable t) {}
+		return new SectioningException(exception.getMessage(), exception);
 	}
 	
 	protected String getBannerId(Student student) {
@@ -1109,39 +1307,58 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
     	iProgress.incProgress();
     }
 	
-	protected class Worker extends Thread {
-		private Iterator<Student> iStudents;
+	/**
+	 * Throughput and latency statistics of the save
+	 */
+	protected static class SaveStatistics {
+		private long iStart;
+		private int iTotal = 0, iSaved = 0, iFailed = 0, iRetried = 0;
+		private long iStudentTime = 0;
+		private int iGets = 0, iPosts = 0;
+		private long iGetTime = 0, iGetMax = 0, iPostTime = 0, iPostMax = 0, iThrottled = 0;
+		private List<String> iFailedStudents = new ArrayList<String>();
+		private DecimalFormat iDF = new DecimalFormat("0.##");
 		
-		public Worker(int index, Iterator<Student> students) {
-			setName("XESaver-" + (1 + index));
-			iStudents = students;
+		public synchronized void start(int total) {
+			iStart = System.currentTimeMillis(); iTotal = total;
 		}
 		
-		@Override
-	    public void run() {
-			try {
-				iProgress.debug(getName() + " has started.");
-				ApplicationProperties.setSessionId(iSession.getUniqueId());
-				while (true) {
-					Student student = null;
-					synchronized (iStudents) {
-						if (!iCanContinue) {
-							iProgress.debug(getName() + " has stopped.");
-							return;
-						}
-						if (!iStudents.hasNext()) break;
-						student = iStudents.next();
-						iProgress.incProgress();
-					}
-					saveStudent(student);
-				}
-				iProgress.debug(getName() + " has finished.");
-			} catch (Exception e) {
-				iProgress.error(getName() + " has failed: " + e.getMessage(), e);
-			} finally {
-				ApplicationProperties.setSessionId(null);
-				_RootDAO.closeCurrentThreadSessions();
+		public synchronized void saved(Student student, boolean failed, long time) {
+			if (failed) {
+				iFailed ++;
+				iFailedStudents.add(student.getExternalId());
+			} else {
+				iSaved ++;
 			}
+			iStudentTime += time;
+		}
+		
+		public synchronized void retried() { iRetried ++; }
+		
+		public synchronized void get(long time) {
+			iGets ++; iGetTime += time; iGetMax = Math.max(iGetMax, time);
+		}
+		
+		public synchronized void post(long time) {
+			iPosts ++; iPostTime += time; iPostMax = Math.max(iPostMax, time);
+		}
+		
+		public synchronized void throttled(long time) { iThrottled += time; }
+		
+		public synchronized int getNrProcessed() { return iSaved + iFailed; }
+		
+		public synchronized List<String> getFailedStudents() { return new ArrayList<String>(iFailedStudents); }
+		
+		@Override
+		public synchronized String toString() {
+			long time = Math.max(1, System.currentTimeMillis() - iStart);
+			int processed = iSaved + iFailed;
+			return "Processed " + processed + " of " + iTotal + " students in " + iDF.format(time / 1000.0) + " s (" + iDF.format(1000.0 * processed / time) + " students/s), " +
+					iSaved + " saved, " + iFailed + " failed, " + iRetried + " retried" +
+					(processed == 0 ? "" : ", " + iDF.format(((double)iStudentTime) / processed) + " ms per student") +
+					(iGets == 0 ? "" : ", GET avg " + iDF.format(((double)iGetTime) / iGets) + " ms, max " + iGetMax + " ms") +
+					(iPosts == 0 ? "" : ", POST avg " + iDF.format(((double)iPostTime) / iPosts) + " ms, max " + iPostMax + " ms") +
+					(iThrottled == 0 ? "" : ", throttled " + iDF.format(iThrottled / 1000.0) + " s") + ".";
 		}
 	}
 	
@@ -170,7 +170,6 @@ public class XSection implements Serializable, Comparable<XSection>, Externaliza
     	iUniqueId = section.getId();
     	iAllowOverlap = section.getSubpart().isAllowOverlap();
     	iName = section.getName();
-    	iNameByCourse = section.getNameByCourse();
     	iSubpartName = section.getSubpart().getName();
     	iLimit = section.getLimit();
     	iParentId = (section.getParent() == null ? null : section.getParent().getId());
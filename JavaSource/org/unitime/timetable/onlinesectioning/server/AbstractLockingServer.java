@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
@@ -52,14 +53,30 @@ public abstract class AbstractLockingServer extends AbstractServer {
 	protected AbstractLockingServer(AcademicSessionInfo session, boolean allowAsyncCalls) {
 		super(session, allowAsyncCalls);
 		iMultiLock = new MultiLock(getAcademicSession());
+		iMultiLock.setTimeout(1000l * ApplicationProperty.OnlineSchedulingLockTimeout.intValue());
 	}
 	
 	@Override
 	protected void load(OnlineSectioningServerContext context) {
 		iMultiLock = new MultiLock(getAcademicSession());
+		iMultiLock.setTimeout(1000l * ApplicationProperty.OnlineSchedulingLockTimeout.intValue());
 		super.load(context);
 	}
 	
+	@Override
+	public void unload() {
+		if (isMaster() && isReady() && ServerSnapshot.isEnabled(this)) {
+			try {
+				ServerSnapshot.write(this);
+			} catch (Exception e) {
+				iLog.warn("Failed to write snapshot of " + getAcademicSession() + ": " + e.getMessage(), e);
+			}
+		}
+		super.unload();
+		if (iMultiLock != null)
+			iMultiLock.unregister();
+	}
+	
 	@Override
 	public Lock readLock() {
 		if (iLock == null)
@@ -242,7 +259,7 @@ public abstract class AbstractLockingServer extends AbstractServer {
 		synchronized (iOfferingLocks) {
 			if (iOfferingLocks.containsKey(offeringId)) return;
 		}
-		Lock lock = iMultiLock.lock(offeringId);
+		Lock lock = iMultiLock.lockDetached(offeringId);
 		synchronized (iOfferingLocks) {
 			if (iOfferingLocks.containsKey(offeringId))
 				lock.release();
@@ -32,7 +32,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
@@ -63,7 +63,6 @@ import org.unitime.timetable.model.SolverPredefinedSetting;
 import org.unitime.timetable.model.StudentClassEnrollment;
 import org.unitime.timetable.model.TravelTime;
 import org.unitime.timetable.model.dao.SessionDAO;
-import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.CacheElement;
 import org.unitime.timetable.onlinesectioning.HasCacheMode;
@@ -84,7 +83,6 @@ import org.unitime.timetable.onlinesectioning.updates.PersistExpectedSpacesActio
 import org.unitime.timetable.onlinesectioning.updates.ReloadAllData;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.DateUtils;
-import org.unitime.timetable.util.Formats;
 import org.unitime.timetable.util.MemoryCounter;
 
 /**
@@ -97,8 +95,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	private DataProperties iConfig = null;
 	private OnlineSectioningActionFactory iActionFactory = null;
 	
-	protected List<AsyncExecutor> iExecutors = new ArrayList<AsyncExecutor>();
-	private Queue<Runnable> iExecutorQueue = new LinkedList<Runnable>();
+	private ActionExecutor iExecutor = null;
 	private HashSet<CacheElement<Long>> iOfferingsToPersistExpectedSpaces = new HashSet<CacheElement<Long>>();
 	private static ThreadLocal<LinkedList<OnlineSectioningHelper>> sHelper = new ThreadLocal<LinkedList<OnlineSectioningHelper>>();
 	protected Map<String, Object> iProperties = new HashMap<String, Object>();
@@ -128,8 +125,9 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			iLog = LogFactory.getLog(OnlineSectioningServer.class.getName() + ".server[" + academicSession.toCompactString() + "]");
 			iProperties.put("AcademicSession", academicSession);
 			int asncPoolSize = ApplicationProperty.OnlineSchedulingServerAsyncPoolSize.intValue();
-			for (int i = 0; i < asncPoolSize; i++)
-				new AsyncExecutor(academicSession, 1 + i).start();
+			if (asncPoolSize > 0)
+				iExecutor = new ActionExecutor(academicSession, asncPoolSize, ApplicationProperty.OnlineSchedulingServerAsyncQueueLimit.intValue(),
+						ApplicationProperty.OnlineSchedulingServerAsyncQueueTimeout.intValue(), ApplicationProperty.OnlineSchedulingServerAsyncShutdownTimeout.intValue());
 		} finally {
 			hibSession.close();
 		}
@@ -152,8 +150,9 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		iProperties.put("AcademicSession", session);
 		if (allowAsyncCalls) {
 			int asncPoolSize = ApplicationProperty.OnlineSchedulingServerAsyncPoolSize.intValue();
-			for (int i = 0; i < asncPoolSize; i++)
-				new AsyncExecutor(session, 1 + i).start();
+			if (asncPoolSize > 0)
+				iExecutor = new ActionExecutor(session, asncPoolSize, ApplicationProperty.OnlineSchedulingServerAsyncQueueLimit.intValue(),
+						ApplicationProperty.OnlineSchedulingServerAsyncQueueTimeout.intValue(), ApplicationProperty.OnlineSchedulingServerAsyncShutdownTimeout.intValue());
 		}
 	}
 	
@@ -175,7 +174,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 					.setType(OnlineSectioningLog.Entity.EntityType.OTHER).build();
 			if (context.isWaitTillStarted()) {
 				try {
-					execute(createAction(ReloadAllData.class), user);
+					execute(createAction(ReloadAllData.class).useSnapshot(true), user);
 				} catch (Throwable exception) {
 					iLog.error("Failed to load server: " + exception.getMessage(), exception);
 					throw exception;
@@ -196,7 +195,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 					return;
 				}
 				setProperty("ReloadingAllData", Boolean.TRUE);
-				execute(createAction(ReloadAllData.class), user, new ServerCallback<Boolean>() {
+				execute(createAction(ReloadAllData.class).useSnapshot(true), user, new ServerCallback<Boolean>() {
 					@Override
 					public void onSuccess(Boolean result) {
 						if (getAcademicSession().isSectioningEnabled())
@@ -456,7 +455,7 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 	
 	@Override
 	public <E> void execute(final OnlineSectioningAction<E> action, final OnlineSectioningLog.Entity user, final ServerCallback<E> callback) throws SectioningException {
-		if (iExecutors == null || iExecutors.isEmpty()) {
+		if (iExecutor == null) {
 			try {
 				callback.onSuccess(execute(action, user));
 			} catch (Throwable t) {
@@ -465,8 +464,8 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 			return;
 		}
 		final String locale = Localization.getLocale();
-		synchronized (iExecutorQueue) {
-			iExecutorQueue.offer(new Runnable() {
+		try {
+			iExecutor.execute(action.name(), getPriority(action, user), new Runnable() {
 				@Override
 				public void run() {
 					Localization.setLocale(locale);
@@ -482,60 +481,43 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 					return action.name();
 				}
 			});
-			iExecutorQueue.notify();
+		} catch (RejectedExecutionException e) {
+			// never execute in the current thread: it may be holding locks that the action needs
+			iLog.error(e.getMessage());
+			callback.onFailure(new SectioningException(e.getMessage(), e));
 		}
 	}
 	
-	public class AsyncExecutor extends Thread {
-		private boolean iStop = false;
-		private int iId;
-		
-		public AsyncExecutor(AcademicSessionInfo session, int id) {
-			iId = id;
-			setName("AsyncExecutor[" + session + "-" + id + "]");
-			setDaemon(true);
-			iExecutors.add(this);
-		}
-		
-		public void run() {
+	/**
+	 * Priority of an asynchronous action: set by the action.Priority parameter (HIGH, NORMAL, or LOW), defaults to HIGH for
+	 * actions made by a student, NORMAL for actions made by a manager, and LOW otherwise (maintenance and system actions).
+	 */
+	protected ActionExecutor.Priority getPriority(OnlineSectioningAction<?> action, OnlineSectioningLog.Entity user) {
+		String priority = getConfig().getProperty(action.name() + ".Priority");
+		if (priority != null) {
 			try {
-				ApplicationProperties.setSessionId(getAcademicSession().getUniqueId());
-				Runnable job;
-				while (!iStop) {
-					synchronized (iExecutorQueue) {
-						job = iExecutorQueue.poll();
-						if (job == null) {
-							try {
-								iLog.debug("Executor " + iId + " is waiting for a new job...");
-								iExecutorQueue.wait();
-							} catch (InterruptedException e) {}
-							continue;
-						}		
-					}
-					job.run();
-					if (_RootDAO.closeCurrentThreadSessions())
-						iLog.debug("Job " + job + " did not close current-thread hibernate session.");
-				}
-				iLog.info("Executor " + iId + " stopped.");
-			} finally {
-				ApplicationProperties.setSessionId(null);
-				Localization.removeLocale();
-				Formats.removeFormats();
-				iExecutors.remove(this);
+				return ActionExecutor.Priority.valueOf(priority.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				iLog.warn("Invalid priority " + priority + " of " + action.name() + ".");
 			}
 		}
-		
+		if (user != null && user.hasType()) {
+			switch (user.getType()) {
+			case STUDENT:
+				return ActionExecutor.Priority.HIGH;
+			case MANAGER:
+				return ActionExecutor.Priority.NORMAL;
+			default:
+				return ActionExecutor.Priority.LOW;
+			}
+		}
+		return ActionExecutor.Priority.LOW;
 	}
 	
 	@Override
 	public void unload() {
-		if (iExecutors != null) {
-			for (AsyncExecutor ex: iExecutors)
-				ex.iStop = true;
-			synchronized (iExecutorQueue) {
-				iExecutorQueue.notifyAll();
-			}
-		}
+		if (iExecutor != null)
+			iExecutor.shutdown();
 		if (iMasterThread != null)
 			iMasterThread.dispose();
 	}
@@ -734,6 +716,14 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		return new XEnrollments(offeringId, getRequests(offeringId));
 	}
 	
+	/**
+	 * Cache of per-course aggregates, maintained by the server as the offerings and students change.
+	 * Null when the server cannot keep it up to date (e.g., when the data may be changed by another node or directly in the database).
+	 */
+	public CourseAggregateCache getCourseAggregateCache() {
+		return null;
+	}
+	
 	private class MasterAcquiringThread extends Thread {
 		private java.util.concurrent.locks.Lock iLock;
 		private AtomicBoolean iMaster = new AtomicBoolean(false);
@@ -752,8 +742,12 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 		}
 		
 		private void executeLoadOnMaster() {
-			synchronized (iExecutorQueue) {
-				iExecutorQueue.offer(new Runnable() {
+			if (iExecutor == null) {
+				loadOnMaster(iContext);
+				return;
+			}
+			try {
+				iExecutor.execute("load-on-master", ActionExecutor.Priority.HIGH, new Runnable() {
 					@Override
 					public void run() {
 						loadOnMaster(iContext);
@@ -764,8 +758,11 @@ public abstract class AbstractServer implements OnlineSectioningServer {
 						return "load-on-master";
 					}
 				});
-				iExecutorQueue.notify();
-			};
+			} catch (RejectedExecutionException e) {
+				// the master thread holds no locks, load the server here
+				iLog.warn(e.getMessage());
+				loadOnMaster(iContext);
+			}
 		}
 		
 		@Override
@@ -0,0 +1,323 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.util.Formats;
+
+/**
+ * Executor of the asynchronous online sectioning actions. A fixed number of threads drains a bounded priority queue:
+ * actions of a higher {@link Priority} (e.g., student-facing ones) go ahead of the maintenance actions, actions of the same priority
+ * are executed in the order in which they were submitted. When the queue is full, the submitter waits for a free space in the queue
+ * (up to the given queue timeout) and the action is rejected when there is still none. Actions are never executed by the calling thread,
+ * as it may be holding locks the action needs (e.g., a student lock while the action locks an offering).
+ * When the executor is shut down, the queued actions are still executed (up to the given shutdown timeout).
+ * Queue depth, wait and execution times of each action are published through JMX (see {@link ActionExecutorMBean}).
+ * 
+ * @author Tomas Muller
+ */
+public class ActionExecutor implements ActionExecutorMBean {
+	private static Log sLog = LogFactory.getLog(ActionExecutor.class);
+	private AcademicSessionInfo iSession;
+	private ThreadPoolExecutor iExecutor;
+	private int iQueueLimit;
+	private long iQueueTimeout, iShutdownTimeout;
+	private Object iQueueSpace = new Object();
+	private AtomicLong iSequence = new AtomicLong(0);
+	private AtomicLong iRejected = new AtomicLong(0);
+	private static ThreadLocal<Boolean> sExecutorThread = new ThreadLocal<Boolean>();
+	private Map<String, ActionStats> iStats = new TreeMap<String, ActionStats>();
+	private ObjectName iObjectName = null;
+	
+	public static enum Priority {
+		HIGH, NORMAL, LOW,
+	}
+	
+	/**
+	 * @param session academic session
+	 * @param poolSize number of threads
+	 * @param queueLimit maximal number of queued actions (zero or negative for no limit)
+	 * @param queueTimeout how long to wait for a free space in the queue when it is full (in milliseconds), before the action is rejected
+	 * @param shutdownTimeout how long to wait for the queued actions to finish on {@link #shutdown()} (in milliseconds)
+	 */
+	public ActionExecutor(final AcademicSessionInfo session, int poolSize, int queueLimit, long queueTimeout, long shutdownTimeout) {
+		iSession = session;
+		iQueueLimit = queueLimit;
+		iQueueTimeout = queueTimeout;
+		iShutdownTimeout = shutdownTimeout;
+		iExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0l, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+			private AtomicInteger iId = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setName("AsyncExecutor[" + session + "-" + iId.incrementAndGet() + "]");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		iExecutor.prestartAllCoreThreads();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("org.unitime:type=ActionExecutor,session=" + ObjectName.quote(session.toCompactString()));
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(this, objectName);
+			iObjectName = objectName;
+		} catch (Exception e) {
+			sLog.warn("Failed to register executor statistics: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Execute the given task asynchronously. When the queue is full, wait for a free space up to the queue timeout.
+	 * @param name action name (used for statistics)
+	 * @param priority action priority
+	 * @param task task to execute
+	 * @throws RejectedExecutionException when the executor has been shut down or the queue is still full after the queue timeout
+	 */
+	public void execute(String name, Priority priority, Runnable task) throws RejectedExecutionException {
+		Job job = new Job(name, priority, task);
+		if (iExecutor.isShutdown()) {
+			iRejected.incrementAndGet();
+			throw new RejectedExecutionException("Action " + name + " was rejected: the server is being unloaded.");
+		}
+		if (!waitForQueueSpace()) {
+			iRejected.incrementAndGet();
+			throw new RejectedExecutionException("Action " + name + " was rejected: the queue of asynchronous actions is full (" + iExecutor.getQueue().size() + " actions waiting).");
+		}
+		job.iStats.queued();
+		try {
+			iExecutor.execute(job);
+		} catch (RejectedExecutionException e) {
+			job.iStats.started(0);
+			iRejected.incrementAndGet();
+			throw new RejectedExecutionException("Action " + name + " was rejected: the server is being unloaded.", e);
+		}
+	}
+	
+	/**
+	 * Wait until there is a free space in the queue, at most the queue timeout
+	 * @return false if the queue is still full
+	 */
+	protected boolean waitForQueueSpace() {
+		if (iQueueLimit <= 0 || iExecutor.getQueue().size() < iQueueLimit) return true;
+		long end = System.currentTimeMillis() + iQueueTimeout;
+		synchronized (iQueueSpace) {
+			while (iQueueLimit > 0 && iExecutor.getQueue().size() >= iQueueLimit) {
+				long wait = end - System.currentTimeMillis();
+				if (wait <= 0 || iExecutor.isShutdown()) return false;
+				try {
+					iQueueSpace.wait(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Stop accepting new actions and wait for the queued actions to finish (at most the shutdown timeout)
+	 */
+	public void shutdown() {
+		iExecutor.shutdown();
+		synchronized (iQueueSpace) {
+			iQueueSpace.notifyAll();
+		}
+		if (!Boolean.TRUE.equals(sExecutorThread.get())) {
+			try {
+				if (!iExecutor.awaitTermination(iShutdownTimeout, TimeUnit.MILLISECONDS))
+					sLog.warn("Asynchronous actions of " + iSession + " did not finish in " + iShutdownTimeout + " ms, " + iExecutor.getQueue().size() + " actions are still waiting.");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else if (!iExecutor.getQueue().isEmpty()) {
+			sLog.info("Server unloaded by an asynchronous action, " + iExecutor.getQueue().size() + " remaining actions will finish in the background.");
+		}
+		if (iObjectName != null) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				if (server.isRegistered(iObjectName))
+					server.unregisterMBean(iObjectName);
+			} catch (Exception e) {
+				sLog.warn("Failed to unregister executor statistics: " + e.getMessage());
+			}
+			iObjectName = null;
+		}
+	}
+	
+	protected ActionStats getStats(String name) {
+		synchronized (iStats) {
+			ActionStats stats = iStats.get(name);
+			if (stats == null) {
+				stats = new ActionStats(name);
+				iStats.put(name, stats);
+			}
+			return stats;
+		}
+	}
+	
+	@Override
+	public int getPoolSize() { return iExecutor.getCorePoolSize(); }
+	
+	@Override
+	public int getActiveCount() { return iExecutor.getActiveCount(); }
+	
+	@Override
+	public int getQueueSize() { return iExecutor.getQueue().size(); }
+	
+	@Override
+	public int getQueueLimit() { return iQueueLimit; }
+	
+	@Override
+	public void setQueueLimit(int limit) { iQueueLimit = limit; }
+	
+	@Override
+	public long getNrExecuted() { return iExecutor.getCompletedTaskCount(); }
+	
+	@Override
+	public long getNrRejected() { return iRejected.get(); }
+	
+	@Override
+	public String[] getActionStatistics() {
+		List<String> ret = new ArrayList<String>();
+		synchronized (iStats) {
+			for (ActionStats stats: iStats.values())
+				ret.add(stats.toString());
+		}
+		Collections.sort(ret);
+		return ret.toArray(new String[ret.size()]);
+	}
+	
+	@Override
+	public void resetStatistics() {
+		synchronized (iStats) {
+			for (ActionStats stats: iStats.values())
+				stats.reset();
+		}
+		iRejected.set(0);
+	}
+	
+	private class Job implements Runnable, Comparable<Job> {
+		private ActionStats iStats;
+		private Priority iPriority;
+		private long iId, iCreated;
+		private Runnable iTask;
+		
+		private Job(String name, Priority priority, Runnable task) {
+			iStats = getStats(name);
+			iPriority = (priority == null ? Priority.NORMAL : priority);
+			iId = iSequence.incrementAndGet();
+			iCreated = System.currentTimeMillis();
+			iTask = task;
+		}
+		
+		@Override
+		public void run() {
+			long t0 = System.currentTimeMillis();
+			iStats.started(t0 - iCreated);
+			if (iQueueLimit > 0)
+				synchronized (iQueueSpace) {
+					iQueueSpace.notifyAll();
+				}
+			try {
+				sExecutorThread.set(Boolean.TRUE);
+				ApplicationProperties.setSessionId(iSession.getUniqueId());
+				iTask.run();
+			} finally {
+				iStats.executed(System.currentTimeMillis() - t0);
+				if (_RootDAO.closeCurrentThreadSessions())
+					sLog.debug("Job " + iTask + " did not close current-thread hibernate session.");
+				ApplicationProperties.setSessionId(null);
+				Localization.removeLocale();
+				Formats.removeFormats();
+				sExecutorThread.remove();
+			}
+		}
+		
+		@Override
+		public int compareTo(Job job) {
+			int cmp = iPriority.compareTo(job.iPriority);
+			if (cmp != 0) return cmp;
+			return Long.compare(iId, job.iId);
+		}
+		
+		@Override
+		public String toString() {
+			return iTask.toString();
+		}
+	}
+	
+	protected static class ActionStats {
+		private String iName;
+		private int iQueued = 0;
+		private long iExecuted = 0, iWait = 0, iMaxWait = 0, iTime = 0, iMaxTime = 0;
+		
+		protected ActionStats(String name) { iName = name; }
+		
+		protected synchronized void queued() { iQueued ++; }
+		
+		protected synchronized void started(long wait) {
+			if (iQueued > 0) iQueued --;
+			iWait += wait;
+			if (wait > iMaxWait) iMaxWait = wait;
+		}
+		
+		protected synchronized void executed(long time) {
+			iExecuted ++;
+			iTime += time;
+			if (time > iMaxTime) iMaxTime = time;
+		}
+		
+		protected synchronized void reset() {
+			iExecuted = 0; iWait = 0; iMaxWait = 0; iTime = 0; iMaxTime = 0;
+		}
+		
+		@Override
+		public synchronized String toString() {
+			return iName + ": " + iQueued + " queued, " + iExecuted + " executed" +
+					", wait " + (iExecuted == 0 ? 0 : iWait / iExecuted) + " ms avg / " + iMaxWait + " ms max" +
+					", execution " + (iExecuted == 0 ? 0 : iTime / iExecuted) + " ms avg / " + iMaxTime + " ms max";
+		}
+	}
+}
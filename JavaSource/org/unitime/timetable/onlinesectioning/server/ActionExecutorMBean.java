@@ -0,0 +1,53 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+/**
+ * JMX interface of the {@link ActionExecutor}: queue depth, wait and execution times of the asynchronous actions.
+ * 
+ * @author Tomas Muller
+ */
+public interface ActionExecutorMBean {
+	
+	public int getPoolSize();
+	
+	public int getActiveCount();
+	
+	public int getQueueSize();
+	
+	public int getQueueLimit();
+	
+	public void setQueueLimit(int limit);
+	
+	public long getNrExecuted();
+	
+	/**
+	 * Number of actions that were rejected because the queue was full (after the queue timeout) or the server was being unloaded
+	 */
+	public long getNrRejected();
+	
+	/**
+	 * For each action: number of queued and executed actions, average and maximal wait and execution times
+	 */
+	public String[] getActionStatistics();
+	
+	public void resetStatistics();
+
+}
@@ -0,0 +1,543 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ * 
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServerContext;
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourse;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XEnrollment;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * In-memory server with a concurrent storage. Unlike {@link InMemoryServer}, updates do not take the session-wide
+ * write lock: students, offerings and expectations are kept in concurrent maps, changes of a student (or an offering)
+ * are serialized on a lock stripe selected by the student (offering) id, and each offering has its own
+ * list of course requests that is guarded by its own monitor. The session-wide lock of the {@link AbstractLockingServer}
+ * is only taken in the shared mode, so that readers and writers only wait for the {@link #lockAll()} (e.g., during a reload).
+ * Course lookups (by name, by query) are guarded by a separate read / write lock as offering changes are rare.
+ * 
+ * Use unitime.enrollment.server.class=org.unitime.timetable.onlinesectioning.server.ConcurrentServer to enable.
+ * 
+ * @author Tomas Muller
+ */
+public class ConcurrentServer extends AbstractLockingServer {
+	private static final int sNrStripes = 64;
+	private Object[] iStudentStripes, iOfferingStripes;
+
+	private ReentrantReadWriteLock iCourseLock;
+	private Map<Long, XCourseId> iCourseForId;
+	private Map<String, TreeSet<XCourseId>> iCourseForName;
+	private CourseNameIndex iCourseIndex;
+
+	private ConcurrentHashMap<Long, XStudent> iStudentTable;
+	private ConcurrentHashMap<Long, XOffering> iOfferingTable;
+	private ConcurrentHashMap<Long, List<XCourseRequest>> iOfferingRequests;
+	private ConcurrentHashMap<Long, XExpectations> iExpectations;
+	private ConcurrentHashMap<String, Set<Long>> iInstructedOfferings;
+	private CourseAggregateCache iAggregates;
+
+	public ConcurrentServer(OnlineSectioningServerContext context) throws SectioningException {
+		super(context);
+		init();
+	}
+
+	/**
+	 * The data may get loaded from the {@link AbstractServer} constructor (before the fields of this class are initialized),
+	 * so the structures are created lazily and only when missing.
+	 */
+	private synchronized void init() {
+		if (iStudentStripes == null) {
+			iStudentStripes = new Object[sNrStripes];
+			for (int i = 0; i < sNrStripes; i++) iStudentStripes[i] = new Object();
+		}
+		if (iOfferingStripes == null) {
+			iOfferingStripes = new Object[sNrStripes];
+			for (int i = 0; i < sNrStripes; i++) iOfferingStripes[i] = new Object();
+		}
+		if (iCourseLock == null) iCourseLock = new ReentrantReadWriteLock();
+		if (iCourseForId == null) iCourseForId = new ConcurrentHashMap<Long, XCourseId>();
+		if (iCourseForName == null) iCourseForName = new HashMap<String, TreeSet<XCourseId>>();
+		if (iCourseIndex == null) iCourseIndex = new CourseNameIndex();
+		if (iStudentTable == null) iStudentTable = new ConcurrentHashMap<Long, XStudent>();
+		if (iOfferingTable == null) iOfferingTable = new ConcurrentHashMap<Long, XOffering>();
+		if (iOfferingRequests == null) iOfferingRequests = new ConcurrentHashMap<Long, List<XCourseRequest>>();
+		if (iExpectations == null) iExpectations = new ConcurrentHashMap<Long, XExpectations>();
+		if (iInstructedOfferings == null) iInstructedOfferings = new ConcurrentHashMap<String, Set<Long>>();
+		if (iAggregates == null) iAggregates = new CourseAggregateCache();
+	}
+	
+	@Override
+	public CourseAggregateCache getCourseAggregateCache() {
+		return iAggregates;
+	}
+
+	protected Object studentStripe(Long studentId) {
+		return iStudentStripes[(int)Math.abs(studentId % sNrStripes)];
+	}
+
+	protected Object offeringStripe(Long offeringId) {
+		return iOfferingStripes[(int)Math.abs(offeringId % sNrStripes)];
+	}
+
+	/**
+	 * Session-wide write lock is only used by {@link #lockAll()}, the server itself is relying on the lock striping.
+	 * A shared lock is returned instead (so that writes are not executed during the {@link #lockAll()}).
+	 */
+	@Override
+	public Lock writeLock() {
+		return readLock();
+	}
+
+	private void addRequest(Long offeringId, XCourseRequest request) {
+		List<XCourseRequest> requests = iOfferingRequests.get(offeringId);
+		if (requests == null) {
+			requests = new ArrayList<XCourseRequest>();
+			List<XCourseRequest> other = iOfferingRequests.putIfAbsent(offeringId, requests);
+			if (other != null) requests = other;
+		}
+		synchronized (requests) {
+			requests.add(request);
+		}
+	}
+
+	private void removeRequest(Long offeringId, XCourseRequest request) {
+		List<XCourseRequest> requests = iOfferingRequests.get(offeringId);
+		if (requests != null)
+			synchronized (requests) {
+				requests.remove(request);
+			}
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
+		return findCourses(query, limit, matcher, new CourseComparator(query));
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher, Comparator<XCourseId> cmp) {
+		if (matcher != null) matcher.setServer(this);
+		Set<XCourseId> nameCandidates, titleCandidates = null;
+		String queryInLowerCase = query.toLowerCase();
+		Lock lock = readLock();
+		iCourseLock.readLock().lock();
+		try {
+			nameCandidates = iCourseIndex.findCourseNameCandidates(queryInLowerCase);
+			if (queryInLowerCase.length() > 2)
+				titleCandidates = iCourseIndex.findTitleCandidates(queryInLowerCase);
+		} finally {
+			iCourseLock.readLock().unlock();
+			lock.release();
+		}
+		SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, cmp);
+		for (XCourseId c : nameCandidates) {
+			if (c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
+		}
+		if (!ret.isLimitReached() && titleCandidates != null) {
+			for (XCourseId c : titleCandidates) {
+				if (c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public Collection<XCourseId> findCourses(CourseMatcher matcher) {
+		if (matcher != null) matcher.setServer(this);
+		Set<XCourseId> ret = new TreeSet<XCourseId>();
+		for (XCourseId c : iCourseForId.values()) {
+			if (matcher == null || matcher.match(c)) ret.add(c);
+		}
+		return ret;
+	}
+
+	@Override
+	public Collection<XStudent> findStudents(StudentMatcher matcher) {
+		if (matcher != null) matcher.setServer(this);
+		List<XStudent> ret = new ArrayList<XStudent>();
+		for (XStudent s: iStudentTable.values())
+			if (matcher == null || matcher.match(s)) ret.add(s);
+		return ret;
+	}
+
+	@Override
+	public XCourseId getCourse(String course) {
+		Lock lock = readLock();
+		iCourseLock.readLock().lock();
+		try {
+			for (int idx = course.indexOf('-'); idx >= 0; idx = course.indexOf('-', idx + 1)) {
+				String courseName = course.substring(0, idx).trim();
+				String title = course.substring(idx + 1).trim();
+				TreeSet<XCourseId> infos = iCourseForName.get(courseName.toLowerCase());
+				if (infos!= null && !infos.isEmpty())
+					for (XCourseId info: infos)
+						if (title.equalsIgnoreCase(info.getTitle())) return info;
+			}
+			TreeSet<XCourseId> infos = iCourseForName.get(course.toLowerCase());
+			if (infos!= null && !infos.isEmpty()) return infos.first();
+			return null;
+		} finally {
+			iCourseLock.readLock().unlock();
+			lock.release();
+		}
+	}
+
+	private XCourse toCourse(XCourseId course) {
+		if (course == null) return null;
+		if (course instanceof XCourse)
+			return (XCourse)course;
+		XOffering offering = getOffering(course.getOfferingId());
+		return offering == null ? null : offering.getCourse(course);
+	}
+
+	@Override
+	public XCourse getCourse(Long courseId) {
+		Lock lock = readLock();
+		try {
+			return toCourse(iCourseForId.get(courseId));
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public XStudent getStudent(Long studentId) {
+		Lock lock = readLock();
+		try {
+			return iStudentTable.get(studentId);
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public XOffering getOffering(Long offeringId) {
+		Lock lock = readLock();
+		try {
+			return iOfferingTable.get(offeringId);
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public Collection<XCourseRequest> getRequests(Long offeringId) {
+		Lock lock = readLock();
+		try {
+			List<XCourseRequest> requests = iOfferingRequests.get(offeringId);
+			if (requests == null) return null;
+			synchronized (requests) {
+				return new ArrayList<XCourseRequest>(requests);
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public XExpectations getExpectations(Long offeringId) {
+		Lock lock = readLock();
+		try {
+			XExpectations expectations = iExpectations.get(offeringId);
+			return expectations == null ? new XExpectations(offeringId) : expectations;
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void update(XExpectations expectations) {
+		Lock lock = writeLock();
+		try {
+			iExpectations.put(expectations.getOfferingId(), expectations);
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void remove(XStudent student) {
+		Lock lock = writeLock();
+		try {
+			synchronized (studentStripe(student.getStudentId())) {
+				XStudent oldStudent = iStudentTable.remove(student.getStudentId());
+				if (oldStudent != null) {
+					for (XRequest request: oldStudent.getRequests())
+						if (request instanceof XCourseRequest)
+							for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+								removeRequest(course.getOfferingId(), (XCourseRequest)request);
+					iAggregates.invalidate(oldStudent);
+				}
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void update(XStudent student, boolean updateRequests) {
+		Lock lock = writeLock();
+		try {
+			synchronized (studentStripe(student.getStudentId())) {
+				XStudent oldStudent = iStudentTable.put(student.getStudentId(), student);
+				if (updateRequests) {
+					if (oldStudent != null) {
+						for (XRequest request: oldStudent.getRequests())
+							if (request instanceof XCourseRequest)
+								for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+									removeRequest(course.getOfferingId(), (XCourseRequest)request);
+					}
+					for (XRequest request: student.getRequests())
+						if (request instanceof XCourseRequest) {
+							XCourseRequest cr = (XCourseRequest)request;
+							for (XCourseId course: cr.getCourseIds()) {
+								if (cr.isDuplicateOffering(course)) continue;
+								addRequest(course.getOfferingId(), cr);
+							}
+						}
+				}
+				iAggregates.invalidate(oldStudent);
+				iAggregates.invalidate(student);
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void remove(XOffering offering) {
+		Lock lock = writeLock();
+		try {
+			synchronized (offeringStripe(offering.getOfferingId())) {
+				remove(offering, true);
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	protected void remove(XOffering offering, boolean removeExpectations) {
+		iCourseLock.writeLock().lock();
+		try {
+			for (XCourse course: offering.getCourses()) {
+				iCourseForId.remove(course.getCourseId());
+				iCourseIndex.remove(course);
+				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
+				if (courses != null) {
+					courses.remove(course);
+					if (courses.size() == 1)
+						for (XCourseId x: courses) x.setHasUniqueName(true);
+					if (courses.isEmpty())
+						iCourseForName.remove(course.getCourseNameInLowerCase());
+				}
+			}
+		} finally {
+			iCourseLock.writeLock().unlock();
+		}
+		iOfferingTable.remove(offering.getOfferingId());
+		if (removeExpectations)
+			iExpectations.remove(offering.getOfferingId());
+		for (String externalId: offering.getInstructorExternalIds()) {
+			Set<Long> offeringIds = iInstructedOfferings.get(externalId);
+			if (offeringIds != null) offeringIds.remove(offering.getOfferingId());
+		}
+		iAggregates.invalidate(offering.getOfferingId());
+	}
+
+	@Override
+	public void update(XOffering offering) {
+		Lock lock = writeLock();
+		try {
+			synchronized (offeringStripe(offering.getOfferingId())) {
+				XOffering oldOffering = iOfferingTable.get(offering.getOfferingId());
+				if (oldOffering != null)
+					remove(oldOffering, false);
+
+				iCourseLock.writeLock().lock();
+				try {
+					for (XCourse course: offering.getCourses()) {
+						iCourseForId.put(course.getCourseId(), course);
+						iCourseIndex.add(course);
+						TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
+						if (courses == null) {
+							courses = new TreeSet<XCourseId>();
+							iCourseForName.put(course.getCourseNameInLowerCase(), courses);
+						}
+						courses.add(course);
+						if (courses.size() == 1)
+							for (XCourseId x: courses) x.setHasUniqueName(true);
+						else if (courses.size() > 1)
+							for (XCourseId x: courses) x.setHasUniqueName(false);
+					}
+				} finally {
+					iCourseLock.writeLock().unlock();
+				}
+				iOfferingTable.put(offering.getOfferingId(), offering);
+				for (String externalId: offering.getInstructorExternalIds()) {
+					Set<Long> offeringIds = iInstructedOfferings.get(externalId);
+					if (offeringIds == null) {
+						offeringIds = ConcurrentHashMap.newKeySet();
+						Set<Long> other = iInstructedOfferings.putIfAbsent(externalId, offeringIds);
+						if (other != null) offeringIds = other;
+					}
+					offeringIds.add(offering.getOfferingId());
+				}
+				iAggregates.invalidate(offering.getOfferingId());
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void clearAll() {
+		Lock lock = lockAll();
+		try {
+			init();
+			iStudentTable.clear();
+			iOfferingTable.clear();
+			iOfferingRequests.clear();
+			iExpectations.clear();
+			iInstructedOfferings.clear();
+			iCourseLock.writeLock().lock();
+			try {
+				iCourseForId.clear();
+				iCourseForName.clear();
+				iCourseIndex.clear();
+			} finally {
+				iCourseLock.writeLock().unlock();
+			}
+			iAggregates.clear();
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public void clearAllStudents() {
+		Lock lock = lockAll();
+		try {
+			iStudentTable.clear();
+			iOfferingRequests.clear();
+			iAggregates.clear();
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public XCourseRequest assign(XCourseRequest request, XEnrollment enrollment) {
+		Lock lock = writeLock();
+		try {
+			synchronized (studentStripe(request.getStudentId())) {
+				XStudent student = iStudentTable.get(request.getStudentId());
+				for (XRequest r: student.getRequests()) {
+					if (r.equals(request)) {
+						XCourseRequest cr = (XCourseRequest)r;
+
+						// remove old requests
+						for (XCourseId course: cr.getCourseIds())
+							removeRequest(course.getOfferingId(), cr);
+
+						// assign
+						cr.setEnrollment(enrollment);
+
+						// put new requests
+						for (XCourseId course: cr.getCourseIds()) {
+							if (cr.isDuplicateOffering(course)) continue;
+							addRequest(course.getOfferingId(), cr);
+						}
+						iAggregates.invalidate(student);
+
+						return cr;
+					}
+				}
+				return null;
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public XCourseRequest waitlist(XCourseRequest request, boolean waitlist) {
+		Lock lock = writeLock();
+		try {
+			synchronized (studentStripe(request.getStudentId())) {
+				XStudent student = iStudentTable.get(request.getStudentId());
+				for (XRequest r: student.getRequests()) {
+					if (r.equals(request)) {
+						XCourseRequest cr = (XCourseRequest)r;
+
+						// remove old requests
+						for (XCourseId course: cr.getCourseIds())
+							removeRequest(course.getOfferingId(), cr);
+
+						// assign
+						cr.setWaitlist(waitlist);
+						cr.setWaitListedTimeStamp(request.getWaitListedTimeStamp());
+						cr.setWaitListSwapWithCourseOffering(request.getWaitListSwapWithCourseOffering());
+
+						// put new requests
+						for (XCourseId course: cr.getCourseIds()) {
+							if (cr.isDuplicateOffering(course)) continue;
+							addRequest(course.getOfferingId(), cr);
+						}
+						iAggregates.invalidate(student);
+
+						return cr;
+					}
+				}
+				return null;
+			}
+		} finally {
+			lock.release();
+		}
+	}
+
+	@Override
+	public Collection<Long> getInstructedOfferings(String instructorExternalId) {
+		return iInstructedOfferings.get(instructorExternalId);
+	}
+
+	@Override
+	public Set<Long> getRequestedCourseIds(Long studentId) {
+		XStudent student = iStudentTable.get(studentId);
+		return (student == null ? null : student.getRequestedCourseIds());
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
+import org.unitime.timetable.onlinesectioning.model.XRequest;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+
+/**
+ * Cache of per-course aggregates (e.g., enrollment counts on the student scheduling dashboard) that are computed from
+ * the course requests of an offering. The cache is maintained by the in-memory servers: each offering has a version that is
+ * bumped whenever the offering or any of its course requests change (see {@link CourseAggregateCache#invalidate(Long)} and
+ * {@link CourseAggregateCache#invalidate(XStudent)}), and a cached aggregate is only returned while the version of its
+ * offering has not changed since the aggregate computation started.
+ * A key can be used to distinguish aggregates that depend on some additional (e.g., session wide) configuration.
+ * 
+ * @author Tomas Muller
+ */
+public class CourseAggregateCache {
+	private static AtomicLong sVersion = new AtomicLong(0);
+	private volatile long iEpoch = sVersion.incrementAndGet();
+	private Map<Long, Long> iOfferingVersions = new ConcurrentHashMap<Long, Long>();
+	private Map<Long, Entry> iAggregates = new ConcurrentHashMap<Long, Entry>();
+	
+	public CourseAggregateCache() {}
+	
+	/**
+	 * Current version of the given offering, to be retrieved before the aggregate is computed and passed to {@link CourseAggregateCache#put(Long, Long, String, long, Object)}
+	 */
+	public long getVersion(Long offeringId) {
+		Long version = iOfferingVersions.get(offeringId);
+		return (version == null ? iEpoch : version.longValue());
+	}
+	
+	/**
+	 * Cached aggregate of the given course, null if not cached or no longer valid
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Long offeringId, Long courseId, String key) {
+		Entry entry = iAggregates.get(courseId);
+		if (entry == null || entry.getVersion() != getVersion(offeringId) || !entry.getKey().equals(key)) return null;
+		return (T)entry.getAggregate();
+	}
+	
+	/**
+	 * Store aggregate of the given course, computed with the given offering version
+	 */
+	public void put(Long offeringId, Long courseId, String key, long version, Object aggregate) {
+		if (version == getVersion(offeringId))
+			iAggregates.put(courseId, new Entry(version, key, aggregate));
+	}
+	
+	/**
+	 * Offering or its course requests have changed, to be called after the change is made
+	 */
+	public void invalidate(Long offeringId) {
+		iOfferingVersions.put(offeringId, sVersion.incrementAndGet());
+	}
+	
+	/**
+	 * Student has changed, all offerings of the student's course requests are invalidated
+	 * (the aggregates may depend on the other requests of the student, e.g., whether an unassigned request can be assigned)
+	 */
+	public void invalidate(XStudent student) {
+		if (student == null) return;
+		for (XRequest request: student.getRequests())
+			if (request instanceof XCourseRequest)
+				for (XCourseId course: ((XCourseRequest)request).getCourseIds())
+					invalidate(course.getOfferingId());
+	}
+	
+	/**
+	 * Invalidate all aggregates
+	 */
+	public void clear() {
+		iEpoch = sVersion.incrementAndGet();
+		iOfferingVersions.clear();
+		iAggregates.clear();
+	}
+	
+	public int size() {
+		return iAggregates.size();
+	}
+	
+	private static class Entry {
+		private long iVersion;
+		private String iKey;
+		private Object iAggregate;
+		
+		Entry(long version, String key, Object aggregate) {
+			iVersion = version; iKey = key; iAggregate = aggregate;
+		}
+		
+		long getVersion() { return iVersion; }
+		String getKey() { return iKey; }
+		Object getAggregate() { return iAggregate; }
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ * 
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * 
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+
+/**
+ * Prefix index over course names and titles, used by {@link InMemoryServer#findCourses(String, Integer, org.unitime.timetable.onlinesectioning.match.CourseMatcher, java.util.Comparator)}
+ * to avoid scanning all the courses on each query. Each course is indexed under all the (lower case) strings
+ * that {@link XCourseId#matchCourseName(String)} and {@link XCourseId#matchTitle(String)} test with a starts-with
+ * comparison, so that the returned candidates are a (small) superset of the matching courses.
+ * The index is not thread safe, it is expected to be guarded by the server's read / write lock.
+ * 
+ * @author Tomas Muller
+ */
+public class CourseNameIndex {
+	private TreeMap<String, Set<XCourseId>> iNames = new TreeMap<String, Set<XCourseId>>();
+	private TreeMap<String, Set<XCourseId>> iTitles = new TreeMap<String, Set<XCourseId>>();
+
+	public CourseNameIndex() {}
+
+	protected Set<String> getNameKeys(XCourseId course) {
+		Set<String> keys = new HashSet<String>();
+		String name = course.getCourseName();
+		keys.add(name.toLowerCase());
+		keys.add(course.getCourseNumber().toLowerCase());
+		if (name.indexOf('-') >= 0)
+			keys.add(name.substring(name.lastIndexOf('-') + 1).trim().toLowerCase());
+		if (course.getTitle() != null) {
+			keys.add((name + " " + course.getTitle()).toLowerCase());
+			keys.add((name + " - " + course.getTitle()).toLowerCase());
+		}
+		return keys;
+	}
+
+	protected Set<String> getTitleKeys(XCourseId course) {
+		Set<String> keys = new HashSet<String>();
+		if (course.getTitle() == null) return keys;
+		String title = course.getTitle().toLowerCase();
+		keys.add(title);
+		for (int idx = title.indexOf(' '); idx >= 0; idx = title.indexOf(' ', idx + 1))
+			keys.add(title.substring(idx + 1));
+		return keys;
+	}
+
+	private static void add(TreeMap<String, Set<XCourseId>> index, String key, XCourseId course) {
+		Set<XCourseId> courses = index.get(key);
+		if (courses == null) {
+			courses = new HashSet<XCourseId>();
+			index.put(key, courses);
+		}
+		courses.add(course);
+	}
+
+	private static void remove(TreeMap<String, Set<XCourseId>> index, String key, XCourseId course) {
+		Set<XCourseId> courses = index.get(key);
+		if (courses != null) {
+			courses.remove(course);
+			if (courses.isEmpty()) index.remove(key);
+		}
+	}
+
+	private static void collect(TreeMap<String, Set<XCourseId>> index, String prefix, Collection<XCourseId> ret) {
+		for (Map.Entry<String, Set<XCourseId>> e: index.tailMap(prefix, true).entrySet()) {
+			if (!e.getKey().startsWith(prefix)) break;
+			ret.addAll(e.getValue());
+		}
+	}
+
+	/**
+	 * Index the given course
+	 */
+	public void add(XCourseId course) {
+		for (String key: getNameKeys(course))
+			add(iNames, key, course);
+		for (String key: getTitleKeys(course))
+			add(iTitles, key, course);
+	}
+
+	/**
+	 * Remove the given course from the index, the course must not have been changed since it was added
+	 */
+	public void remove(XCourseId course) {
+		for (String key: getNameKeys(course))
+			remove(iNames, key, course);
+		for (String key: getTitleKeys(course))
+			remove(iTitles, key, course);
+	}
+
+	/**
+	 * Courses that may match the given query by {@link XCourseId#matchCourseName(String)}
+	 */
+	public Set<XCourseId> findCourseNameCandidates(String queryInLowerCase) {
+		Set<XCourseId> ret = new HashSet<XCourseId>();
+		collect(iNames, queryInLowerCase, ret);
+		return ret;
+	}
+
+	/**
+	 * Courses that may match the given query by {@link XCourseId#matchTitle(String)}
+	 */
+	public Set<XCourseId> findTitleCandidates(String queryInLowerCase) {
+		Set<XCourseId> ret = new HashSet<XCourseId>();
+		collect(iTitles, queryInLowerCase, ret);
+		return ret;
+	}
+
+	public void clear() {
+		iNames.clear();
+		iTitles.clear();
+	}
+}
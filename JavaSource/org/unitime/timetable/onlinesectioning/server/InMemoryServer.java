@@ -47,17 +47,30 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
 public class InMemoryServer extends AbstractLockingServer {
 	private Hashtable<Long, XCourseId> iCourseForId = new Hashtable<Long, XCourseId>();
 	private Hashtable<String, TreeSet<XCourseId>> iCourseForName = new Hashtable<String, TreeSet<XCourseId>>();
+	private CourseNameIndex iCourseIndex = new CourseNameIndex();
 	
 	private Hashtable<Long, XStudent> iStudentTable = new Hashtable<Long, XStudent>();
 	private Hashtable<Long, XOffering> iOfferingTable = new Hashtable<Long, XOffering>();
 	private Hashtable<Long, List<XCourseRequest>> iOfferingRequests = new Hashtable<Long, List<XCourseRequest>>();
 	private Hashtable<Long, XExpectations> iExpectations = new Hashtable<Long, XExpectations>();
 	private Hashtable<String, Set<Long>> iInstructedOfferings = new Hashtable<String, Set<Long>>();
+	private volatile CourseAggregateCache iAggregates;
 	
 	public InMemoryServer(OnlineSectioningServerContext context) throws SectioningException {
 		super(context);
 	}
 	
+	@Override
+	public CourseAggregateCache getCourseAggregateCache() {
+		// created lazily, the data may get loaded from the constructor of the parent class
+		if (iAggregates == null) {
+			synchronized (this) {
+				if (iAggregates == null) iAggregates = new CourseAggregateCache();
+			}
+		}
+		return iAggregates;
+	}
+	
 	@Override
 	public Collection<XCourseId> findCourses(String query, Integer limit, CourseMatcher matcher) {
 		return findCourses(query, limit, matcher, new CourseComparator(query));
@@ -70,11 +83,11 @@ public class InMemoryServer extends AbstractLockingServer {
 		try {
 			SubSet<XCourseId> ret = new SubSet<XCourseId>(limit, cmp);
 			String queryInLowerCase = query.toLowerCase();
-			for (XCourseId c : iCourseForId.values()) {
+			for (XCourseId c : iCourseIndex.findCourseNameCandidates(queryInLowerCase)) {
 				if (c.matchCourseName(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
 			}
 			if (!ret.isLimitReached() && queryInLowerCase.length() > 2) {
-				for (XCourseId c : iCourseForId.values()) {
+				for (XCourseId c : iCourseIndex.findTitleCandidates(queryInLowerCase)) {
 					if (c.matchTitle(queryInLowerCase) && (matcher == null || matcher.match(c))) ret.add(c);
 				}
 			}
@@ -215,6 +228,7 @@ public class InMemoryServer extends AbstractLockingServer {
 							List<XCourseRequest> requests = iOfferingRequests.get(course.getOfferingId());
 							if (requests != null) requests.remove(request);
 						}
+				getCourseAggregateCache().invalidate(oldStudent);
 			}
 		} finally {
 			lock.release();
@@ -249,6 +263,8 @@ public class InMemoryServer extends AbstractLockingServer {
 						}
 					}
 			}
+			getCourseAggregateCache().invalidate(oldStudent);
+			getCourseAggregateCache().invalidate(student);
 		} finally {
 			lock.release();
 		}
@@ -264,6 +280,7 @@ public class InMemoryServer extends AbstractLockingServer {
 		try {
 			for (XCourse course: offering.getCourses()) {
 				iCourseForId.remove(course.getCourseId());
+				iCourseIndex.remove(course);
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses != null) {
 					courses.remove(course);
@@ -280,6 +297,7 @@ public class InMemoryServer extends AbstractLockingServer {
 				Set<Long> offeringIds = iInstructedOfferings.get(externalId);
 				if (offeringIds != null) offeringIds.remove(offering.getOfferingId());
 			}
+			getCourseAggregateCache().invalidate(offering.getOfferingId());
 		} finally {
 			lock.release();
 		}
@@ -296,6 +314,7 @@ public class InMemoryServer extends AbstractLockingServer {
 			iOfferingTable.put(offering.getOfferingId(), offering);
 			for (XCourse course: offering.getCourses()) {
 				iCourseForId.put(course.getCourseId(), course);
+				iCourseIndex.add(course);
 				TreeSet<XCourseId> courses = iCourseForName.get(course.getCourseNameInLowerCase());
 				if (courses == null) {
 					courses = new TreeSet<XCourseId>();
@@ -315,6 +334,7 @@ public class InMemoryServer extends AbstractLockingServer {
 				}
 				offeringIds.add(offering.getOfferingId());
 			}
+			getCourseAggregateCache().invalidate(offering.getOfferingId());
 		} finally {
 			lock.release();
 		}
@@ -348,10 +368,15 @@ public class InMemoryServer extends AbstractLockingServer {
 				iCourseForName = new Hashtable<String, TreeSet<XCourseId>>();
 			else
 				iCourseForName.clear();
+			if (iCourseIndex == null)
+				iCourseIndex = new CourseNameIndex();
+			else
+				iCourseIndex.clear();
 			if (iInstructedOfferings == null)
 				iInstructedOfferings = new Hashtable<String, Set<Long>>();
 			else
 				iInstructedOfferings.clear();
+			getCourseAggregateCache().clear();
 		} finally {
 			lock.release();
 		}
@@ -363,6 +388,7 @@ public class InMemoryServer extends AbstractLockingServer {
 		try {
 			iStudentTable.clear();
 			iOfferingRequests.clear();
+			getCourseAggregateCache().clear();
 		} finally {
 			lock.release();
 		}
@@ -396,6 +422,7 @@ public class InMemoryServer extends AbstractLockingServer {
 						}
 						requests.add(cr);
 					}
+					getCourseAggregateCache().invalidate(student);
 					
 					return cr;
 				}
@@ -436,6 +463,7 @@ public class InMemoryServer extends AbstractLockingServer {
 						}
 						requests.add(cr);
 					}
+					getCourseAggregateCache().invalidate(student);
 					
 					return cr;
 				}
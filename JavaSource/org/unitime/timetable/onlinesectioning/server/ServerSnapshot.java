@@ -0,0 +1,511 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.server;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.dao.StudentDAO;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
+import org.unitime.timetable.onlinesectioning.match.CourseMatcher;
+import org.unitime.timetable.onlinesectioning.match.StudentMatcher;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.model.XStudentId;
+
+/**
+ * Binary snapshot of the online sectioning server model (offerings, expectations and students).<br>
+ * The snapshot file starts with a header ({@link Info}), followed by the externalized offerings and students
+ * (sorted by their unique ids) and ends with a CRC32 checksum of the serialized model. The snapshot is written without
+ * locking the whole server, each object is only locked while it is being serialized. When the snapshot is restored,
+ * the file is memory mapped, the checksum is verified before the server is touched, and the restored
+ * model is serialized once more to make sure that it is equivalent to the model that has been saved.<br>
+ * The snapshot also contains a fingerprint of the database data of each student (see {@link #getStudentFingerprints(org.hibernate.Session, Long)}),
+ * taken before the model is written. When the snapshot is restored, the students whose fingerprint has changed since are reloaded from the database.
+ * Unlike the online sectioning log, which is optional and written asynchronously, this data is always there, so changes made by any
+ * server (including the changes that were not logged before a crash) are picked up.<br>
+ * Snapshots are only supported by the servers that keep their data in memory ({@link AbstractLockingServer}).
+ * 
+ * @author Tomas Muller
+ */
+public class ServerSnapshot {
+	private static Log sLog = LogFactory.getLog(ServerSnapshot.class);
+	private static final int sMagic = 0x55545853; // UTXS
+	private static final int sVersion = 3;
+	private static final long sMapChunkSize = 64l * 1024l * 1024l;
+	
+	/**
+	 * Snapshots are enabled when the snapshot interval is positive and the server keeps its data in memory
+	 */
+	public static boolean isEnabled(OnlineSectioningServer server) {
+		return server instanceof AbstractLockingServer && ApplicationProperty.OnlineSchedulingSnapshotInterval.intValue() > 0;
+	}
+	
+	public static File getSnapshotFile(AcademicSessionInfo session) {
+		return new File(ApplicationProperties.getDataFolder(), "sectioning-" + session.getUniqueId() + ".snapshot");
+	}
+	
+	/**
+	 * Write a snapshot of the given server into the snapshot file. The server is not locked as a whole: each offering
+	 * (together with its expectations) is written while holding {@link OnlineSectioningServer#lockOffering(Long, java.util.Collection, String)}
+	 * and each student while holding {@link OnlineSectioningServer#lockStudent(Long, java.util.Collection, String)}, so that other
+	 * actions are only blocked for the time it takes to serialize a single object. The time stamp of the last processed
+	 * student sectioning queue item and the student fingerprints are taken before the first object is written, changes that happen while
+	 * the snapshot is being written are replayed from the queue (or the changed students are reloaded) when the snapshot is restored.
+	 * The file is first written into a temporary file, which replaces the snapshot file when done.
+	 */
+	public static Info write(OnlineSectioningServer server) throws IOException {
+		Map<Long, Long> fingerprints = null;
+		org.hibernate.Session hibSession = StudentDAO.getInstance().createNewSession();
+		try {
+			fingerprints = getStudentFingerprints(hibSession, server.getAcademicSession().getUniqueId());
+		} finally {
+			hibSession.close();
+		}
+		return write(server, fingerprints);
+	}
+	
+	/**
+	 * Write a snapshot of the given server with the given student fingerprints, see {@link #write(OnlineSectioningServer)}.
+	 */
+	public static Info write(OnlineSectioningServer server, Map<Long, Long> fingerprints) throws IOException {
+		File file = getSnapshotFile(server.getAcademicSession());
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		long t0 = System.currentTimeMillis();
+		Info info = null;
+		List<Long> offeringIds = null, studentIds = null;
+		Date queueTimeStamp = null;
+		Lock lock = server.readLock();
+		try {
+			queueTimeStamp = server.getProperty("Updater.LastTimeStamp", null);
+			offeringIds = getOfferingIds(server);
+			studentIds = getStudentIds(server);
+		} finally {
+			lock.release();
+		}
+		FileOutputStream fos = new FileOutputStream(temp);
+		try {
+			info = new Info(server.getAcademicSession().getUniqueId(), t0, queueTimeStamp == null ? null : queueTimeStamp.getTime(), 0, 0);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 65536));
+			info.write(out);
+			CRC32 crc = new CRC32();
+			int[] counts = writeModel(server, offeringIds, studentIds, fingerprints, new CheckedOutputStream(new UnclosableOutputStream(out), crc), true);
+			info.iFingerprints = fingerprints;
+			info.iNrOfferings = counts[0];
+			info.iNrStudents = counts[1];
+			info.iChecksum = crc.getValue();
+			out.writeLong(info.getChecksum());
+			out.flush();
+			// the number of offerings and students is only known at the end -> rewrite the header
+			ByteArrayOutputStream header = new ByteArrayOutputStream(Info.sSize);
+			info.write(new DataOutputStream(header));
+			ByteBuffer buffer = ByteBuffer.wrap(header.toByteArray());
+			while (buffer.hasRemaining())
+				fos.getChannel().write(buffer, buffer.position());
+			fos.close();
+		} catch (IOException e) {
+			try { fos.close(); } catch (IOException x) {}
+			temp.delete();
+			throw e;
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		sLog.info("Snapshot of " + server.getAcademicSession() + " written in " + (System.currentTimeMillis() - t0) + " ms: " + info + ", " + (file.length() / 1024) + " kB");
+		return info;
+	}
+	
+	/**
+	 * Read the header of the snapshot file of the given academic session
+	 * @return snapshot info, null if there is no snapshot
+	 */
+	public static Info getInfo(AcademicSessionInfo session) throws IOException {
+		File file = getSnapshotFile(session);
+		if (!file.exists()) return null;
+		DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()));
+		try {
+			return Info.read(in);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Restore the server from its snapshot file. The caller is expected to hold {@link OnlineSectioningServer#lockAll()}.
+	 * The server is not changed if the snapshot cannot be read or its checksum does not match. When the restored
+	 * model is not equivalent to the saved one, an exception is thrown and the server is left cleared.
+	 * @return snapshot info, null if there is no snapshot
+	 */
+	public static Info restore(OnlineSectioningServer server) throws IOException, ClassNotFoundException {
+		File file = getSnapshotFile(server.getAcademicSession());
+		if (!file.exists()) return null;
+		long t0 = System.currentTimeMillis();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < Info.sSize + 8)
+				throw new IOException("Snapshot file " + file + " is too short.");
+			DataInputStream header = new DataInputStream(new MappedInputStream(channel, 0, Info.sSize));
+			Info info = Info.read(header);
+			if (!server.getAcademicSession().getUniqueId().equals(info.getSessionId()))
+				throw new IOException("Snapshot file " + file + " belongs to a different academic session.");
+			ByteBuffer trailer = ByteBuffer.allocate(8);
+			while (trailer.hasRemaining())
+				if (channel.read(trailer, size - 8 + trailer.position()) < 0) throw new IOException("Unexpected end of snapshot file " + file + ".");
+			trailer.flip();
+			info.iChecksum = trailer.getLong();
+			
+			// verify the checksum before the server is changed
+			CRC32 crc = new CRC32();
+			for (long position = Info.sSize; position < size - 8; position += sMapChunkSize) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(sMapChunkSize, size - 8 - position));
+				crc.update(buffer);
+			}
+			if (crc.getValue() != info.getChecksum())
+				throw new IOException("Snapshot file " + file + " is corrupted (checksum does not match).");
+			
+			server.clearAll();
+			ObjectInputStream in = new ObjectInputStream(new MappedInputStream(channel, Info.sSize, size - 8));
+			int nrOfferings = 0;
+			while (in.readBoolean()) {
+				XOffering offering = new XOffering(in);
+				XExpectations expectations = new XExpectations(in);
+				server.update(offering);
+				server.update(expectations);
+				nrOfferings ++;
+			}
+			int nrStudents = 0;
+			while (in.readBoolean()) {
+				server.update(new XStudent(in), true);
+				nrStudents ++;
+			}
+			int nrFingerprints = in.readInt();
+			Map<Long, Long> fingerprints = new HashMap<Long, Long>();
+			for (int i = 0; i < nrFingerprints; i++) {
+				Long studentId = in.readLong();
+				fingerprints.put(studentId, in.readLong());
+			}
+			info.iFingerprints = fingerprints;
+			in.close();
+			if (nrOfferings != info.getNrOfferings() || nrStudents != info.getNrStudents())
+				throw new IOException("Snapshot file " + file + " does not match its header.");
+			
+			// round trip: the restored model must serialize into the very same bytes
+			CRC32 check = new CRC32();
+			writeModel(server, getOfferingIds(server), getStudentIds(server), fingerprints, new CheckedOutputStream(new NullOutputStream(), check), false);
+			if (check.getValue() != info.getChecksum())
+				throw new IOException("Model restored from " + file + " is not equivalent to the saved one.");
+			
+			sLog.info("Snapshot of " + server.getAcademicSession() + " restored in " + (System.currentTimeMillis() - t0) + " ms: " + info);
+			return info;
+		} finally {
+			channel.close();
+		}
+	}
+	
+	protected static List<Long> getOfferingIds(OnlineSectioningServer server) {
+		TreeSet<Long> offeringIds = new TreeSet<Long>();
+		for (XCourseId course: server.findCourses((CourseMatcher)null))
+			offeringIds.add(course.getOfferingId());
+		return new ArrayList<Long>(offeringIds);
+	}
+	
+	protected static List<Long> getStudentIds(OnlineSectioningServer server) {
+		TreeSet<Long> studentIds = new TreeSet<Long>();
+		for (XStudentId student: server.findStudents((StudentMatcher)null))
+			studentIds.add(student.getStudentId());
+		return new ArrayList<Long>(studentIds);
+	}
+	
+	/**
+	 * Fingerprint (CRC32) of the database data of each student of the given academic session: the status, credit and overrides of the student,
+	 * the course demands, course requests and their preferences, the advisor recommendations, and the class enrollments.
+	 * These are the data that are changed by the online sectioning actions, the other changes (e.g., data exchange) are made through
+	 * the student sectioning queue. A removal changes the fingerprint as well, a removed student is no longer included.
+	 */
+	public static Map<Long, Long> getStudentFingerprints(org.hibernate.Session hibSession, Long sessionId) {
+		Map<Long, CRC32> checksums = new HashMap<Long, CRC32>();
+		update(checksums, 'S', hibSession.createQuery(
+				"select s.uniqueId, st.uniqueId, s.maxCredit, s.minCredit, s.overrideMaxCredit, s.overrideStatus, s.overrideIntent, s.overrideTimeStamp " +
+				"from Student s left join s.sectioningStatus st where s.session.uniqueId = :sessionId order by s.uniqueId")
+				.setLong("sessionId", sessionId).list(), true);
+		update(checksums, 'D', hibSession.createQuery(
+				"select d.student.uniqueId, d.uniqueId, d.priority, d.alternative, d.waitlist, d.noSub, d.critical, d.criticalOverride, d.timestamp, d.waitlistedTimeStamp, sw.uniqueId, ft.uniqueId " +
+				"from CourseDemand d left join d.waitListSwapWithCourseOffering sw left join d.freeTime ft where d.student.session.uniqueId = :sessionId order by d.uniqueId")
+				.setLong("sessionId", sessionId).list(), false);
+		update(checksums, 'R', hibSession.createQuery(
+				"select r.courseDemand.student.uniqueId, r.uniqueId, r.courseOffering.uniqueId, r.order, r.allowOverlap, r.credit, r.overrideStatus, r.overrideIntent, r.overrideTimeStamp " +
+				"from CourseRequest r where r.courseDemand.student.session.uniqueId = :sessionId order by r.uniqueId")
+				.setLong("sessionId", sessionId).list(), false);
+		update(checksums, 'P', hibSession.createQuery(
+				"select p.courseRequest.courseDemand.student.uniqueId, p.uniqueId, p.label, p.required " +
+				"from StudentSectioningPref p where p.courseRequest.courseDemand.student.session.uniqueId = :sessionId order by p.uniqueId")
+				.setLong("sessionId", sessionId).list(), false);
+		update(checksums, 'A', hibSession.createQuery(
+				"select a.student.uniqueId, a.uniqueId, a.timestamp " +
+				"from AdvisorCourseRequest a where a.student.session.uniqueId = :sessionId order by a.uniqueId")
+				.setLong("sessionId", sessionId).list(), false);
+		update(checksums, 'E', hibSession.createQuery(
+				"select e.student.uniqueId, e.uniqueId, e.clazz.uniqueId, e.courseOffering.uniqueId, cr.uniqueId, e.timestamp, e.approvedDate " +
+				"from StudentClassEnrollment e left join e.courseRequest cr where e.student.session.uniqueId = :sessionId order by e.uniqueId")
+				.setLong("sessionId", sessionId).list(), false);
+		Map<Long, Long> fingerprints = new HashMap<Long, Long>();
+		for (Map.Entry<Long, CRC32> e: checksums.entrySet())
+			fingerprints.put(e.getKey(), e.getValue().getValue());
+		return fingerprints;
+	}
+	
+	/**
+	 * Add the given rows (student id followed by the values) into the checksums of the students
+	 * @param add create a checksum for a student that does not have one yet (students that are not returned by the first query are ignored)
+	 */
+	private static void update(Map<Long, CRC32> checksums, char table, List<Object[]> rows, boolean add) {
+		StringBuffer text = new StringBuffer();
+		for (Object[] row: rows) {
+			Long studentId = (Long)row[0];
+			CRC32 crc = checksums.get(studentId);
+			if (crc == null) {
+				if (!add) continue;
+				crc = new CRC32();
+				checksums.put(studentId, crc);
+			}
+			text.setLength(0);
+			text.append(table);
+			for (int i = 1; i < row.length; i++) {
+				Object value = row[i];
+				text.append('|').append(value == null ? "" : value instanceof Date ? String.valueOf(((Date)value).getTime()) : value.toString());
+			}
+			byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+			crc.update(bytes, 0, bytes.length);
+		}
+	}
+	
+	/**
+	 * Serialize the given offerings (with their expectations) and students, each object is preceded by a true flag, each
+	 * of the two lists is terminated by a false flag. Objects that are no longer present in the server are skipped.
+	 * The student fingerprints are written at the end.
+	 * @param lock lock each offering and each student while it is being written (not needed when the caller holds {@link OnlineSectioningServer#lockAll()})
+	 * @return number of offerings and students written
+	 */
+	protected static int[] writeModel(OnlineSectioningServer server, List<Long> offeringIds, List<Long> studentIds, Map<Long, Long> fingerprints, OutputStream stream, boolean lock) throws IOException {
+		ObjectOutputStream out = new ObjectOutputStream(stream);
+		int nrOfferings = 0, nrStudents = 0;
+		for (Long offeringId: offeringIds) {
+			Lock l = (lock ? server.lockOffering(offeringId, null, "ServerSnapshot") : null);
+			try {
+				XOffering offering = server.getOffering(offeringId);
+				XExpectations expectations = server.getExpectations(offeringId);
+				if (offering == null || expectations == null) continue;
+				out.writeBoolean(true);
+				offering.writeExternal(out);
+				expectations.writeExternal(out);
+				nrOfferings ++;
+			} finally {
+				if (l != null) l.release();
+			}
+			out.reset();
+		}
+		out.writeBoolean(false);
+		for (Long studentId: studentIds) {
+			Lock l = (lock ? server.lockStudent(studentId, null, "ServerSnapshot") : null);
+			try {
+				XStudent student = server.getStudent(studentId);
+				if (student == null) continue;
+				out.writeBoolean(true);
+				student.writeExternal(out);
+				nrStudents ++;
+			} finally {
+				if (l != null) l.release();
+			}
+			out.reset();
+		}
+		out.writeBoolean(false);
+		out.writeInt(fingerprints == null ? 0 : fingerprints.size());
+		if (fingerprints != null)
+			for (Long studentId: new TreeSet<Long>(fingerprints.keySet())) {
+				out.writeLong(studentId);
+				out.writeLong(fingerprints.get(studentId));
+			}
+		out.close();
+		return new int[] { nrOfferings, nrStudents };
+	}
+	
+	/**
+	 * Snapshot header
+	 */
+	public static class Info {
+		protected static final int sSize = 4 + 4 + 8 + 8 + 8 + 4 + 4;
+		private Long iSessionId;
+		private long iCreated;
+		private Long iQueueTimeStamp;
+		private int iNrOfferings, iNrStudents;
+		private long iChecksum;
+		private Map<Long, Long> iFingerprints;
+		
+		protected Info(Long sessionId, long created, Long queueTimeStamp, int nrOfferings, int nrStudents) {
+			iSessionId = sessionId;
+			iCreated = created;
+			iQueueTimeStamp = queueTimeStamp;
+			iNrOfferings = nrOfferings;
+			iNrStudents = nrStudents;
+		}
+		
+		/** Academic session unique id */
+		public Long getSessionId() { return iSessionId; }
+		/** Time when the snapshot was taken */
+		public Date getCreated() { return new Date(iCreated); }
+		/** Time stamp of the last student sectioning queue item that was processed before the snapshot was taken (null if none) */
+		public Date getQueueTimeStamp() { return iQueueTimeStamp == null ? null : new Date(iQueueTimeStamp); }
+		public int getNrOfferings() { return iNrOfferings; }
+		public int getNrStudents() { return iNrStudents; }
+		public long getChecksum() { return iChecksum; }
+		/** Fingerprints of the students taken before the snapshot was written (see {@link ServerSnapshot#getStudentFingerprints(org.hibernate.Session, Long)}), null when only the header has been read */
+		public Map<Long, Long> getFingerprints() { return iFingerprints; }
+		
+		protected void write(DataOutputStream out) throws IOException {
+			out.writeInt(sMagic);
+			out.writeInt(sVersion);
+			out.writeLong(iSessionId);
+			out.writeLong(iCreated);
+			out.writeLong(iQueueTimeStamp == null ? -1l : iQueueTimeStamp.longValue());
+			out.writeInt(iNrOfferings);
+			out.writeInt(iNrStudents);
+		}
+		
+		protected static Info read(DataInputStream in) throws IOException {
+			if (in.readInt() != sMagic)
+				throw new IOException("Not a sectioning server snapshot.");
+			int version = in.readInt();
+			if (version != sVersion)
+				throw new IOException("Unsupported snapshot version " + version + " (expected " + sVersion + ").");
+			Long sessionId = in.readLong();
+			long created = in.readLong();
+			long queueTimeStamp = in.readLong();
+			int nrOfferings = in.readInt();
+			int nrStudents = in.readInt();
+			return new Info(sessionId, created, queueTimeStamp < 0 ? null : Long.valueOf(queueTimeStamp), nrOfferings, nrStudents);
+		}
+		
+		@Override
+		public String toString() {
+			return iNrOfferings + " offerings, " + iNrStudents + " students, created " + getCreated() + ", checksum " + Long.toHexString(iChecksum);
+		}
+	}
+	
+	/**
+	 * Input stream reading a region of a file channel using memory mapped buffers
+	 */
+	private static class MappedInputStream extends InputStream {
+		private FileChannel iChannel;
+		private long iPosition, iEnd;
+		private MappedByteBuffer iBuffer = null;
+		
+		private MappedInputStream(FileChannel channel, long start, long end) {
+			iChannel = channel;
+			iPosition = start;
+			iEnd = end;
+		}
+		
+		private boolean next() throws IOException {
+			if (iBuffer != null && iBuffer.hasRemaining()) return true;
+			if (iPosition >= iEnd) return false;
+			long length = Math.min(sMapChunkSize, iEnd - iPosition);
+			iBuffer = iChannel.map(FileChannel.MapMode.READ_ONLY, iPosition, length);
+			iPosition += length;
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!next()) return -1;
+			return iBuffer.get() & 0xff;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			if (!next()) return -1;
+			int n = Math.min(len, iBuffer.remaining());
+			iBuffer.get(b, off, n);
+			return n;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			return (iBuffer == null ? 0 : iBuffer.remaining());
+		}
+	}
+	
+	private static class UnclosableOutputStream extends OutputStream {
+		private OutputStream iStream;
+		
+		private UnclosableOutputStream(OutputStream stream) { iStream = stream; }
+
+		@Override
+		public void write(int b) throws IOException { iStream.write(b); }
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException { iStream.write(b, off, len); }
+		
+		@Override
+		public void flush() throws IOException { iStream.flush(); }
+		
+		@Override
+		public void close() throws IOException { iStream.flush(); }
+	}
+	
+	private static class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) throws IOException {}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {}
+	}
+}
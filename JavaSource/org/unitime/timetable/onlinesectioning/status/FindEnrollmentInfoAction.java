@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,6 +56,7 @@ import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.StudentSectioningStatusDAO;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningBatch;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.match.AbstractCourseMatcher;
@@ -73,6 +75,8 @@ import org.unitime.timetable.onlinesectioning.model.XSection;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XStudentId;
 import org.unitime.timetable.onlinesectioning.model.XSubpart;
+import org.unitime.timetable.onlinesectioning.server.AbstractServer;
+import org.unitime.timetable.onlinesectioning.server.CourseAggregateCache;
 import org.unitime.timetable.onlinesectioning.solver.SectioningRequest;
 import org.unitime.timetable.onlinesectioning.status.StatusPageSuggestionsAction.CourseInfoMatcher;
 import org.unitime.timetable.onlinesectioning.status.StatusPageSuggestionsAction.CourseLookup;
@@ -222,13 +226,20 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 			
 			Collection<? extends XCourseId> courses = server.findCourses(new FindEnrollmentInfoCourseMatcher(iCoursesIcoordinate, iCoursesIcanApprove, iSubjectAreas, iQuery, lookup, server));
 			Map<Long, Integer> snapshots = getOfferingSnapshots(courses, helper);
+			CourseAggregateCache aggregates = (studentIds == null && server instanceof AbstractServer ? ((AbstractServer)server).getCourseAggregateCache() : null);
+			String aggregatesKey = new TreeSet<String>(wlStates) + "|" + new TreeSet<String>(noSubStates) + "|" + session.getDefaultSectioningStatus();
 			for (XCourseId info: courses) {
-				XOffering offering = server.getOffering(info.getOfferingId());
+				OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+				OnlineSectioningBatch.Result<XOffering> offeringResult = batch.getOffering(info.getOfferingId());
+				OnlineSectioningBatch.Result<XEnrollments> enrollmentsResult = batch.getEnrollments(info.getOfferingId());
+				XOffering offering = offeringResult.get();
 				if (offering == null) continue;
 				XCourse course = offering.getCourse(info.getCourseId());
 				if (course == null) continue;
-				XEnrollments enrollments = server.getEnrollments(info.getOfferingId());
+				XEnrollments enrollments = enrollmentsResult.get();
 				boolean isConsentToDoCourse = isConsentToDoCourse(course);
+				Query courseQuery = CourseRequestMatcher.specialize(query(), course, isConsentToDoCourse, lookup, server);
+				if (courseQuery.isFalse() && !iShowUnmatchedCourses) continue;
 				EnrollmentInfo e = new EnrollmentInfo();
 				e.setCourseId(info.getCourseId());
 				e.setOfferingId(offering.getOfferingId());
@@ -245,106 +256,130 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 				
 				Set<Long> addedStudents = new HashSet<Long>();
 				boolean checkOverrides = !query().hasAttribute("override");
-				for (XCourseRequest request: enrollments.getRequests()) {
-					if (!request.hasCourse(info.getCourseId())) continue;
-					if (students.add(request.getStudentId()))
-						addedStudents.add(request.getStudentId());
-					if (request.getEnrollment() != null && !request.getEnrollment().getCourseId().equals(info.getCourseId())) continue;
-					if (checkOverrides && request.getEnrollment() == null) {
-						XOverride override = request.getOverride(info);
-						if (override != null && !override.isApproved() && !override.isNotNeeded()) continue;
+				if (aggregates != null && checkOverrides && courseQuery.isTrue()) {
+					// no student filter and nothing but the course is being filtered on -> all requests of the course match, use the cached counts
+					long version = aggregates.getVersion(offering.getOfferingId());
+					CourseCounts counts = aggregates.get(offering.getOfferingId(), course.getCourseId(), aggregatesKey);
+					if (counts == null) {
+						counts = new CourseCounts(server, session, course, enrollments, wlStates, noSubStates);
+						aggregates.put(offering.getOfferingId(), course.getCourseId(), aggregatesKey, version, counts);
 					}
+					for (Long studentId: counts.getStudentIds())
+						if (students.add(studentId)) addedStudents.add(studentId);
+					matchingStudents.addAll(counts.getMatchingStudentIds());
+					match = counts.getMatch();
+					enrl = tEnrl = counts.getEnrollment();
+					res = tRes = counts.getReservation();
+					conNeed = tConNeed = counts.getConsentNeeded();
+					swap = tSwap = counts.getSwap();
+					unasg = tUnasg = counts.getUnassigned();
+					unasgPrim = tUnasgPrim = counts.getUnassignedPrimary();
+					wait = tWait = counts.getWaitlist();
+					noSub = tNoSub = counts.getNoSub();
+					ovrNeed = tOvrNeed = counts.getOverrideNeeded();
+				} else {
+					Map<Long, XStudent> courseStudents = getStudents(server, enrollments, info.getCourseId());
+					for (XCourseRequest request: enrollments.getRequests()) {
+						if (!request.hasCourse(info.getCourseId())) continue;
+						if (students.add(request.getStudentId()))
+							addedStudents.add(request.getStudentId());
+						if (request.getEnrollment() != null && !request.getEnrollment().getCourseId().equals(info.getCourseId())) continue;
+						if (checkOverrides && request.getEnrollment() == null) {
+							XOverride override = request.getOverride(info);
+							if (override != null && !override.isApproved() && !override.isNotNeeded()) continue;
+						}
 					
-					XStudent student = server.getStudent(request.getStudentId());
-					if (student == null) continue;
+						XStudent student = courseStudents.get(request.getStudentId());
+						if (student == null) continue;
 
-					String status = (student.getStatus() == null ? session.getDefaultSectioningStatus() : student.getStatus());
-					WaitListMode wl = WaitListMode.None;
-					if (defaultWL != null)
-						wl = defaultWL;
-					else if (status == null || wlStates.contains(status))
-						wl = WaitListMode.WaitList;
-					else if (noSubStates.contains(status))
-						wl = WaitListMode.NoSubs;
+						String status = (student.getStatus() == null ? session.getDefaultSectioningStatus() : student.getStatus());
+						WaitListMode wl = WaitListMode.None;
+						if (defaultWL != null)
+							wl = defaultWL;
+						else if (status == null || wlStates.contains(status))
+							wl = WaitListMode.WaitList;
+						else if (noSubStates.contains(status))
+							wl = WaitListMode.NoSubs;
 					
-					if (studentIds != null && !studentIds.contains(request.getStudentId())) {
-						if (request.getEnrollment() != null) {
-							tEnrl ++;
-							if (request.getEnrollment().getReservation() != null) tRes ++;
-							if (course.getConsentLabel() != null && request.getEnrollment().getApproval() == null) tConNeed ++;
-							if (request.isWaitlist(wl) && request.getEnrollment().equals(request.getWaitListSwapWithCourseOffering())) tSwap ++;
-						} else {
-							if (student != null && student.canAssign(request, wl)) {
-								tUnasg ++;
-								if (!request.isAlternative() && request.isPrimary(info)) {
-									tUnasgPrim ++;
-									if (request.isWaitlist(wl))
-										tWait ++;
-									if (request.isNoSub(wl))
-										tNoSub ++;
+						if (studentIds != null && !studentIds.contains(request.getStudentId())) {
+							if (request.getEnrollment() != null) {
+								tEnrl ++;
+								if (request.getEnrollment().getReservation() != null) tRes ++;
+								if (course.getConsentLabel() != null && request.getEnrollment().getApproval() == null) tConNeed ++;
+								if (request.isWaitlist(wl) && request.getEnrollment().equals(request.getWaitListSwapWithCourseOffering())) tSwap ++;
+							} else {
+								if (student != null && student.canAssign(request, wl)) {
+									tUnasg ++;
+									if (!request.isAlternative() && request.isPrimary(info)) {
+										tUnasgPrim ++;
+										if (request.isWaitlist(wl))
+											tWait ++;
+										if (request.isNoSub(wl))
+											tNoSub ++;
+									}
 								}
 							}
+							continue;
+						}
+					
+						CourseRequestMatcher m = new CourseRequestMatcher(session, course, student, offering, request, isConsentToDoCourse, isMyStudent(student), lookup, server, wl);
+						if (courseQuery.match(m)) {
+							matchingStudents.add(request.getStudentId());
+							match++;
+							if (m.enrollment() != null) {
+								enrl ++;
+								if (m.enrollment().getReservation() != null) res ++;
+								if (course.getConsentLabel() != null && m.enrollment().getApproval() == null) conNeed ++;
+								if (m.request().isWaitlist(wl) && m.request().getEnrollment().equals(m.request().getWaitListSwapWithCourseOffering())) swap ++;
+							} else if (m.student().canAssign(m.request(), wl)) {
+								unasg ++;
+								if (!m.request().isAlternative() && m.request().isPrimary(info)) {
+									unasgPrim ++;
+									if (m.request().isWaitlist(wl))
+										wait ++;
+									if (m.request().isNoSub(wl))
+										noSub ++;
+								}
+							}
+							if (m.request().isOverridePending(course)) ovrNeed ++;
+						} else if (solver) {
+							if (request.getEnrollment() != null) {
+								tEnrl ++;
+								if (request.getEnrollment().getReservation() != null) tRes ++;
+								if (course.getConsentLabel() != null && request.getEnrollment().getApproval() == null) tConNeed ++;
+								if (request.isWaitlist(wl) && request.getEnrollment().equals(request.getWaitListSwapWithCourseOffering())) tSwap ++;
+							} else {
+								if (student != null && student.canAssign(request, wl)) {
+									tUnasg ++;
+									if (!request.isAlternative() && request.isPrimary(info)) {
+										tUnasgPrim ++;
+										if (request.isWaitlist(wl))
+											tWait ++;
+										if (request.isNoSub(wl))
+											tNoSub ++;
+									}
+								}
+							}
+							continue;
 						}
-						continue;
-					}
 					
-					CourseRequestMatcher m = new CourseRequestMatcher(session, course, student, offering, request, isConsentToDoCourse, isMyStudent(student), lookup, server, wl);
-					if (query().match(m)) {
-						matchingStudents.add(request.getStudentId());
-						match++;
 						if (m.enrollment() != null) {
-							enrl ++;
-							if (m.enrollment().getReservation() != null) res ++;
-							if (course.getConsentLabel() != null && m.enrollment().getApproval() == null) conNeed ++;
-							if (m.request().isWaitlist(wl) && m.request().getEnrollment().equals(m.request().getWaitListSwapWithCourseOffering())) swap ++;
+							tEnrl ++;
+							if (m.enrollment().getReservation() != null) tRes ++;
+							if (course.getConsentLabel() != null && m.enrollment().getApproval() == null) tConNeed ++;
+							if (m.request().isWaitlist(wl) && m.request().getEnrollment().equals(m.request().getWaitListSwapWithCourseOffering())) tSwap ++;
 						} else if (m.student().canAssign(m.request(), wl)) {
-							unasg ++;
+							tUnasg ++;
 							if (!m.request().isAlternative() && m.request().isPrimary(info)) {
-								unasgPrim ++;
+								tUnasgPrim ++;
 								if (m.request().isWaitlist(wl))
-									wait ++;
+									tWait ++;
 								if (m.request().isNoSub(wl))
-									noSub ++;
-							}
-						}
-						if (m.request().isOverridePending(course)) ovrNeed ++;
-					} else if (solver) {
-						if (request.getEnrollment() != null) {
-							tEnrl ++;
-							if (request.getEnrollment().getReservation() != null) tRes ++;
-							if (course.getConsentLabel() != null && request.getEnrollment().getApproval() == null) tConNeed ++;
-							if (request.isWaitlist(wl) && request.getEnrollment().equals(request.getWaitListSwapWithCourseOffering())) tSwap ++;
-						} else {
-							if (student != null && student.canAssign(request, wl)) {
-								tUnasg ++;
-								if (!request.isAlternative() && request.isPrimary(info)) {
-									tUnasgPrim ++;
-									if (request.isWaitlist(wl))
-										tWait ++;
-									if (request.isNoSub(wl))
-										tNoSub ++;
-								}
+									tNoSub ++;
 							}
 						}
-						continue;
-					}
-					
-					if (m.enrollment() != null) {
-						tEnrl ++;
-						if (m.enrollment().getReservation() != null) tRes ++;
-						if (course.getConsentLabel() != null && m.enrollment().getApproval() == null) tConNeed ++;
-						if (m.request().isWaitlist(wl) && m.request().getEnrollment().equals(m.request().getWaitListSwapWithCourseOffering())) tSwap ++;
-					} else if (m.student().canAssign(m.request(), wl)) {
-						tUnasg ++;
-						if (!m.request().isAlternative() && m.request().isPrimary(info)) {
-							tUnasgPrim ++;
-							if (m.request().isWaitlist(wl))
-								tWait ++;
-							if (m.request().isNoSub(wl))
-								tNoSub ++;
-						}
+						if (m.request().isOverridePending(course)) tOvrNeed ++;
 					}
-					if (m.request().isOverridePending(course)) tOvrNeed ++;
 				}
 				
 				if (match == 0 && !iShowUnmatchedCourses) {
@@ -476,13 +511,21 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 			Map<Long, Integer> snapshots = getClassSnapshots(courseId(), helper);
 			XCourse info = server.getCourse(courseId());
 			if (info == null) return ret;
-			final XOffering offering = server.getOffering(info.getOfferingId());
+			OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+			OnlineSectioningBatch.Result<XOffering> offeringResult = batch.getOffering(info.getOfferingId());
+			OnlineSectioningBatch.Result<XEnrollments> enrollmentsResult = batch.getEnrollments(info.getOfferingId());
+			OnlineSectioningBatch.Result<XExpectations> expectationsResult = batch.getExpectations(info.getOfferingId());
+			final XOffering offering = offeringResult.get();
 			if (offering == null) return ret;
 			XCourse course = offering.getCourse(info.getCourseId());
 			if (course == null) return ret;
-			XEnrollments enrollments = server.getEnrollments(info.getOfferingId());
+			XEnrollments enrollments = enrollmentsResult.get();
 			OverExpectedCriterion overExp = server.getOverExpectedCriterion();
-			XExpectations expectations = server.getExpectations(info.getOfferingId());
+			XExpectations expectations = expectationsResult.get();
+			Set<Long> offeringStudentIds = new HashSet<Long>();
+			for (XCourseRequest request: enrollments.getRequests())
+				offeringStudentIds.add(request.getStudentId());
+			Map<Long, XStudent> offeringStudents = OnlineSectioningBatch.getStudents(server, offeringStudentIds);
 			boolean isConsentToDoCourse = isConsentToDoCourse(info);
 			List<XSection> sections = new ArrayList<XSection>();
 			for (XConfig config: offering.getConfigs())
@@ -563,7 +606,7 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 			Map<Long, Set<Long>> section2students = new HashMap<Long, Set<Long>>();
 			for (XCourseRequest request: enrollments.getRequests()) {
 				if (request.getEnrollment() != null || !request.hasCourse(courseId())) continue;
-				XStudent student = server.getStudent(request.getStudentId());
+				XStudent student = offeringStudents.get(request.getStudentId());
 				
 				String status = (student.getStatus() == null ? session.getDefaultSectioningStatus() : student.getStatus());
 				WaitListMode wl = WaitListMode.None;
@@ -629,7 +672,7 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 							if (override != null && !override.isApproved() && !override.isNotNeeded()) continue;
 						}
 						
-						XStudent student = server.getStudent(request.getStudentId());
+						XStudent student = offeringStudents.get(request.getStudentId());
 						if (student == null) continue;
 
 						String status = (student.getStatus() == null ? session.getDefaultSectioningStatus() : student.getStatus());
@@ -822,7 +865,7 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 					XEnrollment enrollment = request.getEnrollment();
 					if (enrollment == null || !enrollment.getSectionIds().contains(section.getSectionId())) continue;
 					if (!request.getEnrollment().getCourseId().equals(courseId())) {other++; continue; }
-					XStudent student = server.getStudent(request.getStudentId());
+					XStudent student = offeringStudents.get(request.getStudentId());
 					if (student == null) continue;
 					
 					String status = (student.getStatus() == null ? session.getDefaultSectioningStatus() : student.getStatus());
@@ -854,7 +897,7 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 					for (XCourseRequest request: enrollments.getRequests()) {
 						if (!students.contains(request.getStudentId())) continue;
 						if (request.getEnrollment() != null || !request.hasCourse(courseId())) continue;
-						XStudent student = server.getStudent(request.getStudentId());
+						XStudent student = offeringStudents.get(request.getStudentId());
 						
 						String status = (student.getStatus() == null ? session.getDefaultSectioningStatus() : student.getStatus());
 						WaitListMode wl = WaitListMode.None;
@@ -976,6 +1019,80 @@ public class FindEnrollmentInfoAction implements OnlineSectioningAction<List<Enr
 	public String name() {
 		return "find-enrollment-info";
 	}
+	
+	/**
+	 * Students of the course requests of the given course, using a single remote call when the server is remote (see {@link OnlineSectioningBatch})
+	 */
+	protected static Map<Long, XStudent> getStudents(OnlineSectioningServer server, XEnrollments enrollments, Long courseId) {
+		Set<Long> studentIds = new HashSet<Long>();
+		for (XCourseRequest request: enrollments.getRequests())
+			if (request.hasCourse(courseId)) studentIds.add(request.getStudentId());
+		return OnlineSectioningBatch.getStudents(server, studentIds);
+	}
+	
+	/**
+	 * Enrollment, wait-list, reservation, consent and override counts of all the course requests of a course
+	 * (as computed by the dashboard when there is no filter on students or course requests), cached in {@link CourseAggregateCache}.
+	 */
+	public static class CourseCounts {
+		private int iMatch = 0, iEnrl = 0, iWait = 0, iRes = 0, iUnasg = 0, iUnasgPrim = 0, iNoSub = 0, iSwap = 0, iConNeed = 0, iOvrNeed = 0;
+		private Set<Long> iStudentIds = new HashSet<Long>(), iMatchingStudentIds = new HashSet<Long>();
+		
+		public CourseCounts(OnlineSectioningServer server, AcademicSessionInfo session, XCourse course, XEnrollments enrollments, Set<String> wlStates, Set<String> noSubStates) {
+			Map<Long, XStudent> students = getStudents(server, enrollments, course.getCourseId());
+			for (XCourseRequest request: enrollments.getRequests()) {
+				if (!request.hasCourse(course.getCourseId())) continue;
+				iStudentIds.add(request.getStudentId());
+				if (request.getEnrollment() != null && !request.getEnrollment().getCourseId().equals(course.getCourseId())) continue;
+				if (request.getEnrollment() == null) {
+					XOverride override = request.getOverride(course);
+					if (override != null && !override.isApproved() && !override.isNotNeeded()) continue;
+				}
+				
+				XStudent student = students.get(request.getStudentId());
+				if (student == null) continue;
+				
+				String status = (student.getStatus() == null ? session.getDefaultSectioningStatus() : student.getStatus());
+				WaitListMode wl = WaitListMode.None;
+				if (status == null || wlStates.contains(status))
+					wl = WaitListMode.WaitList;
+				else if (noSubStates.contains(status))
+					wl = WaitListMode.NoSubs;
+				
+				iMatchingStudentIds.add(request.getStudentId());
+				iMatch ++;
+				if (request.getEnrollment() != null) {
+					iEnrl ++;
+					if (request.getEnrollment().getReservation() != null) iRes ++;
+					if (course.getConsentLabel() != null && request.getEnrollment().getApproval() == null) iConNeed ++;
+					if (request.isWaitlist(wl) && request.getEnrollment().equals(request.getWaitListSwapWithCourseOffering())) iSwap ++;
+				} else if (student.canAssign(request, wl)) {
+					iUnasg ++;
+					if (!request.isAlternative() && request.isPrimary(course)) {
+						iUnasgPrim ++;
+						if (request.isWaitlist(wl))
+							iWait ++;
+						if (request.isNoSub(wl))
+							iNoSub ++;
+					}
+				}
+				if (request.isOverridePending(course)) iOvrNeed ++;
+			}
+		}
+		
+		public int getMatch() { return iMatch; }
+		public int getEnrollment() { return iEnrl; }
+		public int getWaitlist() { return iWait; }
+		public int getReservation() { return iRes; }
+		public int getUnassigned() { return iUnasg; }
+		public int getUnassignedPrimary() { return iUnasgPrim; }
+		public int getNoSub() { return iNoSub; }
+		public int getSwap() { return iSwap; }
+		public int getConsentNeeded() { return iConNeed; }
+		public int getOverrideNeeded() { return iOvrNeed; }
+		public Set<Long> getStudentIds() { return iStudentIds; }
+		public Set<Long> getMatchingStudentIds() { return iMatchingStudentIds; }
+	}
 
 	public static class FindEnrollmentInfoCourseMatcher extends AbstractCourseMatcher {
 		protected static final long serialVersionUID = 1L;
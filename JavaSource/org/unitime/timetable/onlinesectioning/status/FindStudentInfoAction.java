@@ -54,6 +54,7 @@ import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.StudentSectioningStatusDAO;
 import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningBatch;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.match.AbstractStudentMatcher;
@@ -200,18 +201,32 @@ public class FindStudentInfoAction implements OnlineSectioningAction<List<Studen
 		boolean useAdvisorWaitLists = server.getConfig().getPropertyBoolean("Load.UseAdvisorWaitLists", false);
 		boolean useAdvisorNoSubs = server.getConfig().getPropertyBoolean("Load.UseAdvisorNoSubs", false);
 		for (XCourseId info: findCourses(server, helper, lookup)) {
-			XOffering offering = server.getOffering(info.getOfferingId());
+			OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+			OnlineSectioningBatch.Result<XOffering> offeringResult = batch.getOffering(info.getOfferingId());
+			OnlineSectioningBatch.Result<XEnrollments> enrollmentsResult = batch.getEnrollments(info.getOfferingId());
+			XOffering offering = offeringResult.get();
 			if (offering == null) continue;
 			XCourse course = offering.getCourse(info.getCourseId());
-			XEnrollments enrollments = server.getEnrollments(info.getOfferingId());
+			XEnrollments enrollments = enrollmentsResult.get();
 			if (enrollments == null) continue;
 			boolean isConsentToDoCourse = isConsentToDoCourse(course);
+			Query courseQuery = CourseRequestMatcher.specialize(query(), course, isConsentToDoCourse, lookup, server);
+			if (courseQuery.isFalse()) continue;
 			
+			Set<Long> courseStudentIds = new HashSet<Long>();
 			for (XCourseRequest request: enrollments.getRequests()) {
 				if (!request.hasCourse(info.getCourseId())) continue;
 				if (request.getEnrollment() != null && !request.getEnrollment().getCourseId().equals(info.getCourseId())) continue;
 				if (studentIds != null && !studentIds.contains(request.getStudentId())) continue;
-				XStudent student = server.getStudent(request.getStudentId());
+				courseStudentIds.add(request.getStudentId());
+			}
+			Map<Long, XStudent> courseStudents = OnlineSectioningBatch.getStudents(server, courseStudentIds);
+			
+			for (XCourseRequest request: enrollments.getRequests()) {
+				if (!request.hasCourse(info.getCourseId())) continue;
+				if (request.getEnrollment() != null && !request.getEnrollment().getCourseId().equals(info.getCourseId())) continue;
+				if (studentIds != null && !studentIds.contains(request.getStudentId())) continue;
+				XStudent student = courseStudents.get(request.getStudentId());
 				if (student == null) continue;
 				
 				String status = (student.getStatus() == null ? session.getDefaultSectioningStatus() : student.getStatus());
@@ -225,7 +240,7 @@ public class FindStudentInfoAction implements OnlineSectioningAction<List<Studen
 
 				if (acrs != null) student.setAdvisorRequests(acrs.get(student.getStudentId()), helper, server.getAcademicSession().getFreeTimePattern());
 				CourseRequestMatcher m = new CourseRequestMatcher(session, course, student, offering, request, isConsentToDoCourse, isMyStudent(student), lookup, server, wl);
-				if (query().match(m)) {
+				if (courseQuery.match(m)) {
 					StudentInfo s = students.get(request.getStudentId());
 					if (s == null) {
 						s = new StudentInfo();
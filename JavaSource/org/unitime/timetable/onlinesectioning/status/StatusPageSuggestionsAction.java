@@ -40,6 +40,7 @@ import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.StudentSectioningConstants;
 import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
 import org.unitime.timetable.gwt.server.DayCode;
+import org.unitime.timetable.gwt.server.Query;
 import org.unitime.timetable.gwt.server.Query.AmbigousTermMatcher;
 import org.unitime.timetable.gwt.server.Query.TermMatcher;
 import org.unitime.timetable.gwt.shared.PersonInterface;
@@ -711,6 +712,17 @@ public class StatusPageSuggestionsAction implements OnlineSectioningAction<List<
 		}
 		public CourseRequestMatcher setEnrollment(XEnrollment e) { iTestEnrollment = e; return this; }
 		
+		/**
+		 * Evaluate the course related attributes (the ones that this matcher passes to {@link CourseInfoMatcher}) of the query
+		 * once for the given course. When the resulting query is false, no request for the course can match.
+		 */
+		public static Query specialize(Query query, XCourse course, boolean isConsentToDoCourse, CourseLookup lookup, OnlineSectioningServer server) {
+			return query.specialize(new CourseInfoMatcher(course, isConsentToDoCourse, lookup, server), sCourseAttributes);
+		}
+		
+		private static final String[] sCourseAttributes = new String[] {
+				null, "name", "title", "subject", "number", "course", "lookup", "department", "registered", "limit" };
+		
 		@Override
 		public Boolean match(String attr, String term) {
 			if (attr == null || "name".equals(attr) || "title".equals(attr) || "subject".equals(attr) || "number".equals(attr) || "course".equals(attr) || "lookup".equals(attr) || "department".equals(attr) || "registered".equals(attr))
@@ -0,0 +1,182 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.test;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.server.CourseNameIndex;
+
+/**
+ * Benchmark of the course lookup (as done by {@link org.unitime.timetable.onlinesectioning.server.InMemoryServer#findCourses(String, Integer, org.unitime.timetable.onlinesectioning.match.CourseMatcher, java.util.Comparator)})
+ * comparing the {@link CourseNameIndex} with the full scan of all the courses on a generated session.
+ * Each query is also checked to return the same courses with both approaches.<br>
+ * Usage: FindCoursesBenchmark [number of courses, defaults to 10000] [number of queries, defaults to 10000]
+ * 
+ * @author Tomas Muller
+ */
+public class FindCoursesBenchmark {
+	private static DecimalFormat sDF = new DecimalFormat("0.000");
+	private static String[] sWords = new String[] {
+		"introduction", "to", "advanced", "topics", "in", "computer", "science", "programming", "data", "structures",
+		"algorithms", "calculus", "linear", "algebra", "physics", "chemistry", "organic", "biology", "history", "of",
+		"american", "european", "literature", "writing", "composition", "statistics", "probability", "economics", "micro", "macro",
+		"engineering", "design", "laboratory", "seminar", "research", "methods", "theory", "applied", "general", "special"
+	};
+	
+	private List<XCourseId> iCourses = new ArrayList<XCourseId>();
+	private CourseNameIndex iIndex = new CourseNameIndex();
+	private Random iRandom = new Random(42);
+	
+	public FindCoursesBenchmark(int nrCourses) {
+		int nrSubjects = Math.max(1, nrCourses / 50);
+		List<String> subjects = new ArrayList<String>();
+		Set<String> used = new HashSet<String>();
+		while (subjects.size() < nrSubjects) {
+			String subject = "";
+			for (int i = 0; i < 2 + iRandom.nextInt(3); i++)
+				subject += (char)('A' + iRandom.nextInt(26));
+			if (used.add(subject)) subjects.add(subject);
+		}
+		for (int i = 0; i < nrCourses; i++) {
+			String subject = subjects.get(iRandom.nextInt(subjects.size()));
+			String number = String.valueOf(10000 + iRandom.nextInt(50000)) + (iRandom.nextInt(10) == 0 ? "-LEC" : "");
+			String title = null;
+			if (iRandom.nextInt(20) > 0) {
+				title = "";
+				for (int j = 0; j < 2 + iRandom.nextInt(4); j++)
+					title += (j == 0 ? "" : " ") + capitalize(sWords[iRandom.nextInt(sWords.length)]);
+			}
+			XCourseId course = new GeneratedCourse(Long.valueOf(i), Long.valueOf(i), subject, number, title);
+			iCourses.add(course);
+			iIndex.add(course);
+		}
+	}
+	
+	private static String capitalize(String word) {
+		return word.substring(0, 1).toUpperCase() + word.substring(1);
+	}
+	
+	/**
+	 * Typical course finder queries: course name prefixes (as typed), course numbers, and title words
+	 */
+	public List<String> generateQueries(int nrQueries) {
+		List<String> queries = new ArrayList<String>();
+		while (queries.size() < nrQueries) {
+			XCourseId course = iCourses.get(iRandom.nextInt(iCourses.size()));
+			String query;
+			switch (iRandom.nextInt(4)) {
+			case 0:
+				query = course.getCourseName(); break;
+			case 1:
+				query = course.getCourseNumber(); break;
+			case 2:
+				query = sWords[iRandom.nextInt(sWords.length)]; break;
+			default:
+				query = course.getCourseName() + (course.getTitle() == null ? "" : " - " + course.getTitle());
+			}
+			queries.add(query.substring(0, 1 + iRandom.nextInt(query.length())).toLowerCase());
+		}
+		return queries;
+	}
+	
+	/**
+	 * The original implementation: two passes over all the courses
+	 */
+	public Collection<XCourseId> scan(String queryInLowerCase) {
+		Set<XCourseId> ret = new HashSet<XCourseId>();
+		for (XCourseId c: iCourses)
+			if (c.matchCourseName(queryInLowerCase)) ret.add(c);
+		if (queryInLowerCase.length() > 2)
+			for (XCourseId c: iCourses)
+				if (c.matchTitle(queryInLowerCase)) ret.add(c);
+		return ret;
+	}
+	
+	/**
+	 * The indexed implementation: only the candidates from the index are checked
+	 */
+	public Collection<XCourseId> index(String queryInLowerCase) {
+		Set<XCourseId> ret = new HashSet<XCourseId>();
+		for (XCourseId c: iIndex.findCourseNameCandidates(queryInLowerCase))
+			if (c.matchCourseName(queryInLowerCase)) ret.add(c);
+		if (queryInLowerCase.length() > 2)
+			for (XCourseId c: iIndex.findTitleCandidates(queryInLowerCase))
+				if (c.matchTitle(queryInLowerCase)) ret.add(c);
+		return ret;
+	}
+	
+	public void run(List<String> queries) {
+		// check that the results are the same
+		int errors = 0;
+		long results = 0;
+		for (String query: queries) {
+			Collection<XCourseId> a = scan(query), b = index(query);
+			results += a.size();
+			if (!a.equals(b)) {
+				errors ++;
+				if (errors <= 10) System.err.println("Query '" + query + "': scan returned " + a.size() + " courses, index returned " + b.size() + " courses.");
+			}
+		}
+		System.out.println("Checked " + queries.size() + " queries: " + errors + " differences, " + sDF.format(((double)results) / queries.size()) + " courses per query on average.");
+		
+		// warm up
+		for (int i = 0; i < Math.min(1000, queries.size()); i++) {
+			scan(queries.get(i)); index(queries.get(i));
+		}
+		
+		long t0 = System.nanoTime();
+		for (String query: queries) scan(query);
+		long t1 = System.nanoTime();
+		for (String query: queries) index(query);
+		long t2 = System.nanoTime();
+		
+		double scan = (t1 - t0) / 1000.0 / queries.size(), index = (t2 - t1) / 1000.0 / queries.size();
+		System.out.println("Full scan:    " + sDF.format(scan) + " us per query");
+		System.out.println("Prefix index: " + sDF.format(index) + " us per query (" + sDF.format(scan / index) + "x faster)");
+	}
+	
+	private static class GeneratedCourse extends XCourseId {
+		private static final long serialVersionUID = 1L;
+		private String iGeneratedTitle;
+		
+		private GeneratedCourse(Long offeringId, Long courseId, String subjectArea, String courseNumber, String title) {
+			super(offeringId, courseId, subjectArea, courseNumber);
+			iGeneratedTitle = title;
+		}
+		
+		@Override
+		public String getTitle() { return iGeneratedTitle; }
+	}
+	
+	public static void main(String[] args) {
+		int nrCourses = (args.length > 0 ? Integer.parseInt(args[0]) : 10000);
+		int nrQueries = (args.length > 1 ? Integer.parseInt(args[1]) : 10000);
+		System.out.println("Generating " + nrCourses + " courses...");
+		FindCoursesBenchmark benchmark = new FindCoursesBenchmark(nrCourses);
+		benchmark.run(benchmark.generateQueries(nrQueries));
+	}
+}
@@ -209,7 +209,7 @@ public class OnlineSectioningTest extends OnlineSectioningTestFwk {
 	public static void main(String args[]) {
 		new OnlineSectioningTest().test(
 				Integer.valueOf(System.getProperty("nrTasks", "-1")),
-				Integer.valueOf(System.getProperty("nrConcurrent", "10")));
+				nrConcurrent(System.getProperty("nrConcurrent", "10")));
 	}
 	
 	public static class StudentPreferencePenalties {
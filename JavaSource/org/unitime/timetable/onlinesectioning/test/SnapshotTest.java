@@ -0,0 +1,335 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.onlinesectioning.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.SctAssignment;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.model.Subpart;
+import org.cpsolver.studentsct.StudentSectioningModel;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.MultiLock;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.Lock;
+import org.unitime.timetable.onlinesectioning.model.XCourseId;
+import org.unitime.timetable.onlinesectioning.model.XExpectations;
+import org.unitime.timetable.onlinesectioning.model.XOffering;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.onlinesectioning.server.ServerSnapshot;
+
+/**
+ * Snapshot round trip over a generated academic session (no database is needed, see {@link ServerSnapshot}).<br>
+ * A student sectioning problem is generated and converted into the online sectioning model, which is kept by a simple in-memory server
+ * (offerings and students in hash maps, locking using {@link MultiLock}). Students are being updated in parallel while snapshots are
+ * being written, showing the latency of the updates (the snapshot is not written under {@link OnlineSectioningServer#lockAll()}).
+ * When done, the snapshot is restored into the server (the restore verifies the checksum of the file and that the restored
+ * model serializes into the very same bytes), the restored model must contain the same offerings, students and student fingerprints,
+ * a snapshot of the restored model must have the same checksum, and a corrupted snapshot must be rejected without changing the server.<br>
+ * Parameters (system properties): offerings (200), students (5000), snapshots (5), nrConcurrent (10), seed (1).
+ * 
+ * @author Tomas Muller
+ */
+public class SnapshotTest {
+	private static int sFailed = 0;
+	
+	private static void check(boolean ok, String message) {
+		if (!ok) sFailed ++;
+		System.out.println((ok ? "OK   " : "FAIL ") + message);
+	}
+	
+	/**
+	 * Generate offerings with a lecture (two sections) and a recitation (two sections under each lecture), students with three course requests,
+	 * enroll the students into random sections of the first two of their courses, and load the generated data into the given server
+	 */
+	private static void generate(OnlineSectioningServer server, int nrOfferings, int nrStudents, Random random) {
+		StudentSectioningModel model = new StudentSectioningModel(new DataProperties());
+		Assignment<Request, Enrollment> assignment = new DefaultSingleAssignment<Request, Enrollment>();
+		List<Course> courses = new ArrayList<Course>();
+		long id = 1;
+		for (int o = 0; o < nrOfferings; o++) {
+			Offering offering = new Offering(id++, "C " + (100 + o));
+			Course course = new Course(id++, "C", String.valueOf(100 + o), offering, -1, 0);
+			Config config = new Config(id++, -1, "Config", offering);
+			Subpart lec = new Subpart(id++, "Lec", "Lecture", config, null);
+			Subpart rec = new Subpart(id++, "Rec", "Recitation", config, lec);
+			for (int l = 0; l < 2; l++) {
+				Section lecture = new Section(id++, -1, "Lec " + (1 + l), lec, null, null, null, null);
+				for (int r = 0; r < 2; r++)
+					new Section(id++, -1, "Rec " + (1 + 2 * l + r), rec, null, null, null, lecture);
+			}
+			model.addOffering(offering);
+			courses.add(course);
+		}
+		for (int s = 0; s < nrStudents; s++) {
+			Student student = new Student(id++);
+			student.setExternalId("S" + s);
+			student.setName("Student " + s);
+			Set<Course> selected = new HashSet<Course>();
+			while (selected.size() < 3)
+				selected.add(courses.get(random.nextInt(courses.size())));
+			int priority = 0;
+			for (Course course: selected) {
+				CourseRequest request = new CourseRequest(id++, priority++, false, student, Collections.singletonList(course), false, null);
+				if (priority <= 2) {
+					Config config = course.getOffering().getConfigs().get(0);
+					Subpart rec = config.getSubparts().get(1);
+					Section recitation = rec.getSections().get(random.nextInt(rec.getSections().size()));
+					Set<SctAssignment> sections = new HashSet<SctAssignment>();
+					sections.add(recitation); sections.add(recitation.getParent());
+					assignment.assign(0, new Enrollment(request, 0, course, config, sections, null));
+				}
+			}
+			model.addStudent(student);
+		}
+		for (Offering offering: model.getOfferings()) {
+			server.update(new XOffering(offering, null));
+			server.update(new XExpectations(offering));
+		}
+		for (Student student: model.getStudents())
+			server.update(new XStudent(student, assignment), true);
+	}
+	
+	public static void main(String[] args) throws Exception {
+		ToolBox.configureLogging();
+		File folder = Files.createTempDirectory("snapshot").toFile();
+		System.setProperty("unitime.data.dir", folder.getAbsolutePath());
+		int nrOfferings = Integer.getInteger("offerings", 200);
+		int nrStudents = Integer.getInteger("students", 5000);
+		int nrSnapshots = Integer.getInteger("snapshots", 5);
+		int nrConcurrent = Integer.getInteger("nrConcurrent", 10);
+		Random random = new Random(Long.getLong("seed", 1l));
+		
+		InMemoryHandler handler = new InMemoryHandler(new AcademicSessionInfo(-1l, "2026", "Test", "Test"));
+		final OnlineSectioningServer server = (OnlineSectioningServer)Proxy.newProxyInstance(
+				SnapshotTest.class.getClassLoader(), new Class[] { OnlineSectioningServer.class }, handler);
+		generate(server, nrOfferings, nrStudents, random);
+		Map<Long, Long> fingerprints = new HashMap<Long, Long>();
+		for (Long studentId: handler.iStudents.keySet())
+			fingerprints.put(studentId, random.nextLong());
+		System.out.println("Generated " + nrOfferings + " offerings, " + nrStudents + " students.");
+		
+		// update the students while the snapshots are being written
+		final List<Long> studentIds = new ArrayList<Long>(handler.iStudents.keySet());
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicLong nrUpdates = new AtomicLong(0), maxUpdate = new AtomicLong(0);
+		List<Thread> updaters = new ArrayList<Thread>();
+		for (int i = 0; i < nrConcurrent; i++) {
+			final Random r = new Random(i);
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					while (!done.get()) {
+						Long studentId = studentIds.get(r.nextInt(studentIds.size()));
+						long t0 = System.currentTimeMillis();
+						Lock lock = server.lockStudent(studentId, null, "Update");
+						try {
+							XStudent student = server.getStudent(studentId);
+							server.update(new XStudent(student), true);
+						} finally {
+							lock.release();
+						}
+						long time = System.currentTimeMillis() - t0;
+						nrUpdates.incrementAndGet();
+						synchronized (maxUpdate) {
+							if (time > maxUpdate.get()) maxUpdate.set(time);
+						}
+					}
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+			updaters.add(t);
+		}
+		long writeTime = 0;
+		for (int i = 0; i < nrSnapshots; i++) {
+			long t0 = System.currentTimeMillis();
+			ServerSnapshot.write(server, fingerprints);
+			writeTime += System.currentTimeMillis() - t0;
+		}
+		done.set(true);
+		for (Thread t: updaters) t.join();
+		System.out.println(nrSnapshots + " snapshots written in " + (writeTime / Math.max(1, nrSnapshots)) + " ms on average, " +
+				nrUpdates.get() + " concurrent student updates, the slowest took " + maxUpdate.get() + " ms");
+		check(nrUpdates.get() > 0, "students were updated while the snapshots were being written");
+		
+		// round trip
+		Map<Long, String> offerings = handler.getOfferings(), students = handler.getStudents();
+		ServerSnapshot.Info saved = ServerSnapshot.write(server, fingerprints);
+		System.out.println("Saved: " + saved);
+		ServerSnapshot.Info restored = null;
+		Lock lock = server.lockAll();
+		try {
+			restored = ServerSnapshot.restore(server);
+		} catch (Exception e) {
+			check(false, "snapshot restored (" + e.getMessage() + ")");
+		} finally {
+			lock.release();
+		}
+		if (restored != null) {
+			System.out.println("Restored: " + restored);
+			check(saved.getChecksum() == restored.getChecksum(), "restored checksum matches");
+			check(saved.getNrOfferings() == restored.getNrOfferings() && saved.getNrOfferings() == nrOfferings, "restored offerings (" + restored.getNrOfferings() + ")");
+			check(saved.getNrStudents() == restored.getNrStudents() && saved.getNrStudents() == nrStudents, "restored students (" + restored.getNrStudents() + ")");
+			check(fingerprints.equals(restored.getFingerprints()), "restored student fingerprints");
+			check(offerings.equals(handler.getOfferings()), "restored offerings are the same");
+			check(students.equals(handler.getStudents()), "restored students are the same");
+		}
+		
+		ServerSnapshot.Info again = ServerSnapshot.write(server, fingerprints);
+		check(saved.getChecksum() == again.getChecksum(), "checksum of the restored model matches");
+		
+		// corrupt one byte in the middle of the model, the restore must fail and the server must not change
+		File file = ServerSnapshot.getSnapshotFile(server.getAcademicSession());
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long position = raf.length() / 2;
+			raf.seek(position);
+			int b = raf.read();
+			raf.seek(position);
+			raf.write(b ^ 0xff);
+		} finally {
+			raf.close();
+		}
+		lock = server.lockAll();
+		try {
+			ServerSnapshot.restore(server);
+			check(false, "corrupted snapshot is rejected");
+		} catch (IOException e) {
+			check(true, "corrupted snapshot is rejected (" + e.getMessage() + ")");
+		} finally {
+			lock.release();
+		}
+		check(students.equals(handler.getStudents()) && offerings.equals(handler.getOfferings()), "server is not changed by a rejected restore");
+		
+		file.delete();
+		folder.delete();
+		System.out.println(sFailed == 0 ? "All checks passed." : sFailed + " checks failed.");
+		System.exit(sFailed == 0 ? 0 : 1);
+	}
+	
+	/**
+	 * Simple in-memory online sectioning server, only the methods that are needed by the {@link ServerSnapshot} are implemented
+	 */
+	private static class InMemoryHandler implements InvocationHandler {
+		private AcademicSessionInfo iSession;
+		private Map<Long, XOffering> iOfferings = new ConcurrentHashMap<Long, XOffering>();
+		private Map<Long, XExpectations> iExpectations = new ConcurrentHashMap<Long, XExpectations>();
+		private Map<Long, XStudent> iStudents = new ConcurrentHashMap<Long, XStudent>();
+		private Map<String, Object> iProperties = new ConcurrentHashMap<String, Object>();
+		private MultiLock iLock = new MultiLock();
+		
+		private InMemoryHandler(AcademicSessionInfo session) {
+			iSession = session;
+		}
+		
+		private Map<Long, String> getOfferings() {
+			Map<Long, String> offerings = new TreeMap<Long, String>();
+			for (XOffering offering: iOfferings.values())
+				offerings.put(offering.getOfferingId(), offering.getName() + " " + offering.getConfigs() + " " + iExpectations.get(offering.getOfferingId()));
+			return offerings;
+		}
+		
+		private Map<Long, String> getStudents() {
+			Map<Long, String> students = new TreeMap<Long, String>();
+			for (XStudent student: iStudents.values())
+				students.put(student.getStudentId(), student.getExternalId() + " " + student.getName() + " " + student.getRequests());
+			return students;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("getAcademicSession".equals(name)) return iSession;
+			if ("getProperty".equals(name)) {
+				Object value = iProperties.get((String)args[0]);
+				return value == null ? args[1] : value;
+			}
+			if ("setProperty".equals(name)) {
+				if (args[1] == null) iProperties.remove((String)args[0]); else iProperties.put((String)args[0], args[1]);
+				return null;
+			}
+			if ("readLock".equals(name))
+				return new Lock() { public void release() {} };
+			if ("lockAll".equals(name)) return iLock.lockAll();
+			if ("lockOffering".equals(name)) return iLock.lock((Long)args[0]);
+			if ("lockStudent".equals(name)) return iLock.lock(-(Long)args[0]);
+			if ("findCourses".equals(name)) {
+				List<XCourseId> courses = new ArrayList<XCourseId>();
+				for (XOffering offering: iOfferings.values())
+					courses.addAll(offering.getCourses());
+				return courses;
+			}
+			if ("findStudents".equals(name))
+				return new ArrayList<XStudent>(iStudents.values());
+			if ("getOffering".equals(name)) return iOfferings.get((Long)args[0]);
+			if ("getExpectations".equals(name)) return iExpectations.get((Long)args[0]);
+			if ("getStudent".equals(name)) return iStudents.get((Long)args[0]);
+			if ("clearAll".equals(name)) {
+				iOfferings.clear(); iExpectations.clear(); iStudents.clear();
+				return null;
+			}
+			if ("update".equals(name)) {
+				if (args[0] instanceof XOffering) iOfferings.put(((XOffering)args[0]).getOfferingId(), (XOffering)args[0]);
+				else if (args[0] instanceof XExpectations) iExpectations.put(((XExpectations)args[0]).getOfferingId(), (XExpectations)args[0]);
+				else if (args[0] instanceof XStudent) iStudents.put(((XStudent)args[0]).getStudentId(), (XStudent)args[0]);
+				return null;
+			}
+			if ("remove".equals(name) && args[0] instanceof XStudent) {
+				iStudents.remove(((XStudent)args[0]).getStudentId());
+				return null;
+			}
+			if ("toString".equals(name)) return "InMemoryServer[" + iSession + "]";
+			if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+			if ("equals".equals(name)) return proxy == args[0];
+			throw new InvocationTargetException(new UnsupportedOperationException(name + " is not supported by the test server"));
+		}
+	}
+}
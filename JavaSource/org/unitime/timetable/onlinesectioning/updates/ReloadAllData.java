@@ -23,6 +23,7 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -31,9 +32,18 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.cpsolver.coursett.constraint.GroupConstraint;
 import org.cpsolver.coursett.constraint.IgnoreStudentConflictsConstraint;
+import org.hibernate.CacheMode;
+import org.hibernate.Transaction;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
@@ -47,8 +57,10 @@ import org.unitime.timetable.model.DistributionPref;
 import org.unitime.timetable.model.InstructionalOffering;
 import org.unitime.timetable.model.PreferenceLevel;
 import org.unitime.timetable.model.SchedulingSubpart;
+import org.unitime.timetable.model.StudentSectioningQueue;
 import org.unitime.timetable.model.WaitList;
 import org.unitime.timetable.model.comparators.ClassComparator;
+import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningAction;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningHelper;
@@ -67,6 +79,7 @@ import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.onlinesectioning.model.XSubpart;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster;
 import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
+import org.unitime.timetable.onlinesectioning.server.ServerSnapshot;
 import org.unitime.timetable.solver.TimetableDatabaseLoader;
 
 /**
@@ -76,6 +89,34 @@ import org.unitime.timetable.solver.TimetableDatabaseLoader;
 public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 	private static final long serialVersionUID = 1L;
 	private static StudentSectioningMessages MSG = Localization.create(StudentSectioningMessages.class);
+	private static final String sOfferingQuery =
+			"select distinct io from InstructionalOffering io " +
+			"left join io.courseOfferings co " +
+			"left join fetch io.instrOfferingConfigs cf " +
+			"left join fetch cf.schedulingSubparts ss " +
+			"left join fetch ss.classes as c "+
+			"left join fetch io.reservations x " +
+			"where io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true";
+	private static final String sStudentQuery =
+			"select distinct s from Student s " +
+            "left join fetch s.courseDemands as cd " +
+            "left join fetch cd.courseRequests as cr " +
+            "left join fetch cr.classWaitLists as cwl " + 
+            "left join fetch s.classEnrollments as e " +
+            "left join fetch s.areaClasfMajors as acm " +
+            "left join fetch s.waitlists as w " +
+            "left join fetch s.groups as g " +
+            "left join fetch s.notes as n ";
+
+	private boolean iUseSnapshot = false;
+	
+	/**
+	 * Restore the server from its last snapshot (see {@link ServerSnapshot}) when available, instead of loading everything from the database
+	 */
+	public ReloadAllData useSnapshot(boolean useSnapshot) {
+		iUseSnapshot = useSnapshot;
+		return this;
+	}
 
 	@Override
 	public Boolean execute(final OnlineSectioningServer server, OnlineSectioningHelper helper) {
@@ -91,9 +132,18 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 		try {
 			helper.beginTransaction();
 			try {
+				if (iUseSnapshot && ServerSnapshot.isEnabled(server) && restoreSnapshot(server, helper)) {
+					helper.commitTransaction();
+					return true;
+				}
+				
 				helper.info("Updating course infos and the student sectining model for session " + server.getAcademicSession());
 				long t0 = System.currentTimeMillis();
+				DecimalFormat df = new DecimalFormat("0.00");
+				Date queueTimeStamp = StudentSectioningQueue.getLastTimeStamp(helper.getHibSession(), server.getAcademicSession().getUniqueId());
 				server.clearAll();
+				if (queueTimeStamp != null)
+					server.setProperty("Updater.LastTimeStamp", queueTimeStamp);
 
 				Map<Long, List<XDistribution>> distributions = new Hashtable<Long, List<XDistribution>>();
 		    	List<DistributionPref> distPrefs = helper.getHibSession().createQuery(
@@ -125,49 +175,43 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 		        	}
 		        }
 		        
-				Map<Long, XOffering> offeringMap = new HashMap<Long, XOffering>();
-				Map<Long, XSection> sectionMap = new HashMap<Long, XSection>();
+				long t1 = System.currentTimeMillis();
+				helper.info("  Loaded " + distPrefs.size() + " distribution preferences in " + df.format((t1 - t0) / 1000.0) + " seconds.");
+				
+				int nrThreads = ApplicationProperty.OnlineSchedulingReloadThreads.intValue();
 				Map<Long, Map<Long, Double>> spaceMap = new HashMap<Long, Map<Long,Double>>();
-				List<InstructionalOffering> offerings = helper.getHibSession().createQuery(
-						"select distinct io from InstructionalOffering io " +
-						"left join io.courseOfferings co " +
-						"left join fetch io.instrOfferingConfigs cf " +
-						"left join fetch cf.schedulingSubparts ss " +
-						"left join fetch ss.classes as c "+
-						"left join fetch io.reservations x " +
-						"where io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true")
-						.setLong("sessionId", server.getAcademicSession().getUniqueId()).list();
-				for (InstructionalOffering io: offerings) {
-					XOffering offering = loadOffering(io, distributions.get(io.getUniqueId()), server, helper);
-					if (offering != null) {
-						offeringMap.put(offering.getOfferingId(), offering);
-						for (XConfig config: offering.getConfigs())
-							for (XSubpart subpart: config.getSubparts())
-								for (XSection section: subpart.getSections())
-									sectionMap.put(section.getSectionId(), section);
-						spaceMap.put(offering.getOfferingId(), new HashMap<Long, Double>());
-						server.update(offering);
-					}
+				List<XOffering> offerings = (nrThreads > 1 ? loadOfferings(server, helper, distributions, nrThreads) : loadOfferings(server, helper, distributions));
+				for (XOffering offering: offerings) {
+					spaceMap.put(offering.getOfferingId(), new HashMap<Long, Double>());
+					server.update(offering);
 				}
 				
+				long t2 = System.currentTimeMillis();
+				helper.info("  Loaded " + offerings.size() + " offerings in " + df.format((t2 - t1) / 1000.0) + " seconds" + (nrThreads > 1 ? " (using " + nrThreads + " threads)." : "."));
+				
 		        Map<Long, List<XCourseRequest>> requestMap = new HashMap<Long, List<XCourseRequest>>();
-				List<org.unitime.timetable.model.Student> students = helper.getHibSession().createQuery(
-	                    "select distinct s from Student s " +
-	                    "left join fetch s.courseDemands as cd " +
-	                    "left join fetch cd.courseRequests as cr " +
-	                    "left join fetch cr.classWaitLists as cwl " + 
-	                    "left join fetch s.classEnrollments as e " +
-	                    "left join fetch s.areaClasfMajors as acm " +
-	                    "left join fetch s.waitlists as w " +
-	                    "left join fetch s.groups as g " +
-	                    "left join fetch s.notes as n " +
-	                    "where s.session.uniqueId=:sessionId").
-	                    setLong("sessionId",server.getAcademicSession().getUniqueId()).list();
-	            for (org.unitime.timetable.model.Student student: students) {
-	            	XStudent s = loadStudent(student, requestMap, server, helper, WaitList.WaitListType.RELOAD);
-	            	if (s != null)
-	            		server.update(s, true);
-	            }
+		        int nrStudents = 0;
+		        if (nrThreads > 1) {
+		        	for (XStudent s: loadStudents(server, helper, nrThreads)) {
+		        		checkStudent(s, requestMap, server, helper);
+		        		server.update(s, true);
+		        		nrStudents ++;
+		        	}
+		        } else {
+		        	List<org.unitime.timetable.model.Student> students = helper.getHibSession().createQuery(
+		        			sStudentQuery + "where s.session.uniqueId=:sessionId").
+		        			setLong("sessionId",server.getAcademicSession().getUniqueId()).list();
+		        	for (org.unitime.timetable.model.Student student: students) {
+		        		XStudent s = loadStudent(student, requestMap, server, helper, WaitList.WaitListType.RELOAD);
+		        		if (s != null) {
+		        			server.update(s, true);
+		        			nrStudents ++;
+		        		}
+		        	}
+		        }
+		        
+		        long t3 = System.currentTimeMillis();
+				helper.info("  Loaded " + nrStudents + " students in " + df.format((t3 - t2) / 1000.0) + " seconds" + (nrThreads > 1 ? " (using " + nrThreads + " threads)." : "."));
 				
 		    	List<Object[]> infos = helper.getHibSession().createQuery(
 		    			"select i.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId, i.clazz.uniqueId, i.nbrExpectedStudents from SectioningInfo i where i.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId = :sessionId")
@@ -183,9 +227,11 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 		    	}
 		    	for (Map.Entry<Long, Map<Long, Double>> entry: spaceMap.entrySet())
 		    		server.update(new XExpectations(entry.getKey(), entry.getValue()));
+		    	
+		    	long t4 = System.currentTimeMillis();
+		    	helper.info("  Loaded " + infos.size() + " expectations in " + df.format((t4 - t3) / 1000.0) + " seconds.");
 		        
-				long t1 = System.currentTimeMillis();
-				helper.info("  Update of session " + server.getAcademicSession() + " done " + new DecimalFormat("0.0").format((t1 - t0) / 1000.0) + " seconds.");
+				helper.info("  Update of session " + server.getAcademicSession() + " done " + df.format((t4 - t0) / 1000.0) + " seconds.");
 				
 				helper.commitTransaction();
 				return true;
@@ -200,6 +246,205 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
 		}		
 	}
 	
+    /**
+     * Load all offerings of the academic session using the helper's hibernate session.
+     */
+    protected List<XOffering> loadOfferings(OnlineSectioningServer server, OnlineSectioningHelper helper, Map<Long, List<XDistribution>> distributions) {
+    	List<XOffering> ret = new ArrayList<XOffering>();
+		List<InstructionalOffering> offerings = helper.getHibSession().createQuery(sOfferingQuery)
+				.setLong("sessionId", server.getAcademicSession().getUniqueId()).list();
+		for (InstructionalOffering io: offerings) {
+			XOffering offering = loadOffering(io, distributions.get(io.getUniqueId()), server, helper);
+			if (offering != null) ret.add(offering);
+		}
+		return ret;
+    }
+    
+    /**
+     * Load all offerings of the academic session using the given number of threads. The offering ids are split
+     * into chunks and each chunk is loaded in its own hibernate session. The returned offerings are in the order
+     * of their unique ids. The server is not touched by the worker threads, as it is locked by the calling thread.
+     */
+    protected List<XOffering> loadOfferings(final OnlineSectioningServer server, final OnlineSectioningHelper helper, final Map<Long, List<XDistribution>> distributions, int nrThreads) throws Exception {
+    	List<Long> offeringIds = helper.getHibSession().createQuery(
+    			"select distinct io.uniqueId from InstructionalOffering io inner join io.courseOfferings co " +
+    			"where io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true order by io.uniqueId")
+    			.setLong("sessionId", server.getAcademicSession().getUniqueId()).list();
+    	return loadInParallel(server, helper, offeringIds, nrThreads, new ChunkLoader<XOffering>() {
+			@Override
+			public List<XOffering> load(List<Long> ids, OnlineSectioningHelper h) {
+				List<XOffering> ret = new ArrayList<XOffering>();
+				List<InstructionalOffering> offerings = h.getHibSession().createQuery(sOfferingQuery + " and io.uniqueId in :offeringIds order by io.uniqueId")
+						.setLong("sessionId", server.getAcademicSession().getUniqueId())
+						.setParameterList("offeringIds", ids).list();
+				for (InstructionalOffering io: offerings) {
+					XOffering offering = loadOffering(io, distributions.get(io.getUniqueId()), server, h);
+					if (offering != null) ret.add(offering);
+				}
+				return ret;
+			}
+		});
+    }
+    
+    /**
+     * Load all students of the academic session using the given number of threads. Wait-lists are reset by the
+     * worker threads (in their own transactions), the students still need to be checked using
+     * {@link ReloadAllData#checkStudent(XStudent, Map, OnlineSectioningServer, OnlineSectioningHelper)}
+     * before they are put into the server.
+     */
+    protected List<XStudent> loadStudents(final OnlineSectioningServer server, final OnlineSectioningHelper helper, int nrThreads) throws Exception {
+    	List<Long> studentIds = helper.getHibSession().createQuery(
+    			"select s.uniqueId from Student s where s.session.uniqueId = :sessionId order by s.uniqueId")
+    			.setLong("sessionId", server.getAcademicSession().getUniqueId()).list();
+    	return loadInParallel(server, helper, studentIds, nrThreads, new ChunkLoader<XStudent>() {
+			@Override
+			public List<XStudent> load(List<Long> ids, OnlineSectioningHelper h) {
+				List<XStudent> ret = new ArrayList<XStudent>();
+				List<org.unitime.timetable.model.Student> students = h.getHibSession().createQuery(sStudentQuery + "where s.uniqueId in :studentIds order by s.uniqueId")
+						.setParameterList("studentIds", ids).list();
+				for (org.unitime.timetable.model.Student s: students) {
+					ret.add(new XStudent(s, h, server.getAcademicSession().getFreeTimePattern(), server.getAcademicSession().getDatePatternFirstDate()));
+					if (s.getWaitListMode() == WaitListMode.WaitList)
+						s.resetWaitLists(WaitList.WaitListType.RELOAD, h.getUser().getExternalId(), null, h.getHibSession());
+				}
+				return ret;
+			}
+		});
+    }
+    
+    protected static interface ChunkLoader<T> {
+    	public List<T> load(List<Long> ids, OnlineSectioningHelper helper);
+    }
+    
+    /**
+     * Split the given ids into chunks and load them in parallel. Each chunk is loaded using a new hibernate session
+     * (in its own transaction) and a new helper whose messages are passed on to the given helper. Results are
+     * returned in the order of the chunks.
+     */
+    protected <T> List<T> loadInParallel(OnlineSectioningServer server, final OnlineSectioningHelper helper, List<Long> ids, int nrThreads, final ChunkLoader<T> loader) throws Exception {
+    	final int chunkSize = ApplicationProperty.OnlineSchedulingReloadChunkSize.intValue();
+    	final CacheMode cacheMode = helper.getHibSession().getCacheMode();
+    	ExecutorService executor = Executors.newFixedThreadPool(nrThreads, new ThreadFactory() {
+    		private int iThreadNumber = 0;
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ReloadAllData-" + (++iThreadNumber));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+    	try {
+    		List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>();
+    		for (int i = 0; i < ids.size(); i += chunkSize) {
+    			final List<Long> chunk = ids.subList(i, Math.min(ids.size(), i + chunkSize));
+    			futures.add(executor.submit(new Callable<List<T>>() {
+					@Override
+					public List<T> call() throws Exception {
+						org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+						hibSession.setCacheMode(cacheMode);
+						Transaction tx = null;
+						try {
+							tx = hibSession.beginTransaction();
+							OnlineSectioningHelper h = new OnlineSectioningHelper(hibSession, helper.getUser());
+							h.setGradableSubpartsProvider(helper.getGradableSubpartsProvider());
+							h.addMessageHandler(new OnlineSectioningHelper.MessageHandler() {
+								@Override
+								public void onMessage(OnlineSectioningHelper.Message message) {
+									synchronized (helper) {
+										helper.log(message);
+									}
+								}
+								@Override
+								public boolean isDebugEnabled() {
+									return helper.isDebugEnabled();
+								}
+							});
+							List<T> ret = loader.load(chunk, h);
+							hibSession.flush();
+							tx.commit();
+							return ret;
+						} catch (Exception e) {
+							if (tx != null && tx.isActive()) tx.rollback();
+							throw e;
+						} finally {
+							hibSession.close();
+						}
+					}
+				}));
+    		}
+    		List<T> ret = new ArrayList<T>(ids.size());
+    		for (Future<List<T>> future: futures) {
+    			try {
+    				ret.addAll(future.get());
+    			} catch (ExecutionException e) {
+    				if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+    				throw e;
+    			}
+    		}
+    		return ret;
+    	} finally {
+    		executor.shutdownNow();
+    	}
+    }
+    
+    /**
+     * Restore the server from its snapshot. Changes made after the snapshot was taken are picked up from the student sectioning queue
+     * (the updater continues from the last queue item processed before the snapshot) and from the student data (students whose
+     * fingerprint has changed since the snapshot are reloaded from the database, see {@link ServerSnapshot#getStudentFingerprints(org.hibernate.Session, Long)}).
+     * @return false if there is no usable snapshot and the data need to be loaded from the database
+     */
+    protected boolean restoreSnapshot(OnlineSectioningServer server, OnlineSectioningHelper helper) {
+    	try {
+    		ServerSnapshot.Info info = ServerSnapshot.getInfo(server.getAcademicSession());
+    		if (info == null) return false;
+    		if (System.currentTimeMillis() - info.getCreated().getTime() > 60000l * ApplicationProperty.OnlineSchedulingSnapshotMaxAge.intValue()) {
+    			helper.info("Snapshot of " + server.getAcademicSession() + " created " + info.getCreated() + " is too old, loading all data from the database.");
+    			return false;
+    		}
+    		helper.info("Restoring the student sectining model for session " + server.getAcademicSession() + " from a snapshot created " + info.getCreated());
+    		long t0 = System.currentTimeMillis();
+    		info = ServerSnapshot.restore(server);
+    		if (info == null) return false;
+    		server.setProperty("Updater.LastTimeStamp", info.getQueueTimeStamp() == null ? new Date(0) : info.getQueueTimeStamp());
+    		long t1 = System.currentTimeMillis();
+    		helper.info("  Restored " + info + " in " + new DecimalFormat("0.00").format((t1 - t0) / 1000.0) + " seconds.");
+    		int nrStudents = reloadChangedStudents(server, helper, info.getFingerprints());
+    		long t2 = System.currentTimeMillis();
+    		helper.info("  Reloaded " + nrStudents + " students changed since the snapshot in " + new DecimalFormat("0.00").format((t2 - t1) / 1000.0) + " seconds.");
+    		return true;
+    	} catch (Exception e) {
+    		helper.warn("Failed to restore snapshot of " + server.getAcademicSession() + ", loading all data from the database: " + e.getMessage(), e);
+    		return false;
+    	}
+    }
+    
+    /**
+     * Reload students whose fingerprint does not match the given one (including the students that have been added or removed since)
+     */
+    protected int reloadChangedStudents(OnlineSectioningServer server, OnlineSectioningHelper helper, Map<Long, Long> fingerprints) {
+    	Map<Long, Long> current = ServerSnapshot.getStudentFingerprints(helper.getHibSession(), server.getAcademicSession().getUniqueId());
+    	Set<Long> studentIds = new TreeSet<Long>();
+    	for (Map.Entry<Long, Long> e: current.entrySet())
+    		if (!e.getValue().equals(fingerprints.get(e.getKey()))) studentIds.add(e.getKey());
+    	for (Long studentId: fingerprints.keySet()) {
+    		if (current.containsKey(studentId)) continue;
+    		XStudent oldStudent = server.getStudent(studentId);
+    		if (oldStudent != null) server.remove(oldStudent);
+    	}
+    	List<Long> ids = new ArrayList<Long>(studentIds);
+    	for (int i = 0; i < ids.size(); i += 1000) {
+    		List<org.unitime.timetable.model.Student> students = helper.getHibSession().createQuery(sStudentQuery + "where s.uniqueId in :studentIds")
+    				.setParameterList("studentIds", ids.subList(i, Math.min(i + 1000, ids.size()))).list();
+    		for (org.unitime.timetable.model.Student student: students) {
+    			XStudent oldStudent = server.getStudent(student.getUniqueId());
+    			if (oldStudent != null) server.remove(oldStudent);
+    			XStudent newStudent = loadStudent(student, null, server, helper);
+    			if (newStudent != null) server.update(newStudent, true);
+    		}
+    	}
+    	return studentIds.size();
+    }
+    
     public static XOffering loadOffering(InstructionalOffering io, List<XDistribution> distributions, OnlineSectioningServer server, OnlineSectioningHelper helper) {
     	if (io.getInstrOfferingConfigs().isEmpty() || io.isNotOffered()) return null;
     	return new XOffering(io, distributions, helper);
@@ -212,6 +457,20 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
     public static XStudent loadStudent(org.unitime.timetable.model.Student s, Map<Long, List<XCourseRequest>> requestMap, OnlineSectioningServer server, OnlineSectioningHelper helper, WaitList.WaitListType resetWaitListType) {
     	XStudent student = new XStudent(s, helper, server.getAcademicSession().getFreeTimePattern(), server.getAcademicSession().getDatePatternFirstDate());
     	
+    	checkStudent(student, requestMap, server, helper);
+    	
+    	if (resetWaitListType != null && s.getWaitListMode() == WaitListMode.WaitList)
+    		s.resetWaitLists(resetWaitListType, helper.getUser().getExternalId(), null, helper.getHibSession());
+    	
+        return student;
+    }
+    
+    /**
+     * Remove requests for courses that are not loaded, guess reservations of the existing enrollments and
+     * report enrollment problems. Unlike the construction of the {@link XStudent}, this step does not need
+     * the hibernate session, but it needs to see the offerings that are already loaded in the server.
+     */
+    public static void checkStudent(XStudent student, Map<Long, List<XCourseRequest>> requestMap, OnlineSectioningServer server, OnlineSectioningHelper helper) {
     	for (Iterator<XRequest> i = student.getRequests().iterator(); i.hasNext(); ) {
     		XRequest request = i.next();
     		if (request instanceof XCourseRequest) {
@@ -221,7 +480,7 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
     				XCourseId course = j.next();
     				XOffering offering = server.getOffering(course.getOfferingId());
                     if (offering == null) {
-                    	helper.warn("Student " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + ") requests course " + course.getCourseName() + " that is not loaded.");
+                    	helper.warn("Student " + student.getName() + " (" + student.getExternalId() + ") requests course " + course.getCourseName() + " that is not loaded.");
                     	j.remove();
                     }
     			}
@@ -255,13 +514,13 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
     							if (enrollment.getSectionIds().contains(section.getSectionId())) {
     		    					for (XSection other: checked.keySet()) {
     		    						if (section.isOverlapping(offering.getDistributions(), other)) {
-    		    							helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + "): "+
+    		    							helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + student.getName() + " (" + student.getExternalId() + "): "+
     		    									section.getSubpartName() + " " + section.getName() + " " + section.getTime() +
     		            							" overlaps with " + checked.get(other).getCourseName() + " " + other.getSubpartName() + " " + other.getName() + " " + other.getTime());
     		    						}
     		    					}
     		    					if (!mixedConfig && !config.getConfigId().equals(enrollment.getConfigId())) {
-    		    						helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + "): classes from different configurations.");
+    		    						helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + student.getName() + " (" + student.getExternalId() + "): classes from different configurations.");
     		    						mixedConfig = true;
     		    					}
     		    					checked.put(section, enrollment);
@@ -270,20 +529,15 @@ public class ReloadAllData implements OnlineSectioningAction<Boolean> {
     						}
 							if (config.getConfigId().equals(enrollment.getConfigId()) && nrMatches != 1) {
 								if (nrMatches > 1)
-									helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + "): two or more classes of the same subpart " + subpart.getName() + ".");
+									helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + student.getName() + " (" + student.getExternalId() + "): two or more classes of the same subpart " + subpart.getName() + ".");
 								else
-									helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + helper.getStudentNameFormat().format(s) + " (" + s.getExternalUniqueId() + "): no class of the subpart " + subpart.getName() + ".");
+									helper.warn("There is a problem assigning " + enrollment.getCourseName() + " to " + student.getName() + " (" + student.getExternalId() + "): no class of the subpart " + subpart.getName() + ".");
 							}
     					}
     				}
     			}
     		}
     	}
-    	
-    	if (resetWaitListType != null && s.getWaitListMode() == WaitListMode.WaitList)
-    		s.resetWaitLists(resetWaitListType, helper.getUser().getExternalId(), null, helper.getHibSession());
-    	
-        return student;
     }
     
     public static XStudent loadStudentNoCheck(org.unitime.timetable.model.Student s, OnlineSectioningServer server, OnlineSectioningHelper helper) {
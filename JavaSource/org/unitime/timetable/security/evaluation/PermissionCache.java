@@ -0,0 +1,411 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.security.evaluation;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Department;
+import org.unitime.timetable.model.DepartmentStatusType;
+import org.unitime.timetable.model.ExamStatus;
+import org.unitime.timetable.model.Event;
+import org.unitime.timetable.model.ExternalDepartmentStatusType;
+import org.unitime.timetable.model.ManagerRole;
+import org.unitime.timetable.model.Meeting;
+import org.unitime.timetable.model.Roles;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.SolverGroup;
+import org.unitime.timetable.model.Student;
+import org.unitime.timetable.model.StudentSectioningStatus;
+import org.unitime.timetable.model.TimetableManager;
+import org.unitime.timetable.security.Qualifiable;
+import org.unitime.timetable.security.UserAuthority;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.rights.Right;
+
+/**
+ * Memoization of the {@link UniTimePermissionCheck#hasPermission(UserContext, Object, Right)} and
+ * {@link UniTimePermissionCheck#hasPermission(UserContext, Serializable, String, Right)} decisions.
+ * <ul>
+ * <li>Request scope: between {@link PermissionCache#begin()} and {@link PermissionCache#end()} (e.g., during an HTTP request,
+ * see {@link org.unitime.timetable.filter.HibSessionFilter}), all decisions of the current thread are cached. Domain objects
+ * are compared by their identity, which is fine within a single Hibernate session.</li>
+ * <li>User scope: when unitime.authorization.cache.ttl is set, decisions on domain objects that are referenced by their
+ * ids (e.g., a department id, or when no object is given like in the case of the user's departments) are also cached
+ * between the requests for the given number of seconds.</li>
+ * </ul>
+ * The decisions are keyed by the user, the current authority (which includes the role and the academic session, so
+ * that a role or an academic session change does not use the old decisions), the target and the right.
+ * Only the boolean checks are cached, the checks throwing {@link org.springframework.security.access.AccessDeniedException} that are
+ * used to guard changes are always evaluated. Checks on events, meetings, and students are never cached, since these are often changed
+ * within the same request right after the check (e.g., a meeting is approved and its details, including whether it can be approved,
+ * are returned).<br>
+ * The request scoped decisions of the current thread are dropped on every change made through hibernate (insert, update, delete, or a collection
+ * change) and on every flush. User scoped decisions are dropped when a role, a permission, a manager, a status, an academic session, a department,
+ * or a solver group is changed (see {@link #register(SessionFactory)}). Hit and miss counts are published through JMX
+ * (see {@link StatisticsMBean}).
+ * 
+ * @author Tomas Muller
+ */
+public class PermissionCache {
+	private static Log sLog = LogFactory.getLog(PermissionCache.class);
+	private static ThreadLocal<Map<Key, Boolean>> sRequestCache = new ThreadLocal<Map<Key, Boolean>>();
+	private static Map<Key, Entry> sUserCache = new ConcurrentHashMap<Key, Entry>();
+	private static final int sUserCacheLimit = 100000;
+	private static AtomicLong sHits = new AtomicLong(0), sMisses = new AtomicLong(0), sInvalidations = new AtomicLong(0);
+	private static Statistics sStatistics = null;
+	
+	/**
+	 * Start request scoped caching in the current thread
+	 * @return true if started, false if the request scope has been already started (e.g., in an outer filter)
+	 */
+	public static boolean begin() {
+		if (sRequestCache.get() != null || !ApplicationProperty.PermissionCacheRequest.isTrue()) return false;
+		sRequestCache.set(new HashMap<Key, Boolean>());
+		return true;
+	}
+	
+	/**
+	 * End request scoped caching in the current thread
+	 */
+	public static void end() {
+		sRequestCache.remove();
+	}
+	
+	/**
+	 * Drop all decisions of the given user (both request and user scoped)
+	 */
+	public static void invalidate(UserContext user) {
+		invalidate(user == null ? null : user.getExternalUserId());
+	}
+	
+	/**
+	 * Drop all decisions of the given user (both request and user scoped)
+	 * @param externalUserId external id of the user (e.g., of a timetable manager whose roles have been changed)
+	 */
+	public static void invalidate(String externalUserId) {
+		Map<Key, Boolean> cache = sRequestCache.get();
+		if (cache != null) cache.clear();
+		if (externalUserId == null) return;
+		for (Iterator<Key> i = sUserCache.keySet().iterator(); i.hasNext(); ) {
+			Key key = i.next();
+			if (key.iUser.equals(externalUserId)) i.remove();
+		}
+		sInvalidations.incrementAndGet();
+	}
+	
+	/**
+	 * Drop all cached decisions (e.g., when permissions or roles are changed)
+	 */
+	public static void invalidateAll() {
+		Map<Key, Boolean> cache = sRequestCache.get();
+		if (cache != null) cache.clear();
+		sUserCache.clear();
+		sInvalidations.incrementAndGet();
+	}
+	
+	public static long getNrHits() { return sHits.get(); }
+	
+	public static long getNrMisses() { return sMisses.get(); }
+	
+	/**
+	 * Register hibernate listeners that drop the cached decisions when an entity is changed.
+	 * The request scoped decisions of the current thread are dropped right away on any change or flush, the user scoped decisions
+	 * are dropped once the transaction is completed when a related entity is changed (so that a decision computed by another thread
+	 * from the old data in the meantime does not survive the change).
+	 */
+	public static void register(SessionFactory sessionFactory) {
+		EventListenerRegistry registry = ((SessionFactoryImplementor)sessionFactory).getServiceRegistry().getService(EventListenerRegistry.class);
+		InvalidationListener listener = new InvalidationListener();
+		registry.appendListeners(EventType.POST_INSERT, listener);
+		registry.appendListeners(EventType.POST_UPDATE, listener);
+		registry.appendListeners(EventType.POST_DELETE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+		registry.appendListeners(EventType.FLUSH, listener);
+		getStatistics();
+	}
+	
+	/**
+	 * Drop the cached decisions affected by a change of the given entity
+	 */
+	protected static void changed(EventSource session, Object entity) {
+		// any change may affect the decisions of the current request
+		Map<Key, Boolean> cache = sRequestCache.get();
+		if (cache != null) cache.clear();
+		// changes of a manager or of manager's roles only affect the manager, null means all users
+		final String externalUserId;
+		if (entity instanceof TimetableManager) {
+			externalUserId = ((TimetableManager)entity).getExternalUniqueId();
+		} else if (entity instanceof ManagerRole) {
+			TimetableManager manager = ((ManagerRole)entity).getTimetableManager();
+			externalUserId = (manager == null ? null : manager.getExternalUniqueId());
+		} else if (entity instanceof Roles || entity instanceof DepartmentStatusType || entity instanceof ExternalDepartmentStatusType || entity instanceof ExamStatus ||
+				entity instanceof StudentSectioningStatus || entity instanceof Session || entity instanceof Department || entity instanceof SolverGroup) {
+			externalUserId = null;
+		} else {
+			return;
+		}
+		session.getActionQueue().registerProcess(new AfterTransactionCompletionProcess() {
+			@Override
+			public void doAfterTransactionCompletion(boolean success, SessionImplementor session) {
+				if (externalUserId != null)
+					invalidate(externalUserId);
+				else
+					invalidateAll();
+			}
+		});
+	}
+	
+	protected static class InvalidationListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+		PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener, FlushEventListener {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		public void onFlush(FlushEvent event) {
+			Map<Key, Boolean> cache = sRequestCache.get();
+			if (cache != null) cache.clear();
+		}
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) { changed(event.getSession(), event.getEntity()); }
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) { changed(event.getSession(), event.getEntity()); }
+
+		@Override
+		public void onPostDelete(PostDeleteEvent event) { changed(event.getSession(), event.getEntity()); }
+
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) { return false; }
+
+		@Override
+		public void onPostRecreateCollection(PostCollectionRecreateEvent event) { collectionChanged(event); }
+
+		@Override
+		public void onPostUpdateCollection(PostCollectionUpdateEvent event) { collectionChanged(event); }
+
+		@Override
+		public void onPostRemoveCollection(PostCollectionRemoveEvent event) { collectionChanged(event); }
+		
+		protected void collectionChanged(AbstractCollectionEvent event) {
+			// e.g., rights of a role, or roles of a manager
+			changed(event.getSession(), event.getAffectedOwnerOrNull());
+		}
+	}
+	
+	protected static synchronized Statistics getStatistics() {
+		if (sStatistics == null) {
+			sStatistics = new Statistics();
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName objectName = new ObjectName("org.unitime:type=PermissionCache");
+				if (server.isRegistered(objectName))
+					server.unregisterMBean(objectName);
+				server.registerMBean(sStatistics, objectName);
+			} catch (Exception e) {
+				sLog.warn("Failed to register permission cache MBean: " + e.getMessage(), e);
+			}
+		}
+		return sStatistics;
+	}
+	
+	public static interface StatisticsMBean {
+		public long getHits();
+		public long getMisses();
+		public double getHitRatio();
+		public long getInvalidations();
+		public int getSize();
+		public void clear();
+	}
+	
+	public static class Statistics implements StatisticsMBean {
+		@Override
+		public long getHits() { return sHits.get(); }
+
+		@Override
+		public long getMisses() { return sMisses.get(); }
+
+		@Override
+		public double getHitRatio() {
+			long hits = sHits.get(), misses = sMisses.get();
+			return (hits + misses == 0 ? 0.0 : ((double)hits) / (hits + misses));
+		}
+
+		@Override
+		public long getInvalidations() { return sInvalidations.get(); }
+
+		@Override
+		public int getSize() { return sUserCache.size(); }
+
+		@Override
+		public void clear() { invalidateAll(); }
+	}
+	
+	/**
+	 * Cache key, null when the decision cannot be cached
+	 */
+	static Key key(UserContext user, Object target, String targetType, Right right) {
+		if (user == null || right == null || user.getExternalUserId() == null) return null;
+		UserAuthority authority = user.getCurrentAuthority();
+		if (authority == null) return null;
+		boolean request = (sRequestCache.get() != null);
+		boolean ttl = (ApplicationProperty.PermissionCacheTTL.intValue() > 0);
+		if (!request && !ttl) return null;
+		if (isMutable(target, targetType)) return null;
+		if (target == null || target instanceof Long || target instanceof String) {
+			return new Key(user, authority, targetType, target, right, false);
+		}
+		if (target instanceof Qualifiable && (targetType == null || targetType.equals(((Qualifiable)target).getQualifierType()))) {
+			Qualifiable q = (Qualifiable)target;
+			return new Key(user, authority, q.getQualifierType(), q.getQualifierId(), right, false);
+		}
+		if (!request || target instanceof Iterable || target.getClass().isArray()) return null;
+		return new Key(user, authority, targetType == null ? target.getClass().getName() : targetType, target, right, true);
+	}
+	
+	/**
+	 * Checks on events, meetings, and students are not cached: these entities are often changed in the same request
+	 * (e.g., a meeting approval) and the decision depends on their state
+	 */
+	static boolean isMutable(Object target, String targetType) {
+		if (target instanceof Event || target instanceof Meeting || target instanceof Student) return true;
+		if (targetType != null && (target == null || target instanceof Long || target instanceof String))
+			return "Event".equals(targetType) || "Meeting".equals(targetType) || "Student".equals(targetType);
+		return false;
+	}
+	
+	static Boolean get(Key key) {
+		if (key == null) return null;
+		Map<Key, Boolean> cache = sRequestCache.get();
+		Boolean ret = (cache == null ? null : cache.get(key));
+		if (ret == null && !key.iIdentity) {
+			Entry entry = sUserCache.get(key);
+			if (entry != null) {
+				if (entry.isValid())
+					ret = entry.iDecision;
+				else
+					sUserCache.remove(key);
+			}
+		}
+		if (ret == null)
+			sMisses.incrementAndGet();
+		else
+			sHits.incrementAndGet();
+		return ret;
+	}
+	
+	static void put(Key key, boolean decision) {
+		if (key == null) return;
+		Map<Key, Boolean> cache = sRequestCache.get();
+		if (cache != null) cache.put(key, decision);
+		int ttl = ApplicationProperty.PermissionCacheTTL.intValue();
+		if (ttl > 0 && !key.iIdentity) {
+			if (sUserCache.size() >= sUserCacheLimit) sUserCache.clear();
+			sUserCache.put(key, new Entry(decision, System.currentTimeMillis() + 1000l * ttl));
+		}
+	}
+	
+	static class Key {
+		private String iUser, iAuthority;
+		private Long iAuthorityId;
+		private String iType;
+		private Object iTarget;
+		private Right iRight;
+		private boolean iIdentity;
+		
+		Key(UserContext user, UserAuthority authority, String type, Object target, Right right, boolean identity) {
+			iUser = user.getExternalUserId();
+			iAuthority = authority.getAuthority();
+			iAuthorityId = authority.getUniqueId();
+			iType = type;
+			iTarget = target;
+			iRight = right;
+			iIdentity = identity;
+		}
+		
+		@Override
+		public int hashCode() {
+			int h = iUser.hashCode() ^ iRight.hashCode();
+			if (iAuthority != null) h ^= iAuthority.hashCode();
+			if (iTarget != null) h = 31 * h + (iIdentity ? System.identityHashCode(iTarget) : iTarget.hashCode());
+			return h;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (o == null || !(o instanceof Key)) return false;
+			Key k = (Key)o;
+			if (iRight != k.iRight || iIdentity != k.iIdentity) return false;
+			if (!iUser.equals(k.iUser) || !eq(iAuthority, k.iAuthority) || !eq(iAuthorityId, k.iAuthorityId) || !eq(iType, k.iType)) return false;
+			return (iIdentity ? iTarget == k.iTarget : eq(iTarget, k.iTarget));
+		}
+		
+		private static boolean eq(Object o1, Object o2) {
+			return (o1 == null ? o2 == null : o1.equals(o2));
+		}
+	}
+	
+	private static class Entry {
+		private boolean iDecision;
+		private long iValidUntil;
+		
+		Entry(boolean decision, long validUntil) {
+			iDecision = decision; iValidUntil = validUntil;
+		}
+		
+		boolean isValid() { return System.currentTimeMillis() < iValidUntil; }
+	}
+}
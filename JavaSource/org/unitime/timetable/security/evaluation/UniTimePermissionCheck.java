@@ -403,6 +403,16 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 			return true;
 		}
 		
+		PermissionCache.Key key = PermissionCache.key(user, targetId, targetType, right);
+		Boolean cached = PermissionCache.get(key);
+		if (cached != null) return cached;
+		
+		boolean ret = evaluatePermission(user, targetId, targetType, right);
+		PermissionCache.put(key, ret);
+		return ret;
+	}
+	
+	protected boolean evaluatePermission(UserContext user, Serializable targetId, String targetType, Right right) {
 		try {
 			String className = targetType;
 			if (className.indexOf('.') < 0) className = "org.unitime.timetable.model." + className;
@@ -502,7 +512,17 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 				if (!hasPermission(user, o, right)) return false;
 			return true;
 		}
-
+		
+		PermissionCache.Key key = PermissionCache.key(user, domainObject, domainObject instanceof Long && right.hasType() ? right.type().getSimpleName() : null, right);
+		Boolean cached = PermissionCache.get(key);
+		if (cached != null) return cached;
+		
+		boolean ret = evaluatePermission(user, domainObject, right);
+		PermissionCache.put(key, ret);
+		return ret;
+	}
+	
+	protected boolean evaluatePermission(UserContext user, Object domainObject, Right right) {
 		if (right.hasType() && !right.type().isInstance(domainObject)) {
 			if (domainObject instanceof Qualifiable) {
 				return hasPermission(user, ((Qualifiable)domainObject).getQualifierId(), ((Qualifiable)domainObject).getQualifierType(), right);
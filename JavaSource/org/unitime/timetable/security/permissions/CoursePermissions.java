@@ -39,6 +39,8 @@ import org.unitime.timetable.model.PreferenceGroup;
 import org.unitime.timetable.model.PreferenceLevel;
 import org.unitime.timetable.model.SchedulingSubpart;
 import org.unitime.timetable.model.SubjectArea;
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningBatch;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.custom.CustomStudentEnrollmentHolder;
 import org.unitime.timetable.onlinesectioning.model.XCourseRequest;
@@ -117,19 +119,26 @@ public class CoursePermissions {
 		@Override
 		public boolean check(UserContext user, InstructionalOffering source) {
 			if (!CustomStudentEnrollmentHolder.isAllowWaitListing()) return false;
-			if (!super.check(user, source)) return false;
-			if (!source.effectiveWaitList()) return false;
-			if (ApplicationProperty.ReservationLockCheckWaitList.isTrue()) {
-				OnlineSectioningServer server = getInstance(user.getCurrentAcademicSessionId());
-				Collection<XCourseRequest> requests = (server != null ? server.getRequests(source.getUniqueId()) : null);
-				if (requests != null)
-					for (XCourseRequest request: requests)
-						if (request.getEnrollment() == null && request.isWaitlist())
-							return true;
+			if (!ApplicationProperty.ReservationLockCheckWaitList.isTrue())
+				return super.check(user, source) && source.effectiveWaitList();
+			
+			if (source.isNotOffered() || !source.isAllowStudentScheduling() || !source.effectiveWaitList()) return false;
+			if (!permissionSession.check(user, source.getSession(), DepartmentStatusType.Status.StudentsOnline))
 				return false;
-			} else {
-				return true;
-			}
+			OnlineSectioningServer server = getInstance(user.getCurrentAcademicSessionId());
+			if (server == null) return false;
+			
+			// academic session, offering lock, and course requests using a single call when the server is remote
+			OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+			OnlineSectioningBatch.Result<AcademicSessionInfo> session = batch.add("getAcademicSession", new Class[] {});
+			OnlineSectioningBatch.Result<Boolean> locked = batch.add("isOfferingLocked", new Class[] { Long.class }, source.getUniqueId());
+			OnlineSectioningBatch.Result<Collection<XCourseRequest>> requests = batch.getRequests(source.getUniqueId());
+			if (!session.get().isSectioningEnabled() || locked.get()) return false;
+			if (requests.get() != null)
+				for (XCourseRequest request: requests.get())
+					if (request.getEnrollment() == null && request.isWaitlist())
+						return true;
+			return false;
 		}
 	}
 
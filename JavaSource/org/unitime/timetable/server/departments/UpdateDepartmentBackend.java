@@ -26,6 +26,7 @@ import java.util.List;
 
 import org.hibernate.Transaction;
 import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.events.EventResourceResolver;
 import org.unitime.timetable.gwt.client.departments.DepartmentsEdit.UpdateDepartmentRequest;
 import org.unitime.timetable.gwt.command.client.GwtRpcException;
 import org.unitime.timetable.gwt.command.server.GwtRpcImplementation;
@@ -213,6 +214,15 @@ public class UpdateDepartmentBackend implements GwtRpcImplementation<UpdateDepar
                  }
              }       		
         	 else {
+                 // bulk delete does not go through the hibernate listeners, notify the event resource cache about the affected students
+                 EventResourceResolver.changed(hibSession, EventResourceResolver.STUDENT, hibSession.createQuery(
+                         "select distinct e.student.uniqueId from StudentClassEnrollment e where e.clazz.uniqueId in " +
+                         "(select c.uniqueId from Class_ c, CourseOffering co where " +
+                         "co.isControl=true and " +
+                         "c.schedulingSubpart.instrOfferingConfig.instructionalOffering=co.instructionalOffering and "+
+                         "co.subjectArea.department.uniqueId=:deptId)").
+                         setLong("deptId", department.getUniqueId()).
+                         list());
                  hibSession.createQuery(
                          "delete StudentClassEnrollment e where e.clazz.uniqueId in " +
                          "(select c.uniqueId from Class_ c, CourseOffering co where " +
@@ -19,11 +19,16 @@
 */
 package org.unitime.timetable.solver;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
@@ -33,6 +38,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -61,6 +68,7 @@ import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.resources.CPSolverMessages;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
+import org.unitime.timetable.solver.remote.CompactBackupFormat;
 import org.unitime.timetable.util.Constants;
 
 /**
@@ -413,6 +421,14 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     		}
     }
     
+    /**
+     * Use the compact binary backup format (see {@link CompactBackupFormat}) instead of the pretty-printed XML.
+     * The compact format produces smaller files, the backup document is built in memory either way.
+     */
+    protected boolean isCompactBackup() {
+    	return "compact".equalsIgnoreCase(ApplicationProperty.SolverBackupFormat.value(getType().name().toLowerCase()));
+    }
+    
     @Override
     public boolean backup(File folder, String puid) {
         folder.mkdirs();
@@ -420,24 +436,32 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         Lock lock = currentSolution().getLock().readLock();
         lock.lock();
         try {
-            File outXmlFile = new File(folder, getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
+        	boolean compact = isCompactBackup();
+            File outFile = new File(folder, getType().getPrefix() + puid + (compact ? BackupFileFilter.sCompactExtension : BackupFileFilter.sXmlExtension));
+            File otherFile = new File(folder, getType().getPrefix() + puid + (compact ? BackupFileFilter.sXmlExtension : BackupFileFilter.sCompactExtension));
             try {
-                FileOutputStream fos = null;
+                OutputStream out = null;
                 try {
-                    fos = new FileOutputStream(outXmlFile);
                     Document document = createCurrentSolutionBackup(false, false);
                     saveProperties(document);
-                    (new XMLWriter(fos,OutputFormat.createPrettyPrint())).write(document);
-                    fos.flush(); fos.close(); fos=null;
+                    if (compact) {
+                    	out = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(outFile), 65536), 65536);
+                    	CompactBackupFormat.write(document, out);
+                    } else {
+                    	out = new FileOutputStream(outFile);
+                    	(new XMLWriter(out,OutputFormat.createPrettyPrint())).write(document);
+                    }
+                    out.flush(); out.close(); out=null;
                 } finally {
                     try {
-                        if (fos!=null) fos.close();
+                        if (out!=null) out.close();
                     } catch (IOException e) {}
                 }
+                if (otherFile.exists()) otherFile.delete();
                 return true;
             } catch (Exception e) {
                 sLog.error(e.getMessage(),e);
-                if (outXmlFile.exists()) outXmlFile.delete();
+                if (outFile.exists()) outFile.delete();
             }
         } finally {
         	lock.unlock();
@@ -456,13 +480,25 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
     public boolean restore(File folder, String puid, boolean removeFiles) {
         sLog.debug("restore(folder="+folder+","+puid+")");
         File inXmlFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sXmlExtension);
+        File inCompactFile = new File(folder,getType().getPrefix() + puid + BackupFileFilter.sCompactExtension);
+        boolean compact = inCompactFile.exists() && (!inXmlFile.exists() || inCompactFile.lastModified() >= inXmlFile.lastModified());
         
         M model = null;
         try {
             if (isRunning()) stopSolver();
             disposeNoInherit(false);
 
-            Document document = (new SAXReader()).read(inXmlFile);
+            Document document = null;
+            if (compact) {
+            	InputStream in = new BufferedInputStream(new GZIPInputStream(new FileInputStream(inCompactFile), 65536), 65536);
+            	try {
+            		document = CompactBackupFormat.read(in);
+            	} finally {
+            		in.close();
+            	}
+            } else {
+            	document = (new SAXReader()).read(inXmlFile);
+            }
             readProperties(document);
             
             model = createModel(getProperties());
@@ -474,7 +510,8 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
             Progress.getInstance(model).setStatus(MSG.statusReady());
             
             if (removeFiles) {
-                inXmlFile.delete();
+                if (inXmlFile.exists()) inXmlFile.delete();
+                if (inCompactFile.exists()) inCompactFile.delete();
             }
             
             return true;
@@ -575,6 +612,17 @@ public abstract class AbstractSolver<V extends Variable<V, T>, T extends Value<V
         return true;
     }
 
+    /**
+     * Estimated size of the solver (number of variables and constraints of the model), zero when passivated.
+     * Used as an estimate of the memory footprint and of the time needed to restore the solver after passivation.
+     */
+    public synchronized long getEstimatedFootprint() {
+    	if (isPassivated()) return 0;
+    	Solution<V, T> solution = super.currentSolution();
+    	if (solution == null || solution.getModel() == null) return 0;
+    	return solution.getModel().variables().size() + solution.getModel().constraints().size();
+    }
+    
     @Override
     public synchronized boolean passivateIfNeeded(File folder, String puid) {
     	if (!canPassivate()) return false;
@@ -19,141 +19,360 @@
 */
 package org.unitime.timetable.solver;
 
-import java.util.Hashtable;
-import java.util.Iterator;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
-import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.interfaces.RoomAvailabilityInterface.TimeBlock;
 import org.unitime.timetable.model.Assignment;
 import org.unitime.timetable.model.Class_;
+import org.unitime.timetable.model.Department;
+import org.unitime.timetable.model.DepartmentalInstructor;
+import org.unitime.timetable.model.Location;
+import org.unitime.timetable.model.dao.Class_DAO;
+import org.unitime.timetable.model.dao.DatePatternDAO;
+import org.unitime.timetable.model.dao.DepartmentalInstructorDAO;
+import org.unitime.timetable.model.dao.LocationDAO;
+import org.unitime.timetable.model.dao.TimePatternDAO;
 import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
 
 
 /**
+ * Bounded (least recently used) cache of class assignments and assignment infos of a {@link ClassAssignmentProxy}, keyed by class id.<br>
+ * Caches of a course timetabling solver are shared by all the requests for the same solution (see {@link #getInstance(String, SolverProxy)}):
+ * a shared cache is dropped when the solution version ({@link SolverProxy#getSolutionVersion()}) changes, e.g., after an interactive change or a commit,
+ * or when the solver is unloaded ({@link #evict(String)}). Misses are resolved in bulk, whole subject areas or offerings can be pre-fetched at once.<br>
+ * Only classes owned by the solver (managed by one of the solver's departments, see {@link SolverProxy#getDepartmentIds()}) are cached,
+ * other classes are taken from the committed solutions and these may change without the solution version being changed.
+ * The shared cache only holds identifiers: assignments are not cached as Hibernate objects (which cannot be shared between requests),
+ * but as plain holders of the class, room, instructor, and pattern ids. Each request gets its own instance of this class (over the shared cache),
+ * and a holder is turned into an {@link Assignment} of the current Hibernate session only on the first hit of the request, the resolved assignment
+ * is then kept for the rest of the request. The rooms, instructors, and patterns are looked up by their ids, these come from the session or
+ * from the second level cache.<br>
+ * Hit and miss counts are published through JMX (see {@link StatisticsMBean}).
+ * 
  * @author Tomas Muller
  */
 public class CachedClassAssignmentProxy implements ClassAssignmentProxy {
-	private static Object sNULL = Boolean.FALSE;
+	private static Log sLog = LogFactory.getLog(CachedClassAssignmentProxy.class);
+	private static final int sMaxSharedCaches = 100;
+	private static Map<String, SharedCache> sSharedCaches = new LinkedHashMap<String, SharedCache>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SharedCache> eldest) {
+			return size() > sMaxSharedCaches;
+		}
+	};
+	private static Statistics sStatistics = null;
+	
 	private ClassAssignmentProxy iProxy;
-	private Hashtable iAssignmentTable = new Hashtable();
-	private Hashtable iAssignmentInfoTable = new Hashtable();
+	private SharedCache iShared;
+	private Map<Long, Assignment> iResolved = new HashMap<Long, Assignment>();
 	
 	public CachedClassAssignmentProxy(ClassAssignmentProxy proxy) {
+		this(proxy, -1, ApplicationProperty.ClassAssignmentCacheSize.intValue(), proxy instanceof SolverProxy ? ((SolverProxy)proxy).getDepartmentIds() : null);
+	}
+	
+	/**
+	 * @param departmentIds departments of the classes that can be cached (null if all classes can be cached)
+	 */
+	protected CachedClassAssignmentProxy(ClassAssignmentProxy proxy, long version, int capacity, Set<Long> departmentIds) {
+		this(proxy, new SharedCache(version, capacity, departmentIds));
+	}
+	
+	private CachedClassAssignmentProxy(ClassAssignmentProxy proxy, SharedCache shared) {
 		iProxy = proxy;
+		iShared = shared;
 	}
 	
-	public Assignment getAssignment(Long classId) {
-		Object cached = iAssignmentTable.get(classId);
-		if (cached!=null) {
-			return (sNULL.equals(cached)?null:(Assignment)cached);
+	/**
+	 * Returns a cache over the class assignments shared by all requests for the current solution of the given solver. A new shared cache is created when there is none,
+	 * or when the solution version has changed since the cache was created. While the solver is running, a request-private cache is returned.
+	 * The returned instance is meant to be used by one request only (it keeps the assignments resolved in the request's Hibernate session).
+	 * @param solverId solver identification (owner id of the course timetabling solver)
+	 * @param solver course timetabling solver
+	 */
+	public static CachedClassAssignmentProxy getInstance(String solverId, SolverProxy solver) {
+		long version = solver.getSolutionVersion();
+		if (solverId == null || version < 0)
+			return new CachedClassAssignmentProxy(solver);
+		synchronized (sSharedCaches) {
+			SharedCache cache = sSharedCaches.get(solverId);
+			if (cache == null || cache.iVersion != version) {
+				if (cache != null) getStatistics().iInvalidations.incrementAndGet();
+				cache = new SharedCache(version, ApplicationProperty.ClassAssignmentCacheSize.intValue(), solver.getDepartmentIds());
+				sSharedCaches.put(solverId, cache);
+			}
+			return new CachedClassAssignmentProxy(solver, cache);
+		}
+	}
+	
+	/**
+	 * Returns a new instance over the same shared cache, to be used by another request
+	 */
+	public CachedClassAssignmentProxy newRequest() {
+		return new CachedClassAssignmentProxy(iProxy, iShared);
+	}
+	
+	/**
+	 * Drop the shared cache of the given solver (e.g., when the solver is unloaded)
+	 */
+	public static void evict(String solverId) {
+		if (solverId == null) return;
+		synchronized (sSharedCaches) {
+			if (sSharedCaches.remove(solverId) != null)
+				getStatistics().iInvalidations.incrementAndGet();
 		}
+	}
+	
+	protected static synchronized Statistics getStatistics() {
+		if (sStatistics == null) {
+			sStatistics = new Statistics();
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName objectName = new ObjectName("org.unitime:type=ClassAssignmentCache");
+				if (server.isRegistered(objectName))
+					server.unregisterMBean(objectName);
+				server.registerMBean(sStatistics, objectName);
+			} catch (Exception e) {
+				sLog.warn("Failed to register class assignment cache MBean: " + e.getMessage(), e);
+			}
+		}
+		return sStatistics;
+	}
+	
+	protected static Long getClassId(Object classOrClassId) {
+		if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
+		return (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
+	}
+	
+	/**
+	 * True if the assignment of the given class comes from the solver (and it can be cached). Classes given by their ids are
+	 * always resolved by the solver, classes of other departments are taken from the committed solutions.
+	 */
+	protected boolean isCacheable(Object classOrClassId) {
+		if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
+		if (iShared.iDepartmentIds == null || !(classOrClassId instanceof Class_)) return true;
+		Department dept = ((Class_)classOrClassId).getManagingDept();
+		return dept != null && iShared.iDepartmentIds.contains(dept.getUniqueId());
+	}
+	
+	private CachedClass lookup(Long classId, boolean info) {
+		CachedClass cached = null;
+		synchronized (iShared.iCache) {
+			cached = iShared.iCache.get(classId);
+		}
+		if (cached != null && (info ? cached.hasInfo() : cached.hasAssignment())) {
+			iShared.iHits.incrementAndGet();
+			getStatistics().iHits.incrementAndGet();
+			return cached;
+		}
+		iShared.iMisses.incrementAndGet();
+		getStatistics().iMisses.incrementAndGet();
+		return null;
+	}
+	
+	private void store(Long classId, Assignment assignment, boolean hasAssignment, AssignmentPreferenceInfo info, boolean hasInfo) {
+		if (hasAssignment && assignment != null)
+			iResolved.put(classId, assignment);
+		synchronized (iShared.iCache) {
+			CachedClass cached = iShared.iCache.get(classId);
+			if (cached == null) {
+				cached = new CachedClass();
+				iShared.iCache.put(classId, cached);
+			}
+			if (hasAssignment) cached.setAssignment(assignment == null ? null : new CachedAssignment(assignment));
+			if (hasInfo) cached.setInfo(info);
+		}
+	}
+	
+	/**
+	 * Assignment of a cache hit, the cached holder is only resolved once per request
+	 */
+	private Assignment resolve(Long classId, CachedClass cached) {
+		CachedAssignment holder = cached.getAssignment();
+		if (holder == null) return null;
+		Assignment assignment = iResolved.get(classId);
+		if (assignment == null) {
+			assignment = holder.toAssignment();
+			iResolved.put(classId, assignment);
+		}
+		return assignment;
+	}
+	
+	@Override
+	public Assignment getAssignment(Long classId) {
+		CachedClass cached = lookup(classId, false);
+		if (cached != null) return resolve(classId, cached);
 		Assignment assignment = iProxy.getAssignment(classId);
-		iAssignmentTable.put(classId, (assignment==null?sNULL:assignment));
+		store(classId, assignment, true, null, false);
 		return assignment;
 	}
 	
+	@Override
 	public Assignment getAssignment(Class_ clazz) {
-		Object cached = iAssignmentTable.get(clazz.getUniqueId());
-		if (cached!=null) {
-			return (sNULL.equals(cached)?null:(Assignment)cached);
-		}
+		if (!isCacheable(clazz)) return iProxy.getAssignment(clazz);
+		CachedClass cached = lookup(clazz.getUniqueId(), false);
+		if (cached != null) return resolve(clazz.getUniqueId(), cached);
 		Assignment assignment = iProxy.getAssignment(clazz);
-		iAssignmentTable.put(clazz.getUniqueId(), (assignment==null?sNULL:assignment));
+		store(clazz.getUniqueId(), assignment, true, null, false);
 		return assignment;
 	}
 	
+	@Override
 	public AssignmentPreferenceInfo getAssignmentInfo(Long classId) {
-		Object cached = iAssignmentInfoTable.get(classId);
-		if (cached!=null) {
-			return (sNULL.equals(cached)?null:(AssignmentPreferenceInfo)cached);
-		}
+		CachedClass cached = lookup(classId, true);
+		if (cached != null) return cached.getInfo();
 		AssignmentPreferenceInfo info = iProxy.getAssignmentInfo(classId);
-		iAssignmentInfoTable.put(classId, (info==null?sNULL:info));
+		store(classId, null, false, info, true);
 		return info;
 	}
 	
+	@Override
 	public AssignmentPreferenceInfo getAssignmentInfo(Class_ clazz) {
-		Object cached = iAssignmentInfoTable.get(clazz.getUniqueId());
-		if (cached!=null) {
-			return (sNULL.equals(cached)?null:(AssignmentPreferenceInfo)cached);
-		}
+		if (!isCacheable(clazz)) return iProxy.getAssignmentInfo(clazz);
+		CachedClass cached = lookup(clazz.getUniqueId(), true);
+		if (cached != null) return cached.getInfo();
 		AssignmentPreferenceInfo info = iProxy.getAssignmentInfo(clazz);
-		iAssignmentInfoTable.put(clazz.getUniqueId(), (info==null?sNULL:info));
+		store(clazz.getUniqueId(), null, false, info, true);
 		return info;
 	}
 	
-	public Hashtable getAssignmentTable(Collection classesOrClassIds) {
-		Hashtable assignments = new Hashtable();
-		Vector unknown = new Vector();
-		for (Iterator i=classesOrClassIds.iterator();i.hasNext();) {
-			Object classOrClassId = i.next();
-			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
-			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
-			Object cached = iAssignmentTable.get(classId);
-			if (cached!=null) {
-				if (!sNULL.equals(cached)) assignments.put(classId, cached);
+	@Override
+	public Hashtable<Long, Assignment> getAssignmentTable(Collection classesOrClassIds) {
+		Hashtable<Long, Assignment> assignments = new Hashtable<Long, Assignment>();
+		List<Object> unknown = new ArrayList<Object>();
+		List<Object> other = new ArrayList<Object>();
+		for (Object classOrClassId: classesOrClassIds) {
+			if (!isCacheable(classOrClassId)) { other.add(classOrClassId); continue; }
+			Long classId = getClassId(classOrClassId);
+			CachedClass cached = lookup(classId, false);
+			if (cached != null) {
+				Assignment assignment = resolve(classId, cached);
+				if (assignment != null) assignments.put(classId, assignment);
 			} else {
 				unknown.add(classOrClassId);
 			}
 		}
-		Hashtable newAssignments = iProxy.getAssignmentTable(unknown);
-		for (Enumeration e=unknown.elements();e.hasMoreElements();) {
-			Object classOrClassId = e.nextElement();
-			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
-			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
-			Assignment assignment = (Assignment) newAssignments.get(classId);
-			iAssignmentTable.put(classId, (assignment==null?sNULL:assignment));
-			if (assignment!=null)
-				assignments.put(classId, assignment);
+		if (!unknown.isEmpty()) {
+			Map<Long, Assignment> newAssignments = iProxy.getAssignmentTable(unknown);
+			for (Object classOrClassId: unknown) {
+				Long classId = getClassId(classOrClassId);
+				Assignment assignment = newAssignments.get(classId);
+				store(classId, assignment, true, null, false);
+				if (assignment != null)
+					assignments.put(classId, assignment);
+			}
 		}
+		if (!other.isEmpty())
+			assignments.putAll(iProxy.getAssignmentTable(other));
 		return assignments;
 	}
 	
-	public Hashtable getAssignmentInfoTable(Collection classesOrClassIds) {
-		Hashtable infos = new Hashtable();
-		Vector unknown = new Vector();
-		for (Iterator i=classesOrClassIds.iterator();i.hasNext();) {
-			Object classOrClassId = i.next();
-			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
-			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
-			Object cached = iAssignmentInfoTable.get(classId);
-			if (cached!=null) {
-				if (!sNULL.equals(cached)) infos.put(classId, cached);
+	@Override
+	public Hashtable<Long, AssignmentPreferenceInfo> getAssignmentInfoTable(Collection classesOrClassIds) {
+		Hashtable<Long, AssignmentPreferenceInfo> infos = new Hashtable<Long, AssignmentPreferenceInfo>();
+		List<Object> unknown = new ArrayList<Object>();
+		List<Object> other = new ArrayList<Object>();
+		for (Object classOrClassId: classesOrClassIds) {
+			if (!isCacheable(classOrClassId)) { other.add(classOrClassId); continue; }
+			Long classId = getClassId(classOrClassId);
+			CachedClass cached = lookup(classId, true);
+			if (cached != null) {
+				if (cached.getInfo() != null) infos.put(classId, cached.getInfo());
 			} else {
 				unknown.add(classOrClassId);
 			}
 		}
-		Hashtable newInfos = iProxy.getAssignmentInfoTable(unknown);
-		for (Enumeration e=unknown.elements();e.hasMoreElements();) {
-			Object classOrClassId = e.nextElement();
-			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
-			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
-			AssignmentPreferenceInfo info = (AssignmentPreferenceInfo) newInfos.get(classId);
-			iAssignmentInfoTable.put(classId, (info==null?sNULL:info));
-			if (info!=null)
-				infos.put(classId, info);
+		if (!unknown.isEmpty()) {
+			Map<Long, AssignmentPreferenceInfo> newInfos = iProxy.getAssignmentInfoTable(unknown);
+			for (Object classOrClassId: unknown) {
+				Long classId = getClassId(classOrClassId);
+				AssignmentPreferenceInfo info = newInfos.get(classId);
+				store(classId, null, false, info, true);
+				if (info != null)
+					infos.put(classId, info);
+			}
 		}
+		if (!other.isEmpty())
+			infos.putAll(iProxy.getAssignmentInfoTable(other));
 		return infos;
 	}
 	
+	/**
+	 * Make sure that both the assignments and the assignment infos of the given classes are cached, using one bulk call for each
+	 * of the two tables (only classes that are not cached yet are requested). Classes that are not owned by the solver are skipped.
+	 */
 	public void setCache(Collection classesOrClassIds) {
-		Vector classesOrClassIdsVect = (classesOrClassIds instanceof Vector ? (Vector)classesOrClassIds : new Vector(classesOrClassIds));
-		Hashtable newAssignments = iProxy.getAssignmentTable(classesOrClassIdsVect);
-		Hashtable newInfos = iProxy.getAssignmentInfoTable(classesOrClassIdsVect);
-		for (Enumeration e=classesOrClassIdsVect.elements();e.hasMoreElements();) {
-			Object classOrClassId = e.nextElement();
-			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
-			Long classId = (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
-			Assignment assignment = (Assignment) newAssignments.get(classId);
-			iAssignmentTable.put(classId, (assignment==null?sNULL:assignment));
-			AssignmentPreferenceInfo info = (AssignmentPreferenceInfo) newInfos.get(classId);
-			iAssignmentInfoTable.put(classId, (info==null?sNULL:info));
+		List<Object> unknownAssignments = new ArrayList<Object>();
+		List<Object> unknownInfos = new ArrayList<Object>();
+		synchronized (iShared.iCache) {
+			for (Object classOrClassId: classesOrClassIds) {
+				if (!isCacheable(classOrClassId)) continue;
+				CachedClass cached = iShared.iCache.get(getClassId(classOrClassId));
+				if (cached == null || !cached.hasAssignment()) unknownAssignments.add(classOrClassId);
+				if (cached == null || !cached.hasInfo()) unknownInfos.add(classOrClassId);
+			}
+		}
+		getStatistics().iPrefetched.addAndGet(Math.max(unknownAssignments.size(), unknownInfos.size()));
+		if (!unknownAssignments.isEmpty()) {
+			Map<Long, Assignment> newAssignments = iProxy.getAssignmentTable(unknownAssignments);
+			for (Object classOrClassId: unknownAssignments) {
+				Long classId = getClassId(classOrClassId);
+				store(classId, newAssignments.get(classId), true, null, false);
+			}
 		}
+		if (!unknownInfos.isEmpty()) {
+			Map<Long, AssignmentPreferenceInfo> newInfos = iProxy.getAssignmentInfoTable(unknownInfos);
+			for (Object classOrClassId: unknownInfos) {
+				Long classId = getClassId(classOrClassId);
+				store(classId, null, false, newInfos.get(classId), true);
+			}
+		}
+	}
+	
+	/**
+	 * Pre-fetch all classes of all the offerings of the given subject area (including offerings that are only cross-listed with the subject area)
+	 */
+	public void prefetchSubjectArea(Long subjectAreaId) {
+		setCache(Class_DAO.getInstance().getSession().createQuery(
+				"select distinct c from Class_ c inner join c.schedulingSubpart.instrOfferingConfig.instructionalOffering.courseOfferings co " +
+				"where co.subjectArea.uniqueId = :subjectAreaId")
+				.setLong("subjectAreaId", subjectAreaId).setCacheable(true).list());
+	}
+	
+	/**
+	 * Pre-fetch all classes of the given instructional offering (all configurations)
+	 */
+	public void prefetchOffering(Long offeringId) {
+		setCache(Class_DAO.getInstance().getSession().createQuery(
+				"select c from Class_ c where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId = :offeringId")
+				.setLong("offeringId", offeringId).setCacheable(true).list());
 	}
 	
+	/** Number of cached classes */
+	public int size() { return iShared.size(); }
+	
+	/** Solution version for which the cache was created, -1 if the cache is not shared */
+	public long getVersion() { return iShared.iVersion; }
+	public long getHits() { return iShared.iHits.get(); }
+	public long getMisses() { return iShared.iMisses.get(); }
+	public long getEvictions() { return iShared.iEvictions.get(); }
+	
 	@Override
 	public boolean hasConflicts(Long offeringId) {
 		return iProxy.hasConflicts(offeringId);
@@ -168,4 +387,182 @@ public class CachedClassAssignmentProxy implements ClassAssignmentProxy {
 	public Set<TimeBlock> getConflictingTimeBlocks(Long classId) {
 		return iProxy.getConflictingTimeBlocks(classId);
 	}
+	
+	/**
+	 * Cached classes of one solution, shared by all the requests (only holds identifiers and assignment infos)
+	 */
+	private static class SharedCache {
+		private long iVersion = -1;
+		private int iCapacity;
+		private LinkedHashMap<Long, CachedClass> iCache;
+		private Set<Long> iDepartmentIds;
+		private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0), iEvictions = new AtomicLong(0);
+		
+		private SharedCache(long version, int capacity, Set<Long> departmentIds) {
+			iVersion = version;
+			iCapacity = capacity;
+			iDepartmentIds = (departmentIds == null ? null : new HashSet<Long>(departmentIds));
+			iCache = new LinkedHashMap<Long, CachedClass>(Math.min(1024, Math.max(16, capacity)), 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, CachedClass> eldest) {
+					if (size() > iCapacity) {
+						iEvictions.incrementAndGet();
+						getStatistics().iEvictions.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+		
+		private int size() {
+			synchronized (iCache) {
+				return iCache.size();
+			}
+		}
+	}
+	
+	private static class CachedClass {
+		private volatile CachedAssignment iAssignment = null;
+		private volatile AssignmentPreferenceInfo iInfo = null;
+		private volatile boolean iHasAssignment = false, iHasInfo = false;
+		
+		public boolean hasAssignment() { return iHasAssignment; }
+		public CachedAssignment getAssignment() { return iAssignment; }
+		public void setAssignment(CachedAssignment assignment) { iAssignment = assignment; iHasAssignment = true; }
+		
+		public boolean hasInfo() { return iHasInfo; }
+		public AssignmentPreferenceInfo getInfo() { return iInfo; }
+		public void setInfo(AssignmentPreferenceInfo info) { iInfo = info; iHasInfo = true; }
+	}
+	
+	/**
+	 * Class assignment without any references to Hibernate objects, these are looked up in the current session when needed
+	 */
+	protected static class CachedAssignment {
+		private Long iUniqueId, iClassId;
+		private String iClassName;
+		private Integer iDays, iStartSlot;
+		private int iSlotsPerMtg, iBreakTime;
+		private Long iDatePatternId, iTimePatternId;
+		private List<Long> iRoomIds = new ArrayList<Long>();
+		private List<Long> iInstructorIds = new ArrayList<Long>();
+		
+		protected CachedAssignment(Assignment assignment) {
+			iUniqueId = assignment.getUniqueId();
+			iClassId = (assignment.getClazz() == null ? assignment.getClassId() : assignment.getClazz().getUniqueId());
+			iClassName = assignment.getClassName();
+			iDays = assignment.getDays();
+			iStartSlot = assignment.getStartSlot();
+			iSlotsPerMtg = (assignment.getTimePattern() == null ? -1 : assignment.getSlotPerMtg());
+			iBreakTime = (assignment.getTimePattern() == null ? -1 : assignment.getBreakTime());
+			iDatePatternId = (assignment.getDatePattern() == null ? null : assignment.getDatePattern().getUniqueId());
+			iTimePatternId = (assignment.getTimePattern() == null ? null : assignment.getTimePattern().getUniqueId());
+			if (assignment.getRooms() != null)
+				for (Location room: assignment.getRooms())
+					iRoomIds.add(room.getUniqueId());
+			if (assignment.getInstructors() != null)
+				for (DepartmentalInstructor instructor: assignment.getInstructors())
+					iInstructorIds.add(instructor.getUniqueId());
+		}
+		
+		protected Assignment toAssignment() {
+			Assignment assignment = new Assignment();
+			assignment.setUniqueId(iUniqueId);
+			assignment.setClassId(iClassId);
+			assignment.setClassName(iClassName);
+			assignment.setDays(iDays);
+			assignment.setStartSlot(iStartSlot);
+			if (iSlotsPerMtg >= 0) assignment.setSlotsPerMtg(iSlotsPerMtg);
+			if (iBreakTime >= 0) assignment.setBreakTime(iBreakTime);
+			if (iDatePatternId != null)
+				assignment.setDatePattern(DatePatternDAO.getInstance().get(iDatePatternId));
+			if (iTimePatternId != null)
+				assignment.setTimePattern(TimePatternDAO.getInstance().get(iTimePatternId));
+			Set<Location> rooms = new HashSet<Location>();
+			for (Long roomId: iRoomIds) {
+				Location room = LocationDAO.getInstance().get(roomId);
+				if (room != null) rooms.add(room);
+			}
+			assignment.setRooms(rooms);
+			Set<DepartmentalInstructor> instructors = new HashSet<DepartmentalInstructor>();
+			for (Long instructorId: iInstructorIds) {
+				DepartmentalInstructor instructor = DepartmentalInstructorDAO.getInstance().get(instructorId);
+				if (instructor != null) instructors.add(instructor);
+			}
+			assignment.setInstructors(instructors);
+			return assignment;
+		}
+	}
+	
+	/**
+	 * JMX interface of the class assignment cache statistics
+	 */
+	public static interface StatisticsMBean {
+		public long getHits();
+		public long getMisses();
+		public double getHitRatio();
+		public long getEvictions();
+		public long getInvalidations();
+		public long getPrefetchedClasses();
+		public int getCapacity();
+		public int getNrSharedCaches();
+		public String[] getSharedCaches();
+		public void clear();
+	}
+	
+	public static class Statistics implements StatisticsMBean {
+		private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0), iEvictions = new AtomicLong(0), iInvalidations = new AtomicLong(0), iPrefetched = new AtomicLong(0);
+		
+		@Override
+		public long getHits() { return iHits.get(); }
+		
+		@Override
+		public long getMisses() { return iMisses.get(); }
+		
+		@Override
+		public double getHitRatio() {
+			long hits = iHits.get(), total = hits + iMisses.get();
+			return (total == 0 ? 0.0 : ((double)hits) / total);
+		}
+		
+		@Override
+		public long getEvictions() { return iEvictions.get(); }
+		
+		@Override
+		public long getInvalidations() { return iInvalidations.get(); }
+		
+		@Override
+		public long getPrefetchedClasses() { return iPrefetched.get(); }
+		
+		@Override
+		public int getCapacity() { return ApplicationProperty.ClassAssignmentCacheSize.intValue(); }
+		
+		@Override
+		public int getNrSharedCaches() {
+			synchronized (sSharedCaches) {
+				return sSharedCaches.size();
+			}
+		}
+		
+		@Override
+		public String[] getSharedCaches() {
+			List<String> ret = new ArrayList<String>();
+			synchronized (sSharedCaches) {
+				for (Map.Entry<String, SharedCache> e: sSharedCaches.entrySet()) {
+					SharedCache cache = e.getValue();
+					ret.add(e.getKey() + ": version=" + cache.iVersion + ", size=" + cache.size() + ", hits=" + cache.iHits.get() + ", misses=" + cache.iMisses.get() + ", evictions=" + cache.iEvictions.get());
+				}
+			}
+			return ret.toArray(new String[ret.size()]);
+		}
+		
+		@Override
+		public void clear() {
+			synchronized (sSharedCaches) {
+				sSharedCaches.clear();
+			}
+		}
+	}
 }
@@ -20,67 +20,365 @@
 package org.unitime.timetable.solver;
 
 import java.io.File;
-import java.util.Iterator;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.unitime.timetable.solver.exam.ExamSolverProxy;
-import org.unitime.timetable.solver.studentsct.StudentSolverProxy;
+import org.unitime.timetable.defaults.ApplicationProperty;
 
 /**
+ * Passivation of idle solvers, shared by all the solver containers of the JVM.<br>
+ * Each registered solver is passivated when it has not been used for {@link ApplicationProperty#SolverPasivationTime} minutes.
+ * Besides that, heap usage is watched using the {@link MemoryPoolMXBean} thresholds of the heap pools: when the live heap
+ * (usage after the last garbage collection) goes over {@link ApplicationProperty#SolverPassivationHeapThreshold} percent,
+ * the solvers that are not working and have been idle for at least {@link ApplicationProperty#SolverPassivationMinIdleTime} minutes
+ * are ranked by their estimated size discounted by their idle time (smaller and longer idle solvers are cheaper to restore)
+ * and the cheapest one is passivated. Since the usage after the last collection does not change until the next garbage collection,
+ * only one solver is passivated per check: the next solver is only considered after the heap usage has been re-measured following
+ * a garbage collection, which is repeated until the heap usage gets under the threshold.<br>
+ * All passivation decisions are logged and exposed, together with counters, through JMX.
+ * 
  * @author Tomas Muller
  */
-public class SolverPassivationThread extends Thread {
+public class SolverPassivationThread extends Thread implements SolverPassivationThreadMBean {
 	private static Log sLog = LogFactory.getLog(SolverPassivationThread.class);
-	private File iFolder = null;
-	private Map<String, ? extends SolverProxy> iSolvers = null;
-	private Map<String, ? extends ExamSolverProxy> iExamSolvers = null;
-	private Map<String, ? extends StudentSolverProxy> iStudentSolvers = null;
+	private static SolverPassivationThread sInstance = null;
 	public static long sDelay = 30000;
+	private static final int sMaxDecisions = 100;
+	private static DecimalFormat sDF = new DecimalFormat("0.0");
+	
+	private Map<String, Container> iContainers = new Hashtable<String, Container>();
+	private List<MemoryPoolMXBean> iPools = new ArrayList<MemoryPoolMXBean>();
+	private NotificationListener iListener = null;
+	private ObjectName iObjectName = null;
+	private boolean iContinue = true;
+	private boolean iPressure = false;
+	private LinkedList<String> iDecisions = new LinkedList<String>();
+	private long iNrChecks = 0, iNrIdlePassivations = 0, iNrPressurePassivations = 0, iNrPressureEvents = 0, iNrUnresolvedPressureEvents = 0;
+	private double iHeapUsage = 0.0;
+	private long iPassivationCollectionCount = -1;
 	
-	public SolverPassivationThread(File folder, Map<String, ? extends SolverProxy> solvers, Map<String, ? extends ExamSolverProxy> examSolvers, Map<String, ? extends StudentSolverProxy> studentSolvers) {
-		iFolder = folder;
-		iSolvers = solvers;
-		iExamSolvers = examSolvers;
-		iStudentSolvers = studentSolvers;
+	private SolverPassivationThread() {
 		setName("SolverPasivationThread");
 		setDaemon(true);
 		setPriority(Thread.MIN_PRIORITY);
 	}
 	
+	/**
+	 * Register solvers of a container, the passivation thread is started with the first container
+	 * @param name container name (e.g., CourseTimetabling)
+	 * @param folder passivation folder
+	 * @param solvers solvers of the container (the map is read by the passivation thread, it must be thread safe)
+	 */
+	public static synchronized void register(String name, File folder, Map<String, ? extends AbstractSolver<?, ?, ?>> solvers) {
+		if (sInstance == null) {
+			sInstance = new SolverPassivationThread();
+			sInstance.startMonitoring();
+			sInstance.start();
+		}
+		sInstance.iContainers.put(name, new Container(name, folder, solvers));
+	}
+	
+	/**
+	 * Unregister solvers of a container, the passivation thread is stopped when there are no containers left
+	 */
+	public static synchronized void unregister(String name) {
+		if (sInstance == null) return;
+		sInstance.iContainers.remove(name);
+		if (sInstance.iContainers.isEmpty()) {
+			sInstance.destroy();
+			sInstance = null;
+		}
+	}
+	
+	public static synchronized SolverPassivationThread getInstance() {
+		return sInstance;
+	}
+	
+	protected void startMonitoring() {
+		int threshold = ApplicationProperty.SolverPassivationHeapThreshold.intValue();
+		for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isValid() || pool.getUsage().getMax() <= 0) continue;
+			// only watch the pools with thresholds (typically the old generation)
+			if (pool.isCollectionUsageThresholdSupported()) {
+				if (threshold > 0 && threshold < 100)
+					pool.setCollectionUsageThreshold(pool.getUsage().getMax() * threshold / 100);
+				iPools.add(pool);
+			} else if (pool.isUsageThresholdSupported()) {
+				if (threshold > 0 && threshold < 100)
+					pool.setUsageThreshold(pool.getUsage().getMax() * threshold / 100);
+				iPools.add(pool);
+			}
+		}
+		if (threshold > 0 && threshold < 100 && !iPools.isEmpty()) {
+			iListener = new NotificationListener() {
+				@Override
+				public void handleNotification(Notification notification, Object handback) {
+					if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()) ||
+						MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+						wakeUp();
+					}
+				}
+			};
+			((NotificationEmitter)ManagementFactory.getMemoryMXBean()).addNotificationListener(iListener, null, null);
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			iObjectName = new ObjectName("org.unitime:type=SolverPassivation");
+			if (!server.isRegistered(iObjectName))
+				server.registerMBean(this, iObjectName);
+			else
+				iObjectName = null;
+		} catch (Exception e) {
+			sLog.warn("Failed to register solver passivation MBean: " + e.getMessage(), e);
+			iObjectName = null;
+		}
+	}
+	
+	protected void stopMonitoring() {
+		if (iListener != null) {
+			try {
+				((NotificationEmitter)ManagementFactory.getMemoryMXBean()).removeNotificationListener(iListener);
+			} catch (Exception e) {}
+			iListener = null;
+		}
+		if (iObjectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(iObjectName);
+			} catch (Exception e) {}
+			iObjectName = null;
+		}
+	}
+	
+	protected synchronized void wakeUp() {
+		iPressure = true;
+		notify();
+	}
+	
+	@Override
 	public void run() {
 		try {
             sLog.info("Solver passivation thread started.");
-			while (true) {
-				for (Iterator i=iSolvers.entrySet().iterator();i.hasNext();) {
-					Map.Entry entry = (Map.Entry)i.next();
-					String puid = (String)entry.getKey();
-					SolverProxy solver = (SolverProxy)entry.getValue();
-					solver.passivateIfNeeded(iFolder, puid);
-				}
-                for (Iterator i=iExamSolvers.entrySet().iterator();i.hasNext();) {
-                    Map.Entry entry = (Map.Entry)i.next();
-                    String puid = (String)entry.getKey();
-                    ExamSolverProxy solver = (ExamSolverProxy)entry.getValue();
-                    solver.passivateIfNeeded(iFolder, puid);
-                }
-                for (Iterator i=iStudentSolvers.entrySet().iterator();i.hasNext();) {
-                    Map.Entry entry = (Map.Entry)i.next();
-                    String puid = (String)entry.getKey();
-                    StudentSolverProxy solver = (StudentSolverProxy)entry.getValue();
-                    solver.passivateIfNeeded(iFolder, puid);
-                }
+			while (iContinue) {
 				try {
-					sleep(sDelay);
-				} catch (InterruptedException e) {
-				    break;
-                }
+					check();
+				} catch (Exception e) {
+					sLog.error("Solver passivation check failed, reason: " + e.getMessage(), e);
+				}
+				synchronized (this) {
+					try {
+						if (!iPressure && iContinue) wait(sDelay);
+					} catch (InterruptedException e) {
+						break;
+					}
+					iPressure = false;
+				}
 			}
             sLog.info("Solver passivation thread finished.");
 		} catch (Exception e) {
 			sLog.error("Solver passivation thread failed, reason: "+e.getMessage(), e);
+		} finally {
+			stopMonitoring();
 		}
 	}
+	
+	public synchronized void destroy() {
+		iContinue = false;
+		notify();
+	}
+	
+	/**
+	 * Heap usage (0.0 - 1.0) of the most used watched pool, usage after the last collection is preferred when available
+	 */
+	protected double getHeapUsage() {
+		double usage = 0.0;
+		for (MemoryPoolMXBean pool: iPools) {
+			MemoryUsage mu = (pool.isCollectionUsageThresholdSupported() ? pool.getCollectionUsage() : null);
+			if (mu == null) mu = pool.getUsage();
+			if (mu != null && mu.getMax() > 0)
+				usage = Math.max(usage, ((double)mu.getUsed()) / mu.getMax());
+		}
+		return usage;
+	}
+	
+	/**
+	 * Total number of garbage collections so far (as reported by the {@link GarbageCollectorMXBean}s)
+	 */
+	protected long getCollectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gc.isValid() && gc.getCollectionCount() > 0)
+				count += gc.getCollectionCount();
+		}
+		return count;
+	}
+	
+	protected void check() {
+		iNrChecks ++;
+		List<Container> containers = new ArrayList<Container>(iContainers.values());
+		
+		// idle solvers
+		for (Container container: containers) {
+			for (Map.Entry<String, ? extends AbstractSolver<?, ?, ?>> entry: new ArrayList<Map.Entry<String, ? extends AbstractSolver<?, ?, ?>>>(container.getSolvers().entrySet())) {
+				AbstractSolver<?, ?, ?> solver = entry.getValue();
+				long idle = solver.timeFromLastUsed();
+				if (solver.passivateIfNeeded(container.getFolder(), entry.getKey())) {
+					iNrIdlePassivations ++;
+					decision("Passivated " + container.getName() + " solver " + entry.getKey() + " (idle for " + (idle / 60000) + " minutes).");
+				}
+			}
+		}
+		
+		// heap pressure
+		int threshold = ApplicationProperty.SolverPassivationHeapThreshold.intValue();
+		iHeapUsage = getHeapUsage();
+		if (threshold <= 0 || threshold >= 100 || 100.0 * iHeapUsage < threshold) {
+			iPassivationCollectionCount = -1;
+			return;
+		}
+		// a solver has been passivated, but there was no garbage collection since -> the heap usage has not been re-measured yet
+		long collectionCount = getCollectionCount();
+		if (iPassivationCollectionCount >= 0 && collectionCount == iPassivationCollectionCount) return;
+		iNrPressureEvents ++;
+		
+		long minIdle = 60000l * ApplicationProperty.SolverPassivationMinIdleTime.intValue();
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		for (Container container: containers) {
+			for (Map.Entry<String, ? extends AbstractSolver<?, ?, ?>> entry: new ArrayList<Map.Entry<String, ? extends AbstractSolver<?, ?, ?>>>(container.getSolvers().entrySet())) {
+				AbstractSolver<?, ?, ?> solver = entry.getValue();
+				if (solver.isPassivated() || !solver.canPassivate() || solver.isWorking() || solver.timeFromLastUsed() < minIdle) continue;
+				candidates.add(new Candidate(container, entry.getKey(), solver));
+			}
+		}
+		Collections.sort(candidates);
+		for (Candidate candidate: candidates) {
+			if (candidate.getSolver().passivate(candidate.getContainer().getFolder(), candidate.getPuid())) {
+				iNrPressurePassivations ++;
+				iPassivationCollectionCount = collectionCount;
+				decision("Passivated " + candidate + " because of heap usage at " + sDF.format(100.0 * iHeapUsage) + "% (threshold " + threshold + "%), " + (candidates.size() - 1) + " other solvers can be passivated if needed after the next garbage collection.");
+				return;
+			}
+		}
+		iNrUnresolvedPressureEvents ++;
+		iPassivationCollectionCount = -1;
+		decision("Heap usage at " + sDF.format(100.0 * iHeapUsage) + "% (threshold " + threshold + "%), but there is no solver that can be passivated.");
+	}
+	
+	protected void decision(String message) {
+		sLog.info(message);
+		synchronized (iDecisions) {
+			iDecisions.addFirst(new Date() + ": " + message);
+			while (iDecisions.size() > sMaxDecisions) iDecisions.removeLast();
+		}
+	}
+	
+	@Override
+	public String[] getRecentDecisions() {
+		synchronized (iDecisions) {
+			return iDecisions.toArray(new String[iDecisions.size()]);
+		}
+	}
+	
+	@Override
+	public long getNrChecks() { return iNrChecks; }
+	
+	@Override
+	public long getNrIdlePassivations() { return iNrIdlePassivations; }
+	
+	@Override
+	public long getNrPressurePassivations() { return iNrPressurePassivations; }
+	
+	@Override
+	public long getNrPressureEvents() { return iNrPressureEvents; }
+	
+	@Override
+	public long getNrUnresolvedPressureEvents() { return iNrUnresolvedPressureEvents; }
+	
+	@Override
+	public double getHeapUsagePercentage() { return 100.0 * iHeapUsage; }
+	
+	@Override
+	public int getNrActiveSolvers() {
+		int ret = 0;
+		for (Container container: new ArrayList<Container>(iContainers.values()))
+			for (AbstractSolver<?, ?, ?> solver: new ArrayList<AbstractSolver<?, ?, ?>>(container.getSolvers().values()))
+				if (!solver.isPassivated()) ret ++;
+		return ret;
+	}
+	
+	@Override
+	public int getNrPassivatedSolvers() {
+		int ret = 0;
+		for (Container container: new ArrayList<Container>(iContainers.values()))
+			for (AbstractSolver<?, ?, ?> solver: new ArrayList<AbstractSolver<?, ?, ?>>(container.getSolvers().values()))
+				if (solver.isPassivated()) ret ++;
+		return ret;
+	}
+	
+	protected static class Container {
+		private String iName;
+		private File iFolder;
+		private Map<String, ? extends AbstractSolver<?, ?, ?>> iSolvers;
+		
+		Container(String name, File folder, Map<String, ? extends AbstractSolver<?, ?, ?>> solvers) {
+			iName = name; iFolder = folder; iSolvers = solvers;
+		}
+		
+		public String getName() { return iName; }
+		public File getFolder() { return iFolder; }
+		public Map<String, ? extends AbstractSolver<?, ?, ?>> getSolvers() { return iSolvers; }
+	}
+	
+	protected static class Candidate implements Comparable<Candidate> {
+		private Container iContainer;
+		private String iPuid;
+		private AbstractSolver<?, ?, ?> iSolver;
+		private long iFootprint, iIdle;
+		private double iCost;
+		
+		Candidate(Container container, String puid, AbstractSolver<?, ?, ?> solver) {
+			iContainer = container; iPuid = puid; iSolver = solver;
+			iFootprint = solver.getEstimatedFootprint();
+			iIdle = solver.timeFromLastUsed();
+			// restore cost grows with the size of the model, the longer is the solver idle the less likely it is to be needed soon
+			iCost = ((double)iFootprint) / (1.0 + iIdle / 60000.0);
+		}
+		
+		public Container getContainer() { return iContainer; }
+		public String getPuid() { return iPuid; }
+		public AbstractSolver<?, ?, ?> getSolver() { return iSolver; }
 
+		@Override
+		public int compareTo(Candidate c) {
+			int cmp = Double.compare(iCost, c.iCost);
+			if (cmp != 0) return cmp;
+			cmp = Long.compare(c.iIdle, iIdle);
+			if (cmp != 0) return cmp;
+			return iPuid.compareTo(c.iPuid);
+		}
+		
+		@Override
+		public String toString() {
+			return iContainer.getName() + " solver " + iPuid + " (size " + iFootprint + ", idle for " + (iIdle / 60000) + " minutes)";
+		}
+	}
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver;
+
+/**
+ * JMX interface of the {@link SolverPassivationThread}
+ * 
+ * @author Tomas Muller
+ */
+public interface SolverPassivationThreadMBean {
+	
+	public long getNrChecks();
+	
+	public long getNrIdlePassivations();
+	
+	public long getNrPressurePassivations();
+	
+	public long getNrPressureEvents();
+	
+	public long getNrUnresolvedPressureEvents();
+	
+	public double getHeapUsagePercentage();
+	
+	public int getNrActiveSolvers();
+	
+	public int getNrPassivatedSolvers();
+	
+	public String[] getRecentDecisions();
+}
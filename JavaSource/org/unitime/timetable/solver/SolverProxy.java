@@ -95,4 +95,10 @@ public interface SolverProxy extends ClassAssignmentProxy, CommonSolverInterface
 	public SuggestionsInterface.Suggestions computeSuggestions(SuggestionsContext context, SuggestionsInterface.ComputeSuggestionsRequest request);
 	public List<SuggestionsInterface.ClassAssignmentDetails> computeConfTable(SuggestionsContext context, SuggestionsInterface.ComputeConflictTableRequest request);
 	public Map<String, Collection<Entity>> loadSuggestionFilter(Long classId);
+	
+	/**
+	 * Version of the current solution, it changes every time class assignments are changed (e.g., by an interactive change, solver run, reload or commit).
+	 * @return -1 when the solver is running or working, as the solution can change at any time
+	 */
+	public long getSolutionVersion();
 }
@@ -36,6 +36,7 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 import org.cpsolver.coursett.TimetableXMLLoader;
@@ -130,6 +131,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 	private Vector<AssignmentRecord> iBestAssignmentRecords = new Vector<AssignmentRecord>();
 	private ConflictStatisticsInfo iCbsInfo = null;
 	private CommitedClassAssignmentProxy iCommitedClassAssignmentProxy;
+	private AtomicLong iSolutionVersion = new AtomicLong(0);
 
 	public TimetableSolver(DataProperties properties, SolverDisposeListener solverDisposeListener) {
 		super(properties, solverDisposeListener);
@@ -211,6 +213,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 			iCbsInfo = new ConflictStatisticsInfo();
 			iCbsInfo.load(document.getRootElement().element("cbsInfo"));
 		}
+		solutionChanged();
 	}
 	
 	@Override
@@ -232,6 +235,27 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 	public void restoreBest() {
 		iAssignmentRecords = new Vector(iBestAssignmentRecords);
 		currentSolution().restoreBest();
+		solutionChanged();
+	}
+	
+	/**
+	 * To be called after the current solution (or the committed assignments) have been changed,
+	 * invalidates the shared {@link CachedClassAssignmentProxy} of this solver.
+	 */
+	protected void solutionChanged() {
+		iSolutionVersion.incrementAndGet();
+	}
+	
+	@Override
+	public long getSolutionVersion() {
+		if (isWorking()) return -1;
+		return iSolutionVersion.get();
+	}
+	
+	@Override
+	public void clear() {
+		super.clear();
+		solutionChanged();
 	}
 	
 	public void saveBest() {
@@ -245,7 +269,9 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 		iWorkThread.start();
 	}
 	
-	protected void afterFinalSectioning() {}
+	protected void afterFinalSectioning() {
+		solutionChanged();
+	}
     
     public class FinalSectioning extends InterruptibleThread<Lecture, Placement> {
     	public void run() {
@@ -264,6 +290,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
     @Override
     protected void disposeNoInherit(boolean unregister) {
     	iAssignmentRecords.clear(); iBestAssignmentRecords.clear(); iCbsInfo = null;
+    	CachedClassAssignmentProxy.evict(getUser());
     	super.disposeNoInherit(unregister);
     }
     
@@ -280,6 +307,30 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 		}
     }
     
+    @Override
+    protected void onFinish() {
+    	super.onFinish();
+    	solutionChanged();
+    }
+    
+    @Override
+    protected void onStop() {
+    	super.onStop();
+    	solutionChanged();
+    }
+    
+    @Override
+    protected void afterSave() {
+    	super.afterSave();
+    	solutionChanged();
+    }
+    
+    @Override
+    protected void afterLoad() {
+    	super.afterLoad();
+    	solutionChanged();
+    }
+    
     @Override
     public void save(boolean createNewSolution, boolean commitSolution) {
 		getProperties().setProperty("General.CreateNewSolution", (createNewSolution ? "true" : "false"));
@@ -688,6 +739,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 			record.done();
 			iAssignmentRecords.addElement(record);
 		} finally {
+			solutionChanged();
 			lock.unlock();
 		}
     }
@@ -1502,6 +1554,7 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 			record.done();
 			iAssignmentRecords.addElement(record);
 		} finally {
+			solutionChanged();
 			lock.unlock();
 		}
     }
@@ -40,6 +40,7 @@ import org.unitime.timetable.model.InstructionalOffering;
 import org.unitime.timetable.model.Solution;
 import org.unitime.timetable.model.TeachingRequest;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.solver.CommonSolverInterface;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.RoomAvailability;
 import org.unitime.timetable.util.queue.LocalQueueProcessor;
@@ -148,6 +149,24 @@ public abstract class AbstractSolverServer implements SolverServer {
 		return getMemoryLimit() <= getAvailableMemory();
 	}
 	
+	@Override
+	public SolverServerLoad getLoad() {
+		SolverServerLoad load = new SolverServerLoad(this);
+		countSolvers(load, getCourseSolverContainer());
+		countSolvers(load, getExamSolverContainer());
+		countSolvers(load, getStudentSolverContainer());
+		countSolvers(load, getInstructorSchedulingContainer());
+		return load;
+	}
+	
+	protected void countSolvers(SolverServerLoad load, SolverContainer<? extends CommonSolverInterface> container) {
+		if (container == null) return;
+		for (String user: container.getSolvers()) {
+			CommonSolverInterface solver = container.getSolver(user);
+			if (solver != null) load.addSolver(solver);
+		}
+	}
+	
 	@Override
 	public RoomAvailabilityInterface getRoomAvailability() {
 		return RoomAvailability.getInstance();
@@ -0,0 +1,40 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.util.concurrent.Future;
+
+/**
+ * Remote solver proxy that can execute multiple calls in one cluster round-trip.
+ * 
+ * @author Tomas Muller
+ */
+public interface BatchedRemoteSolver {
+	/**
+	 * Execute the given calls on the remote server using a single remote call.
+	 * @return results in the order of the calls, a failed call has the thrown exception as its result
+	 */
+	public Object[] invokeAll(RemoteCall[] calls) throws Exception;
+	
+	/**
+	 * Asynchronous variant of {@link BatchedRemoteSolver#invokeAll(RemoteCall[])}, returns immediately.
+	 */
+	public Future<Object[]> invokeAllAsync(RemoteCall[] calls) throws Exception;
+}
@@ -31,6 +31,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationThread;
 import org.unitime.timetable.solver.SolverProxy;
 import org.unitime.timetable.solver.TimetableSolver;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -45,7 +46,6 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
 	private static Log sLog = LogFactory.getLog(CourseSolverContainer.class);
 	
 	protected Map<String,TimetableSolver> iCourseSolvers = new Hashtable<String, TimetableSolver>();
-	private PassivationThread iPassivation = null;
 
 	@Override
 	public Set<String> getSolvers() {
@@ -97,8 +97,7 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
 	
 	@Override
 	public void start() {
-		iPassivation = new PassivationThread(ApplicationProperties.getPassivationFolder());
-		iPassivation.start();
+		SolverPassivationThread.register("CourseTimetabling", ApplicationProperties.getPassivationFolder(), iCourseSolvers);
 		File folder = ApplicationProperties.getRestoreFolder();
 		sLog.info("Restore folder: " + folder);
 		if (!folder.exists() || !folder.isDirectory()) return;
@@ -130,7 +129,7 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
 		for (Map.Entry<String, TimetableSolver> entry: iCourseSolvers.entrySet()) {
 			entry.getValue().backup(folder, entry.getKey());
 		}
-		iPassivation.destroy();
+		SolverPassivationThread.unregister("CourseTimetabling");
 	}
 	
     protected class SolverOnDispose implements SolverDisposeListener {
@@ -144,42 +143,6 @@ public class CourseSolverContainer implements SolverContainer<SolverProxy> {
         }
     }
     
-	private class PassivationThread extends Thread {
-		private File iFolder = null;
-		public long iDelay = 30000;
-		public boolean iContinue = true;
-		
-		public PassivationThread(File folder) {
-			iFolder = folder;
-			setName("Passivation[CourseTimetabling]");
-			setDaemon(true);
-			setPriority(Thread.MIN_PRIORITY);
-		}
-		
-		public void run() {
-			try {
-				sLog.info("Solver passivation thread started.");
-				while (iContinue) {
-					for (Map.Entry<String, TimetableSolver> entry: iCourseSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
-					try {
-						sleep(iDelay);
-					} catch (InterruptedException e) {
-					    break;
-	                }
-				}
-				sLog.info("Solver passivation thread finished.");
-			} catch (Exception e) {
-				sLog.warn("Solver passivation thread failed, reason: " + e.getMessage(), e);
-			}
-		}
-		
-		public void destroy() {
-			iContinue = false;
-			if (isAlive()) interrupt();
-		}
-	}
-	
 	public TimetableInfoFileProxy getFileProxy() {
 		return TimetableInfoUtil.getLocalInstance();
 	}
@@ -19,6 +19,8 @@
 */
 package org.unitime.timetable.solver.jgroups;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -39,13 +41,16 @@ import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.blocks.mux.MuxRpcDispatcher;
 import org.jgroups.util.Rsp;
 import org.jgroups.util.RspList;
+import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.Assignment;
 import org.unitime.timetable.model.Class_;
 import org.unitime.timetable.model.Department;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
 import org.unitime.timetable.model.dao.Class_DAO;
 import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.solver.CommitedClassAssignmentProxy;
 import org.unitime.timetable.solver.SolverProxy;
+import org.unitime.timetable.solver.TimetableSolver;
 import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
 import org.unitime.timetable.solver.ui.TimetableInfo;
 import org.unitime.timetable.solver.ui.TimetableInfoFileProxy;
@@ -54,7 +59,7 @@ import org.unitime.timetable.solver.ui.TimetableInfoUtil;
 /**
  * @author Tomas Muller
  */
-public class CourseSolverContainerRemote extends CourseSolverContainer implements RemoteSolverContainer<SolverProxy> {
+public class CourseSolverContainerRemote extends CourseSolverContainer implements RemoteSolverContainer<SolverProxy>, MigratableSolverContainer {
 	private static Log sLog = LogFactory.getLog(CourseSolverContainerRemote.class);
 	private boolean iSaveFileInfos = false;
 	
@@ -188,6 +193,33 @@ public class CourseSolverContainerRemote extends CourseSolverContainer implement
     }
     
 
+	@Override
+	public Set<String> getPassivatedSolvers() {
+		return PassivatedSolverBackup.getPassivatedSolvers(iCourseSolvers);
+	}
+	
+	@Override
+	public boolean migrateSolver(String user, Address target) {
+		return PassivatedSolverBackup.migrate(iDispatcher, SolverType.COURSE, iCourseSolvers, user, target);
+	}
+	
+	@Override
+	public boolean restorePassivatedSolver(String user, PassivatedSolverBackup backup) {
+		if (iCourseSolvers.containsKey(user)) return false;
+		File folder = ApplicationProperties.getPassivationFolder();
+		try {
+			backup.write(folder, SolverType.COURSE, user);
+		} catch (IOException e) {
+			sLog.error("Failed to store backup of solver " + user + ": " + e.getMessage(), e);
+			return false;
+		}
+		TimetableSolver solver = new TimetableSolver(new DataProperties(), new SolverOnDispose(user));
+		if (!solver.restore(folder, user, true)) return false;
+		solver.passivate(folder, user);
+		iCourseSolvers.put(user, solver);
+		return true;
+	}
+	
 	@Override
 	public SolverProxy createProxy(Address address, String user) {
 		SolverInvocationHandler handler = new SolverInvocationHandler(address, user);
@@ -159,6 +159,11 @@ public class DummySolverServer extends AbstractSolverServer implements MessageLi
 	public boolean isAvailable() {
 		return false;
 	}
+	
+	@Override
+	public SolverServerLoad getLoad() {
+		return new SolverServerLoad(this);
+	}
 
 	@Override
 	public SolverContainer<SolverProxy> getCourseSolverContainer() {
@@ -32,6 +32,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationThread;
 import org.unitime.timetable.solver.exam.ExamSolver;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -44,7 +45,6 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
 	private static Log sLog = LogFactory.getLog(ExaminationSolverContainer.class);
 
 	protected Map<String,ExamSolver> iExamSolvers = new Hashtable<String, ExamSolver>();
-	private PassivationThread iPassivation = null;
 
 	@Override
 	public Set<String> getSolvers() {
@@ -96,8 +96,7 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
 	
 	@Override
 	public void start() {
-		iPassivation = new PassivationThread(ApplicationProperties.getPassivationFolder());
-		iPassivation.start();
+		SolverPassivationThread.register("Examination", ApplicationProperties.getPassivationFolder(), iExamSolvers);
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (!folder.exists() || !folder.isDirectory()) return;
 		
@@ -129,7 +128,7 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
 		for (Map.Entry<String, ExamSolver> entry: iExamSolvers.entrySet()) {
 			entry.getValue().backup(folder, entry.getKey());
 		}
-		iPassivation.destroy();
+		SolverPassivationThread.unregister("Examination");
 	}
 	
     protected class SolverOnDispose implements SolverDisposeListener {
@@ -142,41 +141,4 @@ public class ExaminationSolverContainer implements SolverContainer<ExamSolverPro
             iExamSolvers.remove(iUser);
         }
     }
-    
-	private class PassivationThread extends Thread {
-		private File iFolder = null;
-		public long iDelay = 30000;
-		public boolean iContinue = true;
-		
-		public PassivationThread(File folder) {
-			iFolder = folder;
-			setName("Passivation[Examination]");
-			setDaemon(true);
-			setPriority(Thread.MIN_PRIORITY);
-		}
-		
-		public void run() {
-			try {
-				sLog.info("Solver passivation thread started.");
-				while (iContinue) {
-					for (Map.Entry<String, ExamSolver> entry: iExamSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
-					try {
-						sleep(iDelay);
-					} catch (InterruptedException e) {
-					    break;
-	                }
-				}
-				sLog.info("Solver passivation thread finished.");
-			} catch (Exception e) {
-				sLog.warn("Solver passivation thread failed, reason: " + e.getMessage(), e);
-			}
-		}
-		
-		public void destroy() {
-			iContinue = false;
-			if (isAlive()) interrupt();
-		}
-	}
-
 }
@@ -19,10 +19,13 @@
 */
 package org.unitime.timetable.solver.jgroups;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Set;
 
 
 import org.apache.commons.logging.Log;
@@ -33,13 +36,16 @@ import org.jgroups.JChannel;
 import org.jgroups.SuspectedException;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.blocks.mux.MuxRpcDispatcher;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.solver.exam.ExamSolver;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 
 /**
  * @author Tomas Muller
  */
-public class ExaminationSolverContainerRemote extends ExaminationSolverContainer implements RemoteSolverContainer<ExamSolverProxy> {
+public class ExaminationSolverContainerRemote extends ExaminationSolverContainer implements RemoteSolverContainer<ExamSolverProxy>, MigratableSolverContainer {
 	private static Log sLog = LogFactory.getLog(ExaminationSolverContainerRemote.class);
 	
 	private RpcDispatcher iDispatcher;
@@ -92,6 +98,33 @@ public class ExaminationSolverContainerRemote extends ExaminationSolverContainer
 		}
 	}
 	
+	@Override
+	public Set<String> getPassivatedSolvers() {
+		return PassivatedSolverBackup.getPassivatedSolvers(iExamSolvers);
+	}
+	
+	@Override
+	public boolean migrateSolver(String user, Address target) {
+		return PassivatedSolverBackup.migrate(iDispatcher, SolverType.EXAM, iExamSolvers, user, target);
+	}
+	
+	@Override
+	public boolean restorePassivatedSolver(String user, PassivatedSolverBackup backup) {
+		if (iExamSolvers.containsKey(user)) return false;
+		File folder = ApplicationProperties.getPassivationFolder();
+		try {
+			backup.write(folder, SolverType.EXAM, user);
+		} catch (IOException e) {
+			sLog.error("Failed to store backup of solver " + user + ": " + e.getMessage(), e);
+			return false;
+		}
+		ExamSolver solver = new ExamSolver(new DataProperties(), new SolverOnDispose(user));
+		if (!solver.restore(folder, user, true)) return false;
+		solver.passivate(folder, user);
+		iExamSolvers.put(user, solver);
+		return true;
+	}
+	
 	@Override
 	public ExamSolverProxy createProxy(Address address, String user) {
 		SolverInvocationHandler handler = new SolverInvocationHandler(address, user);
@@ -31,6 +31,7 @@ import org.cpsolver.ifs.util.DataProperties;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.SolverParameterGroup;
 import org.unitime.timetable.solver.SolverDisposeListener;
+import org.unitime.timetable.solver.SolverPassivationThread;
 import org.unitime.timetable.solver.instructor.InstructorSchedulingProxy;
 import org.unitime.timetable.solver.instructor.InstructorSchedulingSolver;
 import org.unitime.timetable.solver.remote.BackupFileFilter;
@@ -43,7 +44,6 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
 	private static Log sLog = LogFactory.getLog(InstructorSchedulingContainer.class);
 
 	protected Map<String, InstructorSchedulingSolver> iInstrSchdSolvers = new Hashtable<String, InstructorSchedulingSolver>();
-	private PassivationThread iPassivation = null;
 
 	@Override
 	public Set<String> getSolvers() {
@@ -95,8 +95,7 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
 	
 	@Override
 	public void start() {
-		iPassivation = new PassivationThread(ApplicationProperties.getPassivationFolder());
-		iPassivation.start();
+		SolverPassivationThread.register("Instructor", ApplicationProperties.getPassivationFolder(), iInstrSchdSolvers);
 		File folder = ApplicationProperties.getRestoreFolder();
 		if (!folder.exists() || !folder.isDirectory()) return;
 		
@@ -128,7 +127,7 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
 		for (Map.Entry<String, InstructorSchedulingSolver> entry: iInstrSchdSolvers.entrySet()) {
 			entry.getValue().backup(folder, entry.getKey());
 		}
-		iPassivation.destroy();
+		SolverPassivationThread.unregister("Instructor");
 	}
 	
     protected class SolverOnDispose implements SolverDisposeListener {
@@ -141,41 +140,4 @@ public class InstructorSchedulingContainer implements SolverContainer<Instructor
         	iInstrSchdSolvers.remove(iUser);
         }
     }
-    
-	private class PassivationThread extends Thread {
-		private File iFolder = null;
-		public long iDelay = 30000;
-		public boolean iContinue = true;
-		
-		public PassivationThread(File folder) {
-			iFolder = folder;
-			setName("Passivation[Instructor]");
-			setDaemon(true);
-			setPriority(Thread.MIN_PRIORITY);
-		}
-		
-		public void run() {
-			try {
-				sLog.info("Solver passivation thread started.");
-				while (iContinue) {
-					for (Map.Entry<String, InstructorSchedulingSolver> entry: iInstrSchdSolvers.entrySet())
-						entry.getValue().passivateIfNeeded(iFolder, entry.getKey());
-					try {
-						sleep(iDelay);
-					} catch (InterruptedException e) {
-					    break;
-	                }
-				}
-				sLog.info("Solver passivation thread finished.");
-			} catch (Exception e) {
-				sLog.warn("Solver passivation thread failed, reason: " + e.getMessage(), e);
-			}
-		}
-		
-		public void destroy() {
-			iContinue = false;
-			if (isAlive()) interrupt();
-		}
-	}
-
 }
\ No newline at end of file
@@ -19,10 +19,13 @@
 */
 package org.unitime.timetable.solver.jgroups;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -32,14 +35,17 @@ import org.jgroups.JChannel;
 import org.jgroups.SuspectedException;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.blocks.mux.MuxRpcDispatcher;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
 import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 import org.unitime.timetable.solver.instructor.InstructorSchedulingProxy;
+import org.unitime.timetable.solver.instructor.InstructorSchedulingSolver;
 
 /**
  * @author Tomas Muller
  */
-public class InstructorSchedulingContainerRemote extends InstructorSchedulingContainer implements RemoteSolverContainer<InstructorSchedulingProxy> {
+public class InstructorSchedulingContainerRemote extends InstructorSchedulingContainer implements RemoteSolverContainer<InstructorSchedulingProxy>, MigratableSolverContainer {
 	private static Log sLog = LogFactory.getLog(ExaminationSolverContainerRemote.class);
 	
 	private RpcDispatcher iDispatcher;
@@ -92,6 +98,33 @@ public class InstructorSchedulingContainerRemote extends InstructorSchedulingCon
 		}
 	}
 	
+	@Override
+	public Set<String> getPassivatedSolvers() {
+		return PassivatedSolverBackup.getPassivatedSolvers(iInstrSchdSolvers);
+	}
+	
+	@Override
+	public boolean migrateSolver(String user, Address target) {
+		return PassivatedSolverBackup.migrate(iDispatcher, SolverType.INSTRUCTOR, iInstrSchdSolvers, user, target);
+	}
+	
+	@Override
+	public boolean restorePassivatedSolver(String user, PassivatedSolverBackup backup) {
+		if (iInstrSchdSolvers.containsKey(user)) return false;
+		File folder = ApplicationProperties.getPassivationFolder();
+		try {
+			backup.write(folder, SolverType.INSTRUCTOR, user);
+		} catch (IOException e) {
+			sLog.error("Failed to store backup of solver " + user + ": " + e.getMessage(), e);
+			return false;
+		}
+		InstructorSchedulingSolver solver = new InstructorSchedulingSolver(new DataProperties(), new SolverOnDispose(user));
+		if (!solver.restore(folder, user, true)) return false;
+		solver.passivate(folder, user);
+		iInstrSchdSolvers.put(user, solver);
+		return true;
+	}
+	
 	@Override
 	public InstructorSchedulingProxy createProxy(Address address, String user) {
 		SolverInvocationHandler handler = new SolverInvocationHandler(address, user);
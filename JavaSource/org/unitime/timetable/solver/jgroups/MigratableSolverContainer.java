@@ -0,0 +1,46 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.util.Set;
+
+import org.jgroups.Address;
+
+/**
+ * Solver container whose passivated solvers can be moved to another solver server (see {@link SolverServerLoadMonitor}).
+ * 
+ * @author Tomas Muller
+ */
+public interface MigratableSolverContainer {
+	/**
+	 * Solvers of the container that are passivated (and hence can be moved)
+	 */
+	public Set<String> getPassivatedSolvers();
+	
+	/**
+	 * Move a passivated solver to the given server. The solver is removed from this container when it has been restored on the target server.
+	 */
+	public boolean migrateSolver(String user, Address target);
+	
+	/**
+	 * Restore a passivated solver that is being moved from another server. The restored solver is passivated again.
+	 */
+	public boolean restorePassivatedSolver(String user, PassivatedSolverBackup backup);
+}
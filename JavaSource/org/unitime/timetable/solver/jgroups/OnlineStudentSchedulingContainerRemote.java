@@ -26,7 +26,10 @@ import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -43,9 +46,11 @@ import org.infinispan.transaction.TransactionMode;
 import org.jgroups.Address;
 import org.jgroups.JChannel;
 import org.jgroups.SuspectedException;
+import org.jgroups.blocks.MethodCall;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.blocks.locking.LockService;
 import org.jgroups.blocks.mux.MuxRpcDispatcher;
+import org.jgroups.util.NotifyingFuture;
 import org.jgroups.util.Rsp;
 import org.jgroups.util.RspList;
 import org.unitime.timetable.defaults.ApplicationProperty;
@@ -65,12 +70,15 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 	private RpcDispatcher iDispatcher;
 	private EmbeddedCacheManager iCacheManager = null;
 	private LockService iLockService;
+	private RemoteCallStatistics iStatistics = new RemoteCallStatistics("OnlineStudentScheduling");
 
 	public OnlineStudentSchedulingContainerRemote(JChannel channel, short scope) {
 		iDispatcher = new MuxRpcDispatcher(scope, channel, null, null, this);
 		iLockService = new LockService(channel);
 	}
 	
+	public RemoteCallStatistics getStatistics() { return iStatistics; }
+	
 	@Override
 	public RpcDispatcher getDispatcher() { return iDispatcher; }
 	
@@ -80,6 +88,7 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 	public void start() {
 		super.start();
 		createCacheManagerIfNeeded();
+		iStatistics.register();
 	}
 	
 	private synchronized void createCacheManagerIfNeeded() {
@@ -101,6 +110,7 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 	@Override
 	public void stop() {
 		super.stop();
+		iStatistics.unregister();
 		if (iCacheManager != null) {
 			iCacheManager.stop();
 			iCacheManager = null;
@@ -137,10 +147,39 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 		}
 	}
 	
+	/**
+	 * Execute a batch of calls on the server, results are packed using {@link RemoteCall#pack(Object[])}.
+	 * A failed call has the thrown exception as its result.
+	 */
+	public byte[] invokeBatch(String sessionId, RemoteCall[] calls) throws Exception {
+		try {
+			OnlineSectioningServer solver = iInstances.get(Long.valueOf(sessionId));
+			if (solver == null)
+				throw new Exception("Server " + sessionId + " does not exist.");
+			Object[] results = new Object[calls.length];
+			for (int i = 0; i < calls.length; i++) {
+				try {
+					results[i] = solver.getClass().getMethod(calls[i].getMethod(), calls[i].getTypes()).invoke(solver, calls[i].getArgs());
+				} catch (InvocationTargetException e) {
+					results[i] = (e.getTargetException() != null ? e.getTargetException() : e);
+				} catch (Exception e) {
+					results[i] = e;
+				}
+			}
+			return RemoteCall.pack(results);
+		} finally {
+			_RootDAO.closeCurrentThreadSessions();
+		}
+	}
+	
 	@Override
 	public Object dispatch(Address address, String sessionId, Method method, Object[] args) throws Exception {
+		long t0 = System.currentTimeMillis();
+		boolean failed = true;
 		try {
-			return iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), sessionId, method.getParameterTypes(), args }, new Class[] { String.class, String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse);
+			Object ret = iDispatcher.callRemoteMethod(address, "invoke",  new Object[] { method.getName(), sessionId, method.getParameterTypes(), args }, new Class[] { String.class, String.class, Class[].class, Object[].class }, SolverServerImplementation.sFirstResponse);
+			failed = false;
+			return ret;
 		} catch (InvocationTargetException e) {
 			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
 				throw (Exception)e.getTargetException();
@@ -150,38 +189,96 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 			if ("exists".equals(method.getName()) && e instanceof SuspectedException) return false;
 			sLog.debug("Excution of " + method.getName() + " on server " + sessionId + " failed: " + e.getMessage(), e);
 			throw e;
+		} finally {
+			iStatistics.record(method.getName(), System.currentTimeMillis() - t0, failed);
+		}
+	}
+	
+	/**
+	 * Execute the given calls on the server using a single remote call
+	 */
+	public Object[] dispatchAll(Address address, String sessionId, RemoteCall[] calls) throws Exception {
+		long t0 = System.currentTimeMillis();
+		Object[] results = null;
+		try {
+			byte[] data = iDispatcher.callRemoteMethod(address, "invokeBatch",  new Object[] { sessionId, calls }, new Class[] { String.class, RemoteCall[].class }, SolverServerImplementation.sFirstResponse);
+			results = RemoteCall.unpack(data);
+			return results;
+		} catch (InvocationTargetException e) {
+			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
+				throw (Exception)e.getTargetException();
+			else
+				throw e;
+		} catch (Exception e) {
+			sLog.debug("Excution of a batch of " + calls.length + " calls on server " + sessionId + " failed: " + e.getMessage(), e);
+			throw e;
+		} finally {
+			iStatistics.record(calls, results, System.currentTimeMillis() - t0);
 		}
 	}
 	
+	/**
+	 * Execute the given calls on the server using a single remote call, without waiting for the results
+	 */
+	public Future<Object[]> dispatchAllAsync(Address address, String sessionId, final RemoteCall[] calls) throws Exception {
+		final long t0 = System.currentTimeMillis();
+		final NotifyingFuture<byte[]> future = iDispatcher.callRemoteMethodWithFuture(address,
+				new MethodCall("invokeBatch", new Object[] { sessionId, calls }, new Class[] { String.class, RemoteCall[].class }),
+				SolverServerImplementation.sFirstResponse);
+		return new Future<Object[]>() {
+			private Object[] iResults = null;
+			
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				return future.cancel(mayInterruptIfRunning);
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return future.isCancelled();
+			}
+
+			@Override
+			public boolean isDone() {
+				return future.isDone();
+			}
+
+			@Override
+			public synchronized Object[] get() throws InterruptedException, ExecutionException {
+				if (iResults == null) iResults = unpack(future.get());
+				return iResults;
+			}
+
+			@Override
+			public synchronized Object[] get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+				if (iResults == null) iResults = unpack(future.get(timeout, unit));
+				return iResults;
+			}
+			
+			private Object[] unpack(byte[] data) throws ExecutionException {
+				Object[] results = null;
+				try {
+					results = RemoteCall.unpack(data);
+					return results;
+				} catch (Exception e) {
+					throw new ExecutionException(e);
+				} finally {
+					iStatistics.record(calls, results, System.currentTimeMillis() - t0);
+				}
+			}
+		};
+	}
+	
 	@Override
 	public Object dispatch(Collection<Address> addresses, String sessionId, Method method, Object[] args) throws Exception {
 		try {
 			if (addresses.size() == 1) {
 				return dispatch(ToolBox.random(addresses), sessionId, method, args);
 			} else {
-				Address address = ToolBox.random(addresses);
 				CheckMaster ch = method.getAnnotation(CheckMaster.class);
 				if (ch == null && "execute".equals(method.getName()))
 					ch = args[0].getClass().getAnnotation(CheckMaster.class);
-				RspList<Boolean> ret = iDispatcher.callRemoteMethods(addresses, "hasMaster", new Object[] { sessionId }, new Class[] { String.class }, SolverServerImplementation.sAllResponses);
-				if (ch != null && ch.value() == Master.REQUIRED) {
-					for (Rsp<Boolean> rsp : ret) {
-						if (rsp != null && rsp.getValue()) {
-							address = rsp.getSender();
-							break;
-						}
-					}
-				} else {
-					List<Address> slaves = new ArrayList<Address>();
-					for (Rsp<Boolean> rsp : ret) {
-						if (rsp != null && !rsp.getValue()) {
-							slaves.add(rsp.getSender());
-						}
-					}
-					if (!slaves.isEmpty())
-						address = ToolBox.random(slaves);
-				}
-				return dispatch(address, sessionId, method, args);
+				return dispatch(selectAddress(addresses, sessionId, ch != null && ch.value() == Master.REQUIRED), sessionId, method, args);
 			}
 		} catch (InvocationTargetException e) {
 			if (e.getTargetException() != null && e.getTargetException() instanceof Exception)
@@ -191,12 +288,54 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 		}
 	}
 	
+	/**
+	 * Pick the server to call: the master when required, a random slave otherwise
+	 */
+	protected Address selectAddress(Collection<Address> addresses, String sessionId, boolean masterRequired) throws Exception {
+		Address address = ToolBox.random(addresses);
+		if (addresses.size() == 1) return address;
+		RspList<Boolean> ret = iDispatcher.callRemoteMethods(addresses, "hasMaster", new Object[] { sessionId }, new Class[] { String.class }, SolverServerImplementation.sAllResponses);
+		if (masterRequired) {
+			for (Rsp<Boolean> rsp : ret) {
+				if (rsp != null && rsp.getValue()) {
+					address = rsp.getSender();
+					break;
+				}
+			}
+		} else {
+			List<Address> slaves = new ArrayList<Address>();
+			for (Rsp<Boolean> rsp : ret) {
+				if (rsp != null && !rsp.getValue()) {
+					slaves.add(rsp.getSender());
+				}
+			}
+			if (!slaves.isEmpty())
+				address = ToolBox.random(slaves);
+		}
+		return address;
+	}
+	
+	/**
+	 * Check whether any of the calls needs to be executed on the master server
+	 */
+	protected boolean isMasterRequired(RemoteCall[] calls) {
+		for (RemoteCall call: calls) {
+			try {
+				CheckMaster ch = OnlineSectioningServer.class.getMethod(call.getMethod(), call.getTypes()).getAnnotation(CheckMaster.class);
+				if (ch == null && "execute".equals(call.getMethod()))
+					ch = call.getArgs()[0].getClass().getAnnotation(CheckMaster.class);
+				if (ch != null && ch.value() == Master.REQUIRED) return true;
+			} catch (NoSuchMethodException e) {}
+		}
+		return false;
+	}
+	
 	@Override
 	public OnlineSectioningServer createProxy(Address address, String user) {
 		ServerInvocationHandler handler = new ServerInvocationHandler(address, user);
 		OnlineSectioningServer px = (OnlineSectioningServer)Proxy.newProxyInstance(
 				SolverProxy.class.getClassLoader(),
-				new Class[] {OnlineSectioningServer.class, RemoteSolver.class, },
+				new Class[] {OnlineSectioningServer.class, RemoteSolver.class, BatchedRemoteSolver.class, },
 				handler);
     	return px;
 	}
@@ -206,7 +345,7 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
 		ReplicatedServerInvocationHandler handler = new ReplicatedServerInvocationHandler(addresses, user);
 		OnlineSectioningServer px = (OnlineSectioningServer)Proxy.newProxyInstance(
 				SolverProxy.class.getClassLoader(),
-				new Class[] {OnlineSectioningServer.class, RemoteSolver.class, },
+				new Class[] {OnlineSectioningServer.class, RemoteSolver.class, BatchedRemoteSolver.class, },
 				handler);
     	return px;
 	}
@@ -228,6 +367,14 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
     		return iUser;
     	}
     	
+    	public Object[] invokeAll(RemoteCall[] calls) throws Exception {
+    		return dispatchAll(iAddress, iUser, calls);
+    	}
+    	
+    	public Future<Object[]> invokeAllAsync(RemoteCall[] calls) throws Exception {
+    		return dispatchAllAsync(iAddress, iUser, calls);
+    	}
+    	
     	@Override
     	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
     		try {
@@ -255,6 +402,14 @@ public class OnlineStudentSchedulingContainerRemote extends OnlineStudentSchedul
     		return iUser;
     	}
     	
+    	public Object[] invokeAll(RemoteCall[] calls) throws Exception {
+    		return dispatchAll(selectAddress(iAddresses, iUser, isMasterRequired(calls)), iUser, calls);
+    	}
+    	
+    	public Future<Object[]> invokeAllAsync(RemoteCall[] calls) throws Exception {
+    		return dispatchAllAsync(selectAddress(iAddresses, iUser, isMasterRequired(calls)), iUser, calls);
+    	}
+    	
     	@Override
     	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
     		try {
@@ -38,6 +38,7 @@ import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer.ServerCallback;
+import org.unitime.timetable.onlinesectioning.server.ServerSnapshot;
 import org.unitime.timetable.onlinesectioning.updates.CheckAllOfferingsAction;
 import org.unitime.timetable.onlinesectioning.updates.ClassAssignmentChanged;
 import org.unitime.timetable.onlinesectioning.updates.ExpireReservationsAction;
@@ -88,6 +89,7 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 							if (!iRun) break;
 							checkForExpiredReservations(server);
 							persistExpectedSpaces(server);
+							writeSnapshot(server);
 						} else if (!ApplicationProperty.OnlineSchedulingServerReplicated.isTrue()) {
 							// not master, but replication is disabled -> unload
 							try {
@@ -141,6 +143,24 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 		}
 	}
 	
+	public void writeSnapshot(OnlineSectioningServer server) {
+		if (!server.isReady() || !ServerSnapshot.isEnabled(server)) return;
+		long ts = System.currentTimeMillis(); // current time stamp
+		Long lastSnapshot = server.getProperty("Updater.LastSnapshot", null);
+		if (lastSnapshot == null) {
+			// the server has just been loaded -> wait for the next interval
+			server.setProperty("Updater.LastSnapshot", ts);
+			return;
+		}
+		if (ts - lastSnapshot < 60000l * ApplicationProperty.OnlineSchedulingSnapshotInterval.intValue()) return;
+		server.setProperty("Updater.LastSnapshot", ts);
+		try {
+			ServerSnapshot.write(server);
+		} catch (Exception e) {
+			iLog.error("Failed to write snapshot: " + e.getMessage(), e);
+		}
+	}
+	
 	public void checkForExpiredReservations(OnlineSectioningServer server) {
 		long ts = System.currentTimeMillis(); // current time stamp
 		// the check was done within the last hour -> no need to repeat
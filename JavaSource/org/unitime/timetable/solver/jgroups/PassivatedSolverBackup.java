@@ -0,0 +1,148 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jgroups.Address;
+import org.jgroups.blocks.RpcDispatcher;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
+import org.unitime.timetable.solver.AbstractSolver;
+import org.unitime.timetable.solver.remote.BackupFileFilter;
+
+/**
+ * Backup file of a passivated solver, as it is sent to another solver server when the solver is moved (see {@link MigratableSolverContainer}).
+ * 
+ * @author Tomas Muller
+ */
+public class PassivatedSolverBackup implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static Log sLog = LogFactory.getLog(PassivatedSolverBackup.class);
+	private byte[] iData;
+	private boolean iCompact;
+	
+	public PassivatedSolverBackup(byte[] data, boolean compact) {
+		iData = data; iCompact = compact;
+	}
+	
+	public byte[] getData() { return iData; }
+	public boolean isCompact() { return iCompact; }
+	
+	protected static File getFile(File folder, SolverType type, String user, boolean compact) {
+		return new File(folder, type.getPrefix() + user + (compact ? BackupFileFilter.sCompactExtension : BackupFileFilter.sXmlExtension));
+	}
+	
+	/**
+	 * Read the backup file of a passivated solver (the newer one if there are both compact and XML backups), null if there is none
+	 */
+	public static PassivatedSolverBackup read(File folder, SolverType type, String user) throws IOException {
+		File xml = getFile(folder, type, user, false);
+		File compact = getFile(folder, type, user, true);
+		File file = (compact.exists() && (!xml.exists() || compact.lastModified() >= xml.lastModified()) ? compact : xml);
+		if (!file.exists()) return null;
+		byte[] data = new byte[(int)file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int offset = 0;
+			while (offset < data.length) {
+				int read = in.read(data, offset, data.length - offset);
+				if (read < 0) throw new IOException("Unexpected end of file " + file);
+				offset += read;
+			}
+		} finally {
+			in.close();
+		}
+		return new PassivatedSolverBackup(data, file == compact);
+	}
+	
+	/**
+	 * Write the backup into the given folder, so that it can be restored by {@link AbstractSolver#restore(File, String, boolean)}
+	 */
+	public void write(File folder, SolverType type, String user) throws IOException {
+		folder.mkdirs();
+		OutputStream out = new FileOutputStream(getFile(folder, type, user, iCompact));
+		try {
+			out.write(iData);
+			out.flush();
+		} finally {
+			out.close();
+		}
+		File other = getFile(folder, type, user, !iCompact);
+		if (other.exists()) other.delete();
+	}
+	
+	/**
+	 * Delete the backup files of a solver
+	 */
+	public static void delete(File folder, SolverType type, String user) {
+		File xml = getFile(folder, type, user, false);
+		if (xml.exists()) xml.delete();
+		File compact = getFile(folder, type, user, true);
+		if (compact.exists()) compact.delete();
+	}
+	
+	/**
+	 * Solvers of the given map that are passivated
+	 */
+	public static Set<String> getPassivatedSolvers(Map<String, ? extends AbstractSolver<?, ?, ?>> solvers) {
+		Set<String> passivated = new HashSet<String>();
+		for (Map.Entry<String, ? extends AbstractSolver<?, ?, ?>> entry: solvers.entrySet())
+			if (entry.getValue().isPassivated()) passivated.add(entry.getKey());
+		return passivated;
+	}
+	
+	/**
+	 * Move a passivated solver to the target server: the backup is sent to the target server's container (method restorePassivatedSolver),
+	 * when restored there, the solver is removed from the given map and its backup files are deleted. The solver cannot be activated in the meantime.
+	 */
+	public static boolean migrate(RpcDispatcher dispatcher, SolverType type, Map<String, ? extends AbstractSolver<?, ?, ?>> solvers, String user, Address target) {
+		AbstractSolver<?, ?, ?> solver = solvers.get(user);
+		if (solver == null) return false;
+		synchronized (solver) {
+			if (!solver.isPassivated()) return false;
+			File folder = ApplicationProperties.getPassivationFolder();
+			try {
+				PassivatedSolverBackup backup = read(folder, type, user);
+				if (backup == null) return false;
+				Boolean ret = dispatcher.callRemoteMethod(target, "restorePassivatedSolver", new Object[] { user, backup }, new Class[] { String.class, PassivatedSolverBackup.class }, SolverServerImplementation.sFirstResponse);
+				if (!Boolean.TRUE.equals(ret)) return false;
+			} catch (Exception e) {
+				sLog.warn("Failed to move " + type.name().toLowerCase() + " solver " + user + " to " + target + ": " + e.getMessage(), e);
+				return false;
+			}
+			solvers.remove(user);
+			delete(folder, type, user);
+			sLog.info("Passivated " + type.name().toLowerCase() + " solver " + user + " moved to " + target + ".");
+			return true;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A method call that is to be executed on a remote server as a part of a batch (see {@link BatchedRemoteSolver}).
+ * 
+ * @author Tomas Muller
+ */
+public class RemoteCall implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** Results of a batch that are larger than this (in bytes) are compressed */
+	public static int sCompressThreshold = 65536;
+	
+	private String iMethod;
+	private Class[] iTypes;
+	private Object[] iArgs;
+	
+	public RemoteCall(String method, Class[] types, Object... args) {
+		iMethod = method; iTypes = types; iArgs = args;
+	}
+	
+	public RemoteCall(Method method, Object[] args) {
+		this(method.getName(), method.getParameterTypes(), args == null ? new Object[0] : args);
+	}
+	
+	public String getMethod() { return iMethod; }
+	public Class[] getTypes() { return iTypes; }
+	public Object[] getArgs() { return iArgs; }
+	
+	@Override
+	public String toString() { return iMethod; }
+	
+	/**
+	 * Serialize results of a batch into a single stream, so that the class descriptions and shared objects are only written once.
+	 * Large results are compressed.
+	 */
+	public static byte[] pack(Object[] results) throws IOException {
+		byte[] data = write(results, false);
+		if (data.length > sCompressThreshold) {
+			byte[] compressed = write(results, true);
+			if (compressed.length < data.length) return compressed;
+		}
+		return data;
+	}
+	
+	private static byte[] write(Object[] results, boolean compress) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(compress ? 1 : 0);
+		OutputStream out = (compress ? new DeflaterOutputStream(bytes) : bytes);
+		ObjectOutputStream oos = new ObjectOutputStream(out);
+		oos.writeObject(results);
+		oos.flush();
+		oos.close();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Read results of a batch, as written by {@link RemoteCall#pack(Object[])}
+	 */
+	public static Object[] unpack(byte[] data) throws IOException, ClassNotFoundException {
+		InputStream in = new ByteArrayInputStream(data, 1, data.length - 1);
+		if (data[0] == 1) in = new InflaterInputStream(in);
+		ObjectInputStream ois = new ObjectInputStream(in);
+		try {
+			return (Object[])ois.readObject();
+		} finally {
+			ois.close();
+		}
+	}
+}
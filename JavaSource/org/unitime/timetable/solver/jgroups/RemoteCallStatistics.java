@@ -0,0 +1,195 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Per-method latency of the remote calls (as measured by the caller, including the cluster round-trip),
+ * published through JMX (see {@link RemoteCallStatisticsMBean}).
+ * 
+ * @author Tomas Muller
+ */
+public class RemoteCallStatistics implements RemoteCallStatisticsMBean {
+	private static Log sLog = LogFactory.getLog(RemoteCallStatistics.class);
+	/** Upper bounds (in milliseconds) of the latency histogram buckets, the last bucket is for the slower calls */
+	private static final long[] sBuckets = new long[] { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 5000 };
+	/** Name of the entry under which the latency of the batches is recorded */
+	public static final String BATCH = "[batch]";
+	
+	private String iName;
+	private ObjectName iObjectName = null;
+	private Map<String, MethodStats> iStats = new HashMap<String, MethodStats>();
+	private AtomicLong iBatches = new AtomicLong(0), iBatchedCalls = new AtomicLong(0);
+	
+	public RemoteCallStatistics(String name) {
+		iName = name;
+	}
+	
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("org.unitime:type=RemoteCalls,name=" + ObjectName.quote(iName));
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(this, objectName);
+			iObjectName = objectName;
+		} catch (Exception e) {
+			sLog.warn("Failed to register remote call statistics MBean: " + e.getMessage(), e);
+		}
+	}
+	
+	public void unregister() {
+		if (iObjectName != null) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				if (server.isRegistered(iObjectName))
+					server.unregisterMBean(iObjectName);
+			} catch (Exception e) {
+				sLog.warn("Failed to unregister remote call statistics MBean: " + e.getMessage(), e);
+			}
+			iObjectName = null;
+		}
+	}
+	
+	protected MethodStats getStats(String method) {
+		synchronized (iStats) {
+			MethodStats stats = iStats.get(method);
+			if (stats == null) {
+				stats = new MethodStats(method);
+				iStats.put(method, stats);
+			}
+			return stats;
+		}
+	}
+	
+	/**
+	 * Record a remote call
+	 * @param method method name
+	 * @param time latency in milliseconds
+	 * @param failed true if the call has thrown an exception
+	 */
+	public void record(String method, long time, boolean failed) {
+		getStats(method).record(time, failed);
+	}
+	
+	/**
+	 * Record a batch of remote calls. The latency of the whole batch is recorded under the {@link #BATCH} entry,
+	 * each call of the batch is only counted (and its failure recorded) with its method.
+	 */
+	public void record(RemoteCall[] calls, Object[] results, long time) {
+		iBatches.incrementAndGet();
+		iBatchedCalls.addAndGet(calls.length);
+		for (int i = 0; i < calls.length; i++)
+			getStats(calls[i].getMethod()).recordBatched(results == null || results[i] instanceof Throwable);
+		getStats(BATCH).record(time, results == null);
+	}
+	
+	@Override
+	public long getNrCalls() {
+		long ret = 0;
+		synchronized (iStats) {
+			for (MethodStats stats: iStats.values())
+				if (!BATCH.equals(stats.iName)) ret += stats.iCalls + stats.iBatched;
+		}
+		return ret;
+	}
+	
+	@Override
+	public long getNrBatches() { return iBatches.get(); }
+	
+	@Override
+	public long getNrBatchedCalls() { return iBatchedCalls.get(); }
+	
+	@Override
+	public String[] getMethodStatistics() {
+		List<String> ret = new ArrayList<String>();
+		synchronized (iStats) {
+			for (MethodStats stats: iStats.values())
+				ret.add(stats.toString());
+		}
+		Collections.sort(ret);
+		return ret.toArray(new String[ret.size()]);
+	}
+	
+	@Override
+	public void resetStatistics() {
+		synchronized (iStats) {
+			for (MethodStats stats: iStats.values())
+				stats.reset();
+		}
+		iBatches.set(0);
+		iBatchedCalls.set(0);
+	}
+	
+	protected static class MethodStats {
+		private String iName;
+		private long iCalls = 0, iFailures = 0, iTime = 0, iMaxTime = 0, iBatched = 0;
+		private long[] iHistogram = new long[sBuckets.length + 1];
+		
+		protected MethodStats(String name) { iName = name; }
+		
+		/** A call that was executed as a part of a batch, its latency is not known (see {@link RemoteCallStatistics#BATCH}) */
+		protected synchronized void recordBatched(boolean failed) {
+			iBatched ++;
+			if (failed) iFailures ++;
+		}
+		
+		protected synchronized void record(long time, boolean failed) {
+			iCalls ++;
+			if (failed) iFailures ++;
+			iTime += time;
+			if (time > iMaxTime) iMaxTime = time;
+			int bucket = 0;
+			while (bucket < sBuckets.length && time > sBuckets[bucket]) bucket ++;
+			iHistogram[bucket] ++;
+		}
+		
+		protected synchronized void reset() {
+			iCalls = 0; iFailures = 0; iTime = 0; iMaxTime = 0; iBatched = 0;
+			iHistogram = new long[sBuckets.length + 1];
+		}
+		
+		@Override
+		public synchronized String toString() {
+			StringBuffer histogram = new StringBuffer();
+			for (int i = 0; i < iHistogram.length; i++) {
+				if (iHistogram[i] == 0) continue;
+				if (histogram.length() > 0) histogram.append(", ");
+				histogram.append(i < sBuckets.length ? "<=" + sBuckets[i] : ">" + sBuckets[sBuckets.length - 1]).append(" ms: ").append(iHistogram[i]);
+			}
+			return iName + ": " + iCalls + " calls" + (iBatched == 0 ? "" : " (+" + iBatched + " batched)") + ", " + iFailures + " failed" +
+					", latency " + (iCalls == 0 ? 0 : iTime / iCalls) + " ms avg / " + iMaxTime + " ms max" +
+					(histogram.length() == 0 ? "" : " [" + histogram + "]");
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+/**
+ * JMX interface of the {@link RemoteCallStatistics}: latency of the remote calls to online student scheduling servers.
+ * 
+ * @author Tomas Muller
+ */
+public interface RemoteCallStatisticsMBean {
+	
+	public long getNrCalls();
+	
+	public long getNrBatches();
+	
+	/**
+	 * Number of calls that were executed as a part of a batch
+	 */
+	public long getNrBatchedCalls();
+	
+	/**
+	 * For each method: number of calls, failures, average and maximal latency, and the latency histogram.
+	 * Calls executed as a part of a batch are only counted with their method, the latency of the batches is under the [batch] entry.
+	 */
+	public String[] getMethodStatistics();
+	
+	public void resetStatistics();
+
+}
@@ -42,12 +42,18 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 	private RpcDispatcher iDispatcher;
 	private RemoteSolverContainer<T> iContainer;
 	private boolean iCheckLocal = true;
+	private SolverServerImplementation iServer = null;
 
 	public SolverContainerWrapper(RpcDispatcher dispatcher, RemoteSolverContainer<T> container, boolean checkLocal) {
 		iDispatcher = dispatcher;
 		iContainer = container;
 		iCheckLocal = checkLocal;
 	}
+	
+	public SolverContainerWrapper(SolverServerImplementation server, RemoteSolverContainer<T> container, boolean checkLocal) {
+		this(server.getDispatcher(), container, checkLocal);
+		iServer = server;
+	}
 
 	@Override
 	public Set<String> getSolvers() {
@@ -131,6 +137,18 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 
 	@Override
 	public T createSolver(String user, DataProperties config) {
+		SolverServerLoadMonitor monitor = (iServer == null ? null : iServer.getLoadMonitor());
+		if (monitor != null) {
+			Address address = monitor.selectServer();
+			if (address != null) {
+				try {
+					return createSolver(address, user, config);
+				} catch (Exception e) {
+					sLog.warn("Failed to start the solver on " + address + ": " + e.getMessage(), e);
+					monitor.invalidate(address);
+				}
+			}
+		}
 		try {
 			Address bestAddress = null;
 			int bestUsage = 0;
@@ -148,11 +166,7 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 			if (bestAddress == null)
 				throw new RuntimeException("Not enough resources to create a solver instance, please try again later.");
 			
-			if (bestAddress.equals(iDispatcher.getChannel().getAddress()))
-				return iContainer.createSolver(user, config);
-			
-			iContainer.getDispatcher().callRemoteMethod(bestAddress, "createRemoteSolver", new Object[] { user, config, iDispatcher.getChannel().getAddress() }, new Class[] { String.class, DataProperties.class, Address.class }, SolverServerImplementation.sFirstResponse);
-			return iContainer.createProxy(bestAddress, user);
+			return createSolver(bestAddress, user, config);
 		} catch (RuntimeException e) {
 			throw e;
 		} catch (Exception e) {
@@ -160,6 +174,14 @@ public class SolverContainerWrapper<T> implements SolverContainer<T> {
 		}
 	}
 	
+	protected T createSolver(Address address, String user, DataProperties config) throws Exception {
+		if (address.equals(iDispatcher.getChannel().getAddress()))
+			return iContainer.createSolver(user, config);
+		
+		iContainer.getDispatcher().callRemoteMethod(address, "createRemoteSolver", new Object[] { user, config, iDispatcher.getChannel().getAddress() }, new Class[] { String.class, DataProperties.class, Address.class }, SolverServerImplementation.sFirstResponse);
+		return iContainer.createProxy(address, user);
+	}
+	
 	@Override
 	public void unloadSolver(String user) {
 		try {
@@ -104,6 +104,7 @@ public class SolverServerImplementation extends AbstractSolverServer implements
 	private RemoteRoomAvailability iRemoteRoomAvailability;
 	private OnlineStudentSchedulingGenericUpdater iUpdater;
 	private RemoteQueueProcessor iRemoteQueueProcessor;
+	private SolverServerLoadMonitor iLoadMonitor;
 	
 	protected boolean iLocal = false;
 	
@@ -130,6 +131,8 @@ public class SolverServerImplementation extends AbstractSolverServer implements
 	
 	public RpcDispatcher getDispatcher() { return iDispatcher; }
 	
+	public SolverServerLoadMonitor getLoadMonitor() { return iLoadMonitor; }
+	
 	@Override
 	public void start() {
 		iCourseSolverContainer.start();
@@ -140,10 +143,17 @@ public class SolverServerImplementation extends AbstractSolverServer implements
 		iUpdater.start();
 
 		super.start();
+		
+		iLoadMonitor = new SolverServerLoadMonitor(this);
+		iLoadMonitor.start();
 	}
 	
 	@Override
 	public void stop() {
+		if (iLoadMonitor != null) {
+			iLoadMonitor.stopMonitoring();
+			iLoadMonitor = null;
+		}
 		super.stop();
 
 		iCourseSolverContainer.stop();
@@ -417,6 +427,8 @@ public class SolverServerImplementation extends AbstractSolverServer implements
 		if (view instanceof MergeView) {
 			reset();
 		}
+		if (iLoadMonitor != null)
+			iLoadMonitor.viewChanged(view.getMembers());
 	}
 
 
@@ -0,0 +1,147 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+
+import org.unitime.timetable.solver.CommonSolverInterface;
+
+/**
+ * Load of a solver server (heap, CPU, and the number of solver instances), as collected by the {@link SolverServerLoadMonitor}
+ * on each heartbeat.
+ * 
+ * @author Tomas Muller
+ */
+public class SolverServerLoad implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** Weight of the heap usage (0 .. 1) in the placement score, compared to the server usage */
+	public static double sHeapWeight = 10.0;
+	/** Weight of the CPU load (system load average per processor) in the placement score, compared to the server usage */
+	public static double sCpuWeight = 10.0;
+	/** Usage of a solver that has been placed on the server since the last heartbeat (a loaded, not passivated solver) */
+	public static int sPendingUsage = 2;
+	
+	private String iHost;
+	private boolean iActive, iAvailable;
+	private int iUsage;
+	private long iAvailableMemory, iMaxMemory, iMemoryLimit;
+	private int iProcessors;
+	private double iSystemLoad;
+	private int iSolvers = 0, iRunningSolvers = 0, iPassivatedSolvers = 0;
+	private long iTimeStamp, iReceived;
+	
+	public SolverServerLoad(SolverServer server) {
+		iHost = server.getHost();
+		iActive = server.isActive();
+		iUsage = server.getUsage();
+		iAvailableMemory = server.getAvailableMemory();
+		iMaxMemory = Runtime.getRuntime().maxMemory();
+		iMemoryLimit = server.getMemoryLimit();
+		// do not call SolverServer.isAvailable(), it may trigger a full GC when the memory is low
+		iAvailable = iActive && iMemoryLimit <= iAvailableMemory;
+		iProcessors = Math.max(1, server.getAvailableProcessors());
+		iSystemLoad = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+		iTimeStamp = System.currentTimeMillis();
+		iReceived = iTimeStamp;
+	}
+	
+	public SolverServerLoad(String host, boolean active, int usage, long availableMemory, long maxMemory, long memoryLimit, int processors, double systemLoad) {
+		iHost = host;
+		iActive = active;
+		iUsage = usage;
+		iAvailableMemory = availableMemory;
+		iMaxMemory = maxMemory;
+		iMemoryLimit = memoryLimit;
+		iAvailable = iActive && iMemoryLimit <= iAvailableMemory;
+		iProcessors = Math.max(1, processors);
+		iSystemLoad = systemLoad;
+		iTimeStamp = System.currentTimeMillis();
+		iReceived = iTimeStamp;
+	}
+	
+	/**
+	 * Count a solver instance of the server
+	 */
+	public void addSolver(CommonSolverInterface solver) {
+		iSolvers ++;
+		try {
+			if (solver.isPassivated()) {
+				iPassivatedSolvers ++;
+			} else if (solver.isWorking()) {
+				iRunningSolvers ++;
+			}
+		} catch (Exception e) {}
+	}
+	
+	public String getHost() { return iHost; }
+	public boolean isActive() { return iActive; }
+	public boolean isAvailable() { return iAvailable; }
+	public int getUsage() { return iUsage; }
+	public long getAvailableMemory() { return iAvailableMemory; }
+	public long getMaxMemory() { return iMaxMemory; }
+	public long getMemoryLimit() { return iMemoryLimit; }
+	public int getAvailableProcessors() { return iProcessors; }
+	/** System load average for the last minute, negative if not available */
+	public double getSystemLoad() { return iSystemLoad; }
+	public int getSolvers() { return iSolvers; }
+	public int getRunningSolvers() { return iRunningSolvers; }
+	public int getPassivatedSolvers() { return iPassivatedSolvers; }
+	/** Time when the load was collected, using the clock of the solver server (only informative, the clocks of the cluster members may differ) */
+	public long getTimeStamp() { return iTimeStamp; }
+	/** Time when the load was received, using the local clock */
+	public long getReceived() { return iReceived; }
+	public void setReceived(long received) { iReceived = received; }
+	
+	/** Heap usage, between 0 (empty) and 1 (full) */
+	public double getHeapUsage() {
+		return iMaxMemory <= 0 ? 0.0 : Math.min(1.0, Math.max(0.0, 1.0 - ((double)iAvailableMemory) / iMaxMemory));
+	}
+	
+	/** CPU load, system load average per processor (or the ratio of running solvers to processors if the load average is not available) */
+	public double getCpuLoad() {
+		if (iSystemLoad >= 0.0) return iSystemLoad / iProcessors;
+		return ((double)iRunningSolvers) / iProcessors;
+	}
+	
+	/**
+	 * Placement score, the lower the better. Starts with the server usage (that includes the usage base, see {@link SolverServer#setUsageBase(int)}),
+	 * which is increased by the heap and CPU load of the server.
+	 * @param pending number of solvers that have been placed on the server since the load was collected
+	 */
+	public double getScore(int pending) {
+		return iUsage + sPendingUsage * pending + sHeapWeight * getHeapUsage() + sCpuWeight * getCpuLoad();
+	}
+	
+	/**
+	 * Check whether the server is available and has enough memory for an additional solver
+	 * (each solver placed on the server since the load was collected is expected to take the memory limit)
+	 * @param pending number of solvers that have been placed on the server since the load was collected
+	 */
+	public boolean hasMemory(int pending) {
+		return iAvailable && iAvailableMemory >= (1 + pending) * iMemoryLimit;
+	}
+	
+	@Override
+	public String toString() {
+		return iHost + "{usage: " + iUsage + ", heap: " + Math.round(100.0 * getHeapUsage()) + "%, cpu: " + Math.round(100.0 * getCpuLoad()) + "%, solvers: " + iSolvers +
+				" (" + iRunningSolvers + " running, " + iPassivatedSolvers + " passivated)" + (iAvailable ? "" : ", not available") + "}";
+	}
+}
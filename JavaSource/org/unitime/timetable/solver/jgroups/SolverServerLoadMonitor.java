@@ -0,0 +1,300 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jgroups.Address;
+import org.jgroups.Message.Flag;
+import org.jgroups.blocks.RequestOptions;
+import org.jgroups.blocks.ResponseMode;
+import org.jgroups.util.Rsp;
+import org.jgroups.util.RspList;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Solver placement service. On each heartbeat ({@link ApplicationProperty#SolverClusterHeartbeat} seconds), the load of all the solver servers
+ * (see {@link SolverServer#getLoad()}) is collected using a single cluster call and cached. A new solver is then placed on the server with the lowest
+ * placement score (see {@link SolverServerLoad#getScore(int)}) without contacting the other servers. Solvers placed since the last heartbeat are
+ * counted against the server, so that a burst of new solvers gets spread across the cluster.<br>
+ * When a solver server joins the cluster, passivated solvers are moved to it from the servers that have more passivated solvers than the cluster
+ * average (see {@link ApplicationProperty#SolverClusterRebalance}).
+ * 
+ * @author Tomas Muller
+ */
+public class SolverServerLoadMonitor extends Thread {
+	private static Log sLog = LogFactory.getLog(SolverServerLoadMonitor.class);
+	/** Number of heartbeats after which a server that has joined the cluster but is not available is no longer waited for */
+	private static final int sMaxRebalanceAttempts = 10;
+	
+	private SolverServerImplementation iServer;
+	private Map<Address, SolverServerLoad> iLoads = new HashMap<Address, SolverServerLoad>();
+	private Map<Address, Integer> iPending = new HashMap<Address, Integer>();
+	private Map<Address, Integer> iJoined = new HashMap<Address, Integer>();
+	private List<Address> iMembers = new ArrayList<Address>();
+	private boolean iContinue = true, iRefresh = false;
+	
+	public SolverServerLoadMonitor(SolverServerImplementation server) {
+		iServer = server;
+		if (server.getChannel().getView() != null)
+			iMembers.addAll(server.getChannel().getView().getMembers());
+		setName("SolverServerLoadMonitor");
+		setDaemon(true);
+	}
+	
+	protected long getInterval() {
+		return 1000l * ApplicationProperty.SolverClusterHeartbeat.intValue();
+	}
+	
+	/**
+	 * Collect the load of all the solver servers of the cluster
+	 */
+	protected void refresh() {
+		long interval = getInterval();
+		RequestOptions options = new RequestOptions(ResponseMode.GET_ALL, interval <= 0 ? ApplicationProperty.SolverClusterTimeout.intValue() : interval).setFlags(Flag.DONT_BUNDLE, Flag.OOB);
+		Map<Address, SolverServerLoad> loads = new HashMap<Address, SolverServerLoad>();
+		try {
+			RspList<SolverServerLoad> ret = iServer.getDispatcher().callRemoteMethods(null, "getLoad", new Object[] {}, new Class[] {}, options);
+			long received = System.currentTimeMillis();
+			for (Rsp<SolverServerLoad> rsp : ret) {
+				if (rsp.wasReceived() && rsp.getValue() != null) {
+					rsp.getValue().setReceived(received);
+					loads.put(rsp.getSender(), rsp.getValue());
+				}
+			}
+		} catch (Exception e) {
+			sLog.warn("Failed to collect solver server load: " + e.getMessage(), e);
+			return;
+		}
+		synchronized (this) {
+			iLoads = loads;
+			iPending.clear();
+			iMembers = new ArrayList<Address>(iServer.getChannel().getView().getMembers());
+		}
+		if (sLog.isDebugEnabled())
+			sLog.debug("Solver server load: " + loads.values());
+	}
+	
+	/**
+	 * True if the load of the servers has been received recently (within three heartbeats, using the local clock)
+	 */
+	protected synchronized boolean isValid(SolverServerLoad load) {
+		long interval = getInterval();
+		return load != null && interval > 0 && System.currentTimeMillis() - load.getReceived() <= 3 * interval;
+	}
+	
+	/**
+	 * Select the server on which a new solver should be placed. The server is counted as having one more solver until the next heartbeat.
+	 * @return null if there is no recent load information or no server seems to have enough memory (the caller should then ask all the servers,
+	 * the collected available memory also counts the garbage that has not been collected yet)
+	 */
+	public synchronized Address selectServer() {
+		if (iLoads.isEmpty()) return null;
+		Map<Address, SolverServerLoad> loads = new HashMap<Address, SolverServerLoad>();
+		for (Address address: iMembers) {
+			SolverServerLoad load = iLoads.get(address);
+			if (isValid(load)) loads.put(address, load);
+		}
+		if (loads.isEmpty()) return null;
+		return selectServer(iMembers, loads, iPending);
+	}
+	
+	/**
+	 * Select the server with the lowest placement score that has enough memory for a new solver. The selected server is counted as having
+	 * one more pending solver.
+	 * @param members servers in the order of the cluster view
+	 * @param loads collected load of the servers (servers without a load are skipped)
+	 * @param pending number of solvers placed on each server since its load was collected
+	 * @return null if there is no server with enough memory
+	 */
+	public static <T> T selectServer(List<T> members, Map<T, SolverServerLoad> loads, Map<T, Integer> pending) {
+		T best = null; double bestScore = 0.0;
+		for (T member: members) {
+			SolverServerLoad load = loads.get(member);
+			if (load == null) continue;
+			Integer p = pending.get(member);
+			int count = (p == null ? 0 : p.intValue());
+			if (!load.hasMemory(count)) continue;
+			double score = load.getScore(count);
+			if (best == null || score < bestScore) {
+				best = member; bestScore = score;
+			}
+		}
+		if (best != null) {
+			Integer p = pending.get(best);
+			pending.put(best, 1 + (p == null ? 0 : p.intValue()));
+		}
+		return best;
+	}
+	
+	/**
+	 * Drop the collected load of a server (e.g., when it has failed to create a solver)
+	 */
+	public synchronized void invalidate(Address address) {
+		iLoads.remove(address);
+	}
+	
+	/**
+	 * Recently collected load of a server, null if not known
+	 */
+	public synchronized SolverServerLoad getLoad(Address address) {
+		SolverServerLoad load = iLoads.get(address);
+		return isValid(load) ? load : null;
+	}
+	
+	/**
+	 * Address of a cluster member with the given host name, null if there is no such member or its recent load is not known
+	 */
+	public synchronized Address getAddress(String host) {
+		for (Address address: iMembers) {
+			if (host.equals(address.toString()) && isValid(iLoads.get(address)))
+				return address;
+		}
+		return null;
+	}
+	
+	/**
+	 * Host names of the servers, in the order of the cluster view, null if the recent load is not known
+	 */
+	public synchronized List<String> getHosts(boolean onlyAvailable) {
+		List<String> hosts = new ArrayList<String>();
+		boolean valid = false;
+		for (Address address: iMembers) {
+			SolverServerLoad load = iLoads.get(address);
+			if (!isValid(load)) continue;
+			valid = true;
+			if (onlyAvailable && !load.isAvailable()) continue;
+			hosts.add(load.getHost());
+		}
+		return valid ? hosts : null;
+	}
+	
+	/**
+	 * Cluster view has changed: refresh the load and, if there are new members, rebalance passivated solvers
+	 */
+	public synchronized void viewChanged(List<Address> members) {
+		if (!iMembers.isEmpty())
+			for (Address address: members)
+				if (!iMembers.contains(address) && !address.equals(iServer.getAddress()))
+					iJoined.put(address, 0);
+		iJoined.keySet().retainAll(members);
+		iMembers = new ArrayList<Address>(members);
+		iRefresh = true;
+		notify();
+	}
+	
+	/**
+	 * Move passivated solvers to the servers that have joined the cluster, so that this server does not
+	 * have more passivated solvers than the cluster average.
+	 */
+	protected void rebalance() {
+		Set<Address> targets = new HashSet<Address>();
+		Map<Address, Integer> passivated = new HashMap<Address, Integer>();
+		int total = 0;
+		synchronized (this) {
+			if (iJoined.isEmpty()) return;
+			for (Map.Entry<Address, Integer> entry: new ArrayList<Map.Entry<Address, Integer>>(iJoined.entrySet())) {
+				SolverServerLoad load = getLoad(entry.getKey());
+				if (load != null && load.isAvailable()) {
+					targets.add(entry.getKey());
+					iJoined.remove(entry.getKey());
+				} else if (entry.getValue() + 1 >= sMaxRebalanceAttempts) {
+					iJoined.remove(entry.getKey());
+				} else {
+					entry.setValue(entry.getValue() + 1);
+				}
+			}
+			if (targets.isEmpty()) return;
+			for (Address address: iMembers) {
+				SolverServerLoad load = getLoad(address);
+				if (load == null || (!load.isAvailable() && !address.equals(iServer.getAddress()))) continue;
+				passivated.put(address, load.getPassivatedSolvers());
+				total += load.getPassivatedSolvers();
+			}
+		}
+		if (ApplicationProperty.SolverClusterRebalance.isFalse() || passivated.size() <= 1) return;
+		int average = (int)Math.ceil(((double)total) / passivated.size());
+		Integer mine = passivated.get(iServer.getAddress());
+		int surplus = (mine == null ? 0 : mine - average);
+		if (surplus <= 0) return;
+		sLog.info("Moving up to " + surplus + " passivated solvers to " + targets + " (" + total + " passivated solvers on " + passivated.size() + " servers).");
+		MigratableSolverContainer[] containers = new MigratableSolverContainer[] {
+				(MigratableSolverContainer)iServer.getCourseSolverContainer(),
+				(MigratableSolverContainer)iServer.getExamSolverContainer(),
+				(MigratableSolverContainer)iServer.getStudentSolverContainer(),
+				(MigratableSolverContainer)iServer.getInstructorSchedulingContainer()
+		};
+		int moved = 0;
+		containers: for (MigratableSolverContainer container: containers) {
+			for (String user: container.getPassivatedSolvers()) {
+				if (moved >= surplus) break containers;
+				Address target = null;
+				for (Address address: targets)
+					if (target == null || passivated.get(address) < passivated.get(target)) target = address;
+				if (target == null || passivated.get(target) >= average) break containers;
+				if (container.migrateSolver(user, target)) {
+					passivated.put(target, passivated.get(target) + 1);
+					moved ++;
+				}
+			}
+		}
+		if (moved > 0) {
+			sLog.info(moved + " passivated solvers moved to " + targets + ".");
+			synchronized (this) { iRefresh = true; }
+		}
+	}
+	
+	@Override
+	public void run() {
+		sLog.info("Solver server load monitor started.");
+		while (iContinue) {
+			try {
+				if (getInterval() > 0) {
+					refresh();
+					rebalance();
+				}
+			} catch (Exception e) {
+				sLog.error("Solver server load check failed: " + e.getMessage(), e);
+			}
+			synchronized (this) {
+				try {
+					long interval = getInterval();
+					if (!iRefresh && iContinue) wait(interval <= 0 ? 60000 : interval);
+				} catch (InterruptedException e) {
+					break;
+				}
+				iRefresh = false;
+			}
+		}
+		sLog.info("Solver server load monitor stopped.");
+	}
+	
+	public synchronized void stopMonitoring() {
+		iContinue = false;
+		notify();
+	}
+}
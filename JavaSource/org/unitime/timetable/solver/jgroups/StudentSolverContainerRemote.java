@@ -19,10 +19,13 @@
 */
 package org.unitime.timetable.solver.jgroups;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.Set;
 
 
 import org.apache.commons.logging.Log;
@@ -33,13 +36,16 @@ import org.jgroups.JChannel;
 import org.jgroups.SuspectedException;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.blocks.mux.MuxRpcDispatcher;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.model.SolverParameterGroup.SolverType;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.solver.studentsct.StudentSolver;
 import org.unitime.timetable.solver.studentsct.StudentSolverProxy;
 
 /**
  * @author Tomas Muller
  */
-public class StudentSolverContainerRemote extends StudentSolverContainer implements RemoteSolverContainer<StudentSolverProxy> {
+public class StudentSolverContainerRemote extends StudentSolverContainer implements RemoteSolverContainer<StudentSolverProxy>, MigratableSolverContainer {
 	private static Log sLog = LogFactory.getLog(StudentSolverContainerRemote.class);
 	
 	private RpcDispatcher iDispatcher;
@@ -92,6 +98,33 @@ public class StudentSolverContainerRemote extends StudentSolverContainer impleme
 		}
 	}
 	
+	@Override
+	public Set<String> getPassivatedSolvers() {
+		return PassivatedSolverBackup.getPassivatedSolvers(iStudentSolvers);
+	}
+	
+	@Override
+	public boolean migrateSolver(String user, Address target) {
+		return PassivatedSolverBackup.migrate(iDispatcher, SolverType.STUDENT, iStudentSolvers, user, target);
+	}
+	
+	@Override
+	public boolean restorePassivatedSolver(String user, PassivatedSolverBackup backup) {
+		if (iStudentSolvers.containsKey(user)) return false;
+		File folder = ApplicationProperties.getPassivationFolder();
+		try {
+			backup.write(folder, SolverType.STUDENT, user);
+		} catch (IOException e) {
+			sLog.error("Failed to store backup of solver " + user + ": " + e.getMessage(), e);
+			return false;
+		}
+		StudentSolver solver = new StudentSolver(new DataProperties(), new SolverOnDispose(user));
+		if (!solver.restore(folder, user, true)) return false;
+		solver.passivate(folder, user);
+		iStudentSolvers.put(user, solver);
+		return true;
+	}
+	
 	@Override
 	public StudentSolverProxy createProxy(Address address, String user) {
 		SolverInvocationHandler handler = new SolverInvocationHandler(address, user);
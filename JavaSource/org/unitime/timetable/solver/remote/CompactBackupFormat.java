@@ -0,0 +1,242 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.remote;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.dom4j.Attribute;
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.Node;
+
+/**
+ * Compact binary encoding of a solver backup document, used instead of the pretty-printed XML
+ * when the backup format is set to compact (see {@link BackupFileFilter#sCompactExtension}).<br>
+ * The document tree is written element by element into the given stream (which is expected to be compressed),
+ * element names, attribute names and short repeated values are written only once and then referenced by their index.
+ * Only elements, attributes, text, and comments (e.g., the solution info) are stored, which is all that the solver backups contain.<br>
+ * This is a size optimization only: the backup is still created (and restored) as a complete dom4j document,
+ * so the memory needed to make or restore a backup is the same as with the XML format.
+ * 
+ * @author Tomas Muller
+ */
+public class CompactBackupFormat {
+	private static final int sMagic = 0x55544258; // UTBX
+	private static final int sVersion = 2;
+	private static final byte sEnd = 0, sElement = 1, sText = 2, sComment = 3;
+	private static final int sMaxTableSize = 65536;
+	private static final int sMaxTableStringLength = 64;
+	
+	/**
+	 * Write the given document into the given stream. The stream is flushed, but not closed.
+	 */
+	public static void write(Document document, OutputStream stream) throws IOException {
+		Writer writer = new Writer(stream);
+		writer.iOut.writeInt(sMagic);
+		writer.iOut.writeInt(sVersion);
+		for (Iterator<Node> i = document.nodeIterator(); i.hasNext(); ) {
+			Node node = i.next();
+			switch (node.getNodeType()) {
+			case Node.ELEMENT_NODE:
+				writer.iOut.writeByte(sElement);
+				writer.writeElement((Element)node);
+				break;
+			case Node.COMMENT_NODE:
+				writer.iOut.writeByte(sComment);
+				writer.writeString(node.getText(), false);
+				break;
+			}
+		}
+		writer.iOut.writeByte(sEnd);
+		writer.iOut.flush();
+	}
+	
+	/**
+	 * Read a document from the given stream. The stream is not closed.
+	 */
+	public static Document read(InputStream stream) throws IOException {
+		Reader reader = new Reader(stream);
+		if (reader.iIn.readInt() != sMagic)
+			throw new IOException("Not a compact solver backup.");
+		int version = reader.iIn.readInt();
+		if (version < 1 || version > sVersion)
+			throw new IOException("Unsupported compact solver backup version " + version + " (expected " + sVersion + ").");
+		Document document = DocumentHelper.createDocument();
+		if (version == 1) {
+			// version 1 contains just the root element
+			if (reader.iIn.readByte() != sElement)
+				throw new IOException("Compact solver backup has no root element.");
+			reader.readElement(document.addElement(reader.readString()));
+			return document;
+		}
+		while (true) {
+			byte type = reader.iIn.readByte();
+			switch (type) {
+			case sEnd:
+				if (document.getRootElement() == null)
+					throw new IOException("Compact solver backup has no root element.");
+				return document;
+			case sElement:
+				reader.readElement(document.addElement(reader.readString()));
+				break;
+			case sComment:
+				document.addComment(reader.readString(false));
+				break;
+			default:
+				throw new IOException("Compact solver backup is corrupted (unknown node type " + type + ").");
+			}
+		}
+	}
+	
+	private static class Writer {
+		private DataOutputStream iOut;
+		private Map<String, Integer> iTable = new HashMap<String, Integer>();
+		
+		private Writer(OutputStream stream) {
+			iOut = new DataOutputStream(stream);
+		}
+		
+		private void writeElement(Element element) throws IOException {
+			writeString(element.getQualifiedName(), true);
+			writeInt(element.attributeCount());
+			for (Iterator<Attribute> i = element.attributeIterator(); i.hasNext(); ) {
+				Attribute attribute = i.next();
+				writeString(attribute.getQualifiedName(), true);
+				writeString(attribute.getValue(), false);
+			}
+			for (Iterator<Node> i = element.nodeIterator(); i.hasNext(); ) {
+				Node node = i.next();
+				switch (node.getNodeType()) {
+				case Node.ELEMENT_NODE:
+					iOut.writeByte(sElement);
+					writeElement((Element)node);
+					break;
+				case Node.TEXT_NODE:
+				case Node.CDATA_SECTION_NODE:
+				case Node.ENTITY_REFERENCE_NODE:
+					iOut.writeByte(sText);
+					writeString(node.getText(), false);
+					break;
+				case Node.COMMENT_NODE:
+					iOut.writeByte(sComment);
+					writeString(node.getText(), false);
+					break;
+				}
+			}
+			iOut.writeByte(sEnd);
+		}
+		
+		private void writeInt(int value) throws IOException {
+			while ((value & ~0x7f) != 0) {
+				iOut.writeByte((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			iOut.writeByte(value);
+		}
+		
+		private void writeString(String value, boolean name) throws IOException {
+			Integer index = iTable.get(value);
+			if (index != null) {
+				writeInt(1 + index);
+				return;
+			}
+			writeInt(0);
+			byte[] bytes = value.getBytes("UTF-8");
+			writeInt(bytes.length);
+			iOut.write(bytes);
+			if (iTable.size() < sMaxTableSize && (name || value.length() <= sMaxTableStringLength))
+				iTable.put(value, iTable.size());
+		}
+	}
+	
+	private static class Reader {
+		private DataInputStream iIn;
+		private List<String> iTable = new ArrayList<String>();
+		
+		private Reader(InputStream stream) {
+			iIn = new DataInputStream(stream);
+		}
+		
+		private void readElement(Element element) throws IOException {
+			int nrAttributes = readInt();
+			for (int i = 0; i < nrAttributes; i++) {
+				String name = readString(true);
+				element.addAttribute(name, readString(false));
+			}
+			while (true) {
+				byte type = iIn.readByte();
+				switch (type) {
+				case sEnd:
+					return;
+				case sElement:
+					readElement(element.addElement(readString(true)));
+					break;
+				case sText:
+					element.addText(readString(false));
+					break;
+				case sComment:
+					element.addComment(readString(false));
+					break;
+				default:
+					throw new IOException("Compact solver backup is corrupted (unknown node type " + type + ").");
+				}
+			}
+		}
+		
+		private String readString() throws IOException {
+			return readString(true);
+		}
+		
+		private int readInt() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				int b = iIn.readByte();
+				value |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) return value;
+			}
+			throw new IOException("Compact solver backup is corrupted (malformed number).");
+		}
+		
+		private String readString(boolean name) throws IOException {
+			int index = readInt();
+			if (index > 0) {
+				if (index > iTable.size())
+					throw new IOException("Compact solver backup is corrupted (unknown string " + index + ").");
+				return iTable.get(index - 1);
+			}
+			byte[] bytes = new byte[readInt()];
+			iIn.readFully(bytes);
+			String value = new String(bytes, "UTF-8");
+			if (iTable.size() < sMaxTableSize && (name || value.length() <= sMaxTableStringLength))
+				iTable.add(value);
+			return value;
+		}
+	}
+}
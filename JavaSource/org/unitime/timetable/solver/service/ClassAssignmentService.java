@@ -44,7 +44,10 @@ public class ClassAssignmentService implements AssignmentService<ClassAssignment
 	@Override
 	public ClassAssignmentProxy getAssignment() {
 		SolverProxy solver = courseTimetablingSolverService.getSolver();
-		if (solver!=null) return new CachedClassAssignmentProxy(solver);
+		if (solver!=null) {
+			ProxyHolder<String, SolverProxy> h = (ProxyHolder<String, SolverProxy>)sessionContext.getAttribute(SessionAttribute.CourseTimetablingSolver);
+			return CachedClassAssignmentProxy.getInstance(h == null ? null : h.getId(), solver);
+		}
 		
 		String solutionIdsStr = (String)sessionContext.getAttribute(SessionAttribute.SelectedSolution);
 		HashSet<Long> solutionIds = new HashSet<Long>();
@@ -64,6 +64,7 @@ import org.unitime.timetable.model.dao.SolverGroupDAO;
 import org.unitime.timetable.model.dao.SolverPredefinedSettingDAO;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.server.solver.SolverPageBackend;
+import org.unitime.timetable.solver.CachedClassAssignmentProxy;
 import org.unitime.timetable.solver.SolverProxy;
 import org.unitime.timetable.solver.jgroups.RemoteSolver;
 import org.unitime.timetable.solver.jgroups.SolverContainer;
@@ -146,6 +147,8 @@ public class CourseTimetablingSolverService implements SolverService<SolverProxy
 				solver.interrupt();
 				solver.dispose();
 			}
+			String puid = (String)sessionContext.getAttribute(SessionAttribute.CourseTimetablingUser);
+			CachedClassAssignmentProxy.evict(puid != null ? puid : sessionContext.getUser().getExternalUserId());
 			sessionContext.removeAttribute(SessionAttribute.CourseTimetablingUser);
 		} catch (Exception e) {
 			sLog.warn("Failed to remove a solver: " + e.getMessage(), e);
@@ -46,6 +46,8 @@ import org.unitime.timetable.solver.jgroups.SolverContainer;
 import org.unitime.timetable.solver.jgroups.SolverContainerWrapper;
 import org.unitime.timetable.solver.jgroups.SolverServer;
 import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
+import org.unitime.timetable.solver.jgroups.SolverServerLoad;
+import org.unitime.timetable.solver.jgroups.SolverServerLoadMonitor;
 import org.unitime.timetable.solver.studentsct.StudentSolverProxy;
 import org.unitime.timetable.util.queue.QueueProcessor;
 
@@ -88,19 +90,19 @@ public class SolverServerService implements InitializingBean, DisposableBean {
 				iServer.start();
 				
 				iCourseSolverContainer = new SolverContainerWrapper<SolverProxy>(
-						((SolverServerImplementation)iServer).getDispatcher(),
+						(SolverServerImplementation)iServer,
 						(RemoteSolverContainer<SolverProxy>) iServer.getCourseSolverContainer(), true);
 				iExamSolverContainer = new SolverContainerWrapper<ExamSolverProxy>(
-						((SolverServerImplementation)iServer).getDispatcher(),
+						(SolverServerImplementation)iServer,
 						(RemoteSolverContainer<ExamSolverProxy>) iServer.getExamSolverContainer(), true);
 				iStudentSolverContainer = new SolverContainerWrapper<StudentSolverProxy>(
-						((SolverServerImplementation)iServer).getDispatcher(),
+						(SolverServerImplementation)iServer,
 						(RemoteSolverContainer<StudentSolverProxy>) iServer.getStudentSolverContainer(), true);
 				iInstructorSchedulingContainer = new SolverContainerWrapper<InstructorSchedulingProxy>(
-						((SolverServerImplementation)iServer).getDispatcher(),
+						(SolverServerImplementation)iServer,
 						(RemoteSolverContainer<InstructorSchedulingProxy>) iServer.getInstructorSchedulingContainer(), true);
 				iOnlineStudentSchedulingContainer = new SolverContainerWrapper<OnlineSectioningServer>(
-						((SolverServerImplementation)iServer).getDispatcher(),
+						(SolverServerImplementation)iServer,
 						(RemoteSolverContainer<OnlineSectioningServer>) iServer.getOnlineStudentSchedulingContainer(), false);
 			}
 		} catch (Exception e) {
@@ -152,11 +154,10 @@ public class SolverServerService implements InitializingBean, DisposableBean {
 	    		SolverProxy solver = iServer.getCourseSolverContainer().createSolver(user, properties);
     			return solver;
 	    	}	
-	    	for (SolverServer server: iServer.getServers(true)) {
-	    		if (server.getHost().equals(host)) {
-	    			SolverProxy solver = server.getCourseSolverContainer().createSolver(user, properties);
-	    			return solver;
-	    		}
+	    	SolverServer server = getAvailableServer(host);
+	    	if (server != null) {
+	    		SolverProxy solver = server.getCourseSolverContainer().createSolver(user, properties);
+	    		return solver;
 	    	}
 	    }
 	    SolverProxy solver = iCourseSolverContainer.createSolver(user, properties);
@@ -173,11 +174,10 @@ public class SolverServerService implements InitializingBean, DisposableBean {
 	    		ExamSolverProxy solver = iServer.getExamSolverContainer().createSolver(user, properties);
     			return solver;
 	    	}	
-	    	for (SolverServer server: iServer.getServers(true)) {
-	    		if (server.getHost().equals(host)) {
-	    			ExamSolverProxy solver = server.getExamSolverContainer().createSolver(user, properties);
-	    			return solver;
-	    		}
+	    	SolverServer server = getAvailableServer(host);
+	    	if (server != null) {
+	    		ExamSolverProxy solver = server.getExamSolverContainer().createSolver(user, properties);
+	    		return solver;
 	    	}
 	    }
 	    ExamSolverProxy solver = iExamSolverContainer.createSolver(user, properties);
@@ -194,11 +194,10 @@ public class SolverServerService implements InitializingBean, DisposableBean {
 	    		StudentSolverProxy solver = iServer.getStudentSolverContainer().createSolver(user, properties);
     			return solver;
 	    	}	
-	    	for (SolverServer server: iServer.getServers(true)) {
-	    		if (server.getHost().equals(host)) {
-	    			StudentSolverProxy solver = server.getStudentSolverContainer().createSolver(user, properties);
-	    			return solver;
-	    		}
+	    	SolverServer server = getAvailableServer(host);
+	    	if (server != null) {
+	    		StudentSolverProxy solver = server.getStudentSolverContainer().createSolver(user, properties);
+	    		return solver;
 	    	}
 	    }
 	    StudentSolverProxy solver = iStudentSolverContainer.createSolver(user, properties);
@@ -215,11 +214,10 @@ public class SolverServerService implements InitializingBean, DisposableBean {
 	    		InstructorSchedulingProxy solver = iServer.getInstructorSchedulingContainer().createSolver(user, properties);
     			return solver;
 	    	}	
-	    	for (SolverServer server: iServer.getServers(true)) {
-	    		if (server.getHost().equals(host)) {
-	    			InstructorSchedulingProxy solver = server.getInstructorSchedulingContainer().createSolver(user, properties);
-	    			return solver;
-	    		}
+	    	SolverServer server = getAvailableServer(host);
+	    	if (server != null) {
+	    		InstructorSchedulingProxy solver = server.getInstructorSchedulingContainer().createSolver(user, properties);
+	    		return solver;
 	    	}
 	    }
 	    InstructorSchedulingProxy solver = iInstructorSchedulingContainer.createSolver(user, properties);
@@ -241,6 +239,31 @@ public class SolverServerService implements InitializingBean, DisposableBean {
 		return null;
 	}
 	
+	/**
+	 * Available solver server of the given host name, null if there is no such server or it is not available.
+	 * The recently collected load of the servers is used when known (see {@link SolverServerLoadMonitor}), so that only the matching server is contacted.
+	 */
+	protected SolverServer getAvailableServer(String host) {
+		SolverServerLoadMonitor monitor = getLoadMonitor();
+		if (monitor != null) {
+			Address address = monitor.getAddress(host);
+			SolverServerLoad load = (address == null ? null : monitor.getLoad(address));
+			if (load != null) {
+				if (!load.isAvailable()) return null;
+				return address.equals(iServer.getAddress()) ? iServer : iServer.crateServerProxy(address);
+			}
+		}
+		for (SolverServer server: iServer.getServers(true))
+			if (server.getHost().equals(host)) return server;
+		return null;
+	}
+	
+	private SolverServerLoadMonitor getLoadMonitor() {
+		if (iServer instanceof SolverServerImplementation)
+			return ((SolverServerImplementation)iServer).getLoadMonitor();
+		return null;
+	}
+	
 	public boolean isOnlineStudentSchedulingEnabled() {
 		return !getOnlineStudentSchedulingContainer().getSolvers().isEmpty();
 	}
@@ -284,6 +307,13 @@ public class SolverServerService implements InitializingBean, DisposableBean {
 
 	public String getHost(String regExp) {
 		if (regExp == null || regExp.isEmpty()) return null;
+		SolverServerLoadMonitor monitor = getLoadMonitor();
+		List<String> hosts = (monitor == null ? null : monitor.getHosts(true));
+		if (hosts != null) {
+			for (String host: hosts)
+				if (host.matches(regExp)) return host;
+			return null;
+		}
 		for (SolverServer server: iServer.getServers(true))
     		if (server.getHost().matches(regExp)) return server.getHost();
 		return null;
@@ -32,12 +32,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -73,6 +75,8 @@ import org.cpsolver.studentsct.model.Student;
 import org.cpsolver.studentsct.model.Subpart;
 import org.cpsolver.studentsct.model.Unavailability;
 import org.cpsolver.studentsct.model.Request.RequestPriority;
+import org.cpsolver.studentsct.model.Student.BackToBackPreference;
+import org.cpsolver.studentsct.model.Student.ModalityPreference;
 import org.cpsolver.studentsct.model.Student.StudentPriority;
 import org.cpsolver.studentsct.reservation.CourseReservation;
 import org.cpsolver.studentsct.reservation.CurriculumOverride;
@@ -222,6 +226,11 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
 	private boolean iCheckCriticalCourses = false;
 	private CriticalCoursesProvider iCriticalCoursesProvider = null;
 	private int iNrCheckCriticalThreads = 1;
+	private int iNrLoadThreads = 1;
+	private int iLoadChunkSize = 1000;
+	private String iTimingPhase = null;
+	private long iTimingStart = 0;
+	private Map<String, Long> iPhaseTimes = new LinkedHashMap<String, Long>();
 	private boolean iMoveCriticalCoursesUp = false;
 	private boolean iMoveFreeTimesDown = false;
 	private boolean iCorrectConfigLimit = false;
@@ -324,6 +333,8 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         	}
         	iNrCheckCriticalThreads = model.getProperties().getPropertyInt("CheckCriticalCourses.NrThreads", 10);
         }
+        iNrLoadThreads = model.getProperties().getPropertyInt("Load.NrThreads", iNrLoadThreads);
+        iLoadChunkSize = model.getProperties().getPropertyInt("Load.ChunkSize", iLoadChunkSize);
         try {
         	String studentCourseDemandsClassName = getModel().getProperties().getProperty("StudentSct.ProjectedCourseDemadsClass", LastLikeStudentCourseDemands.class.getName());
         	if (studentCourseDemandsClassName.indexOf(' ') >= 0) studentCourseDemandsClassName = studentCourseDemandsClassName.replace(" ", "");
@@ -1141,13 +1152,17 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     }
     
     public void skipStudent(org.unitime.timetable.model.Student s, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
-    	iProgress.debug("Skipping student "+s.getUniqueId()+" (id="+s.getExternalUniqueId()+", name="+NameFormat.defaultFormat().format(s)+")");
+    	skipStudent(getStudentData(s, courseTable, classTable), courseTable, classTable);
+    }
+    
+    protected void skipStudent(StudentData s, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+    	iProgress.debug("Skipping student "+s.iStudentId+" (id="+s.iExternalId+", name="+s.iName+")");
     	
     	// If the student is enrolled in some classes, decrease the space in these classes accordingly
     	Map<Course, List<Section>> assignment = new HashMap<Course, List<Section>>();
-    	for (StudentClassEnrollment enrollment: s.getClassEnrollments()) {
-    		Section section = classTable.get(enrollment.getClazz().getUniqueId());
-    		Course course = courseTable.get(enrollment.getCourseOffering().getUniqueId());
+    	for (EnrollmentData enrollment: s.iEnrollments) {
+    		Section section = classTable.get(enrollment.iClassId);
+    		Course course = courseTable.get(enrollment.iCourseId);
     		if (section == null || course == null) continue;
     		
     		List<Section> sections = assignment.get(course);
@@ -1187,24 +1202,24 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     			// Check applicability
     			boolean applicable = false;
     			if (r instanceof org.cpsolver.studentsct.reservation.LearningCommunityReservation) {
-    				applicable = ((org.cpsolver.studentsct.reservation.LearningCommunityReservation)r).getStudentIds().contains(s.getUniqueId())
+    				applicable = ((org.cpsolver.studentsct.reservation.LearningCommunityReservation)r).getStudentIds().contains(s.iStudentId)
     						&& course.equals(((org.cpsolver.studentsct.reservation.LearningCommunityReservation)r).getCourse());
     			} else if (r instanceof GroupReservation) {
-    				applicable = ((GroupReservation)r).getStudentIds().contains(s.getUniqueId());
+    				applicable = ((GroupReservation)r).getStudentIds().contains(s.iStudentId);
     			} else if (r instanceof IndividualReservation) {
-    				applicable = ((IndividualReservation)r).getStudentIds().contains(s.getUniqueId());
+    				applicable = ((IndividualReservation)r).getStudentIds().contains(s.iStudentId);
     			}  else if (r instanceof CourseReservation) {
     				applicable = course.equals(((CourseReservation)r).getCourse());
     			} else if (r instanceof CurriculumReservation) {
     				CurriculumReservation c = (CurriculumReservation)r;
     				if (!c.getMajors().isEmpty() || c.getMinors().isEmpty())
-    					for (StudentAreaClassificationMajor aac: s.getAreaClasfMajors()) {
-        					if (c.getAcademicAreas().contains(aac.getAcademicArea().getAcademicAreaAbbreviation()) &&
-        						(c.getClassifications().isEmpty() || c.getClassifications().contains(aac.getAcademicClassification().getCode())) &&
-        						(c.getMajors().isEmpty() || c.getMajors().contains(aac.getMajor().getCode()))) {
-        						Set<String> conc = c.getConcentrations(aac.getMajor().getCode());
+    					for (AreaClasfMajorData aac: s.iMajors) {
+        					if (c.getAcademicAreas().contains(aac.iArea) &&
+        						(c.getClassifications().isEmpty() || c.getClassifications().contains(aac.iClasf)) &&
+        						(c.getMajors().isEmpty() || c.getMajors().contains(aac.iMajor))) {
+        						Set<String> conc = c.getConcentrations(aac.iMajor);
         	                    if (conc != null && !conc.isEmpty()) {
-        	                        if (aac.getConcentration() != null && conc.contains(aac.getConcentration().getCode())) {
+        	                        if (aac.iConcentration != null && conc.contains(aac.iConcentration)) {
         	                        	applicable = true; break;
         	                        }
         	                    } else {
@@ -1213,10 +1228,10 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         					}
         				}
     				if (!c.getMinors().isEmpty())
-        				for (StudentAreaClassificationMinor aac: s.getAreaClasfMinors()) {
-        					if (c.getAcademicAreas().contains(aac.getAcademicArea().getAcademicAreaAbbreviation()) &&
-        						(c.getClassifications().isEmpty() || c.getClassifications().contains(aac.getAcademicClassification().getCode())) &&
-        						(c.getMinors().contains(aac.getMinor().getCode()))) {
+        				for (AreaClasfMajorData aac: s.iMinors) {
+        					if (c.getAcademicAreas().contains(aac.iArea) &&
+        						(c.getClassifications().isEmpty() || c.getClassifications().contains(aac.iClasf)) &&
+        						(c.getMinors().contains(aac.iMajor))) {
         							applicable = true; break;
         					}
         				}
@@ -1263,17 +1278,17 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     		if (reservation != null) {
     			if (reservation instanceof org.cpsolver.studentsct.reservation.LearningCommunityReservation) {
     				org.cpsolver.studentsct.reservation.LearningCommunityReservation g = (org.cpsolver.studentsct.reservation.LearningCommunityReservation)reservation;
-    				g.getStudentIds().remove(s.getUniqueId());
+    				g.getStudentIds().remove(s.iStudentId);
     				if (g.getReservationLimit() >= 1.0 && g.getReservationLimit() != g.getCourse().getLimit())
     					g.setReservationLimit(g.getReservationLimit() - 1.0);
     			} else if (reservation instanceof GroupReservation) {
 					GroupReservation g = (GroupReservation)reservation;
-					g.getStudentIds().remove(s.getUniqueId());
+					g.getStudentIds().remove(s.iStudentId);
 					if (g.getReservationLimit() >= 1.0)
 						g.setReservationLimit(g.getReservationLimit() - 1.0);
 				} else if (reservation instanceof IndividualReservation) {
 					IndividualReservation i = (IndividualReservation)reservation;
-					i.getStudentIds().remove(s.getUniqueId());
+					i.getStudentIds().remove(s.iStudentId);
 				} else if (reservation instanceof CourseReservation) {
 					// nothing to do here
 				} else if (reservation instanceof CurriculumReservation) {
@@ -1384,17 +1399,22 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
 		}
     }
     
-    public Student loadStudent(org.hibernate.Session hibSession, org.unitime.timetable.model.Student s, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+    /**
+     * Evaluate the given student: check whether the student is to be loaded and compute the properties that only depend on
+     * the student data (not on the model), so that this can be done in parallel (see {@link #prefetchStudents(List, Hashtable, Hashtable)}).
+     */
+    protected StudentEvaluation evaluateStudent(org.hibernate.Session hibSession, org.unitime.timetable.model.Student s) {
+    	StudentEvaluation evaluation = new StudentEvaluation();
     	// Check for nobatch sectioning status
         if (iCheckForNoBatchStatus && s.hasSectioningStatusOption(StudentSectioningStatus.Option.nobatch)) {
-        	skipStudent(s, courseTable, classTable);
-        	return null;
+        	evaluation.iSkip = true;
+        	return evaluation;
         }
         
         // Check student query, if present
         if (iStudentQuery != null && !iStudentQuery.match(new DbStudentMatcher(s))) {
-        	skipStudent(s, courseTable, classTable);
-        	return null;
+        	evaluation.iSkip = true;
+        	return evaluation;
         }
         
         if (iMPPCoursesRegExp != null && !iMPPCoursesRegExp.isEmpty()) {
@@ -1406,174 +1426,343 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         				match = true;
         			}
         	if (!match) {
-        		skipStudent(s, courseTable, classTable);
-            	return null;
+        		evaluation.iSkip = true;
+            	return evaluation;
         	}
         }
         
         if (iStudentHoldsCheckProvider != null && iSkipStudentsWithHold) {
         	String error = getStudentHoldError(hibSession, s);
         	if (error != null) {
-        		iProgress.info(iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): " + error);
-        		iStudentHoldsCSV.addLine(new CSVField[] {
-        				new CSVField(s.getExternalUniqueId()),
-        				new CSVField(iStudentNameFormat.format(s)),
-        				new CSVField(error)
-        		});
-        		skipStudent(s, courseTable, classTable);
-        		return null;
+        		evaluation.iSkip = true;
+        		evaluation.iHoldError = error;
+        		return evaluation;
         	}
         }
         
-        iProgress.debug("Loading student "+s.getUniqueId()+" (id="+s.getExternalUniqueId()+", name="+iStudentNameFormat.format(s)+")");
-        Student student = new Student(s.getUniqueId().longValue());
-        student.setExternalId(s.getExternalUniqueId());
-        student.setName(iStudentNameFormat.format(s));
-        student.setStatus(s.getSectioningStatus() == null ? null : s.getSectioningStatus().getReference());
         priorities: for (StudentPriority priority: StudentPriority.values()) {
         	if (priority == StudentPriority.Normal) break;
         	Query query = iPriorityStudentQuery.get(priority);
         	String groupRef = iPriorityStudentGroupReference.get(priority);
         	if (query != null && query.match(new DbStudentMatcher(s))) {
-            	student.setPriority(priority);
+        		evaluation.iPriority = priority;
             	break priorities;
         	} else if (groupRef != null) {
         		for (StudentGroup g: s.getGroups()) {
             		if (groupRef.equals(g.getGroupAbbreviation())) {
-            			student.setPriority(priority);
+            			evaluation.iPriority = priority;
             			break priorities;
             		}
             	}
         	}
         }
-        if (s.getClassStartDate() != null)
-        	student.setClassFirstDate(Days.daysBetween(new LocalDate(iFirstDay), new LocalDate(s.getClassStartDate())).getDays());
-        if (s.getClassEndDate() != null)
-        	student.setClassLastDate(Days.daysBetween(new LocalDate(iFirstDay), new LocalDate(s.getClassEndDate())).getDays());
-        student.setBackToBackPreference(s.getBackToBackPreference());
-        student.setModalityPreference(s.getModalityPreference());
+        
+        evaluation.iOnlineOnly = (iOnlineOnlyStudentQuery != null && iOnlineOnlyStudentQuery.match(new DbStudentMatcher(s)));
+        return evaluation;
+    }
+    
+    public Student loadStudent(org.hibernate.Session hibSession, org.unitime.timetable.model.Student s, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+    	return loadStudent(prefetchStudent(hibSession, s, courseTable, classTable), courseTable, classTable);
+    }
+    
+    /**
+     * Read the student data and evaluate the student, see {@link #getStudentData(org.unitime.timetable.model.Student, Hashtable, Hashtable)} and
+     * {@link #evaluateStudent(org.hibernate.Session, org.unitime.timetable.model.Student)}. Only the database is used (the model is not changed),
+     * so this can be done in parallel (see {@link #prefetchStudents(List, Hashtable, Hashtable)}).
+     */
+    protected StudentData prefetchStudent(org.hibernate.Session hibSession, org.unitime.timetable.model.Student s, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+    	StudentData data = getStudentData(s, courseTable, classTable);
+    	data.iEvaluation = evaluateStudent(hibSession, s);
+    	return data;
+    }
+    
+    /**
+     * Read all the student data that are needed to create the solver student into plain holders, so that they can be used after the session is closed.
+     * The course and class tables are only used to avoid computing class labels of the classes that are loaded (they are only needed in error messages).
+     */
+    protected StudentData getStudentData(org.unitime.timetable.model.Student s, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+    	StudentData data = new StudentData();
+    	data.iStudentId = s.getUniqueId();
+    	data.iExternalId = s.getExternalUniqueId();
+    	data.iName = iStudentNameFormat.format(s);
+    	data.iStatus = (s.getSectioningStatus() == null ? null : s.getSectioningStatus().getReference());
+    	data.iClassStartDate = s.getClassStartDate();
+    	data.iClassEndDate = s.getClassEndDate();
+    	data.iBackToBack = s.getBackToBackPreference();
+    	data.iModality = s.getModalityPreference();
+    	data.iMaxCredit = s.getMaxCredit();
+    	data.iMinCredit = s.getMinCredit();
+    	data.iOverrideMaxCredit = s.getOverrideMaxCredit();
+    	if (s.getOverrideMaxCredit() != null) {
+    		data.iRequestCancelled = s.isRequestCancelled();
+    		data.iRequestPending = s.isRequestPending();
+    	}
+    	for (StudentAreaClassificationMajor acm: s.getAreaClasfMajors()) {
+    		AreaClasfMajorData m = new AreaClasfMajorData();
+    		m.iArea = acm.getAcademicArea().getAcademicAreaAbbreviation(); m.iAreaName = acm.getAcademicArea().getTitle();
+    		m.iClasf = acm.getAcademicClassification().getCode(); m.iClasfName = acm.getAcademicClassification().getName();
+    		m.iMajor = acm.getMajor().getCode(); m.iMajorName = acm.getMajor().getName();
+    		if (acm.getConcentration() != null) {
+    			m.iConcentration = acm.getConcentration().getCode(); m.iConcentrationName = acm.getConcentration().getName();
+    		}
+    		if (acm.getDegree() != null) {
+    			m.iDegree = acm.getDegree().getReference(); m.iDegreeName = acm.getDegree().getLabel();
+    		}
+    		if (acm.getProgram() != null) {
+    			m.iProgram = acm.getProgram().getReference(); m.iProgramName = acm.getProgram().getLabel();
+    		}
+    		m.iWeight = acm.getWeight();
+    		data.iMajors.add(m);
+    	}
+    	for (StudentAreaClassificationMinor acm: s.getAreaClasfMinors()) {
+    		AreaClasfMajorData m = new AreaClasfMajorData();
+    		m.iArea = acm.getAcademicArea().getAcademicAreaAbbreviation(); m.iAreaName = acm.getAcademicArea().getTitle();
+    		m.iClasf = acm.getAcademicClassification().getCode(); m.iClasfName = acm.getAcademicClassification().getName();
+    		m.iMajor = acm.getMinor().getCode(); m.iMajorName = acm.getMinor().getName();
+    		data.iMinors.add(m);
+    	}
+    	for (StudentGroup g: s.getGroups()) {
+    		GroupData group = new GroupData();
+    		group.iGroupId = g.getUniqueId();
+    		group.iType = (g.getType() == null ? null : g.getType().getReference());
+    		group.iAbbreviation = g.getGroupAbbreviation();
+    		group.iName = g.getGroupName();
+    		group.iAllowDisabled = (g.getType() != null && g.getType().getAllowDisabledSection() == StudentGroupType.AllowDisabledSection.AlwaysAllowed);
+    		group.iKeepTogether = (g.getType() == null || g.getType().isKeepTogether());
+    		data.iGroups.add(group);
+    	}
+    	for (StudentAccomodation a: s.getAccomodations())
+    		data.iAccommodations.add(a.getAbbreviation());
+    	if (iLoadStudentInfo)
+    		for (Advisor a: s.getAdvisors()) {
+    			AdvisorData advisor = new AdvisorData();
+    			advisor.iExternalId = a.getExternalUniqueId();
+    			advisor.iName = (a.getLastName() == null ? null : iInstructorNameFormat.format(a));
+    			advisor.iEmail = a.getEmail();
+    			data.iAdvisors.add(advisor);
+    		}
+    	if (iUseAdvisorWaitLists || iUseAdvisorNoSubs)
+    		for (AdvisorCourseRequest acr: s.getAdvisorCourseRequests()) {
+    			if (acr.getCourseOffering() == null) continue;
+    			if (acr.getWaitlist() != null && acr.getWaitlist().booleanValue())
+    				data.iAdvisorWaitListCourseIds.add(acr.getCourseOffering().getUniqueId());
+    			if (acr.getNoSub() != null && acr.getNoSub().booleanValue())
+    				data.iAdvisorNoSubCourseIds.add(acr.getCourseOffering().getUniqueId());
+    		}
+    	for (StudentClassEnrollment enrl: s.getClassEnrollments())
+    		data.iEnrollments.add(getEnrollmentData(enrl, enrl.getCourseOffering().getUniqueId(), courseTable, classTable));
+    	
+		TreeSet<CourseDemand> demands = new TreeSet<CourseDemand>(new Comparator<CourseDemand>() {
+			public int compare(CourseDemand d1, CourseDemand d2) {
+				if (d1.isAlternative() && !d2.isAlternative()) return 1;
+				if (!d1.isAlternative() && d2.isAlternative()) return -1;
+				int cmp = d1.getPriority().compareTo(d2.getPriority());
+				if (cmp != 0) return cmp;
+				return d1.getUniqueId().compareTo(d2.getUniqueId());
+			}
+		});
+		demands.addAll(s.getCourseDemands());
+		for (CourseDemand cd: demands) {
+			DemandData demand = new DemandData();
+			demand.iDemandId = cd.getUniqueId();
+			demand.iPriority = cd.getPriority();
+			demand.iAlternative = cd.isAlternative();
+			if (cd.getFreeTime() != null) {
+				demand.iFreeTime = new int[] { cd.getFreeTime().getDayCode(), cd.getFreeTime().getStartSlot(), cd.getFreeTime().getLength() };
+				data.iDemands.add(demand);
+				continue;
+			}
+			if (cd.getCourseRequests().isEmpty()) {
+				data.iDemands.add(demand);
+				continue;
+			}
+			demand.iWaitList = cd.effectiveWaitList() || cd.effectiveNoSub();
+			demand.iCritical = cd.getEffectiveCritical().toRequestPriority();
+			demand.iTimeStamp = cd.getTimestamp();
+            TreeSet<org.unitime.timetable.model.CourseRequest> crs = new TreeSet<org.unitime.timetable.model.CourseRequest>(new Comparator<org.unitime.timetable.model.CourseRequest>() {
+            	public int compare(org.unitime.timetable.model.CourseRequest r1, org.unitime.timetable.model.CourseRequest r2) {
+            		return r1.getOrder().compareTo(r2.getOrder());
+            	}
+			});
+            crs.addAll(cd.getCourseRequests());
+            for (org.unitime.timetable.model.CourseRequest cr: crs) {
+            	RequestData request = new RequestData();
+            	request.iCourseId = cr.getCourseOffering().getUniqueId();
+            	request.iCourseName = cr.getCourseOffering().getCourseName();
+            	request.iRejected = cr.isRequestRejected();
+            	request.iCancelled = cr.isRequestCancelled();
+            	request.iPending = cr.isRequestPending() || cr.isRequestNeeded();
+            	CourseCreditUnitConfig creditCfg = cr.getCourseOffering().getCredit();
+            	if (creditCfg != null) request.iMinCredit = creditCfg.getMinCredit();
+            	for (ClassWaitList cwl: cr.getClassWaitLists())
+            		if (cwl.getType().equals(ClassWaitList.Type.LOCKED.ordinal()))
+            			request.iLockedClassIds.add(cwl.getClazz().getUniqueId());
+            	if (cr.getPreferences() != null)
+            		for (StudentSectioningPref p: cr.getPreferences()) {
+            			if (p instanceof StudentClassPref)
+            				(p.isRequired() ? request.iRequiredClassIds : request.iSelectedClassIds).add(((StudentClassPref)p).getClazz().getUniqueId());
+            			else if (p instanceof StudentInstrMthPref)
+            				(p.isRequired() ? request.iRequiredMethodIds : request.iSelectedMethodIds).add(((StudentInstrMthPref)p).getInstructionalMethod().getUniqueId());
+            		}
+            	for (StudentClassEnrollment enrl: cr.getClassEnrollments())
+            		request.iEnrollments.add(getEnrollmentData(enrl, request.iCourseId, courseTable, classTable));
+            	demand.iRequests.add(request);
+            }
+            if (iAllowDefaultCourseAlternatives && crs.size() == 1 && !cd.isAlternative()) {
+            	CourseOffering alt = crs.first().getCourseOffering().getAlternativeOffering();
+            	if (alt != null) {
+            		demand.iAlternativeCourseId = alt.getUniqueId();
+            		demand.iAlternativeCourseName = alt.getCourseName();
+            		CourseCreditUnitConfig creditCfg = alt.getCredit();
+            		if (creditCfg != null) demand.iAlternativeMinCredit = creditCfg.getMinCredit();
+            	}
+            }
+            data.iDemands.add(demand);
+		}
+    	return data;
+    }
+    
+    private EnrollmentData getEnrollmentData(StudentClassEnrollment enrl, Long courseId, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+    	EnrollmentData enrollment = new EnrollmentData();
+    	enrollment.iClassId = enrl.getClazz().getUniqueId();
+    	enrollment.iCourseId = enrl.getCourseOffering().getUniqueId();
+    	enrollment.iCourseName = enrl.getCourseOffering().getCourseName();
+    	enrollment.iCourseRequest = (enrl.getCourseRequest() != null);
+    	enrollment.iTimeStamp = enrl.getTimestamp();
+    	Course course = (courseTable == null ? null : courseTable.get(courseId));
+    	if (course == null || course.getOffering().getSection(enrollment.iClassId) == null)
+    		enrollment.iClassLabel = enrl.getClazz().getClassLabel(iShowClassSuffix, iShowConfigName);
+    	return enrollment;
+    }
+    
+    protected Student loadStudent(StudentData s, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+    	StudentEvaluation evaluation = s.iEvaluation;
+        if (evaluation.iSkip) {
+        	if (evaluation.iHoldError != null) {
+        		iProgress.info(s.iName + " (" + s.iExternalId + "): " + evaluation.iHoldError);
+        		iStudentHoldsCSV.addLine(new CSVField[] {
+        				new CSVField(s.iExternalId),
+        				new CSVField(s.iName),
+        				new CSVField(evaluation.iHoldError)
+        		});
+        	}
+        	skipStudent(s, courseTable, classTable);
+        	return null;
+        }
+        
+        iProgress.debug("Loading student "+s.iStudentId+" (id="+s.iExternalId+", name="+s.iName+")");
+        Student student = new Student(s.iStudentId.longValue());
+        student.setExternalId(s.iExternalId);
+        student.setName(s.iName);
+        student.setStatus(s.iStatus);
+        if (evaluation.iPriority != null)
+        	student.setPriority(evaluation.iPriority);
+        if (s.iClassStartDate != null)
+        	student.setClassFirstDate(Days.daysBetween(new LocalDate(iFirstDay), new LocalDate(s.iClassStartDate)).getDays());
+        if (s.iClassEndDate != null)
+        	student.setClassLastDate(Days.daysBetween(new LocalDate(iFirstDay), new LocalDate(s.iClassEndDate)).getDays());
+        student.setBackToBackPreference(s.iBackToBack);
+        student.setModalityPreference(s.iModality);
         if (iLoadStudentInfo) loadStudentInfo(student,s);
-        if (iShortDistanceAccomodationReference != null)
-        	for (StudentAccomodation ac: s.getAccomodations())
-        		if (iShortDistanceAccomodationReference.equals(ac.getAbbreviation()))
-        			student.setNeedShortDistances(true);
-        for (StudentGroup g: s.getGroups()) {
-        	StudentGroupType type = g.getType();
-        	if (type != null && type.getAllowDisabledSection() == StudentGroupType.AllowDisabledSection.AlwaysAllowed) {
+        if (iShortDistanceAccomodationReference != null && s.iAccommodations.contains(iShortDistanceAccomodationReference))
+        	student.setNeedShortDistances(true);
+        for (GroupData g: s.iGroups) {
+        	if (g.iAllowDisabled) {
         		student.setAllowDisabled(true);
         		break;
         	}
         }
         float maxCredit = iMaxDefaultCredit;
-        if (s.getMaxCredit() != null)
-        	maxCredit = s.getMaxCredit();
-        if (s.getOverrideMaxCredit() != null) {
-        	if (s.isRequestCancelled() && !iCheckRequestStatusSkipCancelled)
-        		maxCredit = s.getOverrideMaxCredit();
-        	else if (s.isRequestPending() && !iCheckRequestStatusSkipPending)
-        		maxCredit = s.getOverrideMaxCredit();
+        if (s.iMaxCredit != null)
+        	maxCredit = s.iMaxCredit;
+        if (s.iOverrideMaxCredit != null) {
+        	if (s.iRequestCancelled && !iCheckRequestStatusSkipCancelled)
+        		maxCredit = s.iOverrideMaxCredit;
+        	else if (s.iRequestPending && !iCheckRequestStatusSkipPending)
+        		maxCredit = s.iOverrideMaxCredit;
         }
         if (maxCredit > 0f)
         	student.setMaxCredit(maxCredit);
         float minCredit = iMinDefaultCredit;
-        if (s.getMinCredit() != null)
-        	minCredit = s.getMinCredit();
+        if (s.iMinCredit != null)
+        	minCredit = s.iMinCredit;
         if (minCredit >= 0 && minCredit <= maxCredit)
         	student.setMinCredit(minCredit);
         
-		TreeSet<CourseDemand> demands = new TreeSet<CourseDemand>(new Comparator<CourseDemand>() {
-			public int compare(CourseDemand d1, CourseDemand d2) {
-				if (d1.isAlternative() && !d2.isAlternative()) return 1;
-				if (!d1.isAlternative() && d2.isAlternative()) return -1;
-				int cmp = d1.getPriority().compareTo(d2.getPriority());
-				if (cmp != 0) return cmp;
-				return d1.getUniqueId().compareTo(d2.getUniqueId());
-			}
-		});
-		Set<CourseOffering> alternatives = new HashSet<CourseOffering>();
-		demands.addAll(s.getCourseDemands());
+		Set<Long> alternatives = new HashSet<Long>();
 		float credit = 0f, assignedCredit = 0f;
-        for (CourseDemand cd: demands) {
-            if (cd.getFreeTime()!=null) {
+        for (DemandData cd: s.iDemands) {
+            if (cd.iFreeTime!=null) {
             	TimeLocation ft = new TimeLocation(
-                        cd.getFreeTime().getDayCode(),
-                        cd.getFreeTime().getStartSlot(),
-                        cd.getFreeTime().getLength(),
+                        cd.iFreeTime[0],
+                        cd.iFreeTime[1],
+                        cd.iFreeTime[2],
                         0, 0, -1l, "", iFreeTimePattern, 0);
                 new FreeTimeRequest(
-                        cd.getUniqueId(),
-                        cd.getPriority(),
-                        cd.isAlternative(),
+                        cd.iDemandId,
+                        cd.iPriority,
+                        cd.iAlternative,
                         student, ft);
-            } else if (!cd.getCourseRequests().isEmpty()) {
+            } else if (!cd.iRequests.isEmpty()) {
                 Vector<Course> courses = new Vector<Course>();
                 HashSet<Choice> selChoices = new HashSet<Choice>();
                 HashSet<Choice> reqChoices = new HashSet<Choice>();
                 HashSet<Choice> wlChoices = new HashSet<Choice>();
                 HashSet<Section> assignedSections = new HashSet<Section>();
                 Config assignedConfig = null;
-                TreeSet<org.unitime.timetable.model.CourseRequest> crs = new TreeSet<org.unitime.timetable.model.CourseRequest>(new Comparator<org.unitime.timetable.model.CourseRequest>() {
-                	public int compare(org.unitime.timetable.model.CourseRequest r1, org.unitime.timetable.model.CourseRequest r2) {
-                		return r1.getOrder().compareTo(r2.getOrder());
-                	}
-				});
-                crs.addAll(cd.getCourseRequests());
                 float creditThisRequest = 0;
-                for (org.unitime.timetable.model.CourseRequest cr: crs) {
-                	if (cr.isRequestRejected() && cr.getClassEnrollments().isEmpty()) {
-                		iProgress.info("Requested course " + cr.getCourseOffering().getCourseName() + " has rejected override for " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ")");
+                for (RequestData cr: cd.iRequests) {
+                	if (cr.iRejected && cr.iEnrollments.isEmpty()) {
+                		iProgress.info("Requested course " + cr.iCourseName + " has rejected override for " + s.iName + " (" + s.iExternalId + ")");
                 		continue;
                 	}
-                	if (iCheckRequestStatusSkipCancelled && cr.isRequestCancelled() && cr.getClassEnrollments().isEmpty()) {
-                		iProgress.info("Requested course " + cr.getCourseOffering().getCourseName() + " has cancelled override for " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ")");
+                	if (iCheckRequestStatusSkipCancelled && cr.iCancelled && cr.iEnrollments.isEmpty()) {
+                		iProgress.info("Requested course " + cr.iCourseName + " has cancelled override for " + s.iName + " (" + s.iExternalId + ")");
                 		continue;
                 	}
-                	if (iCheckRequestStatusSkipPending && (cr.isRequestPending() || cr.isRequestNeeded()) && cr.getClassEnrollments().isEmpty()) {
-                		iProgress.info("Requested course " + cr.getCourseOffering().getCourseName() + " has pending override for " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ")");
+                	if (iCheckRequestStatusSkipPending && cr.iPending && cr.iEnrollments.isEmpty()) {
+                		iProgress.info("Requested course " + cr.iCourseName + " has pending override for " + s.iName + " (" + s.iExternalId + ")");
                 		continue;
                 	}
-                    Course course = courseTable.get(cr.getCourseOffering().getUniqueId());
+                    Course course = courseTable.get(cr.iCourseId);
                     if (course==null) {
-                        iProgress.warn("Student " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ") requests course " + cr.getCourseOffering().getCourseName() + " that is not loaded.");
+                        iProgress.warn("Student " + s.iName + " (" + s.iExternalId + ") requests course " + cr.iCourseName + " that is not loaded.");
                         continue;
                     }
-                    if (iIgnoreNotAssigned == IgnoreNotAssigned.all && cr.getClassEnrollments().isEmpty()) {
-                    	iProgress.info("Requested course " + cr.getCourseOffering().getCourseName() + " is not assigned for " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ")");
+                    if (iIgnoreNotAssigned == IgnoreNotAssigned.all && cr.iEnrollments.isEmpty()) {
+                    	iProgress.info("Requested course " + cr.iCourseName + " is not assigned for " + s.iName + " (" + s.iExternalId + ")");
                 		continue;
                     }
-                    if (iIgnoreNotAssigned == IgnoreNotAssigned.other && cr.getClassEnrollments().isEmpty() && iMPPCoursesRegExp != null && !iMPPCoursesRegExp.isEmpty() && !course.getName().matches(iMPPCoursesRegExp)) {
-                    	iProgress.info("Requested course " + cr.getCourseOffering().getCourseName() + " is not assigned for " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ")");
+                    if (iIgnoreNotAssigned == IgnoreNotAssigned.other && cr.iEnrollments.isEmpty() && iMPPCoursesRegExp != null && !iMPPCoursesRegExp.isEmpty() && !course.getName().matches(iMPPCoursesRegExp)) {
+                    	iProgress.info("Requested course " + cr.iCourseName + " is not assigned for " + s.iName + " (" + s.iExternalId + ")");
                     	continue;
                     }
-                    CourseCreditUnitConfig creditCfg = cr.getCourseOffering().getCredit();
-                    if (creditCfg != null && creditThisRequest < creditCfg.getMinCredit()) creditThisRequest = creditCfg.getMinCredit();
-                    for (Iterator<ClassWaitList> k=cr.getClassWaitLists().iterator();k.hasNext();) {
-                        ClassWaitList cwl = k.next();
-                        Section section = course.getOffering().getSection(cwl.getClazz().getUniqueId().longValue());
-                        if (section != null && cwl.getType().equals(ClassWaitList.Type.LOCKED.ordinal()))
+                    if (cr.iMinCredit != null && creditThisRequest < cr.iMinCredit) creditThisRequest = cr.iMinCredit;
+                    for (Long classId: cr.iLockedClassIds) {
+                        Section section = course.getOffering().getSection(classId);
+                        if (section != null)
                         	wlChoices.add(section.getChoice());
                     }
-                    if (cr.getPreferences() != null) {
-                    	for (StudentSectioningPref p: cr.getPreferences()) {
-                    		boolean required = p.isRequired();
-                    		if (p instanceof StudentClassPref) {
-                    			StudentClassPref scp = (StudentClassPref)p;
-    							Section section = course.getOffering().getSection(scp.getClazz().getUniqueId());
-    							if (section != null)
-    								(required ? reqChoices : selChoices).add(section.getChoice());
-                    		} else if (p instanceof StudentInstrMthPref) {
-                    			StudentInstrMthPref imp = (StudentInstrMthPref)p;
-                    			for (Config config: course.getOffering().getConfigs())
-                    				if (config.getInstructionalMethodId() != null && config.getInstructionalMethodId().equals(imp.getInstructionalMethod().getUniqueId()))
-                    					(required ? reqChoices : selChoices).add(new Choice(config));
-                    		}
-                    	}
+                    for (Long classId: cr.iRequiredClassIds) {
+                    	Section section = course.getOffering().getSection(classId);
+						if (section != null) reqChoices.add(section.getChoice());
+                    }
+                    for (Long classId: cr.iSelectedClassIds) {
+                    	Section section = course.getOffering().getSection(classId);
+						if (section != null) selChoices.add(section.getChoice());
                     }
+                    for (Long methodId: cr.iRequiredMethodIds)
+                    	for (Config config: course.getOffering().getConfigs())
+                    		if (config.getInstructionalMethodId() != null && config.getInstructionalMethodId().equals(methodId))
+                    			reqChoices.add(new Choice(config));
+                    for (Long methodId: cr.iSelectedMethodIds)
+                    	for (Config config: course.getOffering().getConfigs())
+                    		if (config.getInstructionalMethodId() != null && config.getInstructionalMethodId().equals(methodId))
+                    			selChoices.add(new Choice(config));
                     if (assignedConfig==null) {
                         HashSet<Long> subparts = new HashSet<Long>();
-                        for (Iterator<StudentClassEnrollment> i = cr.getClassEnrollments().iterator(); i.hasNext(); ) {
-                        	StudentClassEnrollment enrl = i.next();
-                        	Section section = course.getOffering().getSection(enrl.getClazz().getUniqueId());
+                        for (EnrollmentData enrl: cr.iEnrollments) {
+                        	Section section = course.getOffering().getSection(enrl.iClassId);
                             if (section!=null) {
                             	if (getModel().isMPP()) {
                             		selChoices.add(section.getChoice());
@@ -1584,40 +1773,37 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                             	}
                                 assignedSections.add(section);
                                 if (assignedConfig != null && assignedConfig.getId() != section.getSubpart().getConfig().getId()) {
-                                	iProgress.error("There is a problem assigning " + course.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): classes from different configurations.");
+                                	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.iName + " (" + s.iExternalId + "): classes from different configurations.");
                                 }
                                 assignedConfig = section.getSubpart().getConfig();
                                 if (!subparts.add(section.getSubpart().getId())) {
-                                	iProgress.error("There is a problem assigning " + course.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): two or more classes of the same subpart.");
+                                	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.iName + " (" + s.iExternalId + "): two or more classes of the same subpart.");
                                 }
                             } else {
-                            	iProgress.error("There is a problem assigning " + course.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): class " + enrl.getClazz().getClassLabel(iShowClassSuffix, iShowConfigName) + " not known.");
+                            	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.iName + " (" + s.iExternalId + "): class " + enrl.getClassLabel() + " not known.");
                             }
                         }
                     }
                     courses.addElement(course);
                 }
-                if (iAllowDefaultCourseAlternatives && crs.size() == 1 && !cd.isAlternative()) {
-                	CourseOffering co = crs.first().getCourseOffering();
-                	CourseOffering alt = co.getAlternativeOffering();
-                	if (alt != null) {
-                		// there is an alternative, but it is already requested -> do nothing
-                    	demands: for (CourseDemand d: demands)
-                    		for (org.unitime.timetable.model.CourseRequest r: d.getCourseRequests())
-                    			if (alt.equals(r.getCourseOffering())) { alt = null; break demands; } 
-                	}
+                if (cd.iAlternativeCourseId != null) {
+                	Long alt = cd.iAlternativeCourseId;
+                	// there is an alternative, but it is already requested -> do nothing
+                	demands: for (DemandData d: s.iDemands)
+                		for (RequestData r: d.iRequests)
+                			if (alt.equals(r.iCourseId)) { alt = null; break demands; }
                 	if (alt != null && alternatives.add(alt)) {
                 		// there is an alternative, not requested -> add the alternative
-                		Course course = courseTable.get(alt.getUniqueId());
+                		Course course = courseTable.get(alt);
                         if (course == null) {
-                            iProgress.warn("Course " + co.getCourseName() + "has an alternative course " + alt.getCourseName() + " that is not loaded (" + s.getExternalUniqueId() + ").");
+                            iProgress.warn("Course " + cd.iRequests.get(0).iCourseName + "has an alternative course " + cd.iAlternativeCourseName + " that is not loaded (" + s.iExternalId + ").");
                         } else {
-                            CourseCreditUnitConfig creditCfg = alt.getCredit();
-                            if (creditCfg != null && creditThisRequest < creditCfg.getMinCredit()) creditThisRequest = creditCfg.getMinCredit();
+                            if (cd.iAlternativeMinCredit != null && creditThisRequest < cd.iAlternativeMinCredit) creditThisRequest = cd.iAlternativeMinCredit;
                         	if (assignedConfig==null) {
                                 HashSet<Long> subparts = new HashSet<Long>();
-                                for (StudentClassEnrollment enrl: alt.getClassEnrollments(s)) {
-                                	Section section = course.getOffering().getSection(enrl.getClazz().getUniqueId());
+                                for (EnrollmentData enrl: s.iEnrollments) {
+                                	if (!alt.equals(enrl.iCourseId)) continue;
+                                	Section section = course.getOffering().getSection(enrl.iClassId);
                                     if (section != null) {
                                     	if (getModel().isMPP()) {
                                     		selChoices.add(section.getChoice());
@@ -1628,14 +1814,14 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                                     	}
                                         assignedSections.add(section);
                                         if (assignedConfig != null && assignedConfig.getId() != section.getSubpart().getConfig().getId()) {
-                                        	iProgress.error("There is a problem assigning " + course.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): classes from different configurations.");
+                                        	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.iName + " (" + s.iExternalId + "): classes from different configurations.");
                                         }
                                         assignedConfig = section.getSubpart().getConfig();
                                         if (!subparts.add(section.getSubpart().getId())) {
-                                        	iProgress.error("There is a problem assigning " + course.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): two or more classes of the same subpart.");
+                                        	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.iName + " (" + s.iExternalId + "): two or more classes of the same subpart.");
                                         }
                                     } else {
-                                    	iProgress.error("There is a problem assigning " + course.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): class " + enrl.getClazz().getClassLabel(iShowClassSuffix, iShowConfigName) + " not known.");
+                                    	iProgress.error("There is a problem assigning " + course.getName() + " to " + s.iName + " (" + s.iExternalId + "): class " + enrl.getClassLabel() + " not known.");
                                     }
                                 }
                             }
@@ -1645,24 +1831,24 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                 }
                 if (courses.isEmpty()) continue;
                 credit += creditThisRequest;
-                boolean alternative = cd.isAlternative() || (iMaxCreditChecking && maxCredit > 0 && credit > maxCredit);
+                boolean alternative = cd.iAlternative || (iMaxCreditChecking && maxCredit > 0 && credit > maxCredit);
                 if (alternative && iIgnoreNotAssigned == IgnoreNotAssigned.all)
                 	alternative = false;
                 if (alternative && iIgnoreNotAssigned == IgnoreNotAssigned.other && iMPPCoursesRegExp != null && !iMPPCoursesRegExp.isEmpty() && !courses.get(0).getName().matches(iMPPCoursesRegExp))
                 	alternative = false;
                 CourseRequest request = new CourseRequest(
-                        cd.getUniqueId(),
-                        cd.getPriority(),
+                        cd.iDemandId,
+                        cd.iPriority,
                         alternative,
                         student,
                         courses,
-                        cd.effectiveWaitList() || cd.effectiveNoSub(), 
-                        cd.getEffectiveCritical().toRequestPriority(),
-                        cd.getTimestamp().getTime());
+                        cd.iWaitList, 
+                        cd.iCritical,
+                        cd.iTimeStamp.getTime());
                 if (iLCRequestPriority != null && !alternative) {
                 	Set<Long> studentIds = iLCDemands.get(courses.get(0).getId());
                 	if (studentIds != null && studentIds.contains(student.getId()) && iLCRequestPriority.isHigher(request)) {
-                		iProgress.debug("Student " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ") request " + request + " changed to " + iLCRequestPriority + " due to an LC reservation.");
+                		iProgress.debug("Student " + s.iName + " (" + s.iExternalId + ") request " + request + " changed to " + iLCRequestPriority + " due to an LC reservation.");
                 		request.setRequestPriority(iLCRequestPriority);
                 	}
                 }
@@ -1697,34 +1883,34 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                     	if (!cancelled) request.setFixedValue(enrollment);
                     }
                 }
-                if (!cd.isAlternative() && maxCredit > 0 && credit > maxCredit) {
+                if (!cd.iAlternative && maxCredit > 0 && credit > maxCredit) {
                 	if (iMaxCreditChecking)
-                		iProgress.info("Request " + request + " is treated as alternative (" + credit + " > " + maxCredit + ") for " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ")");
+                		iProgress.info("Request " + request + " is treated as alternative (" + credit + " > " + maxCredit + ") for " + s.iName + " (" + s.iExternalId + ")");
                 	else
-                		iProgress.info("Request " + request + " is over the max credit limit for " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ")");
+                		iProgress.info("Request " + request + " is over the max credit limit for " + s.iName + " (" + s.iExternalId + ")");
                 }
                 if (assignedConfig!=null && assignedSections.size() != assignedConfig.getSubparts().size()) {
-                	iProgress.error("There is a problem assigning " + request.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ") wrong number of classes (" +
+                	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.iName + " (" + s.iExternalId + ") wrong number of classes (" +
                 			"has " + assignedSections.size() + ", expected " + assignedConfig.getSubparts().size() + ").");
                 }
             }
         }
 
-        if (!s.getClassEnrollments().isEmpty()) {
+        if (!s.iEnrollments.isEmpty()) {
         	TreeSet<Course> courses = new TreeSet<Course>(new Comparator<Course>() {
         		public int compare(Course c1, Course c2) {
         			return (c1.getSubjectArea() + " " + c1.getCourseNumber()).compareTo(c2.getSubjectArea() + " " + c2.getCourseNumber());
         		}
         	});
         	Map<Long, Long> timeStamp = new Hashtable<Long, Long>();
-        	for (StudentClassEnrollment enrl: s.getClassEnrollments()) {
-        		if (enrl.getCourseRequest() != null || alternatives.contains(enrl.getCourseOffering())) continue; // already loaded
-        		Course course = courseTable.get(enrl.getCourseOffering().getUniqueId());
+        	for (EnrollmentData enrl: s.iEnrollments) {
+        		if (enrl.iCourseRequest || alternatives.contains(enrl.iCourseId)) continue; // already loaded
+        		Course course = courseTable.get(enrl.iCourseId);
                 if (course==null) {
-                    iProgress.warn("Student " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ") requests course " + enrl.getCourseOffering().getCourseName()+" that is not loaded.");
+                    iProgress.warn("Student " + s.iName + " (" + s.iExternalId + ") requests course " + enrl.iCourseName+" that is not loaded.");
                     continue;
                 }
-                if (enrl.getTimestamp() != null) timeStamp.put(enrl.getCourseOffering().getUniqueId(), enrl.getTimestamp().getTime());
+                if (enrl.iTimeStamp != null) timeStamp.put(enrl.iCourseId, enrl.iTimeStamp.getTime());
                 courses.add(course);
         	}
         	int priority = 0;
@@ -1750,24 +1936,23 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                 HashSet<Section> assignedSections = new HashSet<Section>();
                 Config assignedConfig = null;
                 HashSet<Long> subparts = new HashSet<Long>();
-                for (Iterator<StudentClassEnrollment> i = s.getClassEnrollments().iterator(); i.hasNext(); ) {
-                	StudentClassEnrollment enrl = i.next();
-                	if (course.getId() != enrl.getCourseOffering().getUniqueId()) continue;
-                	Section section = course.getOffering().getSection(enrl.getClazz().getUniqueId());
+                for (EnrollmentData enrl: s.iEnrollments) {
+                	if (course.getId() != enrl.iCourseId) continue;
+                	Section section = course.getOffering().getSection(enrl.iClassId);
                     if (section!=null) {
                         assignedSections.add(section);
                         if (assignedConfig != null && assignedConfig.getId() != section.getSubpart().getConfig().getId()) {
-                        	iProgress.error("There is a problem assigning " + request.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): classes from different configurations.");
+                        	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.iName + " (" + s.iExternalId + "): classes from different configurations.");
                         	continue courses;
                         }
                         assignedConfig = section.getSubpart().getConfig();
                         if (!subparts.add(section.getSubpart().getId())) {
-                        	iProgress.error("There is a problem assigning " + request.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): two or more classes of the same subpart.");
+                        	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.iName + " (" + s.iExternalId + "): two or more classes of the same subpart.");
                         	continue courses;
                         }
                     } else {
-                    	iProgress.error("There is a problem assigning " + request.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): class " + enrl.getClazz().getClassLabel(iShowClassSuffix, iShowConfigName) + " not known.");
-                    	Section x = classTable.get(enrl.getClazz().getUniqueId());
+                    	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.iName + " (" + s.iExternalId + "): class " + enrl.getClassLabel() + " not known.");
+                    	Section x = classTable.get(enrl.iClassId);
                     	if (x != null) {
                     		iProgress.info("  but a class with the same id is loaded, but under offering " + x.getSubpart().getConfig().getOffering().getName() + " (id is " + x.getSubpart().getConfig().getOffering().getId() + 
                     				", expected " +course.getOffering().getId() + ")");
@@ -1804,14 +1989,14 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                     }
                 }
                 if (assignedConfig!=null && assignedSections.size() != assignedConfig.getSubparts().size()) {
-                	iProgress.error("There is a problem assigning " + request.getName() + " to " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): wrong number of classes (" +
+                	iProgress.error("There is a problem assigning " + request.getName() + " to " + s.iName + " (" + s.iExternalId + "): wrong number of classes (" +
                 			"has " + assignedSections.size() + ", expected " + assignedConfig.getSubparts().size() + ").");
                 }
         	}
         }
         
         if (iAllowToKeepCurrentEnrollment && assignedCredit > student.getMaxCredit()) {
-        	iProgress.warn("Student " + iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + ") has " + assignedCredit + " credits assigned but his/her maximum is " + student.getMaxCredit());
+        	iProgress.warn("Student " + s.iName + " (" + s.iExternalId + ") has " + assignedCredit + " credits assigned but his/her maximum is " + student.getMaxCredit());
         	student.setMaxCredit(assignedCredit);
         }
         
@@ -2055,12 +2240,11 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     	return "";
     }
     
-    private String curriculum(org.unitime.timetable.model.Student student) {
-    	String curriculum = "";
-    	for (StudentAreaClassificationMajor aac: student.getAreaClasfMajors()) {
-    		return aac.getAcademicArea().getAcademicAreaAbbreviation() + ":" + aac.getAcademicClassification().getCode() + ":" + aac.getMajor().getCode();
+    private String curriculum(StudentData student) {
+    	for (AreaClasfMajorData aac: student.iMajors) {
+    		return aac.iArea + ":" + aac.iClasf + ":" + aac.iMajor;
     	}
-    	return curriculum;
+    	return "";
     }
     
     Map<Long, Map<String, Integer>> iCourse2Curricula2Weight = new Hashtable<Long, Map<String, Integer>>();
@@ -2080,11 +2264,11 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     	}
     }
     
-    private void updateCurriculumCounts(org.unitime.timetable.model.Student student) {
+    private void updateCurriculumCounts(StudentData student) {
     	String curriculum = curriculum(student);
     	Set<Long> courses = new HashSet<Long>();
-    	for (StudentClassEnrollment enrollment: student.getClassEnrollments()) {
-    		Long courseId = enrollment.getCourseOffering().getUniqueId();
+    	for (EnrollmentData enrollment: student.iEnrollments) {
+    		Long courseId = enrollment.iCourseId;
     		if (courses.add(courseId)) {
     			Map<String, Integer> c2w = iCourse2Curricula2Weight.get(courseId);
     			if (c2w == null) {
@@ -2095,15 +2279,15 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     			c2w.put(curriculum, 1 + (cx == null ? 0 : cx));
     		}
     	}
-    	demands: for (CourseDemand demand: student.getCourseDemands()) {
-    		org.unitime.timetable.model.CourseRequest request = null;
-    		for (org.unitime.timetable.model.CourseRequest r: demand.getCourseRequests()) {
-    			if (courses.contains(r.getCourseOffering().getUniqueId())) continue demands;
-    			if (request == null || r.getOrder() < request.getOrder())
-    				request = r;
+    	demands: for (DemandData demand: student.iDemands) {
+    		RequestData request = null;
+    		for (RequestData r: demand.iRequests) {
+    			if (courses.contains(r.iCourseId)) continue demands;
+    			if (request == null)
+    				request = r; // requests are ordered
     		}
     		if (request != null) {
-    			Long courseId = request.getCourseOffering().getUniqueId();
+    			Long courseId = request.iCourseId;
         		courses.add(courseId);
     			Map<String, Integer> c2w = iCourse2Curricula2Weight.get(courseId);
     			if (c2w == null) {
@@ -2235,77 +2419,80 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     
     
     public void loadStudentInfo(Student student, org.unitime.timetable.model.Student s) {
-        for (StudentAreaClassificationMajor acm: s.getAreaClasfMajors()) {
-            // student.getAcademicAreaClasiffications().add(new AcademicAreaCode(acm.getAcademicArea().getAcademicAreaAbbreviation(),acm.getAcademicClassification().getCode()));
-            // student.getMajors().add(new AcademicAreaCode(acm.getAcademicArea().getAcademicAreaAbbreviation(),acm.getMajor().getCode()));
+    	loadStudentInfo(student, getStudentData(s, null, null));
+    }
+    
+    protected void loadStudentInfo(Student student, StudentData s) {
+        for (AreaClasfMajorData acm: s.iMajors) {
         	student.getAreaClassificationMajors().add(new AreaClassificationMajor(
-        			acm.getAcademicArea().getAcademicAreaAbbreviation(), acm.getAcademicArea().getTitle(),
-        			acm.getAcademicClassification().getCode(), acm.getAcademicClassification().getName(),
-        			acm.getMajor().getCode(), acm.getMajor().getName(),
-        			(acm.getConcentration() == null ? null : acm.getConcentration().getCode()), (acm.getConcentration() == null ? null : acm.getConcentration().getName()),
-        			(acm.getDegree() == null ? null : acm.getDegree().getReference()), (acm.getDegree() == null ? null : acm.getDegree().getLabel()),
-        			(acm.getProgram() == null ? null : acm.getProgram().getReference()), (acm.getProgram() == null ? null : acm.getProgram().getLabel()),
-        			acm.getWeight()));
+        			acm.iArea, acm.iAreaName, acm.iClasf, acm.iClasfName, acm.iMajor, acm.iMajorName,
+        			acm.iConcentration, acm.iConcentrationName, acm.iDegree, acm.iDegreeName, acm.iProgram, acm.iProgramName,
+        			acm.iWeight));
         }
-        for (StudentAreaClassificationMinor acm: s.getAreaClasfMinors()) {
+        for (AreaClasfMajorData acm: s.iMinors) {
         	student.getAreaClassificationMinors().add(new AreaClassificationMajor(
-        			acm.getAcademicArea().getAcademicAreaAbbreviation(), acm.getAcademicArea().getTitle(),
-        			acm.getAcademicClassification().getCode(), acm.getAcademicClassification().getName(),
-        			acm.getMinor().getCode(), acm.getMinor().getName()));
+        			acm.iArea, acm.iAreaName, acm.iClasf, acm.iClasfName, acm.iMajor, acm.iMajorName));
         }
-        for (StudentGroup g: s.getGroups()) {
-        	student.getGroups().add(new org.cpsolver.studentsct.model.StudentGroup(g.getType() == null ? null : g.getType().getReference(), g.getGroupAbbreviation(), g.getGroupName()));
+        for (GroupData g: s.iGroups) {
+        	student.getGroups().add(new org.cpsolver.studentsct.model.StudentGroup(g.iType, g.iAbbreviation, g.iName));
         }
-        for (StudentAccomodation a: s.getAccomodations())
-        	student.getAccommodations().add(a.getAbbreviation());
-        for (Advisor a: s.getAdvisors())
-        	student.getAdvisors().add(new Instructor(0, a.getExternalUniqueId(), a.getLastName() == null ? null : iInstructorNameFormat.format(a), a.getEmail()));
+        student.getAccommodations().addAll(s.iAccommodations);
+        for (AdvisorData a: s.iAdvisors)
+        	student.getAdvisors().add(new Instructor(0, a.iExternalId, a.iName, a.iEmail));
     }
     
     public void loadAdvisorWaitLists(Student student, org.unitime.timetable.model.Student s) {
-    	for (AdvisorCourseRequest acr: s.getAdvisorCourseRequests()) {
-    		if (acr.getWaitlist() != null && acr.getWaitlist().booleanValue() && acr.getCourseOffering() != null) {
-    			for (Request r: student.getRequests()) {
-    				if (r.isAlternative() || !(r instanceof CourseRequest)) continue;
-    				CourseRequest cr = (CourseRequest)r;
-    				if (cr.getCourse(acr.getCourseOffering().getUniqueId()) != null) {
-    					cr.setWaitlist(true);
-    					iProgress.debug(iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): " + cr.getName() + " marked as wait-listed.");
-    				}
-    			}
-    		}
+    	loadAdvisorWaitLists(student, getStudentData(s, null, null));
+    }
+    
+    protected void loadAdvisorWaitLists(Student student, StudentData s) {
+    	for (Long courseId: s.iAdvisorWaitListCourseIds) {
+			for (Request r: student.getRequests()) {
+				if (r.isAlternative() || !(r instanceof CourseRequest)) continue;
+				CourseRequest cr = (CourseRequest)r;
+				if (cr.getCourse(courseId) != null) {
+					cr.setWaitlist(true);
+					iProgress.debug(s.iName + " (" + s.iExternalId + "): " + cr.getName() + " marked as wait-listed.");
+				}
+			}
     	}
     }
     
     public void loadAdvisorNoSubs(Student student, org.unitime.timetable.model.Student s) {
-    	for (AdvisorCourseRequest acr: s.getAdvisorCourseRequests()) {
-    		if (acr.getNoSub() != null && acr.getNoSub().booleanValue() && acr.getCourseOffering() != null) {
-    			for (Request r: student.getRequests()) {
-    				if (r.isAlternative() || !(r instanceof CourseRequest)) continue;
-    				CourseRequest cr = (CourseRequest)r;
-    				if (cr.getCourse(acr.getCourseOffering().getUniqueId()) != null) {
-    					cr.setWaitlist(true);
-    					iProgress.debug(iStudentNameFormat.format(s) + " (" + s.getExternalUniqueId() + "): " + cr.getName() + " marked as wait-listed.");
-    				}
-    			}
-    		}
+    	loadAdvisorNoSubs(student, getStudentData(s, null, null));
+    }
+    
+    protected void loadAdvisorNoSubs(Student student, StudentData s) {
+    	for (Long courseId: s.iAdvisorNoSubCourseIds) {
+			for (Request r: student.getRequests()) {
+				if (r.isAlternative() || !(r instanceof CourseRequest)) continue;
+				CourseRequest cr = (CourseRequest)r;
+				if (cr.getCourse(courseId) != null) {
+					cr.setWaitlist(true);
+					iProgress.debug(s.iName + " (" + s.iExternalId + "): " + cr.getName() + " marked as wait-listed.");
+				}
+			}
     	}
     }
     
     public void loadRequestGroups(Student student, org.unitime.timetable.model.Student s) {
-        for (StudentGroup g: s.getGroups()) {
-        	if (iRequestGroupRegExp != null && !iRequestGroupRegExp.isEmpty() && !g.getGroupName().matches(iRequestGroupRegExp)) continue;
-        	if (g.getType() != null && !g.getType().isKeepTogether()) continue;
+    	loadRequestGroups(student, getStudentData(s, null, null));
+    }
+    
+    protected void loadRequestGroups(Student student, StudentData s) {
+        for (GroupData g: s.iGroups) {
+        	if (iRequestGroupRegExp != null && !iRequestGroupRegExp.isEmpty() && !g.iName.matches(iRequestGroupRegExp)) continue;
+        	if (!g.iKeepTogether) continue;
         	for (Request r: student.getRequests()) {
         		if (r instanceof CourseRequest) {
         			CourseRequest cr = (CourseRequest)r;
         			Course course = cr.getCourses().get(0);
         			RequestGroup group = null;
         			for (RequestGroup rg: course.getRequestGroups()) {
-        				if (rg.getId() == g.getUniqueId()) { group = rg; break; }
+        				if (rg.getId() == g.iGroupId) { group = rg; break; }
         			}
         			if (group == null)
-        				group = new RequestGroup(g.getUniqueId(), g.getGroupName(), course);
+        				group = new RequestGroup(g.iGroupId, g.iName, course);
         			cr.addRequestGroup(group);
         		}
         	}
@@ -2553,6 +2740,7 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     	
         Hashtable<Long, Course> courseTable = new Hashtable<Long, Course>();
         final Hashtable<Long, Section> classTable = new Hashtable<Long, Section>();
+        startTiming("Querying course offerings...");
         List<InstructionalOffering> offerings = hibSession.createQuery(
                 "select distinct io from InstructionalOffering io " +
                 "left join io.courseOfferings as co "+
@@ -2604,6 +2792,7 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         Map<String, Student> ext2student = new HashMap<String, Student>();
         Set<Student> onlineOnlyStudents = new HashSet<Student>();
         if (iIncludeCourseDemands || iProjections) {
+        	startTiming("Querying students...");
             List students = hibSession.createQuery(
                     "select distinct s from Student s " +
 /*                    "left join fetch s.courseDemands as cd "+
@@ -2623,17 +2812,25 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
             if (iCheckCriticalCourses)
             	checkCriticalCourses(hibSession, students);
             
+            Map<Long, StudentData> prefetched = (iNrLoadThreads > 1 ? prefetchStudents(students, courseTable, classTable) : null);
+            
+            Set<Long> updatedStudentIds = new HashSet<Long>(iUpdatedStudents);
             setPhase("Loading student requests...", students.size());
             for (Iterator i=students.iterator();i.hasNext();) {
                 org.unitime.timetable.model.Student s = (org.unitime.timetable.model.Student)i.next(); incProgress();
-                if (s.getCourseDemands().isEmpty() && s.getClassEnrollments().isEmpty()) continue;
-                Student student = loadStudent(hibSession, s, courseTable, classTable);
+                // students updated by the checks above are read from this session, their changes are not visible to the other sessions
+                StudentData data = (prefetched == null || updatedStudentIds.contains(s.getUniqueId()) ? null : prefetched.get(s.getUniqueId()));
+                if (data == null) {
+                	if (s.getCourseDemands().isEmpty() && s.getClassEnrollments().isEmpty()) continue;
+                	data = prefetchStudent(hibSession, s, courseTable, classTable);
+                } else if (data.isEmpty()) continue;
+                Student student = loadStudent(data, courseTable, classTable);
                 if (student == null) continue;
                 if (iUseAdvisorWaitLists)
-                	loadAdvisorWaitLists(student, s);
+                	loadAdvisorWaitLists(student, data);
                 else if (iUseAdvisorNoSubs)
-                	loadAdvisorNoSubs(student, s);
-                if (iOnlineOnlyStudentQuery != null && iOnlineOnlyStudentQuery.match(new DbStudentMatcher(s)))
+                	loadAdvisorNoSubs(student, data);
+                if (data.iEvaluation.iOnlineOnly)
                 	onlineOnlyStudents.add(student);
                 updateCurriculumCounts(student);
                 if (iProjections) {
@@ -2666,7 +2863,7 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
                 		}
                 	}
                 } else {
-                	if (iLoadRequestGroups) loadRequestGroups(student, s);
+                	if (iLoadRequestGroups) loadRequestGroups(student, data);
                 	if (student.getExternalId() != null && !student.getExternalId().isEmpty())
                 		ext2student.put(student.getExternalId(), student);
                     getModel().addStudent(student);
@@ -3031,6 +3228,13 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         }
         
         setPhase("Done",1);incProgress();
+        stopTiming();
+        long total = 0;
+        for (Long time: iPhaseTimes.values()) total += time;
+        DecimalFormat df = new DecimalFormat("0.000");
+        iProgress.info("Load took " + df.format(total / 1000.0) + " s" + (iNrLoadThreads > 1 ? " (using " + iNrLoadThreads + " threads)" : "") + ":");
+        for (Map.Entry<String, Long> e: iPhaseTimes.entrySet())
+        	iProgress.info("  " + e.getKey() + " " + df.format(e.getValue() / 1000.0) + " s");
     }
     
     protected void checkTermination() {
@@ -3040,9 +3244,27 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     
     protected void setPhase(String phase, long progressMax) {
     	checkTermination();
+    	startTiming(phase);
     	iProgress.setPhase(phase, progressMax);
     }
     
+    /**
+     * Start measuring the time of a load phase (the previous phase is stopped), see {@link #setPhase(String, long)}
+     */
+    protected void startTiming(String phase) {
+    	stopTiming();
+    	iTimingPhase = phase;
+    	iTimingStart = System.currentTimeMillis();
+    }
+    
+    protected void stopTiming() {
+    	if (iTimingPhase != null) {
+    		Long time = iPhaseTimes.get(iTimingPhase);
+    		iPhaseTimes.put(iTimingPhase, (time == null ? 0l : time.longValue()) + System.currentTimeMillis() - iTimingStart);
+    		iTimingPhase = null;
+    	}
+    }
+    
     protected void incProgress() {
     	checkTermination();
     	iProgress.incProgress();
@@ -3090,6 +3312,203 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
 		}
 	}
     
+    /**
+     * Read the student data and evaluate the students in parallel (see {@link #prefetchStudent(org.hibernate.Session, org.unitime.timetable.model.Student, Hashtable, Hashtable)}),
+     * using {@link #iNrLoadThreads} threads, each with its own read-only session. The students are split into chunks of {@link #iLoadChunkSize} students,
+     * the data of each chunk are fetched at once. The model is not touched, the solver students are created afterwards in a single thread.
+     * Students that failed to be read are read again while loading.
+     */
+    protected Map<Long, StudentData> prefetchStudents(List<org.unitime.timetable.model.Student> students, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+    	List<List<Long>> chunks = new ArrayList<List<Long>>();
+    	List<Long> chunk = null;
+    	for (org.unitime.timetable.model.Student s: students) {
+    		if (chunk == null || chunk.size() >= iLoadChunkSize) {
+    			chunk = new ArrayList<Long>();
+    			chunks.add(chunk);
+    		}
+    		chunk.add(s.getUniqueId());
+    	}
+    	setPhase("Reading students...", students.size());
+    	if (iStudentHoldsCheckProvider != null && iSkipStudentsWithHold && iValidator == null) {
+    		iValidator = new StudentSolver(getModel().getProperties(), null);
+    		iValidator.setInitalSolution(new Solution(getModel(), getAssignment()));
+    	}
+    	Map<Long, StudentData> prefetched = new ConcurrentHashMap<Long, StudentData>();
+    	List<PrefetchWorker> workers = new ArrayList<PrefetchWorker>();
+    	Iterator<List<Long>> iterator = chunks.iterator();
+    	for (int i = 0; i < Math.min(iNrLoadThreads, chunks.size()); i++)
+    		workers.add(new PrefetchWorker(i, iterator, prefetched, courseTable, classTable));
+    	for (PrefetchWorker worker: workers) worker.start();
+    	for (PrefetchWorker worker: workers) {
+    		try {
+    			worker.join();
+    		} catch (InterruptedException e) {
+    			iCanContinue = false;
+    			try { worker.join(); } catch (InterruptedException x) {}
+    		}
+    	}
+    	if (!iCanContinue)
+    		throw new RuntimeException("The student loading was interrupted.");
+    	if (prefetched.size() < students.size())
+    		iProgress.warn((students.size() - prefetched.size()) + " students failed to be read in parallel.");
+    	return prefetched;
+    }
+    
+    /**
+     * Result of {@link StudentSectioningDatabaseLoader#evaluateStudent(org.hibernate.Session, org.unitime.timetable.model.Student)}
+     */
+    protected static class StudentEvaluation {
+    	private boolean iSkip = false;
+    	private String iHoldError = null;
+    	private StudentPriority iPriority = null;
+    	private boolean iOnlineOnly = false;
+    }
+    
+    /**
+     * Student data, see {@link StudentSectioningDatabaseLoader#getStudentData(org.unitime.timetable.model.Student, Hashtable, Hashtable)}
+     */
+    protected static class StudentData {
+    	private Long iStudentId;
+    	private String iExternalId, iName, iStatus;
+    	private Date iClassStartDate, iClassEndDate;
+    	private BackToBackPreference iBackToBack;
+    	private ModalityPreference iModality;
+    	private Float iMaxCredit, iMinCredit, iOverrideMaxCredit;
+    	private boolean iRequestCancelled = false, iRequestPending = false;
+    	private List<AreaClasfMajorData> iMajors = new ArrayList<AreaClasfMajorData>();
+    	private List<AreaClasfMajorData> iMinors = new ArrayList<AreaClasfMajorData>();
+    	private List<GroupData> iGroups = new ArrayList<GroupData>();
+    	private List<String> iAccommodations = new ArrayList<String>();
+    	private List<AdvisorData> iAdvisors = new ArrayList<AdvisorData>();
+    	private List<Long> iAdvisorWaitListCourseIds = new ArrayList<Long>();
+    	private List<Long> iAdvisorNoSubCourseIds = new ArrayList<Long>();
+    	private List<DemandData> iDemands = new ArrayList<DemandData>();
+    	private List<EnrollmentData> iEnrollments = new ArrayList<EnrollmentData>();
+    	private StudentEvaluation iEvaluation = null;
+    	
+    	public boolean isEmpty() { return iDemands.isEmpty() && iEnrollments.isEmpty(); }
+    }
+    
+    protected static class AreaClasfMajorData {
+    	private String iArea, iAreaName, iClasf, iClasfName, iMajor, iMajorName;
+    	private String iConcentration, iConcentrationName, iDegree, iDegreeName, iProgram, iProgramName;
+    	private Double iWeight;
+    }
+    
+    protected static class GroupData {
+    	private Long iGroupId;
+    	private String iType, iAbbreviation, iName;
+    	private boolean iAllowDisabled = false, iKeepTogether = true;
+    }
+    
+    protected static class AdvisorData {
+    	private String iExternalId, iName, iEmail;
+    }
+    
+    protected static class DemandData {
+    	private Long iDemandId;
+    	private Integer iPriority;
+    	private Boolean iAlternative;
+    	private int[] iFreeTime = null;
+    	private boolean iWaitList = false;
+    	private RequestPriority iCritical = null;
+    	private Date iTimeStamp;
+    	private List<RequestData> iRequests = new ArrayList<RequestData>();
+    	private Long iAlternativeCourseId = null;
+    	private String iAlternativeCourseName = null;
+    	private Float iAlternativeMinCredit = null;
+    }
+    
+    protected static class RequestData {
+    	private Long iCourseId;
+    	private String iCourseName;
+    	private boolean iRejected = false, iCancelled = false, iPending = false;
+    	private Float iMinCredit = null;
+    	private List<Long> iLockedClassIds = new ArrayList<Long>();
+    	private List<Long> iSelectedClassIds = new ArrayList<Long>(), iRequiredClassIds = new ArrayList<Long>();
+    	private List<Long> iSelectedMethodIds = new ArrayList<Long>(), iRequiredMethodIds = new ArrayList<Long>();
+    	private List<EnrollmentData> iEnrollments = new ArrayList<EnrollmentData>();
+    }
+    
+    protected static class EnrollmentData {
+    	private Long iClassId, iCourseId;
+    	private String iCourseName, iClassLabel;
+    	private boolean iCourseRequest = false;
+    	private Date iTimeStamp;
+    	
+    	/** Class label, only known for classes that are not loaded */
+    	public String getClassLabel() { return iClassLabel == null ? String.valueOf(iClassId) : iClassLabel; }
+    }
+    
+    protected class PrefetchWorker extends Thread {
+		private Iterator<List<Long>> iChunks;
+		private Map<Long, StudentData> iPrefetched;
+		private Hashtable<Long,Course> iCourseTable;
+		private Hashtable<Long,Section> iClassTable;
+		
+		public PrefetchWorker(int index, Iterator<List<Long>> chunks, Map<Long, StudentData> prefetched, Hashtable<Long,Course> courseTable, Hashtable<Long,Section> classTable) {
+			setName("StudentLoader-" + (1 + index));
+			iChunks = chunks;
+			iPrefetched = prefetched;
+			iCourseTable = courseTable;
+			iClassTable = classTable;
+		}
+		
+		@Override
+	    public void run() {
+			iProgress.debug(getName() + " has started.");
+			org.hibernate.Session hibSession = null;
+			try {
+				ApplicationProperties.setSessionId(iSessionId);
+				hibSession = StudentDAO.getInstance().createNewSession();
+				hibSession.setDefaultReadOnly(true);
+				hibSession.setCacheMode(CacheMode.IGNORE);
+				hibSession.setFlushMode(FlushMode.MANUAL);
+				while (true) {
+					List<Long> chunk = null;
+					synchronized (iChunks) {
+						if (!iCanContinue) {
+							iProgress.debug(getName() + " has stopped.");
+							return;
+						}
+						if (!iChunks.hasNext()) break;
+						chunk = iChunks.next();
+					}
+					List<org.unitime.timetable.model.Student> students = hibSession.createQuery(
+							"select distinct s from Student s " +
+							"left join fetch s.courseDemands as cd " +
+							"left join fetch cd.courseRequests as cr " +
+							"left join fetch s.classEnrollments as e " +
+							"left join fetch s.areaClasfMajors as a " +
+							"left join fetch s.groups as g " +
+							"where s.uniqueId in (:studentIds)").setParameterList("studentIds", chunk).list();
+					for (org.unitime.timetable.model.Student s: students) {
+						if (!iCanContinue) break;
+						StudentData data = null;
+						if (s.getCourseDemands().isEmpty() && s.getClassEnrollments().isEmpty()) {
+							data = new StudentData();
+							data.iStudentId = s.getUniqueId();
+						} else {
+							data = prefetchStudent(hibSession, s, iCourseTable, iClassTable);
+						}
+						iPrefetched.put(s.getUniqueId(), data);
+					}
+					synchronized (iChunks) {
+						for (int i = 0; i < chunk.size(); i++)
+							iProgress.incProgress();
+					}
+					hibSession.clear();
+				}
+			} catch (Exception e) {
+				iProgress.error(getName() + " has failed: " + e.getMessage(), e);
+			} finally {
+				ApplicationProperties.setSessionId(null);
+				if (hibSession != null) hibSession.close();
+			}
+			iProgress.debug(getName() + " has finished.");
+		}
+	}
+    
     protected void checkCriticalCourses(org.hibernate.Session hibSession, List<org.unitime.timetable.model.Student> students) {
     	if (iNrCheckCriticalThreads <= 1) {
     		setPhase("Checking critical courses...", students.size());
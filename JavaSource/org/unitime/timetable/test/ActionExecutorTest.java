@@ -0,0 +1,138 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.unitime.timetable.onlinesectioning.AcademicSessionInfo;
+import org.unitime.timetable.onlinesectioning.server.ActionExecutor;
+
+/**
+ * Checks the behavior of the {@link ActionExecutor} when the queue is full and when it is shut down:
+ * actions must never run in the calling thread, a full queue must reject the action after the queue timeout,
+ * and the queued actions must be finished on shutdown.
+ * 
+ * @author Tomas Muller
+ */
+public class ActionExecutorTest {
+	private static int sFailed = 0;
+	
+	private static void check(boolean ok, String message) {
+		if (!ok) sFailed ++;
+		System.out.println((ok ? "OK   " : "FAIL ") + message);
+	}
+	
+	public static void main(String[] args) throws Exception {
+		AcademicSessionInfo session = new AcademicSessionInfo(-1l, "2026", "Test", "Test");
+		ActionExecutor executor = new ActionExecutor(session, 1, 2, 500, 10000);
+		final Thread caller = Thread.currentThread();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger executed = new AtomicInteger(0);
+		final AtomicInteger inCaller = new AtomicInteger(0);
+		
+		// the only thread is blocked
+		executor.execute("blocker", ActionExecutor.Priority.HIGH, new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try { release.await(); } catch (InterruptedException e) {}
+				executed.incrementAndGet();
+			}
+		});
+		started.await();
+		
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				if (Thread.currentThread() == caller) inCaller.incrementAndGet();
+				executed.incrementAndGet();
+			}
+		};
+		
+		// fill the queue
+		executor.execute("queued", ActionExecutor.Priority.NORMAL, task);
+		executor.execute("queued", ActionExecutor.Priority.NORMAL, task);
+		check(executor.getQueueSize() == 2, "two actions are queued (" + executor.getQueueSize() + ")");
+		
+		// the queue is full: the action is rejected after the queue timeout
+		long t0 = System.currentTimeMillis();
+		boolean rejected = false;
+		try {
+			executor.execute("overflow", ActionExecutor.Priority.HIGH, task);
+		} catch (RejectedExecutionException e) {
+			rejected = true;
+			System.out.println("     " + e.getMessage());
+		}
+		long waited = System.currentTimeMillis() - t0;
+		check(rejected, "action is rejected when the queue is full");
+		check(waited >= 450, "the submitter waited for a free space (" + waited + " ms)");
+		check(inCaller.get() == 0, "no action was executed by the calling thread");
+		
+		// the submitter gets the space as soon as an action is taken from the queue
+		Thread releaser = new Thread() {
+			@Override
+			public void run() {
+				try { Thread.sleep(100); } catch (InterruptedException e) {}
+				release.countDown();
+			}
+		};
+		releaser.start();
+		t0 = System.currentTimeMillis();
+		executor.execute("waiting", ActionExecutor.Priority.NORMAL, task);
+		check(System.currentTimeMillis() - t0 < 450, "the submitter got a free space after " + (System.currentTimeMillis() - t0) + " ms");
+		
+		// block the thread again, queue two more actions, and shut down: queued actions must be finished
+		final CountDownLatch release2 = new CountDownLatch(1);
+		executor.execute("blocker", ActionExecutor.Priority.HIGH, new Runnable() {
+			@Override
+			public void run() {
+				try { release2.await(); } catch (InterruptedException e) {}
+				executed.incrementAndGet();
+			}
+		});
+		Thread.sleep(100);
+		executor.execute("queued", ActionExecutor.Priority.LOW, task);
+		new Thread() {
+			@Override
+			public void run() {
+				try { Thread.sleep(200); } catch (InterruptedException e) {}
+				release2.countDown();
+			}
+		}.start();
+		executor.shutdown();
+		check(executed.get() == 6, "all accepted actions were executed before the shutdown returned (" + executed.get() + " of 6)");
+		
+		rejected = false;
+		try {
+			executor.execute("late", ActionExecutor.Priority.HIGH, task);
+		} catch (RejectedExecutionException e) {
+			rejected = true;
+			System.out.println("     " + e.getMessage());
+		}
+		check(rejected && inCaller.get() == 0, "action submitted after the shutdown is rejected, not executed in the calling thread");
+		check(executor.getNrRejected() == 2, "two actions were rejected (" + executor.getNrRejected() + ")");
+		
+		System.out.println(sFailed == 0 ? "All checks passed." : sFailed + " checks failed.");
+		System.exit(sFailed == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.unitime.timetable.interfaces.RoomAvailabilityInterface.TimeBlock;
+import org.unitime.timetable.model.Assignment;
+import org.unitime.timetable.model.Class_;
+import org.unitime.timetable.solver.CachedClassAssignmentProxy;
+import org.unitime.timetable.solver.ClassAssignmentProxy;
+import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
+
+/**
+ * Hit / miss sizing of the {@link CachedClassAssignmentProxy}.<br>
+ * A solver with the given number of classes is simulated by a proxy that counts the (remote) calls and the classes requested.
+ * Class listing pages (all the classes of a subject area) are requested, popular subject areas more often than the others
+ * (Zipf distribution), and the pages are served through caches of different capacities. For each capacity, the hit ratio,
+ * the number of evictions, and the estimated time spent in the remote calls (a fixed latency per call plus a cost per class)
+ * is printed, together with the baseline of no cache.<br>
+ * Parameters (system properties): classes (20000), subjectSize (200), pages (5000), capacities (1000,5000,10000,20000,40000),
+ * latency (remote call latency in ms, 2.0), perClass (cost of a class in ms, 0.05), seed (1).
+ * Each page is served by a new request over the same shared cache, so the local time includes turning the cached holders into assignments.
+ * The remote time is only an estimate computed from the counted calls, no solver is involved. To run it (no database is needed), compile the
+ * sources and call<br>
+ * <code>java -cp &lt;compiled classes&gt;:WebContent/WEB-INF/lib/* org.unitime.timetable.test.ClassAssignmentCacheBenchmark</code>
+ * 
+ * @author Tomas Muller
+ */
+public class ClassAssignmentCacheBenchmark {
+	private static DecimalFormat sDF = new DecimalFormat("0.00");
+	
+	public static void main(String[] args) {
+		int nrClasses = Integer.getInteger("classes", 20000);
+		int subjectSize = Integer.getInteger("subjectSize", 200);
+		int nrPages = Integer.getInteger("pages", 5000);
+		double latency = Double.parseDouble(System.getProperty("latency", "2.0"));
+		double perClass = Double.parseDouble(System.getProperty("perClass", "0.05"));
+		String[] capacities = System.getProperty("capacities", "1000,5000,10000,20000,40000").split(",");
+		
+		// subject areas and the sequence of the requested pages
+		List<List<Long>> subjects = new ArrayList<List<Long>>();
+		for (long classId = 0; classId < nrClasses; classId++) {
+			if (classId % subjectSize == 0) subjects.add(new ArrayList<Long>());
+			subjects.get(subjects.size() - 1).add(classId);
+		}
+		Random random = new Random(Long.getLong("seed", 1l));
+		double[] cumulative = new double[subjects.size()];
+		double total = 0.0;
+		for (int i = 0; i < subjects.size(); i++) {
+			total += 1.0 / (i + 1);
+			cumulative[i] = total;
+		}
+		int[] pages = new int[nrPages];
+		for (int i = 0; i < nrPages; i++) {
+			double r = random.nextDouble() * total;
+			int s = 0;
+			while (cumulative[s] < r) s++;
+			pages[i] = s;
+		}
+		System.out.println(nrClasses + " classes in " + subjects.size() + " subject areas, " + nrPages + " pages, " +
+				sDF.format(latency) + " ms per remote call, " + sDF.format(perClass) + " ms per class");
+		
+		SimulatedSolver solver = new SimulatedSolver();
+		long t0 = System.nanoTime();
+		for (int page: pages) {
+			solver.getAssignmentTable(subjects.get(page));
+			solver.getAssignmentInfoTable(subjects.get(page));
+		}
+		long t1 = System.nanoTime();
+		print("no cache", nrPages, solver, latency, perClass, (t1 - t0) / 1e6, null);
+		
+		for (String capacity: capacities) {
+			solver = new SimulatedSolver();
+			CachedClassAssignmentProxy cache = new CachedClassAssignmentProxy(solver, 0, Integer.parseInt(capacity.trim()), null) {};
+			t0 = System.nanoTime();
+			for (int page: pages) {
+				CachedClassAssignmentProxy request = cache.newRequest();
+				request.getAssignmentTable(subjects.get(page));
+				request.getAssignmentInfoTable(subjects.get(page));
+			}
+			t1 = System.nanoTime();
+			print("capacity " + capacity.trim(), nrPages, solver, latency, perClass, (t1 - t0) / 1e6, cache);
+		}
+	}
+	
+	private static void print(String name, int nrPages, SimulatedSolver solver, double latency, double perClass, double localTime, CachedClassAssignmentProxy cache) {
+		double remoteTime = solver.iCalls * latency + solver.iClasses * perClass;
+		System.out.println(name + ": " + solver.iCalls + " remote calls for " + solver.iClasses + " classes" +
+				(cache == null ? "" : ", hit ratio " + sDF.format(100.0 * cache.getHits() / Math.max(1, cache.getHits() + cache.getMisses())) + "%, " + cache.getEvictions() + " evictions") +
+				", estimated remote time " + sDF.format(remoteTime / nrPages) + " ms / page, local time " + sDF.format(localTime / nrPages) + " ms / page");
+	}
+	
+	/**
+	 * Simulated solver, only counts the calls and the requested classes
+	 */
+	private static class SimulatedSolver implements ClassAssignmentProxy {
+		private long iCalls = 0, iClasses = 0;
+		
+		private Assignment createAssignment(Long classId) {
+			Assignment assignment = new Assignment();
+			assignment.setClassId(classId);
+			assignment.setClassName("Class " + classId);
+			assignment.setDays(Integer.valueOf(1 << (classId.intValue() % 5)));
+			assignment.setStartSlot(Integer.valueOf(90 + 12 * (classId.intValue() % 8)));
+			return assignment;
+		}
+		
+		private Long getClassId(Object classOrClassId) {
+			if (classOrClassId instanceof Object[]) classOrClassId = ((Object[])classOrClassId)[0];
+			return (classOrClassId instanceof Class_ ? ((Class_)classOrClassId).getUniqueId() : (Long)classOrClassId);
+		}
+
+		@Override
+		public Assignment getAssignment(Long classId) {
+			iCalls ++; iClasses ++;
+			return createAssignment(classId);
+		}
+
+		@Override
+		public Assignment getAssignment(Class_ clazz) {
+			return getAssignment(clazz.getUniqueId());
+		}
+
+		@Override
+		public AssignmentPreferenceInfo getAssignmentInfo(Long classId) {
+			iCalls ++; iClasses ++;
+			return new AssignmentPreferenceInfo();
+		}
+
+		@Override
+		public AssignmentPreferenceInfo getAssignmentInfo(Class_ clazz) {
+			return getAssignmentInfo(clazz.getUniqueId());
+		}
+
+		@Override
+		public Hashtable getAssignmentTable(Collection classesOrClassIds) {
+			iCalls ++; iClasses += classesOrClassIds.size();
+			Hashtable<Long, Assignment> ret = new Hashtable<Long, Assignment>();
+			for (Object classOrClassId: classesOrClassIds) {
+				Long classId = getClassId(classOrClassId);
+				ret.put(classId, createAssignment(classId));
+			}
+			return ret;
+		}
+
+		@Override
+		public Hashtable getAssignmentInfoTable(Collection classesOrClassIds) {
+			iCalls ++; iClasses += classesOrClassIds.size();
+			Hashtable<Long, AssignmentPreferenceInfo> ret = new Hashtable<Long, AssignmentPreferenceInfo>();
+			for (Object classOrClassId: classesOrClassIds)
+				ret.put(getClassId(classOrClassId), new AssignmentPreferenceInfo());
+			return ret;
+		}
+
+		@Override
+		public boolean hasConflicts(Long offeringId) { return false; }
+
+		@Override
+		public Set<Assignment> getConflicts(Long classId) { return null; }
+
+		@Override
+		public Set<TimeBlock> getConflictingTimeBlocks(Long classId) { return null; }
+	}
+}
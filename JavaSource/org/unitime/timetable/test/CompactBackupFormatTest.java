@@ -0,0 +1,210 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.StudentSectioningModel;
+import org.cpsolver.studentsct.StudentSectioningXMLLoader;
+import org.cpsolver.studentsct.StudentSectioningXMLSaver;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.SctAssignment;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.model.Subpart;
+import org.dom4j.Document;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.SAXReader;
+import org.dom4j.io.XMLWriter;
+import org.unitime.timetable.solver.remote.CompactBackupFormat;
+
+/**
+ * Save and restore round trip of a solver backup in the compact format (see {@link CompactBackupFormat}).<br>
+ * A student sectioning problem is generated (no database is needed) and partially solved, its backup document is created the same way
+ * as the student solver does it (see {@link StudentSectioningXMLSaver}). The document is written in the compact format (gzipped) and read back.
+ * The restored document must be identical to the original one, and the solution loaded from it (see {@link StudentSectioningXMLLoader}) must
+ * have the same enrollments as the solution loaded from the original document. The size and the write and read times of the compact format
+ * and the pretty-printed XML (the default backup format) are printed.<br>
+ * Parameters (system properties): offerings (200), students (2000), seed (1).
+ * 
+ * @author Tomas Muller
+ */
+public class CompactBackupFormatTest {
+	private static int sFailed = 0;
+	
+	private static void check(boolean ok, String message) {
+		if (!ok) sFailed ++;
+		System.out.println((ok ? "OK   " : "FAIL ") + message);
+	}
+	
+	private static DataProperties getConfig() {
+		DataProperties config = new DataProperties();
+		config.setProperty("Xml.SaveBest", "true");
+		config.setProperty("Xml.SaveInitial", "true");
+		config.setProperty("Xml.SaveCurrent", "true");
+		config.setProperty("Xml.LoadBest", "true");
+		config.setProperty("Xml.LoadInitial", "true");
+		config.setProperty("Xml.LoadCurrent", "true");
+		return config;
+	}
+	
+	/**
+	 * Generate offerings with a lecture (two sections) and a recitation (two sections under each lecture), students with three course requests,
+	 * and enroll the students into random sections of the first two of their courses
+	 */
+	private static Solver<Request, Enrollment> generate(int nrOfferings, int nrStudents, Random random) {
+		StudentSectioningModel model = new StudentSectioningModel(getConfig());
+		List<Course> courses = new ArrayList<Course>();
+		long id = 1;
+		for (int o = 0; o < nrOfferings; o++) {
+			Offering offering = new Offering(id++, "C " + (100 + o));
+			Course course = new Course(id++, "C", String.valueOf(100 + o), offering, -1, 0);
+			Config config = new Config(id++, -1, "Config", offering);
+			Subpart lec = new Subpart(id++, "Lec", "Lecture", config, null);
+			Subpart rec = new Subpart(id++, "Rec", "Recitation", config, lec);
+			for (int l = 0; l < 2; l++) {
+				Section lecture = new Section(id++, -1, "Lec " + (1 + l), lec, null, null, null, null);
+				for (int r = 0; r < 2; r++)
+					new Section(id++, -1, "Rec " + (1 + 2 * l + r), rec, null, null, null, lecture);
+			}
+			model.addOffering(offering);
+			courses.add(course);
+		}
+		List<CourseRequest> requests = new ArrayList<CourseRequest>();
+		for (int s = 0; s < nrStudents; s++) {
+			Student student = new Student(id++);
+			student.setExternalId("S" + s);
+			student.setName("Student " + s);
+			Set<Course> selected = new HashSet<Course>();
+			while (selected.size() < 3)
+				selected.add(courses.get(random.nextInt(courses.size())));
+			int priority = 0;
+			for (Course course: selected) {
+				CourseRequest request = new CourseRequest(id++, priority++, false, student, Collections.singletonList(course), false, null);
+				if (priority <= 2) requests.add(request);
+			}
+			model.addStudent(student);
+		}
+		Solver<Request, Enrollment> solver = new Solver<Request, Enrollment>(model.getProperties());
+		solver.setInitalSolution(model);
+		Assignment<Request, Enrollment> assignment = solver.currentSolution().getAssignment();
+		for (CourseRequest request: requests) {
+			Config config = request.getCourses().get(0).getOffering().getConfigs().get(0);
+			Subpart rec = config.getSubparts().get(1);
+			Section recitation = rec.getSections().get(random.nextInt(rec.getSections().size()));
+			Set<SctAssignment> sections = new HashSet<SctAssignment>();
+			sections.add(recitation); sections.add(recitation.getParent());
+			assignment.assign(0, new Enrollment(request, 0, request.getCourses().get(0), config, sections, null));
+		}
+		solver.currentSolution().saveBest();
+		return solver;
+	}
+	
+	private static String toXml(Document document) throws Exception {
+		StringWriter out = new StringWriter();
+		new XMLWriter(out, OutputFormat.createCompactFormat()).write(document);
+		return out.toString();
+	}
+	
+	/**
+	 * Load the solution from the given document, return the enrolled sections of each request
+	 */
+	private static Map<Long, String> getEnrollments(Document document) {
+		StudentSectioningModel model = new StudentSectioningModel(getConfig());
+		Assignment<Request, Enrollment> assignment = new DefaultSingleAssignment<Request, Enrollment>();
+		new StudentSectioningXMLLoader(model, assignment).load(document);
+		Map<Long, String> enrollments = new TreeMap<Long, String>();
+		for (Request request: model.variables()) {
+			Enrollment enrollment = assignment.getValue(request);
+			if (enrollment == null) continue;
+			List<Long> sections = new ArrayList<Long>();
+			for (Section section: enrollment.getSections())
+				sections.add(section.getId());
+			Collections.sort(sections);
+			enrollments.put(request.getId(), sections.toString());
+		}
+		return enrollments;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		ToolBox.configureLogging();
+		int nrOfferings = Integer.getInteger("offerings", 200);
+		int nrStudents = Integer.getInteger("students", 2000);
+		Random random = new Random(Long.getLong("seed", 1l));
+		
+		Solver<Request, Enrollment> solver = generate(nrOfferings, nrStudents, random);
+		int assigned = solver.currentSolution().getAssignment().nrAssignedVariables();
+		Document document = new StudentSectioningXMLSaver(solver).saveDocument();
+		
+		// compact format
+		long t0 = System.currentTimeMillis();
+		ByteArrayOutputStream compact = new ByteArrayOutputStream();
+		GZIPOutputStream gz = new GZIPOutputStream(compact, 65536);
+		CompactBackupFormat.write(document, gz);
+		gz.close();
+		long t1 = System.currentTimeMillis();
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compact.toByteArray()), 65536);
+		Document restored = CompactBackupFormat.read(in);
+		in.close();
+		long t2 = System.currentTimeMillis();
+		
+		// pretty-printed XML
+		ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		new XMLWriter(xml, OutputFormat.createPrettyPrint()).write(document);
+		long t3 = System.currentTimeMillis();
+		new SAXReader().read(new ByteArrayInputStream(xml.toByteArray()));
+		long t4 = System.currentTimeMillis();
+		
+		System.out.println(nrOfferings + " offerings, " + nrStudents + " students, " + assigned + " enrollments");
+		System.out.println("compact: " + compact.size() + " bytes, write " + (t1 - t0) + " ms, read " + (t2 - t1) + " ms");
+		System.out.println("xml:     " + xml.size() + " bytes, write " + (t3 - t2) + " ms, read " + (t4 - t3) + " ms");
+		
+		check(toXml(document).equals(toXml(restored)), "restored document is identical to the original");
+		Map<Long, String> original = getEnrollments(document);
+		Map<Long, String> restoredEnrollments = getEnrollments(restored);
+		check(original.size() == assigned, "solution loaded from the original document has all the enrollments (" + original.size() + " of " + assigned + ")");
+		check(original.equals(restoredEnrollments), "solution loaded from the restored document is the same (" + restoredEnrollments.size() + " enrollments)");
+		
+		System.out.println(sFailed == 0 ? "All checks passed." : sFailed + " checks failed.");
+		System.exit(sFailed == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.unitime.timetable.export.BufferedPrinter;
+import org.unitime.timetable.export.CSVPrinter;
+import org.unitime.timetable.export.Exporter.Printer;
+import org.unitime.timetable.export.JSONPrinter;
+import org.unitime.timetable.export.XLSPrinter;
+
+/**
+ * Memory footprint of a large HQL report export (see {@link org.unitime.timetable.export.hql.SavedHqlExportToCSV}).<br>
+ * The given number of rows (of a query returning an entity id, a name, a date, a number and a flag) is exported
+ * through the CSV, JSON, and XLS printers in three modes:
+ * <ul>
+ * <li>list: all the rows are read first (like {@link org.hibernate.Query#list()}) and buffered by the {@link BufferedPrinter},
+ * JSON entries are collected until flush (the behavior before the streaming export),</li>
+ * <li>sorted: the rows are read one by one (like a scrollable query) but buffered to be sorted,</li>
+ * <li>streaming: the rows are read one by one and written to the output right away (unsorted export).</li>
+ * </ul>
+ * For each combination, the time, the output size, and the largest heap that survived a garbage collection
+ * (sampled every few milliseconds) are printed. A run that does not fit in the heap is reported as such. 
+ * The database side is not included (the rows are generated), run with a fixed heap (e.g., -Xmx512m) to compare the modes.<br>
+ * The XLS workbook is always built in memory (there is no streaming HSSF workbook), so it is only included when asked for.<br>
+ * Parameters (system properties): rows (500000), formats (csv,json; xls is also supported), modes (list,sorted,streaming).
+ * 
+ * @author Tomas Muller
+ */
+public class HqlExportMemoryBenchmark {
+	private static DecimalFormat sDF = new DecimalFormat("0.0");
+	private static String[] sHeader = new String[] { "__id", "Name", "Date", "Credit", "Enrolled" };
+	
+	public static void main(String[] args) throws Exception {
+		int nrRows = Integer.getInteger("rows", 500000);
+		String[] formats = System.getProperty("formats", "csv,json").split(",");
+		String[] modes = System.getProperty("modes", "list,sorted,streaming").split(",");
+		
+		System.out.println("Rows: " + nrRows + ", max heap: " + (Runtime.getRuntime().maxMemory() >> 20) + " MB");
+		for (String format: formats) {
+			for (String mode: modes) {
+				final CountingOutputStream output = new CountingOutputStream();
+				HeapSampler sampler = new HeapSampler();
+				long t0 = System.currentTimeMillis();
+				String result = null;
+				sampler.start();
+				try {
+					Printer printer = createPrinter(format, output, "streaming".equals(mode));
+					if (!"streaming".equals(mode))
+						printer = new BufferedPrinter(printer);
+					printer.hideColumn(0);
+					printer.printHeader(sHeader);
+					if ("list".equals(mode)) {
+						List<Object[]> rows = new ArrayList<Object[]>();
+						for (int i = 0; i < nrRows; i++)
+							rows.add(row(i));
+						for (Object[] row: rows) {
+							printer.printLine(line(row));
+							printer.flush();
+						}
+					} else {
+						for (int i = 0; i < nrRows; i++) {
+							printer.printLine(line(row(i)));
+							printer.flush();
+						}
+					}
+					printer.close();
+				} catch (OutOfMemoryError e) {
+					result = "out of memory";
+				} finally {
+					sampler.finish();
+				}
+				long time = System.currentTimeMillis() - t0;
+				if (result == null)
+					result = sDF.format(time / 1000.0) + " s, output " + sDF.format(output.getCount() / 1048576.0) + " MB";
+				System.out.println(format + " / " + mode + ": " + result + ", heap in use " + sDF.format(sampler.getMaxUsed() / 1048576.0) + " MB");
+			}
+		}
+	}
+	
+	private static Printer createPrinter(String format, OutputStream output, boolean streaming) {
+		if ("csv".equals(format))
+			return new CSVPrinter(new PrintWriter(new OutputStreamWriter(output)), false);
+		if ("json".equals(format))
+			return new JSONPrinter(new PrintWriter(new OutputStreamWriter(output)), streaming);
+		if ("xls".equals(format))
+			return new XLSPrinter(output, false);
+		throw new IllegalArgumentException("Unknown format " + format);
+	}
+	
+	/**
+	 * A row as returned by the query
+	 */
+	private static Object[] row(int i) {
+		return new Object[] {
+				Long.valueOf(1000000l + i),
+				"Student " + i + " Lastname",
+				new java.util.Date(1500000000000l + 60000l * i),
+				Float.valueOf((i % 40) / 2f),
+				Boolean.valueOf(i % 3 == 0)
+		};
+	}
+	
+	/**
+	 * A row as printed by the exporter
+	 */
+	private static String[] line(Object[] row) {
+		String[] line = new String[row.length];
+		for (int i = 0; i < row.length; i++)
+			line[i] = (row[i] == null ? null : row[i].toString());
+		return line;
+	}
+	
+	private static class CountingOutputStream extends OutputStream {
+		private long iCount = 0;
+		
+		@Override
+		public void write(int b) throws IOException { iCount ++; }
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException { iCount += len; }
+		
+		public long getCount() { return iCount; }
+	}
+	
+	/**
+	 * Largest heap that survived a garbage collection, sampled in a background thread
+	 */
+	private static class HeapSampler extends Thread {
+		private long iMaxUsed = 0;
+		private volatile boolean iFinished = false;
+		
+		HeapSampler() {
+			setName("HeapSampler");
+			setDaemon(true);
+			System.gc();
+			for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans())
+				pool.resetPeakUsage();
+		}
+		
+		@Override
+		public void run() {
+			while (!iFinished) {
+				sample();
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+		}
+		
+		private synchronized void sample() {
+			long used = 0;
+			for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() != MemoryType.HEAP) continue;
+				// eden: what survived the last collection, survivor and old generation: objects that survived at least one collection
+				MemoryUsage usage = (pool.getName().contains("Eden") ? pool.getCollectionUsage() : pool.getUsage());
+				if (usage != null) used += usage.getUsed();
+			}
+			if (used > iMaxUsed) iMaxUsed = used;
+		}
+		
+		void finish() {
+			iFinished = true;
+			try {
+				join();
+			} catch (InterruptedException e) {}
+			sample();
+		}
+		
+		synchronized long getMaxUsed() { return iMaxUsed; }
+	}
+}
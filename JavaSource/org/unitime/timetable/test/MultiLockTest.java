@@ -0,0 +1,195 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.unitime.timetable.onlinesectioning.MultiLock;
+import org.unitime.timetable.onlinesectioning.MultiLock.Unlock;
+
+/**
+ * Checks the lock ordering of the {@link MultiLock}: waiting requests reserve their ids (a later request cannot overtake them),
+ * but a thread that already holds a lock bypasses these reservations (no false deadlock on nested locks),
+ * and a real deadlock is still detected.
+ * 
+ * @author Tomas Muller
+ */
+public class MultiLockTest {
+	private static final Long A = 1l, B = 2l, C = 3l;
+	private static int sFailed = 0;
+	
+	private static void check(boolean ok, String message) {
+		if (!ok) sFailed ++;
+		System.out.println((ok ? "OK   " : "FAIL ") + message);
+	}
+	
+	private static void waitForQueue(MultiLock lock, int size) throws InterruptedException {
+		long t0 = System.currentTimeMillis();
+		while (lock.getNrWaitingRequests() < size && System.currentTimeMillis() - t0 < 5000)
+			Thread.sleep(10);
+	}
+	
+	private static class Locker extends Thread {
+		private MultiLock iLock;
+		private Long[] iIds;
+		private AtomicBoolean iLocked = new AtomicBoolean(false);
+		private Exception iError = null;
+		
+		Locker(MultiLock lock, Long... ids) {
+			iLock = lock; iIds = ids;
+			setDaemon(true);
+		}
+		
+		@Override
+		public void run() {
+			try {
+				Unlock unlock = (iIds == null ? null : iLock.lock(iIds));
+				if (iIds == null) iLock.lockAll();
+				iLocked.set(true);
+				if (unlock != null) unlock.release();
+				else iLock.unlockAll();
+			} catch (Exception e) {
+				iError = e;
+			}
+		}
+		
+		boolean isLocked() { return iLocked.get(); }
+	}
+	
+	/**
+	 * T holds A, U waits for {A, B}, then T asks for B: T must get B (U is waiting for T, not the other way around)
+	 */
+	private static void nestedLock() throws Exception {
+		MultiLock lock = new MultiLock();
+		lock.setTimeout(5000);
+		Unlock a = lock.lock(A);
+		Locker u = new Locker(lock, A, B);
+		u.start();
+		waitForQueue(lock, 1);
+		Exception error = null;
+		Unlock b = null;
+		long t0 = System.currentTimeMillis();
+		try {
+			b = lock.lock(B);
+		} catch (Exception e) {
+			error = e;
+		}
+		check(error == null && b != null, "nested lock bypasses the reservation of a waiting request" + (error == null ? "" : " (" + error.getMessage() + ")"));
+		check(System.currentTimeMillis() - t0 < 1000, "nested lock granted in " + (System.currentTimeMillis() - t0) + " ms");
+		check(!u.isLocked(), "waiting request is not granted while the locks are held");
+		if (b != null) b.release();
+		a.release();
+		u.join(5000);
+		check(u.isLocked() && u.iError == null, "waiting request is granted once the locks are released");
+		check(lock.getNrDeadlocks() == 0, "no deadlock reported (" + lock.getNrDeadlocks() + ")");
+	}
+	
+	/**
+	 * T holds A, U waits for all, then T asks for B: T must get B
+	 */
+	private static void nestedLockWithLockAll() throws Exception {
+		MultiLock lock = new MultiLock();
+		lock.setTimeout(5000);
+		Unlock a = lock.lock(A);
+		Locker u = new Locker(lock, (Long[])null);
+		u.start();
+		waitForQueue(lock, 1);
+		Exception error = null;
+		Unlock b = null;
+		try {
+			b = lock.lock(B);
+		} catch (Exception e) {
+			error = e;
+		}
+		check(error == null && b != null, "nested lock bypasses a waiting lock all" + (error == null ? "" : " (" + error.getMessage() + ")"));
+		check(!u.isLocked(), "lock all is not granted while the locks are held");
+		if (b != null) b.release();
+		a.release();
+		u.join(5000);
+		check(u.isLocked() && u.iError == null, "lock all is granted once the locks are released");
+	}
+	
+	/**
+	 * T holds A, U waits for {A, B}, then V (holding nothing) asks for B: V must wait for U
+	 */
+	private static void reservation() throws Exception {
+		MultiLock lock = new MultiLock();
+		lock.setTimeout(5000);
+		Unlock a = lock.lock(A);
+		Locker u = new Locker(lock, A, B);
+		u.start();
+		waitForQueue(lock, 1);
+		Locker v = new Locker(lock, B, C);
+		v.start();
+		waitForQueue(lock, 2);
+		Thread.sleep(200);
+		check(!v.isLocked(), "a later request does not overtake the reservation of a waiting request");
+		a.release();
+		u.join(5000); v.join(5000);
+		check(u.isLocked() && v.isLocked() && u.iError == null && v.iError == null, "both waiting requests are granted once the lock is released");
+	}
+	
+	/**
+	 * T holds A, U holds B and waits for A, then T asks for B: this is a real deadlock
+	 */
+	private static void deadlock() throws Exception {
+		final MultiLock lock = new MultiLock();
+		lock.setTimeout(5000);
+		Unlock a = lock.lock(A);
+		final AtomicBoolean uLocked = new AtomicBoolean(false);
+		Thread u = new Thread() {
+			@Override
+			public void run() {
+				Unlock b = lock.lock(B);
+				try {
+					Unlock a = lock.lock(A);
+					uLocked.set(true);
+					a.release();
+				} finally {
+					b.release();
+				}
+			}
+		};
+		u.setDaemon(true);
+		u.start();
+		waitForQueue(lock, 1);
+		Exception error = null;
+		long t0 = System.currentTimeMillis();
+		try {
+			lock.lock(B).release();
+		} catch (Exception e) {
+			error = e;
+		}
+		check(error != null && System.currentTimeMillis() - t0 < 1000, "real deadlock is detected" + (error == null ? "" : " (" + error.getMessage() + ")"));
+		a.release();
+		u.join(5000);
+		check(uLocked.get(), "the other thread gets its lock after the deadlock is resolved");
+		check(lock.getNrDeadlocks() == 1, "one deadlock reported (" + lock.getNrDeadlocks() + ")");
+	}
+	
+	public static void main(String[] args) throws Exception {
+		nestedLock();
+		nestedLockWithLockAll();
+		reservation();
+		deadlock();
+		System.out.println(sFailed == 0 ? "All checks passed." : sFailed + " checks failed.");
+		System.exit(sFailed == 0 ? 0 : 1);
+	}
+}
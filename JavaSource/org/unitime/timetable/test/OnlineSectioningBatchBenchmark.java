@@ -0,0 +1,236 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.unitime.timetable.onlinesectioning.OnlineSectioningBatch;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
+import org.unitime.timetable.onlinesectioning.model.XStudent;
+import org.unitime.timetable.solver.jgroups.BatchedRemoteSolver;
+import org.unitime.timetable.solver.jgroups.RemoteCall;
+import org.unitime.timetable.solver.jgroups.RemoteCallStatistics;
+
+/**
+ * Batching benchmark of the remote online sectioning server calls (see {@link OnlineSectioningBatch}).<br>
+ * A remote server proxy is simulated: each round-trip serializes the request and the response (the same way as the cluster call does)
+ * and waits for the given network latency. The students of a course (as read by the dashboard, see FindEnrollmentInfoAction) are then
+ * read one call at a time, in a single batch, and in a single asynchronous batch that overlaps with the given amount of local work.
+ * For each course size, the wall time, the number of round-trips, and the number of bytes sent back is printed,
+ * followed by the recorded {@link RemoteCallStatistics} (batch latency is recorded under its own entry).<br>
+ * Parameters (system properties): sizes (comma separated numbers of students, 10,100,1000), latency (round-trip latency in ms, 1),
+ * work (local work in ms done while an asynchronous batch is running, 20), repeat (3).
+ * 
+ * @author Tomas Muller
+ */
+public class OnlineSectioningBatchBenchmark {
+	private static DecimalFormat sDF = new DecimalFormat("0.0");
+	
+	public static void main(String[] args) throws Exception {
+		String[] sizes = System.getProperty("sizes", "10,100,1000").split(",");
+		long latency = Long.getLong("latency", 1l);
+		long work = Long.getLong("work", 20l);
+		int repeat = Integer.getInteger("repeat", 3);
+		
+		int maxSize = 0;
+		for (String size: sizes) maxSize = Math.max(maxSize, Integer.parseInt(size));
+		final Map<Long, XStudent> students = new HashMap<Long, XStudent>();
+		for (long id = 0; id < maxSize; id++)
+			students.put(id, new XStudent(id, "E" + (100000000 + id), "Student " + id));
+		
+		ExecutorService executor = Executors.newCachedThreadPool();
+		RemoteCallStatistics statistics = new RemoteCallStatistics("Benchmark");
+		SimulatedRemoteServer handler = new SimulatedRemoteServer(students, latency, executor, statistics);
+		OnlineSectioningServer server = (OnlineSectioningServer)Proxy.newProxyInstance(
+				OnlineSectioningBatchBenchmark.class.getClassLoader(),
+				new Class[] { OnlineSectioningServer.class, BatchedRemoteSolver.class }, handler);
+		
+		System.out.println("Round-trip latency " + latency + " ms, " + work + " ms of local work during an asynchronous batch, best of " + repeat + " runs");
+		System.out.println("students  mode           time [ms]  round-trips   bytes");
+		for (String size: sizes) {
+			List<Long> ids = new ArrayList<Long>();
+			for (long id = 0; id < Integer.parseInt(size); id++) ids.add(id);
+			
+			for (int mode = 0; mode < 3; mode++) {
+				long best = Long.MAX_VALUE, calls = 0, bytes = 0;
+				for (int r = 0; r < repeat; r++) {
+					handler.reset();
+					long t0 = System.nanoTime();
+					Map<Long, XStudent> result = null;
+					if (mode == 0) {
+						result = new HashMap<Long, XStudent>();
+						for (Long id: ids) {
+							XStudent student = server.getStudent(id);
+							if (student != null) result.put(id, student);
+						}
+						Thread.sleep(work);
+					} else if (mode == 1) {
+						result = OnlineSectioningBatch.getStudents(server, ids);
+						Thread.sleep(work);
+					} else {
+						OnlineSectioningBatch batch = new OnlineSectioningBatch(server);
+						List<OnlineSectioningBatch.Result<XStudent>> results = new ArrayList<OnlineSectioningBatch.Result<XStudent>>();
+						for (Long id: ids) results.add(batch.getStudent(id));
+						batch.executeAsync();
+						Thread.sleep(work);
+						result = new HashMap<Long, XStudent>();
+						for (OnlineSectioningBatch.Result<XStudent> student: results)
+							if (student.get() != null) result.put(student.get().getStudentId(), student.get());
+					}
+					long time = System.nanoTime() - t0;
+					if (result.size() != ids.size())
+						throw new IllegalStateException("Expected " + ids.size() + " students, got " + result.size());
+					if (time < best) best = time;
+					calls = handler.getCalls(); bytes = handler.getBytes();
+				}
+				System.out.println(pad(size, 8) + "  " + pad(mode == 0 ? "one by one" : mode == 1 ? "batch" : "batch (async)", -13) +
+						pad(sDF.format(best / 1000000.0), 11) + pad(String.valueOf(calls), 13) + pad(String.valueOf(bytes), 8));
+			}
+		}
+		System.out.println();
+		for (String line: statistics.getMethodStatistics())
+			System.out.println(line);
+		executor.shutdown();
+	}
+	
+	private static String pad(String text, int length) {
+		StringBuffer ret = new StringBuffer();
+		if (length < 0) {
+			ret.append(text);
+			while (ret.length() < -length) ret.append(' ');
+		} else {
+			while (ret.length() + text.length() < length) ret.append(' ');
+			ret.append(text);
+		}
+		return ret.toString();
+	}
+	
+	/**
+	 * Remote server proxy: every call is a round-trip with the given latency, request and response are serialized.
+	 * Batches are executed as by OnlineStudentSchedulingContainerRemote.invokeBatch (results packed by {@link RemoteCall#pack(Object[])}).
+	 */
+	private static class SimulatedRemoteServer implements InvocationHandler {
+		private Map<Long, XStudent> iStudents;
+		private long iLatency;
+		private ExecutorService iExecutor;
+		private RemoteCallStatistics iStatistics;
+		private long iCalls = 0, iBytes = 0;
+		
+		SimulatedRemoteServer(Map<Long, XStudent> students, long latency, ExecutorService executor, RemoteCallStatistics statistics) {
+			iStudents = students; iLatency = latency; iExecutor = executor; iStatistics = statistics;
+		}
+		
+		synchronized void reset() { iCalls = 0; iBytes = 0; }
+		synchronized long getCalls() { return iCalls; }
+		synchronized long getBytes() { return iBytes; }
+		synchronized void count(int bytes) { iCalls ++; iBytes += bytes; }
+		
+		/** Execution on the remote server */
+		Object execute(String method, Object[] args) {
+			if ("getStudent".equals(method)) return iStudents.get((Long)args[0]);
+			throw new UnsupportedOperationException("Method " + method + " is not supported.");
+		}
+		
+		Object[] invokeAll(RemoteCall[] calls) throws Exception {
+			long t0 = System.currentTimeMillis();
+			Object[] results = null;
+			try {
+				serialize(calls);
+				Thread.sleep(iLatency);
+				Object[] remote = new Object[calls.length];
+				for (int i = 0; i < calls.length; i++) {
+					try {
+						remote[i] = execute(calls[i].getMethod(), calls[i].getArgs());
+					} catch (Exception e) {
+						remote[i] = e;
+					}
+				}
+				byte[] data = RemoteCall.pack(remote);
+				count(data.length);
+				results = RemoteCall.unpack(data);
+				return results;
+			} finally {
+				iStatistics.record(calls, results, System.currentTimeMillis() - t0);
+			}
+		}
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("invokeAll".equals(method.getName()))
+				return invokeAll((RemoteCall[])args[0]);
+			if ("invokeAllAsync".equals(method.getName())) {
+				final RemoteCall[] calls = (RemoteCall[])args[0];
+				Future<Object[]> future = iExecutor.submit(new Callable<Object[]>() {
+					@Override
+					public Object[] call() throws Exception {
+						return invokeAll(calls);
+					}
+				});
+				return future;
+			}
+			long t0 = System.currentTimeMillis();
+			boolean failed = true;
+			try {
+				serialize(args);
+				Thread.sleep(iLatency);
+				byte[] data = serialize(execute(method.getName(), args));
+				count(data.length);
+				Object ret = deserialize(data);
+				failed = false;
+				return ret;
+			} finally {
+				iStatistics.record(method.getName(), System.currentTimeMillis() - t0, failed);
+			}
+		}
+		
+		private static byte[] serialize(Object object) throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(object);
+			out.flush(); out.close();
+			return bytes.toByteArray();
+		}
+		
+		private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+			try {
+				return in.readObject();
+			} finally {
+				in.close();
+			}
+		}
+	}
+}
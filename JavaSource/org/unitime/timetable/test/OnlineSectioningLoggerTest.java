@@ -0,0 +1,110 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningLogger;
+
+/**
+ * Checks the behaviour of the {@link OnlineSectioningLogger} when the log actions cannot be persisted (there is no database,
+ * so every attempt fails): actions that do not fit in the buffer are spilled by the logger thread and not lost, a failed
+ * attempt is not retried before the retry delay, and actions that failed to be restored are not spilled again.
+ * 
+ * @author Tomas Muller
+ */
+public class OnlineSectioningLoggerTest {
+	private static int sFailed = 0;
+	
+	private static void check(boolean ok, String message) {
+		if (!ok) sFailed ++;
+		System.out.println((ok ? "OK   " : "FAIL ") + message);
+	}
+	
+	private static int count(File file) throws IOException {
+		if (!file.exists()) return 0;
+		int count = 0;
+		InputStream in = new FileInputStream(file);
+		try {
+			while (OnlineSectioningLog.Action.parseDelimitedFrom(in) != null) count++;
+		} finally {
+			in.close();
+		}
+		return count;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		File dir = File.createTempFile("sectioning-log", "");
+		dir.delete(); dir.mkdirs();
+		ApplicationProperties.getDefaultProperties().setProperty("unitime.data.dir", dir.getAbsolutePath());
+		ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.OnlineSchedulingLogLimit.key(), "10");
+		ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.OnlineSchedulingLogBatchSize.key(), "5");
+		ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.OnlineSchedulingLogFlushInterval.key(), "1");
+		ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.OnlineSchedulingLogRetryDelay.key(), "4");
+		
+		OnlineSectioningLogger logger = OnlineSectioningLogger.getInstance();
+		long t0 = System.currentTimeMillis();
+		while (!logger.isActive() && System.currentTimeMillis() - t0 < 5000) Thread.sleep(10);
+		
+		OnlineSectioningLog.Log.Builder log = OnlineSectioningLog.Log.newBuilder();
+		for (int i = 0; i < 20; i++)
+			log.addAction(OnlineSectioningLog.Action.newBuilder()
+					.setOperation("section")
+					.setSession(OnlineSectioningLog.Entity.newBuilder().setUniqueId(1l))
+					.setStudent(OnlineSectioningLog.Entity.newBuilder().setUniqueId(100l + i).setExternalId("S" + i))
+					.setStartTime(System.currentTimeMillis()));
+		// 10 actions fit in the buffer, the other 10 in the overflow queue (both have the capacity of the log limit)
+		logger.record(log.build());
+		check(logger.getNrRecorded() == 20, "recorded " + logger.getNrRecorded() + " actions (20 expected)");
+		check(logger.getNrDropped() == 0, "dropped " + logger.getNrDropped() + " actions (0 expected)");
+		
+		t0 = System.currentTimeMillis();
+		while (logger.getNrSpilled() < 20 && System.currentTimeMillis() - t0 < 5000) Thread.sleep(10);
+		check(logger.getNrSpilled() == 20, "spilled " + logger.getNrSpilled() + " actions (20 expected)");
+		check(logger.getNrFailed() == 5, "failed to persist " + logger.getNrFailed() + " actions (5 expected: one batch, the rest is spilled during the retry delay)");
+		
+		// retries at about 1 and 3 seconds (delays of 1, 2, and 4 seconds), no retry at every flush
+		Thread.sleep(4500);
+		check(logger.getNrFailed() <= 15, "failed to persist " + logger.getNrFailed() + " actions in 4.5 seconds (at most 15 expected)");
+		check(logger.getRetryDelay() >= 2000, "retry delay is " + logger.getRetryDelay() + " ms (at least 2000 expected)");
+		check(logger.getNrSpilled() == 20, "spilled " + logger.getNrSpilled() + " actions after the failed restores (20 expected, no action is spilled again)");
+		check(logger.getNrRestored() == 0, "restored " + logger.getNrRestored() + " actions (0 expected)");
+		
+		OnlineSectioningLogger.stopLogger();
+		int stored = count(new File(dir, "sectioning-log.spill")) + count(new File(dir, "sectioning-log.spill.restore"));
+		check(stored == 20, "stored " + stored + " actions in the spill files (20 expected)");
+		
+		for (File file: dir.listFiles()) file.delete();
+		dir.delete();
+		
+		if (sFailed > 0) {
+			System.out.println(sFailed + " checks failed.");
+			System.exit(1);
+		}
+		System.out.println("All checks passed.");
+		System.exit(0);
+	}
+}
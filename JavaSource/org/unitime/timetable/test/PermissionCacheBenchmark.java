@@ -0,0 +1,177 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cpsolver.ifs.util.ToolBox;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Class_;
+import org.unitime.timetable.model.InstrOfferingConfig;
+import org.unitime.timetable.model.InstructionalOffering;
+import org.unitime.timetable.model.SchedulingSubpart;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.SubjectArea;
+import org.unitime.timetable.model.TimetableManager;
+import org.unitime.timetable.model.dao.SessionDAO;
+import org.unitime.timetable.model.dao.SubjectAreaDAO;
+import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.context.UniTimeUserContext;
+import org.unitime.timetable.security.evaluation.PermissionCache;
+import org.unitime.timetable.security.evaluation.PermissionCheck;
+import org.unitime.timetable.security.rights.Right;
+
+/**
+ * Permission checks of the instructional offerings page with and without the {@link PermissionCache}.<br>
+ * For each subject area of the academic session (or for the given subject area), the page is simulated by checking the
+ * permissions that are checked for each row of the instructional offering table (see {@link org.unitime.timetable.webutil.WebInstructionalOfferingTableBuilder}):
+ * offering detail for each offering and configuration, subpart detail for each subpart, class detail and class assignments for each class.
+ * Each page is checked in a new hibernate session, first without the cache and then with the request scoped cache (as in the
+ * {@link org.unitime.timetable.filter.HibSessionFilter}, the cache is enabled for the benchmark). The time per page, the number of checks, the hits and misses,
+ * and the number of decisions that differ between the two runs (which should be zero) are printed.<br>
+ * Parameters (system properties): manager (external id of the timetable manager), initiative, year, term (academic session),
+ * subject (subject area abbreviation, all subject areas when not set), repeat (3).
+ * Example usage:
+ * 		java \
+ * 			-Dtmtbl.custom.properties=${TOMCAT_HOME}/custom.properties \
+ * 			-Dmanager=1234 -Dinitiative=PWL -Dyear=2010 -Dterm=Fal \
+ * 			-cp "${TOMCAT_HOME}/webapps/UniTime/WEB-INF/lib/*:${TOMCAT_HOME}/webapps/UniTime/WEB-INF/classes:${TOMCAT_HOME}/webapps/UniTime/WEB-INF" \
+ * 			org.unitime.timetable.test.PermissionCacheBenchmark
+ * 
+ * @author Tomas Muller
+ */
+public class PermissionCacheBenchmark {
+	private static DecimalFormat sDF = new DecimalFormat("0.00");
+	
+	public static void main(String[] args) {
+		try {
+			// Configure logging
+			ToolBox.configureLogging();
+			
+			// Configure hibernate
+			HibernateUtil.configureHibernate(ApplicationProperties.getProperties());
+			
+			// The request cache is disabled by default
+			ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.PermissionCacheRequest.key(), "true");
+			
+			// Setup application context
+			ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("/applicationContext.xml", "/securityContext.xml");
+			PermissionCheck permissionCheck = context.getBean("unitimePermissionCheck", PermissionCheck.class);
+			
+			org.hibernate.Session hibSession = new _RootDAO().getSession();
+			Session session = Session.getSessionUsingInitiativeYearTerm(
+                    ApplicationProperties.getProperty("initiative", "PWL"),
+                    ApplicationProperties.getProperty("year","2010"),
+                    ApplicationProperties.getProperty("term","Fal"),
+                    hibSession);
+			if (session == null) {
+				System.err.println("Academic session not found, use properties initiative, year, and term to set academic session.");
+				return;
+			}
+			TimetableManager manager = TimetableManager.findByExternalId(ApplicationProperties.getProperty("manager"));
+			if (manager == null) {
+				System.err.println("Timetable manager not found, use property manager to set the manager's external id.");
+				return;
+			}
+			UserContext user = new UniTimeUserContext(manager, session);
+			if (user.getCurrentAuthority() == null) {
+				System.err.println("Timetable manager " + manager.getName() + " has no role in " + session.getLabel() + ".");
+				return;
+			}
+			System.out.println("User: " + user.getName() + " (" + user.getCurrentAuthority() + ")");
+			
+			List<Long> subjectIds = new ArrayList<Long>();
+			for (SubjectArea subject: session.getSubjectAreas())
+				if (ApplicationProperties.getProperty("subject") == null || ApplicationProperties.getProperty("subject").equals(subject.getSubjectAreaAbbreviation()))
+					subjectIds.add(subject.getUniqueId());
+			hibSession.close();
+			
+			int repeat = Integer.getInteger("repeat", 3);
+			long[] time = new long[] {0, 0};
+			long checks = 0, hits = 0, misses = 0, different = 0;
+			for (int r = 0; r < repeat; r++) {
+				for (Long subjectId: subjectIds) {
+					List<Boolean> decisions = null;
+					for (int cache = 0; cache < 2; cache++) {
+						hibSession = SessionDAO.getInstance().createNewSession();
+						boolean started = (cache == 1 && PermissionCache.begin());
+						long h0 = PermissionCache.getNrHits(), m0 = PermissionCache.getNrMisses();
+						try {
+							SubjectArea subject = SubjectAreaDAO.getInstance().get(subjectId, hibSession);
+							long t0 = System.nanoTime();
+							List<Boolean> page = checkPage(permissionCheck, user, subject);
+							time[cache] += System.nanoTime() - t0;
+							if (cache == 0) {
+								decisions = page;
+								checks += page.size();
+							} else {
+								hits += PermissionCache.getNrHits() - h0;
+								misses += PermissionCache.getNrMisses() - m0;
+								for (int i = 0; i < page.size(); i++)
+									if (!page.get(i).equals(decisions.get(i))) different ++;
+							}
+						} finally {
+							if (started) PermissionCache.end();
+							hibSession.close();
+						}
+					}
+				}
+			}
+			
+			int pages = repeat * subjectIds.size();
+			System.out.println("Pages: " + pages + ", permission checks: " + checks + " (" + (pages == 0 ? 0 : checks / pages) + " per page)");
+			System.out.println("No cache:      " + sDF.format(pages == 0 ? 0.0 : time[0] / 1000000.0 / pages) + " ms per page");
+			System.out.println("Request cache: " + sDF.format(pages == 0 ? 0.0 : time[1] / 1000000.0 / pages) + " ms per page" +
+					", " + hits + " hits, " + misses + " misses, hit ratio " + sDF.format(hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses)) + "%");
+			System.out.println("Different decisions: " + different);
+			
+			context.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Permission checks of the rows of the instructional offering table of the given subject area
+	 */
+	private static List<Boolean> checkPage(PermissionCheck permissionCheck, UserContext user, SubjectArea subject) {
+		List<Boolean> decisions = new ArrayList<Boolean>();
+		for (InstructionalOffering offering: subject.getInstructionalOfferings()) {
+			decisions.add(permissionCheck.hasPermission(user, offering, Right.InstructionalOfferingDetail));
+			for (InstrOfferingConfig config: offering.getInstrOfferingConfigs()) {
+				decisions.add(permissionCheck.hasPermission(user, config.getInstructionalOffering(), Right.InstructionalOfferingDetail));
+				for (SchedulingSubpart subpart: config.getSchedulingSubparts()) {
+					decisions.add(permissionCheck.hasPermission(user, subpart, Right.SchedulingSubpartDetail));
+					for (Class_ clazz: subpart.getClasses()) {
+						decisions.add(permissionCheck.hasPermission(user, clazz, Right.ClassDetail));
+						decisions.add(permissionCheck.hasPermission(user, null, Right.ClassAssignments));
+					}
+				}
+			}
+		}
+		return decisions;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.cpsolver.ifs.util.ToolBox;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.backup.BackupProgress;
+import org.unitime.timetable.backup.SessionRestore;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.dao._RootDAO;
+
+/**
+ * Throughput of the academic session restore (see {@link SessionRestore}).<br>
+ * The given backup file is restored once for each of the save modes: ordered (records are saved table by table in the order of
+ * their not-null relations, so that the inserts of a table are sent to the database in JDBC batches) and passes
+ * (repeated passes over all the records, saving whatever can be saved). Each restore creates a new academic session,
+ * so a test database should be used. For each mode, the time of each restore phase, the number of inserted and updated records,
+ * the number of prepared statements, and the records saved per second are printed.<br>
+ * Parameters (system properties): modes (ordered,passes).
+ * Example usage:
+ * 		java \
+ * 			-Dtmtbl.custom.properties=${TOMCAT_HOME}/custom.properties \
+ * 			-cp "${TOMCAT_HOME}/webapps/UniTime/WEB-INF/lib/*:${TOMCAT_HOME}/webapps/UniTime/WEB-INF/classes:${TOMCAT_HOME}/webapps/UniTime/WEB-INF" \
+ * 			org.unitime.timetable.test.SessionRestoreBenchmark session.dat
+ * 
+ * @author Tomas Muller
+ */
+public class SessionRestoreBenchmark {
+	private static DecimalFormat sDF = new DecimalFormat("0.0");
+	
+	public static void main(String[] args) {
+		try {
+			// Configure logging
+			ToolBox.configureLogging();
+			
+			// Configure hibernate
+			HibernateUtil.configureHibernate(ApplicationProperties.getProperties());
+			
+			SessionFactory factory = new _RootDAO().getSession().getSessionFactory();
+			Statistics stats = factory.getStatistics();
+			stats.setStatisticsEnabled(true);
+			
+			List<String> results = new ArrayList<String>();
+			for (String mode: System.getProperty("modes", "ordered,passes").split(",")) {
+				ApplicationProperties.getDefaultProperties().setProperty(ApplicationProperty.SessionRestoreOrdered.key(), "ordered".equals(mode) ? "true" : "false");
+				stats.clear();
+				
+				InputStream in = new FileInputStream(args[0]);
+				if (args[0].endsWith(".zdat") || args[0].endsWith(".gz"))
+					in = new GZIPInputStream(in);
+				
+				PhaseTimer timer = new PhaseTimer(mode);
+				long t0 = System.currentTimeMillis();
+				try {
+					new SessionRestore().restore(in, timer);
+				} finally {
+					in.close();
+				}
+				timer.done();
+				long time = System.currentTimeMillis() - t0;
+				
+				long records = stats.getEntityInsertCount() + stats.getCollectionRecreateCount();
+				results.add(mode + ": " + sDF.format(time / 1000.0) + " s, " +
+						stats.getEntityInsertCount() + " inserts, " + stats.getEntityUpdateCount() + " updates, " + stats.getCollectionRecreateCount() + " collections, " +
+						stats.getPrepareStatementCount() + " prepared statements, " +
+						(time == 0 ? "-" : String.valueOf(Math.round(1000.0 * records / time))) + " records/s");
+			}
+			
+			for (String result: results)
+				System.out.println(result);
+			
+			HibernateUtil.closeHibernate();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Restore progress that prints the time spent in each phase
+	 */
+	private static class PhaseTimer implements BackupProgress {
+		private String iMode;
+		private String iPhase = null;
+		private long iPhaseStart = 0;
+		
+		PhaseTimer(String mode) { iMode = mode; }
+		
+		@Override
+		public void setStatus(String status) {}
+		
+		@Override
+		public void setPhase(String phase, double max) {
+			done();
+			iPhase = phase; iPhaseStart = System.currentTimeMillis();
+		}
+		
+		void done() {
+			if (iPhase != null)
+				System.out.println(iMode + " / " + iPhase + ": " + (System.currentTimeMillis() - iPhaseStart) + " ms");
+			iPhase = null;
+		}
+		
+		@Override
+		public void incProgress() {}
+		
+		@Override
+		public void info(String message) {
+			System.out.println(iMode + ": " + message);
+		}
+		
+		@Override
+		public void warn(String message) {
+			System.out.println(iMode + ": WARN " + message);
+		}
+		
+		@Override
+		public void error(String message) {
+			System.out.println(iMode + ": ERROR " + message);
+		}
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.unitime.timetable.solver.jgroups.SolverServerLoad;
+import org.unitime.timetable.solver.jgroups.SolverServerLoadMonitor;
+
+/**
+ * Solver placement benchmark (see {@link SolverServerLoadMonitor#selectServer(List, Map, Map)}).<br>
+ * A cluster of solver servers with different heap sizes and processor counts is simulated in one second steps. Solvers arrive
+ * in bursts (e.g., several users loading their solvers at the same time), each taking some memory and some CPU time, and staying
+ * loaded for a while after the solver has finished. The same arrivals are placed using the following strategies:<ul>
+ * <li>load-aware: lowest placement score using the load collected on each heartbeat, counting solvers placed since the heartbeat</li>
+ * <li>no-pending: the same, but not counting the solvers placed since the heartbeat</li>
+ * <li>ask-all: the original placement, each server is asked for its usage and the one with the lowest usage is selected</li>
+ * <li>round-robin and random: no load information</li>
+ * </ul>
+ * For each strategy, the number of placed, refused and out of memory solvers, the number of cluster calls, the peak heap usage,
+ * and the slow-down of the solvers (wall time over CPU time of a solver, caused by more running solvers than processors) is printed.<br>
+ * Parameters (system properties): servers (comma separated heap in MB:processors, 8192:8,8192:8,16384:16,4096:4), hours (4), heartbeat (15 seconds),
+ * burstEvery (600 seconds), burstSize (12), perHour (background arrivals per hour, 10), memoryLimit (200 MB), seed (1).
+ * 
+ * @author Tomas Muller
+ */
+public class SolverPlacementBenchmark {
+	private static DecimalFormat sDF = new DecimalFormat("0.00");
+	/** Heap taken by a solver server without any solvers, in MB */
+	private static final long sBaseMemory = 300;
+	
+	public static void main(String[] args) {
+		String[] servers = System.getProperty("servers", "8192:8,8192:8,16384:16,4096:4").split(",");
+		int duration = 3600 * Integer.getInteger("hours", 4);
+		int heartbeat = Integer.getInteger("heartbeat", 15);
+		int burstEvery = Integer.getInteger("burstEvery", 600);
+		int burstSize = Integer.getInteger("burstSize", 12);
+		int perHour = Integer.getInteger("perHour", 10);
+		long memoryLimit = Long.getLong("memoryLimit", 200l);
+		long seed = Long.getLong("seed", 1l);
+		
+		// arrivals, the same for all the strategies
+		Random random = new Random(seed);
+		List<Solver> arrivals = new ArrayList<Solver>();
+		for (int time = 0; time < duration; time++) {
+			if (time % burstEvery == 0)
+				for (int i = 0; i < burstSize; i++)
+					arrivals.add(new Solver(time + random.nextInt(10), random));
+			if (random.nextDouble() < perHour / 3600.0)
+				arrivals.add(new Solver(time, random));
+		}
+		Collections.sort(arrivals);
+		
+		System.out.println(servers.length + " servers " + System.getProperty("servers", "8192:8,8192:8,16384:16,4096:4") + " (heap MB:processors), " +
+				arrivals.size() + " solvers in " + (duration / 3600) + " hours, bursts of " + burstSize + " every " + burstEvery + " s, heartbeat " + heartbeat + " s");
+		System.out.println("strategy      placed refused    oom  calls  peak heap  slow-down (avg)  slow-down (max)");
+		Strategy[] strategies = new Strategy[] {
+				new LoadAware(true), new LoadAware(false), new AskAll(), new RoundRobin(), new RandomPlacement(seed)
+		};
+		for (Strategy strategy: strategies) {
+			List<Server> cluster = new ArrayList<Server>();
+			for (int i = 0; i < servers.length; i++) {
+				String[] s = servers[i].split(":");
+				cluster.add(new Server("server" + i, Long.parseLong(s[0]), Integer.parseInt(s[1]), memoryLimit));
+			}
+			simulate(strategy, cluster, arrivals, duration, heartbeat);
+		}
+	}
+	
+	private static void simulate(Strategy strategy, List<Server> cluster, List<Solver> arrivals, int duration, int heartbeat) {
+		Iterator<Solver> next = arrivals.iterator();
+		Solver arrival = (next.hasNext() ? next.next().copy() : null);
+		int placed = 0, refused = 0, oom = 0;
+		double peakHeap = 0.0;
+		List<Solver> finished = new ArrayList<Solver>();
+		for (int time = 0; time < duration; time++) {
+			if (heartbeat > 0 && time % heartbeat == 0)
+				strategy.heartbeat(cluster);
+			while (arrival != null && arrival.iArrival <= time) {
+				Server server = strategy.select(cluster);
+				if (server == null) {
+					refused ++;
+				} else if (server.getUsedMemory() + arrival.iMemory > server.iHeap) {
+					oom ++;
+				} else {
+					arrival.iStart = time;
+					server.iSolvers.add(arrival);
+					placed ++;
+				}
+				arrival = (next.hasNext() ? next.next().copy() : null);
+			}
+			for (Server server: cluster) {
+				peakHeap = Math.max(peakHeap, ((double)server.getUsedMemory()) / server.iHeap);
+				server.step(time, finished);
+			}
+		}
+		double total = 0.0, max = 0.0;
+		for (Solver solver: finished) {
+			double slowDown = ((double)(solver.iFinished - solver.iStart)) / solver.iWork;
+			total += slowDown;
+			max = Math.max(max, slowDown);
+		}
+		System.out.println(pad(strategy.getName(), 12) + pad(String.valueOf(placed), 8) + pad(String.valueOf(refused), 8) + pad(String.valueOf(oom), 7) +
+				pad(String.valueOf(strategy.iCalls), 7) + pad(sDF.format(100.0 * peakHeap) + "%", 11) +
+				pad(finished.isEmpty() ? "-" : sDF.format(total / finished.size()), 17) + pad(sDF.format(max), 17));
+	}
+	
+	private static String pad(String text, int length) {
+		StringBuffer ret = new StringBuffer();
+		while (ret.length() + text.length() < length) ret.append(' ');
+		return ret.append(text).toString();
+	}
+	
+	/**
+	 * Simulated solver: memory in MB, CPU time in seconds, and the time it stays loaded after it has finished
+	 */
+	private static class Solver implements Comparable<Solver> {
+		int iArrival, iStart = -1, iFinished = -1;
+		long iMemory;
+		int iWork, iIdle;
+		double iDone = 0.0;
+		
+		Solver(int arrival, Random random) {
+			iArrival = arrival;
+			iMemory = 200 + random.nextInt(600);
+			iWork = 60 + random.nextInt(840);
+			iIdle = 300 + random.nextInt(600);
+		}
+		
+		Solver(Solver solver) {
+			iArrival = solver.iArrival; iMemory = solver.iMemory; iWork = solver.iWork; iIdle = solver.iIdle;
+		}
+		
+		Solver copy() { return new Solver(this); }
+		
+		boolean isWorking() { return iFinished < 0; }
+		
+		@Override
+		public int compareTo(Solver solver) {
+			return Integer.compare(iArrival, solver.iArrival);
+		}
+	}
+	
+	/**
+	 * Simulated solver server: the running solvers share the processors
+	 */
+	private static class Server {
+		String iHost;
+		long iHeap, iMemoryLimit;
+		int iProcessors;
+		List<Solver> iSolvers = new ArrayList<Solver>();
+		
+		Server(String host, long heap, int processors, long memoryLimit) {
+			iHost = host; iHeap = heap; iProcessors = processors; iMemoryLimit = memoryLimit;
+		}
+		
+		long getUsedMemory() {
+			long used = sBaseMemory;
+			for (Solver solver: iSolvers) used += solver.iMemory;
+			return used;
+		}
+		
+		int getRunning() {
+			int running = 0;
+			for (Solver solver: iSolvers)
+				if (solver.isWorking()) running ++;
+			return running;
+		}
+		
+		/** Usage as computed by the solver containers: one for each solver, one more if it is loaded, and one more if it is running */
+		int getUsage() {
+			return 2 * iSolvers.size() + getRunning();
+		}
+		
+		SolverServerLoad getLoad() {
+			return new SolverServerLoad(iHost, true, getUsage(), 1024l * 1024l * (iHeap - getUsedMemory()), 1024l * 1024l * iHeap, 1024l * 1024l * iMemoryLimit, iProcessors, getRunning());
+		}
+		
+		void step(int time, List<Solver> finished) {
+			int running = getRunning();
+			double share = (running <= iProcessors ? 1.0 : ((double)iProcessors) / running);
+			for (Iterator<Solver> i = iSolvers.iterator(); i.hasNext(); ) {
+				Solver solver = i.next();
+				if (solver.isWorking()) {
+					solver.iDone += share;
+					if (solver.iDone >= solver.iWork) {
+						solver.iFinished = time + 1;
+						finished.add(solver);
+					}
+				} else if (time >= solver.iFinished + solver.iIdle) {
+					i.remove();
+				}
+			}
+		}
+	}
+	
+	private static abstract class Strategy {
+		int iCalls = 0;
+		abstract String getName();
+		void heartbeat(List<Server> cluster) {}
+		abstract Server select(List<Server> cluster);
+	}
+	
+	/**
+	 * Placement using {@link SolverServerLoadMonitor#selectServer(List, Map, Map)} on the load collected on the last heartbeat
+	 * (one cluster call, one response from each server), all the servers are asked when no server seems to have enough memory
+	 */
+	private static class LoadAware extends Strategy {
+		boolean iCountPending;
+		Map<Server, SolverServerLoad> iLoads = new HashMap<Server, SolverServerLoad>();
+		Map<Server, Integer> iPending = new HashMap<Server, Integer>();
+		
+		LoadAware(boolean countPending) { iCountPending = countPending; }
+		
+		@Override
+		String getName() { return iCountPending ? "load-aware" : "no-pending"; }
+		
+		@Override
+		void heartbeat(List<Server> cluster) {
+			iCalls += cluster.size();
+			iLoads.clear();
+			for (Server server: cluster)
+				iLoads.put(server, server.getLoad());
+			iPending.clear();
+		}
+		
+		@Override
+		Server select(List<Server> cluster) {
+			Server best = SolverServerLoadMonitor.selectServer(cluster, iLoads, iCountPending ? iPending : new HashMap<Server, Integer>());
+			if (best != null) return best;
+			// no server seems to have enough memory: ask all the servers (see SolverContainerWrapper.createSolver)
+			for (Server server: cluster) {
+				iCalls += 2;
+				if (server.iHeap - server.getUsedMemory() < server.iMemoryLimit) continue;
+				if (best == null || server.getUsage() < best.getUsage()) best = server;
+			}
+			return best;
+		}
+	}
+	
+	/**
+	 * Original placement: each server is asked whether it is available and for its usage, the lowest usage wins
+	 */
+	private static class AskAll extends Strategy {
+		@Override
+		String getName() { return "ask-all"; }
+		
+		@Override
+		Server select(List<Server> cluster) {
+			Server best = null;
+			for (Server server: cluster) {
+				iCalls += 2;
+				if (server.iHeap - server.getUsedMemory() < server.iMemoryLimit) continue;
+				if (best == null || server.getUsage() < best.getUsage()) best = server;
+			}
+			return best;
+		}
+	}
+	
+	private static class RoundRobin extends Strategy {
+		int iNext = 0;
+		
+		@Override
+		String getName() { return "round-robin"; }
+		
+		@Override
+		Server select(List<Server> cluster) {
+			return cluster.get((iNext++) % cluster.size());
+		}
+	}
+	
+	private static class RandomPlacement extends Strategy {
+		Random iRandom;
+		
+		RandomPlacement(long seed) { iRandom = new Random(seed); }
+		
+		@Override
+		String getName() { return "random"; }
+		
+		@Override
+		Server select(List<Server> cluster) {
+			return cluster.get(iRandom.nextInt(cluster.size()));
+		}
+	}
+}
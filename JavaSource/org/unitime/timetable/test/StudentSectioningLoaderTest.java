@@ -0,0 +1,260 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.StudentSectioningModel;
+import org.cpsolver.studentsct.model.AreaClassificationMajor;
+import org.cpsolver.studentsct.model.Choice;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.model.StudentGroup;
+import org.cpsolver.studentsct.model.Subpart;
+import org.cpsolver.studentsct.reservation.Reservation;
+import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.model.Advisor;
+import org.unitime.timetable.model.AdvisorCourseRequest;
+import org.unitime.timetable.model.CourseDemand;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.StudentAccomodation;
+import org.unitime.timetable.model.StudentAreaClassificationMajor;
+import org.unitime.timetable.model.StudentAreaClassificationMinor;
+import org.unitime.timetable.model.StudentClassEnrollment;
+import org.unitime.timetable.model.WaitList;
+import org.unitime.timetable.solver.studentsct.StudentSectioningDatabaseLoader;
+
+/**
+ * Checks the student loading of the {@link StudentSectioningDatabaseLoader}.<br>
+ * Without arguments, only a student with no course demands and no enrollments is loaded using
+ * {@link StudentSectioningDatabaseLoader#loadStudent(org.hibernate.Session, org.unitime.timetable.model.Student, Hashtable, Hashtable)}:
+ * an empty student must be returned (no database is needed).<br>
+ * With an academic session id, the session is loaded twice: with Load.NrThreads=1 (each student is read from its entity in the main
+ * Hibernate session, as before the prefetching) and with Load.NrThreads set to the threads system property (4 by default, the students
+ * are read into holders by the prefetch workers). The two models are then compared student by student (requests, choices, initial
+ * assignments, priorities, groups, areas) and section by section (limits of the courses, sections, configurations, and reservations).
+ * Example usage:
+ * 		java \
+ * 			-Dtmtbl.custom.properties=${TOMCAT_HOME}/custom.properties \
+ * 			-cp "${TOMCAT_HOME}/webapps/UniTime/WEB-INF/lib/*:${TOMCAT_HOME}/webapps/UniTime/WEB-INF/classes:${TOMCAT_HOME}/webapps/UniTime/WEB-INF" \
+ * 			org.unitime.timetable.test.StudentSectioningLoaderTest 239259
+ * 
+ * @author Tomas Muller
+ */
+public class StudentSectioningLoaderTest {
+	private static int sFailed = 0;
+	
+	private static void check(boolean ok, String message) {
+		if (!ok) sFailed ++;
+		System.out.println((ok ? "OK   " : "FAIL ") + message);
+	}
+	
+	private static DataProperties getConfig(Long sessionId, int nrThreads) {
+		DataProperties config = new DataProperties();
+		if (sessionId != null)
+			config.setProperty("General.SessionId", sessionId.toString());
+		config.setProperty("Load.NrThreads", String.valueOf(nrThreads));
+		return config;
+	}
+	
+	/**
+	 * A student with no course demands and no enrollments must be loaded as an empty student
+	 */
+	private static void emptyStudent() {
+		StudentSectioningModel model = new StudentSectioningModel(getConfig(null, 1));
+		Assignment<Request, Enrollment> assignment = new DefaultSingleAssignment<Request, Enrollment>();
+		StudentSectioningDatabaseLoader loader = new StudentSectioningDatabaseLoader(null, model, assignment);
+		org.unitime.timetable.model.Student s = new org.unitime.timetable.model.Student();
+		s.setUniqueId(1l);
+		s.setExternalUniqueId("1");
+		s.setFirstName("Empty"); s.setLastName("Student");
+		s.setSession(new Session());
+		s.setAreaClasfMajors(new HashSet<StudentAreaClassificationMajor>());
+		s.setAreaClasfMinors(new HashSet<StudentAreaClassificationMinor>());
+		s.setAccomodations(new HashSet<StudentAccomodation>());
+		s.setGroups(new HashSet<org.unitime.timetable.model.StudentGroup>());
+		s.setWaitlists(new HashSet<WaitList>());
+		s.setCourseDemands(new HashSet<CourseDemand>());
+		s.setClassEnrollments(new HashSet<StudentClassEnrollment>());
+		s.setAdvisors(new HashSet<Advisor>());
+		s.setAdvisorCourseRequests(new HashSet<AdvisorCourseRequest>());
+		Student student = null;
+		Exception error = null;
+		try {
+			student = loader.loadStudent(null, s, new Hashtable<Long, Course>(), new Hashtable<Long, Section>());
+		} catch (Exception e) {
+			error = e;
+		}
+		check(error == null, "empty student is loaded" + (error == null ? "" : " (" + error + ")"));
+		check(student != null && student.getId() == 1l && student.getRequests().isEmpty(), "empty student has no requests");
+	}
+	
+	private static StudentSectioningModel load(Long sessionId, int nrThreads, Assignment<Request, Enrollment> assignment) {
+		StudentSectioningModel model = new StudentSectioningModel(getConfig(sessionId, nrThreads));
+		long t0 = System.currentTimeMillis();
+		new StudentSectioningDatabaseLoader(null, model, assignment).load();
+		System.out.println("Load.NrThreads=" + nrThreads + ": " + model.getStudents().size() + " students loaded in " + (System.currentTimeMillis() - t0) + " ms");
+		return model;
+	}
+	
+	private static String toString(Request request, Assignment<Request, Enrollment> assignment) {
+		StringBuffer ret = new StringBuffer(request.getClass().getSimpleName() + " " + request.getPriority() + (request.isAlternative() ? " alt" : "") + " w" + request.getWeight());
+		if (request instanceof CourseRequest) {
+			CourseRequest cr = (CourseRequest)request;
+			ret.append(cr.isWaitlist() ? " wl" : "");
+			ret.append(" " + cr.getRequestPriority());
+			for (Course course: cr.getCourses())
+				ret.append(" " + course.getId());
+			ret.append(" sel" + toString(cr.getSelectedChoices()));
+			ret.append(" req" + toString(cr.getRequiredChoices()));
+		} else {
+			ret.append(" " + request.getName());
+		}
+		Enrollment initial = request.getInitialAssignment();
+		if (initial != null) {
+			List<Long> sections = new ArrayList<Long>();
+			for (Section section: initial.getSections())
+				sections.add(section.getId());
+			Collections.sort(sections);
+			ret.append(" initial " + (initial.getCourse() == null ? null : initial.getCourse().getId()) + sections);
+		}
+		Enrollment current = assignment.getValue(request);
+		if (current != null)
+			ret.append(" assigned");
+		return ret.toString();
+	}
+	
+	private static String toString(Set<Choice> choices) {
+		List<String> ids = new ArrayList<String>();
+		for (Choice choice: choices)
+			ids.add(choice.getId());
+		Collections.sort(ids);
+		return ids.toString();
+	}
+	
+	private static String toString(Student student, Assignment<Request, Enrollment> assignment) {
+		StringBuffer ret = new StringBuffer(student.getExternalId() + " " + student.getName() + " " + student.getStatus() + " " + student.getPriority() +
+				(student.isDummy() ? " dummy" : "") + " credit " + student.getMinCredit() + "-" + student.getMaxCredit());
+		List<String> areas = new ArrayList<String>();
+		for (AreaClassificationMajor acm: student.getAreaClassificationMajors())
+			areas.add(acm.toString());
+		Collections.sort(areas);
+		ret.append(" areas" + areas);
+		List<String> groups = new ArrayList<String>();
+		for (StudentGroup group: student.getGroups())
+			groups.add(group.getReference());
+		Collections.sort(groups);
+		ret.append(" groups" + groups);
+		List<String> accommodations = new ArrayList<String>(student.getAccommodations());
+		Collections.sort(accommodations);
+		ret.append(" accommodations" + accommodations);
+		ret.append(" unavailabilities " + student.getUnavailabilities().size());
+		for (Request request: student.getRequests())
+			ret.append("\n    " + toString(request, assignment));
+		return ret.toString();
+	}
+	
+	private static Map<String, String> getLimits(StudentSectioningModel model) {
+		Map<String, String> limits = new TreeMap<String, String>();
+		for (Offering offering: model.getOfferings()) {
+			for (Course course: offering.getCourses())
+				limits.put("Course " + course.getName() + " (" + course.getId() + ")", String.valueOf(course.getLimit()));
+			for (Config config: offering.getConfigs()) {
+				limits.put("Config " + config.getName() + " (" + config.getId() + ")", String.valueOf(config.getLimit()));
+				for (Subpart subpart: config.getSubparts())
+					for (Section section: subpart.getSections())
+						limits.put("Section " + section.getName() + " (" + section.getId() + ")", String.valueOf(section.getLimit()));
+			}
+			for (Reservation reservation: offering.getReservations())
+				limits.put("Reservation " + reservation.getClass().getSimpleName() + " (" + reservation.getId() + ")", String.valueOf(reservation.getReservationLimit()));
+		}
+		return limits;
+	}
+	
+	private static Map<Long, String> getStudents(StudentSectioningModel model, Assignment<Request, Enrollment> assignment) {
+		Map<Long, String> students = new TreeMap<Long, String>();
+		for (Student student: model.getStudents())
+			students.put(student.getId(), toString(student, assignment));
+		return students;
+	}
+	
+	private static <K> int compare(String what, Map<K, String> serial, Map<K, String> parallel) {
+		Set<K> keys = new HashSet<K>(serial.keySet()); keys.addAll(parallel.keySet());
+		int differences = 0;
+		for (K key: keys) {
+			String s = serial.get(key), p = parallel.get(key);
+			if (s == null ? p == null : s.equals(p)) continue;
+			if (differences ++ < 10)
+				System.out.println(what + " " + key + " differs:\n  serial:   " + s + "\n  parallel: " + p);
+		}
+		return differences;
+	}
+	
+	private static void compareModels(Long sessionId, int nrThreads) {
+		Assignment<Request, Enrollment> serialAssignment = new DefaultSingleAssignment<Request, Enrollment>();
+		StudentSectioningModel serial = load(sessionId, 1, serialAssignment);
+		Assignment<Request, Enrollment> parallelAssignment = new DefaultSingleAssignment<Request, Enrollment>();
+		StudentSectioningModel parallel = load(sessionId, nrThreads, parallelAssignment);
+		
+		check(serial.getStudents().size() == parallel.getStudents().size(), "same number of students (" + serial.getStudents().size() + " serial, " + parallel.getStudents().size() + " parallel)");
+		int students = compare("Student", getStudents(serial, serialAssignment), getStudents(parallel, parallelAssignment));
+		check(students == 0, "students are the same (" + students + " differences)");
+		int limits = compare("Limit of", getLimits(serial), getLimits(parallel));
+		check(limits == 0, "limits are the same (" + limits + " differences)");
+		check(serialAssignment.nrAssignedVariables() == parallelAssignment.nrAssignedVariables(), "same number of assigned requests (" +
+				serialAssignment.nrAssignedVariables() + " serial, " + parallelAssignment.nrAssignedVariables() + " parallel)");
+	}
+	
+	public static void main(String[] args) throws Exception {
+		ToolBox.configureLogging();
+		
+		emptyStudent();
+		
+		if (args.length > 0) {
+			HibernateUtil.configureHibernate(ApplicationProperties.getProperties());
+			try {
+				compareModels(Long.valueOf(args[0]), Integer.getInteger("threads", 4));
+			} finally {
+				HibernateUtil.closeHibernate();
+			}
+		}
+		
+		System.out.println(sFailed == 0 ? "All checks passed." : sFailed + " checks failed.");
+		System.exit(sFailed == 0 ? 0 : 1);
+	}
+}
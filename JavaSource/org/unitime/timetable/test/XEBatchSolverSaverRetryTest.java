@@ -0,0 +1,121 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+
+import org.restlet.Client;
+import org.restlet.Context;
+import org.restlet.data.MediaType;
+import org.restlet.data.Protocol;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
+import org.unitime.timetable.gwt.shared.SectioningException;
+import org.unitime.timetable.onlinesectioning.custom.purdue.XEBatchSolverSaver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks which failed XE requests are retried by {@link XEBatchSolverSaver}, using a local stub HTTP server
+ * that responds with the given status and body. Server errors and too many requests must be retried
+ * (also when the response contains a JSON error message), client errors must not.
+ * 
+ * @author Tomas Muller
+ */
+public class XEBatchSolverSaverRetryTest {
+	private static final String sErrorResponse = "{\"errors\":[{\"code\":\"ERR\",\"message\":\"Stub error message.\"}]}";
+	
+	private static HttpHandler respond(final int code, final String contentType, final String body) {
+		return new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] data = (body == null ? new byte[0] : body.getBytes("UTF-8"));
+				if (contentType != null)
+					exchange.getResponseHeaders().set("Content-Type", contentType);
+				exchange.sendResponseHeaders(code, data.length == 0 ? -1 : data.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(data);
+				out.close();
+			}
+		};
+	}
+	
+	private static int sFailed = 0;
+	
+	private static void check(Client client, String url, boolean retry, String message) {
+		ClientResource resource = null;
+		try {
+			resource = new ClientResource(url);
+			resource.setNext(client);
+			resource.get(MediaType.APPLICATION_JSON);
+			System.out.println("FAIL " + url + ": no error");
+			sFailed ++;
+		} catch (ResourceException exception) {
+			SectioningException e = XEBatchSolverSaver.toSectioningException(resource, exception);
+			boolean retriable = XEBatchSolverSaver.isRetriable(e);
+			boolean ok = (retriable == retry) && (message == null || message.equals(e.getMessage()));
+			if (!ok) sFailed ++;
+			System.out.println((ok ? "OK   " : "FAIL ") + url + ": " + exception.getStatus().getCode() + " " + (retriable ? "retried" : "not retried") + ", message: " + e.getMessage());
+		} finally {
+			if (resource != null) resource.release();
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/503-json", respond(503, "application/json", sErrorResponse));
+		server.createContext("/500-json", respond(500, "application/json", sErrorResponse));
+		server.createContext("/429-json", respond(429, "application/json", sErrorResponse));
+		server.createContext("/502-html", respond(502, "text/html", "<html><body>Bad Gateway</body></html>"));
+		server.createContext("/500-empty", respond(500, null, null));
+		server.createContext("/400-json", respond(400, "application/json", sErrorResponse));
+		server.createContext("/404-json", respond(404, "application/json", sErrorResponse));
+		server.start();
+		
+		// a port that is not listening, for connection refused
+		ServerSocket socket = new ServerSocket(0);
+		int closedPort = socket.getLocalPort();
+		socket.close();
+		
+		Client client = new Client(new Context(), Protocol.HTTP);
+		try {
+			String base = "http://localhost:" + server.getAddress().getPort();
+			check(client, base + "/503-json", true, "Stub error message.");
+			check(client, base + "/500-json", true, "Stub error message.");
+			check(client, base + "/429-json", true, "Stub error message.");
+			check(client, base + "/502-html", true, null);
+			check(client, base + "/500-empty", true, null);
+			check(client, base + "/400-json", false, "Stub error message.");
+			check(client, base + "/404-json", false, "Stub error message.");
+			check(client, "http://localhost:" + closedPort + "/refused", true, null);
+		} finally {
+			client.stop();
+			server.stop(0);
+		}
+		
+		System.out.println(sFailed == 0 ? "All checks passed." : sFailed + " checks failed.");
+		System.exit(sFailed == 0 ? 0 : 1);
+	}
+}
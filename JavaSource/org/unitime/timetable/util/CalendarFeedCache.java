@@ -0,0 +1,183 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventResourceResolver;
+
+/**
+ * Cache of rendered iCalendar feeds, keyed by the feed parameters (resource and filter).<br>
+ * Each feed records the students, instructors, classes, courses, exams, and events it was rendered from (see {@link EventResourceResolver.Dependencies}).
+ * A cached feed is dropped when one of these changes, or when it gets older than {@link ApplicationProperty#CalendarFeedCacheTTL}.
+ * A feed during the rendering of which any event related entity has been changed (see {@link EventResourceResolver#hasChanged(long[])})
+ * is not reused, as some of its dependencies may have been recorded after they were changed. Each feed has an ETag (computed from its content,
+ * ignoring the time stamps) and a last modification time that is only updated when the content actually changes,
+ * so that calendar clients can use conditional requests (If-None-Match, If-Modified-Since).
+ *
+ * @author Tomas Muller
+ */
+public class CalendarFeedCache {
+	private static Map<String, Feed> sFeeds = new LinkedHashMap<String, Feed>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Feed> eldest) {
+			return size() > ApplicationProperty.CalendarFeedCacheSize.intValue();
+		}
+	};
+	private static AtomicLong sHits = new AtomicLong(0), sMisses = new AtomicLong(0), sNotModified = new AtomicLong(0);
+
+	/**
+	 * Return cached feed, null if not cached or no longer valid
+	 */
+	public static Feed get(String key) {
+		if (ApplicationProperty.CalendarFeedCacheSize.intValue() <= 0) return null;
+		synchronized (sFeeds) {
+			Feed feed = sFeeds.get(key);
+			if (feed != null && feed.isValid()) {
+				sHits.incrementAndGet();
+				return feed;
+			}
+		}
+		sMisses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Take a snapshot of the change counter, to be passed to {@link #put(String, String, EventResourceResolver.Dependencies, long[])} once the feed is rendered
+	 */
+	public static long[] getGenerations() {
+		return EventResourceResolver.getGenerations();
+	}
+
+	/**
+	 * Store a rendered feed. The last modification time of the previously cached feed is kept when the content has not changed.
+	 * @param dependencies objects the feed has been rendered from
+	 * @param generations change counter taken before the feed was rendered
+	 */
+	public static Feed put(String key, String content, EventResourceResolver.Dependencies dependencies, long[] generations) {
+		Feed feed = new Feed(content, dependencies, !EventResourceResolver.hasChanged(generations));
+		if (ApplicationProperty.CalendarFeedCacheSize.intValue() <= 0) return feed;
+		synchronized (sFeeds) {
+			Feed previous = sFeeds.get(key);
+			if (previous != null && previous.getETag().equals(feed.getETag()))
+				feed.iLastModified = previous.getLastModified();
+			// a feed rendered during a change is stored too (to keep the last modification), but it is not valid
+			sFeeds.put(key, feed);
+		}
+		return feed;
+	}
+
+	/**
+	 * ETag of the given iCalendar content, the DTSTAMP properties (time of rendering) are ignored
+	 */
+	public static String getETag(String content) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			for (String line: content.split("\r?\n")) {
+				if (line.startsWith("DTSTAMP")) continue;
+				md.update(line.getBytes(StandardCharsets.UTF_8));
+				md.update((byte)'\n');
+			}
+			StringBuffer etag = new StringBuffer("\"");
+			for (byte b: md.digest())
+				etag.append(String.format("%02x", b));
+			etag.append("\"");
+			return etag.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return "\"" + Integer.toHexString(content.hashCode()) + "\"";
+		}
+	}
+
+	/**
+	 * Check the If-None-Match and If-Modified-Since headers of the request. When the client has the current version,
+	 * the response status is set to 304 (not modified) and true is returned.
+	 */
+	public static boolean isNotModified(HttpServletRequest request, HttpServletResponse response, String etag, Long lastModified) {
+		response.setHeader("ETag", etag);
+		if (lastModified != null)
+			response.setDateHeader("Last-Modified", lastModified);
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		boolean notModified = false;
+		if (ifNoneMatch != null) {
+			for (String tag: ifNoneMatch.split(","))
+				if (tag.trim().equals(etag) || tag.trim().equals("*") || tag.trim().equals("W/" + etag)) { notModified = true; break; }
+		} else if (lastModified != null) {
+			try {
+				long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+				if (ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000) notModified = true;
+			} catch (IllegalArgumentException e) {}
+		}
+		if (notModified) {
+			sNotModified.incrementAndGet();
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		}
+		return notModified;
+	}
+
+	public static long getHits() { return sHits.get(); }
+
+	public static long getMisses() { return sMisses.get(); }
+
+	public static long getNotModified() { return sNotModified.get(); }
+
+	public static void clear() {
+		synchronized (sFeeds) {
+			sFeeds.clear();
+		}
+	}
+
+	public static class Feed {
+		private String iContent;
+		private String iETag;
+		private long iLastModified;
+		private long iCreated;
+		private EventResourceResolver.Dependencies iDependencies;
+		private boolean iComplete;
+
+		protected Feed(String content, EventResourceResolver.Dependencies dependencies, boolean complete) {
+			iContent = content;
+			iETag = CalendarFeedCache.getETag(content);
+			iCreated = System.currentTimeMillis();
+			iLastModified = iCreated;
+			iDependencies = dependencies;
+			iComplete = complete;
+		}
+
+		public String getContent() { return iContent; }
+		public String getETag() { return iETag; }
+		public long getLastModified() { return iLastModified; }
+
+		protected boolean isValid() {
+			int ttl = ApplicationProperty.CalendarFeedCacheTTL.intValue();
+			if (ttl > 0 && System.currentTimeMillis() - iCreated > 1000l * ttl) return false;
+			return iComplete && iDependencies.isValid();
+		}
+	}
+}
@@ -19,17 +19,51 @@
 */
 package org.unitime.timetable.util;
 
+import java.lang.management.ManagementFactory;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
-import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.interfaces.RoomAvailabilityInterface;
 import org.unitime.timetable.model.ClassEvent;
@@ -43,14 +77,28 @@ import org.unitime.timetable.model.Location;
 import org.unitime.timetable.model.Meeting;
 import org.unitime.timetable.model.MidtermExamEvent;
 import org.unitime.timetable.model.dao.DepartmentalInstructorDAO;
+import org.unitime.timetable.model.dao.EventDAO;
 import org.unitime.timetable.model.dao.LocationDAO;
 
 /**
+ * Room availability based on the events of the UniTime event management.<br>
+ * Activated time frames are cached: for each time frame, the meetings are indexed by room (permanent id) and by instructor
+ * (external id) in an immutable interval index ({@link TimeBlockIndex}) that is replaced as a whole when changed, so that
+ * the readers do not need to synchronize. Changes of meetings and events are applied incrementally: Hibernate listeners
+ * (see {@link #register(SessionFactory)}) collect the changed events once their transaction is committed, and the cached time frames
+ * are updated before the next lookup or activation (see {@link #eventUpdated(Long)}). Cache hits, misses and reload times are published through JMX.
+ * 
  * @author Tomas Muller
  */
-public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface {
-    private Vector<CacheElement> iCache = new Vector<CacheElement>();
+public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface, DefaultRoomAvailabilityServiceMBean {
+	private static Log sLog = LogFactory.getLog(DefaultRoomAvailabilityService.class);
+    private List<CacheElement> iCache = new CopyOnWriteArrayList<CacheElement>();
     private boolean iInstructorAvailabilityEnabled = false;
+    private ObjectName iObjectName = null;
+    private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0), iMissTime = new AtomicLong(0);
+    private AtomicLong iRefreshes = new AtomicLong(0), iRefreshTime = new AtomicLong(0), iSkippedRefreshes = new AtomicLong(0);
+    private AtomicLong iIncrementalUpdates = new AtomicLong(0), iIncrementalUpdateTime = new AtomicLong(0);
+    private Set<Long> iChangedEvents = new LinkedHashSet<Long>();
     
     public String getTimeStamp(Date startTime, Date endTime, String excludeType) {
         TimeFrame time = new TimeFrame(startTime, endTime);
@@ -59,110 +107,299 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
     }
     
     public CacheElement get(TimeFrame time, String excludeType) {
-        synchronized (iCache) {
-            for (CacheElement cache : iCache) if (cache.cover(time) && cache.exclude(excludeType)) return cache;
-        }
+    	for (CacheElement cache : iCache) if (cache.cover(time) && cache.exclude(excludeType)) return cache;
         return null;
     }
     
-    
     public Collection<TimeBlock> getRoomAvailability(Long locationId, Date startTime, Date endTime, String excludeType) {
+    	updateChangedEvents();
     	Location location = LocationDAO.getInstance().get(locationId);
         if (location == null || location.getPermanentId() == null) return null;
-        EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(location.getSession().getUniqueId()) : null);
         TimeFrame time = new TimeFrame(startTime, endTime);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
-            if (cache!=null) return cache.get(location.getPermanentId(), excludeType);
-            TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
-            Class<? extends Event> exclude = null;
-            ExamType examType = null;
-            if (excludeType!=null) {
-                if (sFinalExamType.equals(excludeType))
-                    exclude = FinalExamEvent.class;
-                else if (sMidtermExamType.equals(excludeType))
-                    exclude = MidtermExamEvent.class;
-                else if (sClassType.equals(excludeType))
-                    exclude = ClassEvent.class;
-                else {
-                	exclude = ExamEvent.class;
-                	examType = ExamType.findByReference(excludeType);
-                }
-            }
-            for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                    "select m from Meeting m where m.locationPermanentId=:locPermId and "+
-                    "m.approvalStatus = 1 and "+
-                    "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                    "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                    (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
-                    exclude != null ? " and m.event.class!=" + exclude.getSimpleName() : ""))
-                    .setLong("locPermId", location.getPermanentId())
-                    .setDate("startDate", time.getStartDate())
-                    .setDate("endDate", time.getEndDate())
-                    .setInteger("startSlot", time.getStartSlot())
-                    .setInteger("endSlot", time.getEndSlot())
-                    .setCacheable(true).list()) {
-                MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                if (block.getStartTime() != null)
-                	ret.add(block);
-            }
-            if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
-            	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                            "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
-                            "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
-                            .setLong("locPermId", location.getPermanentId())
-                            .setLong("sessionId", location.getSession().getUniqueId())
-                            .setDate("startDate", time.getStartDate())
-                            .setDate("endDate", time.getEndDate())
-                            .setInteger("startSlot", time.getStartSlot())
-                            .setInteger("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                            "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
-                            "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                            (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""))
-                            .setLong("locPermId", location.getPermanentId())
-                            .setLong("sessionId", location.getSession().getUniqueId())
-                            .setDate("startDate", time.getStartDate())
-                            .setDate("endDate", time.getEndDate())
-                            .setInteger("startSlot", time.getStartSlot())
-                            .setInteger("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	}
+        CacheElement cache = get(time, excludeType);
+        if (cache!=null) {
+        	iHits.incrementAndGet();
+        	return cache.get(location.getPermanentId(), excludeType, startTime, endTime);
+        }
+        long t0 = System.currentTimeMillis();
+        try {
+        	return loadRoomAvailability(location, time, excludeType);
+        } finally {
+        	iMisses.incrementAndGet();
+        	iMissTime.addAndGet(System.currentTimeMillis() - t0);
+        }
+    }
+    
+    protected Collection<TimeBlock> loadRoomAvailability(Location location, TimeFrame time, String excludeType) {
+        EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(location.getSession().getUniqueId()) : null);
+        TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+        Class<? extends Event> exclude = null;
+        ExamType examType = null;
+        if (excludeType!=null) {
+            if (sFinalExamType.equals(excludeType))
+                exclude = FinalExamEvent.class;
+            else if (sMidtermExamType.equals(excludeType))
+                exclude = MidtermExamEvent.class;
+            else if (sClassType.equals(excludeType))
+                exclude = ClassEvent.class;
+            else {
+            	exclude = ExamEvent.class;
+            	examType = ExamType.findByReference(excludeType);
             }
-            return ret;
         }
+        for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                "select m from Meeting m where m.locationPermanentId=:locPermId and "+
+                "m.approvalStatus = 1 and "+
+                "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
+                exclude != null ? " and m.event.class!=" + exclude.getSimpleName() : ""))
+                .setLong("locPermId", location.getPermanentId())
+                .setDate("startDate", time.getStartDate())
+                .setDate("endDate", time.getEndDate())
+                .setInteger("startSlot", time.getStartSlot())
+                .setInteger("endSlot", time.getEndSlot())
+                .setCacheable(true).list()) {
+            MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+            if (block.getStartTime() != null)
+            	ret.add(block);
+        }
+        if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
+        	if (ClassEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                        "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
+                        "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
+                        .setLong("locPermId", location.getPermanentId())
+                        .setLong("sessionId", location.getSession().getUniqueId())
+                        .setDate("startDate", time.getStartDate())
+                        .setDate("endDate", time.getEndDate())
+                        .setInteger("startSlot", time.getStartSlot())
+                        .setInteger("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
+                }
+        	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                        "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId=:locPermId and "+
+                        "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                        (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""))
+                        .setLong("locPermId", location.getPermanentId())
+                        .setLong("sessionId", location.getSession().getUniqueId())
+                        .setDate("startDate", time.getStartDate())
+                        .setDate("endDate", time.getEndDate())
+                        .setInteger("startSlot", time.getStartSlot())
+                        .setInteger("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
+                }
+        	}
+        }
+        return ret;
     }
+    
     public void activate(Long sessionId, Date startTime, Date endTime, String excludeType, boolean waitForSync) {
         iInstructorAvailabilityEnabled = ApplicationProperty.RoomAvailabilityIncludeInstructors.isTrue();
+        updateChangedEvents();
         TimeFrame time = new TimeFrame(startTime, endTime);
-        EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(sessionId) : null);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
+        CacheElement cache = null;
+        synchronized (iCache) {
+        	cache = get(time, excludeType);
             if (cache==null) {
                 cache = new CacheElement(time, excludeType);
-                iCache.insertElementAt(cache, 0);
+                iCache.add(0, cache);
             }
-            cache.update(class2eventDateMap, sessionId, iInstructorAvailabilityEnabled);
         }
+        int refreshInterval = ApplicationProperty.RoomAvailabilityRefreshInterval.intValue();
+        if (refreshInterval > 0 && cache.isUpToDate(sessionId, iInstructorAvailabilityEnabled, 1000l * refreshInterval)) {
+        	iSkippedRefreshes.incrementAndGet();
+        	return;
+        }
+        EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(sessionId) : null);
+        long t0 = System.currentTimeMillis();
+        cache.update(class2eventDateMap, sessionId, iInstructorAvailabilityEnabled);
+        iRefreshes.incrementAndGet();
+        iRefreshTime.addAndGet(System.currentTimeMillis() - t0);
+    }
+    
+    /**
+     * Mark the given event as changed, all the cached time frames are updated with the current meetings of the event before the next lookup
+     * or activation. To be called after an event has been created, changed, approved, or deleted and the change has been committed.
+     * This is done automatically for changes saved through Hibernate (see {@link #register(SessionFactory)}).
+     */
+    public void eventUpdated(Long eventId) {
+    	if (eventId == null) return;
+    	synchronized (iChangedEvents) {
+    		if (!iCache.isEmpty()) iChangedEvents.add(eventId);
+    	}
+    }
+    
+    /**
+     * Update the cached time frames with the current meetings of the changed events (see {@link #eventUpdated(Long)}).
+     * The changes are applied one at a time, in the order in which they have been committed.
+     */
+    protected void updateChangedEvents() {
+    	synchronized (iChangedEvents) {
+    		if (iChangedEvents.isEmpty()) return;
+    		for (Iterator<Long> i = iChangedEvents.iterator(); i.hasNext(); ) {
+    			Long eventId = i.next(); i.remove();
+    			long t0 = System.currentTimeMillis();
+    	    	for (CacheElement cache: iCache) {
+    	    		try {
+    	    			cache.updateEvent(eventId);
+    	    		} catch (Exception e) {
+    	    			sLog.warn("Failed to update room availability of event " + eventId + ": " + e.getMessage(), e);
+    	    			cache.invalidate();
+    	    		}
+    	    	}
+    	    	iIncrementalUpdates.incrementAndGet();
+    	    	iIncrementalUpdateTime.addAndGet(System.currentTimeMillis() - t0);
+    		}
+    	}
+    }
+    
+    /**
+     * Register hibernate listeners that mark an event as changed (see {@link RoomAvailability#eventUpdated(Long...)}) when the event,
+     * its meetings, or its contacts are inserted, updated, or deleted. The event is marked once the transaction is committed.
+     * Bulk HQL updates and deletes do not fire these listeners, code using them needs to call {@link RoomAvailability#eventUpdated(Long...)}
+     * or {@link RoomAvailability#clearCache()} instead.
+     */
+    public static void register(SessionFactory sessionFactory) {
+		EventListenerRegistry registry = ((SessionFactoryImplementor)sessionFactory).getServiceRegistry().getService(EventListenerRegistry.class);
+		ChangeListener listener = new ChangeListener();
+		registry.appendListeners(EventType.POST_INSERT, listener);
+		registry.appendListeners(EventType.POST_UPDATE, listener);
+		registry.appendListeners(EventType.POST_DELETE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+		registry.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+    }
+    
+    /**
+     * Mark the event of the given entity (an event or a meeting) as changed once the transaction is committed
+     */
+    protected static void changed(EventSource session, Object entity) {
+    	final Long eventId;
+    	if (entity instanceof Meeting) {
+    		Event event = ((Meeting)entity).getEvent();
+    		eventId = (event == null ? null : event.getUniqueId());
+    	} else if (entity instanceof Event) {
+    		eventId = ((Event)entity).getUniqueId();
+    	} else {
+    		return;
+    	}
+    	if (eventId == null) return;
+		session.getActionQueue().registerProcess(new AfterTransactionCompletionProcess() {
+			@Override
+			public void doAfterTransactionCompletion(boolean success, SessionImplementor session) {
+				if (success) RoomAvailability.eventUpdated(eventId);
+			}
+		});
+    }
+    
+    protected static class ChangeListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+    	PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) { changed(event.getSession(), event.getEntity()); }
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) { changed(event.getSession(), event.getEntity()); }
+
+		@Override
+		public void onPostDelete(PostDeleteEvent event) { changed(event.getSession(), event.getEntity()); }
+
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) { return false; }
+
+		@Override
+		public void onPostRecreateCollection(PostCollectionRecreateEvent event) { changed(event.getSession(), event.getAffectedOwnerOrNull()); }
+
+		@Override
+		public void onPostUpdateCollection(PostCollectionUpdateEvent event) { changed(event.getSession(), event.getAffectedOwnerOrNull()); }
+
+		@Override
+		public void onPostRemoveCollection(PostCollectionRemoveEvent event) { changed(event.getSession(), event.getAffectedOwnerOrNull()); }
+    }
+    
+    public void startService() {
+    	try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("org.unitime:type=RoomAvailability");
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(this, objectName);
+			iObjectName = objectName;
+		} catch (Exception e) {
+			sLog.warn("Failed to register room availability MBean: " + e.getMessage(), e);
+		}
+    }
+    
+    public void stopService() {
+    	if (iObjectName != null) {
+    		try {
+    			ManagementFactory.getPlatformMBeanServer().unregisterMBean(iObjectName);
+    		} catch (Exception e) {}
+    		iObjectName = null;
+    	}
+    }
+    
+    @Override
+    public long getHits() { return iHits.get(); }
+    
+    @Override
+    public long getMisses() { return iMisses.get(); }
+    
+    @Override
+    public long getMissTime() { return iMissTime.get(); }
+    
+    @Override
+    public long getNrRefreshes() { return iRefreshes.get(); }
+    
+    @Override
+    public long getRefreshTime() { return iRefreshTime.get(); }
+    
+    @Override
+    public long getNrSkippedRefreshes() { return iSkippedRefreshes.get(); }
+    
+    @Override
+    public long getNrIncrementalUpdates() { return iIncrementalUpdates.get(); }
+    
+    @Override
+    public long getIncrementalUpdateTime() { return iIncrementalUpdateTime.get(); }
+    
+    @Override
+    public long getEstimatedTimeSaved() {
+    	long misses = iMisses.get(), refreshes = iRefreshes.get();
+    	long saved = 0;
+    	if (misses > 0) saved += iHits.get() * iMissTime.get() / misses;
+    	if (refreshes > 0) saved += iSkippedRefreshes.get() * iRefreshTime.get() / refreshes;
+    	return saved;
+    }
+    
+    @Override
+    public String[] getCachedTimeFrames() {
+    	List<String> ret = new ArrayList<String>();
+    	for (CacheElement cache: iCache)
+    		ret.add(cache.toString() + (cache.getExcludeType() == null ? "" : " (excluding " + cache.getExcludeType() + ")") + ": " + cache.getNrRooms() + " rooms, " + cache.getNrBlocks() + " blocks, updated " + cache.getTimestamp());
+    	return ret.toArray(new String[ret.size()]);
     }
     
-    public void startService() {}
-    public void stopService() {}
+    @Override
+    public void clearCache() {
+    	synchronized (iChangedEvents) {
+    		iCache.clear();
+    		iChangedEvents.clear();
+    	}
+    }
     
     public static class TimeFrame {
         private Date iStart, iEnd;
@@ -201,20 +438,117 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
         }
     }
 
+    /**
+     * Immutable interval index of time blocks: blocks are sorted by their start times and, for each position, the latest end time
+     * of all the blocks up to the position is kept, so that overlapping blocks can be found without checking all the blocks.
+     */
+    public static class TimeBlockIndex {
+    	private static Comparator<TimeBlock> sStartTimeComparator = new Comparator<TimeBlock>() {
+			@Override
+			public int compare(TimeBlock b1, TimeBlock b2) {
+				return b1.getStartTime().compareTo(b2.getStartTime());
+			}
+		};
+    	private TimeBlock[] iBlocks;
+    	private long[] iMaxEnd;
+    	
+    	public TimeBlockIndex(Collection<TimeBlock> blocks) {
+    		iBlocks = blocks.toArray(new TimeBlock[blocks.size()]);
+    		Arrays.sort(iBlocks, sStartTimeComparator);
+    		iMaxEnd = new long[iBlocks.length];
+    		long max = Long.MIN_VALUE;
+    		for (int i = 0; i < iBlocks.length; i++) {
+    			max = Math.max(max, iBlocks[i].getEndTime().getTime());
+    			iMaxEnd[i] = max;
+    		}
+    	}
+    	
+    	public int size() { return iBlocks.length; }
+    	
+    	public List<TimeBlock> getBlocks() { return Arrays.asList(iBlocks); }
+    	
+    	/**
+    	 * Blocks that overlap with the given time interval, all blocks when both start and end are null
+    	 */
+    	public TreeSet<TimeBlock> find(Date start, Date end, String excludeType) {
+    		TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+    		// number of blocks starting before the end
+    		int last = iBlocks.length;
+    		if (end != null) {
+    			int lo = 0, hi = iBlocks.length;
+    			while (lo < hi) {
+    				int mid = (lo + hi) >>> 1;
+    				if (iBlocks[mid].getStartTime().getTime() < end.getTime()) lo = mid + 1; else hi = mid;
+    			}
+    			last = lo;
+    		}
+    		long from = (start == null ? Long.MIN_VALUE : start.getTime());
+    		for (int i = last - 1; i >= 0 && iMaxEnd[i] > from; i--) {
+    			TimeBlock block = iBlocks[i];
+    			if (block.getEndTime().getTime() <= from) continue;
+    			if (excludeType != null && excludeType.equals(block.getEventType())) continue;
+    			ret.add(block);
+    		}
+    		return ret;
+    	}
+    	
+    	/**
+    	 * A new index without the blocks of the given event, null if there are no blocks of the event
+    	 */
+    	public TimeBlockIndex removeEvent(Long eventId) {
+    		List<TimeBlock> blocks = null;
+    		for (int i = 0; i < iBlocks.length; i++) {
+    			if (eventId.equals(iBlocks[i].getEventId())) {
+    				if (blocks == null) {
+    					blocks = new ArrayList<TimeBlock>(iBlocks.length);
+    					for (int j = 0; j < i; j++) blocks.add(iBlocks[j]);
+    				}
+    			} else if (blocks != null) {
+    				blocks.add(iBlocks[i]);
+    			}
+    		}
+    		return (blocks == null ? null : new TimeBlockIndex(blocks));
+    	}
+    }
+
     public static class CacheElement{
         private TimeFrame iTime;
-        private Map<Long, TreeSet<TimeBlock>> iAvailability = new HashMap<Long, TreeSet<TimeBlock>>();
-        private Map<String, TreeSet<TimeBlock>> iInstructorAvailability = new HashMap<String, TreeSet<TimeBlock>>();
-        private String iTimestamp = null;
+        private volatile Map<Long, TimeBlockIndex> iAvailability = Collections.emptyMap();
+        private volatile Map<String, TimeBlockIndex> iInstructorAvailability = Collections.emptyMap();
+        private volatile String iTimestamp = null;
+        private volatile long iLastRefresh = 0;
         private String iExcludeType = null;
+        private Long iSessionId = null;
+        private boolean iIncludeInstructors = false;
         public CacheElement(TimeFrame time, String excludeType) {
             iTime = time;
             iExcludeType = excludeType;
         }
+        
+        private static <K> Map<K, TimeBlockIndex> index(Map<K, List<TimeBlock>> blocks) {
+        	Map<K, TimeBlockIndex> ret = new HashMap<K, TimeBlockIndex>();
+        	for (Map.Entry<K, List<TimeBlock>> e: blocks.entrySet())
+        		ret.put(e.getKey(), new TimeBlockIndex(e.getValue()));
+        	return ret;
+        }
+        
+        protected String getExcludeCondition() {
+        	if (iExcludeType == null) return "";
+        	if (sFinalExamType.equals(iExcludeType))
+        		return " and m.event.class!=" + FinalExamEvent.class.getSimpleName();
+        	if (sMidtermExamType.equals(iExcludeType))
+        		return " and m.event.class!=" + MidtermExamEvent.class.getSimpleName();
+        	if (sClassType.equals(iExcludeType))
+        		return " and m.event.class!=" + ClassEvent.class.getSimpleName();
+        	ExamType examType = ExamType.findByReference(iExcludeType);
+        	if (examType != null)
+        		return " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")";
+        	return " and m.event.class!=" + ExamEvent.class.getSimpleName();
+        }
 
-        public void update(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId, boolean includeInstructors) {
-        	iAvailability.clear();
-        	iInstructorAvailability.clear();
+        public synchronized void update(EventDateMapping.Class2EventDateMap class2eventDateMap, Long sessionId, boolean includeInstructors) {
+        	Map<Long, List<TimeBlock>> availability = new HashMap<Long, List<TimeBlock>>();
+        	Map<String, List<TimeBlock>> instructorAvailability = new HashMap<String, List<TimeBlock>>();
             Class<? extends Event> exclude = null;
             ExamType examType = null;
             if (iExcludeType!=null) {
@@ -229,7 +563,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                 	examType = ExamType.findByReference(iExcludeType);
                 }
             }
-            addAll(LocationDAO.getInstance().getSession().createQuery(
+            addAll(availability, LocationDAO.getInstance().getSession().createQuery(
                     "select m from Meeting m where m.locationPermanentId!=null and "+
                     "m.approvalStatus = 1 and "+
                     "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -244,7 +578,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                     .list(), class2eventDateMap);
             if (sessionId != null && ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
             	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		addAll(LocationDAO.getInstance().getSession().createQuery(
+            		addAll(availability, LocationDAO.getInstance().getSession().createQuery(
                             "select m from ClassEvent e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session = :sessionId) and "+
                             "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
                             "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -256,7 +590,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                             .setInteger("endSlot", iTime.getEndSlot())
                             .setCacheable(true).list(), class2eventDateMap);
             	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		addAll(LocationDAO.getInstance().getSession().createQuery(
+            		addAll(availability, LocationDAO.getInstance().getSession().createQuery(
                             "select m from " + exclude.getSimpleName() + " e inner join e.meetings m where m.locationPermanentId in (select l.permanentId from Location l where l.session = :sessionId) and "+
                             "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
                             "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -271,7 +605,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
             	}
             }
             if (sessionId != null && includeInstructors) {
-            	addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+            	addAllInstructors(instructorAvailability, LocationDAO.getInstance().getSession().createQuery(
             			"select distinct m, i.externalUniqueId from Meeting m left outer join m.event.additionalContacts c, DepartmentalInstructor i where " +
                          "i.department.session.uniqueId = :sessionId and i.externalUniqueId is not null and "+
                          "(m.event.mainContact.externalUniqueId = i.externalUniqueId or c.externalUniqueId = i.externalUniqueId) and "+
@@ -288,7 +622,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                          .setCacheable(true).list(), class2eventDateMap);
             	if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && exclude != null) {
             		if (ClassEvent.class.isAssignableFrom(exclude)) {
-            			addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+            			addAllInstructors(instructorAvailability, LocationDAO.getInstance().getSession().createQuery(
                                 "select m, ci.instructor.externalUniqueId from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
                                 "ci.lead = true and m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
                                 "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -300,7 +634,7 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                                 .setInteger("endSlot", iTime.getEndSlot())
                                 .setCacheable(true).list(), class2eventDateMap);
                 	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-                		addAllInstructors(LocationDAO.getInstance().getSession().createQuery(
+                		addAllInstructors(instructorAvailability, LocationDAO.getInstance().getSession().createQuery(
                                 "select m, di.externalUniqueId from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
                                 "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
                                 "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
@@ -315,61 +649,143 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
                 	}
                 }
             }
+            iAvailability = index(availability);
+            iInstructorAvailability = index(instructorAvailability);
+            iSessionId = sessionId;
+            iIncludeInstructors = includeInstructors;
+            iLastRefresh = System.currentTimeMillis();
             iTimestamp = new Date().toString();
         }
         
-        private void add(Meeting m, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	TreeSet<TimeBlock> blocks = iAvailability.get(m.getLocationPermanentId());
+        /**
+         * Replace the meetings of the given event with their current state
+         */
+        public synchronized void updateEvent(Long eventId) {
+        	if (iLastRefresh == 0) return;
+        	Map<Long, List<TimeBlock>> availability = new HashMap<Long, List<TimeBlock>>();
+        	Map<String, List<TimeBlock>> instructorAvailability = new HashMap<String, List<TimeBlock>>();
+        	EventDateMapping.Class2EventDateMap class2eventDateMap = (iSessionId != null && sClassType.equals(iExcludeType) ? EventDateMapping.getMapping(iSessionId) : null);
+        	Event event = EventDAO.getInstance().get(eventId);
+        	if (event != null && (event instanceof ClassEvent || event instanceof ExamEvent) && ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue()) {
+        		// meetings of other academic sessions are not handled incrementally
+        		invalidate(); return;
+        	}
+        	if (event != null) {
+        		addAll(availability, LocationDAO.getInstance().getSession().createQuery(
+                        "select m from Meeting m where m.event.uniqueId = :eventId and m.locationPermanentId!=null and "+
+                        "m.approvalStatus = 1 and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + getExcludeCondition())
+                        .setLong("eventId", eventId)
+                        .setDate("startDate", iTime.getStartDate())
+                        .setDate("endDate", iTime.getEndDate())
+                        .setInteger("startSlot", iTime.getStartSlot())
+                        .setInteger("endSlot", iTime.getEndSlot())
+                        .list(), class2eventDateMap);
+        		if (iSessionId != null && iIncludeInstructors) {
+        			addAllInstructors(instructorAvailability, LocationDAO.getInstance().getSession().createQuery(
+                			"select distinct m, i.externalUniqueId from Meeting m left outer join m.event.additionalContacts c, DepartmentalInstructor i where " +
+                            "m.event.uniqueId = :eventId and i.department.session.uniqueId = :sessionId and i.externalUniqueId is not null and "+
+                            "(m.event.mainContact.externalUniqueId = i.externalUniqueId or c.externalUniqueId = i.externalUniqueId) and "+
+                            "m.approvalStatus = 1 and "+
+                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + getExcludeCondition())
+                            .setLong("eventId", eventId)
+                            .setDate("startDate", iTime.getStartDate())
+                            .setDate("endDate", iTime.getEndDate())
+                            .setLong("sessionId", iSessionId)
+                            .setInteger("startSlot", iTime.getStartSlot())
+                            .setInteger("endSlot", iTime.getEndSlot())
+                            .list(), class2eventDateMap);
+        		}
+        	}
+        	iAvailability = updateEvent(iAvailability, eventId, availability);
+        	iInstructorAvailability = updateEvent(iInstructorAvailability, eventId, instructorAvailability);
+        }
+        
+        private static <K> Map<K, TimeBlockIndex> updateEvent(Map<K, TimeBlockIndex> current, Long eventId, Map<K, List<TimeBlock>> blocks) {
+        	Map<K, TimeBlockIndex> ret = null;
+        	for (Map.Entry<K, TimeBlockIndex> e: current.entrySet()) {
+        		TimeBlockIndex index = e.getValue().removeEvent(eventId);
+        		if (index == null && !blocks.containsKey(e.getKey())) continue;
+        		if (ret == null) ret = new HashMap<K, TimeBlockIndex>(current);
+        		List<TimeBlock> added = blocks.remove(e.getKey());
+        		if (added != null) {
+        			added.addAll((index == null ? e.getValue() : index).getBlocks());
+        			ret.put(e.getKey(), new TimeBlockIndex(added));
+        		} else if (index.size() == 0) {
+        			ret.remove(e.getKey());
+        		} else {
+        			ret.put(e.getKey(), index);
+        		}
+        	}
+        	if (!blocks.isEmpty()) {
+        		if (ret == null) ret = new HashMap<K, TimeBlockIndex>(current);
+        		ret.putAll(index(blocks));
+        	}
+        	return (ret == null ? current : ret);
+        }
+        
+        /**
+         * Force reload on the next activation
+         */
+        public void invalidate() {
+        	iLastRefresh = 0;
+        }
+        
+        public synchronized boolean isUpToDate(Long sessionId, boolean includeInstructors, long maxAge) {
+        	if (iLastRefresh == 0 || System.currentTimeMillis() - iLastRefresh > maxAge) return false;
+        	return (sessionId == null ? iSessionId == null : sessionId.equals(iSessionId)) && (iIncludeInstructors || !includeInstructors);
+        }
+        
+        private static void add(Map<Long, List<TimeBlock>> availability, Meeting m, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+            MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
+            if (block.getStartTime() == null) return;
+        	List<TimeBlock> blocks = availability.get(m.getLocationPermanentId());
             if (blocks==null) {
-                blocks = new TreeSet(); iAvailability.put(m.getLocationPermanentId(), blocks);
+                blocks = new ArrayList<TimeBlock>(); availability.put(m.getLocationPermanentId(), blocks);
             }
-            MeetingTimeBlock block = new MeetingTimeBlock(m, class2eventDateMap);
-            if (block.getStartTime() != null)
-            	blocks.add(block);
+            blocks.add(block);
         }
-        private void addAll(List<Meeting> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        private static void addAll(Map<Long, List<TimeBlock>> availability, List<Meeting> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
         	if (meetings != null)
         		for (Meeting m: meetings)
-        			add(m, class2eventDateMap);
+        			add(availability, m, class2eventDateMap);
         }
-        private void add(Meeting m, String instructorExternalId, EventDateMapping.Class2EventDateMap class2eventDateMap) {
-        	TreeSet<TimeBlock> blocks = iInstructorAvailability.get(instructorExternalId);
+        private static void add(Map<String, List<TimeBlock>> instructorAvailability, Meeting m, String instructorExternalId, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+            MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+            if (block.getStartTime() == null) return;
+        	List<TimeBlock> blocks = instructorAvailability.get(instructorExternalId);
             if (blocks==null) {
-                blocks = new TreeSet(); iInstructorAvailability.put(instructorExternalId, blocks);
+                blocks = new ArrayList<TimeBlock>(); instructorAvailability.put(instructorExternalId, blocks);
             }
-            MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-            if (block.getStartTime() != null)
-            	blocks.add(block);
+            blocks.add(block);
         }
-        private void addAllInstructors(List<Object[]> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
+        private static void addAllInstructors(Map<String, List<TimeBlock>> instructorAvailability, List<Object[]> meetings, EventDateMapping.Class2EventDateMap class2eventDateMap) {
         	if (meetings != null)
         		for (Object[] o: meetings) {
         			Meeting m = (Meeting)o[0];
                 	String id = (String)o[1];
-        			add(m, id, class2eventDateMap);
+        			add(instructorAvailability, m, id, class2eventDateMap);
         		}
         }
         
-        public TreeSet<TimeBlock> get(Long roomPermId, String excludeType) {
-            TreeSet<TimeBlock> roomAvailability = iAvailability.get(roomPermId);
-            if (roomAvailability==null || excludeType==null || excludeType.equals(iExcludeType)) return roomAvailability;
-            TreeSet<TimeBlock> ret = new TreeSet();
-            for (TimeBlock block : roomAvailability) {
-            	if (excludeType.equals(block.getEventType())) continue;
-                ret.add(block);
-            }
-            return ret;
+        public TreeSet<TimeBlock> get(Long roomPermId, String excludeType, Date startTime, Date endTime) {
+        	TimeBlockIndex index = iAvailability.get(roomPermId);
+        	if (index == null) return null;
+        	return index.find(startTime, endTime, excludeType == null || excludeType.equals(iExcludeType) ? null : excludeType);
         }
-        public TreeSet<TimeBlock> get(String instructorExternalId, String excludeType) {
+        public TreeSet<TimeBlock> get(String instructorExternalId, String excludeType, Date startTime, Date endTime) {
         	if (instructorExternalId == null) return null;
-            TreeSet<TimeBlock> instructorAvailability = iInstructorAvailability.get(instructorExternalId);
-            if (instructorAvailability==null || excludeType==null || excludeType.equals(iExcludeType)) return instructorAvailability;
-            TreeSet<TimeBlock> ret = new TreeSet();
-            for (TimeBlock block : instructorAvailability) {
-            	if (excludeType.equals(block.getEventType())) continue;
-                ret.add(block);
-            }
-            return ret;
+        	TimeBlockIndex index = iInstructorAvailability.get(instructorExternalId);
+        	if (index == null) return null;
+        	return index.find(startTime, endTime, excludeType == null || excludeType.equals(iExcludeType) ? null : excludeType);
+        }
+        public int getNrRooms() { return iAvailability.size(); }
+        public int getNrBlocks() {
+        	int ret = 0;
+        	for (TimeBlockIndex index: iAvailability.values()) ret += index.size();
+        	return ret;
         }
         public TimeFrame getTimeFrame() { return iTime; }
         public String getExcludeType() { return iExcludeType; }
@@ -484,101 +900,111 @@ public class DefaultRoomAvailabilityService implements RoomAvailabilityInterface
 
 	@Override
 	public Collection<TimeBlock> getInstructorAvailability(Long instructorId, Date startTime, Date endTime, String excludeType) {
+		updateChangedEvents();
         DepartmentalInstructor instructor = DepartmentalInstructorDAO.getInstance().get(instructorId);
         if (!iInstructorAvailabilityEnabled || instructor == null || instructor.getExternalUniqueId() == null) {
         	if (instructor != null) return instructor.listUnavailableDays();
         	return null;
         }
-        EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(instructor.getDepartment().getSession().getUniqueId()) : null);
         TimeFrame time = new TimeFrame(startTime, endTime);
-        synchronized(iCache) {
-            CacheElement cache = get(time, excludeType);
-            if (cache!=null) {
-            	Collection<TimeBlock> cached = cache.get(instructor.getExternalUniqueId(), excludeType);
-            	if (instructor.hasUnavailabilities()) {
-            		Collection<TimeBlock> ret = instructor.listUnavailableDays();
-            		if (cached != null) ret.addAll(cached);
-            		return ret;
-            	} else {
-            		return cached;
-            	}
+        CacheElement cache = get(time, excludeType);
+        if (cache!=null) {
+        	iHits.incrementAndGet();
+        	Collection<TimeBlock> cached = cache.get(instructor.getExternalUniqueId(), excludeType, startTime, endTime);
+        	if (instructor.hasUnavailabilities()) {
+        		Collection<TimeBlock> ret = instructor.listUnavailableDays();
+        		if (cached != null) ret.addAll(cached);
+        		return ret;
+        	} else {
+        		return cached;
+        	}
+        }
+        long t0 = System.currentTimeMillis();
+        try {
+        	return loadInstructorAvailability(instructor, time, excludeType);
+        } finally {
+        	iMisses.incrementAndGet();
+        	iMissTime.addAndGet(System.currentTimeMillis() - t0);
+        }
+	}
+	
+	protected Collection<TimeBlock> loadInstructorAvailability(DepartmentalInstructor instructor, TimeFrame time, String excludeType) {
+        EventDateMapping.Class2EventDateMap class2eventDateMap = (sClassType.equals(excludeType) ? EventDateMapping.getMapping(instructor.getDepartment().getSession().getUniqueId()) : null);
+        TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
+        Class<? extends Event> exclude = null;
+        ExamType examType = null;
+        if (excludeType!=null) {
+            if (sFinalExamType.equals(excludeType))
+                exclude = FinalExamEvent.class;
+            else if (sMidtermExamType.equals(excludeType))
+                exclude = MidtermExamEvent.class;
+            else if (sClassType.equals(excludeType))
+                exclude = ClassEvent.class;
+            else {
+            	exclude = ExamEvent.class;
+            	examType = ExamType.findByReference(excludeType);
             }
-            TreeSet<TimeBlock> ret = new TreeSet<TimeBlock>();
-            Class<? extends Event> exclude = null;
-            ExamType examType = null;
-            if (excludeType!=null) {
-                if (sFinalExamType.equals(excludeType))
-                    exclude = FinalExamEvent.class;
-                else if (sMidtermExamType.equals(excludeType))
-                    exclude = MidtermExamEvent.class;
-                else if (sClassType.equals(excludeType))
-                    exclude = ClassEvent.class;
-                else {
-                	exclude = ExamEvent.class;
-                	examType = ExamType.findByReference(excludeType);
+        }
+        for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+        		"select m from Meeting m left outer join m.event.additionalContacts c where " +
+        		"(m.event.mainContact.externalUniqueId = :user or c.externalUniqueId = :user) and "+
+        		"m.approvalStatus = 1 and "+
+                "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
+                (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
+                	exclude != null ? " and m.event.class!=" + exclude.getSimpleName() : ""))
+                .setString("user", instructor.getExternalUniqueId())
+                .setDate("startDate", time.getStartDate())
+                .setDate("endDate", time.getEndDate())
+                .setInteger("startSlot", time.getStartSlot())
+                .setInteger("endSlot", time.getEndSlot())
+                .setCacheable(true).list()) {
+            MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+            if (block.getStartTime() != null)
+            	ret.add(block);
+        }
+        if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
+        	if (ClassEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                        "select m from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
+                        "ci.instructor.externalUniqueId = :user and ci.lead = true and "+
+                        "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
+        				.setString("user", instructor.getExternalUniqueId())
+                        .setLong("sessionId", instructor.getDepartment().getSession().getUniqueId())
+                        .setDate("startDate", time.getStartDate())
+                        .setDate("endDate", time.getEndDate())
+                        .setInteger("startSlot", time.getStartSlot())
+                        .setInteger("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
                 }
-            }
-            for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-            		"select m from Meeting m left outer join m.event.additionalContacts c where " +
-            		"(m.event.mainContact.externalUniqueId = :user or c.externalUniqueId = :user) and "+
-            		"m.approvalStatus = 1 and "+
-                    "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                    "m.startPeriod<:endSlot and m.stopPeriod>:startSlot"+
-                    (examType != null ? " and m.event.uniqueId not in (select x.uniqueId from ExamEvent x where x.exam.examType = " + examType.getUniqueId() + ")" :
-                    	exclude != null ? " and m.event.class!=" + exclude.getSimpleName() : ""))
-                    .setString("user", instructor.getExternalUniqueId())
-                    .setDate("startDate", time.getStartDate())
-                    .setDate("endDate", time.getEndDate())
-                    .setInteger("startSlot", time.getStartSlot())
-                    .setInteger("endSlot", time.getEndSlot())
-                    .setCacheable(true).list()) {
-                MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                if (block.getStartTime() != null)
-                	ret.add(block);
-            }
-            if (ApplicationProperty.RoomAvailabilityIncludeOtherTerms.isTrue() && excludeType != null) {
-            	if (ClassEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                            "select m from ClassEvent e inner join e.meetings m inner join e.clazz.classInstructors ci where "+
-                            "ci.instructor.externalUniqueId = :user and ci.lead = true and "+
-                            "m.approvalStatus = 1 and e.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot")
-            				.setString("user", instructor.getExternalUniqueId())
-                            .setLong("sessionId", instructor.getDepartment().getSession().getUniqueId())
-                            .setDate("startDate", time.getStartDate())
-                            .setDate("endDate", time.getEndDate())
-                            .setInteger("startSlot", time.getStartSlot())
-                            .setInteger("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
-            		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
-                            "select m from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
-                            "di.externalUniqueId = :user and "+
-                            "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
-                            "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
-                            "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + 
-                            (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""))
-            				.setString("user", instructor.getExternalUniqueId())
-                            .setLong("sessionId", instructor.getDepartment().getSession().getUniqueId())
-                            .setDate("startDate", time.getStartDate())
-                            .setDate("endDate", time.getEndDate())
-                            .setInteger("startSlot", time.getStartSlot())
-                            .setInteger("endSlot", time.getEndSlot())
-                            .setCacheable(true).list()) {
-                        MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
-                        if (block.getStartTime() != null)
-                        	ret.add(block);
-                    }
-            	}
-            }
-            if (instructor.hasUnavailabilities())
-            	ret.addAll(instructor.listUnavailableDays());
-            return ret;
+        	} else if (ExamEvent.class.isAssignableFrom(exclude)) {
+        		for (Meeting m: (List<Meeting>)LocationDAO.getInstance().getSession().createQuery(
+                        "select m from " + exclude.getSimpleName() + " e inner join e.meetings m inner join e.exam.instructors di where  "+
+                        "di.externalUniqueId = :user and "+
+                        "m.approvalStatus = 1 and e.exam.session.uniqueId != :sessionId and "+
+                        "m.meetingDate>=:startDate and m.meetingDate<=:endDate and "+
+                        "m.startPeriod<:endSlot and m.stopPeriod>:startSlot" + 
+                        (examType != null ? " and e.exam.examType = " + examType.getUniqueId() : ""))
+        				.setString("user", instructor.getExternalUniqueId())
+                        .setLong("sessionId", instructor.getDepartment().getSession().getUniqueId())
+                        .setDate("startDate", time.getStartDate())
+                        .setDate("endDate", time.getEndDate())
+                        .setInteger("startSlot", time.getStartSlot())
+                        .setInteger("endSlot", time.getEndSlot())
+                        .setCacheable(true).list()) {
+                    MeetingTimeBlock block = new MeetingTimeBlockWithRoom(m, class2eventDateMap);
+                    if (block.getStartTime() != null)
+                    	ret.add(block);
+                }
+        	}
         }
+        if (instructor.hasUnavailabilities())
+        	ret.addAll(instructor.listUnavailableDays());
+        return ret;
 	}
 }
@@ -56,6 +56,27 @@ public class RoomAvailability {
         }
     }
     
+    /**
+     * Notify the room availability service that the meetings of the given events have been changed (changes saved through Hibernate
+     * are reported automatically, see {@link DefaultRoomAvailabilityService#register(org.hibernate.SessionFactory)})
+     */
+    public static void eventUpdated(Long... eventIds) {
+    	RoomAvailabilityInterface availability = getInstance();
+    	if (availability != null && availability instanceof DefaultRoomAvailabilityService) {
+    		for (Long eventId: eventIds)
+    			((DefaultRoomAvailabilityService)availability).eventUpdated(eventId);
+    	}
+    }
+    
+    /**
+     * Drop all the cached room availability data, e.g., after a bulk update or delete of events
+     */
+    public static void clearCache() {
+    	RoomAvailabilityInterface availability = getInstance();
+    	if (availability != null && availability instanceof DefaultRoomAvailabilityService)
+    		((DefaultRoomAvailabilityService)availability).clearCache();
+    }
+    
     public static void setAvailabilityWarning(HttpServletRequest request, Session acadSession, Long examType, boolean checkSolver, boolean checkAvailability) {
         if (acadSession==null || examType==null || getInstance()==null) return;
         if (checkSolver) {
@@ -0,0 +1,80 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.util;
+
+/**
+ * Token bucket rate limiter. Tokens are added at the given rate (per second) up to the capacity (the allowed burst).
+ * Each {@link #acquire()} takes one token, waiting until the token becomes available when the bucket is empty.
+ * Waiting callers reserve their tokens in advance, so that they are served in the order of their arrival.
+ * 
+ * @author Tomas Muller
+ */
+public class TokenBucket {
+	private double iRate;
+	private double iCapacity;
+	private double iTokens;
+	private long iLastRefill;
+	
+	/**
+	 * @param rate number of tokens per second
+	 * @param capacity maximal number of tokens in the bucket (burst size, at least one)
+	 */
+	public TokenBucket(double rate, double capacity) {
+		iRate = rate;
+		iCapacity = Math.max(1.0, capacity);
+		iTokens = iCapacity;
+		iLastRefill = System.nanoTime();
+	}
+	
+	public double getRate() { return iRate; }
+	
+	public double getCapacity() { return iCapacity; }
+	
+	private void refill() {
+		long now = System.nanoTime();
+		iTokens = Math.min(iCapacity, iTokens + iRate * (now - iLastRefill) / 1e9);
+		iLastRefill = now;
+	}
+	
+	/**
+	 * Take a token, wait when there is none available
+	 * @return time waited in milliseconds
+	 */
+	public long acquire() throws InterruptedException {
+		long wait;
+		synchronized (this) {
+			refill();
+			iTokens -= 1.0;
+			wait = (iTokens >= 0.0 ? 0l : (long)Math.ceil(-iTokens * 1000.0 / iRate));
+		}
+		if (wait > 0) Thread.sleep(wait);
+		return wait;
+	}
+	
+	/**
+	 * Take a token if available, do not wait
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (iTokens < 1.0) return false;
+		iTokens -= 1.0;
+		return true;
+	}
+}
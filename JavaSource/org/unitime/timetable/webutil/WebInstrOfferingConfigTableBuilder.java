@@ -176,7 +176,8 @@ public class WebInstrOfferingConfigTableBuilder extends
 		        					allClasses.add(clazz);
 		        				}
 		        			}
-	                		((CachedClassAssignmentProxy)classAssignment).setCache(allClasses);
+	                		// all configurations of the offering are displayed on the page, fetch them at once
+	                		((CachedClassAssignmentProxy)classAssignment).prefetchOffering(ioc.getInstructionalOffering().getUniqueId());
 	                		hasTimetable = !classAssignment.getAssignmentTable(allClasses).isEmpty();
 	                	} else {
 		        			for (Iterator k=ioc.getSchedulingSubparts().iterator();!hasTimetable && k.hasNext();) {